@@ -0,0 +1,159 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WS reconnect storm: open SESSIONS WebSockets at once, each sends
+ * {"action":"resume","afterSeq":AFTER_SEQ}, and wait for the final REPLAY
+ * chunk on every socket.
+ *
+ * Reports connect / first-REPLAY latency percentiles and the memory vs db
+ * split. Compare the server's replayHitRatioPct / replayDbQueries (WsHub
+ * getMetrics) before and after the run.
+ *
+ * Run (JDK 21, no dependencies):
+ *   TOKEN=<jwt> WS_URL=ws://localhost:9090/ws SESSIONS=1000 AFTER_SEQ=<seq> \
+ *     java load-tests/WsResumeStorm.java
+ */
+public class WsResumeStorm {
+
+    public static void main(String[] args) throws Exception {
+        String wsUrl = env("WS_URL", "ws://localhost:9090/ws");
+        String token = env("TOKEN", "");
+        int sessions = Integer.parseInt(env("SESSIONS", "1000"));
+        long afterSeq = Long.parseLong(env("AFTER_SEQ", "0"));
+        long timeoutSec = Long.parseLong(env("TIMEOUT_SEC", "60"));
+
+        if (token.isEmpty()) {
+            System.err.println("ERROR: set TOKEN to a valid JWT (POST /api/auth/login)");
+            System.exit(1);
+        }
+
+        System.out.println("═══════════════════════════════════════════════════════════════");
+        System.out.println("  WS Resume Storm");
+        System.out.println("═══════════════════════════════════════════════════════════════");
+        System.out.println("  URL: " + wsUrl + "  sessions: " + sessions + "  afterSeq: " + afterSeq);
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI uri = URI.create(wsUrl + "?token=" + token);
+        CountDownLatch done = new CountDownLatch(sessions);
+        long[] connectNanos = new long[sessions];
+        long[] replayNanos = new long[sessions];
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger fromMemory = new AtomicInteger();
+        AtomicInteger fromDb = new AtomicInteger();
+        AtomicLong events = new AtomicLong();
+        List<WebSocket> sockets = new ArrayList<>();
+        ConcurrentHashMap<Integer, Boolean> finished = new ConcurrentHashMap<>();
+
+        long start = System.nanoTime();
+        List<CompletableFuture<WebSocket>> futures = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            final int id = i;
+            futures.add(client.newWebSocketBuilder().buildAsync(uri, new WebSocket.Listener() {
+                private final StringBuilder text = new StringBuilder();
+
+                @Override
+                public void onOpen(WebSocket ws) {
+                    connectNanos[id] = System.nanoTime() - start;
+                    ws.sendText("{\"action\":\"resume\",\"afterSeq\":" + afterSeq + "}", true);
+                    WebSocket.Listener.super.onOpen(ws);
+                }
+
+                @Override
+                public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+                    text.append(data);
+                    if (last) {
+                        String msg = text.toString();
+                        text.setLength(0);
+                        if (msg.startsWith("{\"type\":\"REPLAY\"")) {
+                            events.addAndGet(count(msg, "\"seq\":") - 1);
+                            if (msg.contains("\"final\":true")) {
+                                if (finished.putIfAbsent(id, Boolean.TRUE) == null) {
+                                    replayNanos[id] = System.nanoTime() - start;
+                                    (msg.contains("\"source\":\"db\"") ? fromDb : fromMemory).incrementAndGet();
+                                    done.countDown();
+                                }
+                            }
+                        } else if (msg.startsWith("{\"type\":\"ERROR\"") && finished.putIfAbsent(id, Boolean.TRUE) == null) {
+                            failed.incrementAndGet();
+                            done.countDown();
+                        }
+                    }
+                    return WebSocket.Listener.super.onText(ws, data, last);
+                }
+
+                @Override
+                public void onError(WebSocket ws, Throwable error) {
+                    if (finished.putIfAbsent(id, Boolean.TRUE) == null) {
+                        failed.incrementAndGet();
+                        done.countDown();
+                    }
+                }
+            }));
+        }
+        for (int i = 0; i < sessions; i++) {
+            try {
+                sockets.add(futures.get(i).join());
+            } catch (Exception e) {
+                // Handshake failed: the listener never ran
+                if (finished.putIfAbsent(i, Boolean.TRUE) == null) {
+                    failed.incrementAndGet();
+                    done.countDown();
+                }
+            }
+        }
+
+        boolean allDone = done.await(timeoutSec, TimeUnit.SECONDS);
+        long wallMs = (System.nanoTime() - start) / 1_000_000;
+        for (WebSocket ws : sockets) {
+            ws.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+        }
+
+        System.out.println("");
+        System.out.println("Results:");
+        System.out.println("  Completed: " + (fromMemory.get() + fromDb.get()) + " / " + sessions
+                + (allDone ? "" : " (timed out)"));
+        System.out.println("  Failed: " + failed.get());
+        System.out.println("  Served from memory: " + fromMemory.get() + "  from db: " + fromDb.get());
+        System.out.println("  Events replayed: " + events.get());
+        System.out.println("  Wall time: " + wallMs + " ms");
+        System.out.println("  Connect ms p50/p99/max: " + percentiles(connectNanos));
+        System.out.println("  Replay  ms p50/p99/max: " + percentiles(replayNanos));
+    }
+
+    private static String percentiles(long[] nanos) {
+        long[] sorted = java.util.Arrays.stream(nanos).filter(n -> n > 0).sorted().toArray();
+        if (sorted.length == 0) {
+            return "n/a";
+        }
+        return ms(sorted[sorted.length / 2]) + " / " + ms(sorted[(int) (sorted.length * 0.99)]) + " / "
+                + ms(sorted[sorted.length - 1]);
+    }
+
+    private static long ms(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    private static int count(String s, String needle) {
+        int n = 0;
+        for (int i = s.indexOf(needle); i >= 0; i = s.indexOf(needle, i + 1)) {
+            n++;
+        }
+        return n;
+    }
+
+    private static String env(String name, String def) {
+        String v = System.getenv(name);
+        return v == null || v.isEmpty() ? def : v;
+    }
+}
@@ -0,0 +1,50 @@
+-- V017: Tick Journal (market-data event lane)
+--
+-- PROBLEM: Every tick was written to trade_events via a synchronous single-row
+--   INSERT on the feed thread (EventService.emitGlobal(TICK, ...)).
+--   At market open with 200+ symbols this is thousands of INSERTs/sec,
+--   stalling the feed and starving the HikariCP pool.
+--
+-- SOLUTION: Ticks leave trade_events entirely.
+--   EventService coalesces ticks per symbol and writes them here in bulk (COPY)
+--   from a background writer, or skips persistence when TICK_PERSISTENCE=EPHEMERAL.
+--   The table is range-partitioned by day so old days can be dropped cheaply.
+
+-- ═══════════════════════════════════════════════════════════════
+-- Parent table (partitioned by ts)
+-- ═══════════════════════════════════════════════════════════════
+CREATE TABLE IF NOT EXISTS tick_journal (
+    symbol TEXT NOT NULL,
+    ts TIMESTAMPTZ NOT NULL,
+    last_price NUMERIC(12,2) NOT NULL,
+    volume BIGINT NOT NULL DEFAULT 0,
+    bid NUMERIC(12,2),
+    ask NUMERIC(12,2),
+    broker_code TEXT,
+    recorded_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+) PARTITION BY RANGE (ts);
+
+-- Catch-all so a missing daily partition never rejects a batch
+CREATE TABLE IF NOT EXISTS tick_journal_default PARTITION OF tick_journal DEFAULT;
+
+CREATE INDEX IF NOT EXISTS idx_tick_journal_symbol_ts ON tick_journal(symbol, ts DESC);
+
+-- ═══════════════════════════════════════════════════════════════
+-- Daily (UTC) partition helper (called by PostgresTickJournalRepository)
+-- ═══════════════════════════════════════════════════════════════
+CREATE OR REPLACE FUNCTION ensure_tick_journal_partition(p_day DATE)
+RETURNS VOID AS $$
+DECLARE
+    partition_name TEXT := 'tick_journal_' || to_char(p_day, 'YYYYMMDD');
+BEGIN
+    IF to_regclass(partition_name) IS NULL THEN
+        EXECUTE format(
+            'CREATE TABLE IF NOT EXISTS %I PARTITION OF tick_journal FOR VALUES FROM (%L) TO (%L)',
+            partition_name,
+            p_day::timestamp AT TIME ZONE 'UTC',
+            (p_day + 1)::timestamp AT TIME ZONE 'UTC');
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+COMMENT ON TABLE tick_journal IS 'Coalesced market ticks, bulk-written off the feed thread (not part of trade_events seq)';
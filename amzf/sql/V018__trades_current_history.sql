@@ -0,0 +1,110 @@
+-- V018: Trades split into current state + append-only history
+--
+-- PROBLEM: Trade immutability was implemented in a single table: every update
+--   soft-deleted the current row and inserted a full ~55-column copy. All reads
+--   (findBySymbol, findOpenTrades, findByUserId, monitoring) filtered
+--   deleted_at IS NULL over an ever-growing table, and high-frequency fields
+--   (trailing stop ratchets, marks) churned the same table.
+--
+-- SOLUTION: Two tables.
+--   trades_current  One row per trade, updated in place with an optimistic
+--                   version check. All reads go here.
+--   trades_history  Append-only snapshot per version, written asynchronously
+--                   in batches by the application (PK trade_id, version).
+--   High-frequency fields (trailing_*) are updated in place without a new
+--   version and are not snapshotted.
+--
+--   The existing trades table already holds every version, so it becomes
+--   trades_history; the live rows are copied into trades_current. A view named
+--   trades keeps existing read-only queries (monitoring, reports) working.
+--
+-- NOTE: In trades_history, deleted_at on rows written before this migration
+--   means "superseded at"; on rows written after it, it is only set on the
+--   snapshot taken when a trade is deleted.
+
+BEGIN;
+
+-- ═══════════════════════════════════════════════════════════════
+-- 1. Existing table becomes the history
+-- ═══════════════════════════════════════════════════════════════
+ALTER TABLE trades RENAME TO trades_history;
+
+-- ═══════════════════════════════════════════════════════════════
+-- 2. Current-state table (same columns, one row per trade)
+-- ═══════════════════════════════════════════════════════════════
+CREATE TABLE trades_current (LIKE trades_history INCLUDING DEFAULTS);
+
+INSERT INTO trades_current
+SELECT * FROM trades_history
+WHERE deleted_at IS NULL;
+
+ALTER TABLE trades_current ADD PRIMARY KEY (trade_id);
+ALTER TABLE trades_current ADD CONSTRAINT uq_trades_current_intent_id UNIQUE (intent_id);
+ALTER TABLE trades_current ADD CONSTRAINT uq_trades_current_client_order_id UNIQUE (client_order_id);
+
+CREATE UNIQUE INDEX uq_trades_current_broker_order_id
+    ON trades_current(broker_order_id)
+    WHERE broker_order_id IS NOT NULL;
+
+CREATE INDEX idx_trades_current_portfolio ON trades_current(portfolio_id);
+CREATE INDEX idx_trades_current_user ON trades_current(user_id);
+CREATE INDEX idx_trades_current_symbol ON trades_current(symbol);
+CREATE INDEX idx_trades_current_status ON trades_current(status);
+CREATE INDEX idx_trades_current_signal ON trades_current(signal_id) WHERE signal_id IS NOT NULL;
+
+CREATE INDEX idx_trades_current_pending
+    ON trades_current(status, updated_at)
+    WHERE status = 'PENDING';
+
+CREATE INDEX idx_trades_current_open
+    ON trades_current(status, symbol, user_broker_id)
+    WHERE status = 'OPEN';
+
+CREATE INDEX idx_trades_current_closed
+    ON trades_current(exit_timestamp)
+    WHERE status = 'CLOSED';
+
+-- ═══════════════════════════════════════════════════════════════
+-- 3. History: append-only, uniqueness only per (trade_id, version)
+-- ═══════════════════════════════════════════════════════════════
+ALTER TABLE trades_history
+    ADD COLUMN IF NOT EXISTS recorded_at TIMESTAMPTZ NOT NULL DEFAULT NOW();
+
+ALTER TABLE trades_history DROP CONSTRAINT IF EXISTS uq_trades_intent_id;
+ALTER TABLE trades_history DROP CONSTRAINT IF EXISTS uq_trades_client_order_id;
+DROP INDEX IF EXISTS uq_trades_broker_order_id;
+
+-- Hot-path indexes now live on trades_current
+DROP INDEX IF EXISTS idx_trades_pending;
+DROP INDEX IF EXISTS idx_trades_open;
+DROP INDEX IF EXISTS idx_trades_status;
+DROP INDEX IF EXISTS idx_trades_direction;
+
+-- ═══════════════════════════════════════════════════════════════
+-- 4. Foreign keys that pointed at trades now point at trades_current
+-- ═══════════════════════════════════════════════════════════════
+DO $$
+DECLARE
+    fk RECORD;
+BEGIN
+    FOR fk IN
+        SELECT conname, conrelid::regclass AS tbl
+        FROM pg_constraint
+        WHERE contype = 'f' AND confrelid = 'trades_history'::regclass
+    LOOP
+        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', fk.tbl, fk.conname);
+        EXECUTE format('ALTER TABLE %s ADD CONSTRAINT %I FOREIGN KEY (trade_id) REFERENCES trades_current(trade_id)',
+                fk.tbl, fk.conname);
+        RAISE NOTICE 'Re-pointed % on % to trades_current', fk.conname, fk.tbl;
+    END LOOP;
+END $$;
+
+-- ═══════════════════════════════════════════════════════════════
+-- 5. Compatibility view for read-only queries
+-- ═══════════════════════════════════════════════════════════════
+CREATE VIEW trades AS SELECT * FROM trades_current;
+
+COMMENT ON TABLE trades_current IS 'Current state of each trade (one row per trade_id, optimistic version)';
+COMMENT ON TABLE trades_history IS 'Append-only trade snapshots per version, written asynchronously';
+
+COMMIT;
@@ -0,0 +1,26 @@
+-- V019: Dead-letter table for trade history snapshots
+--
+-- PROBLEM: TradeHistoryWriter retried a failed batch on every flush, forever.
+--   One snapshot the database rejects (bad value, constraint violation) failed
+--   every batch it was in, so no history was written behind it.
+--
+-- SOLUTION: A batch failing on its data is split until the offending snapshots
+--   are isolated; those, and snapshots whose batch kept failing for any other
+--   reason past the retry cap, are stored here as JSON with the error instead.
+--   Rows can be inspected, fixed and re-inserted into trades_history by hand.
+
+CREATE TABLE IF NOT EXISTS trades_history_dead_letter (
+    id BIGSERIAL PRIMARY KEY,
+    trade_id TEXT NOT NULL,
+    version INT NOT NULL,
+    snapshot JSONB NOT NULL,
+    error TEXT,
+    sql_state TEXT,
+    attempts INT NOT NULL,
+    failed_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_trades_history_dead_letter_trade
+    ON trades_history_dead_letter(trade_id, version);
+
+COMMENT ON TABLE trades_history_dead_letter IS 'Trade snapshots trades_history rejected or that exhausted their retries';
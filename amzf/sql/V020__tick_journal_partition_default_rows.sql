@@ -0,0 +1,41 @@
+-- V020: Create tick_journal day partitions without tripping over DEFAULT rows
+--
+-- PROBLEM: ensure_tick_journal_partition() (V017) ran CREATE TABLE ... PARTITION
+--   OF for a day after that day's ticks could already be in tick_journal_default
+--   (a partition creation that failed, or ticks written before the call).
+--   PostgreSQL rejects the new partition while DEFAULT holds rows in its range,
+--   so the day stayed in DEFAULT for good and every later batch retried and
+--   failed the same CREATE.
+--
+-- SOLUTION: PostgresTickJournalRepository now creates partitions ahead (today
+--   and tomorrow at startup, the next day whenever a day is first written).
+--   For whatever still reaches DEFAULT, the helper builds the partition
+--   detached, moves that day's DEFAULT rows into it, then attaches it.
+--   Concurrent callers for the same day are serialized on an advisory lock.
+
+CREATE OR REPLACE FUNCTION ensure_tick_journal_partition(p_day DATE)
+RETURNS VOID AS $$
+DECLARE
+    partition_name TEXT := 'tick_journal_' || to_char(p_day, 'YYYYMMDD');
+    range_from TIMESTAMPTZ := p_day::timestamp AT TIME ZONE 'UTC';
+    range_to TIMESTAMPTZ := (p_day + 1)::timestamp AT TIME ZONE 'UTC';
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN;
+    END IF;
+
+    PERFORM pg_advisory_xact_lock(hashtext(partition_name));
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE tick_journal INCLUDING DEFAULTS)', partition_name);
+    EXECUTE format(
+        'WITH moved AS (DELETE FROM tick_journal_default WHERE ts >= %L AND ts < %L RETURNING *) '
+        'INSERT INTO %I SELECT * FROM moved',
+        range_from, range_to, partition_name);
+    EXECUTE format(
+        'ALTER TABLE tick_journal ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+        partition_name, range_from, range_to);
+END;
+$$ LANGUAGE plpgsql;
@@ -103,8 +103,9 @@ public interface TradeManagementService {
          * reached.
          *
          * @param tradeId      Trade to update
-         * @param highestPrice Highest price reached since entry
-         * @param stopPrice    Trailing stop price (highestPrice - distance%)
+         * @param highestPrice Most favorable price since entry (highest for LONG,
+         *                     lowest for SHORT)
+         * @param stopPrice    Trailing stop price (highestPrice -/+ distance%)
          * @param activate     Whether to activate trailing stop (first time threshold
          *                     reached)
          */
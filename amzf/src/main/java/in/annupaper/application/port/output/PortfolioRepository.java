@@ -2,6 +2,7 @@ package in.annupaper.application.port.output;
 
 import in.annupaper.domain.model.Portfolio;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,6 +11,8 @@ public interface PortfolioRepository {
 
     Optional<Portfolio> findById(String portfolioId);
 
+    List<Portfolio> findByUserIds(Collection<String> userIds);
+
     List<Portfolio> findAll();
 
     void insert(Portfolio portfolio);
@@ -3,6 +3,8 @@ package in.annupaper.application.port.output;
 import in.annupaper.domain.model.SignalDelivery;
 import in.annupaper.domain.model.DeliveryIndexEntry;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -70,6 +72,29 @@ public interface SignalDeliveryRepository {
      */
     List<SignalDelivery> findPendingDeliveries();
 
+    /**
+     * Claim the CREATED deliveries of one signal for processing.
+     *
+     * Moves them to DELIVERED in one statement, skipping rows locked by
+     * another node (FOR UPDATE SKIP LOCKED), so each delivery is claimed by
+     * exactly one caller. Each claim bumps the row's version: a claim that
+     * outlived its lease (see releaseExpiredClaims) can no longer consume.
+     *
+     * @param signalId Signal ID
+     * @return Claimed deliveries (now DELIVERED)
+     */
+    List<SignalDelivery> claimForSignal(String signalId);
+
+    /**
+     * Return DELIVERED rows claimed longer ago than the lease to CREATED,
+     * so a claim whose owner died (crash between claim and consume) is
+     * claimed again.
+     *
+     * @param lease Claim lease; must exceed the time a fan-out may take
+     * @return Deliveries released
+     */
+    int releaseExpiredClaims(Duration lease);
+
     /**
      * Insert new delivery.
      *
@@ -98,6 +123,20 @@ public interface SignalDeliveryRepository {
      */
     void updateStatus(String deliveryId, String status);
 
+    /**
+     * Update status of several claimed deliveries.
+     *
+     * Held to the claim, like consumption: a row is only updated while it is
+     * still DELIVERED at the version {@link #claimForSignal} returned, so a
+     * claim that outlived its lease cannot touch a row another caller has
+     * re-claimed or consumed.
+     *
+     * @param claimed Deliveries as returned by claimForSignal
+     * @param status  New status
+     * @return Deliveries updated
+     */
+    int updateStatusAll(Collection<SignalDelivery> claimed, String status);
+
     /**
      * Expire all deliveries for signal.
      *
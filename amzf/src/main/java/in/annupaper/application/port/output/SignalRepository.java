@@ -1,6 +1,7 @@
 package in.annupaper.application.port.output;
 
 import in.annupaper.domain.model.Signal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +21,11 @@ public interface SignalRepository {
      */
     Optional<Signal> findById(String signalId);
 
+    /**
+     * Find active signals by IDs in one query.
+     */
+    List<Signal> findByIds(Collection<String> signalIds);
+
     /**
      * Find active signals by symbol.
      */
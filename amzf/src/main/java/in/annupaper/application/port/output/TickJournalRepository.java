@@ -0,0 +1,18 @@
+package in.annupaper.application.port.output;
+
+import in.annupaper.domain.model.Tick;
+
+import java.util.List;
+
+/**
+ * Repository for the market-data tick journal (append-only, time-partitioned).
+ *
+ * Ticks are not part of the trade_events log: they are coalesced per symbol
+ * and written here in bulk, off the feed thread.
+ */
+public interface TickJournalRepository {
+    /**
+     * Append a batch of coalesced ticks in a single round trip.
+     */
+    void appendBatch(List<Tick> ticks);
+}
@@ -1,9 +1,12 @@
 package in.annupaper.application.port.output;
 
+import in.annupaper.domain.model.SignalDelivery;
 import in.annupaper.domain.model.TradeIntent;
 import in.annupaper.domain.model.IntentStatus;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Repository for TradeIntent entity with immutable audit trail.
@@ -46,6 +49,19 @@ public interface TradeIntentRepository {
      */
     void insert(TradeIntent intent);
 
+    /**
+     * Consume claimed deliveries and insert their intents (version=1) in one
+     * transaction (AV-5 enforcement).
+     *
+     * Same rule as consume_delivery(), plus the claim: a delivery is consumed
+     * only if it is still DELIVERED with the version its claim returned. The
+     * intents of deliveries that were not consumed are not inserted.
+     *
+     * @param intentsByDelivery Claimed delivery → its intent
+     * @return IDs of the deliveries consumed (and whose intents were inserted)
+     */
+    Set<String> insertAndConsume(Map<SignalDelivery, TradeIntent> intentsByDelivery);
+
     /**
      * Update trade intent using immutable pattern:
      * 1. Soft delete current version (set deleted_at)
@@ -1,22 +1,24 @@
 package in.annupaper.application.port.output;
 
 import in.annupaper.domain.model.Trade;
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Repository for Trade entity with immutable audit trail.
+ * Reads see the current version of each trade; every version is kept in an
+ * append-only history.
  */
 public interface TradeRepository {
     /**
      * Find all active trades.
-     * Only returns records where deleted_at IS NULL.
      */
     List<Trade> findAll();
 
     /**
      * Find active trade by ID.
-     * Only returns record where deleted_at IS NULL.
      */
     Optional<Trade> findById(String tradeId);
 
@@ -25,6 +27,11 @@ public interface TradeRepository {
      */
     List<Trade> findByPortfolioId(String portfolioId);
 
+    /**
+     * Find OPEN trades of several portfolios in one query.
+     */
+    List<Trade> findOpenTradesByPortfolioIds(Collection<String> portfolioIds);
+
     /**
      * Find active trades by user ID.
      */
@@ -68,15 +75,24 @@ public interface TradeRepository {
     void insert(Trade trade);
 
     /**
-     * Update trade using immutable pattern:
-     * 1. Soft delete current version (set deleted_at)
-     * 2. Insert new version (increment version)
+     * Update trade to a new version (version + 1), provided trade.version()
+     * is still the current version (optimistic check); the new version is
+     * appended to the history.
      */
     void update(Trade trade);
 
     /**
-     * Soft delete trade.
-     * Sets deleted_at = NOW() on current version.
+     * Update the trailing-stop fields of an OPEN trade in place.
+     * High-frequency: no new version, no history row.
+     *
+     * @return true if an OPEN trade was updated
+     */
+    boolean updateTrailingStop(String tradeId, boolean trailingActive, BigDecimal highestPrice,
+            BigDecimal stopPrice);
+
+    /**
+     * Delete trade.
+     * The final version (deleted_at set) is kept in the history.
      */
     void delete(String tradeId);
 
@@ -3,6 +3,7 @@ package in.annupaper.application.port.output;
 import in.annupaper.domain.model.BrokerRole;
 import in.annupaper.domain.model.UserBroker;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,6 +16,11 @@ public interface UserBrokerRepository {
      */
     Optional<UserBroker> findById(String userBrokerId);
 
+    /**
+     * Find user-brokers by IDs in one query.
+     */
+    List<UserBroker> findByIds(Collection<String> userBrokerIds);
+
     /**
      * Find all user-brokers for a user.
      */
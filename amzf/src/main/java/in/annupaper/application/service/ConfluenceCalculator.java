@@ -7,6 +7,8 @@ import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Confluence Calculator - Analyzes multi-timeframe zones to find trading
@@ -21,6 +23,11 @@ import java.util.List;
  * - TRIPLE: All 3 timeframes in buy zone (score = 1.00)
  * - DOUBLE: HTF + ITF in buy zone (score = 0.80)
  * - SINGLE: HTF only in buy zone (score = 0.50)
+ *
+ * Zones span each timeframe's lookback (TimeframeType.getLookback() bars).
+ * The bounds come from the CandleStore's incrementally maintained lookback
+ * high/low, and the Zone objects are cached per symbol until those bounds
+ * move, so analysis on every tick is a few comparisons.
  */
 public final class ConfluenceCalculator {
     private static final Logger log = LoggerFactory.getLogger(ConfluenceCalculator.class);
@@ -28,6 +35,10 @@ public final class ConfluenceCalculator {
     private final CandleStore candleStore;
     private final in.annupaper.application.port.output.MtfConfigRepository mtfConfigRepo;
 
+    // symbol -> zones from the last call, reused until a candle write moves a
+    // lookback high/low
+    private final Map<String, SymbolZones> zoneCache = new ConcurrentHashMap<>();
+
     public ConfluenceCalculator(CandleStore candleStore,
             in.annupaper.application.port.output.MtfConfigRepository mtfConfigRepo) {
         this.candleStore = candleStore;
@@ -45,62 +56,49 @@ public final class ConfluenceCalculator {
             // Get MTF config for per-timeframe buy zone percentages
             MtfGlobalConfig config = mtfConfigRepo.getGlobalConfig()
                     .orElseThrow(() -> new RuntimeException("MTF global config not found"));
+            return calculateZones(symbol, config);
+        } catch (Exception e) {
+            log.error("Failed to calculate zones for {}: {}", symbol, e.getMessage());
+            return null;
+        }
+    }
 
-            // Fetch candles for all 3 timeframes based on lookback periods
-            // HTF: 125-min, lookback 175 candles
-            List<HistoricalCandle> htfCandles = candleStore.getFromMemory(symbol, TimeframeType.HTF);
-            if (htfCandles.isEmpty()) {
-                htfCandles = candleStore.getFromPostgres(symbol, TimeframeType.HTF, TimeframeType.HTF.getLookback());
-            }
-
-            // ITF: 25-min, lookback 75 candles
-            List<HistoricalCandle> itfCandles = candleStore.getFromMemory(symbol, TimeframeType.ITF);
-            if (itfCandles.isEmpty()) {
-                itfCandles = candleStore.getFromPostgres(symbol, TimeframeType.ITF, TimeframeType.ITF.getLookback());
-            }
-
-            // LTF: 1-min, lookback 375 candles
-            List<HistoricalCandle> ltfCandles = candleStore.getFromMemory(symbol, TimeframeType.LTF);
-            if (ltfCandles.isEmpty()) {
-                ltfCandles = candleStore.getFromPostgres(symbol, TimeframeType.LTF, TimeframeType.LTF.getLookback());
-            }
+    private ZoneDetector.MultiTimeframeZones calculateZones(String symbol, MtfGlobalConfig config) {
+        try {
+            SymbolZones cache = zoneCache.computeIfAbsent(symbol, k -> new SymbolZones());
 
-            // Calculate zones for each timeframe with per-TF buy zone percentages
-            // HTF: 50%, ITF: 35%, LTF: 20%
-            ZoneDetector.Zone htfZone = ZoneDetector.calculateZone(htfCandles, config.htfBuyZonePct());
-            ZoneDetector.Zone itfZone = ZoneDetector.calculateZone(itfCandles, config.itfBuyZonePct());
-            ZoneDetector.Zone ltfZone = ZoneDetector.calculateZone(ltfCandles, config.ltfBuyZonePct());
+            // Per-TF buy zone percentages: HTF 50%, ITF 35%, LTF 20%
+            // Lookbacks: HTF 175 x 125-min, ITF 75 x 25-min, LTF 375 x 1-min
+            CachedZone htf = zone(symbol, TimeframeType.HTF, config.htfBuyZonePct(), cache.htf);
+            CachedZone itf = zone(symbol, TimeframeType.ITF, config.itfBuyZonePct(), cache.itf);
+            CachedZone ltf = zone(symbol, TimeframeType.LTF, config.ltfBuyZonePct(), cache.ltf);
 
             // Check which timeframes failed and provide detailed diagnostic
-            if (htfZone == null || itfZone == null || ltfZone == null) {
+            if (htf.zone() == null || itf.zone() == null || ltf.zone() == null) {
                 StringBuilder missing = new StringBuilder();
-                if (htfZone == null) {
-                    missing.append(String.format("HTF(125m): %d/%d candles", htfCandles.size(),
-                            TimeframeType.HTF.getLookback()));
-                }
-                if (itfZone == null) {
-                    if (missing.length() > 0)
-                        missing.append(", ");
-                    missing.append(String.format("ITF(25m): %d/%d candles", itfCandles.size(),
-                            TimeframeType.ITF.getLookback()));
-                }
-                if (ltfZone == null) {
-                    if (missing.length() > 0)
-                        missing.append(", ");
-                    missing.append(String.format("LTF(1m): %d/%d candles", ltfCandles.size(),
-                            TimeframeType.LTF.getLookback()));
-                }
+                appendMissing(missing, "HTF(125m)", htf, TimeframeType.HTF);
+                appendMissing(missing, "ITF(25m)", itf, TimeframeType.ITF);
+                appendMissing(missing, "LTF(1m)", ltf, TimeframeType.LTF);
                 log.warn("Insufficient candle data for {} - Missing: {}", symbol, missing.toString());
                 return null;
             }
 
-            return new ZoneDetector.MultiTimeframeZones(
-                    htfZone,
-                    itfZone,
-                    ltfZone,
-                    TimeframeType.HTF,
-                    TimeframeType.ITF,
-                    TimeframeType.LTF);
+            cache.htf = htf;
+            cache.itf = itf;
+            cache.ltf = ltf;
+            ZoneDetector.MultiTimeframeZones zones = cache.zones;
+            if (zones == null || zones.htf() != htf.zone() || zones.itf() != itf.zone()
+                    || zones.ltf() != ltf.zone()) {
+                zones = new ZoneDetector.MultiTimeframeZones(
+                        htf.zone(),
+                        itf.zone(),
+                        ltf.zone(),
+                        TimeframeType.HTF,
+                        TimeframeType.ITF,
+                        TimeframeType.LTF);
+                cache.zones = zones;
+            }
+            return zones;
 
         } catch (Exception e) {
             log.error("Failed to calculate zones for {}: {}", symbol, e.getMessage());
@@ -108,6 +106,63 @@ public final class ConfluenceCalculator {
         }
     }
 
+    private static void appendMissing(StringBuilder missing, String label, CachedZone zone,
+            TimeframeType timeframe) {
+        if (zone.zone() != null) {
+            return;
+        }
+        if (missing.length() > 0) {
+            missing.append(", ");
+        }
+        missing.append(String.format("%s: %d/%d candles", label, zone.candles(), timeframe.getLookback()));
+    }
+
+    /**
+     * Zone for one timeframe. In memory the lookback high/low are maintained
+     * by the CandleStore as bars are written, so this is one O(1) read and
+     * the previous zone is reused until a bound or the buy zone % changes.
+     * Falls back to the last {@code lookback} candles in PostgreSQL when the
+     * timeframe is not in memory; the returned zone is null if there were
+     * none.
+     */
+    private CachedZone zone(String symbol, TimeframeType timeframe, BigDecimal buyZonePct, CachedZone cached) {
+        CandleStore.LookbackRange range = candleStore.lookbackRange(symbol, timeframe);
+
+        if (range == null) {
+            List<HistoricalCandle> candles = candleStore.getFromPostgres(symbol, timeframe, timeframe.getLookback());
+            ZoneDetector.Zone zone = ZoneDetector.calculateZone(candles, buyZonePct);
+            return new CachedZone(Long.MIN_VALUE, Long.MAX_VALUE, buyZonePct, zone, candles.size());
+        }
+
+        long high = range.highPaise();
+        long low = range.lowPaise();
+        if (cached != null && cached.highPaise() == high && cached.lowPaise() == low
+                && cached.buyZonePct().compareTo(buyZonePct) == 0) {
+            return cached;
+        }
+        return new CachedZone(high, low, buyZonePct, ZoneDetector.calculateZoneFromRange(
+                Paise.toBigDecimal(high), Paise.toBigDecimal(low), buyZonePct), range.bars());
+    }
+
+    /**
+     * A timeframe's zone and the bounds it was computed from (Long.MIN_VALUE /
+     * Long.MAX_VALUE when it came from PostgreSQL, so it is never reused).
+     */
+    private record CachedZone(long highPaise, long lowPaise, BigDecimal buyZonePct, ZoneDetector.Zone zone,
+            int candles) {
+    }
+
+    /**
+     * Last zones computed for a symbol (racy reuse is fine: values are
+     * immutable).
+     */
+    private static final class SymbolZones {
+        volatile CachedZone htf;
+        volatile CachedZone itf;
+        volatile CachedZone ltf;
+        volatile ZoneDetector.MultiTimeframeZones zones;
+    }
+
     /**
      * Check if triple buy confluence exists for a symbol at current price.
      *
@@ -190,14 +245,20 @@ public final class ConfluenceCalculator {
      * @return Confluence analysis result or null if zones can't be calculated
      */
     public ConfluenceResult analyze(String symbol, BigDecimal currentPrice) {
-        ZoneDetector.MultiTimeframeZones zones = calculateZones(symbol);
-        if (zones == null) {
+        // Get MTF config (use global config for now)
+        MtfGlobalConfig config;
+        try {
+            config = mtfConfigRepo.getGlobalConfig()
+                    .orElseThrow(() -> new RuntimeException("MTF global config not found"));
+        } catch (Exception e) {
+            log.error("Failed to calculate zones for {}: {}", symbol, e.getMessage());
             return null;
         }
 
-        // Get MTF config (use global config for now)
-        MtfGlobalConfig config = mtfConfigRepo.getGlobalConfig()
-                .orElseThrow(() -> new RuntimeException("MTF global config not found"));
+        ZoneDetector.MultiTimeframeZones zones = calculateZones(symbol, config);
+        if (zones == null) {
+            return null;
+        }
 
         boolean hasTripleBuy = zones.isTripleBuyConfluence(currentPrice);
         boolean hasTripleSell = zones.isTripleSellConfluence(currentPrice);
@@ -2,32 +2,60 @@ package in.annupaper.application.service;
 
 import in.annupaper.domain.model.*;
 import in.annupaper.application.port.output.TradeIntentRepository;
-import in.annupaper.application.port.output.UserBrokerRepository;
 import in.annupaper.application.port.output.SignalDeliveryRepository;
 import in.annupaper.application.port.output.SignalRepository;
 import in.annupaper.service.core.EventService;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Histogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Execution Orchestrator.
  * Handles signal fan-out: one signal -> validation per (user, broker) -> trade
  * intents.
+ *
+ * Only the deliveries of the signal being published are processed; they are
+ * claimed in the database first, so concurrent fan-outs (and other nodes)
+ * never race for the same rows. Everything validation reads (user-brokers,
+ * portfolios, open trades, symbol config/ATR/candles) is loaded once per
+ * fan-out by {@link ValidationContextLoader}, so the queries a fan-out makes
+ * do not grow with its deliveries.
+ *
+ * RECOVERY SWEEP:
+ * Intents are inserted and their deliveries consumed in one transaction. A
+ * node that dies between claim and consume leaves its deliveries DELIVERED;
+ * a periodic sweep returns claims older than the lease to CREATED and fans
+ * out every signal with CREATED deliveries older than the lease (younger
+ * ones belong to a fan-out in progress).
+ *
+ * Only a delivery whose own validation failed (or whose user-broker is gone)
+ * is REJECTED. A transient failure of the fan-out as a whole (context load,
+ * intent insert) leaves its claims DELIVERED, and the sweep retries them once
+ * the lease expires.
  */
 public final class ExecutionOrchestrator {
     private static final Logger log = LoggerFactory.getLogger(ExecutionOrchestrator.class);
 
+    // Deadline for validating one signal's deliveries
+    private static final long BATCH_TIMEOUT_MS = 5_000;
+
+    // Recovery sweep; the lease must comfortably exceed one fan-out
+    private static final int SWEEP_INTERVAL_SECONDS = 30;
+    private static final int INITIAL_DELAY_SECONDS = 10;
+    private static final Duration CLAIM_LEASE = Duration.ofSeconds(60);
+
     private final TradeIntentRepository tradeIntentRepo;
-    private final UserBrokerRepository userBrokerRepo;
     private final ValidationService validationService;
     private final EventService eventService;
-    private final Function<String, ValidationService.UserContext> userContextProvider;
+    private final ValidationContextLoader contextLoader;
     private final SignalDeliveryRepository signalDeliveryRepo;
     private final SignalRepository signalRepo;
     private final in.annupaper.application.port.input.TradeManagementService tradeManagementService;
@@ -41,170 +69,290 @@ public final class ExecutionOrchestrator {
                 return t;
             });
 
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "delivery-recovery-sweep");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Metrics (queries = repository/candle lookups per fan-out)
+    private final Histogram fanOutQueries;
+    private final AtomicLong fanOuts = new AtomicLong(0);
+    private final AtomicLong fanOutDeliveries = new AtomicLong(0);
+    private final AtomicLong lastFanOutQueries = new AtomicLong(0);
+    private final AtomicLong maxFanOutQueries = new AtomicLong(0);
+    private final AtomicLong totalFanOutQueries = new AtomicLong(0);
+    private final AtomicLong claimsReleased = new AtomicLong(0);
+    private final AtomicLong deliveriesRecovered = new AtomicLong(0);
+    private final AtomicLong deliveriesLeftForRetry = new AtomicLong(0);
+
     public ExecutionOrchestrator(
             TradeIntentRepository tradeIntentRepo,
-            UserBrokerRepository userBrokerRepo,
             ValidationService validationService,
             EventService eventService,
-            Function<String, ValidationService.UserContext> userContextProvider,
+            ValidationContextLoader contextLoader,
             SignalDeliveryRepository signalDeliveryRepo,
             SignalRepository signalRepo,
             in.annupaper.application.port.input.TradeManagementService tradeManagementService) {
+        this(tradeIntentRepo, validationService, eventService, contextLoader, signalDeliveryRepo, signalRepo,
+                tradeManagementService, new CollectorRegistry());
+    }
+
+    public ExecutionOrchestrator(
+            TradeIntentRepository tradeIntentRepo,
+            ValidationService validationService,
+            EventService eventService,
+            ValidationContextLoader contextLoader,
+            SignalDeliveryRepository signalDeliveryRepo,
+            SignalRepository signalRepo,
+            in.annupaper.application.port.input.TradeManagementService tradeManagementService,
+            CollectorRegistry registry) {
         this.tradeIntentRepo = tradeIntentRepo;
-        this.userBrokerRepo = userBrokerRepo;
         this.validationService = validationService;
         this.eventService = eventService;
-        this.userContextProvider = userContextProvider;
+        this.contextLoader = contextLoader;
         this.signalDeliveryRepo = signalDeliveryRepo;
         this.signalRepo = signalRepo;
         this.tradeManagementService = tradeManagementService;
+
+        this.fanOutQueries = Histogram.build()
+                .name("signal_fanout_queries")
+                .help("Repository and candle lookups made by one signal fan-out")
+                .buckets(2, 4, 6, 8, 10, 15, 25, 50, 100)
+                .register(registry);
+    }
+
+    public void start() {
+        log.info("Starting delivery recovery sweep (every {}s, claim lease {}s)",
+                SWEEP_INTERVAL_SECONDS, CLAIM_LEASE.toSeconds());
+        scheduler.scheduleAtFixedRate(
+                this::sweepDeliveries,
+                INITIAL_DELAY_SECONDS,
+                SWEEP_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
     }
 
     /**
-     * ✅ P0: Process pending signal deliveries and create trade intents.
+     * Fan out one published signal to trade intents.
+     *
+     * Claims the signal's CREATED deliveries (SKIP LOCKED, so concurrent
+     * callers and other nodes never process the same row), batch-loads the
+     * validation context, validates in parallel, then inserts all intents and
+     * consumes all deliveries in bulk.
+     *
+     * @param signal      Published signal
+     * @param userBrokers User-brokers the deliveries were created for; any
+     *                    other delivery's user-broker is loaded by ID
+     * @return Intents created (and whose deliveries were consumed)
      */
-    public List<TradeIntent> processPendingDeliveries() {
-        log.info("Processing pending signal deliveries");
-
-        // Query for pending deliveries (CREATED status)
-        List<SignalDelivery> pendingDeliveries = signalDeliveryRepo.findPendingDeliveries();
-
-        if (pendingDeliveries.isEmpty()) {
-            log.debug("No pending deliveries to process");
+    public List<TradeIntent> processSignalDeliveries(Signal signal, Collection<UserBroker> userBrokers) {
+        List<SignalDelivery> claimed = signalDeliveryRepo.claimForSignal(signal.signalId());
+        if (claimed.isEmpty()) {
+            log.debug("No deliveries to process for signal {}", signal.signalId());
             return List.of();
         }
 
-        log.info("Processing {} pending deliveries", pendingDeliveries.size());
-
-        // Validate in parallel
-        List<CompletableFuture<TradeIntent>> futures = new ArrayList<>();
+        log.info("Processing {} deliveries for signal {}", claimed.size(), signal.signalId());
+        int queries = 1; // claim
 
-        for (SignalDelivery delivery : pendingDeliveries) {
-            CompletableFuture<TradeIntent> future = CompletableFuture.supplyAsync(
-                    () -> processDelivery(delivery),
-                    executor);
-            futures.add(future);
-        }
-
-        // Collect results
-        List<TradeIntent> intents = new ArrayList<>();
-        for (CompletableFuture<TradeIntent> future : futures) {
-            try {
-                TradeIntent intent = future.get(5, TimeUnit.SECONDS);
-                if (intent != null) {
-                    intents.add(intent);
-                    emitIntentEvent(intent);
-                }
-            } catch (Exception e) {
-                log.error("Failed to process intent: {}", e.getMessage());
-            }
+        // Batch-load everything validation reads (fixed number of queries)
+        FanOutContext ctx;
+        try {
+            ctx = contextLoader.load(signal, userBrokers, claimed);
+        } catch (Exception e) {
+            // Transient (DB blip, pool timeout): leave the claims for the lease sweep to retry
+            log.error("Failed to load validation context for signal {}, {} deliveries left for retry: {}",
+                    signal.signalId(), claimed.size(), e.getMessage());
+            deliveriesLeftForRetry.addAndGet(claimed.size());
+            return List.of();
         }
+        queries += ctx.queries();
 
-        // Summary
-        long passed = intents.stream().filter(TradeIntent::validationPassed).count();
-        long failed = intents.size() - passed;
-        log.info("Delivery processing complete: {} passed, {} rejected", passed, failed);
-
-        return intents;
-    }
-
-    /**
-     * ✅ P0: Process a single delivery - validate, create intent, consume
-     * atomically.
-     */
-    private TradeIntent processDelivery(SignalDelivery delivery) {
-        String intentId = UUID.randomUUID().toString();
-
-        try {
-            // Get signal from repository
-            Signal signal = signalRepo.findById(delivery.signalId()).orElse(null);
-            if (signal == null) {
-                log.warn("Signal not found for delivery {}: {}", delivery.deliveryId(), delivery.signalId());
-                // Mark delivery as rejected
-                signalDeliveryRepo.updateStatus(delivery.deliveryId(), "REJECTED");
-                return null;
-            }
+        List<SignalDelivery> rejected = new ArrayList<>();
+        Map<SignalDelivery, TradeIntent> intents = new LinkedHashMap<>();
+        Map<SignalDelivery, CompletableFuture<TradeIntent>> validations = new LinkedHashMap<>();
 
-            // Get user-broker from repository
-            UserBroker userBroker = userBrokerRepo.findById(delivery.userBrokerId()).orElse(null);
+        for (SignalDelivery delivery : claimed) {
+            UserBroker userBroker = ctx.userBroker(delivery.userBrokerId());
             if (userBroker == null) {
                 log.warn("UserBroker not found for delivery {}: {}", delivery.deliveryId(), delivery.userBrokerId());
-                // Mark delivery as rejected
-                signalDeliveryRepo.updateStatus(delivery.deliveryId(), "REJECTED");
-                return null;
+                rejected.add(delivery);
+                continue;
             }
 
-            // Get user context
-            ValidationService.UserContext userContext = userContextProvider.apply(userBroker.userId());
+            ValidationService.UserContext userContext = ctx.userContext(userBroker.userId());
             if (userContext == null) {
                 log.warn("No user context for {}", userBroker.userId());
-                // Create rejected intent and mark delivery as consumed
-                TradeIntent rejectedIntent = createRejectedIntent(intentId, signal, userBroker, "No user context");
-                tradeIntentRepo.insert(rejectedIntent);
-                signalDeliveryRepo.consumeDelivery(delivery.deliveryId(), intentId);
-                return rejectedIntent;
+                intents.put(delivery, createRejectedIntent(
+                        UUID.randomUUID().toString(), signal, userBroker, "No user context"));
+                continue;
             }
 
-            // Validate
-            ValidationResult result = validationService.validate(signal, userBroker, userContext);
-
-            // Create intent
-            IntentStatus status = result.passed() ? IntentStatus.APPROVED : IntentStatus.REJECTED;
-
-            TradeIntent intent = new TradeIntent(
-                    intentId,
-                    signal.signalId(),
-                    userBroker.userId(),
-                    userBroker.brokerId(),
-                    userBroker.userBrokerId(),
-                    result.passed(),
-                    result.errors(),
-                    result.calculatedQty(),
-                    result.calculatedValue(),
-                    result.orderType(),
-                    result.limitPrice(),
-                    result.productType(),
-                    result.logImpact(),
-                    result.portfolioExposureAfter(),
-                    status,
-                    null, // orderId
-                    null, // tradeId
-                    Instant.now(),
-                    Instant.now(),
-                    null, // executedAt
-                    null, // errorCode
-                    null, // errorMessage
-                    null, // deletedAt
-                    1 // version
-            );
-
-            // Persist trade intent
-            tradeIntentRepo.insert(intent);
-
-            // ✅ P0: Consume delivery atomically (AV-5 enforcement)
-            boolean consumed = signalDeliveryRepo.consumeDelivery(delivery.deliveryId(), intentId);
-            if (!consumed) {
-                log.warn("Failed to consume delivery {} (race condition or already consumed)", delivery.deliveryId());
+            validations.put(delivery, CompletableFuture.supplyAsync(
+                    () -> validate(signal, userBroker, userContext, ctx),
+                    executor));
+        }
+
+        // Collect validations (one deadline for the batch)
+        try {
+            CompletableFuture.allOf(validations.values().toArray(new CompletableFuture[0]))
+                    .get(BATCH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Handled per delivery below
+        }
+        int timedOut = 0;
+        for (Map.Entry<SignalDelivery, CompletableFuture<TradeIntent>> e : validations.entrySet()) {
+            CompletableFuture<TradeIntent> future = e.getValue();
+            if (!future.isDone()) {
+                // Not this delivery's fault: left claimed for the lease sweep to retry
+                future.cancel(false);
+                log.error("Validation timed out for delivery {}, left for retry", e.getKey().deliveryId());
+                timedOut++;
+            } else if (future.isCompletedExceptionally()) {
+                log.error("Delivery processing error for {}: validation failed", e.getKey().deliveryId());
+                rejected.add(e.getKey());
+            } else {
+                intents.put(e.getKey(), future.join());
             }
+        }
+        deliveriesLeftForRetry.addAndGet(timedOut);
 
-            log.debug("Processed delivery {}: intent {} ({})",
-                    delivery.deliveryId(), intentId, result.passed() ? "APPROVED" : "REJECTED");
+        // Consume deliveries and persist their intents in one transaction (AV-5 enforcement)
+        Set<String> consumed;
+        try {
+            consumed = tradeIntentRepo.insertAndConsume(intents);
+            queries += 2;
+        } catch (Exception e) {
+            // Transient: nothing was consumed, so the intents' deliveries stay claimed for the lease sweep
+            log.error("Failed to insert intents for signal {}, {} deliveries left for retry: {}",
+                    signal.signalId(), intents.size(), e.getMessage());
+            deliveriesLeftForRetry.addAndGet(intents.size());
+            reject(rejected);
+            return List.of();
+        }
+        if (!rejected.isEmpty()) {
+            reject(rejected);
+            queries++;
+        }
+        recordFanOut(claimed.size(), queries);
+
+        List<TradeIntent> result = new ArrayList<>(intents.size());
+        for (Map.Entry<SignalDelivery, TradeIntent> e : intents.entrySet()) {
+            TradeIntent intent = e.getValue();
+            if (!consumed.contains(e.getKey().deliveryId())) {
+                log.warn("Failed to consume delivery {} (race condition or already consumed)",
+                        e.getKey().deliveryId());
+                continue;
+            }
+            result.add(intent);
+            emitIntentEvent(intent);
 
             // ✅ P0-E: Forward APPROVED intent to TradeManagementService
             if (intent.validationPassed()) {
                 tradeManagementService.onIntentApproved(intent);
             }
+        }
+
+        // Summary
+        long passed = result.stream().filter(TradeIntent::validationPassed).count();
+        log.info("Delivery processing complete for {}: {} passed, {} rejected, {} failed, {} left for retry ({} queries)",
+                signal.signalId(), passed, result.size() - passed, rejected.size(), timedOut, queries);
+
+        return result;
+    }
+
+    /**
+     * Recovery: release claims older than the lease, then process every
+     * signal that has CREATED deliveries older than the lease (left behind by
+     * a failed or dead fan-out). Each signal goes through
+     * {@link #processSignalDeliveries}, so rows are still claimed, never
+     * shared.
+     */
+    public List<TradeIntent> processPendingDeliveries() {
+        claimsReleased.addAndGet(signalDeliveryRepo.releaseExpiredClaims(CLAIM_LEASE));
+
+        Instant cutoff = Instant.now().minus(CLAIM_LEASE);
+        Set<String> signalIds = new LinkedHashSet<>();
+        for (SignalDelivery delivery : signalDeliveryRepo.findPendingDeliveries()) {
+            if ("CREATED".equals(delivery.status())
+                    && (delivery.createdAt() == null || delivery.createdAt().isBefore(cutoff))) {
+                signalIds.add(delivery.signalId());
+            }
+        }
+        if (signalIds.isEmpty()) {
+            return List.of();
+        }
+
+        Map<String, Signal> signals = new HashMap<>();
+        for (Signal signal : signalRepo.findByIds(signalIds)) {
+            signals.put(signal.signalId(), signal);
+        }
 
-            return intent;
+        List<TradeIntent> intents = new ArrayList<>();
+        for (String signalId : signalIds) {
+            Signal signal = signals.get(signalId);
+            if (signal == null) {
+                log.warn("Signal not found for pending deliveries: {}", signalId);
+                reject(signalDeliveryRepo.claimForSignal(signalId));
+                continue;
+            }
+            intents.addAll(processSignalDeliveries(signal, List.of()));
+        }
+        deliveriesRecovered.addAndGet(intents.size());
+        return intents;
+    }
 
+    private void sweepDeliveries() {
+        try {
+            List<TradeIntent> recovered = processPendingDeliveries();
+            if (!recovered.isEmpty()) {
+                log.warn("Recovery sweep created {} intents for deliveries no fan-out completed",
+                        recovered.size());
+            }
         } catch (Exception e) {
-            log.error("Delivery processing error for {}: {}", delivery.deliveryId(), e.getMessage());
-            // Mark delivery as rejected
-            signalDeliveryRepo.updateStatus(delivery.deliveryId(), "REJECTED");
-            return null;
+            log.error("Error in delivery recovery sweep: {}", e.getMessage(), e);
         }
     }
 
+    /**
+     * Validate one (signal, user-broker) pair into an APPROVED or REJECTED
+     * intent (not yet persisted).
+     */
+    private TradeIntent validate(Signal signal, UserBroker userBroker, ValidationService.UserContext userContext,
+            FanOutContext ctx) {
+        ValidationResult result = validationService.validate(signal, userBroker, userContext, ctx);
+        IntentStatus status = result.passed() ? IntentStatus.APPROVED : IntentStatus.REJECTED;
+
+        return new TradeIntent(
+                UUID.randomUUID().toString(),
+                signal.signalId(),
+                userBroker.userId(),
+                userBroker.brokerId(),
+                userBroker.userBrokerId(),
+                result.passed(),
+                result.errors(),
+                result.calculatedQty(),
+                result.calculatedValue(),
+                result.orderType(),
+                result.limitPrice(),
+                result.productType(),
+                result.logImpact(),
+                result.portfolioExposureAfter(),
+                status,
+                null, // orderId
+                null, // tradeId
+                Instant.now(),
+                Instant.now(),
+                null, // executedAt
+                null, // errorCode
+                null, // errorMessage
+                null, // deletedAt
+                1 // version
+        );
+    }
+
     private TradeIntent createRejectedIntent(String intentId, Signal signal, UserBroker userBroker, String error) {
         return new TradeIntent(
                 intentId,
@@ -259,9 +407,48 @@ public final class ExecutionOrchestrator {
     }
 
     /**
-     * Shutdown executor.
+     * Reject claimed deliveries. A failure here leaves them claimed: the
+     * lease sweep retries them and they are rejected again.
+     */
+    private void reject(List<SignalDelivery> deliveries) {
+        if (deliveries.isEmpty()) {
+            return;
+        }
+        try {
+            signalDeliveryRepo.updateStatusAll(deliveries, "REJECTED");
+        } catch (Exception e) {
+            log.error("Failed to reject {} deliveries, left for retry: {}", deliveries.size(), e.getMessage());
+            deliveriesLeftForRetry.addAndGet(deliveries.size());
+        }
+    }
+
+    private void recordFanOut(int deliveries, int queries) {
+        fanOuts.incrementAndGet();
+        fanOutDeliveries.addAndGet(deliveries);
+        lastFanOutQueries.set(queries);
+        maxFanOutQueries.accumulateAndGet(queries, Math::max);
+        totalFanOutQueries.addAndGet(queries);
+        fanOutQueries.observe(queries);
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("fanOuts", fanOuts.get());
+        m.put("fanOutDeliveries", fanOutDeliveries.get());
+        m.put("lastFanOutQueries", lastFanOutQueries.get());
+        m.put("maxFanOutQueries", maxFanOutQueries.get());
+        m.put("totalFanOutQueries", totalFanOutQueries.get());
+        m.put("claimsReleased", claimsReleased.get());
+        m.put("deliveriesRecovered", deliveriesRecovered.get());
+        m.put("deliveriesLeftForRetry", deliveriesLeftForRetry.get());
+        return m;
+    }
+
+    /**
+     * Shutdown the recovery sweep and the executor.
      */
     public void shutdown() {
+        scheduler.shutdownNow();
         executor.shutdown();
         try {
             if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -5,13 +5,20 @@ import in.annupaper.infrastructure.broker.BrokerAdapterFactory;
 import in.annupaper.application.port.output.*;
 import in.annupaper.application.port.input.TradeManagementService;
 import in.annupaper.service.core.EventService;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Histogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * ExitOrderExecutionService - Converts APPROVED exit intents into broker exit
@@ -27,6 +34,12 @@ public final class ExitOrderExecutionService {
     private final BrokerAdapterFactory brokerFactory;
     private final EventService eventService;
 
+    // A broker that does not answer must not hold the trade's partition
+    private static final Duration PLACE_ORDER_TIMEOUT = Duration.ofSeconds(10);
+
+    // Receipt of the tick that crossed the exit price → placeOrder call
+    private final Histogram tickToOrderSent;
+
     public ExitOrderExecutionService(
             ExitIntentRepository exitIntentRepo,
             TradeRepository tradeRepo,
@@ -34,15 +47,49 @@ public final class ExitOrderExecutionService {
             UserBrokerRepository userBrokerRepo,
             BrokerAdapterFactory brokerFactory,
             EventService eventService) {
+        this(exitIntentRepo, tradeRepo, tradeManagementService, userBrokerRepo, brokerFactory, eventService,
+                new CollectorRegistry());
+    }
+
+    public ExitOrderExecutionService(
+            ExitIntentRepository exitIntentRepo,
+            TradeRepository tradeRepo,
+            TradeManagementService tradeManagementService,
+            UserBrokerRepository userBrokerRepo,
+            BrokerAdapterFactory brokerFactory,
+            EventService eventService,
+            CollectorRegistry registry) {
         this.exitIntentRepo = exitIntentRepo;
         this.tradeRepo = tradeRepo;
         this.tradeManagementService = tradeManagementService;
         this.userBrokerRepo = userBrokerRepo;
         this.brokerFactory = brokerFactory;
         this.eventService = eventService;
+
+        this.tickToOrderSent = Histogram.build()
+                .name("exit_tick_to_order_sent_seconds")
+                .help("Receipt of the exit-crossing tick to broker placeOrder call, by path (push | sweep) and exit reason")
+                .labelNames("path", "exit_reason")
+                .buckets(0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30)
+                .register(registry);
     }
 
     public CompletableFuture<ExitIntent> executeExitIntent(ExitIntent intent) {
+        return executeExitIntent(intent, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Execute an approved exit intent.
+     *
+     * @param intent     APPROVED exit intent
+     * @param tickReceivedAt When the tick that crossed the exit price was
+     *                       received (push path); null for intents picked up
+     *                       by the sweep, measured from intent creation instead
+     * @param executor   Where placement runs (the push path passes the trade's
+     *                   execution partition)
+     */
+    public CompletableFuture<ExitIntent> executeExitIntent(ExitIntent intent, Instant tickReceivedAt,
+            Executor executor) {
         if (!intent.isApproved()) {
             log.warn("Cannot execute non-approved exit intent: {} (status: {})",
                     intent.exitIntentId(), intent.status());
@@ -101,9 +148,21 @@ public final class ExitOrderExecutionService {
 
                 BrokerAdapter.BrokerOrderRequest orderRequest = buildExitOrderRequest(intent, trade);
 
+                observeTickToOrderSent(intent, tickReceivedAt);
                 CompletableFuture<BrokerAdapter.OrderResult> orderFuture = broker.placeOrder(orderRequest);
 
-                BrokerAdapter.OrderResult result = orderFuture.get();
+                BrokerAdapter.OrderResult result;
+                try {
+                    result = orderFuture.get(PLACE_ORDER_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // The order may have reached the broker: failing the intent
+                    // could let a second exit through. Left PLACED, the
+                    // reconciler times it out.
+                    orderFuture.cancel(true);
+                    log.error("No broker response for exit intent {} within {}s, left PLACED for reconciliation",
+                            intent.exitIntentId(), PLACE_ORDER_TIMEOUT.toSeconds());
+                    return intent;
+                }
 
                 if (result.success()) {
                     exitIntentRepo.updateBrokerOrderId(intent.exitIntentId(), result.orderId());
@@ -130,7 +189,16 @@ public final class ExitOrderExecutionService {
                 markExitIntentFailed(intent.exitIntentId(), "EXECUTION_ERROR", e.getMessage());
                 throw new RuntimeException("Failed to execute exit intent", e);
             }
-        });
+        }, executor);
+    }
+
+    private void observeTickToOrderSent(ExitIntent intent, Instant tickReceivedAt) {
+        Instant from = tickReceivedAt != null ? tickReceivedAt : intent.createdAt();
+        if (from == null) {
+            return;
+        }
+        tickToOrderSent.labels(tickReceivedAt != null ? "push" : "sweep", String.valueOf(intent.exitReason()))
+                .observe(Duration.between(from, Instant.now()).toNanos() / 1e9);
     }
 
     private BrokerAdapter.BrokerOrderRequest buildExitOrderRequest(ExitIntent intent, Trade trade) {
@@ -5,42 +5,60 @@ import in.annupaper.application.port.output.ExitIntentRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
- * ExitOrderProcessor - Polls for APPROVED exit intents and places exit orders.
+ * ExitOrderProcessor - Places exit orders for APPROVED exit intents.
+ *
+ * PUSH PATH:
+ * SignalManagementService hands each approved intent to submit() as soon as it
+ * is persisted. Placement runs on an execution stage partitioned by tradeId
+ * (an ExitSignalCoordinator of its own), so exit orders for one trade stay
+ * sequential while a slow broker call never blocks exit detection.
+ *
+ * SAFETY-NET SWEEP:
+ * APPROVED intents the push path missed (restart, rejected hand-off, broker
+ * error before the APPROVED → PLACED transition) are picked up by a periodic
+ * sweep. Intents younger than the grace period are left to the push path. The
+ * DB transition (place_exit_order) is atomic, so a push and a sweep racing on
+ * the same intent place at most one order.
  */
 public final class ExitOrderProcessor {
     private static final Logger log = LoggerFactory.getLogger(ExitOrderProcessor.class);
 
     private final ExitIntentRepository exitIntentRepo;
     private final ExitOrderExecutionService exitOrderExecutionService;
+    private final ExitSignalCoordinator executionStage;
     private final ScheduledExecutorService scheduler;
 
-    private static final int POLL_INTERVAL_SECONDS = 5;
+    private static final int SWEEP_INTERVAL_SECONDS = 30;
     private static final int INITIAL_DELAY_SECONDS = 10;
+    private static final Duration SWEEP_GRACE = Duration.ofSeconds(10);
 
     public ExitOrderProcessor(
             ExitIntentRepository exitIntentRepo,
             ExitOrderExecutionService exitOrderExecutionService) {
         this.exitIntentRepo = exitIntentRepo;
         this.exitOrderExecutionService = exitOrderExecutionService;
+        this.executionStage = new ExitSignalCoordinator("exit-order-execution");
         this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "exit-order-processor");
+            Thread t = new Thread(r, "exit-order-sweep");
             t.setDaemon(true);
             return t;
         });
     }
 
     public void start() {
-        log.info("Starting ExitOrderProcessor (polling every {}s)", POLL_INTERVAL_SECONDS);
+        log.info("Starting ExitOrderProcessor (push, sweep every {}s)", SWEEP_INTERVAL_SECONDS);
         scheduler.scheduleAtFixedRate(
-                this::processApprovedExitIntents,
+                this::sweepApprovedExitIntents,
                 INITIAL_DELAY_SECONDS,
-                POLL_INTERVAL_SECONDS,
+                SWEEP_INTERVAL_SECONDS,
                 TimeUnit.SECONDS);
     }
 
@@ -55,39 +73,65 @@ public final class ExitOrderProcessor {
             scheduler.shutdownNow();
             Thread.currentThread().interrupt();
         }
+        executionStage.shutdown();
     }
 
-    private void processApprovedExitIntents() {
+    /**
+     * Hand an approved exit intent to its trade's execution partition.
+     *
+     * @param intent         APPROVED exit intent (already persisted)
+     * @param tickReceivedAt When the tick that crossed the exit price was
+     *                       received (tick-to-order latency)
+     */
+    public void submit(ExitIntent intent, Instant tickReceivedAt) {
+        try {
+            executionStage.execute(intent.tradeId(), () -> execute(intent, tickReceivedAt));
+        } catch (Exception e) {
+            // Partition shut down or saturated: the sweep picks the intent up
+            log.warn("Exit intent {} not handed off ({}), leaving it to the sweep",
+                    intent.exitIntentId(), e.getMessage());
+        }
+    }
+
+    private void execute(ExitIntent intent, Instant tickReceivedAt) {
+        try {
+            // Runs on the partition thread: the partition is the execution stage
+            exitOrderExecutionService.executeExitIntent(intent, tickReceivedAt, Runnable::run)
+                    .exceptionally(ex -> {
+                        log.error("Failed to execute exit intent {}: {}",
+                                intent.exitIntentId(), ex.getMessage());
+                        return null;
+                    });
+
+        } catch (Exception e) {
+            log.error("Error processing exit intent {}: {}",
+                    intent.exitIntentId(), e.getMessage(), e);
+        }
+    }
+
+    void sweepApprovedExitIntents() {
         try {
             List<ExitIntent> approvedIntents = exitIntentRepo.findPendingIntents();
 
+            Instant cutoff = Instant.now().minus(SWEEP_GRACE);
             List<ExitIntent> intentsToProcess = approvedIntents.stream()
                     .filter(ExitIntent::isApproved)
+                    .filter(intent -> intent.createdAt() == null || intent.createdAt().isBefore(cutoff))
                     .toList();
 
             if (intentsToProcess.isEmpty()) {
                 return;
             }
 
-            log.info("Processing {} approved exit intents", intentsToProcess.size());
+            log.warn("Sweep found {} approved exit intents not placed by the push path",
+                    intentsToProcess.size());
 
             for (ExitIntent intent : intentsToProcess) {
-                try {
-                    exitOrderExecutionService.executeExitIntent(intent)
-                            .exceptionally(ex -> {
-                                log.error("Failed to execute exit intent {}: {}",
-                                        intent.exitIntentId(), ex.getMessage());
-                                return null;
-                            });
-
-                } catch (Exception e) {
-                    log.error("Error processing exit intent {}: {}",
-                            intent.exitIntentId(), e.getMessage(), e);
-                }
+                executionStage.execute(intent.tradeId(), () -> execute(intent, null));
             }
 
         } catch (Exception e) {
-            log.error("Error in exit order processing loop: {}", e.getMessage(), e);
+            log.error("Error in exit order sweep: {}", e.getMessage(), e);
         }
     }
 }
@@ -37,20 +37,31 @@ public final class ExitSignalCoordinator {
     private final int partitionCount;
 
     public ExitSignalCoordinator() {
+        this("exit-signal-coordinator");
+    }
+
+    /**
+     * Coordinator with its own partition threads, e.g. a downstream stage
+     * (exit order placement) that must keep the same per-trade ordering
+     * without blocking exit detection.
+     *
+     * @param threadPrefix Partition thread name prefix
+     */
+    public ExitSignalCoordinator(String threadPrefix) {
         this.partitionCount = calculateOptimalPartitions();
         this.partitions = new ExecutorService[partitionCount];
 
         for (int i = 0; i < partitionCount; i++) {
             final int partitionIndex = i;  // Lambda requires final variable
             this.partitions[i] = Executors.newSingleThreadExecutor(runnable -> {
-                Thread t = new Thread(runnable, "exit-signal-coordinator-" + partitionIndex);
+                Thread t = new Thread(runnable, threadPrefix + "-" + partitionIndex);
                 t.setDaemon(true);
                 return t;
             });
         }
 
-        log.info("ExitSignalCoordinator initialized with {} partitions (CPUs: {})",
-            partitionCount, Runtime.getRuntime().availableProcessors());
+        log.info("ExitSignalCoordinator [{}] initialized with {} partitions (CPUs: {})",
+            threadPrefix, partitionCount, Runtime.getRuntime().availableProcessors());
     }
 
     /**
@@ -11,21 +11,25 @@ import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.time.Duration;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * ✅ P0: ExitSignalService - Monitor open trades and generate exit signals on
  * every tick.
  *
  * POSITION_TRACKING_LIVE enforcement:
- * - Queries TradeRepository for open trades (not HashMap)
- * - Each tick queries DB for symbol's open trades
- * - No in-memory trade state (DB is single source of truth)
+ * - Tick path reads the OpenPositionBook (maintained by TMS state transitions
+ * and a periodic DB resync), never the DB
+ * - Exit/trailing/target checks go through the book's PriceTriggerIndex: a
+ * tick only touches the price levels it crossed
+ * - When a condition fires, the trade is re-read from the DB and re-checked
+ * before anything is emitted (DB stays the single source of truth)
  */
 public final class ExitSignalService implements BrokerAdapter.TickListener {
     private static final Logger log = LoggerFactory.getLogger(ExitSignalService.class);
@@ -36,56 +40,114 @@ public final class ExitSignalService implements BrokerAdapter.TickListener {
     private final SignalManagementService signalManagementService;
     private final TradeManagementService tradeManagementService;
     private final MtfConfigService mtfConfigService;
+    private final OpenPositionBook openPositions;
+
+    // Min interval between DB confirmations for the same trade while a
+    // condition keeps firing (exit in flight / blocked by brick filter)
+    private static final long CONFIRM_COOLDOWN_MS = 1000;
+    private static final long CONFIG_REFRESH_MS = 10_000;
+
+    private final Map<String, Long> lastConfirmMillis = new ConcurrentHashMap<>();
+    private volatile MtfGlobalConfig cachedConfig;
+    private volatile long configLoadedAtMillis;
+
+    // Metrics
+    private final AtomicLong ticksEvaluated = new AtomicLong(0);
+    private final AtomicLong conditionsFired = new AtomicLong(0);
+    private final AtomicLong dbConfirmations = new AtomicLong(0);
+    private final AtomicLong staleRemovals = new AtomicLong(0);
 
     public ExitSignalService(
             TradeRepository tradeRepo,
+            OpenPositionBook openPositions,
             BrickMovementTracker brickTracker,
             EventService eventService,
             SignalManagementService signalManagementService,
             TradeManagementService tradeManagementService,
             MtfConfigService mtfConfigService) {
         this.tradeRepo = tradeRepo;
+        this.openPositions = openPositions;
         this.brickTracker = brickTracker;
         this.eventService = eventService;
         this.signalManagementService = signalManagementService;
         this.tradeManagementService = tradeManagementService;
         this.mtfConfigService = mtfConfigService;
+        // Closed/rejected trades never fire again: drop their cooldown entry
+        openPositions.addRemovalListener(lastConfirmMillis::remove);
     }
 
     /**
      * ✅ P0: Process incoming tick and check exit conditions.
      *
-     * Queries TradeRepository for open trades (not HashMap).
-     * DB is single source of truth for position tracking.
+     * In-memory only until a condition fires; then the trade is confirmed
+     * against the DB.
      */
     @Override
     public void onTick(Tick tick) {
-        String symbol = tick.symbol();
-        BigDecimal price = tick.lastPrice();
+        onTick(tick, System.nanoTime());
+    }
+
+    /**
+     * @param receivedNanos When the dispatcher received the tick (carried to
+     *                      the exit candidate for tick-to-order latency)
+     */
+    @Override
+    public void onTick(Tick tick, long receivedNanos) {
+        MtfGlobalConfig config = trailingConfig();
 
-        // ✅ P0: Query DB for open trades on this symbol (not HashMap!)
-        List<Trade> openTrades = tradeRepo.findBySymbol(symbol).stream()
-                .filter(Trade::isOpen)
-                .toList();
+        long pricePaise = tick.lastPricePaise();
+        if (!Paise.isPresent(pricePaise)) {
+            return;
+        }
+        ticksEvaluated.incrementAndGet();
 
-        if (openTrades.isEmpty()) {
-            return; // No open trades for this symbol
+        // Only levels this tick crossed (null when none, the common case)
+        long nowMillis = System.currentTimeMillis();
+        List<PriceTriggerIndex.Fired> fired = openPositions.triggers().evaluate(tick.symbol(), pricePaise, nowMillis);
+        if (fired == null) {
+            return;
+        }
+
+        for (PriceTriggerIndex.Fired f : fired) {
+            if (f.kind() == PriceTriggerIndex.Kind.TRAIL) {
+                // Trailing activation or new extreme: ratchet (index updated in place)
+                if (config != null && config.useTrailingStop()) {
+                    applyTrailing(f.position(), pricePaise, config, !f.position().trailingActive());
+                }
+            } else {
+                conditionsFired.incrementAndGet();
+                confirmAndCheckExit(f.position(), pricePaise, nowMillis, receivedNanos);
+            }
         }
+    }
 
-        // Update trailing stops and check exit conditions for each open trade
-        for (Trade trade : openTrades) {
-            // Update trailing stop if enabled in config
-            updateTrailingStopIfNeeded(trade, price);
+    /**
+     * A condition fired in memory: re-read the trade and run the full check.
+     */
+    private void confirmAndCheckExit(OpenPositionBook.OpenPosition position, long pricePaise, long nowMillis,
+            long receivedNanos) {
+        String tradeId = position.tradeId();
+        Long last = lastConfirmMillis.get(tradeId);
+        if (last != null && nowMillis - last < CONFIRM_COOLDOWN_MS) {
+            return;
+        }
+        lastConfirmMillis.put(tradeId, nowMillis);
 
-            // Check exit conditions
-            checkExitConditions(trade, price);
+        dbConfirmations.incrementAndGet();
+        Trade trade = tradeRepo.findById(tradeId).orElse(null);
+        if (trade == null || !trade.isOpen()) {
+            staleRemovals.incrementAndGet();
+            openPositions.remove(tradeId);
+            return;
         }
+
+        checkExitConditions(trade, Paise.toBigDecimal(pricePaise), receivedNanos);
     }
 
     /**
      * Check all exit conditions for a trade.
      */
-    private void checkExitConditions(Trade trade, BigDecimal currentPrice) {
+    private void checkExitConditions(Trade trade, BigDecimal currentPrice, long receivedNanos) {
         ExitReason exitReason = null;
 
         // 1. Check trailing stop (highest priority if active)
@@ -122,7 +184,7 @@ public final class ExitSignalService implements BrokerAdapter.TickListener {
             }
 
             if (brickTracker.shouldAllowExit(trade.symbol(), direction, currentPrice)) {
-                emitExitSignal(trade, currentPrice, exitReason);
+                emitExitSignal(trade, currentPrice, exitReason, receivedNanos);
             } else {
                 log.debug("Exit blocked by brick movement filter: {} @ {}",
                         trade.symbol(), currentPrice);
@@ -186,96 +248,50 @@ public final class ExitSignalService implements BrokerAdapter.TickListener {
         }
 
         // TODO: Make max holding days configurable
-        // For now, use 30 days as default
-        int maxHoldingDays = 30;
-        Duration maxHoldTime = Duration.ofDays(maxHoldingDays);
-
-        return now.isAfter(entryTime.plus(maxHoldTime));
+        // For now, use 30 days as default (shared with the book's in-memory check)
+        return now.isAfter(entryTime.plus(OpenPositionBook.MAX_HOLD));
     }
 
     /**
-     * Update trailing stop if conditions are met.
-     * Tracks highest price since entry and activates/updates trailing stop per
-     * config.
+     * Activate or ratchet a trailing stop.
+     * Decided in memory; the book (and its trigger index) is updated
+     * immediately and TMS persists the change on the trade's partition.
      */
-    private void updateTrailingStopIfNeeded(Trade trade, BigDecimal currentPrice) {
-        // Get global config to check if trailing stops are enabled
-        MtfGlobalConfig config = mtfConfigService.getGlobalConfig().orElse(null);
-        if (config == null || !config.useTrailingStop()) {
-            return; // Trailing stops not enabled
-        }
-
-        BigDecimal entryPrice = trade.entryPrice();
-        if (entryPrice == null || entryPrice.compareTo(BigDecimal.ZERO) == 0) {
-            return; // No entry price yet
-        }
-
-        // Parse direction
-        Direction direction;
-        try {
-            direction = Direction.valueOf(trade.direction());
-        } catch (Exception e) {
-            log.warn("Invalid direction in trade {}: {}, skipping trailing stop",
-                    trade.tradeId(), trade.direction());
-            return;
-        }
-
-        // Calculate favorable movement since entry
-        BigDecimal favorableMovementPct;
-        if (direction == Direction.BUY) {
-            // LONG: favorable = (current - entry) / entry
-            favorableMovementPct = currentPrice.subtract(entryPrice)
-                    .divide(entryPrice, 4, RoundingMode.HALF_UP)
-                    .multiply(BigDecimal.valueOf(100));
+    private void applyTrailing(OpenPositionBook.OpenPosition position, long pricePaise,
+            MtfGlobalConfig config, boolean activate) {
+        BigDecimal currentPrice = Paise.toBigDecimal(pricePaise);
+        Direction direction = position.isLong() ? Direction.BUY : Direction.SELL;
+        BigDecimal stopPrice = calculateTrailingStopPrice(currentPrice, direction, config.trailingStopDistancePct());
+        long stopPaise = Paise.of(stopPrice);
+
+        openPositions.updateTrailing(position.tradeId(), pricePaise, stopPaise);
+        tradeManagementService.updateTrailingStop(position.tradeId(), currentPrice, stopPrice, activate);
+
+        if (activate) {
+            log.info("✅ Trailing stop ACTIVATED: {} @ {}", position.tradeId(), currentPrice);
         } else {
-            // SHORT: favorable = (entry - current) / entry
-            favorableMovementPct = entryPrice.subtract(currentPrice)
-                    .divide(entryPrice, 4, RoundingMode.HALF_UP)
-                    .multiply(BigDecimal.valueOf(100));
+            log.debug("Trailing stop updated: {} highest={} stop={}", position.tradeId(), currentPrice, stopPrice);
         }
+    }
 
-        // Check if we should activate trailing stop
-        if (!trade.trailingActive()) {
-            // Check if activation threshold reached
-            if (favorableMovementPct.compareTo(config.trailingStopActivationPct()) >= 0) {
-                // Activate trailing stop
-                BigDecimal stopPrice = calculateTrailingStopPrice(currentPrice, direction,
-                        config.trailingStopDistancePct());
-                tradeManagementService.updateTrailingStop(trade.tradeId(), currentPrice, stopPrice, true);
-                log.info("✅ Trailing stop ACTIVATED: {} @ {} (favorable move: {}%)",
-                        trade.tradeId(), currentPrice, favorableMovementPct);
+    /**
+     * Global config for trailing stops, refreshed at most every
+     * CONFIG_REFRESH_MS so the tick path does not query it per tick.
+     */
+    private MtfGlobalConfig trailingConfig() {
+        long now = System.currentTimeMillis();
+        if (now - configLoadedAtMillis >= CONFIG_REFRESH_MS) {
+            configLoadedAtMillis = now;
+            try {
+                MtfGlobalConfig config = mtfConfigService.getGlobalConfig().orElse(null);
+                cachedConfig = config;
+                openPositions.configureTrailing(config != null && config.useTrailingStop(),
+                        config != null ? config.trailingStopActivationPct() : null);
+            } catch (Exception e) {
+                log.warn("Failed to refresh MTF config for trailing stops: {}", e.getMessage());
             }
-            return; // Not active yet, no need to update
-        }
-
-        // Trailing stop is already active - check if we need to update highest price
-        BigDecimal currentHighest = trade.trailingHighestPrice();
-        if (currentHighest == null) {
-            // Initialize highest price
-            BigDecimal stopPrice = calculateTrailingStopPrice(currentPrice, direction,
-                    config.trailingStopDistancePct());
-            tradeManagementService.updateTrailingStop(trade.tradeId(), currentPrice, stopPrice, false);
-            return;
-        }
-
-        // Check if current price is new highest (direction-aware)
-        boolean isNewHighest;
-        if (direction == Direction.BUY) {
-            // LONG: higher price is better
-            isNewHighest = currentPrice.compareTo(currentHighest) > 0;
-        } else {
-            // SHORT: lower price is better
-            isNewHighest = currentPrice.compareTo(currentHighest) < 0;
-        }
-
-        if (isNewHighest) {
-            // Update trailing stop with new highest
-            BigDecimal stopPrice = calculateTrailingStopPrice(currentPrice, direction,
-                    config.trailingStopDistancePct());
-            tradeManagementService.updateTrailingStop(trade.tradeId(), currentPrice, stopPrice, false);
-            log.debug("Trailing stop updated: {} highest={} stop={}",
-                    trade.tradeId(), currentPrice, stopPrice);
         }
+        return cachedConfig;
     }
 
     /**
@@ -324,7 +340,7 @@ public final class ExitSignalService implements BrokerAdapter.TickListener {
      * Delegates to SignalManagementService.onExitDetected()
      * SMS handles: episode generation, persistence, event emission
      */
-    private void emitExitSignal(Trade trade, BigDecimal exitPrice, ExitReason exitReason) {
+    private void emitExitSignal(Trade trade, BigDecimal exitPrice, ExitReason exitReason, long receivedNanos) {
         // ✅ V010: Use persisted direction from trade
         Direction direction;
         try {
@@ -354,6 +370,7 @@ public final class ExitSignalService implements BrokerAdapter.TickListener {
         brickTracker.recordExit(trade.symbol(), direction, exitPrice);
 
         // Convert to ExitCandidate and delegate to SMS
+        Instant now = Instant.now();
         ExitCandidate candidate = new ExitCandidate(
                 trade.tradeId(),
                 trade.symbol(),
@@ -366,7 +383,8 @@ public final class ExitSignalService implements BrokerAdapter.TickListener {
                 null, // lowestSinceEntry - TODO: implement for SHORT trades
                 trade.trailingStopPrice(), // trailingStopPrice - from trade
                 trade.trailingActive(), // trailingActive - from trade
-                Instant.now());
+                now,
+                now.minusNanos(System.nanoTime() - receivedNanos)); // tick receive time
 
         // Delegate to SMS - it handles everything (episode generation, persistence,
         // events)
@@ -376,6 +394,19 @@ public final class ExitSignalService implements BrokerAdapter.TickListener {
                 trade.symbol(), direction, trade.tradeId(), exitPrice, exitReason);
     }
 
+    /**
+     * Exit evaluation metrics.
+     */
+    public Map<String, Long> getMetrics() {
+        return Map.of(
+                "ticksEvaluated", ticksEvaluated.get(),
+                "conditionsFired", conditionsFired.get(),
+                "dbConfirmations", dbConfirmations.get(),
+                "staleRemovals", staleRemovals.get(),
+                "openPositions", (long) openPositions.size(),
+                "symbolsWithPositions", (long) openPositions.symbolCount());
+    }
+
     @Override
     public void onError(Throwable error) {
         log.error("Error in exit signal service tick stream: {}", error.getMessage(), error);
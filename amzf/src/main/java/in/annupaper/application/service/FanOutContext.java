@@ -0,0 +1,48 @@
+package in.annupaper.application.service;
+
+import in.annupaper.domain.model.Portfolio;
+import in.annupaper.domain.model.Signal;
+import in.annupaper.domain.model.Trade;
+import in.annupaper.domain.model.UserBroker;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything validation needs for one signal's fan-out, loaded once in bulk
+ * by {@link ValidationContextLoader} and shared (read-only) by all of the
+ * signal's deliveries.
+ *
+ * @param signal        Signal being fanned out
+ * @param userBrokers   userBrokerId → user-broker
+ * @param userContexts  userId → context (absent: user has no portfolio)
+ * @param portfolios    portfolioId → portfolio
+ * @param openTrades    portfolioId → OPEN trades
+ * @param sizingInputs  Config, daily ATR and LTF candles for the symbol
+ * @param queries       Repository/candle lookups made to load this context
+ */
+public record FanOutContext(
+        Signal signal,
+        Map<String, UserBroker> userBrokers,
+        Map<String, ValidationService.UserContext> userContexts,
+        Map<String, Portfolio> portfolios,
+        Map<String, List<Trade>> openTrades,
+        PositionSizingService.SymbolInputs sizingInputs,
+        int queries) {
+
+    public UserBroker userBroker(String userBrokerId) {
+        return userBrokers.get(userBrokerId);
+    }
+
+    public ValidationService.UserContext userContext(String userId) {
+        return userContexts.get(userId);
+    }
+
+    public Portfolio portfolio(String portfolioId) {
+        return portfolioId == null ? null : portfolios.get(portfolioId);
+    }
+
+    public List<Trade> openTrades(String portfolioId) {
+        return openTrades.getOrDefault(portfolioId, List.of());
+    }
+}
@@ -8,14 +8,37 @@ import in.annupaper.application.port.output.*;
 import in.annupaper.service.MarketDataCache;
 import in.annupaper.service.candle.SessionClock;
 
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import io.prometheus.client.Summary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
 
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * MTF Signal Generator - Tick-based Near Real-Time Signal Analysis
@@ -26,13 +49,21 @@ import java.util.concurrent.ConcurrentHashMap;
  * 2. Market is open (NSE 9:15 AM - 3:30 PM IST)
  * 3. Sufficient candle data exists for MTF analysis
  *
- * Also provides scheduled fallback analysis every minute during market hours.
+ * Also provides scheduled fallback analysis every minute during market hours:
+ * the watchlist snapshot is split into shards swept in parallel on virtual
+ * threads (MTF_SWEEP_PARALLELISM at a time) up to a deadline
+ * (MTF_SWEEP_DEADLINE_MS); symbols not reached are carried over to the front
+ * of the next sweep.
  *
  * Flow:
  * 1. Receive tick event
  * 2. Check if price moved minimum threshold from last analysis
- * 3. If yes, analyze MTF confluence using SignalService
- * 4. If triple buy confluence found, generate and broadcast signal
+ * 3. If yes, queue the symbol for analysis on the analysis pool
+ * (MTF_ANALYSIS_THREADS); while an analysis is queued, later ticks only
+ * replace its price, so a symbol has at most one pending analysis and it
+ * always uses the latest price
+ * 4. Analyze MTF confluence using SignalService
+ * 5. If triple buy confluence found, generate and broadcast signal
  */
 public final class MtfSignalGenerator implements BrokerAdapter.TickListener {
     private static final Logger log = LoggerFactory.getLogger(MtfSignalGenerator.class);
@@ -42,56 +73,264 @@ public final class MtfSignalGenerator implements BrokerAdapter.TickListener {
     private final MarketDataCache marketDataCache;
     private final in.annupaper.application.port.output.UserBrokerRepository userBrokerRepo;
 
-    // Minimum price movement (%) before re-analyzing (default: 0.3%)
-    private static final BigDecimal MIN_PRICE_MOVE_PCT = new BigDecimal("0.003");
+    // Minimum price movement (basis points) before re-analyzing (0.3%)
+    private static final long MIN_PRICE_MOVE_BPS = 30;
 
-    // Track last analyzed price per symbol to avoid excessive analysis
-    private final ConcurrentHashMap<String, BigDecimal> lastAnalyzedPrice = new ConcurrentHashMap<>();
+    // Tick-path state per symbol (last analyzed price, pending analysis)
+    private final ConcurrentHashMap<String, SymbolState> symbolStates = new ConcurrentHashMap<>();
+
+    private final ExecutorService analysisPool;
 
     // Track last analysis time to avoid duplicate signals within same minute
-    private Instant lastAnalysisTime = Instant.EPOCH;
+    private volatile Instant lastAnalysisTime = Instant.EPOCH;
+
+    // Scheduled sweep tuning
+    private static final long SWEEP_GRACE_MS = 2_000;
+    private final int parallelism = Math.max(1,
+            Integer.parseInt(System.getenv().getOrDefault("MTF_SWEEP_PARALLELISM", "8").trim()));
+    private final int shardSize = Math.max(1,
+            Integer.parseInt(System.getenv().getOrDefault("MTF_SWEEP_SHARD_SIZE", "25").trim()));
+    private final long sweepDeadlineMs = Math.max(1_000,
+            Long.parseLong(System.getenv().getOrDefault("MTF_SWEEP_DEADLINE_MS", "50000").trim()));
+    private final long watchlistRefreshMs = Math.max(0,
+            Long.parseLong(System.getenv().getOrDefault("MTF_WATCHLIST_REFRESH_MS", "300000").trim()));
+
+    private final ExecutorService sweepExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("mtf-sweep-", 0).factory());
+
+    private record WatchlistSnapshot(List<String> symbols, long loadedAtMillis) {
+    }
+
+    private volatile WatchlistSnapshot watchlist;
+
+    // Symbols not reached before the deadline, in sweep order (guarded by this)
+    private final Set<String> carryOver = new LinkedHashSet<>();
+
+    // Metrics
+    private final Histogram tickAnalysisDuration;
+    private final Histogram tickQueueWait;
+    private final Counter ticksCoalesced;
+    private final Counter symbolAnalyses;
+    private final Counter symbolCoalesced;
+    private final Gauge symbolMaxLatency;
+    private final Counter tickErrorsTotal;
+    private final AtomicLong tickAnalyses = new AtomicLong(0);
+    private final AtomicLong tickCoalesced = new AtomicLong(0);
+    private final AtomicLong tickErrors = new AtomicLong(0);
+    private final Summary sweepDuration;
+    private final Histogram shardDuration;
+    private final Counter symbolsCarriedOver;
+    private final AtomicLong sweeps = new AtomicLong(0);
+    private final AtomicLong lastSweepMs = new AtomicLong(0);
+    private final AtomicLong lastSweepSymbols = new AtomicLong(0);
+    private final AtomicLong lastSweepCarriedOver = new AtomicLong(0);
+    private final AtomicLong lastSweepSlowestShardMs = new AtomicLong(0);
 
     public MtfSignalGenerator(
             SignalService signalService,
             WatchlistRepository watchlistRepo,
             MarketDataCache marketDataCache,
             in.annupaper.application.port.output.UserBrokerRepository userBrokerRepo) {
+        this(signalService, watchlistRepo, marketDataCache, userBrokerRepo, new CollectorRegistry());
+    }
+
+    public MtfSignalGenerator(
+            SignalService signalService,
+            WatchlistRepository watchlistRepo,
+            MarketDataCache marketDataCache,
+            in.annupaper.application.port.output.UserBrokerRepository userBrokerRepo,
+            CollectorRegistry registry) {
         this.signalService = signalService;
         this.watchlistRepo = watchlistRepo;
         this.marketDataCache = marketDataCache;
         this.userBrokerRepo = userBrokerRepo;
+
+        int analysisThreads = Math.max(1,
+                Integer.parseInt(System.getenv().getOrDefault("MTF_ANALYSIS_THREADS", "4").trim()));
+        AtomicInteger threadSeq = new AtomicInteger();
+        this.analysisPool = Executors.newFixedThreadPool(analysisThreads, r -> {
+            Thread t = new Thread(r, "mtf-analysis-" + threadSeq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.tickAnalysisDuration = Histogram.build()
+                .name("mtf_signal_tick_analysis_seconds")
+                .help("Tick-driven MTF signal analysis duration in seconds")
+                .buckets(0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5)
+                .register(registry);
+
+        this.tickQueueWait = Histogram.build()
+                .name("mtf_signal_tick_queue_seconds")
+                .help("Time a tick-driven MTF signal analysis waited for an analysis thread in seconds")
+                .buckets(0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5)
+                .register(registry);
+
+        this.ticksCoalesced = Counter.build()
+                .name("mtf_signal_tick_coalesced_total")
+                .help("Ticks that replaced the price of an already pending MTF signal analysis")
+                .register(registry);
+
+        this.symbolAnalyses = Counter.build()
+                .name("mtf_signal_tick_symbol_analyses_total")
+                .help("Tick-driven MTF signal analyses of a symbol")
+                .labelNames("symbol")
+                .register(registry);
+
+        this.symbolCoalesced = Counter.build()
+                .name("mtf_signal_tick_symbol_coalesced_total")
+                .help("Ticks of a symbol coalesced into an already pending MTF signal analysis")
+                .labelNames("symbol")
+                .register(registry);
+
+        this.symbolMaxLatency = Gauge.build()
+                .name("mtf_signal_tick_symbol_analysis_max_seconds")
+                .help("Slowest tick-driven MTF signal analysis of a symbol in seconds")
+                .labelNames("symbol")
+                .register(registry);
+
+        this.tickErrorsTotal = Counter.build()
+                .name("mtf_signal_tick_errors_total")
+                .help("Tick-driven MTF signal analyses that failed")
+                .register(registry);
+
+        this.sweepDuration = Summary.build()
+                .name("mtf_signal_sweep_duration_seconds")
+                .help("Scheduled MTF signal sweep duration in seconds")
+                .quantile(0.5, 0.01)
+                .quantile(0.9, 0.01)
+                .quantile(0.99, 0.001)
+                .register(registry);
+
+        this.shardDuration = Histogram.build()
+                .name("mtf_signal_sweep_shard_seconds")
+                .help("Scheduled MTF signal sweep shard duration in seconds")
+                .buckets(0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30)
+                .register(registry);
+
+        this.symbolsCarriedOver = Counter.build()
+                .name("mtf_signal_sweep_carried_over_total")
+                .help("Symbols not reached before the sweep deadline and carried over to the next sweep")
+                .register(registry);
+
+        Gauge.build()
+                .name("mtf_signal_last_sweep_symbols")
+                .help("Symbols in the last scheduled MTF signal sweep")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return lastSweepSymbols.get();
+                    }
+                });
+        Gauge.build()
+                .name("mtf_signal_last_sweep_slowest_shard_seconds")
+                .help("Slowest shard of the last scheduled MTF signal sweep in seconds")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return lastSweepSlowestShardMs.get() / 1e3;
+                    }
+                });
     }
 
     /**
      * Tick listener - Near real-time signal analysis on incoming ticks.
-     * Analyzes symbol if price moved minimum threshold from last analysis.
+     * Queues the symbol for analysis if price moved minimum threshold from last
+     * analysis; never blocks on the analysis itself.
      */
     @Override
     public void onTick(Tick tick) {
-        String symbol = tick.symbol();
-        BigDecimal currentPrice = tick.lastPrice();
-        Instant timestamp = tick.timestamp();
+        long pricePaise = tick.lastPricePaise();
 
         // Skip if outside market hours
-        if (!SessionClock.isWithinSession(timestamp)) {
+        if (pricePaise == Paise.NONE || !SessionClock.isWithinSession(tick.timestamp())) {
             return;
         }
 
+        SymbolState state = symbolStates.computeIfAbsent(tick.symbol(), this::newSymbolState);
+
         // Check if price moved enough from last analysis
-        BigDecimal lastPrice = lastAnalyzedPrice.get(symbol);
-        if (lastPrice != null) {
-            BigDecimal priceChange = currentPrice.subtract(lastPrice).abs();
-            BigDecimal priceChangePct = priceChange.divide(lastPrice, 6, RoundingMode.HALF_UP);
+        long lastPaise = state.lastAnalyzedPaise;
+        if (lastPaise != Paise.NONE
+                && Math.abs(pricePaise - lastPaise) * 10_000 < Math.abs(lastPaise) * MIN_PRICE_MOVE_BPS) {
+            // Price hasn't moved enough, skip analysis
+            return;
+        }
 
-            if (priceChangePct.compareTo(MIN_PRICE_MOVE_PCT) < 0) {
-                // Price hasn't moved enough, skip analysis
-                return;
+        // Update last analyzed price
+        state.lastAnalyzedPaise = pricePaise;
+
+        // Coalesce into the pending analysis, or schedule one
+        if (state.pendingPaise.get() == Paise.NONE) {
+            state.pendingSinceNanos = System.nanoTime();
+        }
+        if (state.pendingPaise.getAndSet(pricePaise) != Paise.NONE) {
+            state.coalesced.incrementAndGet();
+            state.coalescedCounter.inc();
+            tickCoalesced.incrementAndGet();
+            ticksCoalesced.inc();
+            return;
+        }
+        schedule(state);
+    }
+
+    /**
+     * State for a symbol's first tick; its per-symbol series are registered
+     * here, once.
+     */
+    private SymbolState newSymbolState(String symbol) {
+        SymbolState state = new SymbolState(symbol, symbolAnalyses.labels(symbol), symbolCoalesced.labels(symbol));
+        symbolMaxLatency.setChild(new Gauge.Child() {
+            @Override
+            public double get() {
+                return state.maxLatencyNanos.get() / 1e9;
             }
+        }, symbol);
+        return state;
+    }
+
+    private void schedule(SymbolState state) {
+        if (!state.scheduled.compareAndSet(false, true)) {
+            return; // the running analysis picks the new price up when it finishes
         }
+        try {
+            analysisPool.execute(() -> runTickAnalysis(state));
+        } catch (RejectedExecutionException e) {
+            state.scheduled.set(false);
+        }
+    }
 
-        // Update last analyzed price
-        lastAnalyzedPrice.put(symbol, currentPrice);
+    /**
+     * Analyze the symbol's pending price, then re-queue the symbol (behind
+     * other symbols) if another tick arrived meanwhile.
+     */
+    private void runTickAnalysis(SymbolState state) {
+        long since = state.pendingSinceNanos;
+        long pricePaise = state.pendingPaise.getAndSet(Paise.NONE);
+        try {
+            if (pricePaise != Paise.NONE) {
+                long start = System.nanoTime();
+                tickQueueWait.observe(Math.max(0, start - since) / 1e9);
+                analyzeTick(state.symbol, Paise.toBigDecimal(pricePaise));
+                long elapsed = System.nanoTime() - start;
+                tickAnalysisDuration.observe(elapsed / 1e9);
+                state.analyses.incrementAndGet();
+                state.analysesCounter.inc();
+                state.lastLatencyNanos = elapsed;
+                state.maxLatencyNanos.accumulateAndGet(elapsed, Math::max);
+                tickAnalyses.incrementAndGet();
+            }
+        } finally {
+            state.scheduled.set(false);
+            if (state.pendingPaise.get() != Paise.NONE) {
+                schedule(state);
+            }
+        }
+    }
 
+    private void analyzeTick(String symbol, BigDecimal currentPrice) {
         // Analyze and generate signal if confluence found
         try {
             Signal signal = signalService.analyzeAndGenerateSignal(symbol, currentPrice);
@@ -104,6 +343,8 @@ public final class MtfSignalGenerator implements BrokerAdapter.TickListener {
             }
 
         } catch (Exception e) {
+            tickErrors.incrementAndGet();
+            tickErrorsTotal.inc();
             log.error("[MTF SIGNAL TICK] Error analyzing {}: {}", symbol, e.getMessage());
         }
     }
@@ -134,81 +375,259 @@ public final class MtfSignalGenerator implements BrokerAdapter.TickListener {
 
         lastAnalysisTime = now;
 
-        log.info("[MTF SIGNAL] ════════════════════════════════════════════════════════");
-        log.info("[MTF SIGNAL] Starting signal analysis for all symbols");
-        log.info("[MTF SIGNAL] ════════════════════════════════════════════════════════");
-
         try {
-            // Get data broker to retrieve watchlist
-            java.util.Optional<in.annupaper.domain.model.UserBroker> dataBrokerOpt = userBrokerRepo.findDataBroker();
-            if (dataBrokerOpt.isEmpty()) {
-                log.debug("[MTF SIGNAL] No data broker configured, skipping");
-                return;
+            sweep(now.toEpochMilli() + sweepDeadlineMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("[MTF SIGNAL] Fatal error during signal analysis: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * One sweep over the watchlist snapshot: symbols carried over from the
+     * previous sweep first, then the rest, in shards pulled by at most
+     * {@code parallelism} virtual threads. Symbols not started by
+     * {@code deadlineMillis} are carried over to the next sweep.
+     */
+    synchronized void sweep(long deadlineMillis) throws InterruptedException {
+        List<String> symbols = watchlistSnapshot();
+        if (symbols.isEmpty()) {
+            log.info("[MTF SIGNAL] No enabled watchlist symbols found");
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+
+        // Carried-over symbols first; drop any that left the watchlist
+        Set<String> ordered = new LinkedHashSet<>(carryOver);
+        ordered.retainAll(new HashSet<>(symbols));
+        int carriedIn = ordered.size();
+        ordered.addAll(symbols);
+        carryOver.clear();
+
+        Queue<List<String>> shards = new ConcurrentLinkedQueue<>();
+        List<String> all = new ArrayList<>(ordered);
+        for (int i = 0; i < all.size(); i += shardSize) {
+            shards.add(all.subList(i, Math.min(i + shardSize, all.size())));
+        }
+
+        log.info("[MTF SIGNAL] Sweeping {} symbols ({} carried over) in {} shards",
+                all.size(), carriedIn, shards.size());
+
+        SweepStats stats = new SweepStats();
+        Set<String> started = ConcurrentHashMap.newKeySet();
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int w = 0; w < Math.min(parallelism, shards.size()); w++) {
+            workers.add(() -> {
+                List<String> shard;
+                while ((shard = shards.poll()) != null) {
+                    runShard(shard, deadlineMillis, stats, started);
+                }
+                return null;
+            });
+        }
+
+        // Workers stop starting symbols at the deadline; the grace period only
+        // bounds a symbol already in analysis
+        long waitMs = Math.max(0, deadlineMillis - System.currentTimeMillis()) + SWEEP_GRACE_MS;
+        for (Future<Void> f : sweepExecutor.invokeAll(workers, waitMs, TimeUnit.MILLISECONDS)) {
+            if (f.isCancelled()) {
+                log.warn("[MTF SIGNAL] Sweep worker cancelled {}ms past the deadline", SWEEP_GRACE_MS);
+            }
+        }
+
+        // Everything not started is carried over, in sweep order
+        for (String symbol : all) {
+            if (!started.contains(symbol)) {
+                carryOver.add(symbol);
             }
+        }
 
-            String userBrokerId = dataBrokerOpt.get().userBrokerId();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        sweepDuration.observe(seconds);
+        symbolsCarriedOver.inc(carryOver.size());
+        sweeps.incrementAndGet();
+        lastSweepMs.set((long) (seconds * 1000));
+        lastSweepSymbols.set(all.size());
+        lastSweepCarriedOver.set(carryOver.size());
+        lastSweepSlowestShardMs.set(stats.slowestShardNanos.get() / 1_000_000);
+
+        if (carryOver.isEmpty()) {
+            log.info("[MTF SIGNAL] Sweep complete in {}ms: {} analyzed, {} signals generated, {} skipped",
+                    lastSweepMs.get(), stats.analyzed.get(), stats.generated.get(), stats.skipped.get());
+        } else {
+            log.warn("[MTF SIGNAL] Sweep hit deadline after {}ms: {} analyzed, {} signals generated, {} skipped, "
+                    + "{} carried over to next sweep (slowest shard {}ms)",
+                    lastSweepMs.get(), stats.analyzed.get(), stats.generated.get(), stats.skipped.get(),
+                    carryOver.size(), lastSweepSlowestShardMs.get());
+        }
+    }
 
-            // Get all enabled watchlist symbols for data broker
-            List<Watchlist> watchlists = watchlistRepo.findByUserBrokerId(userBrokerId);
-            List<String> symbols = watchlists.stream()
-                    .filter(w -> w.enabled())
-                    .map(w -> w.symbol())
-                    .distinct()
-                    .toList();
+    private void runShard(List<String> shard, long deadlineMillis, SweepStats stats, Set<String> started) {
+        if (System.currentTimeMillis() >= deadlineMillis) {
+            return;
+        }
+        long shardStart = System.nanoTime();
+        for (String symbol : shard) {
+            if (System.currentTimeMillis() >= deadlineMillis || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            started.add(symbol);
+            analyzeScheduled(symbol, stats);
+        }
+        long elapsed = System.nanoTime() - shardStart;
+        shardDuration.observe(elapsed / 1e9);
+        stats.slowestShardNanos.accumulateAndGet(elapsed, Math::max);
+    }
 
-            if (symbols.isEmpty()) {
-                log.info("[MTF SIGNAL] No enabled watchlist symbols found");
+    private void analyzeScheduled(String symbol, SweepStats stats) {
+        try {
+            // Get current price from market data cache
+            MarketDataCache.TickData tickData = marketDataCache.getLatestTick(symbol);
+            if (tickData == null) {
+                log.debug("[MTF SIGNAL] No price data for {}, skipping", symbol);
+                stats.skipped.incrementAndGet();
                 return;
             }
 
-            log.info("[MTF SIGNAL] Analyzing {} symbols for MTF confluence", symbols.size());
+            BigDecimal currentPrice = tickData.lastPrice();
+            stats.analyzed.incrementAndGet();
 
-            int signalsGenerated = 0;
-            int symbolsAnalyzed = 0;
-            int symbolsSkipped = 0;
+            // Analyze and generate signal if confluence found
+            Signal signal = signalService.analyzeAndGenerateSignal(symbol, currentPrice);
 
-            for (String symbol : symbols) {
-                try {
-                    // Get current price from market data cache
-                    MarketDataCache.TickData tickData = marketDataCache.getLatestTick(symbol);
+            if (signal != null) {
+                stats.generated.incrementAndGet();
+                log.info("[MTF SIGNAL] ✓ Signal generated for {} @ {}: {} (score={})",
+                        symbol, currentPrice, signal.signalId(), signal.confluenceScore());
+            } else {
+                log.debug("[MTF SIGNAL] No confluence found for {} @ {}", symbol, currentPrice);
+            }
+        } catch (Exception e) {
+            log.error("[MTF SIGNAL] Error analyzing {}: {}", symbol, e.getMessage());
+            stats.skipped.incrementAndGet();
+        }
+    }
 
-                    if (tickData == null || tickData.lastPrice() == null) {
-                        log.debug("[MTF SIGNAL] No price data for {}, skipping", symbol);
-                        symbolsSkipped++;
-                        continue;
-                    }
+    /**
+     * Enabled, distinct watchlist symbols of the data broker, reloaded at most
+     * every {@code watchlistRefreshMs}. A failed reload keeps the previous
+     * snapshot.
+     */
+    private List<String> watchlistSnapshot() {
+        WatchlistSnapshot s = watchlist;
+        long now = System.currentTimeMillis();
+        if (s != null && now - s.loadedAtMillis() < watchlistRefreshMs) {
+            return s.symbols();
+        }
 
-                    BigDecimal currentPrice = tickData.lastPrice();
+        try {
+            Optional<UserBroker> dataBrokerOpt = userBrokerRepo.findDataBroker();
+            if (dataBrokerOpt.isEmpty()) {
+                log.debug("[MTF SIGNAL] No data broker configured, skipping");
+                return List.of();
+            }
 
-                    symbolsAnalyzed++;
+            List<String> symbols = watchlistRepo.findByUserBrokerId(dataBrokerOpt.get().userBrokerId()).stream()
+                    .filter(w -> w.enabled())
+                    .map(w -> w.symbol())
+                    .distinct()
+                    .toList();
+            watchlist = new WatchlistSnapshot(symbols, now);
+            return symbols;
+        } catch (RuntimeException e) {
+            if (s == null) {
+                throw e;
+            }
+            log.warn("[MTF SIGNAL] Watchlist reload failed, using snapshot of {} symbols: {}",
+                    s.symbols().size(), e.getMessage());
+            return s.symbols();
+        }
+    }
 
-                    // Analyze and generate signal if confluence found
-                    Signal signal = signalService.analyzeAndGenerateSignal(symbol, currentPrice);
+    /**
+     * Drop the cached watchlist so the next sweep reloads it.
+     */
+    public void invalidateWatchlist() {
+        watchlist = null;
+    }
 
-                    if (signal != null) {
-                        signalsGenerated++;
-                        log.info("[MTF SIGNAL] ✓ Signal generated for {} @ {}: {} (score={})",
-                                symbol, currentPrice, signal.signalId(), signal.confluenceScore());
-                    } else {
-                        log.debug("[MTF SIGNAL] No confluence found for {} @ {}", symbol, currentPrice);
-                    }
+    /**
+     * Symbols that missed the last sweep's deadline, in the order the next
+     * sweep will start with.
+     */
+    synchronized List<String> carriedOver() {
+        return List.copyOf(carryOver);
+    }
 
-                } catch (Exception e) {
-                    log.error("[MTF SIGNAL] Error analyzing {}: {}", symbol, e.getMessage());
-                    symbolsSkipped++;
-                }
-            }
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("tickAnalyses", tickAnalyses.get());
+        m.put("tickCoalesced", tickCoalesced.get());
+        m.put("tickErrors", tickErrors.get());
+        m.put("sweeps", sweeps.get());
+        m.put("lastSweepMs", lastSweepMs.get());
+        m.put("lastSweepSymbols", lastSweepSymbols.get());
+        m.put("lastSweepCarriedOver", lastSweepCarriedOver.get());
+        m.put("lastSweepSlowestShardMs", lastSweepSlowestShardMs.get());
+        return m;
+    }
 
-            log.info("[MTF SIGNAL] ════════════════════════════════════════════════════════");
-            log.info("[MTF SIGNAL] Analysis complete: {} analyzed, {} signals generated, {} skipped",
-                    symbolsAnalyzed, signalsGenerated, symbolsSkipped);
-            log.info("[MTF SIGNAL] ════════════════════════════════════════════════════════");
+    /**
+     * Tick-driven analysis metrics per symbol: analyses, coalesced ticks, last
+     * and max analysis latency (µs). Analyses, coalesced ticks and max latency
+     * are also exported per symbol on the registry.
+     */
+    public Map<String, Map<String, Long>> getSymbolMetrics() {
+        Map<String, Map<String, Long>> bySymbol = new TreeMap<>();
+        for (SymbolState state : symbolStates.values()) {
+            Map<String, Long> m = new LinkedHashMap<>();
+            m.put("analyses", state.analyses.get());
+            m.put("coalesced", state.coalesced.get());
+            m.put("lastLatencyUs", state.lastLatencyNanos / 1_000);
+            m.put("maxLatencyUs", state.maxLatencyNanos.get() / 1_000);
+            bySymbol.put(state.symbol, m);
+        }
+        return bySymbol;
+    }
 
-        } catch (Exception e) {
-            log.error("[MTF SIGNAL] Fatal error during signal analysis: {}", e.getMessage(), e);
+    /**
+     * Tick path of one symbol. lastAnalyzedPaise is written by the tick
+     * thread; pendingPaise holds the price of the queued analysis (NONE if
+     * none) and scheduled is set while it is queued or running.
+     */
+    private static final class SymbolState {
+        final String symbol;
+        volatile long lastAnalyzedPaise = Paise.NONE;
+        final AtomicLong pendingPaise = new AtomicLong(Paise.NONE);
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+        volatile long pendingSinceNanos;
+
+        final AtomicLong analyses = new AtomicLong(0);
+        final AtomicLong coalesced = new AtomicLong(0);
+        volatile long lastLatencyNanos;
+        final AtomicLong maxLatencyNanos = new AtomicLong(0);
+        final Counter.Child analysesCounter;
+        final Counter.Child coalescedCounter;
+
+        SymbolState(String symbol, Counter.Child analysesCounter, Counter.Child coalescedCounter) {
+            this.symbol = symbol;
+            this.analysesCounter = analysesCounter;
+            this.coalescedCounter = coalescedCounter;
         }
     }
 
+    /**
+     * Counters of one sweep, shared by its workers.
+     */
+    private static final class SweepStats {
+        final AtomicInteger analyzed = new AtomicInteger();
+        final AtomicInteger generated = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicLong slowestShardNanos = new AtomicLong();
+    }
+
     /**
      * Force immediate signal analysis for a specific symbol (for testing or manual
      * trigger).
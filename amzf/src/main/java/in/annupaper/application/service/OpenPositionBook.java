@@ -0,0 +1,265 @@
+package in.annupaper.application.service;
+
+import in.annupaper.domain.model.Paise;
+import in.annupaper.domain.model.Trade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * OpenPositionBook - In-memory open-position book for exit evaluation.
+ *
+ * PURPOSE:
+ * ExitSignalService evaluates exit/trailing/target conditions on every tick.
+ * The book holds a snapshot of every OPEN trade keyed by symbol, with the
+ * price levels pre-converted to paise, so a tick is a map lookup plus a few
+ * long comparisons. Symbols without open trades cost one map miss and no JDBC.
+ *
+ * STRUCTURE:
+ * - Map<symbol, OpenPosition[]> (immutable arrays, replaced on change)
+ * - Map<tradeId, symbol> for removal
+ * - Map<tradeId, lastChangeNanos> so a periodic resync cannot undo a state
+ * transition that happened while the resync query was running
+ *
+ * LIFECYCLE (mirrors ActiveTradeIndex):
+ * 1. Seeded with ActiveTradeIndex on startup (TradeManagementServiceImpl)
+ * 2. Upserted on OPEN / trailing-stop updates
+ * 3. Removed on EXITING/CLOSED/REJECTED
+ * 4. Resynced periodically from DB (state changes made outside TMS)
+ *
+ * Each symbol's positions are mirrored into a PriceTriggerIndex (sorted
+ * stop/target/trailing levels) so a tick only touches crossed levels.
+ *
+ * The book is a cache: a condition that fires is confirmed against the DB
+ * before any exit is emitted.
+ */
+public final class OpenPositionBook {
+    private static final Logger log = LoggerFactory.getLogger(OpenPositionBook.class);
+
+    private static final OpenPosition[] NONE = new OpenPosition[0];
+
+    // Max holding period; ExitSignalService's time-based exit uses the same value
+    static final Duration MAX_HOLD = Duration.ofDays(30);
+
+    private final Map<String, OpenPosition[]> bySymbol = new ConcurrentHashMap<>();
+    private final Map<String, String> tradeToSymbol = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastChange = new ConcurrentHashMap<>();
+    private final PriceTriggerIndex triggers = new PriceTriggerIndex();
+    private final List<Consumer<String>> removalListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Open positions for a symbol (never null; do not modify).
+     */
+    public OpenPosition[] forSymbol(String symbol) {
+        OpenPosition[] positions = bySymbol.get(symbol);
+        return positions != null ? positions : NONE;
+    }
+
+    /**
+     * Called with the tradeId whenever a trade leaves the book (close, reject,
+     * resync), so per-trade state kept alongside the book can be dropped.
+     */
+    public void addRemovalListener(Consumer<String> listener) {
+        removalListeners.add(listener);
+    }
+
+    /**
+     * Sorted price levels over the book's positions.
+     */
+    public PriceTriggerIndex triggers() {
+        return triggers;
+    }
+
+    /**
+     * Trailing-stop settings for the trigger index; rebuilds all levels when
+     * they change.
+     */
+    public synchronized void configureTrailing(boolean enabled, BigDecimal activationPct) {
+        if (triggers.configureTrailing(enabled, activationPct)) {
+            bySymbol.forEach(triggers::set);
+        }
+    }
+
+    /**
+     * Apply a trade state: OPEN trades are added/replaced, anything else removed.
+     */
+    public synchronized void upsert(Trade trade) {
+        lastChange.put(trade.tradeId(), System.nanoTime());
+        if (!trade.isOpen()) {
+            removeInternal(trade.tradeId());
+            return;
+        }
+        put(OpenPosition.of(trade));
+    }
+
+    /**
+     * Remove a trade (EXITING/CLOSED/REJECTED or no longer found).
+     */
+    public synchronized void remove(String tradeId) {
+        lastChange.put(tradeId, System.nanoTime());
+        removeInternal(tradeId);
+    }
+
+    /**
+     * Optimistically record a trailing-stop change decided on the tick path,
+     * ahead of the persisted update coming back through {@link #upsert}.
+     */
+    public synchronized void updateTrailing(String tradeId, long highestPaise, long stopPaise) {
+        String symbol = tradeToSymbol.get(tradeId);
+        if (symbol == null) {
+            return;
+        }
+        for (OpenPosition p : forSymbol(symbol)) {
+            if (p.tradeId().equals(tradeId)) {
+                OpenPosition updated = p.withTrailing(highestPaise, stopPaise);
+                replaceInArray(updated);
+                triggers.replace(updated); // in place, no symbol rebuild
+                return;
+            }
+        }
+    }
+
+    /**
+     * Start marker for {@link #rebuild}; take it before querying the DB.
+     */
+    public long beginRebuild() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Replace the book with the DB's OPEN trades. Trades changed through
+     * upsert/remove after {@code startedAt} keep their in-memory state.
+     */
+    public synchronized void rebuild(List<Trade> openTrades, long startedAt) {
+        Set<String> seen = new HashSet<>();
+        for (Trade trade : openTrades) {
+            seen.add(trade.tradeId());
+            if (!changedSince(trade.tradeId(), startedAt)) {
+                put(OpenPosition.of(trade));
+            }
+        }
+        for (String tradeId : new ArrayList<>(tradeToSymbol.keySet())) {
+            if (!seen.contains(tradeId) && !changedSince(tradeId, startedAt)) {
+                removeInternal(tradeId);
+            }
+        }
+        lastChange.values().removeIf(t -> t - startedAt < 0);
+
+        log.debug("OpenPositionBook resynced: {} symbols, {} open trades", bySymbol.size(), tradeToSymbol.size());
+    }
+
+    public int size() {
+        return tradeToSymbol.size();
+    }
+
+    public int symbolCount() {
+        return bySymbol.size();
+    }
+
+    private boolean changedSince(String tradeId, long startedAt) {
+        Long t = lastChange.get(tradeId);
+        return t != null && t - startedAt >= 0;
+    }
+
+    private void put(OpenPosition position) {
+        String previousSymbol = tradeToSymbol.put(position.tradeId(), position.symbol());
+        if (previousSymbol != null && !previousSymbol.equals(position.symbol())) {
+            drop(previousSymbol, position.tradeId());
+        }
+        if (!replaceInArray(position)) {
+            OpenPosition[] current = forSymbol(position.symbol());
+            OpenPosition[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = position;
+            bySymbol.put(position.symbol(), next);
+        }
+        triggers.set(position.symbol(), forSymbol(position.symbol()));
+    }
+
+    private boolean replaceInArray(OpenPosition position) {
+        OpenPosition[] current = forSymbol(position.symbol());
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].tradeId().equals(position.tradeId())) {
+                OpenPosition[] next = current.clone();
+                next[i] = position;
+                bySymbol.put(position.symbol(), next);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeInternal(String tradeId) {
+        String symbol = tradeToSymbol.remove(tradeId);
+        if (symbol != null) {
+            drop(symbol, tradeId);
+        }
+        for (Consumer<String> listener : removalListeners) {
+            listener.accept(tradeId);
+        }
+    }
+
+    private void drop(String symbol, String tradeId) {
+        OpenPosition[] current = forSymbol(symbol);
+        OpenPosition[] next = Arrays.stream(current)
+                .filter(p -> !p.tradeId().equals(tradeId))
+                .toArray(OpenPosition[]::new);
+        if (next.length == 0) {
+            bySymbol.remove(symbol);
+        } else if (next.length != current.length) {
+            bySymbol.put(symbol, next);
+        }
+        triggers.set(symbol, next);
+    }
+
+    /**
+     * Exit-relevant snapshot of an OPEN trade. Absent levels are
+     * {@link Paise#NONE}.
+     */
+    public record OpenPosition(
+            Trade trade,
+            boolean isLong,
+            long entryPaise,
+            long targetPaise,
+            long floorPaise,
+            long ceilingPaise,
+            boolean trailingActive,
+            long trailingHighestPaise,
+            long trailingStopPaise,
+            long maxHoldUntilMillis) {
+
+        static OpenPosition of(Trade trade) {
+            return new OpenPosition(
+                    trade,
+                    !"SELL".equals(trade.direction()),
+                    Paise.of(trade.entryPrice()),
+                    Paise.of(trade.exitTargetPrice()),
+                    Paise.of(trade.entryEffectiveFloor()),
+                    Paise.of(trade.entryEffectiveCeiling()),
+                    trade.trailingActive(),
+                    Paise.of(trade.trailingHighestPrice()),
+                    Paise.of(trade.trailingStopPrice()),
+                    trade.entryTimestamp() != null
+                            ? trade.entryTimestamp().plus(MAX_HOLD).toEpochMilli()
+                            : Long.MAX_VALUE);
+        }
+
+        OpenPosition withTrailing(long highestPaise, long stopPaise) {
+            return new OpenPosition(trade, isLong, entryPaise, targetPaise, floorPaise, ceilingPaise,
+                    true, highestPaise, stopPaise, maxHoldUntilMillis);
+        }
+
+        public String tradeId() {
+            return trade.tradeId();
+        }
+
+        public String symbol() {
+            return trade.symbol();
+        }
+    }
+}
@@ -4,14 +4,16 @@ import in.annupaper.domain.model.*;
 import in.annupaper.application.port.output.MtfConfigRepository;
 import in.annupaper.application.port.output.PortfolioRepository;
 import in.annupaper.application.port.output.TradeRepository;
+import in.annupaper.service.candle.CandleColumns;
 import in.annupaper.service.candle.CandleStore;
-import in.annupaper.service.signal.ATRCalculator;
 import in.annupaper.service.signal.MtfPositionSizer;
 import in.annupaper.service.signal.PortfolioValueTracker;
+import in.annupaper.service.signal.SizingKernels;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -76,23 +78,57 @@ public final class PositionSizingService {
             BigDecimal kelly,
             BigDecimal confluenceMultiplier,
             String portfolioId) {
+        Portfolio portfolio;
+        List<Trade> openTrades;
         try {
-            // 1. Get MTF config
-            MtfGlobalConfig config = mtfConfigRepo.getGlobalConfig()
-                    .orElseThrow(() -> new RuntimeException("MTF global config not found"));
-
-            // 2. Get portfolio
-            Portfolio portfolio = portfolioRepo.findById(portfolioId)
+            // 1. Get portfolio
+            portfolio = portfolioRepo.findById(portfolioId)
                     .orElseThrow(() -> new RuntimeException("Portfolio not found: " + portfolioId));
 
-            BigDecimal capSym = calculateSymbolCapital(portfolio, config);
-
-            // 3. Get all open trades for this portfolio
-            List<Trade> openTrades = tradeRepo.findByPortfolioId(portfolioId).stream()
+            // 2. Get all open trades for this portfolio
+            openTrades = tradeRepo.findByPortfolioId(portfolioId).stream()
                     .filter(t -> "OPEN".equals(t.status()))
                     .toList();
+        } catch (Exception e) {
+            log.error("[POSITION SIZING ERROR] {}: {}", symbol, e.getMessage(), e);
+            return createRejectedResult(zonePrice, "SIZING_ERROR: " + e.getMessage());
+        }
+
+        return calculatePositionSize(symbol, zonePrice, effectiveFloor, effectiveCeiling, pWin, pFill, kelly,
+                confluenceMultiplier, portfolio, openTrades, loadSymbolInputs(symbol));
+    }
+
+    /**
+     * Calculate position size for a new entry from preloaded inputs (no
+     * lookups), e.g. shared by every portfolio in one signal's fan-out.
+     *
+     * @param portfolio  Portfolio for this user
+     * @param openTrades OPEN trades of that portfolio
+     * @param inputs     Config, ATR and LTF candles for the symbol
+     * @return PositionSizeResult with final quantity and diagnostics
+     */
+    public MtfPositionSizer.PositionSizeResult calculatePositionSize(
+            String symbol,
+            BigDecimal zonePrice,
+            BigDecimal effectiveFloor,
+            BigDecimal effectiveCeiling,
+            BigDecimal pWin,
+            BigDecimal pFill,
+            BigDecimal kelly,
+            BigDecimal confluenceMultiplier,
+            Portfolio portfolio,
+            List<Trade> openTrades,
+            SymbolInputs inputs) {
+        try {
+            // 1. MTF config
+            MtfGlobalConfig config = inputs.config();
+            if (config == null) {
+                throw new RuntimeException("MTF global config not found");
+            }
+
+            BigDecimal capSym = calculateSymbolCapital(portfolio, config);
 
-            // 4. Get existing position for this symbol
+            // 2. Get existing position for this symbol
             Optional<Trade> existingTrade = openTrades.stream()
                     .filter(t -> t.symbol().equals(symbol))
                     .findFirst();
@@ -100,22 +136,15 @@ public final class PositionSizingService {
             int existingQty = existingTrade.map(Trade::entryQty).orElse(0);
             BigDecimal existingAvg = existingTrade.map(Trade::entryPrice).orElse(BigDecimal.ZERO);
 
-            // 5. Fetch daily candles and calculate ATR
-            List<HistoricalCandle> dailyCandles = fetchDailyCandles(symbol);
-            BigDecimal atr = calculateATR(dailyCandles);
+            // 3. Daily ATR
+            BigDecimal atr = inputs.atr();
 
             if (atr == null || atr.compareTo(BigDecimal.ZERO) <= 0) {
                 log.warn("[POSITION SIZING REJECTED] {}: No ATR available", symbol);
                 return createRejectedResult(zonePrice, "NO_ATR_DATA");
             }
 
-            // 6. Fetch LTF candles for velocity calculation
-            List<HistoricalCandle> ltfCandles = fetchLTFCandles(symbol, config.rangeLookbackBars());
-
-            // 7. Calculate portfolio values
-            Map<String, BigDecimal> currentPrices = new HashMap<>();
-            currentPrices.put(symbol, zonePrice);
-
+            // 4. Calculate portfolio values
             BigDecimal currentPortfolioValue = PortfolioValueTracker.calculateCurrentValueForSymbol(
                     portfolio,
                     openTrades,
@@ -126,7 +155,7 @@ public final class PositionSizingService {
             // TODO: Track actual peak in database
             BigDecimal peakPortfolioValue = portfolio.totalCapital();
 
-            // 8. Call MtfPositionSizer
+            // 5. Call MtfPositionSizer (LTF candles for velocity)
             MtfPositionSizer.PositionSizeResult result = MtfPositionSizer.calculatePositionSize(
                     zonePrice,
                     effectiveFloor,
@@ -140,7 +169,7 @@ public final class PositionSizingService {
                     existingAvg,
                     openTrades,
                     symbol,
-                    ltfCandles,
+                    inputs.ltfCandles(),
                     atr,
                     currentPortfolioValue,
                     peakPortfolioValue,
@@ -160,6 +189,41 @@ public final class PositionSizingService {
         }
     }
 
+    /**
+     * Per-symbol sizing inputs, independent of the portfolio.
+     *
+     * @param config     MTF global config (null if missing)
+     * @param atr        Daily ATR (null if insufficient data)
+     * @param ltfCandles LTF candles for velocity (may be empty)
+     * @param lookups    Config/candle lookups made to load them
+     */
+    public record SymbolInputs(
+            MtfGlobalConfig config,
+            BigDecimal atr,
+            List<HistoricalCandle> ltfCandles,
+            int lookups) {
+    }
+
+    /**
+     * Load config, daily ATR and LTF candles for a symbol.
+     */
+    public SymbolInputs loadSymbolInputs(String symbol) {
+        MtfGlobalConfig config;
+        try {
+            config = mtfConfigRepo.getGlobalConfig().orElse(null);
+        } catch (Exception e) {
+            log.warn("[POSITION SIZING] Failed to load MTF config: {}", e.getMessage());
+            config = null;
+        }
+        if (config == null) {
+            return new SymbolInputs(null, null, List.of(), 1);
+        }
+
+        BigDecimal atr = calculateATR(fetchDailyCandles(symbol));
+        List<HistoricalCandle> ltfCandles = fetchLTFCandles(symbol, config.rangeLookbackBars());
+        return new SymbolInputs(config, atr, ltfCandles, 3);
+    }
+
     /**
      * Calculate position size for averaging down (adding to existing position).
      *
@@ -278,10 +342,10 @@ public final class PositionSizingService {
      */
     private List<HistoricalCandle> fetchDailyCandles(String symbol) {
         try {
-            // Try memory first
-            List<HistoricalCandle> candles = candleStore.getFromMemory(symbol, TimeframeType.DAILY);
+            // Try memory first: zero-copy view, consumed right away by calculateATR
+            List<HistoricalCandle> candles = candleStore.seriesFromMemory(symbol, TimeframeType.DAILY);
 
-            if (candles.isEmpty()) {
+            if (candles == null || candles.isEmpty()) {
                 // Fallback to Postgres
                 candles = candleStore.getFromPostgres(symbol, TimeframeType.DAILY,
                         TimeframeType.DAILY.getLookback());
@@ -329,18 +393,16 @@ public final class PositionSizingService {
             return null;
         }
 
-        // Try full ATR calculation
-        BigDecimal atr = ATRCalculator.calculateDailyATR(dailyCandles, DEFAULT_ATR_PERIOD);
-
-        if (atr == null) {
-            // Fallback to shorter period
-            atr = ATRCalculator.calculateDailyATRWithFallback(
-                    dailyCandles,
-                    DEFAULT_ATR_PERIOD,
-                    FALLBACK_ATR_PERIOD);
-        }
+        // Wilder ATR, falling back to a shorter simple TR average
+        CandleColumns cols = new CandleColumns().load(dailyCandles);
+        double atrPaise = SizingKernels.atrWithFallback(
+                cols.high(), cols.low(), cols.close(), cols.size(),
+                DEFAULT_ATR_PERIOD,
+                FALLBACK_ATR_PERIOD);
 
-        return atr;
+        return Double.isNaN(atrPaise)
+                ? null
+                : BigDecimal.valueOf(atrPaise / 100).setScale(6, RoundingMode.HALF_UP);
     }
 
     /**
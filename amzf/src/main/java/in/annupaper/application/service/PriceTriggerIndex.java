@@ -0,0 +1,428 @@
+package in.annupaper.application.service;
+
+import in.annupaper.domain.model.Paise;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PriceTriggerIndex - Per-symbol sorted price levels for exit evaluation.
+ *
+ * Every open position contributes at most one level to each side of its
+ * symbol's book:
+ * - DOWN levels fire when price <= level (LONG: max(trailing stop, floor);
+ * SHORT: target, and the floor fallback when no ceiling is set). Kept sorted
+ * descending, so a tick walks from the top until the first level below price.
+ * - UP levels fire when price >= level (LONG: target; SHORT: min(trailing
+ * stop, ceiling)). Kept sorted ascending.
+ * With trailing stops enabled, a second level per position tracks the
+ * activation price (inactive) or the next new extreme (active), so ratchets
+ * are triggered by crossings too.
+ *
+ * A tick therefore touches only the levels it crossed: O(k) after the symbol
+ * lookup, instead of evaluating every open position. Max-hold time uses the
+ * earliest deadline per symbol.
+ *
+ * Semantics match ExitSignalService.checkExitConditions; the index only
+ * decides that a condition fired, the caller confirms against the DB.
+ * Trailing activation uses the established rule (favorable move / entry
+ * rounded HALF_UP to 4 decimals, i.e. a percentage with 2 decimals, compared
+ * with the configured percentage), computed exactly in paise.
+ *
+ * THREAD-SAFETY:
+ * Each symbol's levels are guarded by that symbol's monitor; writers are
+ * OpenPositionBook (rebuild of one symbol) and trailing ratchets (in place).
+ */
+public final class PriceTriggerIndex {
+
+    /**
+     * Kind of level that fired.
+     */
+    public enum Kind {
+        EXIT, // stop / target / trailing stop / max hold
+        TRAIL // trailing activation or new extreme
+    }
+
+    /**
+     * A crossed level.
+     */
+    public record Fired(OpenPositionBook.OpenPosition position, Kind kind) {
+    }
+
+    private final Map<String, SymbolTriggers> bySymbol = new ConcurrentHashMap<>();
+
+    private volatile boolean trailingEnabled;
+    private volatile long trailingActivationBp = NO_ACTIVATION;
+
+    /**
+     * Rebuild one symbol's levels from its current positions (empty = drop).
+     */
+    void set(String symbol, OpenPositionBook.OpenPosition[] positions) {
+        if (positions.length == 0) {
+            bySymbol.remove(symbol);
+            return;
+        }
+        SymbolTriggers st = bySymbol.computeIfAbsent(symbol, k -> new SymbolTriggers());
+        synchronized (st) {
+            st.load(positions, trailingEnabled, trailingActivationBp);
+        }
+    }
+
+    /**
+     * Replace one position's levels in place (trailing ratchet).
+     */
+    void replace(OpenPositionBook.OpenPosition position) {
+        SymbolTriggers st = bySymbol.get(position.symbol());
+        if (st == null) {
+            return;
+        }
+        synchronized (st) {
+            st.replace(position, trailingEnabled, trailingActivationBp);
+        }
+    }
+
+    /**
+     * Trailing-stop settings; returns true if they changed (caller rebuilds).
+     */
+    boolean configureTrailing(boolean enabled, BigDecimal activationPct) {
+        long bp = activationBasisPoints(activationPct);
+        if (enabled == trailingEnabled && bp == trailingActivationBp) {
+            return false;
+        }
+        trailingEnabled = enabled;
+        trailingActivationBp = bp;
+        return true;
+    }
+
+    boolean trailingEnabled() {
+        return trailingEnabled;
+    }
+
+    /**
+     * Levels crossed by a tick.
+     *
+     * @return crossed levels (TRAIL before EXIT), or null if none
+     */
+    public List<Fired> evaluate(String symbol, long pricePaise, long nowMillis) {
+        SymbolTriggers st = bySymbol.get(symbol);
+        if (st == null) {
+            return null;
+        }
+        synchronized (st) {
+            return st.collect(pricePaise, nowMillis);
+        }
+    }
+
+    public int symbolCount() {
+        return bySymbol.size();
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Level computation
+    // ═══════════════════════════════════════════════════════════════
+
+    private static final long NO_LEVEL = Paise.NONE;
+    private static final long NO_ACTIVATION = Long.MAX_VALUE;
+
+    /**
+     * Activation threshold in basis points (0.01%). The favorable move is a
+     * whole number of basis points, so "move >= pct" is "move >= ceil(pct)".
+     */
+    static long activationBasisPoints(BigDecimal activationPct) {
+        if (activationPct == null) {
+            return NO_ACTIVATION;
+        }
+        return activationPct.movePointRight(2).setScale(0, RoundingMode.CEILING).longValueExact();
+    }
+
+    /**
+     * DOWN exit level (fires when price <= level), or NO_LEVEL.
+     */
+    static long exitDown(OpenPositionBook.OpenPosition p) {
+        long level = NO_LEVEL;
+        if (p.isLong()) {
+            if (p.trailingActive() && Paise.isPresent(p.trailingStopPaise())) {
+                level = p.trailingStopPaise();
+            }
+            if (Paise.isPresent(p.floorPaise())) {
+                level = level == NO_LEVEL ? p.floorPaise() : Math.max(level, p.floorPaise());
+            }
+        } else {
+            if (Paise.isPresent(p.targetPaise())) {
+                level = p.targetPaise();
+            }
+            if (Paise.isPresent(p.floorPaise()) && !Paise.isPresent(p.ceilingPaise())) {
+                level = level == NO_LEVEL ? p.floorPaise() : Math.max(level, p.floorPaise());
+            }
+        }
+        return level;
+    }
+
+    /**
+     * UP exit level (fires when price >= level), or NO_LEVEL.
+     */
+    static long exitUp(OpenPositionBook.OpenPosition p) {
+        long level = NO_LEVEL;
+        if (p.isLong()) {
+            if (Paise.isPresent(p.targetPaise())) {
+                level = p.targetPaise();
+            }
+        } else {
+            if (p.trailingActive() && Paise.isPresent(p.trailingStopPaise())) {
+                level = p.trailingStopPaise();
+            }
+            if (Paise.isPresent(p.floorPaise()) && Paise.isPresent(p.ceilingPaise())) {
+                level = level == NO_LEVEL ? p.ceilingPaise() : Math.min(level, p.ceilingPaise());
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Trailing level: LONG fires when price >= level, SHORT when price <= level.
+     */
+    static long trailLevel(OpenPositionBook.OpenPosition p, boolean enabled, long activationBp) {
+        long entry = p.entryPaise();
+        if (!enabled || !Paise.isPresent(entry) || entry == 0) {
+            return NO_LEVEL;
+        }
+        if (p.trailingActive()) {
+            long highest = p.trailingHighestPaise();
+            if (!Paise.isPresent(highest)) {
+                return p.isLong() ? Long.MIN_VALUE + 1 : Long.MAX_VALUE; // initialize on next tick
+            }
+            return p.isLong() ? highest + 1 : highest - 1; // strictly better extreme
+        }
+        if (activationBp == NO_ACTIVATION) {
+            return NO_LEVEL;
+        }
+        // Smallest (LONG) / largest (SHORT) price that activates. With HALF_UP
+        // the boundary is move >= entry * (2 * bp - 1) / 20000; the loops fix
+        // up the integer division
+        long move = Math.floorDiv(entry * (2 * activationBp - 1), 20_000);
+        long level = p.isLong() ? entry + move : entry - move;
+        long step = p.isLong() ? 1 : -1;
+        while (activates(p.isLong(), entry, level - step, activationBp)) {
+            level -= step;
+        }
+        while (!activates(p.isLong(), entry, level, activationBp)) {
+            level += step;
+        }
+        return level;
+    }
+
+    /**
+     * Whether a price activates the trailing stop: the favorable move in
+     * basis points, rounded HALF_UP as {@code move.divide(entry, 4, HALF_UP)},
+     * is at least the threshold.
+     */
+    static boolean activates(boolean isLong, long entry, long price, long activationBp) {
+        return favorableBasisPoints(isLong, entry, price) >= activationBp;
+    }
+
+    /**
+     * Favorable move / entry in basis points, rounded HALF_UP (ties away
+     * from zero) like BigDecimal.divide(entry, 4, HALF_UP).
+     */
+    static long favorableBasisPoints(boolean isLong, long entry, long price) {
+        long move = isLong ? price - entry : entry - price;
+        long rounded = (Math.abs(move) * 20_000 + entry) / (2 * entry);
+        return move < 0 ? -rounded : rounded;
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Per-symbol levels
+    // ═══════════════════════════════════════════════════════════════
+
+    private static final class SymbolTriggers {
+        private OpenPositionBook.OpenPosition[] positions = new OpenPositionBook.OpenPosition[0];
+
+        // DOWN side: sorted descending, fires while level >= price
+        private long[] downLevel = new long[0];
+        private int[] downSlot = new int[0];
+        private boolean[] downTrail = new boolean[0];
+        private int downCount;
+
+        // UP side: sorted ascending, fires while level <= price
+        private long[] upLevel = new long[0];
+        private int[] upSlot = new int[0];
+        private boolean[] upTrail = new boolean[0];
+        private int upCount;
+
+        private long minDeadline = Long.MAX_VALUE;
+
+        void load(OpenPositionBook.OpenPosition[] ps, boolean trailing, long activationBp) {
+            positions = ps.clone();
+            int cap = ps.length * 2;
+            downLevel = new long[cap];
+            downSlot = new int[cap];
+            downTrail = new boolean[cap];
+            upLevel = new long[cap];
+            upSlot = new int[cap];
+            upTrail = new boolean[cap];
+            downCount = 0;
+            upCount = 0;
+            for (int slot = 0; slot < positions.length; slot++) {
+                insertLevels(slot, trailing, activationBp);
+            }
+            recomputeDeadline();
+        }
+
+        void replace(OpenPositionBook.OpenPosition p, boolean trailing, long activationBp) {
+            for (int slot = 0; slot < positions.length; slot++) {
+                if (positions[slot].tradeId().equals(p.tradeId())) {
+                    removeLevels(slot);
+                    positions[slot] = p;
+                    insertLevels(slot, trailing, activationBp);
+                    recomputeDeadline();
+                    return;
+                }
+            }
+        }
+
+        List<Fired> collect(long price, long nowMillis) {
+            List<Fired> fired = null;
+
+            // TRAIL first so ratchets are applied before exit confirmation
+            for (int pass = 0; pass < 2; pass++) {
+                boolean wantTrail = pass == 0;
+                for (int i = 0; i < downCount && downLevel[i] >= price; i++) {
+                    if (downTrail[i] == wantTrail) {
+                        fired = add(fired, positions[downSlot[i]], wantTrail);
+                    }
+                }
+                for (int i = 0; i < upCount && upLevel[i] <= price; i++) {
+                    if (upTrail[i] == wantTrail) {
+                        fired = add(fired, positions[upSlot[i]], wantTrail);
+                    }
+                }
+            }
+
+            if (nowMillis > minDeadline) {
+                for (OpenPositionBook.OpenPosition p : positions) {
+                    if (nowMillis > p.maxHoldUntilMillis() && !containsExit(fired, p)) {
+                        fired = add(fired, p, false);
+                    }
+                }
+            }
+            return fired;
+        }
+
+        private static List<Fired> add(List<Fired> fired, OpenPositionBook.OpenPosition p, boolean trail) {
+            if (fired == null) {
+                fired = new ArrayList<>(4);
+            }
+            fired.add(new Fired(p, trail ? Kind.TRAIL : Kind.EXIT));
+            return fired;
+        }
+
+        private static boolean containsExit(List<Fired> fired, OpenPositionBook.OpenPosition p) {
+            if (fired == null) {
+                return false;
+            }
+            for (Fired f : fired) {
+                if (f.kind() == Kind.EXIT && f.position().tradeId().equals(p.tradeId())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void insertLevels(int slot, boolean trailing, long activationBp) {
+            OpenPositionBook.OpenPosition p = positions[slot];
+            long down = exitDown(p);
+            if (down != NO_LEVEL) {
+                insertDown(down, slot, false);
+            }
+            long up = exitUp(p);
+            if (up != NO_LEVEL) {
+                insertUp(up, slot, false);
+            }
+            long trail = trailLevel(p, trailing, activationBp);
+            if (trail != NO_LEVEL) {
+                if (p.isLong()) {
+                    insertUp(trail, slot, true);
+                } else {
+                    insertDown(trail, slot, true);
+                }
+            }
+        }
+
+        private void removeLevels(int slot) {
+            int w = 0;
+            for (int i = 0; i < downCount; i++) {
+                if (downSlot[i] != slot) {
+                    downLevel[w] = downLevel[i];
+                    downSlot[w] = downSlot[i];
+                    downTrail[w] = downTrail[i];
+                    w++;
+                }
+            }
+            downCount = w;
+            w = 0;
+            for (int i = 0; i < upCount; i++) {
+                if (upSlot[i] != slot) {
+                    upLevel[w] = upLevel[i];
+                    upSlot[w] = upSlot[i];
+                    upTrail[w] = upTrail[i];
+                    w++;
+                }
+            }
+            upCount = w;
+        }
+
+        private void insertDown(long level, int slot, boolean trail) {
+            // Binary search for first index with downLevel < level (descending order)
+            int lo = 0;
+            int hi = downCount;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (downLevel[mid] >= level) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            System.arraycopy(downLevel, lo, downLevel, lo + 1, downCount - lo);
+            System.arraycopy(downSlot, lo, downSlot, lo + 1, downCount - lo);
+            System.arraycopy(downTrail, lo, downTrail, lo + 1, downCount - lo);
+            downLevel[lo] = level;
+            downSlot[lo] = slot;
+            downTrail[lo] = trail;
+            downCount++;
+        }
+
+        private void insertUp(long level, int slot, boolean trail) {
+            // Binary search for first index with upLevel > level (ascending order)
+            int lo = 0;
+            int hi = upCount;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (upLevel[mid] <= level) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            System.arraycopy(upLevel, lo, upLevel, lo + 1, upCount - lo);
+            System.arraycopy(upSlot, lo, upSlot, lo + 1, upCount - lo);
+            System.arraycopy(upTrail, lo, upTrail, lo + 1, upCount - lo);
+            upLevel[lo] = level;
+            upSlot[lo] = slot;
+            upTrail[lo] = trail;
+            upCount++;
+        }
+
+        private void recomputeDeadline() {
+            long min = Long.MAX_VALUE;
+            for (OpenPositionBook.OpenPosition p : positions) {
+                min = Math.min(min, p.maxHoldUntilMillis());
+            }
+            minDeadline = min;
+        }
+    }
+}
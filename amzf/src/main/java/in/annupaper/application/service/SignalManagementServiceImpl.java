@@ -55,6 +55,9 @@ public final class SignalManagementServiceImpl implements SignalManagementServic
     // Exit qualification
     private final ExitQualificationService exitQualificationService;
 
+    // Exit order placement (push path); null = sweep only
+    private final ExitOrderProcessor exitOrderProcessor;
+
     // Timestamp tracking (AV-8)
     private final ConcurrentHashMap<String, Instant> lastProcessedTimes = new ConcurrentHashMap<>();
 
@@ -78,6 +81,21 @@ public final class SignalManagementServiceImpl implements SignalManagementServic
             EventService eventService,
             ExecutionOrchestrator executionOrchestrator,
             ExitQualificationService exitQualificationService) {
+        this(signalRepo, signalDeliveryRepo, exitSignalRepo, exitIntentRepo, tradeRepo, userBrokerRepo,
+                eventService, executionOrchestrator, exitQualificationService, null);
+    }
+
+    public SignalManagementServiceImpl(
+            SignalRepository signalRepo,
+            SignalDeliveryRepository signalDeliveryRepo,
+            ExitSignalRepository exitSignalRepo,
+            ExitIntentRepository exitIntentRepo,
+            TradeRepository tradeRepo,
+            UserBrokerRepository userBrokerRepo,
+            EventService eventService,
+            ExecutionOrchestrator executionOrchestrator,
+            ExitQualificationService exitQualificationService,
+            ExitOrderProcessor exitOrderProcessor) {
         this.entryCoordinator = new EntrySignalCoordinator();
         this.exitCoordinator = new ExitSignalCoordinator();
         this.deliveryIndex = new SignalDeliveryIndex();
@@ -91,6 +109,7 @@ public final class SignalManagementServiceImpl implements SignalManagementServic
         this.eventService = eventService;
         this.executionOrchestrator = executionOrchestrator;
         this.exitQualificationService = exitQualificationService;
+        this.exitOrderProcessor = exitOrderProcessor;
 
         // AV-13 FIX: SMS-owned expiry scheduler
         this.expiryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
@@ -163,10 +182,10 @@ public final class SignalManagementServiceImpl implements SignalManagementServic
         signalRepo.updateStatus(published.signalId(), "PUBLISHED");
 
         // 5. Create deliveries (fan-out to user-brokers)
-        createDeliveries(published);
+        List<UserBroker> recipients = createDeliveries(published);
 
-        // 6. Process deliveries (validate and create intents)
-        executionOrchestrator.processPendingDeliveries();
+        // 6. Process this signal's deliveries (validate and create intents)
+        executionOrchestrator.processSignalDeliveries(published, recipients);
 
         // 7. Emit SIGNAL_PUBLISHED event
         emitSignalPublished(published);
@@ -409,7 +428,12 @@ public final class SignalManagementServiceImpl implements SignalManagementServic
         return floorOverlap && ceilingOverlap && sameDirection;
     }
 
-    private void createDeliveries(Signal signal) {
+    /**
+     * Create one delivery per enabled execution broker.
+     *
+     * @return The user-brokers deliveries were created for
+     */
+    private List<UserBroker> createDeliveries(Signal signal) {
         // Get all enabled execution brokers
         List<UserBroker> executionBrokers = userBrokerRepo.findAll().stream()
                 .filter(ub -> ub.enabled() && BrokerRole.EXEC.equals(ub.role()))
@@ -421,6 +445,7 @@ public final class SignalManagementServiceImpl implements SignalManagementServic
         for (UserBroker userBroker : executionBrokers) {
             createDelivery(signal, userBroker);
         }
+        return executionBrokers;
     }
 
     private void createDelivery(Signal signal, UserBroker userBroker) {
@@ -560,7 +585,7 @@ public final class SignalManagementServiceImpl implements SignalManagementServic
         }
 
         // 5. Create ExitIntent with qualification results
-        String exitIntentId = createExitIntent(
+        ExitIntent exitIntent = createExitIntent(
                 null, // no exitSignalId yet
                 trade,
                 candidate.exitReason(),
@@ -571,9 +596,15 @@ public final class SignalManagementServiceImpl implements SignalManagementServic
                 qualResult.orderType(),
                 qualResult.limitPrice(),
                 qualResult.productType());
+        String exitIntentId = exitIntent.exitIntentId();
 
-        // 6. If qualification passed, create ExitSignal
+        // 6. If qualification passed, push the intent straight to order
+        // placement (the sweep is only a safety net), then create ExitSignal
         if (qualResult.passed()) {
+            if (exitOrderProcessor != null) {
+                exitOrderProcessor.submit(exitIntent, candidate.tickReceivedAt());
+            }
+
             // Parse direction from candidate
             Direction direction = candidate.direction();
             ExitReason exitReason = candidate.exitReason();
@@ -619,9 +650,9 @@ public final class SignalManagementServiceImpl implements SignalManagementServic
 
     /**
      * Create ExitIntent record.
-     * Returns exitIntentId.
+     * Returns the persisted intent.
      */
-    private String createExitIntent(
+    private ExitIntent createExitIntent(
             String exitSignalId,
             Trade trade,
             ExitReason exitReason,
@@ -686,7 +717,7 @@ public final class SignalManagementServiceImpl implements SignalManagementServic
             }
         }
 
-        return exitIntentId;
+        return exitIntent;
     }
 
     // ═══════════════════════════════════════════════════════════════════════
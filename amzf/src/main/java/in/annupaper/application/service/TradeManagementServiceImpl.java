@@ -48,6 +48,7 @@ public final class TradeManagementServiceImpl implements TradeManagementService
     // Core infrastructure
     private final TradeCoordinator coordinator;
     private final ActiveTradeIndex activeIndex;
+    private final OpenPositionBook openPositions;
 
     // Repositories (persistence adapters)
     private final TradeRepository tradeRepo;
@@ -69,8 +70,25 @@ public final class TradeManagementServiceImpl implements TradeManagementService
             BrokerProvider brokerProvider,
             EventService eventService,
             BrickMovementTracker brickTracker) {
+        this(tradeRepo, signalRepo, userBrokerRepo, brokerProvider, eventService, brickTracker,
+                new OpenPositionBook());
+    }
+
+    /**
+     * @param openPositions Open-position book shared with ExitSignalService;
+     *                      kept in step with every state transition here
+     */
+    public TradeManagementServiceImpl(
+            TradeRepository tradeRepo,
+            SignalRepository signalRepo,
+            UserBrokerRepository userBrokerRepo,
+            BrokerProvider brokerProvider,
+            EventService eventService,
+            BrickMovementTracker brickTracker,
+            OpenPositionBook openPositions) {
         this.coordinator = new TradeCoordinator();
         this.activeIndex = new ActiveTradeIndex();
+        this.openPositions = openPositions;
 
         this.tradeRepo = tradeRepo;
         this.signalRepo = signalRepo;
@@ -372,6 +390,7 @@ public final class TradeManagementServiceImpl implements TradeManagementService
                 .withLastBrokerUpdateAt(Instant.now());
 
         tradeRepo.upsert(updated);
+        openPositions.remove(tradeId);
 
         log.warn("Trade rejected: {} - {} ({})", tradeId, errorCode, errorMessage);
 
@@ -462,8 +481,9 @@ public final class TradeManagementServiceImpl implements TradeManagementService
 
         tradeRepo.upsert(updated);
 
-        // Add to active index for exit monitoring
+        // Add to active index and position book for exit monitoring
         activeIndex.addTrade(trade.tradeId(), trade.symbol());
+        openPositions.upsert(updated);
 
         log.info("Trade filled and OPEN: {} @ {} (qty={})",
                 trade.tradeId(), update.avgPrice(), update.filledQty());
@@ -496,6 +516,7 @@ public final class TradeManagementServiceImpl implements TradeManagementService
 
         // Remove from active index
         activeIndex.removeTrade(trade.tradeId());
+        openPositions.remove(trade.tradeId());
 
         log.info("Trade CLOSED: {} P&L={} days={}",
                 trade.tradeId(), realizedPnl, holdingDays);
@@ -536,6 +557,7 @@ public final class TradeManagementServiceImpl implements TradeManagementService
         if (trade == null || !"OPEN".equals(trade.status())) {
             // Trade may have closed in meantime
             activeIndex.removeTrade(tradeId);
+            openPositions.remove(tradeId);
             return;
         }
 
@@ -614,10 +636,15 @@ public final class TradeManagementServiceImpl implements TradeManagementService
                 return; // Trade closed or doesn't exist
             }
 
-            // Only update if new highest price or activation
-            boolean shouldUpdate = activate ||
-                    (trade.trailingHighestPrice() != null &&
-                            highestPrice.compareTo(trade.trailingHighestPrice()) > 0);
+            // Only update on activation or a new extreme (highest for LONG,
+            // lowest for SHORT); an active stop without one is initialized
+            boolean isLong = !"SELL".equals(trade.direction());
+            BigDecimal extreme = trade.trailingHighestPrice();
+            boolean shouldUpdate = activate
+                    || (trade.trailingActive() && extreme == null)
+                    || (extreme != null && (isLong
+                            ? highestPrice.compareTo(extreme) > 0
+                            : highestPrice.compareTo(extreme) < 0));
 
             if (!shouldUpdate) {
                 return;
@@ -648,7 +675,11 @@ public final class TradeManagementServiceImpl implements TradeManagementService
                     trade.lastBrokerUpdateAt(),
                     trade.createdAt(), Instant.now(), trade.deletedAt(), trade.version());
 
-            tradeRepo.upsert(updated);
+            // In place: trailing ratchets do not create trade versions
+            if (!tradeRepo.updateTrailingStop(tradeId, updated.trailingActive(), highestPrice, stopPrice)) {
+                return; // Closed meanwhile
+            }
+            openPositions.upsert(updated);
 
             if (activate) {
                 log.info("✅ Trailing stop ACTIVATED: {} highest={} stop={}",
@@ -695,6 +726,8 @@ public final class TradeManagementServiceImpl implements TradeManagementService
                     trade.createdAt(), Instant.now(), trade.deletedAt(), trade.version());
 
             tradeRepo.upsert(updated);
+            activeIndex.removeTrade(tradeId); // EXITING
+            openPositions.remove(tradeId);
             log.info("✅ TMS: Trade exit order placed: {} orderId={}", tradeId, exitOrderId);
         });
     }
@@ -738,6 +771,8 @@ public final class TradeManagementServiceImpl implements TradeManagementService
                     trade.createdAt(), Instant.now(), trade.deletedAt(), trade.version());
 
             tradeRepo.upsert(closedTrade);
+            activeIndex.removeTrade(tradeId);
+            openPositions.remove(tradeId);
             log.info("✅ TMS: Trade CLOSED: {} exitPrice={} P&L={} reason={}",
                     tradeId, exitPrice, realizedPnl, exitReason);
         });
@@ -810,6 +845,8 @@ public final class TradeManagementServiceImpl implements TradeManagementService
                     current.createdAt(), Instant.now(), current.deletedAt(), current.version());
 
             tradeRepo.upsert(rejected);
+            activeIndex.removeTrade(trade.tradeId());
+            openPositions.remove(trade.tradeId());
             log.info("✅ TMS: Trade REJECTED: {} error={} message={}",
                     trade.tradeId(), errorCode, errorMessage);
         });
@@ -835,6 +872,7 @@ public final class TradeManagementServiceImpl implements TradeManagementService
 
     @Override
     public void rebuildActiveIndex() {
+        long startedAt = openPositions.beginRebuild();
         List<Trade> openTrades = tradeRepo.findByStatus("OPEN");
 
         List<ActiveTradeIndex.TradeSymbolPair> pairs = openTrades.stream()
@@ -842,6 +880,7 @@ public final class TradeManagementServiceImpl implements TradeManagementService
                 .toList();
 
         activeIndex.rebuild(pairs);
+        openPositions.rebuild(openTrades, startedAt);
 
         log.info("Active trade index rebuilt: {} open trades", pairs.size());
     }
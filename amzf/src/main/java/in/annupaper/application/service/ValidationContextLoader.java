@@ -0,0 +1,127 @@
+package in.annupaper.application.service;
+
+import in.annupaper.application.port.output.PortfolioRepository;
+import in.annupaper.application.port.output.TradeRepository;
+import in.annupaper.application.port.output.UserBrokerRepository;
+import in.annupaper.domain.model.Portfolio;
+import in.annupaper.domain.model.Signal;
+import in.annupaper.domain.model.SignalDelivery;
+import in.annupaper.domain.model.Trade;
+import in.annupaper.domain.model.UserBroker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads a {@link FanOutContext} for one signal with a fixed number of bulk
+ * queries, however many deliveries it has:
+ * - user-brokers not already known (one query)
+ * - portfolios of all users (one query; the first per user is used)
+ * - OPEN trades of those portfolios (one query)
+ * - config, daily ATR and LTF candles for the symbol (once)
+ */
+public final class ValidationContextLoader {
+    private static final Logger log = LoggerFactory.getLogger(ValidationContextLoader.class);
+
+    private final UserBrokerRepository userBrokerRepo;
+    private final PortfolioRepository portfolioRepo;
+    private final TradeRepository tradeRepo;
+    private final PositionSizingService positionSizingService;
+
+    public ValidationContextLoader(
+            UserBrokerRepository userBrokerRepo,
+            PortfolioRepository portfolioRepo,
+            TradeRepository tradeRepo,
+            PositionSizingService positionSizingService) {
+        this.userBrokerRepo = userBrokerRepo;
+        this.portfolioRepo = portfolioRepo;
+        this.tradeRepo = tradeRepo;
+        this.positionSizingService = positionSizingService;
+    }
+
+    /**
+     * @param signal      Signal being fanned out
+     * @param knownBrokers User-brokers already in hand (not re-queried)
+     * @param deliveries  Deliveries to validate
+     */
+    public FanOutContext load(Signal signal, Collection<UserBroker> knownBrokers,
+            Collection<SignalDelivery> deliveries) {
+        int queries = 0;
+
+        // 1. User-brokers
+        Map<String, UserBroker> userBrokers = new HashMap<>();
+        for (UserBroker ub : knownBrokers) {
+            userBrokers.put(ub.userBrokerId(), ub);
+        }
+        Set<String> missing = new LinkedHashSet<>();
+        for (SignalDelivery delivery : deliveries) {
+            if (!userBrokers.containsKey(delivery.userBrokerId())) {
+                missing.add(delivery.userBrokerId());
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (UserBroker ub : userBrokerRepo.findByIds(missing)) {
+                userBrokers.put(ub.userBrokerId(), ub);
+            }
+            queries++;
+        }
+
+        Set<String> userIds = new LinkedHashSet<>();
+        for (SignalDelivery delivery : deliveries) {
+            UserBroker ub = userBrokers.get(delivery.userBrokerId());
+            if (ub != null) {
+                userIds.add(ub.userId());
+            }
+        }
+
+        // 2. Portfolios (first per user, as ordered by created_at)
+        Map<String, Portfolio> portfolioByUser = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            for (Portfolio portfolio : portfolioRepo.findByUserIds(userIds)) {
+                portfolioByUser.putIfAbsent(portfolio.userId(), portfolio);
+            }
+            queries++;
+        }
+        Map<String, Portfolio> portfolios = new HashMap<>();
+        for (Portfolio portfolio : portfolioByUser.values()) {
+            portfolios.put(portfolio.portfolioId(), portfolio);
+        }
+
+        // 3. OPEN trades by portfolio
+        Map<String, List<Trade>> openTrades = new HashMap<>();
+        if (!portfolios.isEmpty()) {
+            for (Trade trade : tradeRepo.findOpenTradesByPortfolioIds(portfolios.keySet())) {
+                openTrades.computeIfAbsent(trade.portfolioId(), id -> new ArrayList<>()).add(trade);
+            }
+            queries++;
+        }
+
+        // 4. User contexts
+        Map<String, ValidationService.UserContext> userContexts = new HashMap<>();
+        for (String userId : userIds) {
+            Portfolio portfolio = portfolioByUser.get(userId);
+            if (portfolio == null) {
+                log.warn("No portfolio found for user {}", userId);
+                continue;
+            }
+            userContexts.put(userId, ValidationService.UserContext.from(
+                    portfolio, openTrades.getOrDefault(portfolio.portfolioId(), List.of())));
+        }
+
+        // 5. Symbol inputs (config, ATR, LTF candles)
+        PositionSizingService.SymbolInputs sizingInputs = positionSizingService.loadSymbolInputs(signal.symbol());
+        queries += sizingInputs.lookups();
+
+        log.debug("Fan-out context for {}: {} user-brokers, {} users, {} portfolios, {} queries",
+                signal.signalId(), userBrokers.size(), userIds.size(), portfolios.size(), queries);
+
+        return new FanOutContext(signal, userBrokers, userContexts, portfolios, openTrades, sizingInputs, queries);
+    }
+}
@@ -14,6 +14,7 @@ import org.slf4j.LoggerFactory;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.List;
 
 /**
  * Validation Service.
@@ -41,6 +42,17 @@ public final class ValidationService {
      * Validate a signal for a specific user-broker.
      */
     public ValidationResult validate(Signal signal, UserBroker userBroker, UserContext userContext) {
+        return validate(signal, userBroker, userContext, null);
+    }
+
+    /**
+     * Validate a signal for a specific user-broker, sizing from a fan-out
+     * context (portfolio, open trades and symbol inputs already loaded).
+     *
+     * @param fanOut Shared context for this signal, or null to load per call
+     */
+    public ValidationResult validate(Signal signal, UserBroker userBroker, UserContext userContext,
+            FanOutContext fanOut) {
         ValidationResult.Builder builder = new ValidationResult.Builder();
 
         // ═══════════════════════════════════════════════════════════════
@@ -108,16 +120,30 @@ public final class ValidationService {
         BigDecimal kelly = signal.kelly() != null ? signal.kelly() : new BigDecimal("0.10");
 
         // Call constitutional position sizer
-        MtfPositionSizer.PositionSizeResult sizeResult = positionSizingService.calculatePositionSize(
-                signal.symbol(),
-                signal.refPrice(), // zonePrice
-                signal.effectiveFloor(), // effectiveFloor
-                signal.effectiveCeiling(), // effectiveCeiling
-                pWin,
-                pFill,
-                kelly,
-                confluenceMultiplier,
-                userContext.portfolioId());
+        Portfolio portfolio = fanOut != null ? fanOut.portfolio(userContext.portfolioId()) : null;
+        MtfPositionSizer.PositionSizeResult sizeResult = portfolio != null
+                ? positionSizingService.calculatePositionSize(
+                        signal.symbol(),
+                        signal.refPrice(), // zonePrice
+                        signal.effectiveFloor(), // effectiveFloor
+                        signal.effectiveCeiling(), // effectiveCeiling
+                        pWin,
+                        pFill,
+                        kelly,
+                        confluenceMultiplier,
+                        portfolio,
+                        fanOut.openTrades(portfolio.portfolioId()),
+                        fanOut.sizingInputs())
+                : positionSizingService.calculatePositionSize(
+                        signal.symbol(),
+                        signal.refPrice(), // zonePrice
+                        signal.effectiveFloor(), // effectiveFloor
+                        signal.effectiveCeiling(), // effectiveCeiling
+                        pWin,
+                        pFill,
+                        kelly,
+                        confluenceMultiplier,
+                        userContext.portfolioId());
 
         // Check if position sizing rejected the trade
         if (!sizeResult.isValid()) {
@@ -290,5 +316,33 @@ public final class ValidationService {
             BigDecimal weeklyLoss,
             boolean inCooldown,
             boolean portfolioPaused) {
+
+        /**
+         * Context for a user's portfolio and its OPEN trades.
+         */
+        public static UserContext from(Portfolio portfolio, List<Trade> openTrades) {
+            // Calculate current exposure
+            BigDecimal currentExposure = openTrades.stream()
+                    .map(t -> t.entryPrice().multiply(new BigDecimal(t.entryQty())))
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+            // Calculate current log exposure
+            BigDecimal currentLogExposure = openTrades.stream()
+                    .map(t -> t.currentLogReturn() != null ? t.currentLogReturn() : BigDecimal.ZERO)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+            return new UserContext(
+                    portfolio.portfolioId(),
+                    portfolio.totalCapital(),
+                    portfolio.availableCapital(),
+                    currentExposure,
+                    currentLogExposure,
+                    openTrades.size(),
+                    10, // maxPyramidLevel - TODO: get from config
+                    BigDecimal.ZERO, // dailyLoss - TODO: calculate
+                    BigDecimal.ZERO, // weeklyLoss - TODO: calculate
+                    false, // inCooldown - TODO: calculate
+                    portfolio.paused());
+        }
     }
 }
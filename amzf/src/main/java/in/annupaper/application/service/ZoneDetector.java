@@ -1,6 +1,7 @@
 package in.annupaper.application.service;
 
 import in.annupaper.domain.model.*;
+import in.annupaper.service.candle.CandleSeries;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -11,6 +12,10 @@ import java.util.List;
  */
 public final class ZoneDetector {
 
+    private static final BigDecimal HTF_SCORE = new BigDecimal("0.50");
+    private static final BigDecimal ITF_SCORE = new BigDecimal("0.30");
+    private static final BigDecimal LTF_SCORE = new BigDecimal("0.20");
+
     /**
      * Zone definition result.
      */
@@ -74,6 +79,14 @@ public final class ZoneDetector {
             return null;
         }
 
+        if (candles instanceof CandleSeries series) {
+            // Columnar scan over the in-memory ring, no per-candle allocation
+            return calculateZoneFromRange(
+                    Paise.toBigDecimal(series.maxHighPaise()),
+                    Paise.toBigDecimal(series.minLowPaise()),
+                    buyZonePct);
+        }
+
         BigDecimal high = BigDecimal.ZERO;
         BigDecimal low = new BigDecimal("1000000000"); // Max value
 
@@ -138,15 +151,15 @@ public final class ZoneDetector {
             BigDecimal score = BigDecimal.ZERO;
 
             if (htf != null && htf.isInBuyZone(currentPrice)) {
-                score = score.add(new BigDecimal("0.50"));
+                score = score.add(HTF_SCORE);
             }
 
             if (itf != null && itf.isInBuyZone(currentPrice)) {
-                score = score.add(new BigDecimal("0.30"));
+                score = score.add(ITF_SCORE);
             }
 
             if (ltf != null && ltf.isInBuyZone(currentPrice)) {
-                score = score.add(new BigDecimal("0.20"));
+                score = score.add(LTF_SCORE);
             }
 
             return score;
@@ -9,6 +9,7 @@ import in.annupaper.infrastructure.broker.BrokerAdapterFactory;
 import in.annupaper.domain.model.*;
 import in.annupaper.application.port.output.*;
 import in.annupaper.infrastructure.persistence.*;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
 import in.annupaper.transport.ws.WsHub;
 import in.annupaper.util.Env;
 
@@ -84,6 +85,11 @@ public final class App {
         // ═══════════════════════════════════════════════════════════════
         // Prometheus Metrics (Production Monitoring)
         // ═══════════════════════════════════════════════════════════════
+        io.prometheus.client.CollectorRegistry metricsRegistry = io.prometheus.client.CollectorRegistry.defaultRegistry;
+
+        // Shared data-access core for the Postgres repositories (query timings
+        // in db_query_seconds)
+        Db db = new Db(dataSource, metricsRegistry);
 
         // ═══════════════════════════════════════════════════════════════
         // MTF Config Migration (runs on startup)
@@ -115,32 +121,47 @@ public final class App {
         // ═══════════════════════════════════════════════════════════════
         // Transport: WS hub (user-scoped)
         // ═══════════════════════════════════════════════════════════════
-        WsHub wsHub = new WsHub(tokenValidator);
+        WsHub wsHub = new WsHub(tokenValidator, metricsRegistry);
         wsHub.setFlushMs(wsBatchFlushMs);
         wsHub.start();
 
         // ═══════════════════════════════════════════════════════════════
         // Repository layer
         // ═══════════════════════════════════════════════════════════════
-        TradeEventRepository eventRepo = new PostgresTradeEventRepository(dataSource);
-        UserBrokerRepository userBrokerRepo = new PostgresUserBrokerRepository(dataSource);
-        CandleRepository candleRepo = new PostgresCandleRepository(dataSource);
-        BrokerRepository brokerRepo = new PostgresBrokerRepository(dataSource);
-        PortfolioRepository portfolioRepo = new PostgresPortfolioRepository(dataSource);
-        WatchlistRepository watchlistRepo = new PostgresWatchlistRepository(dataSource);
-        SignalRepository signalRepo = new PostgresSignalRepository(dataSource);
-        TradeIntentRepository tradeIntentRepo = new PostgresTradeIntentRepository(dataSource);
-        TradeRepository tradeRepo = new PostgresTradeRepository(dataSource);
+        TradeEventRepository eventRepo = new PostgresTradeEventRepository(db);
+        wsHub.setReplayFallback(eventRepo);
+        UserBrokerRepository userBrokerRepo = new PostgresUserBrokerRepository(db);
+        CandleRepository candleRepo = new PostgresCandleRepository(db);
+        BrokerRepository brokerRepo = new PostgresBrokerRepository(db);
+        PortfolioRepository portfolioRepo = new PostgresPortfolioRepository(db);
+        WatchlistRepository watchlistRepo = new PostgresWatchlistRepository(db);
+        SignalRepository signalRepo = new PostgresSignalRepository(db);
+        TradeIntentRepository tradeIntentRepo = new PostgresTradeIntentRepository(db);
+        // Trade versions: trades_current in place, trades_history written behind
+        TradeHistoryWriter tradeHistoryWriter = new TradeHistoryWriter(db,
+                Env.getInt("TRADE_HISTORY_BATCH_SIZE", 200),
+                Env.getInt("TRADE_HISTORY_CAPACITY", 5000),
+                Env.getInt("TRADE_HISTORY_FLUSH_MS", 500));
+        tradeHistoryWriter.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(tradeHistoryWriter::stop, "trade-history-flush"));
+        TradeRepository tradeRepo = new PostgresTradeRepository(db, tradeHistoryWriter);
         in.annupaper.application.port.output.UserBrokerSessionRepository sessionRepo = new in.annupaper.infrastructure.persistence.PostgresUserBrokerSessionRepository(
-                dataSource);
+                db);
         in.annupaper.application.port.output.InstrumentRepository instrumentRepo = new in.annupaper.infrastructure.persistence.PostgresInstrumentRepository(
-                dataSource);
-        in.annupaper.application.port.output.MtfConfigRepository mtfConfigRepo = new in.annupaper.infrastructure.persistence.PostgresMtfConfigRepository(
-                dataSource);
-        SignalDeliveryRepository signalDeliveryRepo = new PostgresSignalDeliveryRepository(dataSource);
-        ExitSignalRepository exitSignalRepo = new PostgresExitSignalRepository(dataSource);
+                db);
+        // MTF config served from an in-memory snapshot (reloaded on write;
+        // MTF_CONFIG_LISTEN=true adds LISTEN/NOTIFY for multi-node setups)
+        in.annupaper.infrastructure.persistence.CachedMtfConfigRepository cachedMtfConfigRepo = new in.annupaper.infrastructure.persistence.CachedMtfConfigRepository(
+                new in.annupaper.infrastructure.persistence.PostgresMtfConfigRepository(db), dataSource,
+                metricsRegistry);
+        if (Boolean.parseBoolean(System.getenv().getOrDefault("MTF_CONFIG_LISTEN", "false"))) {
+            cachedMtfConfigRepo.startListener();
+        }
+        in.annupaper.application.port.output.MtfConfigRepository mtfConfigRepo = cachedMtfConfigRepo;
+        SignalDeliveryRepository signalDeliveryRepo = new PostgresSignalDeliveryRepository(db);
+        ExitSignalRepository exitSignalRepo = new PostgresExitSignalRepository(db);
         in.annupaper.application.port.output.ExitIntentRepository exitIntentRepo = new in.annupaper.infrastructure.persistence.PostgresExitIntentRepository(
-                dataSource);
+                db);
 
         // ═══════════════════════════════════════════════════════════════
         // Monitoring Services (System Health & Alerting)
@@ -176,7 +197,8 @@ public final class App {
         // ═══════════════════════════════════════════════════════════════
         // Broker adapters (with session repository for OAuth tokens)
         // ═══════════════════════════════════════════════════════════════
-        BrokerAdapterFactory legacyBrokerFactory = new BrokerAdapterFactory(sessionRepo, userBrokerRepo);
+        BrokerAdapterFactory legacyBrokerFactory = new BrokerAdapterFactory(sessionRepo, userBrokerRepo,
+                metricsRegistry);
 
         // ✅ Phase 2: New BrokerFactory for dual-broker architecture
 
@@ -211,7 +233,18 @@ public final class App {
         // ═══════════════════════════════════════════════════════════════
         // Service layer (moved up - needed by candle services)
         // ═══════════════════════════════════════════════════════════════
-        EventService eventService = new EventService(eventRepo, wsHub);
+        // Market-data lane: ticks coalesced per symbol, journaled in bulk (or
+        // ephemeral when TICK_PERSISTENCE=EPHEMERAL)
+        boolean tickJournalEnabled = !"EPHEMERAL".equalsIgnoreCase(Env.get("TICK_PERSISTENCE", "JOURNAL"));
+        TickJournalRepository tickJournalRepo = null;
+        if (tickJournalEnabled) {
+            PostgresTickJournalRepository journalRepo = new PostgresTickJournalRepository(db);
+            journalRepo.createPartitionsAhead();
+            tickJournalRepo = journalRepo;
+        }
+        EventService eventService = new EventService(eventRepo, wsHub, tickJournalRepo, metricsRegistry);
+        eventService.start(Env.getInt("TICK_FLUSH_MS", wsBatchFlushMs));
+        Runtime.getRuntime().addShutdownHook(new Thread(eventService::stop, "market-data-lane-shutdown"));
 
         // ═══════════════════════════════════════════════════════════════
         // Startup: Download instruments from all brokers
@@ -225,7 +258,18 @@ public final class App {
         // ═══════════════════════════════════════════════════════════════
         // Candle Services (with backfill and aggregation)
         // ═══════════════════════════════════════════════════════════════
-        CandleStore candleStore = new CandleStore(candleRepo);
+        // Write-behind for closed bars: replays journal segments left by a crash
+        // before anything reads candles from PostgreSQL
+        in.annupaper.service.candle.CandleWriteBehind candleWriteBehind = new in.annupaper.service.candle.CandleWriteBehind(
+                candleRepo,
+                java.nio.file.Path.of(Env.get("CANDLE_WAL_DIR", "./data/candle-wal")),
+                Env.getInt("CANDLE_FLUSH_BATCH", 500),
+                Env.getInt("CANDLE_QUEUE_CAPACITY", 20000),
+                Env.getInt("CANDLE_FLUSH_MS", 1000),
+                metricsRegistry);
+        candleWriteBehind.start();
+        CandleStore candleStore = new CandleStore(candleRepo,
+                CandleStore.parseMemoryDepth(Env.get("CANDLE_MEMORY_DEPTH", "")), candleWriteBehind);
         CandleFetcher candleFetcher = new CandleFetcher(legacyBrokerFactory, candleStore);
         in.annupaper.service.candle.CandleReconciler candleReconciler = new in.annupaper.service.candle.CandleReconciler(
                 candleFetcher,
@@ -240,7 +284,11 @@ public final class App {
                 brokerRepo);
 
         in.annupaper.service.candle.CandleAggregator candleAggregator = new in.annupaper.service.candle.CandleAggregator(
-                candleStore, eventService);
+                candleStore, eventService, Env.getInt("CANDLE_AGG_PERSIST_MS", 300000), metricsRegistry);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            candleAggregator.flushAll();
+            candleWriteBehind.stop();
+        }, "candle-flush"));
 
         RecoveryManager recoveryManager = new RecoveryManager(
                 candleStore, historyBackfiller, candleAggregator);
@@ -292,46 +340,9 @@ public final class App {
 
         ValidationService validationService = new ValidationService(positionSizingService);
 
-        // User context provider
-        java.util.function.Function<String, ValidationService.UserContext> userContextProvider = userId -> {
-            // Fetch portfolio for user
-            List<Portfolio> portfolios = portfolioRepo.findByUserId(userId);
-
-            if (portfolios.isEmpty()) {
-                log.warn("No portfolio found for user {}", userId);
-                return null;
-            }
-
-            Portfolio portfolio = portfolios.get(0); // Use first portfolio
-
-            // Fetch open trades for this portfolio
-            List<Trade> openTrades = tradeRepo.findByPortfolioId(portfolio.portfolioId()).stream()
-                    .filter(t -> "OPEN".equals(t.status()))
-                    .toList();
-
-            // Calculate current exposure
-            BigDecimal currentExposure = openTrades.stream()
-                    .map(t -> t.entryPrice().multiply(new BigDecimal(t.entryQty())))
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            // Calculate current log exposure
-            BigDecimal currentLogExposure = openTrades.stream()
-                    .map(t -> t.currentLogReturn() != null ? t.currentLogReturn() : BigDecimal.ZERO)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            return new ValidationService.UserContext(
-                    portfolio.portfolioId(),
-                    portfolio.totalCapital(),
-                    portfolio.availableCapital(),
-                    currentExposure,
-                    currentLogExposure,
-                    openTrades.size(),
-                    10, // maxPyramidLevel - TODO: get from config
-                    BigDecimal.ZERO, // dailyLoss - TODO: calculate
-                    BigDecimal.ZERO, // weeklyLoss - TODO: calculate
-                    false, // inCooldown - TODO: calculate
-                    portfolio.paused());
-        };
+        // Validation context, batch-loaded once per signal fan-out
+        ValidationContextLoader validationContextLoader = new ValidationContextLoader(
+                userBrokerRepo, portfolioRepo, tradeRepo, positionSizingService);
 
         // ═══════════════════════════════════════════════════════════════
         // Trade Management Service (Phase 2 - Core Execution)
@@ -339,13 +350,15 @@ public final class App {
         // Single owner of trade lifecycle: CREATED → PENDING → OPEN → EXITING → CLOSED
         // Actor model with partitioned executors for race-free trade updates
         BrickMovementTracker brickTracker = new BrickMovementTracker();
+        OpenPositionBook openPositionBook = new OpenPositionBook();
         TradeManagementService tradeManagementService = new TradeManagementServiceImpl(
                 tradeRepo,
                 signalRepo,
                 userBrokerRepo,
                 legacyBrokerFactory,
                 eventService,
-                brickTracker);
+                brickTracker,
+                openPositionBook);
 
         // Initialize active trade index from database (all OPEN trades)
         log.info("Rebuilding active trade index from database...");
@@ -358,8 +371,9 @@ public final class App {
         // Processes signal deliveries, validates, creates trade intents
         // ✅ P0-E: Connects with TradeManagementService to execute approved intents
         ExecutionOrchestrator executionOrchestrator = new ExecutionOrchestrator(
-                tradeIntentRepo, userBrokerRepo, validationService, eventService, userContextProvider,
-                signalDeliveryRepo, signalRepo, tradeManagementService);
+                tradeIntentRepo, validationService, eventService, validationContextLoader,
+                signalDeliveryRepo, signalRepo, tradeManagementService, metricsRegistry);
+        executionOrchestrator.start(); // Starts delivery recovery sweep
 
         // Wire TradeManagementService into ExecutionOrchestrator (Circular dependency
         // resolved by design review)
@@ -399,16 +413,18 @@ public final class App {
         // Pattern: Read APPROVED intent → Place order → Mark PLACED/FAILED
         // ✅ P0 fix: Added tradeManagementService for single-writer enforcement
         ExitOrderExecutionService exitOrderExecutionService = new ExitOrderExecutionService(
-                exitIntentRepo, tradeRepo, tradeManagementService, userBrokerRepo, legacyBrokerFactory, eventService);
+                exitIntentRepo, tradeRepo, tradeManagementService, userBrokerRepo, legacyBrokerFactory, eventService,
+                metricsRegistry);
 
         // ═══════════════════════════════════════════════════════════════
-        // Exit Order Processor (Polls for APPROVED exit intents)
+        // Exit Order Processor (Push + safety-net sweep)
         // ═══════════════════════════════════════════════════════════════
-        // Scheduled task that processes approved exit intents every 5 seconds
-        // Finds APPROVED exit intents and calls ExitOrderExecutionService
+        // SignalManagementService pushes each APPROVED exit intent to a
+        // per-trade execution partition; a sweep every 30 seconds places any
+        // APPROVED intent the push path missed
         ExitOrderProcessor exitOrderProcessor = new ExitOrderProcessor(
                 exitIntentRepo, exitOrderExecutionService);
-        exitOrderProcessor.start(); // Starts background polling thread
+        exitOrderProcessor.start(); // Starts background sweep thread
 
         // ═══════════════════════════════════════════════════════════════
         // Signal Management Service (Phase 2 - Signal Lifecycle)
@@ -425,7 +441,8 @@ public final class App {
                 userBrokerRepo,
                 eventService,
                 executionOrchestrator,
-                exitQualificationService);
+                exitQualificationService,
+                exitOrderProcessor);
 
         // Initialize delivery index from database (all active deliveries)
         log.info("Rebuilding signal delivery index from database...");
@@ -471,7 +488,7 @@ public final class App {
 
         // MTF Signal Generator (scheduled signal analysis)
         MtfSignalGenerator mtfSignalGenerator = new MtfSignalGenerator(
-                signalService, watchlistRepo, marketDataCache, userBrokerRepo);
+                signalService, watchlistRepo, marketDataCache, userBrokerRepo, metricsRegistry);
 
         // ═══════════════════════════════════════════════════════════════
         // Admin Service
@@ -479,9 +496,9 @@ public final class App {
 
         // Watchlist Template repositories (Level 1 & Level 2)
         in.annupaper.application.port.output.WatchlistTemplateRepository watchlistTemplateRepo = new in.annupaper.infrastructure.persistence.PostgresWatchlistTemplateRepository(
-                (com.zaxxer.hikari.HikariDataSource) dataSource);
+                db);
         in.annupaper.application.port.output.WatchlistSelectedRepository watchlistSelectedRepo = new in.annupaper.infrastructure.persistence.PostgresWatchlistSelectedRepository(
-                (com.zaxxer.hikari.HikariDataSource) dataSource);
+                db);
 
         // FIX: Add MarketDataCache for in-memory LTP access (Market Watch feature)
         // FIX: Add CandleFetcher for historical data fetching when symbols added to
@@ -524,9 +541,27 @@ public final class App {
         // Exit Signal Services
         // ═══════════════════════════════════════════════════════════════
         ExitSignalService exitSignalService = new ExitSignalService(
-                tradeRepo, brickTracker, eventService, signalManagementService,
+                tradeRepo, openPositionBook, brickTracker, eventService, signalManagementService,
                 tradeManagementService, mtfConfigService);
 
+        // ═══════════════════════════════════════════════════════════════
+        // Tick Dispatcher (broker thread only enqueues; consumers run on
+        // per-symbol partitions with their own backpressure policy)
+        // ═══════════════════════════════════════════════════════════════
+        in.annupaper.service.tick.TickDispatcher tickDispatcher = new in.annupaper.service.tick.TickDispatcher(
+                in.annupaper.service.tick.TickDispatcher.parsePolicies(Env.get("TICK_DISPATCH_POLICY", "")),
+                Env.getInt("TICK_DISPATCH_PARTITIONS", 4),
+                Env.getInt("TICK_DISPATCH_CAPACITY", 8192),
+                metricsRegistry);
+        if (!collectorMode) {
+            tickDispatcher
+                    .addStage("candles", tickCandleBuilder, in.annupaper.service.tick.TickDispatcher.Policy.BLOCK)
+                    .addStage("exits", exitSignalService, in.annupaper.service.tick.TickDispatcher.Policy.BLOCK)
+                    .addStage("signals", mtfSignalGenerator,
+                            in.annupaper.service.tick.TickDispatcher.Policy.CONFLATE_LATEST);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> tickDispatcher.stop(2000), "tick-dispatcher-shutdown"));
+
         // ═══════════════════════════════════════════════════════════════
         // Watchdog Manager (Self-healing system monitor)
         // ═══════════════════════════════════════════════════════════════
@@ -538,9 +573,7 @@ public final class App {
                 watchlistRepo,
                 sessionRepo,
                 candleStore,
-                tickCandleBuilder,
-                exitSignalService,
-                mtfSignalGenerator,
+                tickDispatcher,
                 recoveryManager,
                 mtfBackfillService);
 
@@ -562,11 +595,10 @@ public final class App {
                 brokerRepo,
                 watchlistRepo,
                 legacyBrokerFactory,
-                tickCandleBuilder,
-                exitSignalService,
+                tickDispatcher,
                 recoveryManager,
                 mtfBackfillService,
-                mtfSignalGenerator);
+                metricsRegistry);
         log.info("[STARTUP] setupTickStreamAndRecovery completed");
 
         // ═══════════════════════════════════════════════════════════════
@@ -574,6 +606,9 @@ public final class App {
         // ═══════════════════════════════════════════════════════════════
         startCandleFinalizerScheduler(tickCandleBuilder);
 
+        // Open-position book resync (state changes made outside TMS, e.g. reconciler)
+        startOpenPositionResyncScheduler(openPositionBook, tradeRepo, Env.getInt("OPEN_POSITION_RESYNC_SEC", 30));
+
         // ═══════════════════════════════════════════════════════════════
         // Scheduler: Watchdog health check (self-healing)
         // ═══════════════════════════════════════════════════════════════
@@ -616,7 +651,7 @@ public final class App {
             // ApiHandlers api = new ApiHandlers(eventRepo, tokenValidator);
             ApiHandlers api = new ApiHandlers(eventRepo, tokenValidator, jwtService, adminService, oauthService,
                     fyersLoginOrchestrator, legacyBrokerFactory, instrumentService,
-                    userBrokerRepo, brokerRepo, watchlistRepo, tickCandleBuilder, exitSignalService, recoveryManager,
+                    userBrokerRepo, brokerRepo, watchlistRepo, tickDispatcher, recoveryManager,
                     mtfBackfillService,
                     signalRepo, tradeRepo, candleRepo);
             MtfConfigHandler mtfConfigHandler = new MtfConfigHandler(
@@ -630,6 +665,7 @@ public final class App {
             // Prometheus metrics endpoint
 
             RoutingHandler routes = Handlers.routing()
+                    .get("/metrics", exchange -> handlePrometheusMetrics(exchange, metricsRegistry))
                     .get("/api/health", api::health)
                     .post("/api/auth/login", exchange -> handleLogin(exchange, authService))
                     .post("/api/auth/register", exchange -> handleRegister(exchange, authService))
@@ -776,6 +812,14 @@ public final class App {
         log.info("[STARTUP] Auto-login check disabled. Manual broker connection required.");
     }
 
+    private static void handlePrometheusMetrics(io.undertow.server.HttpServerExchange exchange,
+            io.prometheus.client.CollectorRegistry registry) throws java.io.IOException {
+        java.io.StringWriter writer = new java.io.StringWriter();
+        io.prometheus.client.exporter.common.TextFormat.write004(writer, registry.metricFamilySamples());
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, io.prometheus.client.exporter.common.TextFormat.CONTENT_TYPE_004);
+        exchange.getResponseSender().send(writer.toString());
+    }
+
     private static void handleLogin(io.undertow.server.HttpServerExchange exchange, AuthService authService) {
         exchange.getRequestReceiver().receiveFullString((ex, body) -> {
             try {
@@ -851,6 +895,17 @@ public final class App {
         config.setConnectionTimeout(5000);
         config.setPoolName("annu-hikari");
 
+        // Server-side prepared statements: pgjdbc switches a statement to a
+        // named server-side prepare after prepareThreshold executions and keeps
+        // it in the per-connection cache (the repositories' SQL is constant)
+        config.addDataSourceProperty("prepareThreshold", Env.getInt("DB_PREPARE_THRESHOLD", 3));
+        config.addDataSourceProperty("preparedStatementCacheQueries",
+                Env.getInt("DB_PREPARED_STATEMENT_CACHE_QUERIES", 512));
+        config.addDataSourceProperty("preparedStatementCacheSizeMiB",
+                Env.getInt("DB_PREPARED_STATEMENT_CACHE_MIB", 16));
+        // Batched INSERTs rewritten into multi-row VALUES (one round trip)
+        config.addDataSourceProperty("reWriteBatchedInserts", true);
+
         log.info("DB: url={}, user={}, pool={}", url, user, maxPool);
         return new HikariDataSource(config);
     }
@@ -971,11 +1026,10 @@ public final class App {
             in.annupaper.application.port.output.BrokerRepository brokerRepo,
             in.annupaper.application.port.output.WatchlistRepository watchlistRepo,
             BrokerAdapterFactory legacyBrokerFactory,
-            TickCandleBuilder tickCandleBuilder,
-            ExitSignalService exitSignalService,
+            in.annupaper.service.tick.TickDispatcher tickDispatcher,
             RecoveryManager recoveryManager,
             MtfBackfillService mtfBackfillService,
-            MtfSignalGenerator mtfSignalGenerator) {
+            io.prometheus.client.CollectorRegistry metricsRegistry) {
 
         log.info("[TICK STREAM] ════════════════════════════════════════════════════════");
         log.info("[TICK STREAM] Setting up tick stream subscription and recovery");
@@ -1034,14 +1088,19 @@ public final class App {
                 // FEED COLLECTOR MODE: Broadcast ticks to remote clients via WebSocket relay
                 int relayPort = Integer.parseInt(System.getenv().getOrDefault("RELAY_PORT", "7071"));
 
-                in.annupaper.feedrelay.TickRelayServer relayServer = new in.annupaper.feedrelay.TickRelayServer();
+                in.annupaper.feedrelay.TickRelayServer relayServer = new in.annupaper.feedrelay.TickRelayServer(metricsRegistry);
                 relayServer.start(relayPort);
                 log.info("[RELAY] ════════════════════════════════════════════════════════");
                 log.info("[RELAY] FEED COLLECTOR MODE ACTIVE");
                 log.info("[RELAY] Broadcasting ticks on ws://0.0.0.0:{}/ticks", relayPort);
                 log.info("[RELAY] ════════════════════════════════════════════════════════");
 
-                adapter.subscribeTicks(symbols, new in.annupaper.feedrelay.RelayBroadcastTickListener(relayServer));
+                // Relay is the only stage here and remote clients build candles from
+                // it: block the feed rather than lose ticks (per-client queues in
+                // TickRelayServer absorb slow clients)
+                tickDispatcher.addStage("relay", new in.annupaper.feedrelay.RelayBroadcastTickListener(relayServer),
+                        in.annupaper.service.tick.TickDispatcher.Policy.BLOCK);
+                adapter.subscribeTicks(symbols, tickDispatcher);
 
                 // Skip trading/candles/signals on VM (relay only)
                 log.info("[RELAY] Skipping candle builder / signals / exits (collector mode)");
@@ -1051,26 +1110,20 @@ public final class App {
 
                 // Start TickRelayServer for frontend WebSocket connections
                 int relayPort = Integer.parseInt(System.getenv().getOrDefault("RELAY_PORT", "7071"));
-                in.annupaper.feedrelay.TickRelayServer relayServer = new in.annupaper.feedrelay.TickRelayServer();
+                in.annupaper.feedrelay.TickRelayServer relayServer = new in.annupaper.feedrelay.TickRelayServer(metricsRegistry);
                 relayServer.start(relayPort);
                 log.info("[RELAY] Broadcasting ticks to frontend on ws://0.0.0.0:{}/ticks", relayPort);
 
-                log.info("[TICK STREAM] Subscribing TickCandleBuilder to tick stream...");
-                adapter.subscribeTicks(symbols, tickCandleBuilder);
-                log.info("[TICK STREAM] ✓ TickCandleBuilder subscribed");
-
-                log.info("[TICK STREAM] Subscribing ExitSignalService to tick stream...");
-                adapter.subscribeTicks(symbols, exitSignalService);
-                log.info("[TICK STREAM] ✓ ExitSignalService subscribed");
-
-                log.info("[TICK STREAM] Subscribing MtfSignalGenerator to tick stream...");
-                adapter.subscribeTicks(symbols, mtfSignalGenerator);
-                log.info("[TICK STREAM] ✓ MtfSignalGenerator subscribed for near real-time signal analysis");
+                // Relay stage for frontend WebSocket streaming (candles/exits/signals stages
+                // were added at startup). A stalled relay must not hold up the broker
+                // thread those stages share: drop oldest, counted in
+                // tick_dispatch_dropped_total{stage="relay"}
+                tickDispatcher.addStage("relay", new in.annupaper.feedrelay.RelayBroadcastTickListener(relayServer),
+                        in.annupaper.service.tick.TickDispatcher.Policy.DROP_OLDEST);
 
-                // Subscribe RelayBroadcastTickListener for frontend WebSocket streaming
-                log.info("[TICK STREAM] Subscribing RelayBroadcastTickListener for frontend updates...");
-                adapter.subscribeTicks(symbols, new in.annupaper.feedrelay.RelayBroadcastTickListener(relayServer));
-                log.info("[TICK STREAM] ✓ RelayBroadcastTickListener subscribed");
+                log.info("[TICK STREAM] Subscribing tick dispatcher to tick stream...");
+                adapter.subscribeTicks(symbols, tickDispatcher);
+                log.info("[TICK STREAM] ✓ Tick dispatcher subscribed (candles, exits, signals, relay)");
             }
 
             log.info("[TICK STREAM] ════════════════════════════════════════════════════════");
@@ -1142,6 +1195,34 @@ public final class App {
         log.info("[SCHEDULER] ✓ Candle finalizer scheduler started");
     }
 
+    /**
+     * Start scheduler for open-position book resync.
+     * Reloads OPEN trades from DB so the exit tick path sees trades whose state
+     * was changed outside TradeManagementService.
+     */
+    private static void startOpenPositionResyncScheduler(OpenPositionBook openPositionBook,
+            TradeRepository tradeRepo, int intervalSec) {
+        log.info("[SCHEDULER] Starting open-position resync (every {} seconds)", intervalSec);
+
+        java.util.concurrent.ScheduledExecutorService scheduler = java.util.concurrent.Executors
+                .newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "open-position-resync");
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                long startedAt = openPositionBook.beginRebuild();
+                openPositionBook.rebuild(tradeRepo.findByStatus("OPEN"), startedAt);
+            } catch (Exception e) {
+                log.error("[SCHEDULER] Error in open-position resync: {}", e.getMessage());
+            }
+        }, intervalSec, intervalSec, java.util.concurrent.TimeUnit.SECONDS);
+
+        log.info("[SCHEDULER] ✓ Open-position resync scheduler started");
+    }
+
     /**
      * Start scheduler for watchdog health checks.
      * Performs comprehensive health check and auto-healing every 2 minutes.
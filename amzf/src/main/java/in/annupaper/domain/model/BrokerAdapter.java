@@ -222,6 +222,16 @@ public interface BrokerAdapter {
         interface TickListener {
                 void onTick(Tick tick);
 
+                /**
+                 * Tick with the System.nanoTime() at which it was received
+                 * from the broker (the dispatcher delivers ticks later, on
+                 * its own threads). Listeners that measure tick-to-action
+                 * latency override this.
+                 */
+                default void onTick(Tick tick, long receivedNanos) {
+                        onTick(tick);
+                }
+
                 void onError(Throwable error);
         }
 
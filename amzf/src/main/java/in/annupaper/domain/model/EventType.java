@@ -93,6 +93,7 @@ public enum EventType {
     ACK,
     PONG,
     BATCH,
+    REPLAY,
     ERROR,
 
     // ═══════════════════════════════════════════════════════════════
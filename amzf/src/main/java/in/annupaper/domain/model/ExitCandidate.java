@@ -5,6 +5,10 @@ import java.time.Instant;
 
 /**
  * Exit candidate from exit strategy.
+ *
+ * timestamp is when the exit was detected (after the DB confirmation);
+ * tickReceivedAt is when the tick that crossed the exit price was received
+ * from the broker, the start of tick-to-order latency.
  */
 public record ExitCandidate(
         String tradeId,
@@ -18,5 +22,6 @@ public record ExitCandidate(
         BigDecimal lowestSinceEntry,
         BigDecimal trailingStopPrice,
         boolean trailingActive,
-        Instant timestamp) {
+        Instant timestamp,
+        Instant tickReceivedAt) {
 }
@@ -0,0 +1,47 @@
+package in.annupaper.domain.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point price helpers for the real-time tick path.
+ *
+ * Prices are carried as a long count of paise (price × 100) from binary decode
+ * through Tick, the partial 1-minute candle and MarketDataCache. Conversion to
+ * BigDecimal happens only at persistence and API boundaries.
+ */
+public final class Paise {
+    /**
+     * Decimal places represented by one unit.
+     */
+    public static final int SCALE = 2;
+
+    /**
+     * Sentinel for an absent price (maps to/from a null BigDecimal).
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * BigDecimal → paise (HALF_UP to 2 decimals). Null maps to {@link #NONE}.
+     */
+    public static long of(BigDecimal price) {
+        if (price == null) {
+            return NONE;
+        }
+        return price.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Paise → BigDecimal with scale 2. {@link #NONE} maps to null.
+     */
+    public static BigDecimal toBigDecimal(long paise) {
+        return paise == NONE ? null : BigDecimal.valueOf(paise, SCALE);
+    }
+
+    public static boolean isPresent(long paise) {
+        return paise != NONE;
+    }
+
+    private Paise() {
+    }
+}
@@ -5,19 +5,72 @@ import java.time.Instant;
 
 /**
  * Real-time market tick data.
+ *
+ * Prices are stored as long paise (see {@link Paise}); the BigDecimal accessors
+ * convert on demand and are meant for persistence/API boundaries only.
+ * Absent prices are {@link Paise#NONE} (null through the BigDecimal accessors).
  */
 public record Tick(
                 String symbol,
-                BigDecimal lastPrice,
-                BigDecimal open,
-                BigDecimal high,
-                BigDecimal low,
-                BigDecimal close,
+                long lastPricePaise,
+                long openPaise,
+                long highPaise,
+                long lowPaise,
+                long closePaise,
                 long volume,
-                BigDecimal bid,
-                BigDecimal ask,
+                long bidPaise,
+                long askPaise,
                 int bidQty,
                 int askQty,
                 Instant timestamp,
                 String brokerCode) {
+
+        /**
+         * BigDecimal constructor (adapters that receive decimal prices).
+         */
+        public Tick(
+                        String symbol,
+                        BigDecimal lastPrice,
+                        BigDecimal open,
+                        BigDecimal high,
+                        BigDecimal low,
+                        BigDecimal close,
+                        long volume,
+                        BigDecimal bid,
+                        BigDecimal ask,
+                        int bidQty,
+                        int askQty,
+                        Instant timestamp,
+                        String brokerCode) {
+                this(symbol, Paise.of(lastPrice), Paise.of(open), Paise.of(high), Paise.of(low), Paise.of(close),
+                                volume, Paise.of(bid), Paise.of(ask), bidQty, askQty, timestamp, brokerCode);
+        }
+
+        public BigDecimal lastPrice() {
+                return Paise.toBigDecimal(lastPricePaise);
+        }
+
+        public BigDecimal open() {
+                return Paise.toBigDecimal(openPaise);
+        }
+
+        public BigDecimal high() {
+                return Paise.toBigDecimal(highPaise);
+        }
+
+        public BigDecimal low() {
+                return Paise.toBigDecimal(lowPaise);
+        }
+
+        public BigDecimal close() {
+                return Paise.toBigDecimal(closePaise);
+        }
+
+        public BigDecimal bid() {
+                return Paise.toBigDecimal(bidPaise);
+        }
+
+        public BigDecimal ask() {
+                return Paise.toBigDecimal(askPaise);
+        }
 }
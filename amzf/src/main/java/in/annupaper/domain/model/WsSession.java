@@ -14,6 +14,7 @@ public final class WsSession {
     private final Set<String> topics; // Subscribed event types
     private final Instant connectedAt;
     private volatile Instant lastActivity; // volatile: written by multiple I/O threads, read by flusher
+    private volatile Subscription subscription; // immutable snapshot of (userId, topics, brokers)
 
     public WsSession(String sessionId, String userId) {
         this.sessionId = sessionId;
@@ -22,6 +23,7 @@ public final class WsSession {
         this.topics = ConcurrentHashMap.newKeySet();
         this.connectedAt = Instant.now();
         this.lastActivity = Instant.now();
+        this.subscription = new Subscription(userId, Set.of(), Set.of());
     }
 
     public String getSessionId() {
@@ -52,54 +54,47 @@ public final class WsSession {
         this.lastActivity = Instant.now();
     }
 
-    public void subscribeTopics(Set<String> newTopics) {
+    public synchronized void subscribeTopics(Set<String> newTopics) {
         topics.addAll(newTopics);
+        refreshSubscription();
         touch();
     }
 
-    public void unsubscribeTopics(Set<String> removeTopics) {
+    public synchronized void unsubscribeTopics(Set<String> removeTopics) {
         topics.removeAll(removeTopics);
+        refreshSubscription();
         touch();
     }
 
-    public void subscribeBrokers(Set<String> brokerIds) {
+    public synchronized void subscribeBrokers(Set<String> brokerIds) {
         userBrokerIds.addAll(brokerIds);
+        refreshSubscription();
         touch();
     }
 
-    public void unsubscribeBrokers(Set<String> brokerIds) {
+    public synchronized void unsubscribeBrokers(Set<String> brokerIds) {
         userBrokerIds.removeAll(brokerIds);
+        refreshSubscription();
         touch();
     }
 
+    /**
+     * Current subscription. Sessions with equal subscriptions receive exactly
+     * the same events, so the WS flusher filters once per distinct value.
+     */
+    public Subscription subscription() {
+        return subscription;
+    }
+
+    private void refreshSubscription() {
+        subscription = new Subscription(userId, Set.copyOf(topics), Set.copyOf(userBrokerIds));
+    }
+
     /**
      * Check if this session should receive an event.
      */
     public boolean shouldReceive(TradeEvent event) {
-        // Check topic subscription
-        if (!topics.isEmpty() && !topics.contains(event.type().name())) {
-            return false;
-        }
-
-        // Check visibility based on scope
-        switch (event.scope()) {
-            case GLOBAL:
-                return true;
-            case USER:
-                return event.userId() != null && event.userId().equals(userId);
-            case USER_BROKER:
-                if (event.userId() == null || !event.userId().equals(userId)) {
-                    return false;
-                }
-                // If user subscribed to specific brokers, check if this event's broker is in
-                // the list
-                if (!userBrokerIds.isEmpty() && event.userBrokerId() != null) {
-                    return userBrokerIds.contains(event.userBrokerId());
-                }
-                return true;
-            default:
-                return false;
-        }
+        return subscription.accepts(event);
     }
 
     /**
@@ -108,4 +103,38 @@ public final class WsSession {
     public boolean isAuthenticated() {
         return userId != null && !userId.isEmpty();
     }
+
+    /**
+     * Immutable subscription signature: everything that decides which events
+     * a session receives.
+     */
+    public record Subscription(String userId, Set<String> topics, Set<String> userBrokerIds) {
+
+        public boolean accepts(TradeEvent event) {
+            // Check topic subscription
+            if (!topics.isEmpty() && !topics.contains(event.type().name())) {
+                return false;
+            }
+
+            // Check visibility based on scope
+            switch (event.scope()) {
+                case GLOBAL:
+                    return true;
+                case USER:
+                    return event.userId() != null && event.userId().equals(userId);
+                case USER_BROKER:
+                    if (event.userId() == null || !event.userId().equals(userId)) {
+                        return false;
+                    }
+                    // If user subscribed to specific brokers, check if this event's broker is in
+                    // the list
+                    if (!userBrokerIds.isEmpty() && event.userBrokerId() != null) {
+                        return userBrokerIds.contains(event.userBrokerId());
+                    }
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
 }
@@ -0,0 +1,325 @@
+package in.annupaper.feedrelay;
+
+import in.annupaper.domain.model.Tick;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RelayBinaryProtocol - Compact binary tick frames for relay → trading node.
+ *
+ * Negotiated with {@code ?proto=bin1} on the /ticks handshake; clients that
+ * don't ask get the JSON text frames (TickJsonMapper). A client can detect
+ * the protocol from the frame type (binary vs text).
+ *
+ * Frame (big-endian):
+ * - byte version (1)
+ * - byte kind: DELTA, or SNAPSHOT (receiver resets all symbol state first)
+ * - varint dictionary count, then per entry: varint symbolId, varint length,
+ *   UTF-8 symbol
+ * - varint tick count, then per tick: varint symbolId, varint field mask,
+ *   and for each field in the mask a zigzag varint delta against the last
+ *   value sent for that symbol (0 for a symbol's first tick)
+ *
+ * Fields are prices in paise (Paise.NONE included: deltas wrap exactly),
+ * volume, bid/ask qty and the timestamp in epoch millis. Unchanged fields are
+ * left out of the mask. Broker code is not carried (receivers stamp their own).
+ */
+public final class RelayBinaryProtocol {
+
+    public static final String PROTO_PARAM = "proto";
+    public static final String PROTO_BINARY = "bin1";
+
+    public static final byte VERSION = 1;
+    public static final byte KIND_DELTA = 1;
+    public static final byte KIND_SNAPSHOT = 2;
+
+    // Field order in the mask
+    static final int F_LAST = 0;
+    static final int F_OPEN = 1;
+    static final int F_HIGH = 2;
+    static final int F_LOW = 3;
+    static final int F_CLOSE = 4;
+    static final int F_VOLUME = 5;
+    static final int F_BID = 6;
+    static final int F_ASK = 7;
+    static final int F_BID_QTY = 8;
+    static final int F_ASK_QTY = 9;
+    static final int F_TS = 10;
+    static final int FIELDS = 11;
+
+    // Symbol ids are dense from 0, so a real relay stays far below this; a
+    // larger id is a corrupt frame, not a reason to grow the tables
+    static final int MAX_SYMBOL_ID = 1 << 20;
+
+    private RelayBinaryProtocol() {
+    }
+
+    private static void fields(Tick t, long[] out) {
+        out[F_LAST] = t.lastPricePaise();
+        out[F_OPEN] = t.openPaise();
+        out[F_HIGH] = t.highPaise();
+        out[F_LOW] = t.lowPaise();
+        out[F_CLOSE] = t.closePaise();
+        out[F_VOLUME] = t.volume();
+        out[F_BID] = t.bidPaise();
+        out[F_ASK] = t.askPaise();
+        out[F_BID_QTY] = t.bidQty();
+        out[F_ASK_QTY] = t.askQty();
+        out[F_TS] = t.timestamp() != null ? t.timestamp().toEpochMilli() : 0;
+    }
+
+    /**
+     * Encoder with the shared per-symbol "last sent" state. Not thread-safe:
+     * owned by the relay flusher. Every binary client sees the same frames, so
+     * one encode serves all of them.
+     */
+    public static final class Encoder {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private String[] symbols = new String[256];
+        private long[][] last = new long[256][];
+        private final long[] scratch = new long[FIELDS];
+        private ByteBuffer buf = ByteBuffer.allocate(64 * 1024).order(ByteOrder.BIG_ENDIAN);
+
+        /**
+         * Update state without producing a frame (no binary clients).
+         */
+        public void absorb(List<Tick> ticks) {
+            for (Tick t : ticks) {
+                int id = idFor(t.symbol());
+                fields(t, last[id]);
+            }
+        }
+
+        /**
+         * Encode ticks as one DELTA frame and advance the state.
+         *
+         * @return the frame (a fresh buffer: sends complete asynchronously)
+         */
+        public ByteBuffer encodeDelta(List<Tick> ticks) {
+            // New symbols go in the dictionary section, ahead of their ticks
+            int[] newIds = new int[ticks.size()];
+            int newCount = 0;
+            for (Tick t : ticks) {
+                if (!ids.containsKey(t.symbol())) {
+                    newIds[newCount++] = idFor(t.symbol());
+                }
+            }
+
+            buf.clear();
+            buf.put(VERSION).put(KIND_DELTA);
+            putVarint(newCount);
+            for (int i = 0; i < newCount; i++) {
+                putDictEntry(newIds[i]);
+            }
+            putVarint(ticks.size());
+            for (Tick t : ticks) {
+                int id = ids.get(t.symbol());
+                fields(t, scratch);
+                putTick(id, scratch, last[id]);
+                System.arraycopy(scratch, 0, last[id], 0, FIELDS);
+            }
+            return frame();
+        }
+
+        /**
+         * Encode the full dictionary and every symbol's current state as a
+         * SNAPSHOT frame (for joining clients). Does not change the state.
+         */
+        public ByteBuffer encodeSnapshot() {
+            long[] zero = new long[FIELDS];
+            int n = ids.size();
+            buf.clear();
+            buf.put(VERSION).put(KIND_SNAPSHOT);
+            putVarint(n);
+            for (int id = 0; id < n; id++) {
+                putDictEntry(id);
+            }
+            putVarint(n);
+            for (int id = 0; id < n; id++) {
+                putTick(id, last[id], zero);
+            }
+            return frame();
+        }
+
+        private ByteBuffer frame() {
+            return ByteBuffer.wrap(Arrays.copyOf(buf.array(), buf.position()));
+        }
+
+        public int symbolCount() {
+            return ids.size();
+        }
+
+        private int idFor(String symbol) {
+            Integer id = ids.get(symbol);
+            if (id != null) {
+                return id;
+            }
+            int next = ids.size();
+            if (next == symbols.length) {
+                symbols = Arrays.copyOf(symbols, next * 2);
+                last = Arrays.copyOf(last, next * 2);
+            }
+            symbols[next] = symbol;
+            last[next] = new long[FIELDS];
+            ids.put(symbol, next);
+            return next;
+        }
+
+        private void putDictEntry(int id) {
+            byte[] name = symbols[id].getBytes(StandardCharsets.UTF_8);
+            putVarint(id);
+            putVarint(name.length);
+            ensure(name.length);
+            buf.put(name);
+        }
+
+        private void putTick(int id, long[] values, long[] base) {
+            int mask = 0;
+            for (int f = 0; f < FIELDS; f++) {
+                if (values[f] != base[f]) {
+                    mask |= 1 << f;
+                }
+            }
+            putVarint(id);
+            putVarint(mask);
+            for (int f = 0; f < FIELDS; f++) {
+                if ((mask & (1 << f)) != 0) {
+                    long d = values[f] - base[f];
+                    putVarint((d << 1) ^ (d >> 63));
+                }
+            }
+        }
+
+        private void putVarint(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buf.put((byte) v);
+        }
+
+        private void ensure(int extra) {
+            if (buf.remaining() < extra) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + extra))
+                        .order(ByteOrder.BIG_ENDIAN);
+                buf.flip();
+                grown.put(buf);
+                buf = grown;
+            }
+        }
+    }
+
+    /**
+     * Receiver side: mirrors the encoder's state. Not thread-safe (one per
+     * connection, called from the WebSocket listener).
+     */
+    public static final class Decoder {
+
+        /**
+         * Receives each decoded tick.
+         */
+        @FunctionalInterface
+        public interface Sink {
+            void onTick(Tick tick);
+        }
+
+        private String[] symbols = new String[256];
+        private long[][] last = new long[256][];
+        private final String brokerCode;
+
+        public Decoder(String brokerCode) {
+            this.brokerCode = brokerCode;
+        }
+
+        /**
+         * Decode one complete frame.
+         *
+         * @return number of ticks delivered
+         * @throws IllegalArgumentException on a malformed frame or unknown
+         *                                  version / symbol id
+         */
+        public int decode(ByteBuffer frame, Sink sink) {
+            ByteBuffer b = frame.duplicate().order(ByteOrder.BIG_ENDIAN);
+            try {
+                byte version = b.get();
+                if (version != VERSION) {
+                    throw new IllegalArgumentException("Unsupported relay frame version " + version);
+                }
+                byte kind = b.get();
+                if (kind == KIND_SNAPSHOT) {
+                    Arrays.fill(symbols, null);
+                    Arrays.fill(last, null);
+                } else if (kind != KIND_DELTA) {
+                    throw new IllegalArgumentException("Unknown relay frame kind " + kind);
+                }
+
+                int dict = (int) getVarint(b);
+                for (int i = 0; i < dict; i++) {
+                    int id = (int) getVarint(b);
+                    int len = (int) getVarint(b);
+                    if (id < 0 || id >= MAX_SYMBOL_ID || len < 0 || len > b.remaining()) {
+                        throw new IllegalArgumentException("Bad dictionary entry");
+                    }
+                    byte[] name = new byte[len];
+                    b.get(name);
+                    ensure(id);
+                    symbols[id] = new String(name, StandardCharsets.UTF_8);
+                    last[id] = new long[FIELDS];
+                }
+
+                int count = (int) getVarint(b);
+                for (int i = 0; i < count; i++) {
+                    int id = (int) getVarint(b);
+                    if (id < 0 || id >= symbols.length || symbols[id] == null) {
+                        throw new IllegalArgumentException("Unknown relay symbol id " + id);
+                    }
+                    int mask = (int) getVarint(b);
+                    long[] v = last[id];
+                    for (int f = 0; f < FIELDS; f++) {
+                        if ((mask & (1 << f)) != 0) {
+                            long z = getVarint(b);
+                            v[f] += (z >>> 1) ^ -(z & 1);
+                        }
+                    }
+                    sink.onTick(new Tick(symbols[id], v[F_LAST], v[F_OPEN], v[F_HIGH], v[F_LOW], v[F_CLOSE],
+                            v[F_VOLUME], v[F_BID], v[F_ASK], (int) v[F_BID_QTY], (int) v[F_ASK_QTY],
+                            Instant.ofEpochMilli(v[F_TS]), brokerCode));
+                }
+                return count;
+            } catch (java.nio.BufferUnderflowException e) {
+                throw new IllegalArgumentException("Truncated relay frame", e);
+            }
+        }
+
+        private void ensure(int id) {
+            if (id >= MAX_SYMBOL_ID) {
+                throw new IllegalArgumentException("Relay symbol id " + id + " out of range");
+            }
+            if (id >= symbols.length) {
+                int size = Math.max(symbols.length * 2, id + 1);
+                symbols = Arrays.copyOf(symbols, size);
+                last = Arrays.copyOf(last, size);
+            }
+        }
+
+        private static long getVarint(ByteBuffer b) {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte x = b.get();
+                v |= (long) (x & 0x7F) << shift;
+                if ((x & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new IllegalArgumentException("Varint too long");
+        }
+    }
+}
@@ -16,7 +16,7 @@ public final class RelayBroadcastTickListener implements BrokerAdapter.TickListe
     @Override
     public void onTick(Tick tick) {
         try {
-            relay.broadcast(TickJsonMapper.toJson(tick));
+            relay.broadcast(tick);
         } catch (Exception e) {
             log.warn("[RELAY] Tick broadcast failed for symbol={}", tick.symbol(), e);
         }
@@ -0,0 +1,229 @@
+package in.annupaper.feedrelay;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.undertow.websockets.core.WebSocketCallback;
+import io.undertow.websockets.core.WebSocketChannel;
+import io.undertow.websockets.core.WebSockets;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One relay client: what it asked for and what is queued to it.
+ *
+ * Subscription and mode are changed from the Undertow I/O thread (client
+ * messages) and picked up by the relay flusher via {@link #takeKey()}. A new
+ * client receives every symbol until it sends its first subscribe.
+ *
+ * Queued bytes are frames handed to Undertow but not yet written to the
+ * socket. The flusher stops sending to a client over its limit instead of
+ * letting Undertow buffer without bound.
+ */
+final class RelayClient {
+
+    /**
+     * What a client receives. Clients with equal keys share one feed (and one
+     * encode per flush).
+     *
+     * @param symbols    null = all symbols
+     * @param conflateMs 0 = every tick, otherwise latest per symbol at most
+     *                   once per interval
+     */
+    record FeedKey(boolean binary, Set<String> symbols, long conflateMs) {
+    }
+
+    /**
+     * How frames reach the socket; Undertow in production, a recorder in tests.
+     */
+    interface Sender {
+        void sendBinary(ByteBuffer frame, WebSocketChannel channel, WebSocketCallback<Void> callback);
+
+        void sendText(String text, WebSocketChannel channel, WebSocketCallback<Void> callback);
+
+        void sendClose(int code, String reason, WebSocketChannel channel);
+
+        Sender UNDERTOW = new Sender() {
+            @Override
+            public void sendBinary(ByteBuffer frame, WebSocketChannel channel, WebSocketCallback<Void> callback) {
+                WebSockets.sendBinary(frame, channel, callback);
+            }
+
+            @Override
+            public void sendText(String text, WebSocketChannel channel, WebSocketCallback<Void> callback) {
+                WebSockets.sendText(text, channel, callback);
+            }
+
+            @Override
+            public void sendClose(int code, String reason, WebSocketChannel channel) {
+                WebSockets.sendClose(code, reason, channel, null);
+            }
+        };
+    }
+
+    /**
+     * Send counters shared by all clients of one relay, so they survive
+     * clients disconnecting.
+     */
+    static final class Metrics {
+        final Counter framesSent;
+        final Counter bytesSent;
+        final Counter ticksDropped;
+        final Counter sendErrors;
+
+        Metrics(CollectorRegistry registry) {
+            this.framesSent = Counter.build()
+                    .name("relay_frames_sent_total")
+                    .help("Relay frames written to client sockets")
+                    .register(registry);
+            this.bytesSent = Counter.build()
+                    .name("relay_bytes_sent_total")
+                    .help("Relay bytes written to client sockets")
+                    .register(registry);
+            this.ticksDropped = Counter.build()
+                    .name("relay_client_ticks_dropped_total")
+                    .help("Ticks not sent to JSON clients over their queue limit")
+                    .register(registry);
+            this.sendErrors = Counter.build()
+                    .name("relay_send_errors_total")
+                    .help("Relay frames that failed to send")
+                    .register(registry);
+        }
+    }
+
+    static final long MAX_CONFLATE_MS = 60_000;
+
+    final WebSocketChannel channel;
+    final boolean binary;
+
+    // Requested state (guarded by this)
+    private Set<String> symbols;
+    private long conflateMs;
+    private volatile boolean dirty = true;
+
+    // Flusher-owned delivery state
+    boolean needsSnapshot = true;
+    long overLimitSinceNanos;
+
+    private final AtomicLong queuedBytes = new AtomicLong(0);
+
+    private final Sender sender;
+    private final Metrics metrics;
+
+    RelayClient(WebSocketChannel channel, boolean binary) {
+        this(channel, binary, Sender.UNDERTOW, new Metrics(new CollectorRegistry()));
+    }
+
+    RelayClient(WebSocketChannel channel, boolean binary, Sender sender, Metrics metrics) {
+        this.channel = channel;
+        this.binary = binary;
+        this.sender = sender;
+        this.metrics = metrics;
+    }
+
+    synchronized void subscribe(Collection<String> add) {
+        if (symbols == null) {
+            symbols = new HashSet<>();
+        }
+        symbols.addAll(add);
+        dirty = true;
+    }
+
+    synchronized void subscribeAll() {
+        symbols = null;
+        dirty = true;
+    }
+
+    /**
+     * @return false if the client is subscribed to all symbols (nothing to
+     *         remove from)
+     */
+    synchronized boolean unsubscribe(Collection<String> remove) {
+        if (symbols == null) {
+            return false;
+        }
+        symbols.removeAll(remove);
+        dirty = true;
+        return true;
+    }
+
+    synchronized void setConflateMs(long ms) {
+        conflateMs = Math.max(0, Math.min(ms, MAX_CONFLATE_MS));
+        dirty = true;
+    }
+
+    /**
+     * Symbols subscribed to, or -1 for all.
+     */
+    synchronized int symbolCount() {
+        return symbols == null ? -1 : symbols.size();
+    }
+
+    synchronized long conflateMs() {
+        return conflateMs;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Snapshot of the requested state for the flusher; clears the dirty flag.
+     */
+    synchronized FeedKey takeKey() {
+        dirty = false;
+        return new FeedKey(binary, symbols == null ? null : Set.copyOf(symbols), conflateMs);
+    }
+
+    boolean hasRoom(long maxQueuedBytes) {
+        return queuedBytes.get() < maxQueuedBytes;
+    }
+
+    long queuedBytes() {
+        return queuedBytes.get();
+    }
+
+    void send(ByteBuffer frame) {
+        int n = frame.remaining();
+        queuedBytes.addAndGet(n);
+        sender.sendBinary(frame.duplicate(), channel, new Sent(n));
+    }
+
+    void send(String text) {
+        int n = text.length();
+        queuedBytes.addAndGet(n);
+        sender.sendText(text, channel, new Sent(n));
+    }
+
+    void close(int code, String reason) {
+        sender.sendClose(code, reason, channel);
+    }
+
+    void dropped(int ticks) {
+        metrics.ticksDropped.inc(ticks);
+    }
+
+    private final class Sent implements WebSocketCallback<Void> {
+        private final int bytes;
+
+        Sent(int bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void complete(WebSocketChannel ch, Void context) {
+            queuedBytes.addAndGet(-bytes);
+            metrics.framesSent.inc();
+            metrics.bytesSent.inc(bytes);
+        }
+
+        @Override
+        public void onError(WebSocketChannel ch, Void context, Throwable throwable) {
+            queuedBytes.addAndGet(-bytes);
+            metrics.sendErrors.inc();
+        }
+    }
+}
@@ -1,30 +1,195 @@
 package in.annupaper.feedrelay;
 
+import in.annupaper.domain.model.Tick;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
 import io.undertow.Undertow;
 import io.undertow.server.handlers.PathHandler;
 import io.undertow.websockets.WebSocketConnectionCallback;
 import io.undertow.websockets.WebSocketProtocolHandshakeHandler;
 import io.undertow.websockets.core.*;
 import io.undertow.websockets.spi.WebSocketHttpExchange;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Tick relay on ws://host:port/ticks.
+ *
+ * Two wire formats, chosen per client at the handshake:
+ * - JSON (default): one text frame per tick (TickJsonMapper), e.g. frontend
+ * - Binary ({@code ?proto=bin1}): one RelayBinaryProtocol frame per flush
+ *   interval with all ticks since the last flush. A joining client first gets
+ *   a SNAPSHOT (dictionary + current state of every symbol it receives).
+ *
+ * Clients may narrow what they receive with text messages:
+ * - {"action":"subscribe","symbols":["NSE:SBIN-EQ", ...]} ("*" = all again)
+ * - {"action":"unsubscribe","symbols":[...]}
+ * - {"action":"mode","conflateMs":250} (latest per symbol at most every
+ *   250ms; 0 = every tick)
+ * Until its first subscribe a client receives every symbol.
+ *
+ * Clients with the same format, symbols and conflation share a feed: ticks are
+ * routed through a symbol → feeds index and each feed is encoded once per
+ * flush, so egress follows what clients asked for. Each client has a queued
+ * bytes limit; a binary client over it skips frames and is resynced with a
+ * SNAPSHOT once drained, a JSON client over it loses ticks, and a client stuck
+ * over it for the stall timeout is closed.
+ */
 public final class TickRelayServer {
     private static final Logger log = LoggerFactory.getLogger(TickRelayServer.class);
 
-    private final Set<WebSocketChannel> clients = ConcurrentHashMap.newKeySet();
+    private static final int MAX_PENDING_TICKS = 200_000;
+    private static final int CLOSE_TRY_AGAIN_LATER = 1013;
+
+    private final Set<RelayClient> clients = ConcurrentHashMap.newKeySet();
     private Undertow server;
 
+    // Ticks since last flush, routed by the flusher thread only
+    private final Object pendingLock = new Object();
+    private List<Tick> pending = new ArrayList<>(1024);
+    private final long flushMs = Math.max(5,
+            Long.parseLong(System.getenv().getOrDefault("RELAY_FLUSH_MS", "50").trim()));
+    private final long maxQueuedBytes;
+    private final long stallNanos;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "relay-flusher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Flusher-owned routing state
+    private final Map<String, Tick> latestBySymbol = new HashMap<>();
+    private final Map<RelayClient.FeedKey, Feed> feeds = new HashMap<>();
+    private final Map<RelayClient, Feed> feedOf = new HashMap<>();
+    private final Map<String, List<Feed>> feedsBySymbol = new HashMap<>();
+    private final List<Feed> allSymbolFeeds = new ArrayList<>();
+    private final Map<Tick, String> jsonCache = new IdentityHashMap<>();
+    private volatile int feedCount;
+    private volatile int symbolCount;
+
+    // Metrics
+    private final Counter framesEncoded;
+    private final Counter bytesEncoded;
+    private final Counter ticksEncoded;
+    private final Counter ticksDropped;
+    private final Counter resyncs;
+    private final Counter slowDisconnects;
+    private final RelayClient.Metrics clientMetrics;
+    private final RelayClient.Sender sender;
+
     // Shared secret token for client authentication (optional - empty = allow all)
     private final String relayToken = System.getenv().getOrDefault("RELAY_TOKEN", "").trim();
 
+    public TickRelayServer() {
+        this(new CollectorRegistry());
+    }
+
+    public TickRelayServer(CollectorRegistry registry) {
+        this(registry, RelayClient.Sender.UNDERTOW,
+                Math.max(64 * 1024, Long.parseLong(
+                        System.getenv().getOrDefault("RELAY_CLIENT_MAX_QUEUED_BYTES", "1048576").trim())),
+                Long.parseLong(System.getenv().getOrDefault("RELAY_CLIENT_STALL_MS", "30000").trim()));
+    }
+
+    TickRelayServer(CollectorRegistry registry, RelayClient.Sender sender, long maxQueuedBytes, long stallMs) {
+        this.sender = sender;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallMs);
+        this.clientMetrics = new RelayClient.Metrics(registry);
+        this.framesEncoded = Counter.build()
+                .name("relay_binary_frames_encoded_total")
+                .help("Binary relay frames encoded (once per feed per flush)")
+                .register(registry);
+        this.ticksEncoded = Counter.build()
+                .name("relay_binary_ticks_encoded_total")
+                .help("Ticks encoded into binary relay frames")
+                .register(registry);
+        this.bytesEncoded = Counter.build()
+                .name("relay_binary_bytes_encoded_total")
+                .help("Bytes of binary relay frames encoded")
+                .register(registry);
+        this.ticksDropped = Counter.build()
+                .name("relay_pending_ticks_dropped_total")
+                .help("Ticks dropped because the pending flush buffer was full")
+                .register(registry);
+        this.resyncs = Counter.build()
+                .name("relay_binary_resyncs_total")
+                .help("Binary clients that skipped frames and were resynced with a SNAPSHOT")
+                .register(registry);
+        this.slowDisconnects = Counter.build()
+                .name("relay_slow_disconnects_total")
+                .help("Clients closed for staying over their queue limit past the stall timeout")
+                .register(registry);
+
+        Gauge clientGauge = Gauge.build()
+                .name("relay_clients")
+                .help("Connected relay clients by wire format")
+                .labelNames("protocol")
+                .register(registry);
+        clientGauge.setChild(new Gauge.Child() {
+            @Override
+            public double get() {
+                return clients.stream().filter(c -> !c.binary).count();
+            }
+        }, "json");
+        clientGauge.setChild(new Gauge.Child() {
+            @Override
+            public double get() {
+                return clients.stream().filter(c -> c.binary).count();
+            }
+        }, "binary");
+        Gauge.build()
+                .name("relay_symbols")
+                .help("Symbols seen by the relay")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return symbolCount;
+                    }
+                });
+        Gauge.build()
+                .name("relay_feeds")
+                .help("Distinct relay feeds (clients sharing format, symbols and conflation)")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return feedCount;
+                    }
+                });
+        Gauge.build()
+                .name("relay_queued_bytes")
+                .help("Bytes handed to Undertow but not yet written, all clients")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return clients.stream().mapToLong(RelayClient::queuedBytes).sum();
+                    }
+                });
+    }
+
     public void start(int port) {
         if (!relayToken.isEmpty()) {
             log.info("[RELAY] Token authentication ENABLED");
@@ -46,13 +211,20 @@ public final class TickRelayServer {
                     return;
                 }
 
-                clients.add(channel);
-                channel.getCloseSetter().set(c -> clients.remove(channel));
+                boolean binary = RelayBinaryProtocol.PROTO_BINARY.equals(
+                        parseQuery(exchange.getRequestURI()).get(RelayBinaryProtocol.PROTO_PARAM));
+                RelayClient client = connect(channel, binary);
+                channel.getCloseSetter().set(c -> clients.remove(client));
 
-                channel.getReceiveSetter().set(new AbstractReceiveListener() {});
+                channel.getReceiveSetter().set(new AbstractReceiveListener() {
+                    @Override
+                    protected void onFullTextMessage(WebSocketChannel ch, BufferedTextMessage message) {
+                        handleClientMessage(client, message.getData());
+                    }
+                });
                 channel.resumeReceives();
 
-                log.info("[RELAY] Client connected (total: {})", clients.size());
+                log.info("[RELAY] Client connected ({}; clients: {})", binary ? "binary" : "json", clients.size());
             }
         };
 
@@ -65,16 +237,372 @@ public final class TickRelayServer {
             .build();
 
         server.start();
+        flusher.scheduleAtFixedRate(this::flush, flushMs, flushMs, TimeUnit.MILLISECONDS);
+        log.info("[RELAY] Flushing every {}ms (binary: {}={}, client queue limit {} bytes)", flushMs,
+                RelayBinaryProtocol.PROTO_PARAM, RelayBinaryProtocol.PROTO_BINARY, maxQueuedBytes);
     }
 
     public void stop() {
+        flusher.shutdownNow();
         if (server != null) server.stop();
     }
 
-    public void broadcast(String json) {
-        for (WebSocketChannel ch : clients) {
-            if (ch == null || !ch.isOpen()) continue;
-            WebSockets.sendText(json, ch, null);
+    /**
+     * Add a client; it joins a feed on the next flush.
+     */
+    RelayClient connect(WebSocketChannel channel, boolean binary) {
+        RelayClient client = new RelayClient(channel, binary, sender, clientMetrics);
+        clients.add(client);
+        return client;
+    }
+
+    /**
+     * Relay one tick: queued for the next flush.
+     */
+    public void broadcast(Tick tick) {
+        synchronized (pendingLock) {
+            if (pending.size() < MAX_PENDING_TICKS) {
+                pending.add(tick);
+            } else {
+                ticksDropped.inc();
+            }
+        }
+    }
+
+    /**
+     * Apply a subscribe / unsubscribe / mode message. Runs on the I/O thread;
+     * the flusher picks the change up on its next run.
+     */
+    void handleClientMessage(RelayClient client, String text) {
+        String action;
+        try {
+            JSONObject o = new JSONObject(text);
+            action = o.optString("action", "");
+            switch (action) {
+                case "subscribe" -> {
+                    List<String> symbols = symbols(o);
+                    if (symbols.contains("*")) {
+                        client.subscribeAll();
+                    } else {
+                        client.subscribe(symbols);
+                    }
+                }
+                case "unsubscribe" -> {
+                    if (!client.unsubscribe(symbols(o))) {
+                        sendError(client, "subscribed to all symbols; subscribe to a list first");
+                        return;
+                    }
+                }
+                case "mode" -> client.setConflateMs(o.optLong("conflateMs", 0));
+                default -> {
+                    sendError(client, "unknown action: " + action);
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            sendError(client, "bad message: " + e.getMessage());
+            return;
+        }
+
+        JSONObject ack = new JSONObject();
+        ack.put("type", "ack");
+        ack.put("action", action);
+        ack.put("symbols", client.symbolCount());
+        ack.put("conflateMs", client.conflateMs());
+        client.send(ack.toString());
+        log.debug("[RELAY] Client {} {} (symbols: {}, conflateMs: {})", client.channel.getPeerAddress(), action,
+                client.symbolCount(), client.conflateMs());
+    }
+
+    private static List<String> symbols(JSONObject o) {
+        JSONArray arr = o.getJSONArray("symbols");
+        List<String> out = new ArrayList<>(arr.length());
+        for (int i = 0; i < arr.length(); i++) {
+            out.add(arr.getString(i));
+        }
+        return out;
+    }
+
+    private static void sendError(RelayClient client, String message) {
+        JSONObject err = new JSONObject();
+        err.put("type", "error");
+        err.put("message", message);
+        client.send(err.toString());
+    }
+
+    /**
+     * Route everything since the last flush to the feeds that want it and
+     * send each due feed, encoded once, to its clients.
+     */
+    void flush() {
+        try {
+            List<Tick> ticks;
+            synchronized (pendingLock) {
+                ticks = pending;
+                pending = new ArrayList<>(Math.max(1024, ticks.size()));
+            }
+
+            for (Tick t : ticks) {
+                latestBySymbol.put(t.symbol(), t);
+            }
+            symbolCount = latestBySymbol.size();
+            reassignClients();
+
+            for (Tick t : ticks) {
+                for (Feed f : allSymbolFeeds) {
+                    f.accept(t);
+                }
+                List<Feed> fs = feedsBySymbol.get(t.symbol());
+                if (fs != null) {
+                    for (Feed f : fs) {
+                        f.accept(t);
+                    }
+                }
+            }
+
+            long nowMs = System.currentTimeMillis();
+            long nowNanos = System.nanoTime();
+            for (Feed f : feeds.values()) {
+                if (f.key.binary()) {
+                    deliverBinary(f, nowMs, nowNanos);
+                } else {
+                    deliverJson(f, nowMs, nowNanos);
+                }
+            }
+            jsonCache.clear();
+        } catch (Exception e) {
+            log.warn("[RELAY] Flush failed", e);
+        }
+    }
+
+    /**
+     * Move new, changed and closed clients between feeds and rebuild the
+     * symbol → feeds index if anything moved.
+     */
+    private void reassignClients() {
+        boolean changed = false;
+
+        Iterator<Map.Entry<RelayClient, Feed>> it = feedOf.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<RelayClient, Feed> e = it.next();
+            RelayClient c = e.getKey();
+            if (!clients.contains(c) || !c.channel.isOpen()) {
+                it.remove();
+                leave(e.getValue(), c);
+                changed = true;
+            }
+        }
+
+        for (RelayClient c : clients) {
+            if (!c.isDirty() || !c.channel.isOpen()) {
+                continue;
+            }
+            RelayClient.FeedKey key = c.takeKey();
+            Feed current = feedOf.get(c);
+            if (current != null && current.key.equals(key)) {
+                continue;
+            }
+            if (current != null) {
+                leave(current, c);
+            }
+            Feed f = feeds.get(key);
+            if (f == null) {
+                f = new Feed(key);
+                f.seed(latestBySymbol);
+                feeds.put(key, f);
+            }
+            f.clients.add(c);
+            feedOf.put(c, f);
+            c.needsSnapshot = true;
+            changed = true;
+        }
+
+        if (changed) {
+            feedsBySymbol.clear();
+            allSymbolFeeds.clear();
+            for (Feed f : feeds.values()) {
+                if (f.key.symbols() == null) {
+                    allSymbolFeeds.add(f);
+                } else {
+                    for (String s : f.key.symbols()) {
+                        feedsBySymbol.computeIfAbsent(s, k -> new ArrayList<>(2)).add(f);
+                    }
+                }
+            }
+            feedCount = feeds.size();
+        }
+    }
+
+    private void leave(Feed f, RelayClient c) {
+        f.clients.remove(c);
+        if (f.clients.isEmpty()) {
+            feeds.remove(f.key);
+        }
+    }
+
+    /**
+     * Encode the feed's due ticks once and send the same frame to each client.
+     * Clients that need a SNAPSHOT (new, moved, or resyncing after falling
+     * behind) get one taken after this delta instead of the delta.
+     */
+    private void deliverBinary(Feed f, long nowMs, long nowNanos) {
+        List<Tick> due = f.take(nowMs);
+        ByteBuffer frame = null;
+        if (due != null && !due.isEmpty()) {
+            frame = f.encoder.encodeDelta(due);
+            framesEncoded.inc();
+            ticksEncoded.inc(due.size());
+            bytesEncoded.inc(frame.remaining());
+        }
+
+        ByteBuffer snapshot = null;
+        for (RelayClient c : f.clients) {
+            if (!admit(c, nowNanos)) {
+                if (frame != null && !c.needsSnapshot) {
+                    c.needsSnapshot = true;
+                    resyncs.inc();
+                }
+                continue;
+            }
+            if (c.needsSnapshot) {
+                if (snapshot == null) {
+                    snapshot = f.encoder.encodeSnapshot();
+                }
+                c.send(snapshot);
+                c.needsSnapshot = false;
+            } else if (frame != null) {
+                c.send(frame);
+            }
+        }
+    }
+
+    private void deliverJson(Feed f, long nowMs, long nowNanos) {
+        List<Tick> due = f.take(nowMs);
+        if (due == null || due.isEmpty()) {
+            return;
+        }
+        for (RelayClient c : f.clients) {
+            if (!admit(c, nowNanos)) {
+                c.dropped(due.size());
+                continue;
+            }
+            for (Tick t : due) {
+                c.send(jsonCache.computeIfAbsent(t, TickJsonMapper::toJson));
+            }
+        }
+    }
+
+    /**
+     * Whether the client has room under its queue limit. A client over the
+     * limit for longer than the stall timeout is closed.
+     */
+    private boolean admit(RelayClient c, long nowNanos) {
+        if (c.hasRoom(maxQueuedBytes)) {
+            c.overLimitSinceNanos = 0;
+            return true;
+        }
+        if (c.overLimitSinceNanos == 0) {
+            c.overLimitSinceNanos = nowNanos;
+        } else if (nowNanos - c.overLimitSinceNanos > stallNanos && clients.remove(c)) {
+            slowDisconnects.inc();
+            log.warn("[RELAY] Closing slow client {} ({} bytes queued for {}ms)", c.channel.getPeerAddress(),
+                    c.queuedBytes(), TimeUnit.NANOSECONDS.toMillis(nowNanos - c.overLimitSinceNanos));
+            try {
+                c.close(CLOSE_TRY_AGAIN_LATER, "slow consumer");
+            } catch (Exception ignored) {
+            }
+        }
+        return false;
+    }
+
+    public Map<String, Long> getMetrics() {
+        long json = 0;
+        long binary = 0;
+        long queued = 0;
+        for (RelayClient c : clients) {
+            if (c.binary) {
+                binary++;
+            } else {
+                json++;
+            }
+            queued += c.queuedBytes();
+        }
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("jsonClients", json);
+        m.put("binaryClients", binary);
+        m.put("feeds", (long) feedCount);
+        m.put("binaryFramesEncoded", (long) framesEncoded.get());
+        m.put("binaryTicksEncoded", (long) ticksEncoded.get());
+        m.put("binaryBytesEncoded", (long) bytesEncoded.get());
+        m.put("framesSent", (long) clientMetrics.framesSent.get());
+        m.put("bytesSent", (long) clientMetrics.bytesSent.get());
+        m.put("queuedBytes", queued);
+        m.put("ticksDropped", (long) ticksDropped.get());
+        m.put("clientTicksDropped", (long) clientMetrics.ticksDropped.get());
+        m.put("binaryResyncs", (long) resyncs.get());
+        m.put("slowDisconnects", (long) slowDisconnects.get());
+        m.put("sendErrors", (long) clientMetrics.sendErrors.get());
+        m.put("symbols", (long) symbolCount);
+        return m;
+    }
+
+    /**
+     * Clients sharing one FeedKey. Flusher thread only.
+     */
+    private static final class Feed {
+        final RelayClient.FeedKey key;
+        final Set<RelayClient> clients = new LinkedHashSet<>();
+        final RelayBinaryProtocol.Encoder encoder;
+        private List<Tick> ticks = new ArrayList<>();
+        private final Map<String, Tick> latest = new LinkedHashMap<>();
+        private long nextDueMs;
+
+        Feed(RelayClient.FeedKey key) {
+            this.key = key;
+            this.encoder = key.binary() ? new RelayBinaryProtocol.Encoder() : null;
+        }
+
+        /**
+         * Start the binary state from the latest tick of each symbol, so the
+         * first SNAPSHOT is complete.
+         */
+        void seed(Map<String, Tick> latestBySymbol) {
+            if (encoder == null) {
+                return;
+            }
+            List<Tick> initial = new ArrayList<>();
+            for (Tick t : latestBySymbol.values()) {
+                if (key.symbols() == null || key.symbols().contains(t.symbol())) {
+                    initial.add(t);
+                }
+            }
+            encoder.absorb(initial);
+        }
+
+        void accept(Tick t) {
+            if (key.conflateMs() > 0) {
+                latest.put(t.symbol(), t);
+            } else {
+                ticks.add(t);
+            }
+        }
+
+        /**
+         * Ticks to send now, or null if a conflating feed is not due yet.
+         */
+        List<Tick> take(long nowMs) {
+            if (key.conflateMs() == 0) {
+                List<Tick> out = ticks;
+                ticks = new ArrayList<>(Math.max(16, out.size()));
+                return out;
+            }
+            if (nowMs < nextDueMs) {
+                return null;
+            }
+            nextDueMs = nowMs + key.conflateMs();
+            List<Tick> out = new ArrayList<>(latest.values());
+            latest.clear();
+            return out;
         }
     }
 
@@ -4,6 +4,7 @@ import in.annupaper.infrastructure.broker.adapters.*;
 import in.annupaper.domain.model.*;
 import in.annupaper.application.port.output.UserBrokerRepository;
 import in.annupaper.application.port.output.UserBrokerSessionRepository;
+import io.prometheus.client.CollectorRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,12 +30,24 @@ public final class BrokerAdapterFactory implements BrokerProvider {
     // User-broker repository for loading credentials
     private final UserBrokerRepository userBrokerRepo;
 
+    // Kite frame decoder counters shared by every Zerodha adapter
+    private final KiteTickDecoder.Metrics kiteDecoderMetrics;
+
     /**
      * Constructor with repositories for OAuth token and credentials management.
      */
     public BrokerAdapterFactory(UserBrokerSessionRepository sessionRepo, UserBrokerRepository userBrokerRepo) {
+        this(sessionRepo, userBrokerRepo, new CollectorRegistry());
+    }
+
+    /**
+     * Constructor that also registers adapter metrics on the given registry.
+     */
+    public BrokerAdapterFactory(UserBrokerSessionRepository sessionRepo, UserBrokerRepository userBrokerRepo,
+            CollectorRegistry registry) {
         this.sessionRepo = sessionRepo;
         this.userBrokerRepo = userBrokerRepo;
+        this.kiteDecoderMetrics = new KiteTickDecoder.Metrics(registry);
     }
 
     /**
@@ -101,7 +114,7 @@ public final class BrokerAdapterFactory implements BrokerProvider {
      */
     public BrokerAdapter create(String brokerCode, String userBrokerId) {
         BrokerAdapter adapter = switch (brokerCode.toUpperCase()) {
-            case "ZERODHA", "KITE" -> new ZerodhaDataAdapter(sessionRepo, userBrokerId);
+            case "ZERODHA", "KITE" -> new ZerodhaDataAdapter(sessionRepo, userBrokerId, kiteDecoderMetrics);
             case "FYERS" -> createFyersAdapter(userBrokerId);
             case "DHAN" -> new DhanAdapter();
             case "UPSTOX" -> new UpstoxAdapter();
@@ -0,0 +1,385 @@
+package in.annupaper.infrastructure.broker.adapters;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * KiteTickDecoder - Allocation-free decoder for Kite Ticker binary frames.
+ *
+ * Frame format (Kite Connect v3, big-endian):
+ * - 2 bytes: number of packets
+ * - per packet: 2 bytes length, then the packet
+ * A 1-byte frame is a heartbeat.
+ *
+ * Packet layouts by length (prices are int32 paise):
+ * - 8   LTP:   token, last price
+ * - 28  index QUOTE: token, last price, high, low, open, close, change
+ * - 32  index FULL:  index QUOTE + exchange timestamp
+ * - 44  QUOTE: token, last price, last qty, avg price, volume, buy qty,
+ *              sell qty, open, high, low, close
+ * - 184 FULL:  QUOTE + last trade time, OI, OI high, OI low, exchange
+ *              timestamp, then 10 depth entries of 12 bytes (qty int32,
+ *              price int32, orders int16, 2 bytes padding): 5 bids, 5 asks
+ *
+ * Fields are read with absolute gets straight from the incoming buffer into
+ * one reusable {@link Packet} flyweight, which is handed to the sink and must
+ * not be retained. The buffer's position is not changed.
+ *
+ * Malformed input never throws: a truncated packet ends the frame, an unknown
+ * packet length is skipped, and both are counted. One decoder per connection
+ * (not thread-safe); the registry counters in {@link Metrics} are shared by
+ * all of them.
+ */
+public final class KiteTickDecoder {
+
+    public static final int MODE_LTP = 1;
+    public static final int MODE_QUOTE = 2;
+    public static final int MODE_FULL = 3;
+
+    public static final int DEPTH_LEVELS = 5;
+
+    private static final int LTP_LENGTH = 8;
+    private static final int INDEX_QUOTE_LENGTH = 28;
+    private static final int INDEX_FULL_LENGTH = 32;
+    private static final int QUOTE_LENGTH = 44;
+    private static final int FULL_LENGTH = 184;
+    private static final int DEPTH_OFFSET = 64;
+    private static final int DEPTH_ENTRY_LENGTH = 12;
+
+    /**
+     * Receives each decoded packet (the flyweight is reused for the next one).
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void onPacket(Packet packet);
+    }
+
+    /**
+     * Decoder counters shared by all Kite connections, so they survive
+     * reconnects and adapter instances.
+     */
+    public static final class Metrics {
+        final Counter frames;
+        final Counter packets;
+        final Counter unknownPackets;
+        final Counter truncatedFrames;
+
+        public Metrics(CollectorRegistry registry) {
+            this.frames = Counter.build()
+                    .name("kite_decoder_frames_total")
+                    .help("Kite Ticker binary frames decoded, heartbeats included")
+                    .register(registry);
+            this.packets = Counter.build()
+                    .name("kite_decoder_packets_total")
+                    .help("Kite Ticker packets decoded and delivered")
+                    .register(registry);
+            this.unknownPackets = Counter.build()
+                    .name("kite_decoder_unknown_packets_total")
+                    .help("Kite Ticker packets skipped for an unknown length")
+                    .register(registry);
+            this.truncatedFrames = Counter.build()
+                    .name("kite_decoder_truncated_frames_total")
+                    .help("Kite Ticker frames cut short by a truncated packet")
+                    .register(registry);
+        }
+    }
+
+    private final Packet packet = new Packet();
+    private final Metrics metrics;
+
+    // Per-connection counts (getMetrics)
+    private final AtomicLong frames = new AtomicLong(0);
+    private final AtomicLong heartbeats = new AtomicLong(0);
+    private final AtomicLong packets = new AtomicLong(0);
+    private final AtomicLong unknownPackets = new AtomicLong(0);
+    private final AtomicLong truncatedFrames = new AtomicLong(0);
+
+    public KiteTickDecoder() {
+        this(new Metrics(new CollectorRegistry()));
+    }
+
+    public KiteTickDecoder(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Decode one complete frame from {@code frame.position()} to its limit.
+     *
+     * @return number of packets delivered to the sink
+     */
+    public int decode(ByteBuffer frame, Sink sink) {
+        frames.incrementAndGet();
+        metrics.frames.inc();
+        ByteOrder order = frame.order();
+        frame.order(ByteOrder.BIG_ENDIAN);
+        try {
+            int pos = frame.position();
+            int end = frame.limit();
+            if (end - pos < 2) {
+                if (end - pos == 1) {
+                    heartbeats.incrementAndGet();
+                } else {
+                    truncatedFrames.incrementAndGet();
+                    metrics.truncatedFrames.inc();
+                }
+                return 0;
+            }
+
+            int count = frame.getShort(pos) & 0xFFFF;
+            pos += 2;
+            int delivered = 0;
+            for (int i = 0; i < count; i++) {
+                if (end - pos < 2) {
+                    truncatedFrames.incrementAndGet();
+                    metrics.truncatedFrames.inc();
+                    break;
+                }
+                int length = frame.getShort(pos) & 0xFFFF;
+                pos += 2;
+                if (end - pos < length) {
+                    truncatedFrames.incrementAndGet();
+                    metrics.truncatedFrames.inc();
+                    break;
+                }
+                if (packet.read(frame, pos, length)) {
+                    delivered++;
+                    sink.onPacket(packet);
+                } else {
+                    unknownPackets.incrementAndGet();
+                    metrics.unknownPackets.inc();
+                }
+                pos += length;
+            }
+            packets.addAndGet(delivered);
+            metrics.packets.inc(delivered);
+            return delivered;
+        } finally {
+            frame.order(order);
+        }
+    }
+
+    public Map<String, Long> getMetrics() {
+        return Map.of(
+                "frames", frames.get(),
+                "heartbeats", heartbeats.get(),
+                "packets", packets.get(),
+                "unknownPackets", unknownPackets.get(),
+                "truncatedFrames", truncatedFrames.get());
+    }
+
+    /**
+     * Reusable view of one decoded packet. Absent fields are 0, except
+     * exchange timestamps which are -1 when not sent.
+     */
+    public static final class Packet {
+        private int mode;
+        private boolean index;
+        private long token;
+        private long lastPrice;
+        private long lastQty;
+        private long avgPrice;
+        private long volume;
+        private long buyQty;
+        private long sellQty;
+        private long open;
+        private long high;
+        private long low;
+        private long close;
+        private long lastTradeTimeSec;
+        private long oi;
+        private long oiHigh;
+        private long oiLow;
+        private long exchangeTimeSec;
+        private int depthLevels;
+        private final long[] bidQty = new long[DEPTH_LEVELS];
+        private final long[] bidPrice = new long[DEPTH_LEVELS];
+        private final int[] bidOrders = new int[DEPTH_LEVELS];
+        private final long[] askQty = new long[DEPTH_LEVELS];
+        private final long[] askPrice = new long[DEPTH_LEVELS];
+        private final int[] askOrders = new int[DEPTH_LEVELS];
+
+        Packet() {
+        }
+
+        private boolean read(ByteBuffer b, int p, int length) {
+            if (length != LTP_LENGTH && length != INDEX_QUOTE_LENGTH && length != INDEX_FULL_LENGTH
+                    && length != QUOTE_LENGTH && length != FULL_LENGTH) {
+                return false;
+            }
+            clear();
+            token = u32(b, p);
+            lastPrice = u32(b, p + 4);
+
+            switch (length) {
+                case LTP_LENGTH -> mode = MODE_LTP;
+                case INDEX_QUOTE_LENGTH, INDEX_FULL_LENGTH -> {
+                    index = true;
+                    mode = length == INDEX_FULL_LENGTH ? MODE_FULL : MODE_QUOTE;
+                    high = u32(b, p + 8);
+                    low = u32(b, p + 12);
+                    open = u32(b, p + 16);
+                    close = u32(b, p + 20);
+                    // p + 24: change (derivable from close)
+                    if (length == INDEX_FULL_LENGTH) {
+                        exchangeTimeSec = u32(b, p + 28);
+                    }
+                }
+                default -> {
+                    mode = length == FULL_LENGTH ? MODE_FULL : MODE_QUOTE;
+                    lastQty = u32(b, p + 8);
+                    avgPrice = u32(b, p + 12);
+                    volume = u32(b, p + 16);
+                    buyQty = u32(b, p + 20);
+                    sellQty = u32(b, p + 24);
+                    open = u32(b, p + 28);
+                    high = u32(b, p + 32);
+                    low = u32(b, p + 36);
+                    close = u32(b, p + 40);
+                    if (length == FULL_LENGTH) {
+                        lastTradeTimeSec = u32(b, p + 44);
+                        oi = u32(b, p + 48);
+                        oiHigh = u32(b, p + 52);
+                        oiLow = u32(b, p + 56);
+                        exchangeTimeSec = u32(b, p + 60);
+                        depthLevels = DEPTH_LEVELS;
+                        for (int i = 0; i < DEPTH_LEVELS; i++) {
+                            int bid = p + DEPTH_OFFSET + i * DEPTH_ENTRY_LENGTH;
+                            int ask = bid + DEPTH_LEVELS * DEPTH_ENTRY_LENGTH;
+                            bidQty[i] = u32(b, bid);
+                            bidPrice[i] = u32(b, bid + 4);
+                            bidOrders[i] = b.getShort(bid + 8) & 0xFFFF;
+                            askQty[i] = u32(b, ask);
+                            askPrice[i] = u32(b, ask + 4);
+                            askOrders[i] = b.getShort(ask + 8) & 0xFFFF;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        private void clear() {
+            index = false;
+            lastQty = avgPrice = volume = buyQty = sellQty = 0;
+            open = high = low = close = 0;
+            lastTradeTimeSec = oi = oiHigh = oiLow = 0;
+            exchangeTimeSec = -1;
+            depthLevels = 0;
+        }
+
+        private static long u32(ByteBuffer b, int at) {
+            return b.getInt(at) & 0xFFFFFFFFL;
+        }
+
+        public int mode() {
+            return mode;
+        }
+
+        public boolean isIndex() {
+            return index;
+        }
+
+        public long token() {
+            return token;
+        }
+
+        public long lastPricePaise() {
+            return lastPrice;
+        }
+
+        public long lastQty() {
+            return lastQty;
+        }
+
+        public long avgPricePaise() {
+            return avgPrice;
+        }
+
+        public long volume() {
+            return volume;
+        }
+
+        public long buyQty() {
+            return buyQty;
+        }
+
+        public long sellQty() {
+            return sellQty;
+        }
+
+        public long openPaise() {
+            return open;
+        }
+
+        public long highPaise() {
+            return high;
+        }
+
+        public long lowPaise() {
+            return low;
+        }
+
+        public long closePaise() {
+            return close;
+        }
+
+        public long lastTradeTimeSec() {
+            return lastTradeTimeSec;
+        }
+
+        public long openInterest() {
+            return oi;
+        }
+
+        public long openInterestHigh() {
+            return oiHigh;
+        }
+
+        public long openInterestLow() {
+            return oiLow;
+        }
+
+        /**
+         * Exchange timestamp (epoch seconds), or -1 if not sent (LTP/QUOTE).
+         */
+        public long exchangeTimeSec() {
+            return exchangeTimeSec;
+        }
+
+        /**
+         * Depth levels present (5 in FULL mode, else 0).
+         */
+        public int depthLevels() {
+            return depthLevels;
+        }
+
+        public long bidQty(int level) {
+            return bidQty[level];
+        }
+
+        public long bidPricePaise(int level) {
+            return bidPrice[level];
+        }
+
+        public int bidOrders(int level) {
+            return bidOrders[level];
+        }
+
+        public long askQty(int level) {
+            return askQty[level];
+        }
+
+        public long askPricePaise(int level) {
+            return askPrice[level];
+        }
+
+        public int askOrders(int level) {
+            return askOrders[level];
+        }
+    }
+}
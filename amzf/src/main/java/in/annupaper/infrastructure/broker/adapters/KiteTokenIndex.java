@@ -0,0 +1,77 @@
+package in.annupaper.infrastructure.broker.adapters;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * KiteTokenIndex - Immutable primitive map from instrument token to a dense
+ * symbol id (and id to symbol).
+ *
+ * Open addressing over long[] keys / int[] ids with linear probing, so the
+ * per-packet lookup boxes nothing. Rebuilt and swapped whole when the
+ * instrument master is (re)loaded.
+ */
+public final class KiteTokenIndex {
+    public static final KiteTokenIndex EMPTY = new KiteTokenIndex(Map.of());
+
+    private static final long FREE = -1L; // tokens are unsigned 32-bit
+
+    private final long[] keys;
+    private final int[] ids;
+    private final String[] symbols;
+    private final int mask;
+
+    public KiteTokenIndex(Map<Long, String> source) {
+        Map<Long, String> tokenToSymbol = Map.copyOf(source);
+        int size = Integer.highestOneBit(Math.max(4, tokenToSymbol.size() * 2 - 1)) << 1;
+        this.keys = new long[size];
+        this.ids = new int[size];
+        this.mask = size - 1;
+        this.symbols = new String[tokenToSymbol.size()];
+        Arrays.fill(keys, FREE);
+
+        int next = 0;
+        for (Map.Entry<Long, String> e : tokenToSymbol.entrySet()) {
+            long token = e.getKey();
+            int slot = slot(token);
+            while (keys[slot] != FREE && keys[slot] != token) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == FREE) {
+                keys[slot] = token;
+                ids[slot] = next;
+                symbols[next++] = e.getValue();
+            }
+        }
+    }
+
+    /**
+     * @return symbol id, or -1 if the token is unknown
+     */
+    public int symbolId(long token) {
+        int slot = slot(token);
+        while (true) {
+            long k = keys[slot];
+            if (k == token) {
+                return ids[slot];
+            }
+            if (k == FREE) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public String symbol(int symbolId) {
+        return symbols[symbolId];
+    }
+
+    public int size() {
+        return symbols.length;
+    }
+
+    private int slot(long token) {
+        long h = token * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
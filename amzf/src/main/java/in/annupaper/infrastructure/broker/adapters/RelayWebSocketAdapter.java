@@ -1,6 +1,7 @@
 package in.annupaper.infrastructure.broker.adapters;
 
 import in.annupaper.domain.model.*;
+import in.annupaper.feedrelay.RelayBinaryProtocol;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,6 +10,7 @@ import java.math.BigDecimal;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
@@ -31,6 +33,10 @@ import java.util.concurrent.atomic.AtomicReference;
  * Set environment variables:
  * - DATA_FEED_MODE=RELAY
  * - RELAY_URL=ws://VM_IP:7071/ticks?token=SECRET
+ *
+ * The adapter asks for the binary relay protocol (proto=bin1, see
+ * RelayBinaryProtocol) unless RELAY_URL already sets proto=. A relay that
+ * doesn't support it keeps sending JSON text frames, which are still parsed.
  */
 public final class RelayWebSocketAdapter implements BrokerAdapter {
     private static final Logger log = LoggerFactory.getLogger(RelayWebSocketAdapter.class);
@@ -42,13 +48,17 @@ public final class RelayWebSocketAdapter implements BrokerAdapter {
     private final AtomicReference<WebSocket> wsRef = new AtomicReference<>(null);
     private final Map<String, List<TickListener>> tickListeners = new ConcurrentHashMap<>();
 
+    // java.net.http.WebSocket allows one outstanding sendText: chain them
+    private final Object sendLock = new Object();
+    private CompletableFuture<?> sendChain = CompletableFuture.completedFuture(null);
+
     private volatile boolean connected = false;
     private volatile long lastTickAt = 0L;
     private static final long MAX_TICK_SILENCE_MS = 5 * 60 * 1000; // 5 minutes
 
     public RelayWebSocketAdapter(String userBrokerId, String relayUrl) {
         this.userBrokerId = userBrokerId;
-        this.relayUrl = relayUrl;
+        this.relayUrl = withBinaryProto(relayUrl);
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(10))
                 .build();
@@ -70,6 +80,8 @@ public final class RelayWebSocketAdapter implements BrokerAdapter {
         httpClient.newWebSocketBuilder()
                 .buildAsync(URI.create(relayUrl), new WebSocket.Listener() {
                     private final StringBuilder buf = new StringBuilder();
+                    private final RelayBinaryProtocol.Decoder decoder = new RelayBinaryProtocol.Decoder("RELAY");
+                    private ByteBuffer binaryBuf = ByteBuffer.allocate(64 * 1024);
 
                     @Override
                     public void onOpen(WebSocket webSocket) {
@@ -77,6 +89,10 @@ public final class RelayWebSocketAdapter implements BrokerAdapter {
                         connected = true;
                         lastTickAt = System.currentTimeMillis();
                         log.info("[RELAY ADAPTER] ✅ Connected to feed collector");
+                        if (!tickListeners.isEmpty()) {
+                            // Only the symbols we have listeners for (relay default is all)
+                            sendSubscription(webSocket, "subscribe", List.copyOf(tickListeners.keySet()));
+                        }
                         webSocket.request(1);
                         result.complete(ConnectionResult.ofSuccess("relay-connected"));
                     }
@@ -93,6 +109,29 @@ public final class RelayWebSocketAdapter implements BrokerAdapter {
                         return CompletableFuture.completedFuture(null);
                     }
 
+                    @Override
+                    public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+                        if (last && binaryBuf.position() == 0) {
+                            handleBinaryFrame(decoder, data);
+                        } else {
+                            if (binaryBuf.remaining() < data.remaining()) {
+                                ByteBuffer grown = ByteBuffer.allocate(
+                                        Math.max(binaryBuf.capacity() * 2, binaryBuf.position() + data.remaining()));
+                                binaryBuf.flip();
+                                grown.put(binaryBuf);
+                                binaryBuf = grown;
+                            }
+                            binaryBuf.put(data);
+                            if (last) {
+                                binaryBuf.flip();
+                                handleBinaryFrame(decoder, binaryBuf);
+                                binaryBuf.clear();
+                            }
+                        }
+                        webSocket.request(1);
+                        return CompletableFuture.completedFuture(null);
+                    }
+
                     @Override
                     public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
                         connected = false;
@@ -200,6 +239,10 @@ public final class RelayWebSocketAdapter implements BrokerAdapter {
         for (String s : symbols) {
             tickListeners.computeIfAbsent(s, k -> new CopyOnWriteArrayList<>()).add(listener);
         }
+        WebSocket ws = wsRef.get();
+        if (ws != null) {
+            sendSubscription(ws, "subscribe", symbols);
+        }
         log.info("[RELAY ADAPTER] Registered TickListener for {} symbols", symbols.size());
     }
 
@@ -208,9 +251,29 @@ public final class RelayWebSocketAdapter implements BrokerAdapter {
         for (String s : symbols) {
             tickListeners.remove(s);
         }
+        WebSocket ws = wsRef.get();
+        if (ws != null) {
+            sendSubscription(ws, "unsubscribe", symbols);
+        }
         log.info("[RELAY ADAPTER] Unsubscribed from {} symbols", symbols.size());
     }
 
+    /**
+     * Tell the relay which symbols to send (see TickRelayServer).
+     */
+    private void sendSubscription(WebSocket ws, String action, List<String> symbols) {
+        String msg = new JSONObject().put("action", action).put("symbols", symbols).toString();
+        synchronized (sendLock) {
+            sendChain = sendChain.handle((r, e) -> null)
+                    .thenCompose(v -> ws.sendText(msg, true))
+                    .whenComplete((r, e) -> {
+                        if (e != null) {
+                            log.warn("[RELAY ADAPTER] Failed to send {}: {}", action, e.getMessage());
+                        }
+                    });
+        }
+    }
+
     @Override
     public CompletableFuture<List<HistoricalCandle>> getHistoricalCandles(
             String symbol, TimeframeType timeframe, long fromEpoch, long toEpoch) {
@@ -223,12 +286,64 @@ public final class RelayWebSocketAdapter implements BrokerAdapter {
     }
 
     /**
-     * Handle incoming tick JSON message from relay.
+     * Handle one binary relay frame (multi-tick, delta-encoded).
+     */
+    private void handleBinaryFrame(RelayBinaryProtocol.Decoder decoder, ByteBuffer frame) {
+        try {
+            decoder.decode(frame, this::dispatch);
+            lastTickAt = System.currentTimeMillis();
+        } catch (Exception e) {
+            // Delta state is now unreliable: drop the connection so the next
+            // connect starts from a fresh SNAPSHOT
+            log.warn("[RELAY ADAPTER] Failed to decode binary frame, closing connection: {}", e.getMessage());
+            WebSocket ws = wsRef.getAndSet(null);
+            connected = false;
+            if (ws != null) {
+                ws.abort();
+            }
+        }
+    }
+
+    private void dispatch(Tick tick) {
+        List<TickListener> listeners = tickListeners.get(tick.symbol());
+        if (listeners != null) {
+            for (TickListener l : listeners) {
+                try {
+                    l.onTick(tick);
+                } catch (Exception e) {
+                    log.warn("[RELAY ADAPTER] Tick listener error for {}: {}", tick.symbol(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle an incoming JSON message from the relay: a tick (no type), or an
+     * ack / error reply to a subscription request.
      */
-    private void handleTickMessage(String json) {
+    void handleTickMessage(String json) {
         try {
             JSONObject o = new JSONObject(json);
 
+            String type = o.optString("type", "tick");
+            switch (type) {
+                case "tick" -> {
+                }
+                case "ack" -> {
+                    log.info("[RELAY ADAPTER] Relay ack: action={}, symbols={}, conflateMs={}",
+                            o.optString("action"), o.optInt("symbols"), o.optLong("conflateMs"));
+                    return;
+                }
+                case "error" -> {
+                    log.warn("[RELAY ADAPTER] Relay error: {}", o.optString("message"));
+                    return;
+                }
+                default -> {
+                    log.debug("[RELAY ADAPTER] Ignoring relay message of type {}", type);
+                    return;
+                }
+            }
+
             String symbol = o.optString("symbol", null);
             if (symbol == null) {
                 log.trace("[RELAY ADAPTER] Tick missing symbol, skipping");
@@ -247,27 +362,37 @@ public final class RelayWebSocketAdapter implements BrokerAdapter {
                     bd(o, "ask"),
                     o.optInt("bidQty", 0),
                     o.optInt("askQty", 0),
-                    Instant.ofEpochMilli(o.optLong("timestamp", System.currentTimeMillis())),
+                    timestamp(o),
                     "RELAY");
 
             lastTickAt = System.currentTimeMillis();
 
             // Dispatch to registered listeners
-            List<TickListener> listeners = tickListeners.get(symbol);
-            if (listeners != null) {
-                for (TickListener l : listeners) {
-                    try {
-                        l.onTick(tick);
-                    } catch (Exception e) {
-                        log.warn("[RELAY ADAPTER] Tick listener error for {}: {}", symbol, e.getMessage());
-                    }
-                }
-            }
+            dispatch(tick);
         } catch (Exception e) {
             log.warn("[RELAY ADAPTER] Failed to parse tick JSON: {}", e.getMessage());
         }
     }
 
+    /**
+     * Tick time from JSON: ISO-8601 (TickJsonMapper) or epoch millis; receive
+     * time when missing or unparseable.
+     */
+    private static Instant timestamp(JSONObject o) {
+        Object v = o.opt("timestamp");
+        try {
+            if (v instanceof Number n) {
+                return Instant.ofEpochMilli(n.longValue());
+            }
+            if (v instanceof String s && !s.isBlank()) {
+                return Instant.parse(s);
+            }
+        } catch (java.time.format.DateTimeParseException e) {
+            log.trace("[RELAY ADAPTER] Bad tick timestamp {}", v);
+        }
+        return Instant.now();
+    }
+
     /**
      * Parse BigDecimal from JSON (handles null and empty strings).
      */
@@ -284,6 +409,17 @@ public final class RelayWebSocketAdapter implements BrokerAdapter {
         }
     }
 
+    /**
+     * Add proto=bin1 to the relay URL unless the caller chose a protocol.
+     */
+    private static String withBinaryProto(String url) {
+        if (url == null || url.contains(RelayBinaryProtocol.PROTO_PARAM + "=")) {
+            return url;
+        }
+        return url + (url.indexOf('?') < 0 ? "?" : "&")
+                + RelayBinaryProtocol.PROTO_PARAM + "=" + RelayBinaryProtocol.PROTO_BINARY;
+    }
+
     /**
      * Mask token in URL for logging.
      */
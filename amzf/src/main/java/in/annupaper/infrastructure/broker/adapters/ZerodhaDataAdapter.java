@@ -7,19 +7,19 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.prometheus.client.CollectorRegistry;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.WebSocket;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -43,10 +43,10 @@ public class ZerodhaDataAdapter implements BrokerAdapter {
     private static final String BASE_URL = "https://api.kite.trade";
     private static final String WS_URL = "wss://ws.kite.trade";
 
-    // Kite Ticker binary packet modes
-    private static final int MODE_LTP = 1; // Last price only
-    private static final int MODE_QUOTE = 2; // LTP + OHLC + volume
-    private static final int MODE_FULL = 3; // All fields including depth
+    // Kite Ticker subscription mode: "quote" (LTP + OHLC + volume, the default)
+    // or "full" (quote + exchange timestamp + market depth, ~4x the bytes per
+    // packet). The decoder handles any mode by packet length.
+    private static final String SUBSCRIBE_MODE = subscribeMode(System.getenv("KITE_SUBSCRIBE_MODE"));
 
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final HttpClient httpClient = HttpClient.newBuilder()
@@ -65,12 +65,19 @@ public class ZerodhaDataAdapter implements BrokerAdapter {
     private final AtomicReference<WebSocket> wsRef = new AtomicReference<>(null);
 
     // Multiple listeners per symbol (TickCandleBuilder, ExitSignalService, etc.)
-    private final Map<String, List<TickListener>> tickListeners = new ConcurrentHashMap<>();
+    private final Map<String, CopyOnWriteArrayList<TickListener>> tickListeners = new ConcurrentHashMap<>();
 
     // Instrument token mapping: symbol -> instrument_token
     private final Map<String, Long> symbolToToken = new ConcurrentHashMap<>();
     private final Map<Long, String> tokenToSymbol = new ConcurrentHashMap<>();
 
+    // Tick path: primitive token -> symbolId index (rebuilt with the instrument
+    // master) and an allocation-free frame decoder
+    private volatile KiteTokenIndex tokenIndex = KiteTokenIndex.EMPTY;
+    private final KiteTickDecoder tickDecoder;
+    private final KiteTickDecoder.Sink tickSink = this::publishTick;
+    private final AtomicBoolean firstTickLogged = new AtomicBoolean(false);
+
     // WebSocket connection state
     private enum WsState {
         DISCONNECTED, CONNECTING, CONNECTED, RECONNECT_REQUIRED
@@ -97,20 +104,41 @@ public class ZerodhaDataAdapter implements BrokerAdapter {
         return t;
     });
 
+    private static String subscribeMode(String configured) {
+        if (configured == null || configured.isBlank()) {
+            return "quote";
+        }
+        String mode = configured.trim().toLowerCase();
+        if (!mode.equals("ltp") && !mode.equals("quote") && !mode.equals("full")) {
+            log.warn("[ZERODHA] Unknown KITE_SUBSCRIBE_MODE '{}', using quote", configured);
+            return "quote";
+        }
+        return mode;
+    }
+
     /**
      * Constructor with session management for DATA broker role.
      */
     public ZerodhaDataAdapter(UserBrokerSessionRepository sessionRepo, String userBrokerId) {
+        this(sessionRepo, userBrokerId, new KiteTickDecoder.Metrics(new CollectorRegistry()));
+    }
+
+    /**
+     * Constructor with session management, counting decoder input on shared
+     * registry counters.
+     */
+    public ZerodhaDataAdapter(UserBrokerSessionRepository sessionRepo, String userBrokerId,
+            KiteTickDecoder.Metrics decoderMetrics) {
         this.sessionRepo = sessionRepo;
         this.userBrokerId = userBrokerId;
+        this.tickDecoder = new KiteTickDecoder(decoderMetrics);
     }
 
     /**
      * Default constructor for backwards compatibility.
      */
     public ZerodhaDataAdapter() {
-        this.sessionRepo = null;
-        this.userBrokerId = null;
+        this(null, null);
     }
 
     @Override
@@ -270,6 +298,7 @@ public class ZerodhaDataAdapter implements BrokerAdapter {
                     }
                 }
 
+                tokenIndex = new KiteTokenIndex(tokenToSymbol);
                 log.info("[ZERODHA] ✅ Loaded {} NSE instruments into mapping cache", count);
             } else {
                 log.error("[ZERODHA] Failed to load instruments: HTTP {} - {}",
@@ -391,9 +420,9 @@ public class ZerodhaDataAdapter implements BrokerAdapter {
         log.info("[ZERODHA] Subscribing {} to ticks for {} symbols", listener.getClass().getSimpleName(),
                 symbols.size());
 
-        // Register listeners first
+        // Register listeners first (idempotent: resubscribing must not duplicate ticks)
         for (String symbol : symbols) {
-            tickListeners.computeIfAbsent(symbol, k -> new CopyOnWriteArrayList<>()).add(listener);
+            tickListeners.computeIfAbsent(symbol, k -> new CopyOnWriteArrayList<>()).addIfAbsent(listener);
         }
 
         log.info("[ZERODHA] Total tick listeners: {} symbols with {} max listeners per symbol",
@@ -451,15 +480,16 @@ public class ZerodhaDataAdapter implements BrokerAdapter {
             String message = objectMapper.writeValueAsString(subscribeMsg);
             safeSend(message);
 
-            // Set mode to QUOTE (LTP + OHLC + volume)
+            // Set subscription mode (QUOTE unless KITE_SUBSCRIBE_MODE says otherwise)
             ObjectNode modeMsg = objectMapper.createObjectNode();
             modeMsg.put("a", "mode");
-            modeMsg.set("v", objectMapper.valueToTree(new Object[] { MODE_QUOTE, tokens }));
+            modeMsg.set("v", objectMapper.valueToTree(new Object[] { SUBSCRIBE_MODE, tokens }));
 
             String modeMessage = objectMapper.writeValueAsString(modeMsg);
             safeSend(modeMessage);
 
-            log.info("[ZERODHA] ✅ WebSocket subscription sent for {} tokens (QUOTE mode)", tokens.size());
+            log.info("[ZERODHA] ✅ WebSocket subscription sent for {} tokens ({} mode)", tokens.size(),
+                    SUBSCRIBE_MODE);
         } catch (Exception e) {
             log.error("[ZERODHA] Failed to send subscription message", e);
             wsState = WsState.RECONNECT_REQUIRED;
@@ -578,7 +608,8 @@ public class ZerodhaDataAdapter implements BrokerAdapter {
 
             CompletableFuture<WebSocket> wsFuture = httpClient.newWebSocketBuilder()
                     .buildAsync(URI.create(wsUrlWithToken), new WebSocket.Listener() {
-                        private final ByteBuffer binaryBuffer = ByteBuffer.allocate(65536);
+                        // Only used to reassemble fragmented frames
+                        private ByteBuffer binaryBuffer = ByteBuffer.allocate(65536);
 
                         @Override
                         public void onOpen(WebSocket webSocket) {
@@ -602,12 +633,25 @@ public class ZerodhaDataAdapter implements BrokerAdapter {
 
                         @Override
                         public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
-                            // Kite Ticker sends tick data as binary packets
-                            binaryBuffer.put(data);
-                            if (last) {
-                                binaryBuffer.flip();
-                                processBinaryTickData(binaryBuffer);
-                                binaryBuffer.clear();
+                            // Kite Ticker sends tick data as binary packets. Whole frames
+                            // are decoded in place; only fragments are copied.
+                            if (last && binaryBuffer.position() == 0) {
+                                processBinaryTickData(data);
+                            } else {
+                                if (binaryBuffer.remaining() < data.remaining()) {
+                                    ByteBuffer grown = ByteBuffer.allocate(
+                                            Math.max(binaryBuffer.capacity() * 2,
+                                                    binaryBuffer.position() + data.remaining()));
+                                    binaryBuffer.flip();
+                                    grown.put(binaryBuffer);
+                                    binaryBuffer = grown;
+                                }
+                                binaryBuffer.put(data);
+                                if (last) {
+                                    binaryBuffer.flip();
+                                    processBinaryTickData(binaryBuffer);
+                                    binaryBuffer.clear();
+                                }
                             }
                             return WebSocket.Listener.super.onBinary(webSocket, data, last);
                         }
@@ -639,133 +683,73 @@ public class ZerodhaDataAdapter implements BrokerAdapter {
     }
 
     /**
-     * Process binary tick data from Kite Ticker.
-     *
-     * Binary packet format (per Kite Connect v3 docs):
-     * - 2 bytes: number of packets
-     * - For each packet:
-     *   - 2 bytes: packet length
-     *   - 4 bytes: instrument token
-     *   - 4 bytes: last traded price (int32, divide by 100 for rupees)
-     *
-     * Mode determined by packet length:
-     * - 8 bytes = LTP mode (token + price only)
-     * - 44 bytes = QUOTE mode (LTP + OHLC + volume)
-     * - 184 bytes = FULL mode (QUOTE + timestamps + market depth)
+     * Process one binary frame from Kite Ticker (see KiteTickDecoder for the
+     * packet layouts). Runs on the WebSocket thread: decode and hand off only.
      */
-    private void processBinaryTickData(ByteBuffer buffer) {
+    private void processBinaryTickData(ByteBuffer frame) {
         try {
-            buffer.order(ByteOrder.BIG_ENDIAN);
-
-            int bufferSize = buffer.remaining();
-            if (bufferSize < 2) {
-                log.warn("[ZERODHA] Buffer too small for tick data: {} bytes", bufferSize);
-                return;
-            }
-
-            int numPackets = buffer.getShort() & 0xFFFF;
-            if (numPackets > 0 && numPackets < 100) {
-                log.info("[ZERODHA] Processing {} tick packets ({} bytes)", numPackets, bufferSize);
-            }
-
-            for (int i = 0; i < numPackets; i++) {
-                if (buffer.remaining() < 2)
-                    break;
-
-                int packetLength = buffer.getShort() & 0xFFFF;
-                if (buffer.remaining() < packetLength)
-                    break;
-
-                // Instrument token (4 bytes)
-                long instrumentToken = buffer.getInt() & 0xFFFFFFFFL;
-
-                // Determine mode by packet length (8=LTP, 44=QUOTE, 184=FULL)
-                int mode = MODE_LTP;
-                if (packetLength == 44) {
-                    mode = MODE_QUOTE;
-                } else if (packetLength == 184) {
-                    mode = MODE_FULL;
-                }
-
-                // Parse fields based on mode
-                BigDecimal lastPrice = null;
-                BigDecimal open = null;
-                BigDecimal high = null;
-                BigDecimal low = null;
-                BigDecimal close = null;
-                long volume = 0;
-                long timestamp = System.currentTimeMillis();
-
-                // Last price (4 bytes) - present in all modes
-                lastPrice = BigDecimal.valueOf(buffer.getInt() & 0xFFFFFFFFL)
-                    .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
-
-                if (mode == MODE_QUOTE || mode == MODE_FULL) {
-                    // QUOTE mode additional fields
-                    long lastQty = buffer.getInt() & 0xFFFFFFFFL;
-                    long avgPrice = buffer.getInt() & 0xFFFFFFFFL;
-                    volume = buffer.getInt() & 0xFFFFFFFFL;
-                    long buyQty = buffer.getInt() & 0xFFFFFFFFL;
-                    long sellQty = buffer.getInt() & 0xFFFFFFFFL;
-
-                    open = BigDecimal.valueOf(buffer.getInt() & 0xFFFFFFFFL)
-                        .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
-                    high = BigDecimal.valueOf(buffer.getInt() & 0xFFFFFFFFL).divide(BigDecimal.valueOf(100), 2,
-                            RoundingMode.HALF_UP);
-                    low = BigDecimal.valueOf(buffer.getInt() & 0xFFFFFFFFL).divide(BigDecimal.valueOf(100), 2,
-                            RoundingMode.HALF_UP);
-                    close = BigDecimal.valueOf(buffer.getInt() & 0xFFFFFFFFL).divide(BigDecimal.valueOf(100), 2,
-                            RoundingMode.HALF_UP);
-                }
+            tickDecoder.decode(frame, tickSink);
+        } catch (Exception e) {
+            log.error("[ZERODHA] Failed to process binary tick data", e);
+        }
+    }
 
-                // Skip remaining fields for MODE_FULL (timestamps + market depth)
-                if (mode == MODE_FULL && buffer.remaining() > 0) {
-                    int remainingBytes = packetLength - 44; // 44 bytes read (token + LTP + QUOTE fields)
-                    if (remainingBytes > 0 && buffer.remaining() >= remainingBytes) {
-                        buffer.position(buffer.position() + remainingBytes);
-                    }
-                }
+    /**
+     * Materialize a decoded packet for subscribed symbols and notify listeners
+     * (normally just the tick dispatcher, which only enqueues).
+     */
+    private void publishTick(KiteTickDecoder.Packet p) {
+        KiteTokenIndex index = tokenIndex;
+        int symbolId = index.symbolId(p.token());
+        if (symbolId < 0) {
+            return;
+        }
+        String symbol = index.symbol(symbolId);
+        List<TickListener> listeners = tickListeners.get(symbol);
+        if (listeners == null || listeners.isEmpty()) {
+            return;
+        }
 
-                // Find symbol and notify listeners
-                String symbol = tokenToSymbol.get(instrumentToken);
-                if (symbol != null && lastPrice != null) {
-                    List<TickListener> listeners = tickListeners.get(symbol);
-                    if (listeners != null && !listeners.isEmpty()) {
-                        lastSuccessfulTick.set(System.currentTimeMillis());
-
-                        // Log first tick received to confirm it's working
-                        long currentSuccessTime = lastSuccessfulTick.get();
-                        if (currentSuccessTime - lastSuccessfulTick.get() < 1000) {
-                            log.info("[ZERODHA] ✅ First tick received: {} = {}", symbol, lastPrice);
-                        }
+        long now = System.currentTimeMillis();
+        lastSuccessfulTick.set(now);
+        if (!firstTickLogged.get() && firstTickLogged.compareAndSet(false, true)) {
+            log.info("[ZERODHA] ✅ First tick received: {} = {} paise", symbol, p.lastPricePaise());
+        }
 
-                        Tick tick = new Tick(
-                                symbol,
-                                lastPrice,
-                                open != null ? open : lastPrice,
-                                high != null ? high : lastPrice,
-                                low != null ? low : lastPrice,
-                                close != null ? close : lastPrice,
-                                volume,
-                                lastPrice, lastPrice,
-                                0, 0,
-                                Instant.ofEpochMilli(timestamp),
-                                "ZERODHA");
-                        for (TickListener listener : listeners) {
-                            try {
-                                listener.onTick(tick);
-                            } catch (Exception e) {
-                                log.warn("[ZERODHA] Tick processing error for {}: {}", symbol, e.getMessage());
-                            }
-                        }
-                    }
-                }
+        long last = p.lastPricePaise();
+        boolean hasOhlc = p.mode() != KiteTickDecoder.MODE_LTP;
+        boolean hasDepth = p.depthLevels() > 0;
+        Tick tick = new Tick(
+                symbol,
+                last,
+                hasOhlc ? p.openPaise() : last,
+                hasOhlc ? p.highPaise() : last,
+                hasOhlc ? p.lowPaise() : last,
+                hasOhlc ? p.closePaise() : last,
+                p.volume(),
+                hasDepth && p.bidPricePaise(0) > 0 ? p.bidPricePaise(0) : last,
+                hasDepth && p.askPricePaise(0) > 0 ? p.askPricePaise(0) : last,
+                hasDepth ? (int) Math.min(Integer.MAX_VALUE, p.bidQty(0)) : 0,
+                hasDepth ? (int) Math.min(Integer.MAX_VALUE, p.askQty(0)) : 0,
+                Instant.ofEpochMilli(p.exchangeTimeSec() > 0 ? p.exchangeTimeSec() * 1000 : now),
+                "ZERODHA");
+        for (TickListener listener : listeners) {
+            try {
+                listener.onTick(tick);
+            } catch (Exception e) {
+                log.warn("[ZERODHA] Tick processing error for {}: {}", symbol, e.getMessage());
             }
-        } catch (Exception e) {
-            log.error("[ZERODHA] Failed to process binary tick data", e);
         }
     }
 
+    /**
+     * Frame decoder metrics for this connection (frames, heartbeats, packets,
+     * malformed input); the registry counters aggregate all connections.
+     */
+    public Map<String, Long> getDecoderMetrics() {
+        return tickDecoder.getMetrics();
+    }
+
     // ============================================
     // Order Execution Methods (Stub - Not Implemented)
     // This adapter is designed for DATA-only mode
@@ -0,0 +1,396 @@
+package in.annupaper.infrastructure.persistence;
+
+import in.annupaper.application.port.output.MtfConfigRepository;
+import in.annupaper.domain.model.MtfGlobalConfig;
+import in.annupaper.domain.model.MtfSymbolConfig;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory MtfConfigRepository over another one (PostgreSQL).
+ *
+ * The global config, all symbol overrides and the effective (merged) config
+ * per (symbol, userBrokerId) are loaded once into an immutable, versioned
+ * snapshot. Reads never touch the database. Writes go to the delegate and
+ * then atomically swap in a reloaded snapshot. If that reload fails the
+ * previous snapshot keeps being served and the reload is retried in the
+ * background until it succeeds.
+ *
+ * Multi-node: with {@link #startListener()} each write also sends
+ * {@code NOTIFY mtf_config_changed} and every node LISTENs on a dedicated
+ * connection, reloading when another node changed the config (and after a
+ * reconnect, in case a notification was missed).
+ */
+public final class CachedMtfConfigRepository implements MtfConfigRepository {
+    private static final Logger log = LoggerFactory.getLogger(CachedMtfConfigRepository.class);
+
+    public static final String NOTIFY_CHANNEL = "mtf_config_changed";
+
+    private static final int LISTEN_POLL_MS = 5_000;
+    private static final long LISTEN_RETRY_MS = 5_000;
+    private static final long RELOAD_RETRY_MS = 5_000;
+
+    /**
+     * One consistent view of the config tables.
+     *
+     * @param global        null if the global row is missing
+     * @param symbolConfigs ordered by symbol, userBrokerId (as the table query)
+     * @param effective     "symbol|userBrokerId" → global merged with override
+     */
+    private record Snapshot(
+            long version,
+            MtfGlobalConfig global,
+            List<MtfSymbolConfig> symbolConfigs,
+            Map<String, MtfSymbolConfig> bySymbol,
+            Map<String, MtfGlobalConfig> effective) {
+    }
+
+    private final MtfConfigRepository delegate;
+    private final DataSource dataSource; // LISTEN/NOTIFY only
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final Object reloadLock = new Object();
+    private long nextVersion = 1; // guarded by reloadLock
+
+    private volatile boolean notifyEnabled = false;
+    private volatile Thread listener;
+
+    // Background retry of a reload that failed after a write
+    private final long reloadRetryMs;
+    private final AtomicBoolean retryPending = new AtomicBoolean(false);
+    private final ScheduledExecutorService retrier = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "mtf-config-reload");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Metrics
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter reloads;
+    private final Counter reloadFailures;
+    private final Counter notificationsReceived;
+
+    public CachedMtfConfigRepository(MtfConfigRepository delegate, DataSource dataSource) {
+        this(delegate, dataSource, new CollectorRegistry());
+    }
+
+    public CachedMtfConfigRepository(MtfConfigRepository delegate, DataSource dataSource,
+            CollectorRegistry registry) {
+        this(delegate, dataSource, registry, RELOAD_RETRY_MS);
+    }
+
+    CachedMtfConfigRepository(MtfConfigRepository delegate, DataSource dataSource, CollectorRegistry registry,
+            long reloadRetryMs) {
+        this.delegate = delegate;
+        this.dataSource = dataSource;
+        this.reloadRetryMs = reloadRetryMs;
+        this.hits = Counter.build()
+                .name("mtf_config_cache_hits_total")
+                .help("MTF config reads served from the snapshot")
+                .register(registry);
+        this.misses = Counter.build()
+                .name("mtf_config_cache_misses_total")
+                .help("MTF config reads that had to load a snapshot")
+                .register(registry);
+        this.reloads = Counter.build()
+                .name("mtf_config_reloads_total")
+                .help("MTF config snapshots loaded")
+                .register(registry);
+        this.reloadFailures = Counter.build()
+                .name("mtf_config_reload_failures_total")
+                .help("MTF config snapshot loads that failed")
+                .register(registry);
+        this.notificationsReceived = Counter.build()
+                .name("mtf_config_notifications_received_total")
+                .help("mtf_config_changed notifications received")
+                .register(registry);
+        Gauge.build()
+                .name("mtf_config_version")
+                .help("Version of the MTF config snapshot being served (0 = not loaded)")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return version();
+                    }
+                });
+        Gauge.build()
+                .name("mtf_config_stale")
+                .help("1 while a write is not reflected in the snapshot (reload being retried)")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return retryPending.get() ? 1 : 0;
+                    }
+                });
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Reads (snapshot only)
+    // ═══════════════════════════════════════════════════════════════
+
+    @Override
+    public Optional<MtfGlobalConfig> getGlobalConfig() {
+        return Optional.ofNullable(current().global());
+    }
+
+    @Override
+    public Optional<MtfSymbolConfig> getSymbolConfig(String symbol, String userBrokerId) {
+        return Optional.ofNullable(current().bySymbol().get(key(symbol, userBrokerId)));
+    }
+
+    @Override
+    public List<MtfSymbolConfig> getAllSymbolConfigs() {
+        return current().symbolConfigs();
+    }
+
+    @Override
+    public MtfGlobalConfig getEffectiveConfig(String symbol, String userBrokerId) {
+        Snapshot s = current();
+        if (s.global() == null) {
+            throw new RuntimeException("Global config not found");
+        }
+        MtfGlobalConfig effective = s.effective().get(key(symbol, userBrokerId));
+        return effective != null ? effective : s.global();
+    }
+
+    /**
+     * Version of the snapshot being served (0 = not loaded yet).
+     */
+    public long version() {
+        Snapshot s = snapshot.get();
+        return s == null ? 0 : s.version();
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Writes (delegate, then swap)
+    // ═══════════════════════════════════════════════════════════════
+
+    @Override
+    public void updateGlobalConfig(MtfGlobalConfig config) {
+        delegate.updateGlobalConfig(config);
+        changed();
+    }
+
+    @Override
+    public void upsertSymbolConfig(MtfSymbolConfig config) {
+        delegate.upsertSymbolConfig(config);
+        changed();
+    }
+
+    @Override
+    public void deleteSymbolConfig(String symbol, String userBrokerId) {
+        delegate.deleteSymbolConfig(symbol, userBrokerId);
+        changed();
+    }
+
+    private void changed() {
+        try {
+            reload();
+        } catch (Exception e) {
+            // The write succeeded: keep serving the previous snapshot rather
+            // than sending every read to the database, and retry the load
+            log.error("[MTF CONFIG] Reload after write failed, serving v{} and retrying in {}ms: {}",
+                    version(), reloadRetryMs, e.getMessage());
+            scheduleRetry();
+        }
+        notifyPeers();
+    }
+
+    private void scheduleRetry() {
+        if (retryPending.compareAndSet(false, true)) {
+            retrier.schedule(this::retryReload, reloadRetryMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void retryReload() {
+        if (!retryPending.get()) {
+            return; // loaded meanwhile (read, listener or another write)
+        }
+        try {
+            reload();
+            log.info("[MTF CONFIG] Reload retry succeeded (v{})", version());
+        } catch (Exception e) {
+            log.warn("[MTF CONFIG] Reload retry failed, retrying in {}ms: {}", reloadRetryMs, e.getMessage());
+            retrier.schedule(this::retryReload, reloadRetryMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Snapshot
+    // ═══════════════════════════════════════════════════════════════
+
+    private Snapshot current() {
+        Snapshot s = snapshot.get();
+        if (s != null) {
+            hits.inc();
+            return s;
+        }
+        misses.inc();
+        synchronized (reloadLock) {
+            s = snapshot.get(); // another caller may have just loaded it
+            return s != null ? s : load();
+        }
+    }
+
+    /**
+     * Load all config rows and swap in a new snapshot. On failure the previous
+     * snapshot (if any) stays in place and the exception propagates.
+     */
+    public void reload() {
+        load();
+    }
+
+    private Snapshot load() {
+        synchronized (reloadLock) {
+            try {
+                MtfGlobalConfig global = delegate.getGlobalConfig().orElse(null);
+                List<MtfSymbolConfig> symbolConfigs = List.copyOf(delegate.getAllSymbolConfigs());
+
+                Map<String, MtfSymbolConfig> bySymbol = new HashMap<>();
+                Map<String, MtfGlobalConfig> effective = new HashMap<>();
+                for (MtfSymbolConfig sc : symbolConfigs) {
+                    String k = key(sc.symbol(), sc.userBrokerId());
+                    bySymbol.put(k, sc);
+                    if (global != null) {
+                        effective.put(k, sc.resolveEffective(global));
+                    }
+                }
+
+                Snapshot s = new Snapshot(nextVersion++, global, symbolConfigs, Map.copyOf(bySymbol),
+                        Map.copyOf(effective));
+                snapshot.set(s);
+                retryPending.set(false);
+                reloads.inc();
+                log.info("[MTF CONFIG] Loaded config v{} ({} symbol overrides{})", s.version(),
+                        symbolConfigs.size(), global == null ? ", global config MISSING" : "");
+                return s;
+            } catch (RuntimeException e) {
+                reloadFailures.inc();
+                throw e;
+            }
+        }
+    }
+
+    private static String key(String symbol, String userBrokerId) {
+        return symbol + "|" + userBrokerId;
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // LISTEN / NOTIFY
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Send NOTIFY on every write and reload on other nodes' notifications.
+     * Holds one pooled connection for the LISTEN.
+     */
+    public synchronized void startListener() {
+        if (listener != null) {
+            return;
+        }
+        notifyEnabled = true;
+        Thread t = new Thread(this::listenLoop, "mtf-config-listener");
+        t.setDaemon(true);
+        listener = t;
+        t.start();
+        log.info("[MTF CONFIG] Listening on channel {} (node {})", NOTIFY_CHANNEL, nodeId);
+    }
+
+    public synchronized void stopListener() {
+        Thread t = listener;
+        listener = null;
+        notifyEnabled = false;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    private void notifyPeers() {
+        if (!notifyEnabled) {
+            return;
+        }
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement ps = conn.prepareStatement("SELECT pg_notify(?, ?)")) {
+            ps.setString(1, NOTIFY_CHANNEL);
+            ps.setString(2, nodeId);
+            ps.execute();
+        } catch (Exception e) {
+            log.warn("[MTF CONFIG] Failed to notify peers: {}", e.getMessage());
+        }
+    }
+
+    private void listenLoop() {
+        while (listener == Thread.currentThread()) {
+            try (Connection conn = dataSource.getConnection()) {
+                try (Statement st = conn.createStatement()) {
+                    st.execute("LISTEN " + NOTIFY_CHANNEL);
+                }
+                PGConnection pg = conn.unwrap(PGConnection.class);
+
+                // Anything changed while we were not listening
+                reload();
+
+                while (listener == Thread.currentThread()) {
+                    PGNotification[] notifications = pg.getNotifications(LISTEN_POLL_MS);
+                    if (notifications == null || notifications.length == 0) {
+                        continue;
+                    }
+                    notificationsReceived.inc(notifications.length);
+                    for (PGNotification n : notifications) {
+                        if (!nodeId.equals(n.getParameter())) {
+                            reload();
+                            break;
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                if (listener != Thread.currentThread()) {
+                    return;
+                }
+                log.warn("[MTF CONFIG] Listener connection lost, retrying in {}ms: {}", LISTEN_RETRY_MS,
+                        e.getMessage());
+                try {
+                    Thread.sleep(LISTEN_RETRY_MS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("version", version());
+        m.put("hits", (long) hits.get());
+        m.put("misses", (long) misses.get());
+        m.put("reloads", (long) reloads.get());
+        m.put("reloadFailures", (long) reloadFailures.get());
+        m.put("notificationsReceived", (long) notificationsReceived.get());
+        m.put("stale", retryPending.get() ? 1L : 0L);
+        return m;
+    }
+}
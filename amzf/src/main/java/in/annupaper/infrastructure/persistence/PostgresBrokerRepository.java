@@ -5,13 +5,16 @@ import in.annupaper.application.port.output.*;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import in.annupaper.domain.model.Broker;
+import in.annupaper.infrastructure.persistence.jdbc.BatchBinder;
+import in.annupaper.infrastructure.persistence.jdbc.Binder;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
 import java.sql.*;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -20,45 +23,51 @@ public final class PostgresBrokerRepository implements BrokerRepository {
     private static final Logger log = LoggerFactory.getLogger(PostgresBrokerRepository.class);
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
-    private final DataSource dataSource;
+    private static final RowMapper<Broker> BROKER = PostgresBrokerRepository::mapRow;
 
-    public PostgresBrokerRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
+    // Parameters 1-11 of the insert (version is bound by the caller)
+    private static final BatchBinder<Broker> BIND_BROKER = (ps, broker) -> {
+        ps.setString(1, broker.brokerId());
+        ps.setString(2, broker.brokerCode());
+        ps.setString(3, broker.brokerName());
+        ps.setString(4, broker.adapterClass());
+        ps.setString(5, broker.config() != null ? broker.config().toString() : "{}");
+
+        Connection conn = ps.getConnection();
+        ps.setArray(6, conn.createArrayOf("TEXT", broker.supportedExchanges().toArray()));
+        ps.setArray(7, conn.createArrayOf("TEXT", broker.supportedProducts().toArray()));
+
+        ps.setString(8, broker.lotSizes() != null ? broker.lotSizes().toString() : "{}");
+        ps.setString(9, broker.marginRules() != null ? broker.marginRules().toString() : "{}");
+        ps.setString(10, broker.rateLimits() != null ? broker.rateLimits().toString() : "{}");
+        ps.setString(11, broker.status());
+    };
+
+    private final Db db;
+
+    public PostgresBrokerRepository(Db db) {
+        this.db = db;
     }
 
     @Override
     public List<Broker> findAll() {
         String sql = "SELECT * FROM brokers WHERE deleted_at IS NULL ORDER BY broker_code ASC";
-        List<Broker> brokers = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
 
-            while (rs.next()) {
-                brokers.add(mapRow(rs));
-            }
+        try {
+            return db.query("brokers.findAll", sql, Binder.NONE, BROKER);
         } catch (Exception e) {
             log.error("Error finding all brokers: {}", e.getMessage(), e);
         }
 
-        return brokers;
+        return List.of();
     }
 
     @Override
     public Optional<Broker> findById(String brokerId) {
         String sql = "SELECT * FROM brokers WHERE broker_id = ? AND deleted_at IS NULL";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, brokerId);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapRow(rs));
-                }
-            }
+        try {
+            return db.queryOne("brokers.findById", sql, ps -> ps.setString(1, brokerId), BROKER);
         } catch (Exception e) {
             log.error("Error finding broker by ID: {}", e.getMessage(), e);
         }
@@ -70,16 +79,8 @@ public final class PostgresBrokerRepository implements BrokerRepository {
     public Optional<Broker> findByCode(String brokerCode) {
         String sql = "SELECT * FROM brokers WHERE broker_code = ? AND deleted_at IS NULL";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, brokerCode);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapRow(rs));
-                }
-            }
+        try {
+            return db.queryOne("brokers.findByCode", sql, ps -> ps.setString(1, brokerCode), BROKER);
         } catch (Exception e) {
             log.error("Error finding broker by code: {}", e.getMessage(), e);
         }
@@ -97,27 +98,8 @@ public final class PostgresBrokerRepository implements BrokerRepository {
                 ) VALUES (?, ?, ?, ?, ?::jsonb, ?, ?, ?::jsonb, ?::jsonb, ?::jsonb, ?, 1)
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, broker.brokerId());
-            ps.setString(2, broker.brokerCode());
-            ps.setString(3, broker.brokerName());
-            ps.setString(4, broker.adapterClass());
-            ps.setString(5, broker.config() != null ? broker.config().toString() : "{}");
-
-            Array exchangesArr = conn.createArrayOf("TEXT", broker.supportedExchanges().toArray());
-            ps.setArray(6, exchangesArr);
-
-            Array productsArr = conn.createArrayOf("TEXT", broker.supportedProducts().toArray());
-            ps.setArray(7, productsArr);
-
-            ps.setString(8, broker.lotSizes() != null ? broker.lotSizes().toString() : "{}");
-            ps.setString(9, broker.marginRules() != null ? broker.marginRules().toString() : "{}");
-            ps.setString(10, broker.rateLimits() != null ? broker.rateLimits().toString() : "{}");
-            ps.setString(11, broker.status());
-
-            ps.executeUpdate();
+        try {
+            db.update("brokers.insert", sql, ps -> BIND_BROKER.bind(ps, broker));
             log.info("Broker inserted: {} version 1", broker.brokerId());
 
         } catch (Exception e) {
@@ -139,52 +121,26 @@ public final class PostgresBrokerRepository implements BrokerRepository {
                 ) VALUES (?, ?, ?, ?, ?::jsonb, ?, ?, ?::jsonb, ?::jsonb, ?::jsonb, ?, ?)
                 """;
 
-        try (Connection conn = dataSource.getConnection()) {
-            conn.setAutoCommit(false);
-
-            int currentVersion;
-            try (PreparedStatement ps = conn.prepareStatement(queryVersionSql)) {
-                ps.setString(1, broker.brokerId());
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        throw new RuntimeException("Broker not found: " + broker.brokerId());
-                    }
-                    currentVersion = rs.getInt("version");
-                }
-            }
+        try {
+            int currentVersion = db.inTransaction(conn -> {
+                int version = db.queryOne(conn, "brokers.currentVersion", queryVersionSql,
+                        ps -> ps.setString(1, broker.brokerId()), row -> row.getInt("version"))
+                        .orElseThrow(() -> new RuntimeException("Broker not found: " + broker.brokerId()));
 
-            try (PreparedStatement ps = conn.prepareStatement(softDeleteSql)) {
-                ps.setString(1, broker.brokerId());
-                ps.setInt(2, currentVersion);
-                int updated = ps.executeUpdate();
+                int updated = db.update(conn, "brokers.softDelete", softDeleteSql, ps -> {
+                    ps.setString(1, broker.brokerId());
+                    ps.setInt(2, version);
+                });
                 if (updated == 0) {
                     throw new RuntimeException("Failed to soft delete broker version: " + broker.brokerId());
                 }
-            }
-
-            try (PreparedStatement ps = conn.prepareStatement(insertSql)) {
-                ps.setString(1, broker.brokerId());
-                ps.setString(2, broker.brokerCode());
-                ps.setString(3, broker.brokerName());
-                ps.setString(4, broker.adapterClass());
-                ps.setString(5, broker.config() != null ? broker.config().toString() : "{}");
-
-                Array exchangesArr = conn.createArrayOf("TEXT", broker.supportedExchanges().toArray());
-                ps.setArray(6, exchangesArr);
-
-                Array productsArr = conn.createArrayOf("TEXT", broker.supportedProducts().toArray());
-                ps.setArray(7, productsArr);
-
-                ps.setString(8, broker.lotSizes() != null ? broker.lotSizes().toString() : "{}");
-                ps.setString(9, broker.marginRules() != null ? broker.marginRules().toString() : "{}");
-                ps.setString(10, broker.rateLimits() != null ? broker.rateLimits().toString() : "{}");
-                ps.setString(11, broker.status());
-                ps.setInt(12, currentVersion + 1);
-
-                ps.executeUpdate();
-            }
 
-            conn.commit();
+                db.update(conn, "brokers.insertVersion", insertSql, ps -> {
+                    BIND_BROKER.bind(ps, broker);
+                    ps.setInt(12, version + 1);
+                });
+                return version;
+            });
             log.info("Broker updated: {} version {} → {}", broker.brokerId(), currentVersion, currentVersion + 1);
 
         } catch (Exception e) {
@@ -193,45 +149,45 @@ public final class PostgresBrokerRepository implements BrokerRepository {
         }
     }
 
-    private Broker mapRow(ResultSet rs) throws Exception {
-        String brokerId = rs.getString("broker_id");
-        String brokerCode = rs.getString("broker_code");
-        String brokerName = rs.getString("broker_name");
-        String adapterClass = rs.getString("adapter_class");
+    private static Broker mapRow(Row row) throws Exception {
+        String brokerId = row.getString("broker_id");
+        String brokerCode = row.getString("broker_code");
+        String brokerName = row.getString("broker_name");
+        String adapterClass = row.getString("adapter_class");
 
-        String configJson = rs.getString("config");
+        String configJson = row.getString("config");
         JsonNode config = configJson != null ? MAPPER.readTree(configJson) : null;
 
-        Array exchangesArr = rs.getArray("supported_exchanges");
+        Array exchangesArr = row.getArray("supported_exchanges");
         List<String> supportedExchanges = exchangesArr != null
                 ? Arrays.asList((String[]) exchangesArr.getArray())
                 : List.of();
 
-        Array productsArr = rs.getArray("supported_products");
+        Array productsArr = row.getArray("supported_products");
         List<String> supportedProducts = productsArr != null
                 ? Arrays.asList((String[]) productsArr.getArray())
                 : List.of();
 
-        String lotSizesJson = rs.getString("lot_sizes");
+        String lotSizesJson = row.getString("lot_sizes");
         JsonNode lotSizes = lotSizesJson != null ? MAPPER.readTree(lotSizesJson) : null;
 
-        String marginRulesJson = rs.getString("margin_rules");
+        String marginRulesJson = row.getString("margin_rules");
         JsonNode marginRules = marginRulesJson != null ? MAPPER.readTree(marginRulesJson) : null;
 
-        String rateLimitsJson = rs.getString("rate_limits");
+        String rateLimitsJson = row.getString("rate_limits");
         JsonNode rateLimits = rateLimitsJson != null ? MAPPER.readTree(rateLimitsJson) : null;
 
-        String status = rs.getString("status");
+        String status = row.getString("status");
 
-        Timestamp createdTs = rs.getTimestamp("created_at");
-        Timestamp updatedTs = rs.getTimestamp("updated_at");
+        Timestamp createdTs = row.getTimestamp("created_at");
+        Timestamp updatedTs = row.getTimestamp("updated_at");
         Instant createdAt = createdTs != null ? createdTs.toInstant() : Instant.now();
         Instant updatedAt = updatedTs != null ? updatedTs.toInstant() : Instant.now();
 
-        Timestamp deletedTs = rs.getTimestamp("deleted_at");
+        Timestamp deletedTs = row.getTimestamp("deleted_at");
         Instant deletedAt = deletedTs != null ? deletedTs.toInstant() : null;
 
-        int version = rs.getInt("version");
+        int version = row.getInt("version");
 
         return new Broker(
                 brokerId, brokerCode, brokerName, adapterClass,
@@ -4,13 +4,15 @@ import in.annupaper.application.port.output.*;
 
 import in.annupaper.domain.model.TimeframeType;
 import in.annupaper.domain.model.HistoricalCandle;
+import in.annupaper.infrastructure.persistence.jdbc.BatchBinder;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
 import java.sql.*;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -19,39 +21,42 @@ import java.util.List;
 public final class PostgresCandleRepository implements CandleRepository {
     private static final Logger log = LoggerFactory.getLogger(PostgresCandleRepository.class);
 
-    private final DataSource dataSource;
-
-    public PostgresCandleRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
+    private static final RowMapper<HistoricalCandle> CANDLE = PostgresCandleRepository::mapRow;
+
+    // Shared by insert and insertBatch
+    private static final String UPSERT_SQL = """
+            INSERT INTO candles (symbol, timeframe, ts, open, high, low, close, volume, version)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, 1)
+            ON CONFLICT (symbol, timeframe, ts)
+            DO UPDATE SET
+                open = EXCLUDED.open,
+                high = EXCLUDED.high,
+                low = EXCLUDED.low,
+                close = EXCLUDED.close,
+                volume = EXCLUDED.volume
+            """;
+
+    private static final BatchBinder<HistoricalCandle> BIND_CANDLE = (ps, candle) -> {
+        ps.setString(1, candle.symbol());
+        ps.setString(2, candle.timeframe().name());
+        ps.setTimestamp(3, Timestamp.from(candle.timestamp()));
+        ps.setBigDecimal(4, candle.open());
+        ps.setBigDecimal(5, candle.high());
+        ps.setBigDecimal(6, candle.low());
+        ps.setBigDecimal(7, candle.close());
+        ps.setLong(8, candle.volume());
+    };
+
+    private final Db db;
+
+    public PostgresCandleRepository(Db db) {
+        this.db = db;
     }
 
     @Override
     public void insert(HistoricalCandle candle) {
-        String sql = """
-                INSERT INTO candles (symbol, timeframe, ts, open, high, low, close, volume, version)
-                VALUES (?, ?, ?, ?, ?, ?, ?, ?, 1)
-                ON CONFLICT (symbol, timeframe, ts)
-                DO UPDATE SET
-                    open = EXCLUDED.open,
-                    high = EXCLUDED.high,
-                    low = EXCLUDED.low,
-                    close = EXCLUDED.close,
-                    volume = EXCLUDED.volume
-                """;
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, candle.symbol());
-            ps.setString(2, candle.timeframe().name());
-            ps.setTimestamp(3, Timestamp.from(candle.timestamp()));
-            ps.setBigDecimal(4, candle.open());
-            ps.setBigDecimal(5, candle.high());
-            ps.setBigDecimal(6, candle.low());
-            ps.setBigDecimal(7, candle.close());
-            ps.setLong(8, candle.volume());
-
-            ps.executeUpdate();
+        try {
+            db.update("candles.insert", UPSERT_SQL, ps -> BIND_CANDLE.bind(ps, candle));
 
         } catch (SQLException e) {
             log.error("Failed to insert candle: {}", e.getMessage());
@@ -65,39 +70,13 @@ public final class PostgresCandleRepository implements CandleRepository {
             return;
         }
 
-        String sql = """
-                INSERT INTO candles (symbol, timeframe, ts, open, high, low, close, volume, version)
-                VALUES (?, ?, ?, ?, ?, ?, ?, ?, 1)
-                ON CONFLICT (symbol, timeframe, ts)
-                DO UPDATE SET
-                    open = EXCLUDED.open,
-                    high = EXCLUDED.high,
-                    low = EXCLUDED.low,
-                    close = EXCLUDED.close,
-                    volume = EXCLUDED.volume
-                """;
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            conn.setAutoCommit(false);
-
-            for (HistoricalCandle candle : candles) {
-                ps.setString(1, candle.symbol());
-                ps.setString(2, candle.timeframe().name());
-                ps.setTimestamp(3, Timestamp.from(candle.timestamp()));
-                ps.setBigDecimal(4, candle.open());
-                ps.setBigDecimal(5, candle.high());
-                ps.setBigDecimal(6, candle.low());
-                ps.setBigDecimal(7, candle.close());
-                ps.setLong(8, candle.volume());
-                ps.addBatch();
-            }
+        try {
+            // One row per bar: the rewritten multi-row upsert cannot update a bar twice
+            List<HistoricalCandle> bars = Db.lastPerKey(candles,
+                    c -> List.of(c.symbol(), c.timeframe(), c.timestamp()));
+            db.batch("candles.insertBatch", UPSERT_SQL, bars, BIND_CANDLE);
 
-            ps.executeBatch();
-            conn.commit();
-
-            log.debug("Inserted {} candles", candles.size());
+            log.debug("Inserted {} candles", bars.size());
 
         } catch (SQLException e) {
             log.error("Failed to insert batch: {}", e.getMessage());
@@ -115,27 +94,18 @@ public final class PostgresCandleRepository implements CandleRepository {
                 ORDER BY ts ASC
                 """;
 
-        List<HistoricalCandle> result = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, symbol);
-            ps.setString(2, timeframe.name());
-            ps.setTimestamp(3, Timestamp.from(from));
-            ps.setTimestamp(4, Timestamp.from(to));
-
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                result.add(mapRow(rs));
-            }
+        try {
+            return db.query("candles.findBySymbolAndTimeframe", sql, ps -> {
+                ps.setString(1, symbol);
+                ps.setString(2, timeframe.name());
+                ps.setTimestamp(3, Timestamp.from(from));
+                ps.setTimestamp(4, Timestamp.from(to));
+            }, CANDLE);
 
         } catch (SQLException e) {
             log.error("Failed to find candles: {}", e.getMessage());
             throw new RuntimeException("Failed to find candles", e);
         }
-
-        return result;
     }
 
     @Override
@@ -148,23 +118,16 @@ public final class PostgresCandleRepository implements CandleRepository {
                 LIMIT 1
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, symbol);
-            ps.setString(2, timeframe.name());
-
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return mapRow(rs);
-            }
+        try {
+            return db.queryOne("candles.findLatest", sql, ps -> {
+                ps.setString(1, symbol);
+                ps.setString(2, timeframe.name());
+            }, CANDLE).orElse(null);
 
         } catch (SQLException e) {
             log.error("Failed to find latest candle: {}", e.getMessage());
             throw new RuntimeException("Failed to find latest candle", e);
         }
-
-        return null;
     }
 
     @Override
@@ -177,26 +140,17 @@ public final class PostgresCandleRepository implements CandleRepository {
                 LIMIT ?
                 """;
 
-        List<HistoricalCandle> result = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, symbol);
-            ps.setString(2, timeframe.name());
-            ps.setInt(3, limit);
-
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                result.add(mapRow(rs));
-            }
+        try {
+            return db.query("candles.findAll", sql, ps -> {
+                ps.setString(1, symbol);
+                ps.setString(2, timeframe.name());
+                ps.setInt(3, limit);
+            }, CANDLE);
 
         } catch (SQLException e) {
             log.error("Failed to find all candles: {}", e.getMessage());
             throw new RuntimeException("Failed to find all candles", e);
         }
-
-        return result;
     }
 
     @Override
@@ -208,23 +162,16 @@ public final class PostgresCandleRepository implements CandleRepository {
                 )
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, symbol);
-            ps.setString(2, timeframe.name());
-
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return rs.getBoolean(1);
-            }
+        try {
+            return db.queryOne("candles.exists", sql, ps -> {
+                ps.setString(1, symbol);
+                ps.setString(2, timeframe.name());
+            }, row -> row.getBoolean(1)).orElse(false);
 
         } catch (SQLException e) {
             log.error("Failed to check existence: {}", e.getMessage());
             throw new RuntimeException("Failed to check existence", e);
         }
-
-        return false;
     }
 
     @Override
@@ -232,11 +179,8 @@ public final class PostgresCandleRepository implements CandleRepository {
         // Soft delete old candles
         String sql = "UPDATE candles SET deleted_at = NOW() WHERE ts < ? AND deleted_at IS NULL";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setTimestamp(1, Timestamp.from(cutoff));
-            int deleted = ps.executeUpdate();
+        try {
+            int deleted = db.update("candles.deleteOlderThan", sql, ps -> ps.setTimestamp(1, Timestamp.from(cutoff)));
 
             log.info("Soft deleted {} old candles", deleted);
             return deleted;
@@ -247,17 +191,17 @@ public final class PostgresCandleRepository implements CandleRepository {
         }
     }
 
-    private HistoricalCandle mapRow(ResultSet rs) throws SQLException {
-        String symbol = rs.getString("symbol");
-        TimeframeType timeframe = TimeframeType.valueOf(rs.getString("timeframe"));
-        Instant ts = rs.getTimestamp("ts").toInstant();
+    private static HistoricalCandle mapRow(Row row) throws SQLException {
+        String symbol = row.getString("symbol");
+        TimeframeType timeframe = TimeframeType.valueOf(row.getString("timeframe"));
+        Instant ts = row.getTimestamp("ts").toInstant();
 
         return new HistoricalCandle(
                 symbol, timeframe, ts,
-                rs.getBigDecimal("open"),
-                rs.getBigDecimal("high"),
-                rs.getBigDecimal("low"),
-                rs.getBigDecimal("close"),
-                rs.getLong("volume"));
+                row.getBigDecimal("open"),
+                row.getBigDecimal("high"),
+                row.getBigDecimal("low"),
+                row.getBigDecimal("close"),
+                row.getLong("volume"));
     }
 }
@@ -2,18 +2,18 @@ package in.annupaper.infrastructure.persistence;
 
 import in.annupaper.application.port.output.*;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import in.annupaper.domain.model.ExitReason;
 import in.annupaper.domain.model.ExitIntentStatus;
 import in.annupaper.domain.model.ExitIntent;
+import in.annupaper.infrastructure.persistence.jdbc.Binder;
+import in.annupaper.infrastructure.persistence.jdbc.Binds;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
-import java.math.BigDecimal;
 import java.sql.*;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -27,12 +27,12 @@ import java.util.Optional;
 public final class PostgresExitIntentRepository implements ExitIntentRepository {
     private static final Logger log = LoggerFactory.getLogger(PostgresExitIntentRepository.class);
 
-    private final DataSource dataSource;
-    private final ObjectMapper objectMapper;
+    private static final RowMapper<ExitIntent> EXIT_INTENT = PostgresExitIntentRepository::mapRow;
 
-    public PostgresExitIntentRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
-        this.objectMapper = new ObjectMapper();
+    private final Db db;
+
+    public PostgresExitIntentRepository(Db db) {
+        this.db = db;
     }
 
     @Override
@@ -42,20 +42,12 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 WHERE exit_intent_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, exitIntentId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapRow(rs));
-                }
-            }
+        try {
+            return db.queryOne("exit_intents.findById", sql, ps -> ps.setString(1, exitIntentId), EXIT_INTENT);
         } catch (Exception e) {
             log.error("Failed to find exit intent {}: {}", exitIntentId, e.getMessage());
             throw new RuntimeException("Failed to find exit intent", e);
         }
-        return Optional.empty();
     }
 
     @Override
@@ -66,21 +58,12 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 ORDER BY created_at DESC
                 """;
 
-        List<ExitIntent> intents = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, exitSignalId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    intents.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("exit_intents.findByExitSignalId", sql, ps -> ps.setString(1, exitSignalId), EXIT_INTENT);
         } catch (Exception e) {
             log.error("Failed to find exit intents by signal {}: {}", exitSignalId, e.getMessage());
             throw new RuntimeException("Failed to find exit intents", e);
         }
-        return intents;
     }
 
     @Override
@@ -91,21 +74,12 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 ORDER BY created_at DESC
                 """;
 
-        List<ExitIntent> intents = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, tradeId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    intents.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("exit_intents.findByTradeId", sql, ps -> ps.setString(1, tradeId), EXIT_INTENT);
         } catch (Exception e) {
             log.error("Failed to find exit intents by trade {}: {}", tradeId, e.getMessage());
             throw new RuntimeException("Failed to find exit intents", e);
         }
-        return intents;
     }
 
     @Override
@@ -116,21 +90,12 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 ORDER BY created_at DESC
                 """;
 
-        List<ExitIntent> intents = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, status.name());
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    intents.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("exit_intents.findByStatus", sql, ps -> ps.setString(1, status.name()), EXIT_INTENT);
         } catch (Exception e) {
             log.error("Failed to find exit intents by status {}: {}", status, e.getMessage());
             throw new RuntimeException("Failed to find exit intents", e);
         }
-        return intents;
     }
 
     @Override
@@ -142,19 +107,12 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 ORDER BY created_at ASC
                 """;
 
-        List<ExitIntent> intents = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                intents.add(mapRow(rs));
-            }
+        try {
+            return db.query("exit_intents.findPending", sql, Binder.NONE, EXIT_INTENT);
         } catch (Exception e) {
             log.error("Failed to find pending exit intents: {}", e.getMessage());
             throw new RuntimeException("Failed to find pending exit intents", e);
         }
-        return intents;
     }
 
     @Override
@@ -166,19 +124,12 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 ORDER BY retry_count ASC, created_at ASC
                 """;
 
-        List<ExitIntent> intents = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                intents.add(mapRow(rs));
-            }
+        try {
+            return db.query("exit_intents.findFailed", sql, Binder.NONE, EXIT_INTENT);
         } catch (Exception e) {
             log.error("Failed to find failed exit intents: {}", e.getMessage());
             throw new RuntimeException("Failed to find failed exit intents", e);
         }
-        return intents;
     }
 
     @Override
@@ -188,20 +139,13 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 WHERE broker_order_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, brokerOrderId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapRow(rs));
-                }
-            }
+        try {
+            return db.queryOne("exit_intents.findByBrokerOrderId", sql,
+                    ps -> ps.setString(1, brokerOrderId), EXIT_INTENT);
         } catch (Exception e) {
             log.error("Failed to find exit intent by broker order {}: {}", brokerOrderId, e.getMessage());
             throw new RuntimeException("Failed to find exit intent", e);
         }
-        return Optional.empty();
     }
 
     @Override
@@ -226,40 +170,38 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 )
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, intent.exitIntentId());
-            ps.setString(2, intent.exitSignalId());
-            ps.setString(3, intent.tradeId());
-            ps.setString(4, intent.userBrokerId());
-
-            ps.setString(5, intent.exitReason().name());
-            ps.setInt(6, intent.episodeId());
-
-            ps.setString(7, intent.status().name());
-            ps.setBoolean(8, intent.validationPassed());
-            ps.setArray(9, conn.createArrayOf("text", intent.validationErrors().toArray()));
-
-            setIntOrNull(ps, 10, intent.calculatedQty());
-            ps.setString(11, intent.orderType());
-            setBigDecimalOrNull(ps, 12, intent.limitPrice());
-            ps.setString(13, intent.productType());
-
-            ps.setString(14, intent.brokerOrderId());
-            setTimestampOrNull(ps, 15, intent.placedAt());
-            setTimestampOrNull(ps, 16, intent.filledAt());
-            setTimestampOrNull(ps, 17, intent.cancelledAt());
-
-            ps.setString(18, intent.errorCode());
-            ps.setString(19, intent.errorMessage());
-            ps.setInt(20, intent.retryCount());
-
-            ps.setTimestamp(21, Timestamp.from(intent.createdAt()));
-            ps.setTimestamp(22, Timestamp.from(intent.updatedAt()));
-            ps.setInt(23, intent.version());
-
-            ps.executeUpdate();
+        try {
+            db.update("exit_intents.insert", sql, ps -> {
+                ps.setString(1, intent.exitIntentId());
+                ps.setString(2, intent.exitSignalId());
+                ps.setString(3, intent.tradeId());
+                ps.setString(4, intent.userBrokerId());
+
+                ps.setString(5, intent.exitReason().name());
+                ps.setInt(6, intent.episodeId());
+
+                ps.setString(7, intent.status().name());
+                ps.setBoolean(8, intent.validationPassed());
+                ps.setArray(9, ps.getConnection().createArrayOf("text", intent.validationErrors().toArray()));
+
+                Binds.setIntOrNull(ps, 10, intent.calculatedQty());
+                ps.setString(11, intent.orderType());
+                Binds.setBigDecimalOrNull(ps, 12, intent.limitPrice());
+                ps.setString(13, intent.productType());
+
+                ps.setString(14, intent.brokerOrderId());
+                Binds.setTimestampOrNull(ps, 15, intent.placedAt());
+                Binds.setTimestampOrNull(ps, 16, intent.filledAt());
+                Binds.setTimestampOrNull(ps, 17, intent.cancelledAt());
+
+                ps.setString(18, intent.errorCode());
+                ps.setString(19, intent.errorMessage());
+                ps.setInt(20, intent.retryCount());
+
+                ps.setTimestamp(21, Timestamp.from(intent.createdAt()));
+                ps.setTimestamp(22, Timestamp.from(intent.updatedAt()));
+                ps.setInt(23, intent.version());
+            });
             log.info("Exit intent inserted: {} for trade {} (reason: {}, episode: {})",
                     intent.exitIntentId(), intent.tradeId(), intent.exitReason(), intent.episodeId());
 
@@ -277,13 +219,11 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 WHERE exit_intent_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, status.name());
-            ps.setString(2, exitIntentId);
-
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("exit_intents.updateStatus", sql, ps -> {
+                ps.setString(1, status.name());
+                ps.setString(2, exitIntentId);
+            });
             if (updated > 0) {
                 log.debug("Exit intent status updated: {} → {}", exitIntentId, status);
             }
@@ -304,15 +244,13 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 WHERE exit_intent_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, status);
-            ps.setString(2, errorCode);
-            ps.setString(3, errorMessage);
-            ps.setString(4, exitIntentId);
-
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("exit_intents.updateStatusWithError", sql, ps -> {
+                ps.setString(1, status);
+                ps.setString(2, errorCode);
+                ps.setString(3, errorMessage);
+                ps.setString(4, exitIntentId);
+            });
             if (updated > 0) {
                 log.info("Exit intent status updated: {} → {} (error: {} - {})",
                         exitIntentId, status, errorCode, errorMessage);
@@ -332,13 +270,11 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 WHERE exit_intent_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, brokerOrderId);
-            ps.setString(2, exitIntentId);
-
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("exit_intents.updateBrokerOrderId", sql, ps -> {
+                ps.setString(1, brokerOrderId);
+                ps.setString(2, exitIntentId);
+            });
             if (updated > 0) {
                 log.info("Exit intent broker order ID updated: {} → brokerOrderId={}",
                         exitIntentId, brokerOrderId);
@@ -354,22 +290,20 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
         // Use DB function for atomic APPROVED → PLACED transition
         String sql = "SELECT place_exit_order(?, ?)";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, exitIntentId);
-            ps.setString(2, brokerOrderId);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    boolean success = rs.getBoolean(1);
-                    if (success) {
-                        log.info("✅ Exit order placed: intent {} → broker order {}", exitIntentId, brokerOrderId);
-                    } else {
-                        log.warn("⚠️ Exit order placement failed (already placed?): {}", exitIntentId);
-                    }
-                    return success;
+        try {
+            Optional<Boolean> placed = db.queryOne("exit_intents.placeExitOrder", sql, ps -> {
+                ps.setString(1, exitIntentId);
+                ps.setString(2, brokerOrderId);
+            }, row -> row.getBoolean(1));
+
+            if (placed.isPresent()) {
+                boolean success = placed.get();
+                if (success) {
+                    log.info("✅ Exit order placed: intent {} → broker order {}", exitIntentId, brokerOrderId);
+                } else {
+                    log.warn("⚠️ Exit order placement failed (already placed?): {}", exitIntentId);
                 }
+                return success;
             }
         } catch (Exception e) {
             log.error("Failed to place exit order {}: {}", exitIntentId, e.getMessage());
@@ -389,11 +323,8 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 WHERE exit_intent_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, exitIntentId);
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("exit_intents.markFilled", sql, ps -> ps.setString(1, exitIntentId));
 
             if (updated > 0) {
                 log.info("✅ Exit intent filled: {}", exitIntentId);
@@ -415,14 +346,12 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 WHERE exit_intent_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, errorCode);
-            ps.setString(2, errorMessage);
-            ps.setString(3, exitIntentId);
-
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("exit_intents.markFailed", sql, ps -> {
+                ps.setString(1, errorCode);
+                ps.setString(2, errorMessage);
+                ps.setString(3, exitIntentId);
+            });
             if (updated > 0) {
                 log.warn("❌ Exit intent failed: {} ({})", exitIntentId, errorCode);
             }
@@ -442,11 +371,8 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 WHERE exit_intent_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, exitIntentId);
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("exit_intents.markCancelled", sql, ps -> ps.setString(1, exitIntentId));
 
             if (updated > 0) {
                 log.info("Exit intent cancelled: {}", exitIntentId);
@@ -467,16 +393,12 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 RETURNING retry_count
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, exitIntentId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    int newCount = rs.getInt(1);
-                    log.debug("Exit intent retry count incremented: {} → {}", exitIntentId, newCount);
-                    return newCount;
-                }
+        try {
+            Optional<Integer> newCount = db.queryOne("exit_intents.incrementRetryCount", sql,
+                    ps -> ps.setString(1, exitIntentId), row -> row.getInt(1));
+            if (newCount.isPresent()) {
+                log.debug("Exit intent retry count incremented: {} → {}", exitIntentId, newCount.get());
+                return newCount.get();
             }
         } catch (Exception e) {
             log.error("Failed to increment retry count: {}", e.getMessage());
@@ -486,14 +408,14 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
         return 0;
     }
 
-    private ExitIntent mapRow(ResultSet rs) throws Exception {
-        Timestamp placedTs = rs.getTimestamp("placed_at");
-        Timestamp filledTs = rs.getTimestamp("filled_at");
-        Timestamp cancelledTs = rs.getTimestamp("cancelled_at");
-        Timestamp deletedTs = rs.getTimestamp("deleted_at");
+    private static ExitIntent mapRow(Row row) throws Exception {
+        Timestamp placedTs = row.getTimestamp("placed_at");
+        Timestamp filledTs = row.getTimestamp("filled_at");
+        Timestamp cancelledTs = row.getTimestamp("cancelled_at");
+        Timestamp deletedTs = row.getTimestamp("deleted_at");
 
         // Parse validation errors array
-        Array errorsArray = rs.getArray("validation_errors");
+        Array errorsArray = row.getArray("validation_errors");
         List<String> validationErrors = new ArrayList<>();
         if (errorsArray != null) {
             String[] errors = (String[]) errorsArray.getArray();
@@ -501,60 +423,36 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
         }
 
         return new ExitIntent(
-                rs.getString("exit_intent_id"),
-                rs.getString("exit_signal_id"),
-                rs.getString("trade_id"),
-                rs.getString("user_broker_id"),
+                row.getString("exit_intent_id"),
+                row.getString("exit_signal_id"),
+                row.getString("trade_id"),
+                row.getString("user_broker_id"),
 
-                ExitReason.valueOf(rs.getString("exit_reason")),
-                rs.getInt("episode_id"),
+                ExitReason.valueOf(row.getString("exit_reason")),
+                row.getInt("episode_id"),
 
-                ExitIntentStatus.valueOf(rs.getString("status")),
-                rs.getBoolean("validation_passed"),
+                ExitIntentStatus.valueOf(row.getString("status")),
+                row.getBoolean("validation_passed"),
                 validationErrors,
 
-                (Integer) rs.getObject("calculated_qty"),
-                rs.getString("order_type"),
-                rs.getBigDecimal("limit_price"),
-                rs.getString("product_type"),
+                (Integer) row.getObject("calculated_qty"),
+                row.getString("order_type"),
+                row.getBigDecimal("limit_price"),
+                row.getString("product_type"),
 
-                rs.getString("broker_order_id"),
+                row.getString("broker_order_id"),
                 placedTs != null ? placedTs.toInstant() : null,
                 filledTs != null ? filledTs.toInstant() : null,
                 cancelledTs != null ? cancelledTs.toInstant() : null,
 
-                rs.getString("error_code"),
-                rs.getString("error_message"),
-                rs.getInt("retry_count"),
+                row.getString("error_code"),
+                row.getString("error_message"),
+                row.getInt("retry_count"),
 
-                rs.getTimestamp("created_at").toInstant(),
-                rs.getTimestamp("updated_at").toInstant(),
+                row.getTimestamp("created_at").toInstant(),
+                row.getTimestamp("updated_at").toInstant(),
                 deletedTs != null ? deletedTs.toInstant() : null,
-                rs.getInt("version"));
-    }
-
-    private void setIntOrNull(PreparedStatement ps, int index, Integer value) throws SQLException {
-        if (value != null) {
-            ps.setInt(index, value);
-        } else {
-            ps.setNull(index, Types.INTEGER);
-        }
-    }
-
-    private void setBigDecimalOrNull(PreparedStatement ps, int index, BigDecimal value) throws SQLException {
-        if (value != null) {
-            ps.setBigDecimal(index, value);
-        } else {
-            ps.setNull(index, Types.NUMERIC);
-        }
-    }
-
-    private void setTimestampOrNull(PreparedStatement ps, int index, Instant value) throws SQLException {
-        if (value != null) {
-            ps.setTimestamp(index, Timestamp.from(value));
-        } else {
-            ps.setNull(index, Types.TIMESTAMP);
-        }
+                row.getInt("version"));
     }
 
     // ========================================================================
@@ -571,20 +469,13 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                   AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setInt(1, thresholdMinutes);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getLong(1);
-                }
-            }
+        try {
+            return db.queryOne("exit_intents.countStuck", sql, ps -> ps.setInt(1, thresholdMinutes),
+                    row -> row.getLong(1)).orElse(0L);
         } catch (Exception e) {
             log.error("Failed to count stuck exit intents: {}", e.getMessage());
             throw new RuntimeException("Failed to count stuck exit intents", e);
         }
-        return 0;
     }
 
     @Override
@@ -597,21 +488,12 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                 ORDER BY created_at ASC
                 """;
 
-        List<ExitIntent> intents = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setInt(1, thresholdMinutes);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    intents.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("exit_intents.findStuck", sql, ps -> ps.setInt(1, thresholdMinutes), EXIT_INTENT);
         } catch (Exception e) {
             log.error("Failed to find stuck exit intents: {}", e.getMessage());
             throw new RuntimeException("Failed to find stuck exit intents", e);
         }
-        return intents;
     }
 
     @Override
@@ -623,17 +505,11 @@ public final class PostgresExitIntentRepository implements ExitIntentRepository
                   AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                return rs.getLong(1);
-            }
+        try {
+            return db.queryOne("exit_intents.countPending", sql, Binder.NONE, row -> row.getLong(1)).orElse(0L);
         } catch (Exception e) {
             log.error("Failed to count pending exit intents: {}", e.getMessage());
             throw new RuntimeException("Failed to count pending exit intents", e);
         }
-        return 0;
     }
 }
@@ -5,15 +5,16 @@ import in.annupaper.application.port.output.*;
 import in.annupaper.domain.model.Direction;
 import in.annupaper.domain.model.ExitReason;
 import in.annupaper.domain.model.ExitSignal;
+import in.annupaper.infrastructure.persistence.jdbc.Binds;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
-import java.math.BigDecimal;
 import java.sql.*;
-import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * PostgreSQL implementation of ExitSignalRepository.
@@ -24,10 +25,12 @@ import java.util.List;
 public final class PostgresExitSignalRepository implements ExitSignalRepository {
     private static final Logger log = LoggerFactory.getLogger(PostgresExitSignalRepository.class);
 
-    private final DataSource dataSource;
+    private static final RowMapper<ExitSignal> EXIT_SIGNAL = PostgresExitSignalRepository::mapRow;
 
-    public PostgresExitSignalRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
+    private final Db db;
+
+    public PostgresExitSignalRepository(Db db) {
+        this.db = db;
     }
 
     @Override
@@ -37,20 +40,13 @@ public final class PostgresExitSignalRepository implements ExitSignalRepository
                 WHERE exit_signal_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, exitSignalId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return mapRow(rs);
-                }
-            }
+        try {
+            return db.queryOne("exit_signals.findById", sql, ps -> ps.setString(1, exitSignalId), EXIT_SIGNAL)
+                    .orElse(null);
         } catch (Exception e) {
             log.error("Failed to find exit signal {}: {}", exitSignalId, e.getMessage());
             throw new RuntimeException("Failed to find exit signal", e);
         }
-        return null;
     }
 
     @Override
@@ -61,21 +57,12 @@ public final class PostgresExitSignalRepository implements ExitSignalRepository
                 ORDER BY episode_id DESC
                 """;
 
-        List<ExitSignal> signals = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, tradeId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    signals.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("exit_signals.findByTradeId", sql, ps -> ps.setString(1, tradeId), EXIT_SIGNAL);
         } catch (Exception e) {
             log.error("Failed to find exit signals for trade {}: {}", tradeId, e.getMessage());
             throw new RuntimeException("Failed to find exit signals", e);
         }
-        return signals;
     }
 
     @Override
@@ -86,23 +73,16 @@ public final class PostgresExitSignalRepository implements ExitSignalRepository
                 ORDER BY episode_id DESC
                 """;
 
-        List<ExitSignal> signals = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, tradeId);
-            ps.setString(2, exitReason.name());
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    signals.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("exit_signals.findByTradeAndReason", sql, ps -> {
+                ps.setString(1, tradeId);
+                ps.setString(2, exitReason.name());
+            }, EXIT_SIGNAL);
         } catch (Exception e) {
             log.error("Failed to find exit signals for trade {} reason {}: {}",
                     tradeId, exitReason, e.getMessage());
             throw new RuntimeException("Failed to find exit signals", e);
         }
-        return signals;
     }
 
     @Override
@@ -114,22 +94,16 @@ public final class PostgresExitSignalRepository implements ExitSignalRepository
                 LIMIT 1
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, tradeId);
-            ps.setString(2, exitReason.name());
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return mapRow(rs);
-                }
-            }
+        try {
+            return db.queryOne("exit_signals.findLatestByTradeAndReason", sql, ps -> {
+                ps.setString(1, tradeId);
+                ps.setString(2, exitReason.name());
+            }, EXIT_SIGNAL).orElse(null);
         } catch (Exception e) {
             log.error("Failed to find latest exit signal for trade {} reason {}: {}",
                     tradeId, exitReason, e.getMessage());
             throw new RuntimeException("Failed to find exit signal", e);
         }
-        return null;
     }
 
     @Override
@@ -137,19 +111,16 @@ public final class PostgresExitSignalRepository implements ExitSignalRepository
         // AV-2 FIX: Use DB function with pessimistic lock
         String sql = "SELECT generate_exit_episode(?, ?)";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, tradeId);
-            ps.setString(2, exitReason.name());
+        try {
+            Optional<Integer> episode = db.queryOne("exit_signals.generateEpisode", sql, ps -> {
+                ps.setString(1, tradeId);
+                ps.setString(2, exitReason.name());
+            }, row -> row.getInt(1));
 
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    int episode = rs.getInt(1);
-                    log.debug("Generated exit episode: {} {} → episode {}",
-                            tradeId, exitReason, episode);
-                    return episode;
-                }
+            if (episode.isPresent()) {
+                log.debug("Generated exit episode: {} {} → episode {}",
+                        tradeId, exitReason, episode.get());
+                return episode.get();
             }
         } catch (Exception e) {
             log.error("Failed to generate episode for trade {} reason {}: {}",
@@ -178,32 +149,30 @@ public final class PostgresExitSignalRepository implements ExitSignalRepository
                 )
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, exitSignal.exitSignalId());
-            ps.setString(2, exitSignal.tradeId());
-            ps.setString(3, exitSignal.signalId());
-            ps.setString(4, exitSignal.symbol());
-            ps.setString(5, exitSignal.direction().name());
-            ps.setString(6, exitSignal.exitReason().name());
-            ps.setInt(7, 1); // episode_id - should come from generateEpisode()
-            ps.setBigDecimal(8, exitSignal.exitPrice());
-            setBigDecimalOrNull(ps, 9, exitSignal.brickMovement());
-            setBigDecimalOrNull(ps, 10, exitSignal.favorableMovement());
-            setBigDecimalOrNull(ps, 11, null); // highest_since_entry - not in current model
-            setBigDecimalOrNull(ps, 12, null); // lowest_since_entry - not in current model
-            setBigDecimalOrNull(ps, 13, null); // trailing_stop_price - not in current model
-            ps.setBoolean(14, false); // trailing_active
-            ps.setString(15, "DETECTED"); // status
-            ps.setTimestamp(16, Timestamp.from(exitSignal.timestamp()));
-            ps.setNull(17, Types.TIMESTAMP); // confirmed_at
-            ps.setNull(18, Types.TIMESTAMP); // published_at
-            ps.setNull(19, Types.TIMESTAMP); // executed_at
-            ps.setNull(20, Types.TIMESTAMP); // cancelled_at
-            ps.setNull(21, Types.TIMESTAMP); // last_rearm_at
-
-            ps.executeUpdate();
+        try {
+            db.update("exit_signals.insert", sql, ps -> {
+                ps.setString(1, exitSignal.exitSignalId());
+                ps.setString(2, exitSignal.tradeId());
+                ps.setString(3, exitSignal.signalId());
+                ps.setString(4, exitSignal.symbol());
+                ps.setString(5, exitSignal.direction().name());
+                ps.setString(6, exitSignal.exitReason().name());
+                ps.setInt(7, 1); // episode_id - should come from generateEpisode()
+                ps.setBigDecimal(8, exitSignal.exitPrice());
+                Binds.setBigDecimalOrNull(ps, 9, exitSignal.brickMovement());
+                Binds.setBigDecimalOrNull(ps, 10, exitSignal.favorableMovement());
+                Binds.setBigDecimalOrNull(ps, 11, null); // highest_since_entry - not in current model
+                Binds.setBigDecimalOrNull(ps, 12, null); // lowest_since_entry - not in current model
+                Binds.setBigDecimalOrNull(ps, 13, null); // trailing_stop_price - not in current model
+                ps.setBoolean(14, false); // trailing_active
+                ps.setString(15, "DETECTED"); // status
+                ps.setTimestamp(16, Timestamp.from(exitSignal.timestamp()));
+                ps.setNull(17, Types.TIMESTAMP); // confirmed_at
+                ps.setNull(18, Types.TIMESTAMP); // published_at
+                ps.setNull(19, Types.TIMESTAMP); // executed_at
+                ps.setNull(20, Types.TIMESTAMP); // cancelled_at
+                ps.setNull(21, Types.TIMESTAMP); // last_rearm_at
+            });
             log.info("Exit signal inserted: {} for trade {} ({})",
                     exitSignal.exitSignalId(), exitSignal.tradeId(), exitSignal.exitReason());
 
@@ -221,13 +190,11 @@ public final class PostgresExitSignalRepository implements ExitSignalRepository
                 WHERE exit_signal_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, status);
-            ps.setString(2, exitSignalId);
-
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("exit_signals.updateStatus", sql, ps -> {
+                ps.setString(1, status);
+                ps.setString(2, exitSignalId);
+            });
             if (updated > 0) {
                 log.debug("Exit signal status updated: {} → {}", exitSignalId, status);
             }
@@ -245,12 +212,8 @@ public final class PostgresExitSignalRepository implements ExitSignalRepository
                 WHERE exit_signal_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, exitSignalId);
-
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("exit_signals.cancel", sql, ps -> ps.setString(1, exitSignalId));
             if (updated > 0) {
                 log.info("Exit signal cancelled: {}", exitSignalId);
             }
@@ -260,25 +223,17 @@ public final class PostgresExitSignalRepository implements ExitSignalRepository
         }
     }
 
-    private ExitSignal mapRow(ResultSet rs) throws SQLException {
+    private static ExitSignal mapRow(Row row) throws SQLException {
         return new ExitSignal(
-                rs.getString("exit_signal_id"),
-                rs.getString("trade_id"),
-                rs.getString("signal_id"),
-                rs.getString("symbol"),
-                Direction.valueOf(rs.getString("direction")),
-                ExitReason.valueOf(rs.getString("exit_reason")),
-                rs.getBigDecimal("exit_price_at_detection"),
-                rs.getBigDecimal("brick_movement"),
-                rs.getBigDecimal("favorable_movement"),
-                rs.getTimestamp("detected_at").toInstant());
-    }
-
-    private void setBigDecimalOrNull(PreparedStatement ps, int index, BigDecimal value) throws SQLException {
-        if (value != null) {
-            ps.setBigDecimal(index, value);
-        } else {
-            ps.setNull(index, Types.NUMERIC);
-        }
+                row.getString("exit_signal_id"),
+                row.getString("trade_id"),
+                row.getString("signal_id"),
+                row.getString("symbol"),
+                Direction.valueOf(row.getString("direction")),
+                ExitReason.valueOf(row.getString("exit_reason")),
+                row.getBigDecimal("exit_price_at_detection"),
+                row.getBigDecimal("brick_movement"),
+                row.getBigDecimal("favorable_movement"),
+                row.getTimestamp("detected_at").toInstant());
     }
 }
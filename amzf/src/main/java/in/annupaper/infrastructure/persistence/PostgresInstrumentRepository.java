@@ -3,20 +3,23 @@ package in.annupaper.infrastructure.persistence;
 import in.annupaper.application.port.output.*;
 import in.annupaper.domain.model.BrokerInstrument;
 import in.annupaper.domain.model.InstrumentSearchResult;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
-import java.sql.*;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public final class PostgresInstrumentRepository implements InstrumentRepository {
     private static final Logger log = LoggerFactory.getLogger(PostgresInstrumentRepository.class);
-    private final DataSource dataSource;
 
-    public PostgresInstrumentRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
+    // Instruments committed per transaction when saving a broker's master
+    private static final int SAVE_CHUNK = 1000;
+
+    private final Db db;
+
+    public PostgresInstrumentRepository(Db db) {
+        this.db = db;
     }
 
     @Override
@@ -33,34 +36,32 @@ public final class PostgresInstrumentRepository implements InstrumentRepository
                     updated_at = NOW()
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
+        // Broker dumps can repeat a symbol; the rewritten multi-row upsert
+        // cannot update the same instrument twice in one statement
+        List<BrokerInstrument> unique = Db.lastPerKey(instruments,
+                inst -> Arrays.asList(inst.exchange(), inst.tradingSymbol()));
 
-            conn.setAutoCommit(false);
+        try {
             int count = 0;
-
-            for (BrokerInstrument inst : instruments) {
-                ps.setString(1, brokerCode);
-                ps.setString(2, inst.exchange());
-                ps.setString(3, inst.tradingSymbol());
-                ps.setString(4, inst.name());
-                ps.setString(5, inst.instrumentType());
-                ps.setString(6, null); // segment not in BrokerInstrument
-                ps.setInt(7, inst.lotSize());
-                ps.setBigDecimal(8, inst.tickSize());
-
-                ps.addBatch();
-                count++;
-
-                if (count % 1000 == 0) {
-                    ps.executeBatch();
-                    conn.commit();
+            for (int from = 0; from < unique.size(); from += SAVE_CHUNK) {
+                List<BrokerInstrument> chunk = unique.subList(from, Math.min(from + SAVE_CHUNK, unique.size()));
+                db.batch("instruments.save", sql, chunk, (ps, inst) -> {
+                    ps.setString(1, brokerCode);
+                    ps.setString(2, inst.exchange());
+                    ps.setString(3, inst.tradingSymbol());
+                    ps.setString(4, inst.name());
+                    ps.setString(5, inst.instrumentType());
+                    ps.setString(6, null); // segment not in BrokerInstrument
+                    ps.setInt(7, inst.lotSize());
+                    ps.setBigDecimal(8, inst.tickSize());
+                });
+                count += chunk.size();
+
+                if (count % SAVE_CHUNK == 0) {
                     log.debug("Saved {} instruments for {}", count, brokerCode);
                 }
             }
 
-            ps.executeBatch();
-            conn.commit();
             log.info("Saved total {} instruments for {}", count, brokerCode);
 
         } catch (Exception e) {
@@ -80,44 +81,34 @@ public final class PostgresInstrumentRepository implements InstrumentRepository
                 LIMIT ?
                 """;
 
-        List<InstrumentSearchResult> results = new ArrayList<>();
         String searchPattern = "%" + query.toUpperCase() + "%";
         String exactPattern = query.toUpperCase() + "%";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, exactPattern); // For CASE WHEN rank
-            ps.setString(2, searchPattern); // For trading_symbol LIKE
-            ps.setString(3, searchPattern); // For name LIKE
-            ps.setInt(4, limit);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    results.add(new InstrumentSearchResult(
-                            rs.getString("trading_symbol"),
-                            rs.getString("name"),
-                            rs.getString("exchange"),
-                            rs.getString("instrument_type")));
-                }
-            }
+        try {
+            return db.query("instruments.search", sql, ps -> {
+                ps.setString(1, exactPattern); // For CASE WHEN rank
+                ps.setString(2, searchPattern); // For trading_symbol LIKE
+                ps.setString(3, searchPattern); // For name LIKE
+                ps.setInt(4, limit);
+            }, row -> new InstrumentSearchResult(
+                    row.getString("trading_symbol"),
+                    row.getString("name"),
+                    row.getString("exchange"),
+                    row.getString("instrument_type")));
 
         } catch (Exception e) {
             log.error("Error searching instruments: {}", e.getMessage(), e);
         }
 
-        return results;
+        return List.of();
     }
 
     @Override
     public void clearBroker(String brokerId) {
         String sql = "DELETE FROM instruments WHERE broker_id = ?";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, brokerId);
-            int deleted = ps.executeUpdate();
+        try {
+            int deleted = db.update("instruments.clearBroker", sql, ps -> ps.setString(1, brokerId));
             log.info("Cleared {} instruments for {}", deleted, brokerId);
 
         } catch (Exception e) {
@@ -130,15 +121,9 @@ public final class PostgresInstrumentRepository implements InstrumentRepository
     public int getCount(String brokerId) {
         String sql = "SELECT COUNT(*) FROM instruments WHERE broker_id = ?";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, brokerId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
-                }
-            }
+        try {
+            return db.queryOne("instruments.count", sql, ps -> ps.setString(1, brokerId), row -> row.getInt(1))
+                    .orElse(0);
 
         } catch (Exception e) {
             log.error("Error counting instruments: {}", e.getMessage(), e);
@@ -4,13 +4,15 @@ import in.annupaper.application.port.output.*;
 
 import in.annupaper.domain.model.MtfGlobalConfig;
 import in.annupaper.domain.model.MtfSymbolConfig;
+import in.annupaper.infrastructure.persistence.jdbc.Binder;
+import in.annupaper.infrastructure.persistence.jdbc.Binds;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
-import java.math.BigDecimal;
 import java.sql.*;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,28 +22,25 @@ import java.util.Optional;
 public final class PostgresMtfConfigRepository implements MtfConfigRepository {
     private static final Logger log = LoggerFactory.getLogger(PostgresMtfConfigRepository.class);
 
-    private final DataSource dataSource;
+    private static final RowMapper<MtfGlobalConfig> GLOBAL_CONFIG = PostgresMtfConfigRepository::mapGlobalConfigRow;
+    private static final RowMapper<MtfSymbolConfig> SYMBOL_CONFIG = PostgresMtfConfigRepository::mapSymbolConfigRow;
 
-    public PostgresMtfConfigRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
+    private final Db db;
+
+    public PostgresMtfConfigRepository(Db db) {
+        this.db = db;
     }
 
     @Override
     public Optional<MtfGlobalConfig> getGlobalConfig() {
         String sql = "SELECT * FROM mtf_global_config WHERE config_id = 'DEFAULT'";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                return Optional.of(mapGlobalConfigRow(rs));
-            }
+        try {
+            return db.queryOne("mtf_global_config.get", sql, Binder.NONE, GLOBAL_CONFIG);
         } catch (Exception e) {
             log.error("Failed to get global config: {}", e.getMessage());
             throw new RuntimeException("Failed to get global config", e);
         }
-        return Optional.empty();
     }
 
     @Override
@@ -67,50 +66,48 @@ public final class PostgresMtfConfigRepository implements MtfConfigRepository {
                 WHERE config_id = 'DEFAULT'
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            int idx = 1;
-            ps.setInt(idx++, config.htfCandleCount());
-            ps.setInt(idx++, config.htfCandleMinutes());
-            ps.setBigDecimal(idx++, config.htfWeight());
-
-            ps.setInt(idx++, config.itfCandleCount());
-            ps.setInt(idx++, config.itfCandleMinutes());
-            ps.setBigDecimal(idx++, config.itfWeight());
-
-            ps.setInt(idx++, config.ltfCandleCount());
-            ps.setInt(idx++, config.ltfCandleMinutes());
-            ps.setBigDecimal(idx++, config.ltfWeight());
-
-            ps.setBigDecimal(idx++, config.buyZonePct());
-
-            ps.setString(idx++, config.minConfluenceType());
-            ps.setBigDecimal(idx++, config.strengthThresholdVeryStrong());
-            ps.setBigDecimal(idx++, config.strengthThresholdStrong());
-            ps.setBigDecimal(idx++, config.strengthThresholdModerate());
-            ps.setBigDecimal(idx++, config.multiplierVeryStrong());
-            ps.setBigDecimal(idx++, config.multiplierStrong());
-            ps.setBigDecimal(idx++, config.multiplierModerate());
-            ps.setBigDecimal(idx++, config.multiplierWeak());
-
-            ps.setBigDecimal(idx++, config.maxPositionLogLoss());
-            ps.setBigDecimal(idx++, config.maxPortfolioLogLoss());
-
-            ps.setBigDecimal(idx++, config.kellyFraction());
-            ps.setBigDecimal(idx++, config.maxKellyMultiplier());
-
-            ps.setBoolean(idx++, config.useLimitOrders());
-            ps.setBigDecimal(idx++, config.entryOffsetPct());
-
-            ps.setBigDecimal(idx++, config.minProfitPct());
-            ps.setBigDecimal(idx++, config.targetRMultiple());
-            ps.setBigDecimal(idx++, config.stretchRMultiple());
-            ps.setBoolean(idx++, config.useTrailingStop());
-            ps.setBigDecimal(idx++, config.trailingStopActivationPct());
-            ps.setBigDecimal(idx++, config.trailingStopDistancePct());
-
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("mtf_global_config.update", sql, ps -> {
+                int idx = 1;
+                ps.setInt(idx++, config.htfCandleCount());
+                ps.setInt(idx++, config.htfCandleMinutes());
+                ps.setBigDecimal(idx++, config.htfWeight());
+
+                ps.setInt(idx++, config.itfCandleCount());
+                ps.setInt(idx++, config.itfCandleMinutes());
+                ps.setBigDecimal(idx++, config.itfWeight());
+
+                ps.setInt(idx++, config.ltfCandleCount());
+                ps.setInt(idx++, config.ltfCandleMinutes());
+                ps.setBigDecimal(idx++, config.ltfWeight());
+
+                ps.setBigDecimal(idx++, config.buyZonePct());
+
+                ps.setString(idx++, config.minConfluenceType());
+                ps.setBigDecimal(idx++, config.strengthThresholdVeryStrong());
+                ps.setBigDecimal(idx++, config.strengthThresholdStrong());
+                ps.setBigDecimal(idx++, config.strengthThresholdModerate());
+                ps.setBigDecimal(idx++, config.multiplierVeryStrong());
+                ps.setBigDecimal(idx++, config.multiplierStrong());
+                ps.setBigDecimal(idx++, config.multiplierModerate());
+                ps.setBigDecimal(idx++, config.multiplierWeak());
+
+                ps.setBigDecimal(idx++, config.maxPositionLogLoss());
+                ps.setBigDecimal(idx++, config.maxPortfolioLogLoss());
+
+                ps.setBigDecimal(idx++, config.kellyFraction());
+                ps.setBigDecimal(idx++, config.maxKellyMultiplier());
+
+                ps.setBoolean(idx++, config.useLimitOrders());
+                ps.setBigDecimal(idx++, config.entryOffsetPct());
+
+                ps.setBigDecimal(idx++, config.minProfitPct());
+                ps.setBigDecimal(idx++, config.targetRMultiple());
+                ps.setBigDecimal(idx++, config.stretchRMultiple());
+                ps.setBoolean(idx++, config.useTrailingStop());
+                ps.setBigDecimal(idx++, config.trailingStopActivationPct());
+                ps.setBigDecimal(idx++, config.trailingStopDistancePct());
+            });
             if (updated == 0) {
                 throw new RuntimeException("Global config not found");
             }
@@ -127,41 +124,27 @@ public final class PostgresMtfConfigRepository implements MtfConfigRepository {
     public Optional<MtfSymbolConfig> getSymbolConfig(String symbol, String userBrokerId) {
         String sql = "SELECT * FROM mtf_symbol_config WHERE symbol = ? AND user_broker_id = ?";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, symbol);
-            ps.setString(2, userBrokerId);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapSymbolConfigRow(rs));
-                }
-            }
+        try {
+            return db.queryOne("mtf_symbol_config.get", sql, ps -> {
+                ps.setString(1, symbol);
+                ps.setString(2, userBrokerId);
+            }, SYMBOL_CONFIG);
         } catch (Exception e) {
             log.error("Failed to get symbol config for {}/{}: {}", symbol, userBrokerId, e.getMessage());
             throw new RuntimeException("Failed to get symbol config", e);
         }
-        return Optional.empty();
     }
 
     @Override
     public List<MtfSymbolConfig> getAllSymbolConfigs() {
         String sql = "SELECT * FROM mtf_symbol_config ORDER BY symbol ASC, user_broker_id ASC";
 
-        List<MtfSymbolConfig> configs = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                configs.add(mapSymbolConfigRow(rs));
-            }
+        try {
+            return db.query("mtf_symbol_config.getAll", sql, Binder.NONE, SYMBOL_CONFIG);
         } catch (Exception e) {
             log.error("Failed to get all symbol configs: {}", e.getMessage());
             throw new RuntimeException("Failed to get symbol configs", e);
         }
-        return configs;
     }
 
     @Override
@@ -236,54 +219,52 @@ public final class PostgresMtfConfigRepository implements MtfConfigRepository {
                     updated_at = NOW()
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            int idx = 1;
-            ps.setString(idx++, config.symbolConfigId());
-            ps.setString(idx++, config.symbol());
-            ps.setString(idx++, config.userBrokerId());
-
-            setIntOrNull(ps, idx++, config.htfCandleCount());
-            setIntOrNull(ps, idx++, config.htfCandleMinutes());
-            setBigDecimalOrNull(ps, idx++, config.htfWeight());
-
-            setIntOrNull(ps, idx++, config.itfCandleCount());
-            setIntOrNull(ps, idx++, config.itfCandleMinutes());
-            setBigDecimalOrNull(ps, idx++, config.itfWeight());
-
-            setIntOrNull(ps, idx++, config.ltfCandleCount());
-            setIntOrNull(ps, idx++, config.ltfCandleMinutes());
-            setBigDecimalOrNull(ps, idx++, config.ltfWeight());
-
-            setBigDecimalOrNull(ps, idx++, config.buyZonePct());
-
-            setStringOrNull(ps, idx++, config.minConfluenceType());
-            setBigDecimalOrNull(ps, idx++, config.strengthThresholdVeryStrong());
-            setBigDecimalOrNull(ps, idx++, config.strengthThresholdStrong());
-            setBigDecimalOrNull(ps, idx++, config.strengthThresholdModerate());
-            setBigDecimalOrNull(ps, idx++, config.multiplierVeryStrong());
-            setBigDecimalOrNull(ps, idx++, config.multiplierStrong());
-            setBigDecimalOrNull(ps, idx++, config.multiplierModerate());
-            setBigDecimalOrNull(ps, idx++, config.multiplierWeak());
-
-            setBigDecimalOrNull(ps, idx++, config.maxPositionLogLoss());
-            setBigDecimalOrNull(ps, idx++, config.maxPortfolioLogLoss());
-
-            setBigDecimalOrNull(ps, idx++, config.kellyFraction());
-            setBigDecimalOrNull(ps, idx++, config.maxKellyMultiplier());
-
-            setBooleanOrNull(ps, idx++, config.useLimitOrders());
-            setBigDecimalOrNull(ps, idx++, config.entryOffsetPct());
-
-            setBigDecimalOrNull(ps, idx++, config.minProfitPct());
-            setBigDecimalOrNull(ps, idx++, config.targetRMultiple());
-            setBigDecimalOrNull(ps, idx++, config.stretchRMultiple());
-            setBooleanOrNull(ps, idx++, config.useTrailingStop());
-            setBigDecimalOrNull(ps, idx++, config.trailingStopActivationPct());
-            setBigDecimalOrNull(ps, idx++, config.trailingStopDistancePct());
-
-            ps.executeUpdate();
+        try {
+            db.update("mtf_symbol_config.upsert", sql, ps -> {
+                int idx = 1;
+                ps.setString(idx++, config.symbolConfigId());
+                ps.setString(idx++, config.symbol());
+                ps.setString(idx++, config.userBrokerId());
+
+                Binds.setIntOrNull(ps, idx++, config.htfCandleCount());
+                Binds.setIntOrNull(ps, idx++, config.htfCandleMinutes());
+                Binds.setBigDecimalOrNull(ps, idx++, config.htfWeight());
+
+                Binds.setIntOrNull(ps, idx++, config.itfCandleCount());
+                Binds.setIntOrNull(ps, idx++, config.itfCandleMinutes());
+                Binds.setBigDecimalOrNull(ps, idx++, config.itfWeight());
+
+                Binds.setIntOrNull(ps, idx++, config.ltfCandleCount());
+                Binds.setIntOrNull(ps, idx++, config.ltfCandleMinutes());
+                Binds.setBigDecimalOrNull(ps, idx++, config.ltfWeight());
+
+                Binds.setBigDecimalOrNull(ps, idx++, config.buyZonePct());
+
+                ps.setString(idx++, config.minConfluenceType());
+                Binds.setBigDecimalOrNull(ps, idx++, config.strengthThresholdVeryStrong());
+                Binds.setBigDecimalOrNull(ps, idx++, config.strengthThresholdStrong());
+                Binds.setBigDecimalOrNull(ps, idx++, config.strengthThresholdModerate());
+                Binds.setBigDecimalOrNull(ps, idx++, config.multiplierVeryStrong());
+                Binds.setBigDecimalOrNull(ps, idx++, config.multiplierStrong());
+                Binds.setBigDecimalOrNull(ps, idx++, config.multiplierModerate());
+                Binds.setBigDecimalOrNull(ps, idx++, config.multiplierWeak());
+
+                Binds.setBigDecimalOrNull(ps, idx++, config.maxPositionLogLoss());
+                Binds.setBigDecimalOrNull(ps, idx++, config.maxPortfolioLogLoss());
+
+                Binds.setBigDecimalOrNull(ps, idx++, config.kellyFraction());
+                Binds.setBigDecimalOrNull(ps, idx++, config.maxKellyMultiplier());
+
+                Binds.setBooleanOrNull(ps, idx++, config.useLimitOrders());
+                Binds.setBigDecimalOrNull(ps, idx++, config.entryOffsetPct());
+
+                Binds.setBigDecimalOrNull(ps, idx++, config.minProfitPct());
+                Binds.setBigDecimalOrNull(ps, idx++, config.targetRMultiple());
+                Binds.setBigDecimalOrNull(ps, idx++, config.stretchRMultiple());
+                Binds.setBooleanOrNull(ps, idx++, config.useTrailingStop());
+                Binds.setBigDecimalOrNull(ps, idx++, config.trailingStopActivationPct());
+                Binds.setBigDecimalOrNull(ps, idx++, config.trailingStopDistancePct());
+            });
             log.info("Upserted symbol config for {}/{}", config.symbol(), config.userBrokerId());
 
         } catch (Exception e) {
@@ -296,13 +277,11 @@ public final class PostgresMtfConfigRepository implements MtfConfigRepository {
     public void deleteSymbolConfig(String symbol, String userBrokerId) {
         String sql = "DELETE FROM mtf_symbol_config WHERE symbol = ? AND user_broker_id = ?";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, symbol);
-            ps.setString(2, userBrokerId);
-
-            int deleted = ps.executeUpdate();
+        try {
+            int deleted = db.update("mtf_symbol_config.delete", sql, ps -> {
+                ps.setString(1, symbol);
+                ps.setString(2, userBrokerId);
+            });
             if (deleted > 0) {
                 log.info("Deleted symbol config for {}/{}", symbol, userBrokerId);
             }
@@ -326,156 +305,103 @@ public final class PostgresMtfConfigRepository implements MtfConfigRepository {
         return symbolConfig.get().resolveEffective(global);
     }
 
-    // Helper methods for nullable fields
-    private void setIntOrNull(PreparedStatement ps, int index, Integer value) throws SQLException {
-        if (value != null) {
-            ps.setInt(index, value);
-        } else {
-            ps.setNull(index, Types.INTEGER);
-        }
-    }
-
-    private void setBigDecimalOrNull(PreparedStatement ps, int index, BigDecimal value) throws SQLException {
-        if (value != null) {
-            ps.setBigDecimal(index, value);
-        } else {
-            ps.setNull(index, Types.NUMERIC);
-        }
-    }
-
-    private void setBooleanOrNull(PreparedStatement ps, int index, Boolean value) throws SQLException {
-        if (value != null) {
-            ps.setBoolean(index, value);
-        } else {
-            ps.setNull(index, Types.BOOLEAN);
-        }
-    }
-
-    private void setStringOrNull(PreparedStatement ps, int index, String value) throws SQLException {
-        if (value != null) {
-            ps.setString(index, value);
-        } else {
-            ps.setNull(index, Types.VARCHAR);
-        }
-    }
-
-    private Integer getIntOrNull(ResultSet rs, String column) throws SQLException {
-        int value = rs.getInt(column);
-        return rs.wasNull() ? null : value;
-    }
-
-    private BigDecimal getBigDecimalOrNull(ResultSet rs, String column) throws SQLException {
-        BigDecimal value = rs.getBigDecimal(column);
-        return rs.wasNull() ? null : value;
-    }
-
-    private Boolean getBooleanOrNull(ResultSet rs, String column) throws SQLException {
-        boolean value = rs.getBoolean(column);
-        return rs.wasNull() ? null : value;
-    }
-
-    private String getStringOrNull(ResultSet rs, String column) throws SQLException {
-        String value = rs.getString(column);
-        return rs.wasNull() ? null : value;
-    }
-
-    private MtfGlobalConfig mapGlobalConfigRow(ResultSet rs) throws SQLException {
+    private static MtfGlobalConfig mapGlobalConfigRow(Row row) throws SQLException {
         return new MtfGlobalConfig(
-                rs.getString("config_id"),
-                rs.getInt("htf_candle_count"),
-                rs.getInt("htf_candle_minutes"),
-                rs.getBigDecimal("htf_weight"),
-                rs.getInt("itf_candle_count"),
-                rs.getInt("itf_candle_minutes"),
-                rs.getBigDecimal("itf_weight"),
-                rs.getInt("ltf_candle_count"),
-                rs.getInt("ltf_candle_minutes"),
-                rs.getBigDecimal("ltf_weight"),
-                rs.getBigDecimal("buy_zone_pct"),
-                rs.getBigDecimal("htf_buy_zone_pct"),
-                rs.getBigDecimal("itf_buy_zone_pct"),
-                rs.getBigDecimal("ltf_buy_zone_pct"),
-                rs.getString("min_confluence_type"),
-                rs.getBigDecimal("strength_threshold_very_strong"),
-                rs.getBigDecimal("strength_threshold_strong"),
-                rs.getBigDecimal("strength_threshold_moderate"),
-                rs.getBigDecimal("multiplier_very_strong"),
-                rs.getBigDecimal("multiplier_strong"),
-                rs.getBigDecimal("multiplier_moderate"),
-                rs.getBigDecimal("multiplier_weak"),
-                rs.getBigDecimal("max_position_log_loss"),
-                rs.getBigDecimal("max_portfolio_log_loss"),
-                rs.getBigDecimal("max_symbol_log_loss"),
-                rs.getBigDecimal("kelly_fraction"),
-                rs.getBigDecimal("max_kelly_multiplier"),
-                rs.getBoolean("use_limit_orders"),
-                rs.getBigDecimal("entry_offset_pct"),
-                rs.getBigDecimal("min_profit_pct"),
-                rs.getBigDecimal("target_r_multiple"),
-                rs.getBigDecimal("stretch_r_multiple"),
-                rs.getBoolean("use_trailing_stop"),
-                rs.getBigDecimal("trailing_stop_activation_pct"),
-                rs.getBigDecimal("trailing_stop_distance_pct"),
-                rs.getBigDecimal("min_reentry_spacing_atr_multiplier"),
-                rs.getBigDecimal("range_atr_threshold_wide"),
-                rs.getBigDecimal("range_atr_threshold_healthy"),
-                rs.getBigDecimal("range_atr_threshold_tight"),
-                rs.getBigDecimal("velocity_multiplier_wide"),
-                rs.getBigDecimal("velocity_multiplier_healthy"),
-                rs.getBigDecimal("velocity_multiplier_tight"),
-                rs.getBigDecimal("velocity_multiplier_compressed"),
-                rs.getBigDecimal("body_ratio_threshold_low"),
-                rs.getBigDecimal("body_ratio_threshold_critical"),
-                rs.getBigDecimal("body_ratio_penalty_low"),
-                rs.getBigDecimal("body_ratio_penalty_critical"),
-                rs.getInt("range_lookback_bars"),
-                rs.getBoolean("stress_throttle_enabled"),
-                rs.getBigDecimal("max_stress_drawdown"),
-                rs.getBigDecimal("utility_alpha"),
-                rs.getBigDecimal("utility_beta"),
-                rs.getBigDecimal("utility_lambda"),
-                rs.getBigDecimal("min_advantage_ratio"),
-                rs.getBoolean("utility_gate_enabled"),
-                rs.getTimestamp("created_at").toInstant(),
-                rs.getTimestamp("updated_at").toInstant());
+                row.getString("config_id"),
+                row.getInt("htf_candle_count"),
+                row.getInt("htf_candle_minutes"),
+                row.getBigDecimal("htf_weight"),
+                row.getInt("itf_candle_count"),
+                row.getInt("itf_candle_minutes"),
+                row.getBigDecimal("itf_weight"),
+                row.getInt("ltf_candle_count"),
+                row.getInt("ltf_candle_minutes"),
+                row.getBigDecimal("ltf_weight"),
+                row.getBigDecimal("buy_zone_pct"),
+                row.getBigDecimal("htf_buy_zone_pct"),
+                row.getBigDecimal("itf_buy_zone_pct"),
+                row.getBigDecimal("ltf_buy_zone_pct"),
+                row.getString("min_confluence_type"),
+                row.getBigDecimal("strength_threshold_very_strong"),
+                row.getBigDecimal("strength_threshold_strong"),
+                row.getBigDecimal("strength_threshold_moderate"),
+                row.getBigDecimal("multiplier_very_strong"),
+                row.getBigDecimal("multiplier_strong"),
+                row.getBigDecimal("multiplier_moderate"),
+                row.getBigDecimal("multiplier_weak"),
+                row.getBigDecimal("max_position_log_loss"),
+                row.getBigDecimal("max_portfolio_log_loss"),
+                row.getBigDecimal("max_symbol_log_loss"),
+                row.getBigDecimal("kelly_fraction"),
+                row.getBigDecimal("max_kelly_multiplier"),
+                row.getBoolean("use_limit_orders"),
+                row.getBigDecimal("entry_offset_pct"),
+                row.getBigDecimal("min_profit_pct"),
+                row.getBigDecimal("target_r_multiple"),
+                row.getBigDecimal("stretch_r_multiple"),
+                row.getBoolean("use_trailing_stop"),
+                row.getBigDecimal("trailing_stop_activation_pct"),
+                row.getBigDecimal("trailing_stop_distance_pct"),
+                row.getBigDecimal("min_reentry_spacing_atr_multiplier"),
+                row.getBigDecimal("range_atr_threshold_wide"),
+                row.getBigDecimal("range_atr_threshold_healthy"),
+                row.getBigDecimal("range_atr_threshold_tight"),
+                row.getBigDecimal("velocity_multiplier_wide"),
+                row.getBigDecimal("velocity_multiplier_healthy"),
+                row.getBigDecimal("velocity_multiplier_tight"),
+                row.getBigDecimal("velocity_multiplier_compressed"),
+                row.getBigDecimal("body_ratio_threshold_low"),
+                row.getBigDecimal("body_ratio_threshold_critical"),
+                row.getBigDecimal("body_ratio_penalty_low"),
+                row.getBigDecimal("body_ratio_penalty_critical"),
+                row.getInt("range_lookback_bars"),
+                row.getBoolean("stress_throttle_enabled"),
+                row.getBigDecimal("max_stress_drawdown"),
+                row.getBigDecimal("utility_alpha"),
+                row.getBigDecimal("utility_beta"),
+                row.getBigDecimal("utility_lambda"),
+                row.getBigDecimal("min_advantage_ratio"),
+                row.getBoolean("utility_gate_enabled"),
+                row.getTimestamp("created_at").toInstant(),
+                row.getTimestamp("updated_at").toInstant());
     }
 
-    private MtfSymbolConfig mapSymbolConfigRow(ResultSet rs) throws SQLException {
+    private static MtfSymbolConfig mapSymbolConfigRow(Row row) throws SQLException {
         return new MtfSymbolConfig(
-                rs.getString("symbol_config_id"),
-                rs.getString("symbol"),
-                rs.getString("user_broker_id"),
-                getIntOrNull(rs, "htf_candle_count"),
-                getIntOrNull(rs, "htf_candle_minutes"),
-                getBigDecimalOrNull(rs, "htf_weight"),
-                getIntOrNull(rs, "itf_candle_count"),
-                getIntOrNull(rs, "itf_candle_minutes"),
-                getBigDecimalOrNull(rs, "itf_weight"),
-                getIntOrNull(rs, "ltf_candle_count"),
-                getIntOrNull(rs, "ltf_candle_minutes"),
-                getBigDecimalOrNull(rs, "ltf_weight"),
-                getBigDecimalOrNull(rs, "buy_zone_pct"),
-                getStringOrNull(rs, "min_confluence_type"),
-                getBigDecimalOrNull(rs, "strength_threshold_very_strong"),
-                getBigDecimalOrNull(rs, "strength_threshold_strong"),
-                getBigDecimalOrNull(rs, "strength_threshold_moderate"),
-                getBigDecimalOrNull(rs, "multiplier_very_strong"),
-                getBigDecimalOrNull(rs, "multiplier_strong"),
-                getBigDecimalOrNull(rs, "multiplier_moderate"),
-                getBigDecimalOrNull(rs, "multiplier_weak"),
-                getBigDecimalOrNull(rs, "max_position_log_loss"),
-                getBigDecimalOrNull(rs, "max_portfolio_log_loss"),
-                getBigDecimalOrNull(rs, "kelly_fraction"),
-                getBigDecimalOrNull(rs, "max_kelly_multiplier"),
-                getBooleanOrNull(rs, "use_limit_orders"),
-                getBigDecimalOrNull(rs, "entry_offset_pct"),
-                getBigDecimalOrNull(rs, "min_profit_pct"),
-                getBigDecimalOrNull(rs, "target_r_multiple"),
-                getBigDecimalOrNull(rs, "stretch_r_multiple"),
-                getBooleanOrNull(rs, "use_trailing_stop"),
-                getBigDecimalOrNull(rs, "trailing_stop_activation_pct"),
-                getBigDecimalOrNull(rs, "trailing_stop_distance_pct"),
-                rs.getTimestamp("created_at").toInstant(),
-                rs.getTimestamp("updated_at").toInstant());
+                row.getString("symbol_config_id"),
+                row.getString("symbol"),
+                row.getString("user_broker_id"),
+                row.getIntOrNull("htf_candle_count"),
+                row.getIntOrNull("htf_candle_minutes"),
+                row.getBigDecimal("htf_weight"),
+                row.getIntOrNull("itf_candle_count"),
+                row.getIntOrNull("itf_candle_minutes"),
+                row.getBigDecimal("itf_weight"),
+                row.getIntOrNull("ltf_candle_count"),
+                row.getIntOrNull("ltf_candle_minutes"),
+                row.getBigDecimal("ltf_weight"),
+                row.getBigDecimal("buy_zone_pct"),
+                row.getString("min_confluence_type"),
+                row.getBigDecimal("strength_threshold_very_strong"),
+                row.getBigDecimal("strength_threshold_strong"),
+                row.getBigDecimal("strength_threshold_moderate"),
+                row.getBigDecimal("multiplier_very_strong"),
+                row.getBigDecimal("multiplier_strong"),
+                row.getBigDecimal("multiplier_moderate"),
+                row.getBigDecimal("multiplier_weak"),
+                row.getBigDecimal("max_position_log_loss"),
+                row.getBigDecimal("max_portfolio_log_loss"),
+                row.getBigDecimal("kelly_fraction"),
+                row.getBigDecimal("max_kelly_multiplier"),
+                row.getBooleanOrNull("use_limit_orders"),
+                row.getBigDecimal("entry_offset_pct"),
+                row.getBigDecimal("min_profit_pct"),
+                row.getBigDecimal("target_r_multiple"),
+                row.getBigDecimal("stretch_r_multiple"),
+                row.getBooleanOrNull("use_trailing_stop"),
+                row.getBigDecimal("trailing_stop_activation_pct"),
+                row.getBigDecimal("trailing_stop_distance_pct"),
+                row.getTimestamp("created_at").toInstant(),
+                row.getTimestamp("updated_at").toInstant());
     }
 }
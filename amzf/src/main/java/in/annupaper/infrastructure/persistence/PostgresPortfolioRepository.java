@@ -3,82 +3,96 @@ package in.annupaper.infrastructure.persistence;
 import in.annupaper.application.port.output.*;
 
 import in.annupaper.domain.model.Portfolio;
+import in.annupaper.infrastructure.persistence.jdbc.BatchBinder;
+import in.annupaper.infrastructure.persistence.jdbc.Binder;
+import in.annupaper.infrastructure.persistence.jdbc.Binds;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.time.Instant;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public final class PostgresPortfolioRepository implements PortfolioRepository {
     private static final Logger log = LoggerFactory.getLogger(PostgresPortfolioRepository.class);
 
-    private final DataSource dataSource;
-
-    public PostgresPortfolioRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
+    private static final RowMapper<Portfolio> PORTFOLIO = PostgresPortfolioRepository::mapRow;
+
+    // Parameters 1-11 of the insert (version is bound by the caller)
+    private static final BatchBinder<Portfolio> BIND_PORTFOLIO = (ps, portfolio) -> {
+        ps.setString(1, portfolio.portfolioId());
+        ps.setString(2, portfolio.userId());
+        ps.setString(3, portfolio.name());
+        ps.setBigDecimal(4, portfolio.totalCapital());
+        ps.setBigDecimal(5, portfolio.reservedCapital());
+        ps.setBigDecimal(6, portfolio.maxPortfolioLogLoss());
+        ps.setBigDecimal(7, portfolio.maxSymbolWeight());
+        ps.setInt(8, portfolio.maxSymbols());
+        ps.setString(9, portfolio.allocationMode());
+        ps.setString(10, portfolio.status());
+        ps.setBoolean(11, portfolio.paused());
+    };
+
+    private final Db db;
+
+    public PostgresPortfolioRepository(Db db) {
+        this.db = db;
     }
 
     @Override
     public List<Portfolio> findByUserId(String userId) {
         String sql = "SELECT * FROM portfolios WHERE user_id = ? AND deleted_at IS NULL ORDER BY created_at ASC";
-        List<Portfolio> portfolios = new ArrayList<>();
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
+        try {
+            return db.query("portfolios.findByUserId", sql, ps -> ps.setString(1, userId), PORTFOLIO);
+        } catch (Exception e) {
+            log.error("Error finding portfolios by user: {}", e.getMessage(), e);
+        }
 
-            ps.setString(1, userId);
+        return List.of();
+    }
 
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    portfolios.add(mapRow(rs));
-                }
-            }
+    @Override
+    public List<Portfolio> findByUserIds(Collection<String> userIds) {
+        String sql = "SELECT * FROM portfolios WHERE user_id = ANY(?) AND deleted_at IS NULL ORDER BY user_id, created_at ASC";
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+
+        try {
+            return db.query("portfolios.findByUserIds", sql, ps -> Binds.setVarcharArray(ps, 1, userIds), PORTFOLIO);
         } catch (Exception e) {
-            log.error("Error finding portfolios by user: {}", e.getMessage(), e);
+            log.error("Error finding portfolios by users: {}", e.getMessage(), e);
         }
 
-        return portfolios;
+        return List.of();
     }
 
     @Override
     public List<Portfolio> findAll() {
         String sql = "SELECT * FROM portfolios WHERE deleted_at IS NULL";
-        List<Portfolio> portfolios = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    portfolios.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("portfolios.findAll", sql, Binder.NONE, PORTFOLIO);
         } catch (Exception e) {
             log.error("Error finding all portfolios: {}", e.getMessage(), e);
         }
 
-        return portfolios;
+        return List.of();
     }
 
     @Override
     public Optional<Portfolio> findById(String portfolioId) {
         String sql = "SELECT * FROM portfolios WHERE portfolio_id = ? AND deleted_at IS NULL";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, portfolioId);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapRow(rs));
-                }
-            }
+        try {
+            return db.queryOne("portfolios.findById", sql, ps -> ps.setString(1, portfolioId), PORTFOLIO);
         } catch (Exception e) {
             log.error("Error finding portfolio by ID: {}", e.getMessage(), e);
         }
@@ -96,22 +110,8 @@ public final class PostgresPortfolioRepository implements PortfolioRepository {
                 ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 1)
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, portfolio.portfolioId());
-            ps.setString(2, portfolio.userId());
-            ps.setString(3, portfolio.name());
-            ps.setBigDecimal(4, portfolio.totalCapital());
-            ps.setBigDecimal(5, portfolio.reservedCapital());
-            ps.setBigDecimal(6, portfolio.maxPortfolioLogLoss());
-            ps.setBigDecimal(7, portfolio.maxSymbolWeight());
-            ps.setInt(8, portfolio.maxSymbols());
-            ps.setString(9, portfolio.allocationMode());
-            ps.setString(10, portfolio.status());
-            ps.setBoolean(11, portfolio.paused());
-
-            ps.executeUpdate();
+        try {
+            db.update("portfolios.insert", sql, ps -> BIND_PORTFOLIO.bind(ps, portfolio));
             log.info("Portfolio inserted: {} version 1", portfolio.portfolioId());
 
         } catch (Exception e) {
@@ -172,47 +172,26 @@ public final class PostgresPortfolioRepository implements PortfolioRepository {
                 ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
                 """;
 
-        try (Connection conn = dataSource.getConnection()) {
-            conn.setAutoCommit(false);
-
-            int currentVersion;
-            try (PreparedStatement ps = conn.prepareStatement(queryVersionSql)) {
-                ps.setString(1, portfolio.portfolioId());
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        throw new RuntimeException("Portfolio not found: " + portfolio.portfolioId());
-                    }
-                    currentVersion = rs.getInt("version");
-                }
-            }
+        try {
+            int currentVersion = db.inTransaction(conn -> {
+                int version = db.queryOne(conn, "portfolios.currentVersion", queryVersionSql,
+                        ps -> ps.setString(1, portfolio.portfolioId()), row -> row.getInt("version"))
+                        .orElseThrow(() -> new RuntimeException("Portfolio not found: " + portfolio.portfolioId()));
 
-            try (PreparedStatement ps = conn.prepareStatement(softDeleteSql)) {
-                ps.setString(1, portfolio.portfolioId());
-                ps.setInt(2, currentVersion);
-                int updated = ps.executeUpdate();
+                int updated = db.update(conn, "portfolios.softDelete", softDeleteSql, ps -> {
+                    ps.setString(1, portfolio.portfolioId());
+                    ps.setInt(2, version);
+                });
                 if (updated == 0) {
                     throw new RuntimeException("Failed to soft delete portfolio version: " + portfolio.portfolioId());
                 }
-            }
-
-            try (PreparedStatement ps = conn.prepareStatement(insertSql)) {
-                ps.setString(1, portfolio.portfolioId());
-                ps.setString(2, portfolio.userId());
-                ps.setString(3, portfolio.name());
-                ps.setBigDecimal(4, portfolio.totalCapital());
-                ps.setBigDecimal(5, portfolio.reservedCapital());
-                ps.setBigDecimal(6, portfolio.maxPortfolioLogLoss());
-                ps.setBigDecimal(7, portfolio.maxSymbolWeight());
-                ps.setInt(8, portfolio.maxSymbols());
-                ps.setString(9, portfolio.allocationMode());
-                ps.setString(10, portfolio.status());
-                ps.setBoolean(11, portfolio.paused());
-                ps.setInt(12, currentVersion + 1);
-
-                ps.executeUpdate();
-            }
 
-            conn.commit();
+                db.update(conn, "portfolios.insertVersion", insertSql, ps -> {
+                    BIND_PORTFOLIO.bind(ps, portfolio);
+                    ps.setInt(12, version + 1);
+                });
+                return version;
+            });
             log.info("Portfolio updated: {} version {} → {}", portfolio.portfolioId(), currentVersion,
                     currentVersion + 1);
 
@@ -233,25 +212,19 @@ public final class PostgresPortfolioRepository implements PortfolioRepository {
         String queryVersionSql = "SELECT version FROM portfolios WHERE portfolio_id = ? AND deleted_at IS NULL";
         String softDeleteSql = "UPDATE portfolios SET deleted_at = NOW() WHERE portfolio_id = ? AND version = ?";
 
-        try (Connection conn = dataSource.getConnection()) {
-            int currentVersion;
-            try (PreparedStatement ps = conn.prepareStatement(queryVersionSql)) {
-                ps.setString(1, portfolioId);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        log.warn("Portfolio not found or already deleted: {}", portfolioId);
-                        return;
-                    }
-                    currentVersion = rs.getInt("version");
-                }
+        try {
+            Optional<Integer> currentVersion = db.queryOne("portfolios.currentVersion", queryVersionSql,
+                    ps -> ps.setString(1, portfolioId), row -> row.getInt("version"));
+            if (currentVersion.isEmpty()) {
+                log.warn("Portfolio not found or already deleted: {}", portfolioId);
+                return;
             }
 
-            try (PreparedStatement ps = conn.prepareStatement(softDeleteSql)) {
+            db.update("portfolios.softDelete", softDeleteSql, ps -> {
                 ps.setString(1, portfolioId);
-                ps.setInt(2, currentVersion);
-                ps.executeUpdate();
-                log.info("Portfolio soft deleted: {} version {}", portfolioId, currentVersion);
-            }
+                ps.setInt(2, currentVersion.get());
+            });
+            log.info("Portfolio soft deleted: {} version {}", portfolioId, currentVersion.get());
 
         } catch (Exception e) {
             log.error("Error soft deleting portfolio: {}", e.getMessage(), e);
@@ -259,28 +232,28 @@ public final class PostgresPortfolioRepository implements PortfolioRepository {
         }
     }
 
-    private Portfolio mapRow(ResultSet rs) throws Exception {
-        String portfolioId = rs.getString("portfolio_id");
-        String userId = rs.getString("user_id");
-        String name = rs.getString("name");
-        BigDecimal totalCapital = rs.getBigDecimal("total_capital");
-        BigDecimal reservedCapital = rs.getBigDecimal("reserved_capital");
-        BigDecimal maxPortfolioLogLoss = rs.getBigDecimal("max_portfolio_log_loss");
-        BigDecimal maxSymbolWeight = rs.getBigDecimal("max_symbol_weight");
-        int maxSymbols = rs.getInt("max_symbols");
-        String allocationMode = rs.getString("allocation_mode");
-        String status = rs.getString("status");
-        boolean paused = rs.getBoolean("paused");
-
-        Timestamp createdTs = rs.getTimestamp("created_at");
-        Timestamp updatedTs = rs.getTimestamp("updated_at");
+    private static Portfolio mapRow(Row row) throws Exception {
+        String portfolioId = row.getString("portfolio_id");
+        String userId = row.getString("user_id");
+        String name = row.getString("name");
+        BigDecimal totalCapital = row.getBigDecimal("total_capital");
+        BigDecimal reservedCapital = row.getBigDecimal("reserved_capital");
+        BigDecimal maxPortfolioLogLoss = row.getBigDecimal("max_portfolio_log_loss");
+        BigDecimal maxSymbolWeight = row.getBigDecimal("max_symbol_weight");
+        int maxSymbols = row.getInt("max_symbols");
+        String allocationMode = row.getString("allocation_mode");
+        String status = row.getString("status");
+        boolean paused = row.getBoolean("paused");
+
+        Timestamp createdTs = row.getTimestamp("created_at");
+        Timestamp updatedTs = row.getTimestamp("updated_at");
         Instant createdAt = createdTs != null ? createdTs.toInstant() : Instant.now();
         Instant updatedAt = updatedTs != null ? updatedTs.toInstant() : Instant.now();
 
-        Timestamp deletedTs = rs.getTimestamp("deleted_at");
+        Timestamp deletedTs = row.getTimestamp("deleted_at");
         Instant deletedAt = deletedTs != null ? deletedTs.toInstant() : null;
 
-        int version = rs.getInt("version");
+        int version = row.getInt("version");
 
         return new Portfolio(
                 portfolioId, userId, name, totalCapital, reservedCapital,
@@ -4,14 +4,20 @@ import in.annupaper.application.port.output.*;
 
 import in.annupaper.domain.model.SignalDelivery;
 import in.annupaper.domain.model.DeliveryIndexEntry;
+import in.annupaper.infrastructure.persistence.jdbc.Binder;
+import in.annupaper.infrastructure.persistence.jdbc.Binds;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
 import java.sql.*;
-import java.time.Instant;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * PostgreSQL implementation of SignalDeliveryRepository.
@@ -21,10 +27,12 @@ import java.util.List;
 public final class PostgresSignalDeliveryRepository implements SignalDeliveryRepository {
     private static final Logger log = LoggerFactory.getLogger(PostgresSignalDeliveryRepository.class);
 
-    private final DataSource dataSource;
+    private static final RowMapper<SignalDelivery> DELIVERY = PostgresSignalDeliveryRepository::mapRow;
 
-    public PostgresSignalDeliveryRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
+    private final Db db;
+
+    public PostgresSignalDeliveryRepository(Db db) {
+        this.db = db;
     }
 
     @Override
@@ -34,20 +42,13 @@ public final class PostgresSignalDeliveryRepository implements SignalDeliveryRep
                 WHERE delivery_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, deliveryId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return mapRow(rs);
-                }
-            }
+        try {
+            return db.queryOne("signal_deliveries.findById", sql, ps -> ps.setString(1, deliveryId), DELIVERY)
+                    .orElse(null);
         } catch (Exception e) {
             log.error("Failed to find delivery {}: {}", deliveryId, e.getMessage());
             throw new RuntimeException("Failed to find delivery", e);
         }
-        return null;
     }
 
     @Override
@@ -57,22 +58,16 @@ public final class PostgresSignalDeliveryRepository implements SignalDeliveryRep
                 WHERE signal_id = ? AND user_broker_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, signalId);
-            ps.setString(2, userBrokerId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return mapRow(rs);
-                }
-            }
+        try {
+            return db.queryOne("signal_deliveries.findBySignalAndUserBroker", sql, ps -> {
+                ps.setString(1, signalId);
+                ps.setString(2, userBrokerId);
+            }, DELIVERY).orElse(null);
         } catch (Exception e) {
             log.error("Failed to find delivery for signal {} and user-broker {}: {}",
                     signalId, userBrokerId, e.getMessage());
             throw new RuntimeException("Failed to find delivery", e);
         }
-        return null;
     }
 
     @Override
@@ -81,25 +76,18 @@ public final class PostgresSignalDeliveryRepository implements SignalDeliveryRep
                 ? "SELECT * FROM signal_deliveries WHERE user_id = ? AND status = ? AND deleted_at IS NULL ORDER BY created_at DESC"
                 : "SELECT * FROM signal_deliveries WHERE user_id = ? AND deleted_at IS NULL ORDER BY created_at DESC";
 
-        List<SignalDelivery> deliveries = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, userId);
-            if (status != null) {
-                ps.setString(2, status);
-            }
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    deliveries.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query(status != null ? "signal_deliveries.findByUserAndStatus" : "signal_deliveries.findByUser",
+                    sql, ps -> {
+                        ps.setString(1, userId);
+                        if (status != null) {
+                            ps.setString(2, status);
+                        }
+                    }, DELIVERY);
         } catch (Exception e) {
             log.error("Failed to find deliveries for user {}: {}", userId, e.getMessage());
             throw new RuntimeException("Failed to find deliveries", e);
         }
-        return deliveries;
     }
 
     @Override
@@ -110,21 +98,12 @@ public final class PostgresSignalDeliveryRepository implements SignalDeliveryRep
                 ORDER BY created_at ASC
                 """;
 
-        List<SignalDelivery> deliveries = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, signalId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    deliveries.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("signal_deliveries.findBySignalId", sql, ps -> ps.setString(1, signalId), DELIVERY);
         } catch (Exception e) {
             log.error("Failed to find deliveries for signal {}: {}", signalId, e.getMessage());
             throw new RuntimeException("Failed to find deliveries", e);
         }
-        return deliveries;
     }
 
     @Override
@@ -136,22 +115,16 @@ public final class PostgresSignalDeliveryRepository implements SignalDeliveryRep
                   AND deleted_at IS NULL
                 """;
 
-        List<DeliveryIndexEntry> entries = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                entries.add(new DeliveryIndexEntry(
-                        rs.getString("delivery_id"),
-                        rs.getString("signal_id"),
-                        rs.getString("user_broker_id")));
-            }
+        try {
+            return db.query("signal_deliveries.findAllActiveForIndex", sql, Binder.NONE,
+                    row -> new DeliveryIndexEntry(
+                            row.getString("delivery_id"),
+                            row.getString("signal_id"),
+                            row.getString("user_broker_id")));
         } catch (Exception e) {
             log.error("Failed to fetch active deliveries for index: {}", e.getMessage());
             throw new RuntimeException("Failed to fetch deliveries", e);
         }
-        return entries;
     }
 
     @Override
@@ -163,19 +136,58 @@ public final class PostgresSignalDeliveryRepository implements SignalDeliveryRep
                 ORDER BY created_at ASC
                 """;
 
-        List<SignalDelivery> deliveries = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                deliveries.add(mapRow(rs));
-            }
+        try {
+            return db.query("signal_deliveries.findPending", sql, Binder.NONE, DELIVERY);
         } catch (Exception e) {
             log.error("Failed to find pending deliveries: {}", e.getMessage());
             throw new RuntimeException("Failed to find pending deliveries", e);
         }
-        return deliveries;
+    }
+
+    @Override
+    public List<SignalDelivery> claimForSignal(String signalId) {
+        String sql = """
+                UPDATE signal_deliveries
+                SET status = 'DELIVERED', delivered_at = NOW(), updated_at = NOW(), version = version + 1
+                WHERE delivery_id IN (
+                    SELECT delivery_id FROM signal_deliveries
+                    WHERE signal_id = ?
+                      AND status = 'CREATED'
+                      AND deleted_at IS NULL
+                    FOR UPDATE SKIP LOCKED
+                )
+                RETURNING *
+                """;
+
+        try {
+            return db.query("signal_deliveries.claimForSignal", sql, ps -> ps.setString(1, signalId), DELIVERY);
+        } catch (Exception e) {
+            log.error("Failed to claim deliveries for signal {}: {}", signalId, e.getMessage());
+            throw new RuntimeException("Failed to claim deliveries", e);
+        }
+    }
+
+    @Override
+    public int releaseExpiredClaims(Duration lease) {
+        String sql = """
+                UPDATE signal_deliveries
+                SET status = 'CREATED', updated_at = NOW()
+                WHERE status = 'DELIVERED'
+                  AND delivered_at < NOW() - ? * INTERVAL '1 millisecond'
+                  AND deleted_at IS NULL
+                """;
+
+        try {
+            int released = db.update("signal_deliveries.releaseExpiredClaims", sql,
+                    ps -> ps.setLong(1, lease.toMillis()));
+            if (released > 0) {
+                log.warn("Released {} deliveries claimed more than {}s ago", released, lease.toSeconds());
+            }
+            return released;
+        } catch (Exception e) {
+            log.error("Failed to release expired delivery claims: {}", e.getMessage());
+            throw new RuntimeException("Failed to release delivery claims", e);
+        }
     }
 
     @Override
@@ -189,25 +201,23 @@ public final class PostgresSignalDeliveryRepository implements SignalDeliveryRep
                 ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, delivery.deliveryId());
-            ps.setString(2, delivery.signalId());
-            ps.setString(3, delivery.userBrokerId());
-            ps.setString(4, delivery.userId());
-            ps.setString(5, delivery.status());
-            ps.setString(6, delivery.intentId());
-            ps.setString(7, delivery.rejectionReason());
-            ps.setString(8, delivery.userAction());
-            ps.setTimestamp(9, Timestamp.from(delivery.createdAt()));
-            setTimestampOrNull(ps, 10, delivery.deliveredAt());
-            setTimestampOrNull(ps, 11, delivery.consumedAt());
-            setTimestampOrNull(ps, 12, delivery.userActionAt());
-            ps.setTimestamp(13, Timestamp.from(delivery.updatedAt()));
-            ps.setInt(14, delivery.version());
-
-            ps.executeUpdate();
+        try {
+            db.update("signal_deliveries.insert", sql, ps -> {
+                ps.setString(1, delivery.deliveryId());
+                ps.setString(2, delivery.signalId());
+                ps.setString(3, delivery.userBrokerId());
+                ps.setString(4, delivery.userId());
+                ps.setString(5, delivery.status());
+                ps.setString(6, delivery.intentId());
+                ps.setString(7, delivery.rejectionReason());
+                ps.setString(8, delivery.userAction());
+                ps.setTimestamp(9, Timestamp.from(delivery.createdAt()));
+                Binds.setTimestampOrNull(ps, 10, delivery.deliveredAt());
+                Binds.setTimestampOrNull(ps, 11, delivery.consumedAt());
+                Binds.setTimestampOrNull(ps, 12, delivery.userActionAt());
+                ps.setTimestamp(13, Timestamp.from(delivery.updatedAt()));
+                ps.setInt(14, delivery.version());
+            });
             log.info("Delivery inserted: {} → {} for user-broker {}",
                     delivery.deliveryId(), delivery.signalId(), delivery.userBrokerId());
 
@@ -222,22 +232,20 @@ public final class PostgresSignalDeliveryRepository implements SignalDeliveryRep
         // AV-5 FIX: Use DB function for atomic consumption with optimistic lock
         String sql = "SELECT consume_delivery(?, ?)";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, deliveryId);
-            ps.setString(2, intentId);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    boolean success = rs.getBoolean(1);
-                    if (success) {
-                        log.info("✅ Delivery consumed: {} → intent {}", deliveryId, intentId);
-                    } else {
-                        log.warn("⚠️ Delivery consumption failed (already consumed?): {}", deliveryId);
-                    }
-                    return success;
+        try {
+            Optional<Boolean> consumed = db.queryOne("signal_deliveries.consume", sql, ps -> {
+                ps.setString(1, deliveryId);
+                ps.setString(2, intentId);
+            }, row -> row.getBoolean(1));
+
+            if (consumed.isPresent()) {
+                boolean success = consumed.get();
+                if (success) {
+                    log.info("✅ Delivery consumed: {} → intent {}", deliveryId, intentId);
+                } else {
+                    log.warn("⚠️ Delivery consumption failed (already consumed?): {}", deliveryId);
                 }
+                return success;
             }
         } catch (Exception e) {
             log.error("Failed to consume delivery {}: {}", deliveryId, e.getMessage());
@@ -255,13 +263,11 @@ public final class PostgresSignalDeliveryRepository implements SignalDeliveryRep
                 WHERE delivery_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, status);
-            ps.setString(2, deliveryId);
-
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("signal_deliveries.updateStatus", sql, ps -> {
+                ps.setString(1, status);
+                ps.setString(2, deliveryId);
+            });
             if (updated > 0) {
                 log.debug("Delivery status updated: {} → {}", deliveryId, status);
             }
@@ -271,6 +277,49 @@ public final class PostgresSignalDeliveryRepository implements SignalDeliveryRep
         }
     }
 
+    @Override
+    public int updateStatusAll(Collection<SignalDelivery> claimed, String status) {
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+
+        // Held to the claim's version, as the bulk consume in insertAndConsume
+        String sql = """
+                UPDATE signal_deliveries d
+                SET status = ?, updated_at = NOW()
+                FROM unnest(?::varchar[], ?::int[]) AS c(delivery_id, version)
+                WHERE d.delivery_id = c.delivery_id
+                  AND d.version = c.version
+                  AND d.status = 'DELIVERED'
+                  AND d.deleted_at IS NULL
+                """;
+
+        List<String> deliveryIds = new ArrayList<>(claimed.size());
+        List<Integer> versions = new ArrayList<>(claimed.size());
+        for (SignalDelivery delivery : claimed) {
+            deliveryIds.add(delivery.deliveryId());
+            versions.add(delivery.version());
+        }
+
+        try {
+            int updated = db.update("signal_deliveries.updateStatusAll", sql, ps -> {
+                ps.setString(1, status);
+                Binds.setVarcharArray(ps, 2, deliveryIds);
+                Binds.setIntArray(ps, 3, versions);
+            });
+            if (updated < claimed.size()) {
+                log.warn("Delivery status {}: {}/{} updated (claim expired and taken over)",
+                        status, updated, claimed.size());
+            } else {
+                log.debug("Delivery status updated: {} → {}", updated, status);
+            }
+            return updated;
+        } catch (Exception e) {
+            log.error("Failed to update {} delivery statuses: {}", claimed.size(), e.getMessage());
+            throw new RuntimeException("Failed to update deliveries", e);
+        }
+    }
+
     @Override
     public void expireAllForSignal(String signalId) {
         String sql = """
@@ -281,11 +330,8 @@ public final class PostgresSignalDeliveryRepository implements SignalDeliveryRep
                   AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, signalId);
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("signal_deliveries.expireAllForSignal", sql, ps -> ps.setString(1, signalId));
 
             if (updated > 0) {
                 log.info("Expired {} deliveries for signal {}", updated, signalId);
@@ -306,11 +352,8 @@ public final class PostgresSignalDeliveryRepository implements SignalDeliveryRep
                   AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, signalId);
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("signal_deliveries.cancelAllForSignal", sql, ps -> ps.setString(1, signalId));
 
             if (updated > 0) {
                 log.info("Cancelled {} deliveries for signal {}", updated, signalId);
@@ -321,35 +364,27 @@ public final class PostgresSignalDeliveryRepository implements SignalDeliveryRep
         }
     }
 
-    private SignalDelivery mapRow(ResultSet rs) throws SQLException {
-        Timestamp deliveredTs = rs.getTimestamp("delivered_at");
-        Timestamp consumedTs = rs.getTimestamp("consumed_at");
-        Timestamp userActionTs = rs.getTimestamp("user_action_at");
-        Timestamp deletedTs = rs.getTimestamp("deleted_at");
+    private static SignalDelivery mapRow(Row row) throws SQLException {
+        Timestamp deliveredTs = row.getTimestamp("delivered_at");
+        Timestamp consumedTs = row.getTimestamp("consumed_at");
+        Timestamp userActionTs = row.getTimestamp("user_action_at");
+        Timestamp deletedTs = row.getTimestamp("deleted_at");
 
         return new SignalDelivery(
-                rs.getString("delivery_id"),
-                rs.getString("signal_id"),
-                rs.getString("user_broker_id"),
-                rs.getString("user_id"),
-                rs.getString("status"),
-                rs.getString("intent_id"),
-                rs.getString("rejection_reason"),
-                rs.getString("user_action"),
-                rs.getTimestamp("created_at").toInstant(),
+                row.getString("delivery_id"),
+                row.getString("signal_id"),
+                row.getString("user_broker_id"),
+                row.getString("user_id"),
+                row.getString("status"),
+                row.getString("intent_id"),
+                row.getString("rejection_reason"),
+                row.getString("user_action"),
+                row.getTimestamp("created_at").toInstant(),
                 deliveredTs != null ? deliveredTs.toInstant() : null,
                 consumedTs != null ? consumedTs.toInstant() : null,
                 userActionTs != null ? userActionTs.toInstant() : null,
-                rs.getTimestamp("updated_at").toInstant(),
+                row.getTimestamp("updated_at").toInstant(),
                 deletedTs != null ? deletedTs.toInstant() : null,
-                rs.getInt("version"));
-    }
-
-    private void setTimestampOrNull(PreparedStatement ps, int index, Instant value) throws SQLException {
-        if (value != null) {
-            ps.setTimestamp(index, Timestamp.from(value));
-        } else {
-            ps.setNull(index, Types.TIMESTAMP);
-        }
+                row.getInt("version"));
     }
 }
@@ -7,14 +7,18 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import in.annupaper.domain.model.Direction;
 import in.annupaper.domain.model.SignalType;
 import in.annupaper.domain.model.Signal;
+import in.annupaper.infrastructure.persistence.jdbc.Binder;
+import in.annupaper.infrastructure.persistence.jdbc.Binds;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.time.Instant;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,11 +28,16 @@ import java.util.Optional;
 public final class PostgresSignalRepository implements SignalRepository {
     private static final Logger log = LoggerFactory.getLogger(PostgresSignalRepository.class);
 
-    private final DataSource dataSource;
+    // Parameter indexes of effective_floor / effective_ceiling in bindColumns
+    private static final int EFFECTIVE_FLOOR_PARAM = 24;
+    private static final int EFFECTIVE_CEILING_PARAM = 25;
+
+    private final Db db;
     private final ObjectMapper objectMapper;
+    private final RowMapper<Signal> signalMapper = this::mapRow;
 
-    public PostgresSignalRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
+    public PostgresSignalRepository(Db db) {
+        this.db = db;
         this.objectMapper = new ObjectMapper();
     }
 
@@ -40,19 +49,12 @@ public final class PostgresSignalRepository implements SignalRepository {
                 ORDER BY generated_at DESC
                 """;
 
-        List<Signal> signals = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                signals.add(mapRow(rs));
-            }
+        try {
+            return db.query("signals.findAll", sql, Binder.NONE, signalMapper);
         } catch (Exception e) {
             log.error("Failed to find all signals: {}", e.getMessage());
             throw new RuntimeException("Failed to find signals", e);
         }
-        return signals;
     }
 
     @Override
@@ -62,20 +64,31 @@ public final class PostgresSignalRepository implements SignalRepository {
                 WHERE signal_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, signalId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapRow(rs));
-                }
-            }
+        try {
+            return db.queryOne("signals.findById", sql, ps -> ps.setString(1, signalId), signalMapper);
         } catch (Exception e) {
             log.error("Failed to find signal {}: {}", signalId, e.getMessage());
             throw new RuntimeException("Failed to find signal", e);
         }
-        return Optional.empty();
+    }
+
+    @Override
+    public List<Signal> findByIds(Collection<String> signalIds) {
+        String sql = """
+                SELECT * FROM signals
+                WHERE signal_id = ANY(?) AND deleted_at IS NULL
+                """;
+
+        if (signalIds.isEmpty()) {
+            return List.of();
+        }
+
+        try {
+            return db.query("signals.findByIds", sql, ps -> Binds.setVarcharArray(ps, 1, signalIds), signalMapper);
+        } catch (Exception e) {
+            log.error("Failed to find {} signals: {}", signalIds.size(), e.getMessage());
+            throw new RuntimeException("Failed to find signals", e);
+        }
     }
 
     @Override
@@ -86,21 +99,12 @@ public final class PostgresSignalRepository implements SignalRepository {
                 ORDER BY generated_at DESC
                 """;
 
-        List<Signal> signals = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, symbol);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    signals.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("signals.findBySymbol", sql, ps -> ps.setString(1, symbol), signalMapper);
         } catch (Exception e) {
             log.error("Failed to find signals by symbol {}: {}", symbol, e.getMessage());
             throw new RuntimeException("Failed to find signals", e);
         }
-        return signals;
     }
 
     @Override
@@ -111,21 +115,12 @@ public final class PostgresSignalRepository implements SignalRepository {
                 ORDER BY generated_at DESC
                 """;
 
-        List<Signal> signals = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, status);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    signals.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("signals.findByStatus", sql, ps -> ps.setString(1, status), signalMapper);
         } catch (Exception e) {
             log.error("Failed to find signals by status {}: {}", status, e.getMessage());
             throw new RuntimeException("Failed to find signals", e);
         }
-        return signals;
     }
 
     @Override
@@ -154,50 +149,9 @@ public final class PostgresSignalRepository implements SignalRepository {
                 )
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, signal.signalId());
-            ps.setString(2, signal.symbol());
-            ps.setString(3, signal.direction().name());
-            ps.setString(4, signal.signalType().name());
-
-            setIntOrNull(ps, 5, signal.htfZone());
-            setIntOrNull(ps, 6, signal.itfZone());
-            setIntOrNull(ps, 7, signal.ltfZone());
-
-            ps.setString(8, signal.confluenceType());
-            setBigDecimalOrNull(ps, 9, signal.confluenceScore());
-
-            setBigDecimalOrNull(ps, 10, signal.pWin());
-            setBigDecimalOrNull(ps, 11, signal.pFill());
-            setBigDecimalOrNull(ps, 12, signal.kelly());
-
-            setBigDecimalOrNull(ps, 13, signal.refPrice());
-            setBigDecimalOrNull(ps, 14, signal.refBid());
-            setBigDecimalOrNull(ps, 15, signal.refAsk());
-            setBigDecimalOrNull(ps, 16, signal.entryLow());
-            setBigDecimalOrNull(ps, 17, signal.entryHigh());
-
-            setBigDecimalOrNull(ps, 18, signal.htfLow());
-            setBigDecimalOrNull(ps, 19, signal.htfHigh());
-            setBigDecimalOrNull(ps, 20, signal.itfLow());
-            setBigDecimalOrNull(ps, 21, signal.itfHigh());
-            setBigDecimalOrNull(ps, 22, signal.ltfLow());
-            setBigDecimalOrNull(ps, 23, signal.ltfHigh());
-
-            setBigDecimalOrNull(ps, 24, signal.effectiveFloor());
-            setBigDecimalOrNull(ps, 25, signal.effectiveCeiling());
-
-            setBigDecimalOrNull(ps, 26, signal.confidence());
-            ps.setString(27, signal.reason());
-            ps.setString(28, objectMapper.writeValueAsString(signal.tags()));
-
-            ps.setTimestamp(29, Timestamp.from(signal.generatedAt()));
-            setTimestampOrNull(ps, 30, signal.expiresAt());
-            ps.setString(31, signal.status());
-
-            ps.executeUpdate();
+        try {
+            String tagsJson = objectMapper.writeValueAsString(signal.tags());
+            db.update("signals.insert", sql, ps -> bindColumns(ps, signal, tagsJson));
             log.info("Signal inserted: {}", signal.signalId());
 
         } catch (Exception e) {
@@ -245,78 +199,30 @@ public final class PostgresSignalRepository implements SignalRepository {
                 )
                 """;
 
-        try (Connection conn = dataSource.getConnection()) {
-            conn.setAutoCommit(false);
-
-            // Step 1: Get current version
-            int currentVersion;
-            try (PreparedStatement ps = conn.prepareStatement(queryVersionSql)) {
-                ps.setString(1, signal.signalId());
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        throw new RuntimeException("Signal not found: " + signal.signalId());
-                    }
-                    currentVersion = rs.getInt("version");
-                }
-            }
-
-            // Step 2: Soft delete current version
-            try (PreparedStatement ps = conn.prepareStatement(softDeleteSql)) {
-                ps.setString(1, signal.signalId());
-                ps.setInt(2, currentVersion);
-                int updated = ps.executeUpdate();
+        try {
+            String tagsJson = objectMapper.writeValueAsString(signal.tags());
+            int currentVersion = db.inTransaction(conn -> {
+                // Step 1: Get current version
+                int version = db.queryOne(conn, "signals.currentVersion", queryVersionSql,
+                        ps -> ps.setString(1, signal.signalId()), row -> row.getInt("version"))
+                        .orElseThrow(() -> new RuntimeException("Signal not found: " + signal.signalId()));
+
+                // Step 2: Soft delete current version
+                int updated = db.update(conn, "signals.softDelete", softDeleteSql, ps -> {
+                    ps.setString(1, signal.signalId());
+                    ps.setInt(2, version);
+                });
                 if (updated == 0) {
                     throw new RuntimeException("Failed to soft delete signal: " + signal.signalId());
                 }
-            }
-
-            // Step 3: Insert new version
-            try (PreparedStatement ps = conn.prepareStatement(insertSql)) {
-                ps.setString(1, signal.signalId());
-                ps.setString(2, signal.symbol());
-                ps.setString(3, signal.direction().name());
-                ps.setString(4, signal.signalType().name());
-
-                setIntOrNull(ps, 5, signal.htfZone());
-                setIntOrNull(ps, 6, signal.itfZone());
-                setIntOrNull(ps, 7, signal.ltfZone());
-
-                ps.setString(8, signal.confluenceType());
-                setBigDecimalOrNull(ps, 9, signal.confluenceScore());
-
-                setBigDecimalOrNull(ps, 10, signal.pWin());
-                setBigDecimalOrNull(ps, 11, signal.pFill());
-                setBigDecimalOrNull(ps, 12, signal.kelly());
-
-                setBigDecimalOrNull(ps, 13, signal.refPrice());
-                setBigDecimalOrNull(ps, 14, signal.refBid());
-                setBigDecimalOrNull(ps, 15, signal.refAsk());
-                setBigDecimalOrNull(ps, 16, signal.entryLow());
-                setBigDecimalOrNull(ps, 17, signal.entryHigh());
-
-                setBigDecimalOrNull(ps, 18, signal.htfLow());
-                setBigDecimalOrNull(ps, 19, signal.htfHigh());
-                setBigDecimalOrNull(ps, 20, signal.itfLow());
-                setBigDecimalOrNull(ps, 21, signal.itfHigh());
-                setBigDecimalOrNull(ps, 22, signal.ltfLow());
-                setBigDecimalOrNull(ps, 23, signal.ltfHigh());
-
-                setBigDecimalOrNull(ps, 24, signal.effectiveFloor());
-                setBigDecimalOrNull(ps, 25, signal.effectiveCeiling());
-
-                setBigDecimalOrNull(ps, 26, signal.confidence());
-                ps.setString(27, signal.reason());
-                ps.setString(28, objectMapper.writeValueAsString(signal.tags()));
-
-                ps.setTimestamp(29, Timestamp.from(signal.generatedAt()));
-                setTimestampOrNull(ps, 30, signal.expiresAt());
-                ps.setString(31, signal.status());
-                ps.setInt(32, currentVersion + 1);
-
-                ps.executeUpdate();
-            }
 
-            conn.commit();
+                // Step 3: Insert new version
+                db.update(conn, "signals.insertVersion", insertSql, ps -> {
+                    bindColumns(ps, signal, tagsJson);
+                    ps.setInt(32, version + 1);
+                });
+                return version;
+            });
             log.info("Signal updated: {} version {} → {}", signal.signalId(), currentVersion, currentVersion + 1);
 
         } catch (Exception e) {
@@ -340,32 +246,23 @@ public final class PostgresSignalRepository implements SignalRepository {
                 WHERE signal_id = ? AND version = ?
                 """;
 
-        try (Connection conn = dataSource.getConnection()) {
-            conn.setAutoCommit(false);
-
-            // Get current version
-            int currentVersion;
-            try (PreparedStatement ps = conn.prepareStatement(queryVersionSql)) {
-                ps.setString(1, signalId);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        throw new RuntimeException("Signal not found: " + signalId);
-                    }
-                    currentVersion = rs.getInt("version");
-                }
-            }
-
-            // Soft delete
-            try (PreparedStatement ps = conn.prepareStatement(softDeleteSql)) {
-                ps.setString(1, signalId);
-                ps.setInt(2, currentVersion);
-                int deleted = ps.executeUpdate();
+        try {
+            int currentVersion = db.inTransaction(conn -> {
+                // Get current version
+                int version = db.queryOne(conn, "signals.currentVersion", queryVersionSql,
+                        ps -> ps.setString(1, signalId), row -> row.getInt("version"))
+                        .orElseThrow(() -> new RuntimeException("Signal not found: " + signalId));
+
+                // Soft delete
+                int deleted = db.update(conn, "signals.softDelete", softDeleteSql, ps -> {
+                    ps.setString(1, signalId);
+                    ps.setInt(2, version);
+                });
                 if (deleted == 0) {
                     throw new RuntimeException("Failed to delete signal: " + signalId);
                 }
-            }
-
-            conn.commit();
+                return version;
+            });
             log.info("Signal soft-deleted: {} version {}", signalId, currentVersion);
 
         } catch (Exception e) {
@@ -382,21 +279,12 @@ public final class PostgresSignalRepository implements SignalRepository {
                 ORDER BY version ASC
                 """;
 
-        List<Signal> signals = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, signalId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    signals.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("signals.findAllVersions", sql, ps -> ps.setString(1, signalId), signalMapper);
         } catch (Exception e) {
             log.error("Failed to find signal versions {}: {}", signalId, e.getMessage());
             throw new RuntimeException("Failed to find signal versions", e);
         }
-        return signals;
     }
 
     @Override
@@ -406,94 +294,109 @@ public final class PostgresSignalRepository implements SignalRepository {
                 WHERE signal_id = ? AND version = ?
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, signalId);
-            ps.setInt(2, version);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapRow(rs));
-                }
-            }
+        try {
+            return db.queryOne("signals.findByIdAndVersion", sql, ps -> {
+                ps.setString(1, signalId);
+                ps.setInt(2, version);
+            }, signalMapper);
         } catch (Exception e) {
             log.error("Failed to find signal {} version {}: {}", signalId, version, e.getMessage());
             throw new RuntimeException("Failed to find signal version", e);
         }
-        return Optional.empty();
     }
 
-    private Signal mapRow(ResultSet rs) throws Exception {
-        Timestamp deletedTs = rs.getTimestamp("deleted_at");
+    private Signal mapRow(Row row) throws Exception {
+        Timestamp deletedTs = row.getTimestamp("deleted_at");
         Instant deletedAt = deletedTs != null ? deletedTs.toInstant() : null;
 
-        Timestamp expiresTs = rs.getTimestamp("expires_at");
+        Timestamp expiresTs = row.getTimestamp("expires_at");
         Instant expiresAt = expiresTs != null ? expiresTs.toInstant() : null;
 
-        String tagsJson = rs.getString("tags");
+        String tagsJson = row.getString("tags");
         List<String> tags = tagsJson != null
                 ? objectMapper.readValue(tagsJson, new TypeReference<List<String>>() {
                 })
                 : List.of();
 
         return new Signal(
-                rs.getString("signal_id"),
-                rs.getString("symbol"),
-                Direction.valueOf(rs.getString("direction")),
-                SignalType.valueOf(rs.getString("signal_type")),
-                (Integer) rs.getObject("htf_zone"),
-                (Integer) rs.getObject("itf_zone"),
-                (Integer) rs.getObject("ltf_zone"),
-                rs.getString("confluence_type"),
-                rs.getBigDecimal("confluence_score"),
-                rs.getBigDecimal("p_win"),
-                rs.getBigDecimal("p_fill"),
-                rs.getBigDecimal("kelly"),
-                rs.getBigDecimal("ref_price"),
-                rs.getBigDecimal("ref_bid"),
-                rs.getBigDecimal("ref_ask"),
-                rs.getBigDecimal("entry_low"),
-                rs.getBigDecimal("entry_high"),
-                rs.getBigDecimal("htf_low"),
-                rs.getBigDecimal("htf_high"),
-                rs.getBigDecimal("itf_low"),
-                rs.getBigDecimal("itf_high"),
-                rs.getBigDecimal("ltf_low"),
-                rs.getBigDecimal("ltf_high"),
-                rs.getBigDecimal("effective_floor"),
-                rs.getBigDecimal("effective_ceiling"),
-                rs.getBigDecimal("confidence"),
-                rs.getString("reason"),
+                row.getString("signal_id"),
+                row.getString("symbol"),
+                Direction.valueOf(row.getString("direction")),
+                SignalType.valueOf(row.getString("signal_type")),
+                (Integer) row.getObject("htf_zone"),
+                (Integer) row.getObject("itf_zone"),
+                (Integer) row.getObject("ltf_zone"),
+                row.getString("confluence_type"),
+                row.getBigDecimal("confluence_score"),
+                row.getBigDecimal("p_win"),
+                row.getBigDecimal("p_fill"),
+                row.getBigDecimal("kelly"),
+                row.getBigDecimal("ref_price"),
+                row.getBigDecimal("ref_bid"),
+                row.getBigDecimal("ref_ask"),
+                row.getBigDecimal("entry_low"),
+                row.getBigDecimal("entry_high"),
+                row.getBigDecimal("htf_low"),
+                row.getBigDecimal("htf_high"),
+                row.getBigDecimal("itf_low"),
+                row.getBigDecimal("itf_high"),
+                row.getBigDecimal("ltf_low"),
+                row.getBigDecimal("ltf_high"),
+                row.getBigDecimal("effective_floor"),
+                row.getBigDecimal("effective_ceiling"),
+                row.getBigDecimal("confidence"),
+                row.getString("reason"),
                 tags,
-                rs.getTimestamp("generated_at").toInstant(),
+                row.getTimestamp("generated_at").toInstant(),
                 expiresAt,
-                rs.getString("status"),
+                row.getString("status"),
                 deletedAt,
-                rs.getInt("version"));
-    }
-
-    private void setIntOrNull(PreparedStatement ps, int index, Integer value) throws SQLException {
-        if (value != null) {
-            ps.setInt(index, value);
-        } else {
-            ps.setNull(index, Types.INTEGER);
-        }
+                row.getInt("version"));
     }
 
-    private void setBigDecimalOrNull(PreparedStatement ps, int index, BigDecimal value) throws SQLException {
-        if (value != null) {
-            ps.setBigDecimal(index, value);
-        } else {
-            ps.setNull(index, Types.NUMERIC);
-        }
-    }
-
-    private void setTimestampOrNull(PreparedStatement ps, int index, Instant value) throws SQLException {
-        if (value != null) {
-            ps.setTimestamp(index, Timestamp.from(value));
-        } else {
-            ps.setNull(index, Types.TIMESTAMP);
-        }
+    /**
+     * Bind parameters 1-31 of the signals insert (everything but version).
+     */
+    private static void bindColumns(PreparedStatement ps, Signal signal, String tagsJson) throws SQLException {
+        ps.setString(1, signal.signalId());
+        ps.setString(2, signal.symbol());
+        ps.setString(3, signal.direction().name());
+        ps.setString(4, signal.signalType().name());
+
+        Binds.setIntOrNull(ps, 5, signal.htfZone());
+        Binds.setIntOrNull(ps, 6, signal.itfZone());
+        Binds.setIntOrNull(ps, 7, signal.ltfZone());
+
+        ps.setString(8, signal.confluenceType());
+        Binds.setBigDecimalOrNull(ps, 9, signal.confluenceScore());
+
+        Binds.setBigDecimalOrNull(ps, 10, signal.pWin());
+        Binds.setBigDecimalOrNull(ps, 11, signal.pFill());
+        Binds.setBigDecimalOrNull(ps, 12, signal.kelly());
+
+        Binds.setBigDecimalOrNull(ps, 13, signal.refPrice());
+        Binds.setBigDecimalOrNull(ps, 14, signal.refBid());
+        Binds.setBigDecimalOrNull(ps, 15, signal.refAsk());
+        Binds.setBigDecimalOrNull(ps, 16, signal.entryLow());
+        Binds.setBigDecimalOrNull(ps, 17, signal.entryHigh());
+
+        Binds.setBigDecimalOrNull(ps, 18, signal.htfLow());
+        Binds.setBigDecimalOrNull(ps, 19, signal.htfHigh());
+        Binds.setBigDecimalOrNull(ps, 20, signal.itfLow());
+        Binds.setBigDecimalOrNull(ps, 21, signal.itfHigh());
+        Binds.setBigDecimalOrNull(ps, 22, signal.ltfLow());
+        Binds.setBigDecimalOrNull(ps, 23, signal.ltfHigh());
+
+        Binds.setBigDecimalOrNull(ps, EFFECTIVE_FLOOR_PARAM, signal.effectiveFloor());
+        Binds.setBigDecimalOrNull(ps, EFFECTIVE_CEILING_PARAM, signal.effectiveCeiling());
+
+        Binds.setBigDecimalOrNull(ps, 26, signal.confidence());
+        ps.setString(27, signal.reason());
+        ps.setString(28, tagsJson);
+
+        ps.setTimestamp(29, Timestamp.from(signal.generatedAt()));
+        Binds.setTimestampOrNull(ps, 30, signal.expiresAt());
+        ps.setString(31, signal.status());
     }
 
     @Override
@@ -511,10 +414,8 @@ public final class PostgresSignalRepository implements SignalRepository {
                   )
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            int count = ps.executeUpdate();
+        try {
+            int count = db.update("signals.markStale", sql, Binder.NONE);
             log.info("Marked {} signals as STALE (global config change)", count);
             return count;
 
@@ -541,11 +442,8 @@ public final class PostgresSignalRepository implements SignalRepository {
                   )
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, symbol);
-            int count = ps.executeUpdate();
+        try {
+            int count = db.update("signals.markStaleForSymbol", sql, ps -> ps.setString(1, symbol));
             log.info("Marked {} signals as STALE for symbol {} (symbol config change)", count, symbol);
             return count;
 
@@ -591,71 +489,31 @@ public final class PostgresSignalRepository implements SignalRepository {
                 RETURNING *
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            int idx = 1;
-            ps.setString(idx++, signal.signalId());
-            ps.setString(idx++, signal.symbol());
-            ps.setString(idx++, signal.direction().name());
-            ps.setString(idx++, signal.signalType().name());
-
-            setIntOrNull(ps, idx++, signal.htfZone());
-            setIntOrNull(ps, idx++, signal.itfZone());
-            setIntOrNull(ps, idx++, signal.ltfZone());
-
-            ps.setString(idx++, signal.confluenceType());
-            setBigDecimalOrNull(ps, idx++, signal.confluenceScore());
-
-            setBigDecimalOrNull(ps, idx++, signal.pWin());
-            setBigDecimalOrNull(ps, idx++, signal.pFill());
-            setBigDecimalOrNull(ps, idx++, signal.kelly());
-
-            setBigDecimalOrNull(ps, idx++, signal.refPrice());
-            setBigDecimalOrNull(ps, idx++, signal.refBid());
-            setBigDecimalOrNull(ps, idx++, signal.refAsk());
-            setBigDecimalOrNull(ps, idx++, signal.entryLow());
-            setBigDecimalOrNull(ps, idx++, signal.entryHigh());
-
-            setBigDecimalOrNull(ps, idx++, signal.htfLow());
-            setBigDecimalOrNull(ps, idx++, signal.htfHigh());
-            setBigDecimalOrNull(ps, idx++, signal.itfLow());
-            setBigDecimalOrNull(ps, idx++, signal.itfHigh());
-            setBigDecimalOrNull(ps, idx++, signal.ltfLow());
-            setBigDecimalOrNull(ps, idx++, signal.ltfHigh());
+        try {
+            String tagsJson = objectMapper.writeValueAsString(signal.tags());
 
             // ✅ Round to 2 decimals to match CHECK constraint
             BigDecimal floor = signal.effectiveFloor();
             if (floor != null) {
                 floor = floor.setScale(2, java.math.RoundingMode.HALF_UP);
             }
-            setBigDecimalOrNull(ps, idx++, floor);
-
             BigDecimal ceiling = signal.effectiveCeiling();
             if (ceiling != null) {
                 ceiling = ceiling.setScale(2, java.math.RoundingMode.HALF_UP);
             }
-            setBigDecimalOrNull(ps, idx++, ceiling);
-
-            setBigDecimalOrNull(ps, idx++, signal.confidence());
-            ps.setString(idx++, signal.reason());
-            ps.setString(idx++, objectMapper.writeValueAsString(signal.tags()));
-
-            ps.setTimestamp(idx++, Timestamp.from(signal.generatedAt()));
-            setTimestampOrNull(ps, idx++, signal.expiresAt());
-            ps.setString(idx++, signal.status());
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    Signal result = mapRow(rs);
-                    log.info("Signal upserted: {} (symbol={}, confluence={}, floor={}, ceiling={})",
-                            result.signalId(), result.symbol(), result.confluenceType(),
-                            result.effectiveFloor(), result.effectiveCeiling());
-                    return result;
-                }
-            }
+            BigDecimal roundedFloor = floor;
+            BigDecimal roundedCeiling = ceiling;
+
+            Signal result = db.queryOne("signals.upsert", sql, ps -> {
+                bindColumns(ps, signal, tagsJson);
+                Binds.setBigDecimalOrNull(ps, EFFECTIVE_FLOOR_PARAM, roundedFloor);
+                Binds.setBigDecimalOrNull(ps, EFFECTIVE_CEILING_PARAM, roundedCeiling);
+            }, signalMapper).orElseThrow(() -> new RuntimeException("Upsert failed to return result"));
 
-            throw new RuntimeException("Upsert failed to return result");
+            log.info("Signal upserted: {} (symbol={}, confluence={}, floor={}, ceiling={})",
+                    result.signalId(), result.symbol(), result.confluenceType(),
+                    result.effectiveFloor(), result.effectiveCeiling());
+            return result;
 
         } catch (Exception e) {
             log.error("Failed to upsert signal: {}", e.getMessage(), e);
@@ -671,13 +529,11 @@ public final class PostgresSignalRepository implements SignalRepository {
                 WHERE signal_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, status);
-            ps.setString(2, signalId);
-
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("signals.updateStatus", sql, ps -> {
+                ps.setString(1, status);
+                ps.setString(2, signalId);
+            });
             if (updated > 0) {
                 log.debug("Signal status updated: {} → {}", signalId, status);
             }
@@ -695,23 +551,15 @@ public final class PostgresSignalRepository implements SignalRepository {
                 ORDER BY generated_at DESC
                 """;
 
-        List<Signal> signals = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, symbol);
-            ps.setString(2, status);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    signals.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("signals.findBySymbolAndStatus", sql, ps -> {
+                ps.setString(1, symbol);
+                ps.setString(2, status);
+            }, signalMapper);
         } catch (Exception e) {
             log.error("Failed to find signals by symbol and status: {}", e.getMessage());
             throw new RuntimeException("Failed to find signals", e);
         }
-        return signals;
     }
 
     @Override
@@ -725,23 +573,14 @@ public final class PostgresSignalRepository implements SignalRepository {
                 ORDER BY expires_at ASC
                 """;
 
-        List<Signal> signals = new ArrayList<>();
         Instant threshold = Instant.now().plus(window);
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setTimestamp(1, Timestamp.from(threshold));
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    signals.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("signals.findExpiringSoon", sql,
+                    ps -> ps.setTimestamp(1, Timestamp.from(threshold)), signalMapper);
         } catch (Exception e) {
             log.error("Failed to find expiring signals: {}", e.getMessage());
             throw new RuntimeException("Failed to find expiring signals", e);
         }
-        return signals;
     }
 }
@@ -0,0 +1,121 @@
+package in.annupaper.infrastructure.persistence;
+
+import in.annupaper.application.port.output.*;
+
+import in.annupaper.domain.model.Tick;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PostgreSQL implementation of TickJournalRepository.
+ *
+ * Uses COPY ... FROM STDIN for bulk appends into the daily-partitioned
+ * tick_journal table (see V017). Daily partitions are created ahead of the
+ * ticks that land in them: today's and tomorrow's at startup, and the next
+ * day's whenever a day is first written, so rows only reach the DEFAULT
+ * partition if partition creation failed (V020 moves them out when the
+ * day's partition is created). Ensured days are remembered per process.
+ */
+public final class PostgresTickJournalRepository implements TickJournalRepository {
+    private static final Logger log = LoggerFactory.getLogger(PostgresTickJournalRepository.class);
+
+    private static final String COPY_SQL = """
+            COPY tick_journal (symbol, ts, last_price, volume, bid, ask, broker_code)
+            FROM STDIN WITH (FORMAT csv)
+            """;
+
+    private static final String ENSURE_PARTITION_SQL = "SELECT ensure_tick_journal_partition(?)";
+
+    private final Db db;
+    private final Set<LocalDate> ensuredPartitions = ConcurrentHashMap.newKeySet();
+
+    public PostgresTickJournalRepository(Db db) {
+        this.db = db;
+    }
+
+    /**
+     * Create today's and tomorrow's (UTC) partitions before the first batch.
+     * Failures are logged: appendBatch() retries the days it writes.
+     */
+    public void createPartitionsAhead() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        try (Connection conn = db.dataSource().getConnection()) {
+            ensurePartition(conn, today);
+            ensurePartition(conn, today.plusDays(1));
+        } catch (Exception e) {
+            log.warn("Failed to create tick_journal partitions ahead: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void appendBatch(List<Tick> ticks) {
+        if (ticks == null || ticks.isEmpty()) {
+            return;
+        }
+
+        StringBuilder csv = new StringBuilder(ticks.size() * 64);
+        for (Tick t : ticks) {
+            csv.append(quote(t.symbol())).append(',')
+                    .append(t.timestamp()).append(',')
+                    .append(plain(t.lastPrice())).append(',')
+                    .append(t.volume()).append(',')
+                    .append(plain(t.bid())).append(',')
+                    .append(plain(t.ask())).append(',')
+                    .append(quote(t.brokerCode())).append('\n');
+        }
+
+        try (Connection conn = db.dataSource().getConnection()) {
+            ensurePartitions(conn, ticks);
+
+            CopyManager copy = conn.unwrap(PGConnection.class).getCopyAPI();
+            long rows = copy.copyIn(COPY_SQL, new StringReader(csv.toString()));
+
+            log.debug("Journaled {} ticks", rows);
+
+        } catch (Exception e) {
+            log.error("Failed to journal tick batch: {}", e.getMessage());
+            throw new RuntimeException("Failed to journal tick batch", e);
+        }
+    }
+
+    private void ensurePartitions(Connection conn, List<Tick> ticks) throws SQLException {
+        for (Tick t : ticks) {
+            LocalDate day = t.timestamp().atZone(ZoneOffset.UTC).toLocalDate();
+            // Keep the next day's partition ready before its first tick
+            ensurePartition(conn, day);
+            ensurePartition(conn, day.plusDays(1));
+        }
+    }
+
+    private void ensurePartition(Connection conn, LocalDate day) throws SQLException {
+        if (ensuredPartitions.contains(day)) {
+            return;
+        }
+        db.queryOne(conn, "tick_journal.ensurePartition", ENSURE_PARTITION_SQL,
+                ps -> ps.setObject(1, day), row -> day);
+        ensuredPartitions.add(day);
+    }
+
+    private static String plain(BigDecimal value) {
+        return value == null ? "" : value.toPlainString();
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "";
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
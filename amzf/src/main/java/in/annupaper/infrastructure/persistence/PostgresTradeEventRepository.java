@@ -7,13 +7,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import in.annupaper.domain.model.EventScope;
 import in.annupaper.domain.model.EventType;
 import in.annupaper.domain.model.TradeEvent;
+import in.annupaper.infrastructure.persistence.jdbc.Binder;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
-import java.sql.*;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -23,10 +24,12 @@ public final class PostgresTradeEventRepository implements TradeEventRepository
     private static final Logger log = LoggerFactory.getLogger(PostgresTradeEventRepository.class);
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
-    private final DataSource dataSource;
+    private static final RowMapper<TradeEvent> EVENT = PostgresTradeEventRepository::mapRow;
 
-    public PostgresTradeEventRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
+    private final Db db;
+
+    public PostgresTradeEventRepository(Db db) {
+        this.db = db;
     }
 
     @Override
@@ -39,36 +42,32 @@ public final class PostgresTradeEventRepository implements TradeEventRepository
                 RETURNING seq, created_at
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, e.type().name());
-            ps.setString(2, e.scope().name());
-            ps.setString(3, e.userId());
-            ps.setString(4, e.brokerId());
-            ps.setString(5, e.userBrokerId());
-            ps.setString(6, MAPPER.writeValueAsString(e.payload()));
-            ps.setString(7, e.signalId());
-            ps.setString(8, e.intentId());
-            ps.setString(9, e.tradeId());
-            ps.setString(10, e.orderId());
-            ps.setString(11, e.createdBy());
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    long seq = rs.getLong("seq");
-                    Instant createdAt = rs.getTimestamp("created_at").toInstant();
-                    return new TradeEvent(seq, e.type(), e.scope(), e.userId(), e.brokerId(), e.userBrokerId(),
-                            e.payload(), e.signalId(), e.intentId(), e.tradeId(), e.orderId(),
-                            createdAt, e.createdBy());
-                }
-            }
+        try {
+            String payloadJson = MAPPER.writeValueAsString(e.payload());
+
+            return db.queryOne("trade_events.append", sql, ps -> {
+                ps.setString(1, e.type().name());
+                ps.setString(2, e.scope().name());
+                ps.setString(3, e.userId());
+                ps.setString(4, e.brokerId());
+                ps.setString(5, e.userBrokerId());
+                ps.setString(6, payloadJson);
+                ps.setString(7, e.signalId());
+                ps.setString(8, e.intentId());
+                ps.setString(9, e.tradeId());
+                ps.setString(10, e.orderId());
+                ps.setString(11, e.createdBy());
+            }, row -> {
+                long seq = row.getLong("seq");
+                Instant createdAt = row.getTimestamp("created_at").toInstant();
+                return new TradeEvent(seq, e.type(), e.scope(), e.userId(), e.brokerId(), e.userBrokerId(),
+                        e.payload(), e.signalId(), e.intentId(), e.tradeId(), e.orderId(),
+                        createdAt, e.createdBy());
+            }).orElse(e);
         } catch (Exception ex) {
             log.error("Failed to append event: {}", ex.getMessage(), ex);
             throw new RuntimeException("Failed to append event", ex);
         }
-
-        return e;
     }
 
     @Override
@@ -82,7 +81,15 @@ public final class PostgresTradeEventRepository implements TradeEventRepository
                 LIMIT ?
                 """;
 
-        return queryEvents(sql, afterSeq, limit);
+        try {
+            return db.query("trade_events.listAfterSeq", sql, ps -> {
+                ps.setLong(1, afterSeq);
+                ps.setInt(2, limit);
+            }, EVENT);
+        } catch (Exception ex) {
+            log.error("Failed to list events: {}", ex.getMessage(), ex);
+            throw new RuntimeException("Failed to list events", ex);
+        }
     }
 
     @Override
@@ -97,14 +104,12 @@ public final class PostgresTradeEventRepository implements TradeEventRepository
                 LIMIT ?
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setLong(1, afterSeq);
-            ps.setString(2, userId);
-            ps.setInt(3, limit);
-
-            return executeQuery(ps);
+        try {
+            return db.query("trade_events.listAfterSeqForUser", sql, ps -> {
+                ps.setLong(1, afterSeq);
+                ps.setString(2, userId);
+                ps.setInt(3, limit);
+            }, EVENT);
         } catch (Exception ex) {
             log.error("Failed to list events for user: {}", ex.getMessage(), ex);
             throw new RuntimeException("Failed to list events", ex);
@@ -125,16 +130,14 @@ public final class PostgresTradeEventRepository implements TradeEventRepository
                 LIMIT ?
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setLong(1, afterSeq);
-            ps.setString(2, userId);
-            ps.setString(3, userId);
-            ps.setString(4, userBrokerId);
-            ps.setInt(5, limit);
-
-            return executeQuery(ps);
+        try {
+            return db.query("trade_events.listAfterSeqForUserBroker", sql, ps -> {
+                ps.setLong(1, afterSeq);
+                ps.setString(2, userId);
+                ps.setString(3, userId);
+                ps.setString(4, userBrokerId);
+                ps.setInt(5, limit);
+            }, EVENT);
         } catch (Exception ex) {
             log.error("Failed to list events for user-broker: {}", ex.getMessage(), ex);
             throw new RuntimeException("Failed to list events", ex);
@@ -145,60 +148,28 @@ public final class PostgresTradeEventRepository implements TradeEventRepository
     public long latestSeq() {
         String sql = "SELECT COALESCE(MAX(seq), 0) FROM trade_events";
 
-        try (Connection conn = dataSource.getConnection();
-                Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery(sql)) {
-
-            if (rs.next()) {
-                return rs.getLong(1);
-            }
-            return 0L;
+        try {
+            return db.queryOne("trade_events.latestSeq", sql, Binder.NONE, row -> row.getLong(1)).orElse(0L);
         } catch (Exception ex) {
             log.error("Failed to get latest seq: {}", ex.getMessage(), ex);
             return 0L;
         }
     }
 
-    private List<TradeEvent> queryEvents(String sql, long afterSeq, int limit) {
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setLong(1, afterSeq);
-            ps.setInt(2, limit);
-
-            return executeQuery(ps);
-        } catch (Exception ex) {
-            log.error("Failed to list events: {}", ex.getMessage(), ex);
-            throw new RuntimeException("Failed to list events", ex);
-        }
-    }
-
-    private List<TradeEvent> executeQuery(PreparedStatement ps) throws Exception {
-        List<TradeEvent> events = new ArrayList<>();
-
-        try (ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                events.add(mapRow(rs));
-            }
-        }
-
-        return events;
-    }
-
-    private TradeEvent mapRow(ResultSet rs) throws Exception {
-        long seq = rs.getLong("seq");
-        EventType type = EventType.valueOf(rs.getString("event_type"));
-        EventScope scope = EventScope.valueOf(rs.getString("scope"));
-        String userId = rs.getString("user_id");
-        String brokerId = rs.getString("broker_id");
-        String userBrokerId = rs.getString("user_broker_id");
-        JsonNode payload = MAPPER.readTree(rs.getString("payload"));
-        String signalId = rs.getString("signal_id");
-        String intentId = rs.getString("intent_id");
-        String tradeId = rs.getString("trade_id");
-        String orderId = rs.getString("order_id");
-        Instant ts = rs.getTimestamp("created_at").toInstant();
-        String createdBy = rs.getString("created_by");
+    private static TradeEvent mapRow(Row row) throws Exception {
+        long seq = row.getLong("seq");
+        EventType type = EventType.valueOf(row.getString("event_type"));
+        EventScope scope = EventScope.valueOf(row.getString("scope"));
+        String userId = row.getString("user_id");
+        String brokerId = row.getString("broker_id");
+        String userBrokerId = row.getString("user_broker_id");
+        JsonNode payload = MAPPER.readTree(row.getString("payload"));
+        String signalId = row.getString("signal_id");
+        String intentId = row.getString("intent_id");
+        String tradeId = row.getString("trade_id");
+        String orderId = row.getString("order_id");
+        Instant ts = row.getTimestamp("created_at").toInstant();
+        String createdBy = row.getString("created_by");
 
         return new TradeEvent(seq, type, scope, userId, brokerId, userBrokerId,
                 payload, signalId, intentId, tradeId, orderId, ts, createdBy);
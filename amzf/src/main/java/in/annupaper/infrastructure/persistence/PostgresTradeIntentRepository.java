@@ -2,20 +2,29 @@ package in.annupaper.infrastructure.persistence;
 
 import in.annupaper.application.port.output.*;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import in.annupaper.domain.model.IntentStatus;
+import in.annupaper.domain.model.SignalDelivery;
 import in.annupaper.domain.model.TradeIntent;
+import in.annupaper.infrastructure.persistence.jdbc.BatchBinder;
+import in.annupaper.infrastructure.persistence.jdbc.Binder;
+import in.annupaper.infrastructure.persistence.jdbc.Binds;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
-import java.math.BigDecimal;
 import java.sql.*;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * PostgreSQL implementation of TradeIntentRepository with immutable audit
@@ -23,13 +32,15 @@ import java.util.Optional;
  */
 public final class PostgresTradeIntentRepository implements TradeIntentRepository {
     private static final Logger log = LoggerFactory.getLogger(PostgresTradeIntentRepository.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
 
-    private final DataSource dataSource;
-    private final ObjectMapper objectMapper;
+    private static final RowMapper<TradeIntent> INTENT = PostgresTradeIntentRepository::mapRow;
+    private static final BatchBinder<TradeIntent> BIND_INTENT = PostgresTradeIntentRepository::bindInsert;
 
-    public PostgresTradeIntentRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
-        this.objectMapper = new ObjectMapper();
+    private final Db db;
+
+    public PostgresTradeIntentRepository(Db db) {
+        this.db = db;
     }
 
     @Override
@@ -40,19 +51,12 @@ public final class PostgresTradeIntentRepository implements TradeIntentRepositor
                 ORDER BY created_at DESC
                 """;
 
-        List<TradeIntent> intents = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                intents.add(mapRow(rs));
-            }
+        try {
+            return db.query("trade_intents.findAll", sql, Binder.NONE, INTENT);
         } catch (Exception e) {
             log.error("Failed to find all trade intents: {}", e.getMessage());
             throw new RuntimeException("Failed to find trade intents", e);
         }
-        return intents;
     }
 
     @Override
@@ -62,20 +66,12 @@ public final class PostgresTradeIntentRepository implements TradeIntentRepositor
                 WHERE intent_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, intentId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapRow(rs));
-                }
-            }
+        try {
+            return db.queryOne("trade_intents.findById", sql, ps -> ps.setString(1, intentId), INTENT);
         } catch (Exception e) {
             log.error("Failed to find trade intent {}: {}", intentId, e.getMessage());
             throw new RuntimeException("Failed to find trade intent", e);
         }
-        return Optional.empty();
     }
 
     @Override
@@ -86,21 +82,12 @@ public final class PostgresTradeIntentRepository implements TradeIntentRepositor
                 ORDER BY created_at DESC
                 """;
 
-        List<TradeIntent> intents = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, signalId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    intents.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("trade_intents.findBySignalId", sql, ps -> ps.setString(1, signalId), INTENT);
         } catch (Exception e) {
             log.error("Failed to find trade intents by signal {}: {}", signalId, e.getMessage());
             throw new RuntimeException("Failed to find trade intents", e);
         }
-        return intents;
     }
 
     @Override
@@ -111,21 +98,12 @@ public final class PostgresTradeIntentRepository implements TradeIntentRepositor
                 ORDER BY created_at DESC
                 """;
 
-        List<TradeIntent> intents = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, userId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    intents.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("trade_intents.findByUserId", sql, ps -> ps.setString(1, userId), INTENT);
         } catch (Exception e) {
             log.error("Failed to find trade intents by user {}: {}", userId, e.getMessage());
             throw new RuntimeException("Failed to find trade intents", e);
         }
-        return intents;
     }
 
     @Override
@@ -136,21 +114,12 @@ public final class PostgresTradeIntentRepository implements TradeIntentRepositor
                 ORDER BY created_at DESC
                 """;
 
-        List<TradeIntent> intents = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, userBrokerId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    intents.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("trade_intents.findByUserBrokerId", sql, ps -> ps.setString(1, userBrokerId), INTENT);
         } catch (Exception e) {
             log.error("Failed to find trade intents by user-broker {}: {}", userBrokerId, e.getMessage());
             throw new RuntimeException("Failed to find trade intents", e);
         }
-        return intents;
     }
 
     @Override
@@ -161,83 +130,158 @@ public final class PostgresTradeIntentRepository implements TradeIntentRepositor
                 ORDER BY created_at DESC
                 """;
 
-        List<TradeIntent> intents = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, status.name());
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    intents.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("trade_intents.findByStatus", sql, ps -> ps.setString(1, status.name()), INTENT);
         } catch (Exception e) {
             log.error("Failed to find trade intents by status {}: {}", status, e.getMessage());
             throw new RuntimeException("Failed to find trade intents", e);
         }
-        return intents;
     }
 
+    private static final String INSERT_SQL = """
+            INSERT INTO trade_intents (
+                intent_id, signal_id, user_id, broker_id, user_broker_id,
+                validation_passed, validation_errors,
+                calculated_qty, calculated_value, order_type, limit_price, product_type,
+                log_impact, portfolio_exposure_after,
+                status, order_id, trade_id,
+                created_at, validated_at, executed_at,
+                error_code, error_message, version
+            ) VALUES (
+                ?, ?, ?, ?, ?,
+                ?, ?::jsonb,
+                ?, ?, ?, ?, ?,
+                ?, ?,
+                ?, ?, ?,
+                ?, ?, ?,
+                ?, ?, 1
+            )
+            """;
+
+    private static final String INSERT_VERSION_SQL = """
+            INSERT INTO trade_intents (
+                intent_id, signal_id, user_id, broker_id, user_broker_id,
+                validation_passed, validation_errors,
+                calculated_qty, calculated_value, order_type, limit_price, product_type,
+                log_impact, portfolio_exposure_after,
+                status, order_id, trade_id,
+                created_at, validated_at, executed_at,
+                error_code, error_message, version
+            ) VALUES (
+                ?, ?, ?, ?, ?,
+                ?, ?::jsonb,
+                ?, ?, ?, ?, ?,
+                ?, ?,
+                ?, ?, ?,
+                ?, ?, ?,
+                ?, ?, ?
+            )
+            """;
+
     @Override
     public void insert(TradeIntent intent) {
-        String sql = """
-                INSERT INTO trade_intents (
-                    intent_id, signal_id, user_id, broker_id, user_broker_id,
-                    validation_passed, validation_errors,
-                    calculated_qty, calculated_value, order_type, limit_price, product_type,
-                    log_impact, portfolio_exposure_after,
-                    status, order_id, trade_id,
-                    created_at, validated_at, executed_at,
-                    error_code, error_message, version
-                ) VALUES (
-                    ?, ?, ?, ?, ?,
-                    ?, ?::jsonb,
-                    ?, ?, ?, ?, ?,
-                    ?, ?,
-                    ?, ?, ?,
-                    ?, ?, ?,
-                    ?, ?, 1
-                )
-                """;
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, intent.intentId());
-            ps.setString(2, intent.signalId());
-            ps.setString(3, intent.userId());
-            ps.setString(4, intent.brokerId());
-            ps.setString(5, intent.userBrokerId());
-
-            ps.setBoolean(6, intent.validationPassed());
-            ps.setString(7, objectMapper.writeValueAsString(intent.validationErrors()));
+        try {
+            db.update("trade_intents.insert", INSERT_SQL, ps -> bindInsert(ps, intent));
+            log.info("Trade intent inserted: {}", intent.intentId());
 
-            setIntOrNull(ps, 8, intent.calculatedQty());
-            setBigDecimalOrNull(ps, 9, intent.calculatedValue());
-            ps.setString(10, intent.orderType());
-            setBigDecimalOrNull(ps, 11, intent.limitPrice());
-            ps.setString(12, intent.productType());
+        } catch (Exception e) {
+            log.error("Failed to insert trade intent: {}", e.getMessage());
+            throw new RuntimeException("Failed to insert trade intent", e);
+        }
+    }
 
-            setBigDecimalOrNull(ps, 13, intent.logImpact());
-            setBigDecimalOrNull(ps, 14, intent.portfolioExposureAfter());
+    @Override
+    public Set<String> insertAndConsume(Map<SignalDelivery, TradeIntent> intentsByDelivery) {
+        if (intentsByDelivery.isEmpty()) {
+            return new HashSet<>();
+        }
 
-            ps.setString(15, intent.status().name());
-            ps.setString(16, intent.orderId());
-            ps.setString(17, intent.tradeId());
+        // Bulk form of consume_delivery(), held to the claim's version
+        String consumeSql = """
+                UPDATE signal_deliveries d
+                SET status = 'CONSUMED', intent_id = c.intent_id, consumed_at = NOW(), updated_at = NOW()
+                FROM unnest(?::varchar[], ?::varchar[], ?::int[]) AS c(delivery_id, intent_id, version)
+                WHERE d.delivery_id = c.delivery_id
+                  AND d.version = c.version
+                  AND d.status = 'DELIVERED'
+                  AND d.deleted_at IS NULL
+                RETURNING d.delivery_id
+                """;
 
-            ps.setTimestamp(18, Timestamp.from(intent.createdAt()));
-            setTimestampOrNull(ps, 19, intent.validatedAt());
-            setTimestampOrNull(ps, 20, intent.executedAt());
+        List<String> deliveryIds = new ArrayList<>(intentsByDelivery.size());
+        List<String> intentIds = new ArrayList<>(intentsByDelivery.size());
+        List<Integer> versions = new ArrayList<>(intentsByDelivery.size());
+        intentsByDelivery.forEach((delivery, intent) -> {
+            deliveryIds.add(delivery.deliveryId());
+            intentIds.add(intent.intentId());
+            versions.add(delivery.version());
+        });
+
+        try {
+            Set<String> consumed = db.inTransaction(conn -> {
+                Set<String> ids = new HashSet<>(db.query(conn, "signal_deliveries.consumeAll", consumeSql, ps -> {
+                    Binds.setVarcharArray(ps, 1, deliveryIds);
+                    Binds.setVarcharArray(ps, 2, intentIds);
+                    Binds.setIntArray(ps, 3, versions);
+                }, row -> row.getString(1)));
+
+                List<TradeIntent> intents = new ArrayList<>(ids.size());
+                intentsByDelivery.forEach((delivery, intent) -> {
+                    if (ids.contains(delivery.deliveryId())) {
+                        intents.add(intent);
+                    }
+                });
+                db.batch(conn, "trade_intents.insertAll", INSERT_SQL, intents, BIND_INTENT);
+                return ids;
+            });
+            log.info("✅ Deliveries consumed, trade intents inserted: {}/{}", consumed.size(), deliveryIds.size());
+            return consumed;
 
-            ps.setString(21, intent.errorCode());
-            ps.setString(22, intent.errorMessage());
+        } catch (Exception e) {
+            log.error("Failed to insert {} trade intents: {}", intentsByDelivery.size(), e.getMessage());
+            throw new RuntimeException("Failed to insert trade intents", e);
+        }
+    }
 
-            ps.executeUpdate();
-            log.info("Trade intent inserted: {}", intent.intentId());
+    /**
+     * Bind parameters 1-22 of the trade_intents insert (everything but version).
+     */
+    private static void bindInsert(PreparedStatement ps, TradeIntent intent) throws SQLException {
+        ps.setString(1, intent.intentId());
+        ps.setString(2, intent.signalId());
+        ps.setString(3, intent.userId());
+        ps.setString(4, intent.brokerId());
+        ps.setString(5, intent.userBrokerId());
+
+        ps.setBoolean(6, intent.validationPassed());
+        ps.setString(7, validationErrorsJson(intent));
+
+        Binds.setIntOrNull(ps, 8, intent.calculatedQty());
+        Binds.setBigDecimalOrNull(ps, 9, intent.calculatedValue());
+        ps.setString(10, intent.orderType());
+        Binds.setBigDecimalOrNull(ps, 11, intent.limitPrice());
+        ps.setString(12, intent.productType());
+
+        Binds.setBigDecimalOrNull(ps, 13, intent.logImpact());
+        Binds.setBigDecimalOrNull(ps, 14, intent.portfolioExposureAfter());
+
+        ps.setString(15, intent.status().name());
+        ps.setString(16, intent.orderId());
+        ps.setString(17, intent.tradeId());
+
+        ps.setTimestamp(18, Timestamp.from(intent.createdAt()));
+        Binds.setTimestampOrNull(ps, 19, intent.validatedAt());
+        Binds.setTimestampOrNull(ps, 20, intent.executedAt());
+
+        ps.setString(21, intent.errorCode());
+        ps.setString(22, intent.errorMessage());
+    }
 
-        } catch (Exception e) {
-            log.error("Failed to insert trade intent: {}", e.getMessage());
-            throw new RuntimeException("Failed to insert trade intent", e);
+    private static String validationErrorsJson(TradeIntent intent) throws SQLException {
+        try {
+            return MAPPER.writeValueAsString(intent.validationErrors());
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Failed to serialize validation errors: " + e.getMessage(), e);
         }
     }
 
@@ -256,87 +300,29 @@ public final class PostgresTradeIntentRepository implements TradeIntentRepositor
                 WHERE intent_id = ? AND version = ?
                 """;
 
-        String insertSql = """
-                INSERT INTO trade_intents (
-                    intent_id, signal_id, user_id, broker_id, user_broker_id,
-                    validation_passed, validation_errors,
-                    calculated_qty, calculated_value, order_type, limit_price, product_type,
-                    log_impact, portfolio_exposure_after,
-                    status, order_id, trade_id,
-                    created_at, validated_at, executed_at,
-                    error_code, error_message, version
-                ) VALUES (
-                    ?, ?, ?, ?, ?,
-                    ?, ?::jsonb,
-                    ?, ?, ?, ?, ?,
-                    ?, ?,
-                    ?, ?, ?,
-                    ?, ?, ?,
-                    ?, ?, ?
-                )
-                """;
-
-        try (Connection conn = dataSource.getConnection()) {
-            conn.setAutoCommit(false);
-
-            // Step 1: Get current version
-            int currentVersion;
-            try (PreparedStatement ps = conn.prepareStatement(queryVersionSql)) {
-                ps.setString(1, intent.intentId());
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        throw new RuntimeException("Trade intent not found: " + intent.intentId());
-                    }
-                    currentVersion = rs.getInt("version");
-                }
-            }
-
-            // Step 2: Soft delete current version
-            try (PreparedStatement ps = conn.prepareStatement(softDeleteSql)) {
-                ps.setString(1, intent.intentId());
-                ps.setInt(2, currentVersion);
-                int updated = ps.executeUpdate();
+        try {
+            int currentVersion = db.inTransaction(conn -> {
+                // Step 1: Get current version
+                int version = db.queryOne(conn, "trade_intents.currentVersion", queryVersionSql,
+                        ps -> ps.setString(1, intent.intentId()), row -> row.getInt("version"))
+                        .orElseThrow(() -> new RuntimeException("Trade intent not found: " + intent.intentId()));
+
+                // Step 2: Soft delete current version
+                int updated = db.update(conn, "trade_intents.softDelete", softDeleteSql, ps -> {
+                    ps.setString(1, intent.intentId());
+                    ps.setInt(2, version);
+                });
                 if (updated == 0) {
                     throw new RuntimeException("Failed to soft delete trade intent: " + intent.intentId());
                 }
-            }
-
-            // Step 3: Insert new version
-            try (PreparedStatement ps = conn.prepareStatement(insertSql)) {
-                ps.setString(1, intent.intentId());
-                ps.setString(2, intent.signalId());
-                ps.setString(3, intent.userId());
-                ps.setString(4, intent.brokerId());
-                ps.setString(5, intent.userBrokerId());
-
-                ps.setBoolean(6, intent.validationPassed());
-                ps.setString(7, objectMapper.writeValueAsString(intent.validationErrors()));
-
-                setIntOrNull(ps, 8, intent.calculatedQty());
-                setBigDecimalOrNull(ps, 9, intent.calculatedValue());
-                ps.setString(10, intent.orderType());
-                setBigDecimalOrNull(ps, 11, intent.limitPrice());
-                ps.setString(12, intent.productType());
-
-                setBigDecimalOrNull(ps, 13, intent.logImpact());
-                setBigDecimalOrNull(ps, 14, intent.portfolioExposureAfter());
 
-                ps.setString(15, intent.status().name());
-                ps.setString(16, intent.orderId());
-                ps.setString(17, intent.tradeId());
-
-                ps.setTimestamp(18, Timestamp.from(intent.createdAt()));
-                setTimestampOrNull(ps, 19, intent.validatedAt());
-                setTimestampOrNull(ps, 20, intent.executedAt());
-
-                ps.setString(21, intent.errorCode());
-                ps.setString(22, intent.errorMessage());
-                ps.setInt(23, currentVersion + 1);
-
-                ps.executeUpdate();
-            }
-
-            conn.commit();
+                // Step 3: Insert new version
+                db.update(conn, "trade_intents.insertVersion", INSERT_VERSION_SQL, ps -> {
+                    bindInsert(ps, intent);
+                    ps.setInt(23, version + 1);
+                });
+                return version;
+            });
             log.info("Trade intent updated: {} version {} → {}",
                     intent.intentId(), currentVersion, currentVersion + 1);
 
@@ -361,32 +347,23 @@ public final class PostgresTradeIntentRepository implements TradeIntentRepositor
                 WHERE intent_id = ? AND version = ?
                 """;
 
-        try (Connection conn = dataSource.getConnection()) {
-            conn.setAutoCommit(false);
-
-            // Get current version
-            int currentVersion;
-            try (PreparedStatement ps = conn.prepareStatement(queryVersionSql)) {
-                ps.setString(1, intentId);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        throw new RuntimeException("Trade intent not found: " + intentId);
-                    }
-                    currentVersion = rs.getInt("version");
-                }
-            }
-
-            // Soft delete
-            try (PreparedStatement ps = conn.prepareStatement(softDeleteSql)) {
-                ps.setString(1, intentId);
-                ps.setInt(2, currentVersion);
-                int deleted = ps.executeUpdate();
+        try {
+            int currentVersion = db.inTransaction(conn -> {
+                // Get current version
+                int version = db.queryOne(conn, "trade_intents.currentVersion", queryVersionSql,
+                        ps -> ps.setString(1, intentId), row -> row.getInt("version"))
+                        .orElseThrow(() -> new RuntimeException("Trade intent not found: " + intentId));
+
+                // Soft delete
+                int deleted = db.update(conn, "trade_intents.softDelete", softDeleteSql, ps -> {
+                    ps.setString(1, intentId);
+                    ps.setInt(2, version);
+                });
                 if (deleted == 0) {
                     throw new RuntimeException("Failed to delete trade intent: " + intentId);
                 }
-            }
-
-            conn.commit();
+                return version;
+            });
             log.info("Trade intent soft-deleted: {} version {}", intentId, currentVersion);
 
         } catch (Exception e) {
@@ -403,21 +380,12 @@ public final class PostgresTradeIntentRepository implements TradeIntentRepositor
                 ORDER BY version ASC
                 """;
 
-        List<TradeIntent> intents = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, intentId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    intents.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("trade_intents.findAllVersions", sql, ps -> ps.setString(1, intentId), INTENT);
         } catch (Exception e) {
             log.error("Failed to find trade intent versions {}: {}", intentId, e.getMessage());
             throw new RuntimeException("Failed to find trade intent versions", e);
         }
-        return intents;
     }
 
     @Override
@@ -427,87 +395,52 @@ public final class PostgresTradeIntentRepository implements TradeIntentRepositor
                 WHERE intent_id = ? AND version = ?
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, intentId);
-            ps.setInt(2, version);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapRow(rs));
-                }
-            }
+        try {
+            return db.queryOne("trade_intents.findByIdAndVersion", sql, ps -> {
+                ps.setString(1, intentId);
+                ps.setInt(2, version);
+            }, INTENT);
         } catch (Exception e) {
             log.error("Failed to find trade intent {} version {}: {}", intentId, version, e.getMessage());
             throw new RuntimeException("Failed to find trade intent version", e);
         }
-        return Optional.empty();
     }
 
-    private TradeIntent mapRow(ResultSet rs) throws Exception {
-        Timestamp deletedTs = rs.getTimestamp("deleted_at");
-        Instant deletedAt = deletedTs != null ? deletedTs.toInstant() : null;
-
-        Timestamp validatedTs = rs.getTimestamp("validated_at");
-        Instant validatedAt = validatedTs != null ? validatedTs.toInstant() : null;
-
-        Timestamp executedTs = rs.getTimestamp("executed_at");
-        Instant executedAt = executedTs != null ? executedTs.toInstant() : null;
+    private static TradeIntent mapRow(Row row) throws Exception {
+        Instant deletedAt = row.getInstant("deleted_at");
+        Instant validatedAt = row.getInstant("validated_at");
+        Instant executedAt = row.getInstant("executed_at");
 
-        String errorsJson = rs.getString("validation_errors");
+        String errorsJson = row.getString("validation_errors");
         List<TradeIntent.ValidationError> validationErrors = errorsJson != null
-                ? objectMapper.readValue(errorsJson, new TypeReference<List<TradeIntent.ValidationError>>() {
+                ? MAPPER.readValue(errorsJson, new TypeReference<List<TradeIntent.ValidationError>>() {
                 })
                 : List.of();
 
         return new TradeIntent(
-                rs.getString("intent_id"),
-                rs.getString("signal_id"),
-                rs.getString("user_id"),
-                rs.getString("broker_id"),
-                rs.getString("user_broker_id"),
-                rs.getBoolean("validation_passed"),
+                row.getString("intent_id"),
+                row.getString("signal_id"),
+                row.getString("user_id"),
+                row.getString("broker_id"),
+                row.getString("user_broker_id"),
+                row.getBoolean("validation_passed"),
                 validationErrors,
-                (Integer) rs.getObject("calculated_qty"),
-                rs.getBigDecimal("calculated_value"),
-                rs.getString("order_type"),
-                rs.getBigDecimal("limit_price"),
-                rs.getString("product_type"),
-                rs.getBigDecimal("log_impact"),
-                rs.getBigDecimal("portfolio_exposure_after"),
-                IntentStatus.valueOf(rs.getString("status")),
-                rs.getString("order_id"),
-                rs.getString("trade_id"),
-                rs.getTimestamp("created_at").toInstant(),
+                (Integer) row.getObject("calculated_qty"),
+                row.getBigDecimal("calculated_value"),
+                row.getString("order_type"),
+                row.getBigDecimal("limit_price"),
+                row.getString("product_type"),
+                row.getBigDecimal("log_impact"),
+                row.getBigDecimal("portfolio_exposure_after"),
+                IntentStatus.valueOf(row.getString("status")),
+                row.getString("order_id"),
+                row.getString("trade_id"),
+                row.getTimestamp("created_at").toInstant(),
                 validatedAt,
                 executedAt,
-                rs.getString("error_code"),
-                rs.getString("error_message"),
+                row.getString("error_code"),
+                row.getString("error_message"),
                 deletedAt,
-                rs.getInt("version"));
-    }
-
-    private void setIntOrNull(PreparedStatement ps, int index, Integer value) throws SQLException {
-        if (value != null) {
-            ps.setInt(index, value);
-        } else {
-            ps.setNull(index, Types.INTEGER);
-        }
-    }
-
-    private void setBigDecimalOrNull(PreparedStatement ps, int index, BigDecimal value) throws SQLException {
-        if (value != null) {
-            ps.setBigDecimal(index, value);
-        } else {
-            ps.setNull(index, Types.NUMERIC);
-        }
-    }
-
-    private void setTimestampOrNull(PreparedStatement ps, int index, Instant value) throws SQLException {
-        if (value != null) {
-            ps.setTimestamp(index, Timestamp.from(value));
-        } else {
-            ps.setNull(index, Types.TIMESTAMP);
-        }
+                row.getInt("version"));
     }
 }
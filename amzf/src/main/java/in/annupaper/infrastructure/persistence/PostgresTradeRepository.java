@@ -3,14 +3,19 @@ package in.annupaper.infrastructure.persistence;
 import in.annupaper.application.port.output.*;
 
 import in.annupaper.domain.model.Trade;
+import in.annupaper.infrastructure.persistence.jdbc.Binder;
+import in.annupaper.infrastructure.persistence.jdbc.Binds;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.time.Instant;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,859 +23,643 @@ import java.util.Optional;
 
 /**
  * PostgreSQL implementation of TradeRepository with immutable audit trail.
+ *
+ * Storage is split (V018):
+ * - trades_current: one row per trade, updated in place with an optimistic
+ *   version check; every read goes here.
+ * - trades_history: append-only snapshot per version, written in batches by
+ *   {@link TradeHistoryWriter}.
+ * Trailing-stop fields are updated in place without a new version.
+ *
+ * Statements run through {@link Db} (prepared once per SQL constant, timed
+ * per query name).
  */
 public final class PostgresTradeRepository implements TradeRepository {
     private static final Logger log = LoggerFactory.getLogger(PostgresTradeRepository.class);
 
-    private final DataSource dataSource;
+    // Every trade column except version, in bind order (see bindColumns)
+    static final String COLUMNS = """
+        trade_id, portfolio_id, user_id, broker_id, user_broker_id,
+        signal_id, intent_id, symbol, direction, trade_number,
+        entry_price, entry_qty, entry_value, entry_timestamp, product_type,
+        entry_htf_zone, entry_itf_zone, entry_ltf_zone,
+        entry_confluence_type, entry_confluence_score,
+        entry_htf_low, entry_htf_high, entry_itf_low, entry_itf_high,
+        entry_ltf_low, entry_ltf_high, entry_effective_floor, entry_effective_ceiling,
+        log_loss_at_floor, max_log_loss_allowed,
+        exit_min_profit_price, exit_target_price, exit_stretch_price, exit_primary_price,
+        status, current_price, current_log_return, unrealized_pnl,
+        trailing_active, trailing_highest_price, trailing_stop_price,
+        exit_price, exit_timestamp, exit_trigger, exit_order_id,
+        realized_pnl, realized_log_return, holding_days,
+        broker_order_id, broker_trade_id, client_order_id, last_broker_update_at,
+        created_at, updated_at, deleted_at""";
+
+    static final String PLACEHOLDERS = String.join(", ", Collections.nCopies(55, "?"));
+
+    // Parameter indexes within COLUMNS that upsert overrides on insert
+    private static final int CLIENT_ORDER_ID_PARAM = 51;
+    private static final int LAST_BROKER_UPDATE_AT_PARAM = 52;
+    private static final int CREATED_AT_PARAM = 53;
+    private static final int UPDATED_AT_PARAM = 54;
+
+    private static final RowMapper<Trade> TRADE = PostgresTradeRepository::mapRow;
+
+    private static final String FIND_ALL_SQL = """
+        SELECT * FROM trades_current
+        ORDER BY entry_timestamp DESC
+        """;
+    private static final String FIND_BY_ID_SQL = """
+        SELECT * FROM trades_current
+        WHERE trade_id = ?
+        """;
+    private static final String FIND_BY_PORTFOLIO_SQL = """
+        SELECT * FROM trades_current
+        WHERE portfolio_id = ?
+        ORDER BY entry_timestamp DESC
+        """;
+    private static final String FIND_BY_USER_SQL = """
+        SELECT * FROM trades_current
+        WHERE user_id = ?
+        ORDER BY entry_timestamp DESC
+        """;
+    private static final String FIND_BY_SYMBOL_SQL = """
+        SELECT * FROM trades_current
+        WHERE symbol = ?
+        ORDER BY entry_timestamp DESC
+        """;
+    private static final String FIND_BY_USER_AND_SYMBOL_SQL = """
+        SELECT * FROM trades_current
+        WHERE user_id = ? AND symbol = ?
+        ORDER BY entry_timestamp DESC
+        """;
+    private static final String FIND_BY_STATUS_SQL = """
+        SELECT * FROM trades_current
+        WHERE status = ?
+        ORDER BY entry_timestamp DESC
+        """;
+    private static final String FIND_BY_SIGNAL_SQL = """
+        SELECT * FROM trades_current
+        WHERE signal_id = ?
+        ORDER BY entry_timestamp DESC
+        """;
+    private static final String FIND_OPEN_BY_PORTFOLIOS_SQL = """
+        SELECT * FROM trades_current
+        WHERE portfolio_id = ANY(?) AND status = 'OPEN'
+        ORDER BY entry_timestamp DESC
+        """;
+    private static final String FIND_OPEN_SQL = """
+        SELECT * FROM trades_current
+        WHERE status = 'OPEN'
+        ORDER BY entry_timestamp DESC
+        """;
+    private static final String FIND_OPEN_BY_USER_SQL = """
+        SELECT * FROM trades_current
+        WHERE user_id = ? AND status = 'OPEN'
+        ORDER BY entry_timestamp DESC
+        """;
+    private static final String FIND_BY_INTENT_SQL = """
+        SELECT * FROM trades_current
+        WHERE intent_id = ?
+        """;
+    private static final String FIND_BY_BROKER_ORDER_SQL = """
+        SELECT * FROM trades_current
+        WHERE broker_order_id = ?
+        """;
+
+    private static final String FIND_VERSIONS_SQL = """
+        SELECT * FROM trades_history
+        WHERE trade_id = ?
+        ORDER BY version ASC
+        """;
+    private static final String FIND_VERSION_SQL = """
+        SELECT * FROM trades_history
+        WHERE trade_id = ? AND version = ?
+        """;
+
+    private static final String INSERT_SQL = """
+        INSERT INTO trades_current (%s, version)
+        VALUES (%s, 1)
+        RETURNING *
+        """.formatted(COLUMNS, PLACEHOLDERS);
+
+    // In-place update if trade.version() is still current; the new version
+    // is snapshotted to trades_history
+    private static final String UPDATE_SQL = """
+        UPDATE trades_current
+        SET (%s) = (%s),
+            version = version + 1
+        WHERE trade_id = ? AND version = ?
+        RETURNING *
+        """.formatted(COLUMNS, PLACEHOLDERS);
+
+    // High-frequency field: updated in place, no new version or snapshot
+    private static final String UPDATE_TRAILING_STOP_SQL = """
+        UPDATE trades_current
+        SET trailing_active = ?,
+            trailing_highest_price = ?,
+            trailing_stop_price = ?,
+            updated_at = NOW()
+        WHERE trade_id = ? AND status = 'OPEN'
+        """;
+
+    // Final snapshot (deleted_at set) goes to trades_history, the row
+    // leaves trades_current
+    private static final String MARK_DELETED_SQL = """
+        UPDATE trades_current
+        SET deleted_at = NOW(),
+            updated_at = NOW(),
+            version = version + 1
+        WHERE trade_id = ?
+        RETURNING *
+        """;
+    private static final String DELETE_SQL = """
+        DELETE FROM trades_current
+        WHERE trade_id = ?
+        """;
+
+    // ✅ P0-B: Idempotent upsert using intent_id as unique key
+    // If intent_id exists, update; otherwise insert
+    private static final String UPSERT_SQL = """
+        INSERT INTO trades_current (%s, version)
+        VALUES (%s, 1)
+        ON CONFLICT (intent_id) DO UPDATE SET
+            broker_order_id = EXCLUDED.broker_order_id,
+            client_order_id = EXCLUDED.client_order_id,
+            filled_qty = COALESCE(EXCLUDED.entry_qty, trades_current.entry_qty),
+            status = EXCLUDED.status,
+            current_price = COALESCE(EXCLUDED.current_price, trades_current.current_price),
+            current_log_return = COALESCE(EXCLUDED.current_log_return, trades_current.current_log_return),
+            unrealized_pnl = COALESCE(EXCLUDED.unrealized_pnl, trades_current.unrealized_pnl),
+            trailing_active = EXCLUDED.trailing_active,
+            trailing_highest_price = COALESCE(EXCLUDED.trailing_highest_price, trades_current.trailing_highest_price),
+            trailing_stop_price = COALESCE(EXCLUDED.trailing_stop_price, trades_current.trailing_stop_price),
+            exit_price = COALESCE(EXCLUDED.exit_price, trades_current.exit_price),
+            exit_timestamp = COALESCE(EXCLUDED.exit_timestamp, trades_current.exit_timestamp),
+            exit_trigger = COALESCE(EXCLUDED.exit_trigger, trades_current.exit_trigger),
+            exit_order_id = COALESCE(EXCLUDED.exit_order_id, trades_current.exit_order_id),
+            realized_pnl = COALESCE(EXCLUDED.realized_pnl, trades_current.realized_pnl),
+            realized_log_return = COALESCE(EXCLUDED.realized_log_return, trades_current.realized_log_return),
+            holding_days = COALESCE(EXCLUDED.holding_days, trades_current.holding_days),
+            broker_trade_id = COALESCE(EXCLUDED.broker_trade_id, trades_current.broker_trade_id),
+            last_broker_update_at = NOW(),
+            updated_at = NOW(),
+            version = trades_current.version + 1
+        RETURNING *
+        """.formatted(COLUMNS, PLACEHOLDERS);
+
+    private static final String MARK_REJECTED_SQL = """
+        UPDATE trades_current
+        SET status = 'REJECTED',
+            exit_trigger = ?,
+            updated_at = NOW(),
+            version = version + 1
+        WHERE intent_id = ?
+          AND status = 'CREATED'
+        RETURNING *
+        """;
+
+    private static final String EXIT_ORDER_PLACED_SQL = """
+        UPDATE trades_current
+        SET exit_order_id = ?,
+            status = 'EXITING',
+            updated_at = NOW(),
+            version = version + 1
+        WHERE trade_id = ?
+        RETURNING *
+        """;
+
+    private static final String COUNT_OPEN_SQL = """
+        SELECT COUNT(*)
+        FROM trades_current
+        WHERE status = 'OPEN'
+        """;
+
+    private static final String COUNT_CLOSED_TODAY_SQL = """
+        SELECT COUNT(*)
+        FROM trades_current
+        WHERE status = 'CLOSED'
+          AND exit_timestamp >= CURRENT_DATE
+        """;
+
+    private static final String HEALTH_METRICS_SQL = """
+        SELECT
+            COUNT(*) as total_open_trades,
+            SUM(CASE WHEN direction = 'BUY' THEN entry_qty ELSE 0 END) as long_positions,
+            SUM(CASE WHEN direction = 'SELL' THEN entry_qty ELSE 0 END) as short_positions,
+            SUM(entry_qty * entry_price) as total_exposure_value,
+            AVG(EXTRACT(EPOCH FROM (NOW() - entry_timestamp)) / 3600) as avg_holding_hours
+        FROM trades_current
+        WHERE status = 'OPEN'
+        """;
+
+    private static final String DAILY_PERFORMANCE_SQL = """
+        SELECT
+            COUNT(*) as trades_closed,
+            COUNT(CASE WHEN realized_pnl > 0 THEN 1 END) as winning_trades,
+            COUNT(CASE WHEN realized_pnl < 0 THEN 1 END) as losing_trades,
+            ROUND(100.0 * COUNT(CASE WHEN realized_pnl > 0 THEN 1 END) / NULLIF(COUNT(*), 0), 2) as win_rate_percent,
+            SUM(realized_pnl) as total_pnl,
+            AVG(realized_pnl) as avg_pnl_per_trade,
+            MAX(realized_pnl) as best_trade,
+            MIN(realized_pnl) as worst_trade
+        FROM trades_current
+        WHERE status = 'CLOSED'
+          AND exit_timestamp >= CURRENT_DATE
+        """;
+
+    private final Db db;
+    private final TradeHistoryWriter historyWriter;
 
-    public PostgresTradeRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
+    /**
+     * History rows are written synchronously (no write-behind).
+     */
+    public PostgresTradeRepository(Db db) {
+        this(db, new TradeHistoryWriter(db, 1, 1, 0));
+    }
+
+    public PostgresTradeRepository(Db db, TradeHistoryWriter historyWriter) {
+        this.db = db;
+        this.historyWriter = historyWriter;
     }
 
     @Override
     public List<Trade> findAll() {
-        String sql = """
-            SELECT * FROM trades
-            WHERE deleted_at IS NULL
-            ORDER BY entry_timestamp DESC
-            """;
-
-        List<Trade> trades = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                trades.add(mapRow(rs));
-            }
+        try {
+            return db.query("trades.findAll", FIND_ALL_SQL, Binder.NONE, TRADE);
         } catch (Exception e) {
             log.error("Failed to find all trades: {}", e.getMessage());
             throw new RuntimeException("Failed to find trades", e);
         }
-        return trades;
     }
 
     @Override
     public Optional<Trade> findById(String tradeId) {
-        String sql = """
-            SELECT * FROM trades
-            WHERE trade_id = ? AND deleted_at IS NULL
-            """;
-
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, tradeId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapRow(rs));
-                }
-            }
+        try {
+            return db.queryOne("trades.findById", FIND_BY_ID_SQL, ps -> ps.setString(1, tradeId), TRADE);
         } catch (Exception e) {
             log.error("Failed to find trade {}: {}", tradeId, e.getMessage());
             throw new RuntimeException("Failed to find trade", e);
         }
-        return Optional.empty();
     }
 
     @Override
     public List<Trade> findByPortfolioId(String portfolioId) {
-        String sql = """
-            SELECT * FROM trades
-            WHERE portfolio_id = ? AND deleted_at IS NULL
-            ORDER BY entry_timestamp DESC
-            """;
-
-        List<Trade> trades = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, portfolioId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    trades.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("trades.findByPortfolioId", FIND_BY_PORTFOLIO_SQL,
+                    ps -> ps.setString(1, portfolioId), TRADE);
         } catch (Exception e) {
             log.error("Failed to find trades by portfolio {}: {}", portfolioId, e.getMessage());
             throw new RuntimeException("Failed to find trades", e);
         }
-        return trades;
     }
 
     @Override
     public List<Trade> findByUserId(String userId) {
-        String sql = """
-            SELECT * FROM trades
-            WHERE user_id = ? AND deleted_at IS NULL
-            ORDER BY entry_timestamp DESC
-            """;
-
-        List<Trade> trades = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, userId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    trades.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("trades.findByUserId", FIND_BY_USER_SQL, ps -> ps.setString(1, userId), TRADE);
         } catch (Exception e) {
             log.error("Failed to find trades by user {}: {}", userId, e.getMessage());
             throw new RuntimeException("Failed to find trades", e);
         }
-        return trades;
     }
 
     @Override
     public List<Trade> findBySymbol(String symbol) {
-        String sql = """
-            SELECT * FROM trades
-            WHERE symbol = ? AND deleted_at IS NULL
-            ORDER BY entry_timestamp DESC
-            """;
-
-        List<Trade> trades = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, symbol);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    trades.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("trades.findBySymbol", FIND_BY_SYMBOL_SQL, ps -> ps.setString(1, symbol), TRADE);
         } catch (Exception e) {
             log.error("Failed to find trades by symbol {}: {}", symbol, e.getMessage());
             throw new RuntimeException("Failed to find trades", e);
         }
-        return trades;
     }
 
     @Override
     public List<Trade> findByUserAndSymbol(String userId, String symbol) {
-        String sql = """
-            SELECT * FROM trades
-            WHERE user_id = ? AND symbol = ? AND deleted_at IS NULL
-            ORDER BY entry_timestamp DESC
-            """;
-
-        List<Trade> trades = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, userId);
-            ps.setString(2, symbol);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    trades.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("trades.findByUserAndSymbol", FIND_BY_USER_AND_SYMBOL_SQL, ps -> {
+                ps.setString(1, userId);
+                ps.setString(2, symbol);
+            }, TRADE);
         } catch (Exception e) {
             log.error("Failed to find trades by user {} and symbol {}: {}", userId, symbol, e.getMessage());
             throw new RuntimeException("Failed to find trades", e);
         }
-        return trades;
     }
 
     @Override
     public List<Trade> findByStatus(String status) {
-        String sql = """
-            SELECT * FROM trades
-            WHERE status = ? AND deleted_at IS NULL
-            ORDER BY entry_timestamp DESC
-            """;
-
-        List<Trade> trades = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, status);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    trades.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("trades.findByStatus", FIND_BY_STATUS_SQL, ps -> ps.setString(1, status), TRADE);
         } catch (Exception e) {
             log.error("Failed to find trades by status {}: {}", status, e.getMessage());
             throw new RuntimeException("Failed to find trades", e);
         }
-        return trades;
     }
 
     @Override
     public List<Trade> findBySignalId(String signalId) {
-        String sql = """
-            SELECT * FROM trades
-            WHERE signal_id = ? AND deleted_at IS NULL
-            ORDER BY entry_timestamp DESC
-            """;
-
-        List<Trade> trades = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, signalId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    trades.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("trades.findBySignalId", FIND_BY_SIGNAL_SQL, ps -> ps.setString(1, signalId), TRADE);
         } catch (Exception e) {
             log.error("Failed to find trades by signal {}: {}", signalId, e.getMessage());
             throw new RuntimeException("Failed to find trades", e);
         }
-        return trades;
+    }
+
+    @Override
+    public List<Trade> findOpenTradesByPortfolioIds(Collection<String> portfolioIds) {
+        if (portfolioIds.isEmpty()) {
+            return List.of();
+        }
+
+        try {
+            return db.query("trades.findOpenByPortfolioIds", FIND_OPEN_BY_PORTFOLIOS_SQL,
+                    ps -> Binds.setVarcharArray(ps, 1, portfolioIds), TRADE);
+        } catch (Exception e) {
+            log.error("Failed to find open trades for {} portfolios: {}", portfolioIds.size(), e.getMessage());
+            throw new RuntimeException("Failed to find open trades", e);
+        }
     }
 
     @Override
     public List<Trade> findOpenTrades() {
-        String sql = """
-            SELECT * FROM trades
-            WHERE status = 'OPEN' AND deleted_at IS NULL
-            ORDER BY entry_timestamp DESC
-            """;
-
-        List<Trade> trades = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                trades.add(mapRow(rs));
-            }
+        try {
+            return db.query("trades.findOpen", FIND_OPEN_SQL, Binder.NONE, TRADE);
         } catch (Exception e) {
             log.error("Failed to find open trades: {}", e.getMessage());
             throw new RuntimeException("Failed to find open trades", e);
         }
-        return trades;
     }
 
     @Override
     public List<Trade> findOpenTradesByUserId(String userId) {
-        String sql = """
-            SELECT * FROM trades
-            WHERE user_id = ? AND status = 'OPEN' AND deleted_at IS NULL
-            ORDER BY entry_timestamp DESC
-            """;
-
-        List<Trade> trades = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, userId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    trades.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("trades.findOpenByUserId", FIND_OPEN_BY_USER_SQL, ps -> ps.setString(1, userId), TRADE);
         } catch (Exception e) {
             log.error("Failed to find open trades by user {}: {}", userId, e.getMessage());
             throw new RuntimeException("Failed to find open trades", e);
         }
-        return trades;
     }
 
     @Override
     public void insert(Trade trade) {
-        String sql = """
-            INSERT INTO trades (
-                trade_id, portfolio_id, user_id, broker_id, user_broker_id,
-                signal_id, intent_id, symbol, direction, trade_number,
-                entry_price, entry_qty, entry_value, entry_timestamp, product_type,
-                entry_htf_zone, entry_itf_zone, entry_ltf_zone,
-                entry_confluence_type, entry_confluence_score,
-                entry_htf_low, entry_htf_high, entry_itf_low, entry_itf_high,
-                entry_ltf_low, entry_ltf_high, entry_effective_floor, entry_effective_ceiling,
-                log_loss_at_floor, max_log_loss_allowed,
-                exit_min_profit_price, exit_target_price, exit_stretch_price, exit_primary_price,
-                status, current_price, current_log_return, unrealized_pnl,
-                trailing_active, trailing_highest_price, trailing_stop_price,
-                exit_price, exit_timestamp, exit_trigger, exit_order_id,
-                realized_pnl, realized_log_return, holding_days,
-                broker_order_id, broker_trade_id,
-                created_at, updated_at, version
-            ) VALUES (
-                ?, ?, ?, ?, ?,
-                ?, ?, ?, ?, ?,
-                ?, ?, ?, ?, ?,
-                ?, ?, ?,
-                ?, ?,
-                ?, ?, ?, ?,
-                ?, ?, ?, ?,
-                ?, ?,
-                ?, ?, ?, ?,
-                ?, ?, ?, ?,
-                ?, ?, ?,
-                ?, ?, ?, ?,
-                ?, ?, ?,
-                ?, ?,
-                ?, ?, 1
-            )
-            """;
-
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, trade.tradeId());
-            ps.setString(2, trade.portfolioId());
-            ps.setString(3, trade.userId());
-            ps.setString(4, trade.brokerId());
-            ps.setString(5, trade.userBrokerId());
-            ps.setString(6, trade.signalId());
-            ps.setString(7, trade.intentId());
-            ps.setString(8, trade.symbol());
-            ps.setString(9, trade.direction());
-            ps.setInt(10, trade.tradeNumber());
-
-            setBigDecimalOrNull(ps, 11, trade.entryPrice());
-            ps.setInt(12, trade.entryQty());
-            setBigDecimalOrNull(ps, 13, trade.entryValue());
-            ps.setTimestamp(14, Timestamp.from(trade.entryTimestamp()));
-            ps.setString(15, trade.productType());
-
-            setIntOrNull(ps, 16, trade.entryHtfZone());
-            setIntOrNull(ps, 17, trade.entryItfZone());
-            setIntOrNull(ps, 18, trade.entryLtfZone());
-            ps.setString(19, trade.entryConfluenceType());
-            setBigDecimalOrNull(ps, 20, trade.entryConfluenceScore());
-
-            setBigDecimalOrNull(ps, 21, trade.entryHtfLow());
-            setBigDecimalOrNull(ps, 22, trade.entryHtfHigh());
-            setBigDecimalOrNull(ps, 23, trade.entryItfLow());
-            setBigDecimalOrNull(ps, 24, trade.entryItfHigh());
-            setBigDecimalOrNull(ps, 25, trade.entryLtfLow());
-            setBigDecimalOrNull(ps, 26, trade.entryLtfHigh());
-            setBigDecimalOrNull(ps, 27, trade.entryEffectiveFloor());
-            setBigDecimalOrNull(ps, 28, trade.entryEffectiveCeiling());
-
-            setBigDecimalOrNull(ps, 29, trade.logLossAtFloor());
-            setBigDecimalOrNull(ps, 30, trade.maxLogLossAllowed());
-
-            setBigDecimalOrNull(ps, 31, trade.exitMinProfitPrice());
-            setBigDecimalOrNull(ps, 32, trade.exitTargetPrice());
-            setBigDecimalOrNull(ps, 33, trade.exitStretchPrice());
-            setBigDecimalOrNull(ps, 34, trade.exitPrimaryPrice());
-
-            ps.setString(35, trade.status());
-            setBigDecimalOrNull(ps, 36, trade.currentPrice());
-            setBigDecimalOrNull(ps, 37, trade.currentLogReturn());
-            setBigDecimalOrNull(ps, 38, trade.unrealizedPnl());
-
-            ps.setBoolean(39, trade.trailingActive());
-            setBigDecimalOrNull(ps, 40, trade.trailingHighestPrice());
-            setBigDecimalOrNull(ps, 41, trade.trailingStopPrice());
-
-            setBigDecimalOrNull(ps, 42, trade.exitPrice());
-            setTimestampOrNull(ps, 43, trade.exitTimestamp());
-            ps.setString(44, trade.exitTrigger());
-            ps.setString(45, trade.exitOrderId());
-
-            setBigDecimalOrNull(ps, 46, trade.realizedPnl());
-            setBigDecimalOrNull(ps, 47, trade.realizedLogReturn());
-            setIntOrNull(ps, 48, trade.holdingDays());
-
-            ps.setString(49, trade.brokerOrderId());
-            ps.setString(50, trade.brokerTradeId());
-
-            ps.setTimestamp(51, Timestamp.from(trade.createdAt()));
-            ps.setTimestamp(52, Timestamp.from(trade.updatedAt()));
-
-            ps.executeUpdate();
+        Trade inserted;
+        try {
+            inserted = db.queryOne("trades.insert", INSERT_SQL, ps -> bindColumns(ps, 1, trade), TRADE)
+                    .orElseThrow(() -> new SQLException("Insert returned no row"));
             log.info("Trade inserted: {}", trade.tradeId());
 
         } catch (Exception e) {
             log.error("Failed to insert trade: {}", e.getMessage());
             throw new RuntimeException("Failed to insert trade", e);
         }
+        historyWriter.append(inserted);
     }
 
     @Override
     public void update(Trade trade) {
-        // Immutable update: soft delete old version, insert new version
-
-        String queryVersionSql = """
-            SELECT version FROM trades
-            WHERE trade_id = ? AND deleted_at IS NULL
-            """;
-
-        String softDeleteSql = """
-            UPDATE trades
-            SET deleted_at = NOW()
-            WHERE trade_id = ? AND version = ?
-            """;
-
-        String insertSql = """
-            INSERT INTO trades (
-                trade_id, portfolio_id, user_id, broker_id, user_broker_id,
-                signal_id, intent_id, symbol, direction, trade_number,
-                entry_price, entry_qty, entry_value, entry_timestamp, product_type,
-                entry_htf_zone, entry_itf_zone, entry_ltf_zone,
-                entry_confluence_type, entry_confluence_score,
-                entry_htf_low, entry_htf_high, entry_itf_low, entry_itf_high,
-                entry_ltf_low, entry_ltf_high, entry_effective_floor, entry_effective_ceiling,
-                log_loss_at_floor, max_log_loss_allowed,
-                exit_min_profit_price, exit_target_price, exit_stretch_price, exit_primary_price,
-                status, current_price, current_log_return, unrealized_pnl,
-                trailing_active, trailing_highest_price, trailing_stop_price,
-                exit_price, exit_timestamp, exit_trigger, exit_order_id,
-                realized_pnl, realized_log_return, holding_days,
-                broker_order_id, broker_trade_id,
-                created_at, updated_at, version
-            ) VALUES (
-                ?, ?, ?, ?, ?,
-                ?, ?, ?, ?, ?,
-                ?, ?, ?, ?, ?,
-                ?, ?, ?,
-                ?, ?,
-                ?, ?, ?, ?,
-                ?, ?, ?, ?,
-                ?, ?,
-                ?, ?, ?, ?,
-                ?, ?, ?, ?,
-                ?, ?, ?,
-                ?, ?, ?, ?,
-                ?, ?, ?,
-                ?, ?,
-                ?, ?, ?
-            )
-            """;
-
-        try (Connection conn = dataSource.getConnection()) {
-            conn.setAutoCommit(false);
-
-            // Step 1: Get current version
-            int currentVersion;
-            try (PreparedStatement ps = conn.prepareStatement(queryVersionSql)) {
-                ps.setString(1, trade.tradeId());
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        throw new RuntimeException("Trade not found: " + trade.tradeId());
-                    }
-                    currentVersion = rs.getInt("version");
-                }
-            }
-
-            // Step 2: Soft delete current version
-            try (PreparedStatement ps = conn.prepareStatement(softDeleteSql)) {
-                ps.setString(1, trade.tradeId());
-                ps.setInt(2, currentVersion);
-                int updated = ps.executeUpdate();
-                if (updated == 0) {
-                    throw new RuntimeException("Failed to soft delete trade: " + trade.tradeId());
-                }
-            }
-
-            // Step 3: Insert new version
-            try (PreparedStatement ps = conn.prepareStatement(insertSql)) {
-                ps.setString(1, trade.tradeId());
-                ps.setString(2, trade.portfolioId());
-                ps.setString(3, trade.userId());
-                ps.setString(4, trade.brokerId());
-                ps.setString(5, trade.userBrokerId());
-                ps.setString(6, trade.signalId());
-                ps.setString(7, trade.intentId());
-                ps.setString(8, trade.symbol());
-                ps.setInt(9, trade.tradeNumber());
-
-                setBigDecimalOrNull(ps, 10, trade.entryPrice());
-                ps.setInt(11, trade.entryQty());
-                setBigDecimalOrNull(ps, 12, trade.entryValue());
-                ps.setTimestamp(13, Timestamp.from(trade.entryTimestamp()));
-                ps.setString(14, trade.productType());
-
-                setIntOrNull(ps, 15, trade.entryHtfZone());
-                setIntOrNull(ps, 16, trade.entryItfZone());
-                setIntOrNull(ps, 17, trade.entryLtfZone());
-                ps.setString(18, trade.entryConfluenceType());
-                setBigDecimalOrNull(ps, 19, trade.entryConfluenceScore());
-
-                setBigDecimalOrNull(ps, 20, trade.entryHtfLow());
-                setBigDecimalOrNull(ps, 21, trade.entryHtfHigh());
-                setBigDecimalOrNull(ps, 22, trade.entryItfLow());
-                setBigDecimalOrNull(ps, 23, trade.entryItfHigh());
-                setBigDecimalOrNull(ps, 24, trade.entryLtfLow());
-                setBigDecimalOrNull(ps, 25, trade.entryLtfHigh());
-                setBigDecimalOrNull(ps, 26, trade.entryEffectiveFloor());
-                setBigDecimalOrNull(ps, 27, trade.entryEffectiveCeiling());
-
-                setBigDecimalOrNull(ps, 28, trade.logLossAtFloor());
-                setBigDecimalOrNull(ps, 29, trade.maxLogLossAllowed());
-
-                setBigDecimalOrNull(ps, 30, trade.exitMinProfitPrice());
-                setBigDecimalOrNull(ps, 31, trade.exitTargetPrice());
-                setBigDecimalOrNull(ps, 32, trade.exitStretchPrice());
-                setBigDecimalOrNull(ps, 33, trade.exitPrimaryPrice());
-
-                ps.setString(34, trade.status());
-                setBigDecimalOrNull(ps, 35, trade.currentPrice());
-                setBigDecimalOrNull(ps, 36, trade.currentLogReturn());
-                setBigDecimalOrNull(ps, 37, trade.unrealizedPnl());
-
-                ps.setBoolean(38, trade.trailingActive());
-                setBigDecimalOrNull(ps, 39, trade.trailingHighestPrice());
-                setBigDecimalOrNull(ps, 40, trade.trailingStopPrice());
-
-                setBigDecimalOrNull(ps, 41, trade.exitPrice());
-                setTimestampOrNull(ps, 42, trade.exitTimestamp());
-                ps.setString(43, trade.exitTrigger());
-                ps.setString(44, trade.exitOrderId());
-
-                setBigDecimalOrNull(ps, 45, trade.realizedPnl());
-                setBigDecimalOrNull(ps, 46, trade.realizedLogReturn());
-                setIntOrNull(ps, 47, trade.holdingDays());
-
-                ps.setString(48, trade.brokerOrderId());
-                ps.setString(49, trade.brokerTradeId());
-
-                ps.setTimestamp(50, Timestamp.from(trade.createdAt()));
-                ps.setTimestamp(51, Timestamp.from(trade.updatedAt()));
-                ps.setInt(52, currentVersion + 1);
-
-                ps.executeUpdate();
-            }
-
-            conn.commit();
-            log.info("Trade updated: {} version {} → {}", trade.tradeId(), currentVersion, currentVersion + 1);
+        Trade updated;
+        try {
+            updated = db.queryOne("trades.update", UPDATE_SQL, ps -> {
+                int idx = bindColumns(ps, 1, trade);
+                ps.setString(idx++, trade.tradeId());
+                ps.setInt(idx, trade.version());
+            }, TRADE).orElseThrow(() -> new RuntimeException("Trade not found or version conflict: "
+                    + trade.tradeId() + " (expected version " + trade.version() + ")"));
+            log.info("Trade updated: {} version {} → {}", trade.tradeId(), trade.version(), updated.version());
 
         } catch (Exception e) {
             log.error("Failed to update trade: {}", e.getMessage());
             throw new RuntimeException("Failed to update trade", e);
         }
+        historyWriter.append(updated);
     }
 
     @Override
-    public void delete(String tradeId) {
-        // Soft delete: mark as deleted
-
-        String queryVersionSql = """
-            SELECT version FROM trades
-            WHERE trade_id = ? AND deleted_at IS NULL
-            """;
-
-        String softDeleteSql = """
-            UPDATE trades
-            SET deleted_at = NOW()
-            WHERE trade_id = ? AND version = ?
-            """;
-
-        try (Connection conn = dataSource.getConnection()) {
-            conn.setAutoCommit(false);
+    public boolean updateTrailingStop(String tradeId, boolean trailingActive, BigDecimal highestPrice,
+            BigDecimal stopPrice) {
+        try {
+            return db.update("trades.updateTrailingStop", UPDATE_TRAILING_STOP_SQL, ps -> {
+                ps.setBoolean(1, trailingActive);
+                Binds.setBigDecimalOrNull(ps, 2, highestPrice);
+                Binds.setBigDecimalOrNull(ps, 3, stopPrice);
+                ps.setString(4, tradeId);
+            }) > 0;
 
-            // Get current version
-            int currentVersion;
-            try (PreparedStatement ps = conn.prepareStatement(queryVersionSql)) {
-                ps.setString(1, tradeId);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        throw new RuntimeException("Trade not found: " + tradeId);
-                    }
-                    currentVersion = rs.getInt("version");
-                }
-            }
-
-            // Soft delete
-            try (PreparedStatement ps = conn.prepareStatement(softDeleteSql)) {
-                ps.setString(1, tradeId);
-                ps.setInt(2, currentVersion);
-                int deleted = ps.executeUpdate();
-                if (deleted == 0) {
-                    throw new RuntimeException("Failed to delete trade: " + tradeId);
-                }
-            }
+        } catch (Exception e) {
+            log.error("Failed to update trailing stop for trade {}: {}", tradeId, e.getMessage());
+            throw new RuntimeException("Failed to update trailing stop", e);
+        }
+    }
 
-            conn.commit();
-            log.info("Trade soft-deleted: {} version {}", tradeId, currentVersion);
+    @Override
+    public void delete(String tradeId) {
+        Trade deleted;
+        try {
+            deleted = db.inTransaction(conn -> {
+                Trade marked = db.queryOne(conn, "trades.markDeleted", MARK_DELETED_SQL,
+                        ps -> ps.setString(1, tradeId), TRADE)
+                        .orElseThrow(() -> new RuntimeException("Trade not found: " + tradeId));
+                db.update(conn, "trades.delete", DELETE_SQL, ps -> ps.setString(1, tradeId));
+                return marked;
+            });
+            log.info("Trade deleted: {} version {}", tradeId, deleted.version());
 
         } catch (Exception e) {
             log.error("Failed to delete trade: {}", e.getMessage());
             throw new RuntimeException("Failed to delete trade", e);
         }
+        historyWriter.append(deleted);
     }
 
     @Override
     public List<Trade> findAllVersions(String tradeId) {
-        String sql = """
-            SELECT * FROM trades
-            WHERE trade_id = ?
-            ORDER BY version ASC
-            """;
-
-        List<Trade> trades = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, tradeId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    trades.add(mapRow(rs));
-                }
-            }
+        historyWriter.flushNow();
+        try {
+            return db.query("trades.findAllVersions", FIND_VERSIONS_SQL, ps -> ps.setString(1, tradeId), TRADE);
         } catch (Exception e) {
             log.error("Failed to find trade versions {}: {}", tradeId, e.getMessage());
             throw new RuntimeException("Failed to find trade versions", e);
         }
-        return trades;
     }
 
     @Override
     public Optional<Trade> findByIdAndVersion(String tradeId, int version) {
-        String sql = """
-            SELECT * FROM trades
-            WHERE trade_id = ? AND version = ?
-            """;
-
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, tradeId);
-            ps.setInt(2, version);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapRow(rs));
-                }
-            }
+        historyWriter.flushNow();
+        try {
+            return db.queryOne("trades.findByIdAndVersion", FIND_VERSION_SQL, ps -> {
+                ps.setString(1, tradeId);
+                ps.setInt(2, version);
+            }, TRADE);
         } catch (Exception e) {
             log.error("Failed to find trade {} version {}: {}", tradeId, version, e.getMessage());
             throw new RuntimeException("Failed to find trade version", e);
         }
-        return Optional.empty();
     }
 
-    private Trade mapRow(ResultSet rs) throws Exception {
-        Timestamp deletedTs = rs.getTimestamp("deleted_at");
+    private static Trade mapRow(Row row) throws Exception {
+        Timestamp deletedTs = row.getTimestamp("deleted_at");
         Instant deletedAt = deletedTs != null ? deletedTs.toInstant() : null;
 
-        Timestamp exitTs = rs.getTimestamp("exit_timestamp");
+        Timestamp exitTs = row.getTimestamp("exit_timestamp");
         Instant exitTimestamp = exitTs != null ? exitTs.toInstant() : null;
 
-        Timestamp lastBrokerUpdateTs = rs.getTimestamp("last_broker_update_at");
+        Timestamp lastBrokerUpdateTs = row.getTimestamp("last_broker_update_at");
         Instant lastBrokerUpdateAt = lastBrokerUpdateTs != null ? lastBrokerUpdateTs.toInstant() : null;
 
         return new Trade(
-            rs.getString("trade_id"),
-            rs.getString("portfolio_id"),
-            rs.getString("user_id"),
-            rs.getString("broker_id"),
-            rs.getString("user_broker_id"),
-            rs.getString("signal_id"),
-            rs.getString("intent_id"),
-            rs.getString("symbol"),
-            rs.getString("direction"),
-            rs.getInt("trade_number"),
-            rs.getBigDecimal("entry_price"),
-            rs.getInt("entry_qty"),
-            rs.getBigDecimal("entry_value"),
-            rs.getTimestamp("entry_timestamp").toInstant(),
-            rs.getString("product_type"),
-            (Integer) rs.getObject("entry_htf_zone"),
-            (Integer) rs.getObject("entry_itf_zone"),
-            (Integer) rs.getObject("entry_ltf_zone"),
-            rs.getString("entry_confluence_type"),
-            rs.getBigDecimal("entry_confluence_score"),
-            rs.getBigDecimal("entry_htf_low"),
-            rs.getBigDecimal("entry_htf_high"),
-            rs.getBigDecimal("entry_itf_low"),
-            rs.getBigDecimal("entry_itf_high"),
-            rs.getBigDecimal("entry_ltf_low"),
-            rs.getBigDecimal("entry_ltf_high"),
-            rs.getBigDecimal("entry_effective_floor"),
-            rs.getBigDecimal("entry_effective_ceiling"),
-            rs.getBigDecimal("log_loss_at_floor"),
-            rs.getBigDecimal("max_log_loss_allowed"),
-            rs.getBigDecimal("exit_min_profit_price"),
-            rs.getBigDecimal("exit_target_price"),
-            rs.getBigDecimal("exit_stretch_price"),
-            rs.getBigDecimal("exit_primary_price"),
-            rs.getString("status"),
-            rs.getBigDecimal("current_price"),
-            rs.getBigDecimal("current_log_return"),
-            rs.getBigDecimal("unrealized_pnl"),
-            rs.getBoolean("trailing_active"),
-            rs.getBigDecimal("trailing_highest_price"),
-            rs.getBigDecimal("trailing_stop_price"),
-            rs.getBigDecimal("exit_price"),
+            row.getString("trade_id"),
+            row.getString("portfolio_id"),
+            row.getString("user_id"),
+            row.getString("broker_id"),
+            row.getString("user_broker_id"),
+            row.getString("signal_id"),
+            row.getString("intent_id"),
+            row.getString("symbol"),
+            row.getString("direction"),
+            row.getInt("trade_number"),
+            row.getBigDecimal("entry_price"),
+            row.getInt("entry_qty"),
+            row.getBigDecimal("entry_value"),
+            row.getTimestamp("entry_timestamp").toInstant(),
+            row.getString("product_type"),
+            (Integer) row.getObject("entry_htf_zone"),
+            (Integer) row.getObject("entry_itf_zone"),
+            (Integer) row.getObject("entry_ltf_zone"),
+            row.getString("entry_confluence_type"),
+            row.getBigDecimal("entry_confluence_score"),
+            row.getBigDecimal("entry_htf_low"),
+            row.getBigDecimal("entry_htf_high"),
+            row.getBigDecimal("entry_itf_low"),
+            row.getBigDecimal("entry_itf_high"),
+            row.getBigDecimal("entry_ltf_low"),
+            row.getBigDecimal("entry_ltf_high"),
+            row.getBigDecimal("entry_effective_floor"),
+            row.getBigDecimal("entry_effective_ceiling"),
+            row.getBigDecimal("log_loss_at_floor"),
+            row.getBigDecimal("max_log_loss_allowed"),
+            row.getBigDecimal("exit_min_profit_price"),
+            row.getBigDecimal("exit_target_price"),
+            row.getBigDecimal("exit_stretch_price"),
+            row.getBigDecimal("exit_primary_price"),
+            row.getString("status"),
+            row.getBigDecimal("current_price"),
+            row.getBigDecimal("current_log_return"),
+            row.getBigDecimal("unrealized_pnl"),
+            row.getBoolean("trailing_active"),
+            row.getBigDecimal("trailing_highest_price"),
+            row.getBigDecimal("trailing_stop_price"),
+            row.getBigDecimal("exit_price"),
             exitTimestamp,
-            rs.getString("exit_trigger"),
-            rs.getString("exit_order_id"),
-            rs.getBigDecimal("realized_pnl"),
-            rs.getBigDecimal("realized_log_return"),
-            (Integer) rs.getObject("holding_days"),
-            rs.getString("broker_order_id"),
-            rs.getString("broker_trade_id"),
-            rs.getString("client_order_id"),
+            row.getString("exit_trigger"),
+            row.getString("exit_order_id"),
+            row.getBigDecimal("realized_pnl"),
+            row.getBigDecimal("realized_log_return"),
+            (Integer) row.getObject("holding_days"),
+            row.getString("broker_order_id"),
+            row.getString("broker_trade_id"),
+            row.getString("client_order_id"),
             lastBrokerUpdateAt,
-            rs.getTimestamp("created_at").toInstant(),
-            rs.getTimestamp("updated_at").toInstant(),
+            row.getTimestamp("created_at").toInstant(),
+            row.getTimestamp("updated_at").toInstant(),
             deletedAt,
-            rs.getInt("version")
+            row.getInt("version")
         );
     }
 
-    private void setIntOrNull(PreparedStatement ps, int index, Integer value) throws SQLException {
-        if (value != null) {
-            ps.setInt(index, value);
-        } else {
-            ps.setNull(index, Types.INTEGER);
-        }
-    }
-
-    private void setBigDecimalOrNull(PreparedStatement ps, int index, BigDecimal value) throws SQLException {
-        if (value != null) {
-            ps.setBigDecimal(index, value);
-        } else {
-            ps.setNull(index, Types.NUMERIC);
-        }
-    }
-
-    private void setTimestampOrNull(PreparedStatement ps, int index, Instant value) throws SQLException {
-        if (value != null) {
-            ps.setTimestamp(index, Timestamp.from(value));
-        } else {
-            ps.setNull(index, Types.TIMESTAMP);
-        }
+    /**
+     * Bind every column of {@link #COLUMNS} from index {@code idx}.
+     *
+     * @return Next free parameter index
+     */
+    static int bindColumns(PreparedStatement ps, int idx, Trade trade) throws SQLException {
+        ps.setString(idx++, trade.tradeId());
+        ps.setString(idx++, trade.portfolioId());
+        ps.setString(idx++, trade.userId());
+        ps.setString(idx++, trade.brokerId());
+        ps.setString(idx++, trade.userBrokerId());
+        ps.setString(idx++, trade.signalId());
+        ps.setString(idx++, trade.intentId());
+        ps.setString(idx++, trade.symbol());
+        ps.setString(idx++, trade.direction());
+        ps.setInt(idx++, trade.tradeNumber());
+
+        Binds.setBigDecimalOrNull(ps, idx++, trade.entryPrice());
+        ps.setInt(idx++, trade.entryQty());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.entryValue());
+        ps.setTimestamp(idx++, Timestamp.from(trade.entryTimestamp()));
+        ps.setString(idx++, trade.productType());
+
+        Binds.setIntOrNull(ps, idx++, trade.entryHtfZone());
+        Binds.setIntOrNull(ps, idx++, trade.entryItfZone());
+        Binds.setIntOrNull(ps, idx++, trade.entryLtfZone());
+        ps.setString(idx++, trade.entryConfluenceType());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.entryConfluenceScore());
+
+        Binds.setBigDecimalOrNull(ps, idx++, trade.entryHtfLow());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.entryHtfHigh());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.entryItfLow());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.entryItfHigh());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.entryLtfLow());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.entryLtfHigh());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.entryEffectiveFloor());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.entryEffectiveCeiling());
+
+        Binds.setBigDecimalOrNull(ps, idx++, trade.logLossAtFloor());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.maxLogLossAllowed());
+
+        Binds.setBigDecimalOrNull(ps, idx++, trade.exitMinProfitPrice());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.exitTargetPrice());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.exitStretchPrice());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.exitPrimaryPrice());
+
+        ps.setString(idx++, trade.status());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.currentPrice());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.currentLogReturn());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.unrealizedPnl());
+
+        ps.setBoolean(idx++, trade.trailingActive());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.trailingHighestPrice());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.trailingStopPrice());
+
+        Binds.setBigDecimalOrNull(ps, idx++, trade.exitPrice());
+        Binds.setTimestampOrNull(ps, idx++, trade.exitTimestamp());
+        ps.setString(idx++, trade.exitTrigger());
+        ps.setString(idx++, trade.exitOrderId());
+
+        Binds.setBigDecimalOrNull(ps, idx++, trade.realizedPnl());
+        Binds.setBigDecimalOrNull(ps, idx++, trade.realizedLogReturn());
+        Binds.setIntOrNull(ps, idx++, trade.holdingDays());
+
+        ps.setString(idx++, trade.brokerOrderId());
+        ps.setString(idx++, trade.brokerTradeId());
+        ps.setString(idx++, trade.clientOrderId());
+        Binds.setTimestampOrNull(ps, idx++, trade.lastBrokerUpdateAt());
+
+        ps.setTimestamp(idx++, Timestamp.from(trade.createdAt()));
+        ps.setTimestamp(idx++, Timestamp.from(trade.updatedAt()));
+        Binds.setTimestampOrNull(ps, idx++, trade.deletedAt());
+        return idx;
     }
 
     @Override
     public Trade upsert(Trade trade) {
-        // ✅ P0-B: Idempotent upsert using intent_id as unique key
-        // If intent_id exists, update; otherwise insert
-
-        String sql = """
-            INSERT INTO trades (
-                trade_id, portfolio_id, user_id, broker_id, user_broker_id,
-                signal_id, intent_id, client_order_id, symbol, direction, trade_number,
-                entry_price, entry_qty, entry_value, entry_timestamp, product_type,
-                entry_htf_zone, entry_itf_zone, entry_ltf_zone,
-                entry_confluence_type, entry_confluence_score,
-                entry_htf_low, entry_htf_high, entry_itf_low, entry_itf_high,
-                entry_ltf_low, entry_ltf_high, entry_effective_floor, entry_effective_ceiling,
-                log_loss_at_floor, max_log_loss_allowed,
-                exit_min_profit_price, exit_target_price, exit_stretch_price, exit_primary_price,
-                status, current_price, current_log_return, unrealized_pnl,
-                trailing_active, trailing_highest_price, trailing_stop_price,
-                exit_price, exit_timestamp, exit_trigger, exit_order_id,
-                realized_pnl, realized_log_return, holding_days,
-                broker_order_id, broker_trade_id,
-                created_at, updated_at, last_broker_update_at, version
-            ) VALUES (
-                ?, ?, ?, ?, ?,
-                ?, ?, ?, ?, ?, ?,
-                ?, ?, ?, ?, ?, ?,
-                ?, ?, ?,
-                ?, ?,
-                ?, ?, ?, ?,
-                ?, ?, ?, ?,
-                ?, ?,
-                ?, ?, ?, ?,
-                ?, ?, ?, ?,
-                ?, ?, ?,
-                ?, ?, ?, ?,
-                ?, ?, ?,
-                ?, ?,
-                NOW(), NOW(), NOW(), 1
-            )
-            ON CONFLICT (intent_id) DO UPDATE SET
-                broker_order_id = EXCLUDED.broker_order_id,
-                client_order_id = EXCLUDED.client_order_id,
-                filled_qty = COALESCE(EXCLUDED.entry_qty, trades.entry_qty),
-                status = EXCLUDED.status,
-                current_price = COALESCE(EXCLUDED.current_price, trades.current_price),
-                current_log_return = COALESCE(EXCLUDED.current_log_return, trades.current_log_return),
-                unrealized_pnl = COALESCE(EXCLUDED.unrealized_pnl, trades.unrealized_pnl),
-                trailing_active = EXCLUDED.trailing_active,
-                trailing_highest_price = COALESCE(EXCLUDED.trailing_highest_price, trades.trailing_highest_price),
-                trailing_stop_price = COALESCE(EXCLUDED.trailing_stop_price, trades.trailing_stop_price),
-                exit_price = COALESCE(EXCLUDED.exit_price, trades.exit_price),
-                exit_timestamp = COALESCE(EXCLUDED.exit_timestamp, trades.exit_timestamp),
-                exit_trigger = COALESCE(EXCLUDED.exit_trigger, trades.exit_trigger),
-                exit_order_id = COALESCE(EXCLUDED.exit_order_id, trades.exit_order_id),
-                realized_pnl = COALESCE(EXCLUDED.realized_pnl, trades.realized_pnl),
-                realized_log_return = COALESCE(EXCLUDED.realized_log_return, trades.realized_log_return),
-                holding_days = COALESCE(EXCLUDED.holding_days, trades.holding_days),
-                broker_trade_id = COALESCE(EXCLUDED.broker_trade_id, trades.broker_trade_id),
-                last_broker_update_at = NOW(),
-                updated_at = NOW()
-            RETURNING *
-            """;
-
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            int idx = 1;
-            ps.setString(idx++, trade.tradeId());
-            ps.setString(idx++, trade.portfolioId());
-            ps.setString(idx++, trade.userId());
-            ps.setString(idx++, trade.brokerId());
-            ps.setString(idx++, trade.userBrokerId());
-            ps.setString(idx++, trade.signalId());
-            ps.setString(idx++, trade.intentId());
-            ps.setString(idx++, trade.intentId());  // client_order_id = intent_id
-            ps.setString(idx++, trade.symbol());
-            ps.setString(idx++, trade.direction());
-            ps.setInt(idx++, trade.tradeNumber());
-
-            setBigDecimalOrNull(ps, idx++, trade.entryPrice());
-            ps.setInt(idx++, trade.entryQty());
-            setBigDecimalOrNull(ps, idx++, trade.entryValue());
-            ps.setTimestamp(idx++, Timestamp.from(trade.entryTimestamp()));
-            ps.setString(idx++, trade.productType());
-
-            setIntOrNull(ps, idx++, trade.entryHtfZone());
-            setIntOrNull(ps, idx++, trade.entryItfZone());
-            setIntOrNull(ps, idx++, trade.entryLtfZone());
-            ps.setString(idx++, trade.entryConfluenceType());
-            setBigDecimalOrNull(ps, idx++, trade.entryConfluenceScore());
-
-            setBigDecimalOrNull(ps, idx++, trade.entryHtfLow());
-            setBigDecimalOrNull(ps, idx++, trade.entryHtfHigh());
-            setBigDecimalOrNull(ps, idx++, trade.entryItfLow());
-            setBigDecimalOrNull(ps, idx++, trade.entryItfHigh());
-            setBigDecimalOrNull(ps, idx++, trade.entryLtfLow());
-            setBigDecimalOrNull(ps, idx++, trade.entryLtfHigh());
-            setBigDecimalOrNull(ps, idx++, trade.entryEffectiveFloor());
-            setBigDecimalOrNull(ps, idx++, trade.entryEffectiveCeiling());
-
-            setBigDecimalOrNull(ps, idx++, trade.logLossAtFloor());
-            setBigDecimalOrNull(ps, idx++, trade.maxLogLossAllowed());
-
-            setBigDecimalOrNull(ps, idx++, trade.exitMinProfitPrice());
-            setBigDecimalOrNull(ps, idx++, trade.exitTargetPrice());
-            setBigDecimalOrNull(ps, idx++, trade.exitStretchPrice());
-            setBigDecimalOrNull(ps, idx++, trade.exitPrimaryPrice());
-
-            ps.setString(idx++, trade.status());
-            setBigDecimalOrNull(ps, idx++, trade.currentPrice());
-            setBigDecimalOrNull(ps, idx++, trade.currentLogReturn());
-            setBigDecimalOrNull(ps, idx++, trade.unrealizedPnl());
-
-            ps.setBoolean(idx++, trade.trailingActive());
-            setBigDecimalOrNull(ps, idx++, trade.trailingHighestPrice());
-            setBigDecimalOrNull(ps, idx++, trade.trailingStopPrice());
-
-            setBigDecimalOrNull(ps, idx++, trade.exitPrice());
-            setTimestampOrNull(ps, idx++, trade.exitTimestamp());
-            ps.setString(idx++, trade.exitTrigger());
-            ps.setString(idx++, trade.exitOrderId());
-
-            setBigDecimalOrNull(ps, idx++, trade.realizedPnl());
-            setBigDecimalOrNull(ps, idx++, trade.realizedLogReturn());
-            setIntOrNull(ps, idx++, trade.holdingDays());
-
-            ps.setString(idx++, trade.brokerOrderId());
-            ps.setString(idx++, trade.brokerTradeId());
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    Trade result = mapRow(rs);
-                    log.info("Trade upserted: {} (intent_id={})", result.tradeId(), result.intentId());
-                    return result;
-                }
-            }
-
-            throw new RuntimeException("Upsert failed to return result");
+        try {
+            Trade result = db.queryOne("trades.upsert", UPSERT_SQL, ps -> {
+                bindColumns(ps, 1, trade);
+                // Insert path: client_order_id = intent_id, broker/audit timestamps are now
+                Timestamp now = Timestamp.from(Instant.now());
+                ps.setString(CLIENT_ORDER_ID_PARAM, trade.intentId());
+                ps.setTimestamp(LAST_BROKER_UPDATE_AT_PARAM, now);
+                ps.setTimestamp(CREATED_AT_PARAM, now);
+                ps.setTimestamp(UPDATED_AT_PARAM, now);
+            }, TRADE).orElseThrow(() -> new RuntimeException("Upsert failed to return result"));
+
+            historyWriter.append(result);
+            log.info("Trade upserted: {} (intent_id={}, version={})",
+                    result.tradeId(), result.intentId(), result.version());
+            return result;
 
         } catch (Exception e) {
             log.error("Failed to upsert trade: {}", e.getMessage(), e);
@@ -880,48 +669,24 @@ public final class PostgresTradeRepository implements TradeRepository {
 
     @Override
     public Trade findByIntentId(String intentId) {
-        String sql = """
-            SELECT * FROM trades
-            WHERE intent_id = ? AND deleted_at IS NULL
-            """;
-
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, intentId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return mapRow(rs);
-                }
-            }
+        try {
+            return db.queryOne("trades.findByIntentId", FIND_BY_INTENT_SQL, ps -> ps.setString(1, intentId), TRADE)
+                    .orElse(null);
         } catch (Exception e) {
             log.error("Failed to find trade by intent_id {}: {}", intentId, e.getMessage());
             throw new RuntimeException("Failed to find trade by intent_id", e);
         }
-        return null;
     }
 
     @Override
     public Trade findByBrokerOrderId(String brokerOrderId) {
-        String sql = """
-            SELECT * FROM trades
-            WHERE broker_order_id = ? AND deleted_at IS NULL
-            """;
-
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, brokerOrderId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return mapRow(rs);
-                }
-            }
+        try {
+            return db.queryOne("trades.findByBrokerOrderId", FIND_BY_BROKER_ORDER_SQL,
+                    ps -> ps.setString(1, brokerOrderId), TRADE).orElse(null);
         } catch (Exception e) {
             log.error("Failed to find trade by broker_order_id {}: {}", brokerOrderId, e.getMessage());
             throw new RuntimeException("Failed to find trade by broker_order_id", e);
         }
-        return null;
     }
 
     /**
@@ -936,34 +701,23 @@ public final class PostgresTradeRepository implements TradeRepository {
      */
     @Override
     public boolean markRejectedByIntentId(String intentId, String errorCode, String errorMessage) {
-        String sql = """
-            UPDATE trades
-            SET status = 'REJECTED',
-                exit_trigger = ?,
-                updated_at = NOW()
-            WHERE intent_id = ?
-              AND deleted_at IS NULL
-              AND status = 'CREATED'
-            """;
-
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            // exit_trigger stores the rejection reason (error code or message)
-            String rejectionReason = errorCode != null ? errorCode : "BROKER_REJECTED";
-            ps.setString(1, rejectionReason);
-            ps.setString(2, intentId);
-
-            int rowsUpdated = ps.executeUpdate();
-
-            if (rowsUpdated > 0) {
+        // exit_trigger stores the rejection reason (error code or message)
+        String rejectionReason = errorCode != null ? errorCode : "BROKER_REJECTED";
+
+        try {
+            Optional<Trade> rejected = db.queryOne("trades.markRejected", MARK_REJECTED_SQL, ps -> {
+                ps.setString(1, rejectionReason);
+                ps.setString(2, intentId);
+            }, TRADE);
+
+            if (rejected.isPresent()) {
+                historyWriter.append(rejected.get());
                 log.info("✅ P0-E: Trade marked as REJECTED for intent {} (reason: {})",
                     intentId, rejectionReason);
                 return true;
-            } else {
-                log.warn("⚠️ P0-E: No CREATED trade found for intent {} to mark as REJECTED", intentId);
-                return false;
             }
+            log.warn("⚠️ P0-E: No CREATED trade found for intent {} to mark as REJECTED", intentId);
+            return false;
 
         } catch (Exception e) {
             log.error("Failed to mark trade as rejected for intent {}: {}", intentId, e.getMessage());
@@ -973,22 +727,14 @@ public final class PostgresTradeRepository implements TradeRepository {
 
     @Override
     public void updateExitOrderPlaced(String tradeId, String exitOrderId, Instant placedAt) {
-        String sql = """
-            UPDATE trades
-            SET exit_order_id = ?,
-                status = 'EXITING',
-                updated_at = NOW()
-            WHERE trade_id = ? AND deleted_at IS NULL
-            """;
-
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, exitOrderId);
-            ps.setString(2, tradeId);
-
-            int updated = ps.executeUpdate();
-            if (updated > 0) {
+        try {
+            Optional<Trade> exiting = db.queryOne("trades.updateExitOrderPlaced", EXIT_ORDER_PLACED_SQL, ps -> {
+                ps.setString(1, exitOrderId);
+                ps.setString(2, tradeId);
+            }, TRADE);
+
+            if (exiting.isPresent()) {
+                historyWriter.append(exiting.get());
                 log.info("✅ Trade exit order placed: {} → exitOrderId={}, status=EXITING",
                     tradeId, exitOrderId);
             } else {
@@ -1006,124 +752,65 @@ public final class PostgresTradeRepository implements TradeRepository {
 
     @Override
     public long countOpenTrades() {
-        String sql = """
-            SELECT COUNT(*)
-            FROM trades
-            WHERE status = 'OPEN'
-              AND deleted_at IS NULL
-            """;
-
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                return rs.getLong(1);
-            }
+        try {
+            return db.queryOne("trades.countOpen", COUNT_OPEN_SQL, Binder.NONE, row -> row.getLong(1))
+                    .orElse(0L);
         } catch (Exception e) {
             log.error("Failed to count open trades: {}", e.getMessage());
             throw new RuntimeException("Failed to count open trades", e);
         }
-        return 0;
     }
 
     @Override
     public long countClosedTradesToday() {
-        String sql = """
-            SELECT COUNT(*)
-            FROM trades
-            WHERE status = 'CLOSED'
-              AND exit_timestamp >= CURRENT_DATE
-              AND deleted_at IS NULL
-            """;
-
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                return rs.getLong(1);
-            }
+        try {
+            return db.queryOne("trades.countClosedToday", COUNT_CLOSED_TODAY_SQL, Binder.NONE, row -> row.getLong(1))
+                    .orElse(0L);
         } catch (Exception e) {
             log.error("Failed to count closed trades today: {}", e.getMessage());
             throw new RuntimeException("Failed to count closed trades today", e);
         }
-        return 0;
     }
 
     @Override
     public Map<String, Object> getTradeHealthMetrics() {
-        String sql = """
-            SELECT
-                COUNT(*) as total_open_trades,
-                SUM(CASE WHEN direction = 'BUY' THEN entry_qty ELSE 0 END) as long_positions,
-                SUM(CASE WHEN direction = 'SELL' THEN entry_qty ELSE 0 END) as short_positions,
-                SUM(entry_qty * entry_price) as total_exposure_value,
-                AVG(EXTRACT(EPOCH FROM (NOW() - entry_timestamp)) / 3600) as avg_holding_hours
-            FROM trades
-            WHERE status = 'OPEN'
-              AND deleted_at IS NULL
-            """;
-
-        Map<String, Object> metrics = new HashMap<>();
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                metrics.put("total_open_trades", rs.getInt("total_open_trades"));
-                metrics.put("long_positions", rs.getInt("long_positions"));
-                metrics.put("short_positions", rs.getInt("short_positions"));
-                metrics.put("total_exposure_value", rs.getBigDecimal("total_exposure_value"));
-                metrics.put("avg_holding_hours", rs.getDouble("avg_holding_hours"));
-            }
+        try {
+            return db.queryOne("trades.healthMetrics", HEALTH_METRICS_SQL, Binder.NONE, row -> {
+                Map<String, Object> metrics = new HashMap<>();
+                metrics.put("total_open_trades", row.getInt("total_open_trades"));
+                metrics.put("long_positions", row.getInt("long_positions"));
+                metrics.put("short_positions", row.getInt("short_positions"));
+                metrics.put("total_exposure_value", row.getBigDecimal("total_exposure_value"));
+                metrics.put("avg_holding_hours", row.getDouble("avg_holding_hours"));
+                return metrics;
+            }).orElseGet(HashMap::new);
         } catch (Exception e) {
             log.error("Failed to get trade health metrics: {}", e.getMessage());
             throw new RuntimeException("Failed to get trade health metrics", e);
         }
-        return metrics;
     }
 
     @Override
     public Map<String, Object> getDailyPerformanceMetrics() {
-        String sql = """
-            SELECT
-                COUNT(*) as trades_closed,
-                COUNT(CASE WHEN realized_pnl > 0 THEN 1 END) as winning_trades,
-                COUNT(CASE WHEN realized_pnl < 0 THEN 1 END) as losing_trades,
-                ROUND(100.0 * COUNT(CASE WHEN realized_pnl > 0 THEN 1 END) / NULLIF(COUNT(*), 0), 2) as win_rate_percent,
-                SUM(realized_pnl) as total_pnl,
-                AVG(realized_pnl) as avg_pnl_per_trade,
-                MAX(realized_pnl) as best_trade,
-                MIN(realized_pnl) as worst_trade
-            FROM trades
-            WHERE status = 'CLOSED'
-              AND exit_timestamp >= CURRENT_DATE
-              AND deleted_at IS NULL
-            """;
-
-        Map<String, Object> metrics = new HashMap<>();
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                int tradesClosed = rs.getInt("trades_closed");
+        try {
+            return db.queryOne("trades.dailyPerformance", DAILY_PERFORMANCE_SQL, Binder.NONE, row -> {
+                Map<String, Object> metrics = new HashMap<>();
+                int tradesClosed = row.getInt("trades_closed");
                 if (tradesClosed > 0) {
                     metrics.put("trades_closed", tradesClosed);
-                    metrics.put("winning_trades", rs.getInt("winning_trades"));
-                    metrics.put("losing_trades", rs.getInt("losing_trades"));
-                    metrics.put("win_rate_percent", rs.getDouble("win_rate_percent"));
-                    metrics.put("total_pnl", rs.getBigDecimal("total_pnl"));
-                    metrics.put("avg_pnl_per_trade", rs.getBigDecimal("avg_pnl_per_trade"));
-                    metrics.put("best_trade", rs.getBigDecimal("best_trade"));
-                    metrics.put("worst_trade", rs.getBigDecimal("worst_trade"));
+                    metrics.put("winning_trades", row.getInt("winning_trades"));
+                    metrics.put("losing_trades", row.getInt("losing_trades"));
+                    metrics.put("win_rate_percent", row.getDouble("win_rate_percent"));
+                    metrics.put("total_pnl", row.getBigDecimal("total_pnl"));
+                    metrics.put("avg_pnl_per_trade", row.getBigDecimal("avg_pnl_per_trade"));
+                    metrics.put("best_trade", row.getBigDecimal("best_trade"));
+                    metrics.put("worst_trade", row.getBigDecimal("worst_trade"));
                 }
-            }
+                return metrics;
+            }).orElseGet(HashMap::new);
         } catch (Exception e) {
             log.error("Failed to get daily performance metrics: {}", e.getMessage());
             throw new RuntimeException("Failed to get daily performance metrics", e);
         }
-        return metrics;
     }
 }
@@ -2,19 +2,24 @@ package in.annupaper.infrastructure.persistence;
 
 import in.annupaper.application.port.output.*;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import in.annupaper.domain.model.BrokerRole;
 import in.annupaper.domain.model.UserBroker;
+import in.annupaper.infrastructure.persistence.jdbc.Binder;
+import in.annupaper.infrastructure.persistence.jdbc.Binds;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,10 +30,12 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
     private static final Logger log = LoggerFactory.getLogger(PostgresUserBrokerRepository.class);
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
-    private final DataSource dataSource;
+    private static final RowMapper<UserBroker> USER_BROKER = PostgresUserBrokerRepository::mapRow;
 
-    public PostgresUserBrokerRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
+    private final Db db;
+
+    public PostgresUserBrokerRepository(Db db) {
+        this.db = db;
     }
 
     @Override
@@ -37,16 +44,8 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
                 SELECT * FROM user_brokers WHERE user_broker_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, userBrokerId);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapRow(rs));
-                }
-            }
+        try {
+            return db.queryOne("user_brokers.findById", sql, ps -> ps.setString(1, userBrokerId), USER_BROKER);
         } catch (Exception e) {
             log.error("Error finding user-broker by ID: {}", e.getMessage(), e);
         }
@@ -54,13 +53,33 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
         return Optional.empty();
     }
 
+    @Override
+    public List<UserBroker> findByIds(Collection<String> userBrokerIds) {
+        String sql = """
+                SELECT * FROM user_brokers WHERE user_broker_id = ANY(?) AND deleted_at IS NULL
+                """;
+
+        if (userBrokerIds.isEmpty()) {
+            return List.of();
+        }
+
+        try {
+            return db.query("user_brokers.findByIds", sql,
+                    ps -> Binds.setVarcharArray(ps, 1, userBrokerIds), USER_BROKER);
+        } catch (Exception e) {
+            log.error("Error finding user-brokers by IDs: {}", e.getMessage(), e);
+        }
+
+        return List.of();
+    }
+
     @Override
     public List<UserBroker> findByUserId(String userId) {
         String sql = """
                 SELECT * FROM user_brokers WHERE user_id = ? AND deleted_at IS NULL ORDER BY created_at ASC
                 """;
 
-        return queryList(sql, userId);
+        return queryList("user_brokers.findByUserId", sql, userId);
     }
 
     @Override
@@ -75,7 +94,7 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
                 ORDER BY created_at ASC
                 """;
 
-        return queryList(sql, userId);
+        return queryList("user_brokers.findActiveExecBrokersByUserId", sql, userId);
     }
 
     @Override
@@ -91,16 +110,8 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
                 ORDER BY ub.user_id ASC, ub.created_at ASC
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            List<UserBroker> results = new ArrayList<>();
-            while (rs.next()) {
-                results.add(mapRow(rs));
-            }
-            return results;
-
+        try {
+            return db.query("user_brokers.findAllActiveExecBrokers", sql, Binder.NONE, USER_BROKER);
         } catch (Exception e) {
             log.error("Error finding active exec brokers: {}", e.getMessage(), e);
             return List.of();
@@ -118,16 +129,8 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
                 ORDER BY ub.user_broker_id ASC, ub.version DESC, ub.created_at DESC
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            List<UserBroker> results = new ArrayList<>();
-            while (rs.next()) {
-                results.add(mapRow(rs));
-            }
-            return results;
-
+        try {
+            return db.query("user_brokers.findAll", sql, Binder.NONE, USER_BROKER);
         } catch (Exception e) {
             log.error("Error finding all user-brokers: {}", e.getMessage(), e);
             return List.of();
@@ -148,17 +151,14 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
                 """;
 
         log.debug("[findDataBroker] Executing query...");
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                UserBroker ub = mapRow(rs);
-                log.info("[findDataBroker] Found: {} (connected={})", ub.userBrokerId(), ub.connected());
-                return Optional.of(ub);
+        try {
+            Optional<UserBroker> ub = db.queryOne("user_brokers.findDataBroker", sql, Binder.NONE, USER_BROKER);
+            if (ub.isPresent()) {
+                log.info("[findDataBroker] Found: {} (connected={})", ub.get().userBrokerId(), ub.get().connected());
             } else {
                 log.warn("[findDataBroker] No DATA broker found matching criteria");
             }
+            return ub;
 
         } catch (Exception e) {
             log.error("Error finding data broker: {}", e.getMessage(), e);
@@ -174,17 +174,11 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
                 WHERE user_id = ? AND broker_id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, userId);
-            ps.setString(2, brokerId);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapRow(rs));
-                }
-            }
+        try {
+            return db.queryOne("user_brokers.findByUserAndBroker", sql, ps -> {
+                ps.setString(1, userId);
+                ps.setString(2, brokerId);
+            }, USER_BROKER);
 
         } catch (Exception e) {
             log.error("Error finding user-broker: {}", e.getMessage(), e);
@@ -222,34 +216,8 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
                 ) VALUES (?, ?, ?, ?, ?::jsonb, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 1)
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, ub.userBrokerId());
-            ps.setString(2, ub.userId());
-            ps.setString(3, ub.brokerId());
-            ps.setString(4, ub.role().name());
-            ps.setString(5, ub.credentials() != null ? MAPPER.writeValueAsString(ub.credentials()) : "{}");
-            ps.setBoolean(6, ub.connected());
-            ps.setTimestamp(7, ub.lastConnected() != null ? Timestamp.from(ub.lastConnected()) : null);
-            ps.setString(8, ub.connectionError());
-            ps.setBigDecimal(9, ub.capitalAllocated());
-            ps.setBigDecimal(10, ub.maxExposure());
-            ps.setBigDecimal(11, ub.maxPerTrade());
-            ps.setInt(12, ub.maxOpenTrades());
-            ps.setArray(13, conn.createArrayOf("text",
-                    ub.allowedSymbols() != null ? ub.allowedSymbols().toArray() : new String[0]));
-            ps.setArray(14, conn.createArrayOf("text",
-                    ub.blockedSymbols() != null ? ub.blockedSymbols().toArray() : new String[0]));
-            ps.setArray(15, conn.createArrayOf("text",
-                    ub.allowedProducts() != null ? ub.allowedProducts().toArray() : new String[0]));
-            ps.setBigDecimal(16, ub.maxDailyLoss());
-            ps.setBigDecimal(17, ub.maxWeeklyLoss());
-            ps.setInt(18, ub.cooldownMinutes());
-            ps.setString(19, ub.status());
-            ps.setBoolean(20, ub.enabled());
-
-            ps.executeUpdate();
+        try {
+            db.update("user_brokers.insert", sql, ps -> bindColumns(ps, ub));
             log.info("UserBroker inserted: {} version 1", ub.userBrokerId());
 
         } catch (Exception e) {
@@ -272,59 +240,26 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
                 ) VALUES (?, ?, ?, ?, ?::jsonb, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
                 """;
 
-        try (Connection conn = dataSource.getConnection()) {
-            conn.setAutoCommit(false);
-
-            int currentVersion;
-            try (PreparedStatement ps = conn.prepareStatement(queryVersionSql)) {
-                ps.setString(1, ub.userBrokerId());
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        throw new RuntimeException("UserBroker not found: " + ub.userBrokerId());
-                    }
-                    currentVersion = rs.getInt("version");
-                }
-            }
+        try {
+            int currentVersion = db.inTransaction(conn -> {
+                int version = db.queryOne(conn, "user_brokers.currentVersion", queryVersionSql,
+                        ps -> ps.setString(1, ub.userBrokerId()), row -> row.getInt("version"))
+                        .orElseThrow(() -> new RuntimeException("UserBroker not found: " + ub.userBrokerId()));
 
-            try (PreparedStatement ps = conn.prepareStatement(softDeleteSql)) {
-                ps.setString(1, ub.userBrokerId());
-                ps.setInt(2, currentVersion);
-                int updated = ps.executeUpdate();
+                int updated = db.update(conn, "user_brokers.softDelete", softDeleteSql, ps -> {
+                    ps.setString(1, ub.userBrokerId());
+                    ps.setInt(2, version);
+                });
                 if (updated == 0) {
                     throw new RuntimeException("Failed to soft delete user-broker version: " + ub.userBrokerId());
                 }
-            }
-
-            try (PreparedStatement ps = conn.prepareStatement(insertSql)) {
-                ps.setString(1, ub.userBrokerId());
-                ps.setString(2, ub.userId());
-                ps.setString(3, ub.brokerId());
-                ps.setString(4, ub.role().name());
-                ps.setString(5, ub.credentials() != null ? MAPPER.writeValueAsString(ub.credentials()) : "{}");
-                ps.setBoolean(6, ub.connected());
-                ps.setTimestamp(7, ub.lastConnected() != null ? Timestamp.from(ub.lastConnected()) : null);
-                ps.setString(8, ub.connectionError());
-                ps.setBigDecimal(9, ub.capitalAllocated());
-                ps.setBigDecimal(10, ub.maxExposure());
-                ps.setBigDecimal(11, ub.maxPerTrade());
-                ps.setInt(12, ub.maxOpenTrades());
-                ps.setArray(13, conn.createArrayOf("text",
-                        ub.allowedSymbols() != null ? ub.allowedSymbols().toArray() : new String[0]));
-                ps.setArray(14, conn.createArrayOf("text",
-                        ub.blockedSymbols() != null ? ub.blockedSymbols().toArray() : new String[0]));
-                ps.setArray(15, conn.createArrayOf("text",
-                        ub.allowedProducts() != null ? ub.allowedProducts().toArray() : new String[0]));
-                ps.setBigDecimal(16, ub.maxDailyLoss());
-                ps.setBigDecimal(17, ub.maxWeeklyLoss());
-                ps.setInt(18, ub.cooldownMinutes());
-                ps.setString(19, ub.status());
-                ps.setBoolean(20, ub.enabled());
-                ps.setInt(21, currentVersion + 1);
-
-                ps.executeUpdate();
-            }
 
-            conn.commit();
+                db.update(conn, "user_brokers.insertVersion", insertSql, ps -> {
+                    bindColumns(ps, ub);
+                    ps.setInt(21, version + 1);
+                });
+                return version;
+            });
             log.info("UserBroker updated: {} version {} → {}", ub.userBrokerId(), currentVersion, currentVersion + 1);
 
         } catch (Exception e) {
@@ -333,6 +268,47 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
         }
     }
 
+    /**
+     * Bind parameters 1-20 of the user_brokers insert (everything but version).
+     */
+    private static void bindColumns(PreparedStatement ps, UserBroker ub) throws SQLException {
+        Connection conn = ps.getConnection();
+        ps.setString(1, ub.userBrokerId());
+        ps.setString(2, ub.userId());
+        ps.setString(3, ub.brokerId());
+        ps.setString(4, ub.role().name());
+        ps.setString(5, credentialsJson(ub));
+        ps.setBoolean(6, ub.connected());
+        Binds.setTimestampOrNull(ps, 7, ub.lastConnected());
+        ps.setString(8, ub.connectionError());
+        ps.setBigDecimal(9, ub.capitalAllocated());
+        ps.setBigDecimal(10, ub.maxExposure());
+        ps.setBigDecimal(11, ub.maxPerTrade());
+        ps.setInt(12, ub.maxOpenTrades());
+        ps.setArray(13, conn.createArrayOf("text",
+                ub.allowedSymbols() != null ? ub.allowedSymbols().toArray() : new String[0]));
+        ps.setArray(14, conn.createArrayOf("text",
+                ub.blockedSymbols() != null ? ub.blockedSymbols().toArray() : new String[0]));
+        ps.setArray(15, conn.createArrayOf("text",
+                ub.allowedProducts() != null ? ub.allowedProducts().toArray() : new String[0]));
+        ps.setBigDecimal(16, ub.maxDailyLoss());
+        ps.setBigDecimal(17, ub.maxWeeklyLoss());
+        ps.setInt(18, ub.cooldownMinutes());
+        ps.setString(19, ub.status());
+        ps.setBoolean(20, ub.enabled());
+    }
+
+    private static String credentialsJson(UserBroker ub) throws SQLException {
+        if (ub.credentials() == null) {
+            return "{}";
+        }
+        try {
+            return MAPPER.writeValueAsString(ub.credentials());
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Failed to serialize credentials: " + e.getMessage(), e);
+        }
+    }
+
     // ps.setBoolean(1, connected);
     // ps.setBoolean(2, connected);
     // ps.setString(3, errorMessage);
@@ -369,19 +345,9 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
         performImmutableUpdate(updated);
     }
 
-    private List<UserBroker> queryList(String sql, String userId) {
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, userId);
-
-            List<UserBroker> results = new ArrayList<>();
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    results.add(mapRow(rs));
-                }
-            }
-            return results;
+    private List<UserBroker> queryList(String name, String sql, String userId) {
+        try {
+            return db.query(name, sql, ps -> ps.setString(1, userId), USER_BROKER);
 
         } catch (Exception e) {
             log.error("Error querying user-brokers: {}", e.getMessage(), e);
@@ -389,56 +355,56 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
         }
     }
 
-    private UserBroker mapRow(ResultSet rs) throws Exception {
-        String userBrokerId = rs.getString("user_broker_id");
-        String userId = rs.getString("user_id");
-        String brokerId = rs.getString("broker_id");
-        BrokerRole role = BrokerRole.valueOf(rs.getString("role"));
+    private static UserBroker mapRow(Row row) throws Exception {
+        String userBrokerId = row.getString("user_broker_id");
+        String userId = row.getString("user_id");
+        String brokerId = row.getString("broker_id");
+        BrokerRole role = BrokerRole.valueOf(row.getString("role"));
 
-        String credJson = rs.getString("credentials");
+        String credJson = row.getString("credentials");
         JsonNode credentials = credJson != null ? MAPPER.readTree(credJson) : null;
 
-        boolean connected = rs.getBoolean("connected");
-        Timestamp lastConnTs = rs.getTimestamp("last_connected");
+        boolean connected = row.getBoolean("connected");
+        Timestamp lastConnTs = row.getTimestamp("last_connected");
         Instant lastConnected = lastConnTs != null ? lastConnTs.toInstant() : null;
-        String connectionError = rs.getString("connection_error");
+        String connectionError = row.getString("connection_error");
 
-        BigDecimal capitalAllocated = rs.getBigDecimal("capital_allocated");
-        BigDecimal maxExposure = rs.getBigDecimal("max_exposure");
-        BigDecimal maxPerTrade = rs.getBigDecimal("max_per_trade");
-        int maxOpenTrades = rs.getInt("max_open_trades");
+        BigDecimal capitalAllocated = row.getBigDecimal("capital_allocated");
+        BigDecimal maxExposure = row.getBigDecimal("max_exposure");
+        BigDecimal maxPerTrade = row.getBigDecimal("max_per_trade");
+        int maxOpenTrades = row.getInt("max_open_trades");
 
-        Array allowedArr = rs.getArray("allowed_symbols");
+        Array allowedArr = row.getArray("allowed_symbols");
         List<String> allowedSymbols = allowedArr != null
                 ? Arrays.asList((String[]) allowedArr.getArray())
                 : List.of();
 
-        Array blockedArr = rs.getArray("blocked_symbols");
+        Array blockedArr = row.getArray("blocked_symbols");
         List<String> blockedSymbols = blockedArr != null
                 ? Arrays.asList((String[]) blockedArr.getArray())
                 : List.of();
 
-        Array productsArr = rs.getArray("allowed_products");
+        Array productsArr = row.getArray("allowed_products");
         List<String> allowedProducts = productsArr != null
                 ? Arrays.asList((String[]) productsArr.getArray())
                 : List.of();
 
-        BigDecimal maxDailyLoss = rs.getBigDecimal("max_daily_loss");
-        BigDecimal maxWeeklyLoss = rs.getBigDecimal("max_weekly_loss");
-        int cooldownMinutes = rs.getInt("cooldown_minutes");
+        BigDecimal maxDailyLoss = row.getBigDecimal("max_daily_loss");
+        BigDecimal maxWeeklyLoss = row.getBigDecimal("max_weekly_loss");
+        int cooldownMinutes = row.getInt("cooldown_minutes");
 
-        String status = rs.getString("status");
-        boolean enabled = rs.getBoolean("enabled");
+        String status = row.getString("status");
+        boolean enabled = row.getBoolean("enabled");
 
-        Timestamp createdTs = rs.getTimestamp("created_at");
-        Timestamp updatedTs = rs.getTimestamp("updated_at");
+        Timestamp createdTs = row.getTimestamp("created_at");
+        Timestamp updatedTs = row.getTimestamp("updated_at");
         Instant createdAt = createdTs != null ? createdTs.toInstant() : Instant.now();
         Instant updatedAt = updatedTs != null ? updatedTs.toInstant() : Instant.now();
 
-        Timestamp deletedTs = rs.getTimestamp("deleted_at");
+        Timestamp deletedTs = row.getTimestamp("deleted_at");
         Instant deletedAt = deletedTs != null ? deletedTs.toInstant() : null;
 
-        int version = rs.getInt("version");
+        int version = row.getInt("version");
 
         return new UserBroker(
                 userBrokerId, userId, brokerId, role, credentials,
@@ -463,18 +429,12 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
                   AND session_expiry_at < NOW()
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                return rs.getLong(1);
-            }
+        try {
+            return db.queryOne("user_brokers.countExpiredSessions", sql, Binder.NONE, row -> row.getLong(1)).orElse(0L);
         } catch (Exception e) {
             log.error("Failed to count expired broker sessions: {}", e.getMessage());
             throw new RuntimeException("Failed to count expired broker sessions", e);
         }
-        return 0;
     }
 
     @Override
@@ -488,18 +448,12 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
                   AND session_expiry_at < NOW() + INTERVAL '1 hour'
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                return rs.getLong(1);
-            }
+        try {
+            return db.queryOne("user_brokers.countExpiringSoonSessions", sql, Binder.NONE, row -> row.getLong(1)).orElse(0L);
         } catch (Exception e) {
             log.error("Failed to count expiring broker sessions: {}", e.getMessage());
             throw new RuntimeException("Failed to count expiring broker sessions", e);
         }
-        return 0;
     }
 
     @Override
@@ -513,19 +467,12 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
                 ORDER BY session_expiry_at ASC
                 """;
 
-        List<UserBroker> expired = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                expired.add(mapRow(rs));
-            }
+        try {
+            return db.query("user_brokers.findExpiredSessions", sql, Binder.NONE, USER_BROKER);
         } catch (Exception e) {
             log.error("Failed to find expired broker sessions: {}", e.getMessage());
             throw new RuntimeException("Failed to find expired broker sessions", e);
         }
-        return expired;
     }
 
     @Override
@@ -537,17 +484,11 @@ public final class PostgresUserBrokerRepository implements UserBrokerRepository
                   AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                return rs.getLong(1);
-            }
+        try {
+            return db.queryOne("user_brokers.countActive", sql, Binder.NONE, row -> row.getLong(1)).orElse(0L);
         } catch (Exception e) {
             log.error("Failed to count active brokers: {}", e.getMessage());
             throw new RuntimeException("Failed to count active brokers", e);
         }
-        return 0;
     }
 }
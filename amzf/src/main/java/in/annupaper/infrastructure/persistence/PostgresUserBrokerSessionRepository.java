@@ -4,13 +4,15 @@ import in.annupaper.application.port.output.*;
 
 import in.annupaper.domain.model.UserBrokerSession;
 import in.annupaper.domain.model.UserBrokerSession.SessionStatus;
+import in.annupaper.infrastructure.persistence.jdbc.Binds;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
 import java.sql.*;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,10 +23,19 @@ import java.util.Optional;
 public class PostgresUserBrokerSessionRepository implements UserBrokerSessionRepository {
     private static final Logger log = LoggerFactory.getLogger(PostgresUserBrokerSessionRepository.class);
 
-    private final DataSource dataSource;
+    private static final RowMapper<UserBrokerSession> SESSION = PostgresUserBrokerSessionRepository::mapRow;
 
-    public PostgresUserBrokerSessionRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
+    private static final String INSERT_SQL = """
+            INSERT INTO user_broker_sessions (
+                session_id, user_broker_id, access_token, token_valid_till, session_status,
+                session_started_at, session_ended_at, created_at, deleted_at, version
+            ) VALUES (?, ?, ?, ?, ?::text, ?, ?, ?, ?, ?)
+            """;
+
+    private final Db db;
+
+    public PostgresUserBrokerSessionRepository(Db db) {
+        this.db = db;
     }
 
     @Override
@@ -40,16 +51,9 @@ public class PostgresUserBrokerSessionRepository implements UserBrokerSessionRep
                 LIMIT 1
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, userBrokerId);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapResultSet(rs));
-                }
-            }
+        try {
+            return db.queryOne("user_broker_sessions.findActive", sql,
+                    stmt -> stmt.setString(1, userBrokerId), SESSION);
         } catch (SQLException e) {
             log.error("Error finding active session for user_broker_id={}: {}", userBrokerId, e.getMessage());
         }
@@ -69,16 +73,8 @@ public class PostgresUserBrokerSessionRepository implements UserBrokerSessionRep
                 LIMIT 1
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, sessionId);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapResultSet(rs));
-                }
-            }
+        try {
+            return db.queryOne("user_broker_sessions.findById", sql, stmt -> stmt.setString(1, sessionId), SESSION);
         } catch (SQLException e) {
             log.error("Error finding session by id={}: {}", sessionId, e.getMessage());
         }
@@ -97,23 +93,14 @@ public class PostgresUserBrokerSessionRepository implements UserBrokerSessionRep
                 ORDER BY created_at DESC
                 """;
 
-        List<UserBrokerSession> sessions = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, userBrokerId);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    sessions.add(mapResultSet(rs));
-                }
-            }
+        try {
+            return db.query("user_broker_sessions.findByUserBrokerId", sql,
+                    stmt -> stmt.setString(1, userBrokerId), SESSION);
         } catch (SQLException e) {
             log.error("Error finding sessions for user_broker_id={}: {}", userBrokerId, e.getMessage());
         }
 
-        return sessions;
+        return List.of();
     }
 
     @Override
@@ -129,49 +116,20 @@ public class PostgresUserBrokerSessionRepository implements UserBrokerSessionRep
                 ORDER BY token_valid_till ASC
                 """;
 
-        List<UserBrokerSession> sessions = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setTimestamp(1, Timestamp.from(before));
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    sessions.add(mapResultSet(rs));
-                }
-            }
+        try {
+            return db.query("user_broker_sessions.findExpiring", sql,
+                    stmt -> stmt.setTimestamp(1, Timestamp.from(before)), SESSION);
         } catch (SQLException e) {
             log.error("Error finding expiring sessions before {}: {}", before, e.getMessage());
         }
 
-        return sessions;
+        return List.of();
     }
 
     @Override
     public void insert(UserBrokerSession session) {
-        String sql = """
-                INSERT INTO user_broker_sessions (
-                    session_id, user_broker_id, access_token, token_valid_till, session_status,
-                    session_started_at, session_ended_at, created_at, deleted_at, version
-                ) VALUES (?, ?, ?, ?, ?::text, ?, ?, ?, ?, ?)
-                """;
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, session.sessionId());
-            stmt.setString(2, session.userBrokerId());
-            stmt.setString(3, session.accessToken());
-            stmt.setTimestamp(4, session.tokenValidTill() != null ? Timestamp.from(session.tokenValidTill()) : null);
-            stmt.setString(5, session.sessionStatus().name());
-            stmt.setTimestamp(6, Timestamp.from(session.sessionStartedAt()));
-            stmt.setTimestamp(7, session.sessionEndedAt() != null ? Timestamp.from(session.sessionEndedAt()) : null);
-            stmt.setTimestamp(8, Timestamp.from(session.createdAt()));
-            stmt.setTimestamp(9, session.deletedAt() != null ? Timestamp.from(session.deletedAt()) : null);
-            stmt.setInt(10, session.version());
-
-            stmt.executeUpdate();
+        try {
+            db.update("user_broker_sessions.insert", INSERT_SQL, stmt -> bindInsert(stmt, session));
 
             log.info("Inserted session: {} for user_broker={} (valid till: {})",
                     session.sessionId(), session.userBrokerId(), session.tokenValidTill());
@@ -184,59 +142,29 @@ public class PostgresUserBrokerSessionRepository implements UserBrokerSessionRep
 
     @Override
     public void update(UserBrokerSession session) {
-        try (Connection conn = dataSource.getConnection()) {
-            conn.setAutoCommit(false);
-
-            try {
-                // Step 1: Soft delete current version
-                String deleteSql = """
-                        UPDATE user_broker_sessions
-                        SET deleted_at = NOW()
-                        WHERE session_id = ?
-                          AND version = ?
-                          AND deleted_at IS NULL
-                        """;
-
-                try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
+        // Step 1: Soft delete current version
+        String deleteSql = """
+                UPDATE user_broker_sessions
+                SET deleted_at = NOW()
+                WHERE session_id = ?
+                  AND version = ?
+                  AND deleted_at IS NULL
+                """;
+
+        try {
+            db.inTransaction(conn -> {
+                db.update(conn, "user_broker_sessions.softDelete", deleteSql, stmt -> {
                     stmt.setString(1, session.sessionId());
                     stmt.setInt(2, session.version() - 1); // Previous version
-                    stmt.executeUpdate();
-                }
+                });
 
                 // Step 2: Insert new version
-                String insertSql = """
-                        INSERT INTO user_broker_sessions (
-                            session_id, user_broker_id, access_token, token_valid_till, session_status,
-                            session_started_at, session_ended_at, created_at, deleted_at, version
-                        ) VALUES (?, ?, ?, ?, ?::text, ?, ?, ?, ?, ?)
-                        """;
-
-                try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
-                    stmt.setString(1, session.sessionId());
-                    stmt.setString(2, session.userBrokerId());
-                    stmt.setString(3, session.accessToken());
-                    stmt.setTimestamp(4,
-                            session.tokenValidTill() != null ? Timestamp.from(session.tokenValidTill()) : null);
-                    stmt.setString(5, session.sessionStatus().name());
-                    stmt.setTimestamp(6, Timestamp.from(session.sessionStartedAt()));
-                    stmt.setTimestamp(7,
-                            session.sessionEndedAt() != null ? Timestamp.from(session.sessionEndedAt()) : null);
-                    stmt.setTimestamp(8, Timestamp.from(session.createdAt()));
-                    stmt.setTimestamp(9, session.deletedAt() != null ? Timestamp.from(session.deletedAt()) : null);
-                    stmt.setInt(10, session.version());
-
-                    stmt.executeUpdate();
-                }
-
-                conn.commit();
-
-                log.info("Updated session: {} to version {} (status: {})",
-                        session.sessionId(), session.version(), session.sessionStatus());
-
-            } catch (SQLException e) {
-                conn.rollback();
-                throw e;
-            }
+                return db.update(conn, "user_broker_sessions.insertVersion", INSERT_SQL,
+                        stmt -> bindInsert(stmt, session));
+            });
+
+            log.info("Updated session: {} to version {} (status: {})",
+                    session.sessionId(), session.version(), session.sessionStatus());
 
         } catch (SQLException e) {
             log.error("Error updating session: {}", e.getMessage());
@@ -253,11 +181,8 @@ public class PostgresUserBrokerSessionRepository implements UserBrokerSessionRep
                   AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, sessionId);
-            int rowsUpdated = stmt.executeUpdate();
+        try {
+            int rowsUpdated = db.update("user_broker_sessions.delete", sql, stmt -> stmt.setString(1, sessionId));
 
             if (rowsUpdated > 0) {
                 log.info("Deleted session: {}", sessionId);
@@ -269,24 +194,33 @@ public class PostgresUserBrokerSessionRepository implements UserBrokerSessionRep
         }
     }
 
+    private static void bindInsert(PreparedStatement stmt, UserBrokerSession session) throws SQLException {
+        stmt.setString(1, session.sessionId());
+        stmt.setString(2, session.userBrokerId());
+        stmt.setString(3, session.accessToken());
+        Binds.setTimestampOrNull(stmt, 4, session.tokenValidTill());
+        stmt.setString(5, session.sessionStatus().name());
+        stmt.setTimestamp(6, Timestamp.from(session.sessionStartedAt()));
+        Binds.setTimestampOrNull(stmt, 7, session.sessionEndedAt());
+        stmt.setTimestamp(8, Timestamp.from(session.createdAt()));
+        Binds.setTimestampOrNull(stmt, 9, session.deletedAt());
+        stmt.setInt(10, session.version());
+    }
+
     /**
-     * Map ResultSet to UserBrokerSession domain model.
+     * Map a row to UserBrokerSession domain model.
      */
-    private UserBrokerSession mapResultSet(ResultSet rs) throws SQLException {
-        Timestamp tokenValidTillTs = rs.getTimestamp("token_valid_till");
-        Timestamp sessionEndedAtTs = rs.getTimestamp("session_ended_at");
-        Timestamp deletedAtTs = rs.getTimestamp("deleted_at");
-
+    private static UserBrokerSession mapRow(Row row) throws SQLException {
         return new UserBrokerSession(
-                rs.getString("session_id"),
-                rs.getString("user_broker_id"),
-                rs.getString("access_token"),
-                tokenValidTillTs != null ? tokenValidTillTs.toInstant() : null,
-                SessionStatus.valueOf(rs.getString("session_status")),
-                rs.getTimestamp("session_started_at").toInstant(),
-                sessionEndedAtTs != null ? sessionEndedAtTs.toInstant() : null,
-                rs.getTimestamp("created_at").toInstant(),
-                deletedAtTs != null ? deletedAtTs.toInstant() : null,
-                rs.getInt("version"));
+                row.getString("session_id"),
+                row.getString("user_broker_id"),
+                row.getString("access_token"),
+                row.getInstant("token_valid_till"),
+                SessionStatus.valueOf(row.getString("session_status")),
+                row.getTimestamp("session_started_at").toInstant(),
+                row.getInstant("session_ended_at"),
+                row.getTimestamp("created_at").toInstant(),
+                row.getInstant("deleted_at"),
+                row.getInt("version"));
     }
 }
@@ -3,64 +3,54 @@ package in.annupaper.infrastructure.persistence;
 import in.annupaper.application.port.output.*;
 
 import in.annupaper.domain.model.Watchlist;
+import in.annupaper.infrastructure.persistence.jdbc.Binder;
+import in.annupaper.infrastructure.persistence.jdbc.Binds;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
 import java.sql.*;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 public final class PostgresWatchlistRepository implements WatchlistRepository {
     private static final Logger log = LoggerFactory.getLogger(PostgresWatchlistRepository.class);
 
-    private final DataSource dataSource;
+    private static final RowMapper<Watchlist> WATCHLIST = PostgresWatchlistRepository::mapRow;
 
-    public PostgresWatchlistRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
+    private final Db db;
+
+    public PostgresWatchlistRepository(Db db) {
+        this.db = db;
     }
 
     @Override
     public List<Watchlist> findAll() {
         String sql = "SELECT * FROM watchlist WHERE deleted_at IS NULL ORDER BY added_at ASC";
-        List<Watchlist> watchlists = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    watchlists.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("watchlist.findAll", sql, Binder.NONE, WATCHLIST);
         } catch (Exception e) {
             log.error("Error finding all watchlists: {}", e.getMessage(), e);
         }
 
-        return watchlists;
+        return List.of();
     }
 
     @Override
     public List<Watchlist> findByUserBrokerId(String userBrokerId) {
         String sql = "SELECT * FROM watchlist WHERE user_broker_id = ? AND deleted_at IS NULL ORDER BY added_at ASC";
-        List<Watchlist> watchlists = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            ps.setString(1, userBrokerId);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    watchlists.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("watchlist.findByUserBrokerId", sql, ps -> ps.setString(1, userBrokerId), WATCHLIST);
         } catch (Exception e) {
             log.error("Error finding watchlist by user-broker: {}", e.getMessage(), e);
         }
 
-        return watchlists;
+        return List.of();
     }
 
     @Override
@@ -72,44 +62,27 @@ public final class PostgresWatchlistRepository implements WatchlistRepository {
                   AND w.deleted_at IS NULL
                 ORDER BY w.added_at ASC
                 """;
-        List<Watchlist> watchlists = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, userId);
 
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    watchlists.add(mapRow(rs));
-                }
-            }
+        try {
+            return db.query("watchlist.findByUserId", sql, ps -> ps.setString(1, userId), WATCHLIST);
         } catch (Exception e) {
             log.error("Error finding watchlist by user: {}", e.getMessage(), e);
         }
 
-        return watchlists;
+        return List.of();
     }
 
     @Override
-    public java.util.Optional<Watchlist> findById(Long id) {
+    public Optional<Watchlist> findById(Long id) {
         String sql = "SELECT * FROM watchlist WHERE id = ? AND deleted_at IS NULL";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setLong(1, id);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return java.util.Optional.of(mapRow(rs));
-                }
-            }
+        try {
+            return db.queryOne("watchlist.findById", sql, ps -> ps.setLong(1, id), WATCHLIST);
         } catch (Exception e) {
             log.error("Error finding watchlist by id: {}", e.getMessage(), e);
         }
 
-        return java.util.Optional.empty();
+        return Optional.empty();
     }
 
     @Override
@@ -120,25 +93,13 @@ public final class PostgresWatchlistRepository implements WatchlistRepository {
                 WHERE id = ? AND deleted_at IS NULL
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            if (watchlist.lotSize() != null) {
-                ps.setInt(1, watchlist.lotSize());
-            } else {
-                ps.setNull(1, java.sql.Types.INTEGER);
-            }
-
-            if (watchlist.tickSize() != null) {
-                ps.setBigDecimal(2, watchlist.tickSize());
-            } else {
-                ps.setNull(2, java.sql.Types.DECIMAL);
-            }
-
-            ps.setBoolean(3, watchlist.enabled());
-            ps.setLong(4, watchlist.id());
-
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("watchlist.save", sql, ps -> {
+                Binds.setIntOrNull(ps, 1, watchlist.lotSize());
+                Binds.setBigDecimalOrNull(ps, 2, watchlist.tickSize());
+                ps.setBoolean(3, watchlist.enabled());
+                ps.setLong(4, watchlist.id());
+            });
             if (updated > 0) {
                 log.info("Watchlist entry updated: {} (lot_size={}, tick_size={}, enabled={})",
                         watchlist.id(), watchlist.lotSize(), watchlist.tickSize(), watchlist.enabled());
@@ -173,26 +134,16 @@ public final class PostgresWatchlistRepository implements WatchlistRepository {
                     version = watchlist.version + 1
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, watchlist.userBrokerId());
-            ps.setString(2, cleanSymbol);
-            if (watchlist.lotSize() != null) {
-                ps.setInt(3, watchlist.lotSize());
-            } else {
-                ps.setNull(3, java.sql.Types.INTEGER);
-            }
-            if (watchlist.tickSize() != null) {
-                ps.setBigDecimal(4, watchlist.tickSize());
-            } else {
-                ps.setNull(4, java.sql.Types.DECIMAL);
-            }
-            ps.setBoolean(5, watchlist.isCustom());
-            ps.setBoolean(6, watchlist.enabled());
-            ps.setTimestamp(7, watchlist.lastSyncedAt() != null ? Timestamp.from(watchlist.lastSyncedAt()) : null);
-
-            ps.executeUpdate();
+        try {
+            db.update("watchlist.insert", sql, ps -> {
+                ps.setString(1, watchlist.userBrokerId());
+                ps.setString(2, cleanSymbol);
+                Binds.setIntOrNull(ps, 3, watchlist.lotSize());
+                Binds.setBigDecimalOrNull(ps, 4, watchlist.tickSize());
+                ps.setBoolean(5, watchlist.isCustom());
+                ps.setBoolean(6, watchlist.enabled());
+                Binds.setTimestampOrNull(ps, 7, watchlist.lastSyncedAt());
+            });
             log.info("Watchlist entry upserted: {} for {} (lot_size={}, tick_size={}, custom={}) version 1",
                     cleanSymbol, watchlist.userBrokerId(), watchlist.lotSize(), watchlist.tickSize(),
                     watchlist.isCustom());
@@ -209,25 +160,19 @@ public final class PostgresWatchlistRepository implements WatchlistRepository {
         String queryVersionSql = "SELECT version FROM watchlist WHERE id = ? AND deleted_at IS NULL";
         String softDeleteSql = "UPDATE watchlist SET deleted_at = NOW() WHERE id = ? AND version = ?";
 
-        try (Connection conn = dataSource.getConnection()) {
-            int currentVersion;
-            try (PreparedStatement ps = conn.prepareStatement(queryVersionSql)) {
-                ps.setLong(1, id);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        log.warn("Watchlist entry not found or already deleted: {}", id);
-                        return;
-                    }
-                    currentVersion = rs.getInt("version");
-                }
+        try {
+            Optional<Integer> currentVersion = db.queryOne("watchlist.currentVersion", queryVersionSql,
+                    ps -> ps.setLong(1, id), row -> row.getInt("version"));
+            if (currentVersion.isEmpty()) {
+                log.warn("Watchlist entry not found or already deleted: {}", id);
+                return;
             }
 
-            try (PreparedStatement ps = conn.prepareStatement(softDeleteSql)) {
+            db.update("watchlist.softDelete", softDeleteSql, ps -> {
                 ps.setLong(1, id);
-                ps.setInt(2, currentVersion);
-                ps.executeUpdate();
-                log.info("Watchlist entry soft deleted: {} version {}", id, currentVersion);
-            }
+                ps.setInt(2, currentVersion.get());
+            });
+            log.info("Watchlist entry soft deleted: {} version {}", id, currentVersion.get());
 
         } catch (Exception e) {
             log.error("Error soft deleting watchlist: {}", e.getMessage(), e);
@@ -239,12 +184,11 @@ public final class PostgresWatchlistRepository implements WatchlistRepository {
     public void toggleEnabled(Long id, boolean enabled) {
         String sql = "UPDATE watchlist SET enabled = ?, updated_at = NOW() WHERE id = ? AND deleted_at IS NULL";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setBoolean(1, enabled);
-            ps.setLong(2, id);
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("watchlist.toggleEnabled", sql, ps -> {
+                ps.setBoolean(1, enabled);
+                ps.setLong(2, id);
+            });
             if (updated > 0) {
                 log.info("Watchlist entry toggled: {} enabled={}", id, enabled);
             } else {
@@ -263,14 +207,12 @@ public final class PostgresWatchlistRepository implements WatchlistRepository {
         // symbol
         String sql = "UPDATE watchlist SET last_price = ?, last_tick_time = ?, updated_at = NOW() WHERE symbol = ? AND deleted_at IS NULL";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setBigDecimal(1, lastPrice);
-            ps.setTimestamp(2, lastTickTime != null ? Timestamp.from(lastTickTime) : null);
-            ps.setString(3, symbol);
-
-            int updated = ps.executeUpdate();
+        try {
+            int updated = db.update("watchlist.updateLastPrice", sql, ps -> {
+                ps.setBigDecimal(1, lastPrice);
+                Binds.setTimestampOrNull(ps, 2, lastTickTime);
+                ps.setString(3, symbol);
+            });
             if (updated > 0) {
                 log.debug("Updated last price for symbol {} to {} at {} ({} entries)", symbol, lastPrice, lastTickTime,
                         updated);
@@ -282,36 +224,36 @@ public final class PostgresWatchlistRepository implements WatchlistRepository {
         }
     }
 
-    private Watchlist mapRow(ResultSet rs) throws Exception {
-        Long id = rs.getLong("id");
-        String userBrokerId = rs.getString("user_broker_id");
-        String symbol = rs.getString("symbol");
+    private static Watchlist mapRow(Row row) throws Exception {
+        Long id = row.getLong("id");
+        String userBrokerId = row.getString("user_broker_id");
+        String symbol = row.getString("symbol");
 
         // Get lot_size from database
-        Integer lotSize = rs.getObject("lot_size", Integer.class);
+        Integer lotSize = row.getIntOrNull("lot_size");
 
         // Get tick_size from database
-        java.math.BigDecimal tickSize = rs.getBigDecimal("tick_size");
+        java.math.BigDecimal tickSize = row.getBigDecimal("tick_size");
 
-        boolean isCustom = rs.getBoolean("is_custom");
-        boolean enabled = rs.getBoolean("enabled");
+        boolean isCustom = row.getBoolean("is_custom");
+        boolean enabled = row.getBoolean("enabled");
 
-        Timestamp addedTs = rs.getTimestamp("added_at");
-        Timestamp updatedTs = rs.getTimestamp("updated_at");
+        Timestamp addedTs = row.getTimestamp("added_at");
+        Timestamp updatedTs = row.getTimestamp("updated_at");
         Instant addedAt = addedTs != null ? addedTs.toInstant() : Instant.now();
         Instant updatedAt = updatedTs != null ? updatedTs.toInstant() : Instant.now();
 
-        Timestamp lastSyncedTs = rs.getTimestamp("last_synced_at");
+        Timestamp lastSyncedTs = row.getTimestamp("last_synced_at");
         Instant lastSyncedAt = lastSyncedTs != null ? lastSyncedTs.toInstant() : null;
 
-        Timestamp deletedTs = rs.getTimestamp("deleted_at");
+        Timestamp deletedTs = row.getTimestamp("deleted_at");
         Instant deletedAt = deletedTs != null ? deletedTs.toInstant() : null;
 
-        int version = rs.getInt("version");
+        int version = row.getInt("version");
 
         // FIX: Add last_price and last_tick_time fields for Market Watch LTP display
-        java.math.BigDecimal lastPrice = rs.getBigDecimal("last_price");
-        Timestamp lastTickTs = rs.getTimestamp("last_tick_time");
+        java.math.BigDecimal lastPrice = row.getBigDecimal("last_price");
+        Timestamp lastTickTs = row.getTimestamp("last_tick_time");
         Instant lastTickTime = lastTickTs != null ? lastTickTs.toInstant() : null;
 
         // OLD: return new Watchlist(id, userBrokerId, symbol, lotSize, tickSize,
@@ -2,15 +2,17 @@ package in.annupaper.infrastructure.persistence;
 
 import in.annupaper.application.port.output.*;
 
-import com.zaxxer.hikari.HikariDataSource;
 import in.annupaper.domain.model.WatchlistSelected;
 import in.annupaper.domain.model.WatchlistSelectedSymbol;
+import in.annupaper.infrastructure.persistence.jdbc.Binder;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,10 +22,15 @@ import java.util.Optional;
 public class PostgresWatchlistSelectedRepository implements WatchlistSelectedRepository {
 
     private static final Logger log = LoggerFactory.getLogger(PostgresWatchlistSelectedRepository.class);
-    private final HikariDataSource dataSource;
 
-    public PostgresWatchlistSelectedRepository(HikariDataSource dataSource) {
-        this.dataSource = dataSource;
+    private static final RowMapper<WatchlistSelected> SELECTED = PostgresWatchlistSelectedRepository::mapSelected;
+    private static final RowMapper<WatchlistSelectedSymbol> SELECTED_SYMBOL =
+            PostgresWatchlistSelectedRepository::mapSelectedSymbol;
+
+    private final Db db;
+
+    public PostgresWatchlistSelectedRepository(Db db) {
+        this.db = db;
     }
 
     @Override
@@ -34,22 +41,13 @@ public class PostgresWatchlistSelectedRepository implements WatchlistSelectedRep
                 "WHERE deleted_at IS NULL AND enabled = true " +
                 "ORDER BY name ASC";
 
-        List<WatchlistSelected> selected = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql);
-                ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                selected.add(mapSelected(rs));
-            }
+        try {
+            return db.query("watchlist_selected.findAllActive", sql, Binder.NONE, SELECTED);
 
         } catch (SQLException e) {
             log.error("Error finding active selected watchlists", e);
             throw new RuntimeException("Database error", e);
         }
-
-        return selected;
     }
 
     @Override
@@ -59,23 +57,13 @@ public class PostgresWatchlistSelectedRepository implements WatchlistSelectedRep
                 "FROM watchlist_selected " +
                 "WHERE selected_id = ?";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, selectedId);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapSelected(rs));
-                }
-            }
+        try {
+            return db.queryOne("watchlist_selected.findById", sql, stmt -> stmt.setString(1, selectedId), SELECTED);
 
         } catch (SQLException e) {
             log.error("Error finding selected watchlist by id: {}", selectedId, e);
             throw new RuntimeException("Database error", e);
         }
-
-        return Optional.empty();
     }
 
     @Override
@@ -85,25 +73,14 @@ public class PostgresWatchlistSelectedRepository implements WatchlistSelectedRep
                 "WHERE selected_id = ? " +
                 "ORDER BY display_order ASC, symbol ASC";
 
-        List<WatchlistSelectedSymbol> symbols = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, selectedId);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    symbols.add(mapSelectedSymbol(rs));
-                }
-            }
+        try {
+            return db.query("watchlist_selected.findSymbols", sql,
+                    stmt -> stmt.setString(1, selectedId), SELECTED_SYMBOL);
 
         } catch (SQLException e) {
             log.error("Error finding symbols for selected watchlist: {}", selectedId, e);
             throw new RuntimeException("Database error", e);
         }
-
-        return symbols;
     }
 
     @Override
@@ -116,22 +93,14 @@ public class PostgresWatchlistSelectedRepository implements WatchlistSelectedRep
                 "WHERE ws.deleted_at IS NULL AND ws.enabled = true " +
                 "ORDER BY symbol ASC";
 
-        List<String> symbols = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql);
-                ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                symbols.add(rs.getString("symbol"));
-            }
+        try {
+            return db.query("watchlist_selected.findMergedDefaultSymbols", sql, Binder.NONE,
+                    row -> row.getString("symbol"));
 
         } catch (SQLException e) {
             log.error("Error finding merged default symbols", e);
             throw new RuntimeException("Database error", e);
         }
-
-        return symbols;
     }
 
     @Override
@@ -141,19 +110,17 @@ public class PostgresWatchlistSelectedRepository implements WatchlistSelectedRep
                 "created_at, updated_at, version) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, selected.selectedId());
-            stmt.setString(2, selected.name());
-            stmt.setString(3, selected.sourceTemplateId());
-            stmt.setString(4, selected.description());
-            stmt.setBoolean(5, selected.enabled());
-            stmt.setTimestamp(6, Timestamp.from(selected.createdAt()));
-            stmt.setTimestamp(7, Timestamp.from(selected.updatedAt()));
-            stmt.setInt(8, selected.version());
-
-            stmt.executeUpdate();
+        try {
+            db.update("watchlist_selected.insert", sql, stmt -> {
+                stmt.setString(1, selected.selectedId());
+                stmt.setString(2, selected.name());
+                stmt.setString(3, selected.sourceTemplateId());
+                stmt.setString(4, selected.description());
+                stmt.setBoolean(5, selected.enabled());
+                stmt.setTimestamp(6, Timestamp.from(selected.createdAt()));
+                stmt.setTimestamp(7, Timestamp.from(selected.updatedAt()));
+                stmt.setInt(8, selected.version());
+            });
             log.info("Inserted selected watchlist: {}", selected.selectedId());
 
         } catch (SQLException e) {
@@ -169,17 +136,15 @@ public class PostgresWatchlistSelectedRepository implements WatchlistSelectedRep
                 "updated_at = ?, version = version + 1 " +
                 "WHERE selected_id = ?";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, selected.name());
-            stmt.setString(2, selected.sourceTemplateId());
-            stmt.setString(3, selected.description());
-            stmt.setBoolean(4, selected.enabled());
-            stmt.setTimestamp(5, Timestamp.from(Instant.now()));
-            stmt.setString(6, selected.selectedId());
-
-            stmt.executeUpdate();
+        try {
+            db.update("watchlist_selected.update", sql, stmt -> {
+                stmt.setString(1, selected.name());
+                stmt.setString(2, selected.sourceTemplateId());
+                stmt.setString(3, selected.description());
+                stmt.setBoolean(4, selected.enabled());
+                stmt.setTimestamp(5, Timestamp.from(Instant.now()));
+                stmt.setString(6, selected.selectedId());
+            });
             log.info("Updated selected watchlist: {}", selected.selectedId());
 
         } catch (SQLException e) {
@@ -193,13 +158,11 @@ public class PostgresWatchlistSelectedRepository implements WatchlistSelectedRep
         String sql = "UPDATE watchlist_selected SET deleted_at = ?, version = version + 1 " +
                 "WHERE selected_id = ?";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setTimestamp(1, Timestamp.from(Instant.now()));
-            stmt.setString(2, selectedId);
-
-            stmt.executeUpdate();
+        try {
+            db.update("watchlist_selected.delete", sql, stmt -> {
+                stmt.setTimestamp(1, Timestamp.from(Instant.now()));
+                stmt.setString(2, selectedId);
+            });
             log.info("Soft deleted selected watchlist: {}", selectedId);
 
         } catch (SQLException e) {
@@ -214,15 +177,13 @@ public class PostgresWatchlistSelectedRepository implements WatchlistSelectedRep
                 "(selected_id, symbol, display_order, created_at) " +
                 "VALUES (?, ?, ?, ?)";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, symbol.selectedId());
-            stmt.setString(2, symbol.symbol());
-            stmt.setInt(3, symbol.displayOrder());
-            stmt.setTimestamp(4, Timestamp.from(symbol.createdAt()));
-
-            stmt.executeUpdate();
+        try {
+            db.update("watchlist_selected.insertSymbol", sql, stmt -> {
+                stmt.setString(1, symbol.selectedId());
+                stmt.setString(2, symbol.symbol());
+                stmt.setInt(3, symbol.displayOrder());
+                stmt.setTimestamp(4, Timestamp.from(symbol.createdAt()));
+            });
             log.info("Inserted symbol {} into selected watchlist {}", symbol.symbol(), symbol.selectedId());
 
         } catch (SQLException e) {
@@ -235,12 +196,8 @@ public class PostgresWatchlistSelectedRepository implements WatchlistSelectedRep
     public void deleteSymbol(long symbolId) {
         String sql = "DELETE FROM watchlist_selected_symbols WHERE id = ?";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setLong(1, symbolId);
-
-            stmt.executeUpdate();
+        try {
+            db.update("watchlist_selected.deleteSymbol", sql, stmt -> stmt.setLong(1, symbolId));
             log.info("Deleted selected watchlist symbol: {}", symbolId);
 
         } catch (SQLException e) {
@@ -253,12 +210,8 @@ public class PostgresWatchlistSelectedRepository implements WatchlistSelectedRep
     public void deleteAllSymbols(String selectedId) {
         String sql = "DELETE FROM watchlist_selected_symbols WHERE selected_id = ?";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, selectedId);
-
-            int count = stmt.executeUpdate();
+        try {
+            int count = db.update("watchlist_selected.deleteAllSymbols", sql, stmt -> stmt.setString(1, selectedId));
             log.info("Deleted {} symbols from selected watchlist {}", count, selectedId);
 
         } catch (SQLException e) {
@@ -267,26 +220,25 @@ public class PostgresWatchlistSelectedRepository implements WatchlistSelectedRep
         }
     }
 
-    private WatchlistSelected mapSelected(ResultSet rs) throws SQLException {
-        Timestamp deletedAtTs = rs.getTimestamp("deleted_at");
+    private static WatchlistSelected mapSelected(Row row) throws SQLException {
         return new WatchlistSelected(
-                rs.getString("selected_id"),
-                rs.getString("name"),
-                rs.getString("source_template_id"),
-                rs.getString("description"),
-                rs.getBoolean("enabled"),
-                rs.getTimestamp("created_at").toInstant(),
-                rs.getTimestamp("updated_at").toInstant(),
-                deletedAtTs != null ? deletedAtTs.toInstant() : null,
-                rs.getInt("version"));
+                row.getString("selected_id"),
+                row.getString("name"),
+                row.getString("source_template_id"),
+                row.getString("description"),
+                row.getBoolean("enabled"),
+                row.getTimestamp("created_at").toInstant(),
+                row.getTimestamp("updated_at").toInstant(),
+                row.getInstant("deleted_at"),
+                row.getInt("version"));
     }
 
-    private WatchlistSelectedSymbol mapSelectedSymbol(ResultSet rs) throws SQLException {
+    private static WatchlistSelectedSymbol mapSelectedSymbol(Row row) throws SQLException {
         return new WatchlistSelectedSymbol(
-                rs.getLong("id"),
-                rs.getString("selected_id"),
-                rs.getString("symbol"),
-                rs.getInt("display_order"),
-                rs.getTimestamp("created_at").toInstant());
+                row.getLong("id"),
+                row.getString("selected_id"),
+                row.getString("symbol"),
+                row.getInt("display_order"),
+                row.getTimestamp("created_at").toInstant());
     }
 }
@@ -2,15 +2,17 @@ package in.annupaper.infrastructure.persistence;
 
 import in.annupaper.application.port.output.*;
 
-import com.zaxxer.hikari.HikariDataSource;
 import in.annupaper.domain.model.WatchlistTemplate;
 import in.annupaper.domain.model.WatchlistTemplateSymbol;
+import in.annupaper.infrastructure.persistence.jdbc.Binder;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import in.annupaper.infrastructure.persistence.jdbc.Row;
+import in.annupaper.infrastructure.persistence.jdbc.RowMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,10 +22,15 @@ import java.util.Optional;
 public class PostgresWatchlistTemplateRepository implements WatchlistTemplateRepository {
 
     private static final Logger log = LoggerFactory.getLogger(PostgresWatchlistTemplateRepository.class);
-    private final HikariDataSource dataSource;
 
-    public PostgresWatchlistTemplateRepository(HikariDataSource dataSource) {
-        this.dataSource = dataSource;
+    private static final RowMapper<WatchlistTemplate> TEMPLATE = PostgresWatchlistTemplateRepository::mapTemplate;
+    private static final RowMapper<WatchlistTemplateSymbol> TEMPLATE_SYMBOL =
+            PostgresWatchlistTemplateRepository::mapTemplateSymbol;
+
+    private final Db db;
+
+    public PostgresWatchlistTemplateRepository(Db db) {
+        this.db = db;
     }
 
     @Override
@@ -34,22 +41,13 @@ public class PostgresWatchlistTemplateRepository implements WatchlistTemplateRep
                 "WHERE deleted_at IS NULL AND enabled = true " +
                 "ORDER BY display_order ASC, template_name ASC";
 
-        List<WatchlistTemplate> templates = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql);
-                ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                templates.add(mapTemplate(rs));
-            }
+        try {
+            return db.query("watchlist_templates.findAllActive", sql, Binder.NONE, TEMPLATE);
 
         } catch (SQLException e) {
             log.error("Error finding active templates", e);
             throw new RuntimeException("Database error", e);
         }
-
-        return templates;
     }
 
     @Override
@@ -59,23 +57,13 @@ public class PostgresWatchlistTemplateRepository implements WatchlistTemplateRep
                 "FROM watchlist_templates " +
                 "WHERE template_id = ?";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, templateId);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapTemplate(rs));
-                }
-            }
+        try {
+            return db.queryOne("watchlist_templates.findById", sql, stmt -> stmt.setString(1, templateId), TEMPLATE);
 
         } catch (SQLException e) {
             log.error("Error finding template by id: {}", templateId, e);
             throw new RuntimeException("Database error", e);
         }
-
-        return Optional.empty();
     }
 
     @Override
@@ -85,25 +73,14 @@ public class PostgresWatchlistTemplateRepository implements WatchlistTemplateRep
                 "WHERE template_id = ? " +
                 "ORDER BY display_order ASC, symbol ASC";
 
-        List<WatchlistTemplateSymbol> symbols = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, templateId);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    symbols.add(mapTemplateSymbol(rs));
-                }
-            }
+        try {
+            return db.query("watchlist_templates.findSymbols", sql,
+                    stmt -> stmt.setString(1, templateId), TEMPLATE_SYMBOL);
 
         } catch (SQLException e) {
             log.error("Error finding symbols for template: {}", templateId, e);
             throw new RuntimeException("Database error", e);
         }
-
-        return symbols;
     }
 
     @Override
@@ -113,19 +90,17 @@ public class PostgresWatchlistTemplateRepository implements WatchlistTemplateRep
                 "created_at, updated_at, version) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, template.templateId());
-            stmt.setString(2, template.templateName());
-            stmt.setString(3, template.description());
-            stmt.setInt(4, template.displayOrder());
-            stmt.setBoolean(5, template.enabled());
-            stmt.setTimestamp(6, Timestamp.from(template.createdAt()));
-            stmt.setTimestamp(7, Timestamp.from(template.updatedAt()));
-            stmt.setInt(8, template.version());
-
-            stmt.executeUpdate();
+        try {
+            db.update("watchlist_templates.insert", sql, stmt -> {
+                stmt.setString(1, template.templateId());
+                stmt.setString(2, template.templateName());
+                stmt.setString(3, template.description());
+                stmt.setInt(4, template.displayOrder());
+                stmt.setBoolean(5, template.enabled());
+                stmt.setTimestamp(6, Timestamp.from(template.createdAt()));
+                stmt.setTimestamp(7, Timestamp.from(template.updatedAt()));
+                stmt.setInt(8, template.version());
+            });
             log.info("Inserted template: {}", template.templateId());
 
         } catch (SQLException e) {
@@ -141,17 +116,15 @@ public class PostgresWatchlistTemplateRepository implements WatchlistTemplateRep
                 "updated_at = ?, version = version + 1 " +
                 "WHERE template_id = ?";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, template.templateName());
-            stmt.setString(2, template.description());
-            stmt.setInt(3, template.displayOrder());
-            stmt.setBoolean(4, template.enabled());
-            stmt.setTimestamp(5, Timestamp.from(Instant.now()));
-            stmt.setString(6, template.templateId());
-
-            stmt.executeUpdate();
+        try {
+            db.update("watchlist_templates.update", sql, stmt -> {
+                stmt.setString(1, template.templateName());
+                stmt.setString(2, template.description());
+                stmt.setInt(3, template.displayOrder());
+                stmt.setBoolean(4, template.enabled());
+                stmt.setTimestamp(5, Timestamp.from(Instant.now()));
+                stmt.setString(6, template.templateId());
+            });
             log.info("Updated template: {}", template.templateId());
 
         } catch (SQLException e) {
@@ -165,13 +138,11 @@ public class PostgresWatchlistTemplateRepository implements WatchlistTemplateRep
         String sql = "UPDATE watchlist_templates SET deleted_at = ?, version = version + 1 " +
                 "WHERE template_id = ?";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setTimestamp(1, Timestamp.from(Instant.now()));
-            stmt.setString(2, templateId);
-
-            stmt.executeUpdate();
+        try {
+            db.update("watchlist_templates.delete", sql, stmt -> {
+                stmt.setTimestamp(1, Timestamp.from(Instant.now()));
+                stmt.setString(2, templateId);
+            });
             log.info("Soft deleted template: {}", templateId);
 
         } catch (SQLException e) {
@@ -186,15 +157,13 @@ public class PostgresWatchlistTemplateRepository implements WatchlistTemplateRep
                 "(template_id, symbol, display_order, created_at) " +
                 "VALUES (?, ?, ?, ?)";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, symbol.templateId());
-            stmt.setString(2, symbol.symbol());
-            stmt.setInt(3, symbol.displayOrder());
-            stmt.setTimestamp(4, Timestamp.from(symbol.createdAt()));
-
-            stmt.executeUpdate();
+        try {
+            db.update("watchlist_templates.insertSymbol", sql, stmt -> {
+                stmt.setString(1, symbol.templateId());
+                stmt.setString(2, symbol.symbol());
+                stmt.setInt(3, symbol.displayOrder());
+                stmt.setTimestamp(4, Timestamp.from(symbol.createdAt()));
+            });
             log.info("Inserted symbol {} into template {}", symbol.symbol(), symbol.templateId());
 
         } catch (SQLException e) {
@@ -207,12 +176,8 @@ public class PostgresWatchlistTemplateRepository implements WatchlistTemplateRep
     public void deleteSymbol(long symbolId) {
         String sql = "DELETE FROM watchlist_template_symbols WHERE id = ?";
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setLong(1, symbolId);
-
-            stmt.executeUpdate();
+        try {
+            db.update("watchlist_templates.deleteSymbol", sql, stmt -> stmt.setLong(1, symbolId));
             log.info("Deleted template symbol: {}", symbolId);
 
         } catch (SQLException e) {
@@ -221,26 +186,25 @@ public class PostgresWatchlistTemplateRepository implements WatchlistTemplateRep
         }
     }
 
-    private WatchlistTemplate mapTemplate(ResultSet rs) throws SQLException {
-        Timestamp deletedAtTs = rs.getTimestamp("deleted_at");
+    private static WatchlistTemplate mapTemplate(Row row) throws SQLException {
         return new WatchlistTemplate(
-                rs.getString("template_id"),
-                rs.getString("template_name"),
-                rs.getString("description"),
-                rs.getInt("display_order"),
-                rs.getBoolean("enabled"),
-                rs.getTimestamp("created_at").toInstant(),
-                rs.getTimestamp("updated_at").toInstant(),
-                deletedAtTs != null ? deletedAtTs.toInstant() : null,
-                rs.getInt("version"));
+                row.getString("template_id"),
+                row.getString("template_name"),
+                row.getString("description"),
+                row.getInt("display_order"),
+                row.getBoolean("enabled"),
+                row.getTimestamp("created_at").toInstant(),
+                row.getTimestamp("updated_at").toInstant(),
+                row.getInstant("deleted_at"),
+                row.getInt("version"));
     }
 
-    private WatchlistTemplateSymbol mapTemplateSymbol(ResultSet rs) throws SQLException {
+    private static WatchlistTemplateSymbol mapTemplateSymbol(Row row) throws SQLException {
         return new WatchlistTemplateSymbol(
-                rs.getLong("id"),
-                rs.getString("template_id"),
-                rs.getString("symbol"),
-                rs.getInt("display_order"),
-                rs.getTimestamp("created_at").toInstant());
+                row.getLong("id"),
+                row.getString("template_id"),
+                row.getString("symbol"),
+                row.getInt("display_order"),
+                row.getTimestamp("created_at").toInstant());
     }
 }
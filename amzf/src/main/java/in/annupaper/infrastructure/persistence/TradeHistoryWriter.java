@@ -0,0 +1,404 @@
+package in.annupaper.infrastructure.persistence;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import in.annupaper.domain.model.Trade;
+import in.annupaper.infrastructure.persistence.jdbc.BatchBinder;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Trade History Writer - Batched, append-only writes to trades_history.
+ *
+ * {@link PostgresTradeRepository} updates trades_current in place and hands
+ * the resulting snapshot (one per version) here instead of inserting the
+ * history row on the caller's thread. Snapshots are flushed in one batch when
+ * the batch size is reached or the flush interval elapses. Rows are keyed by
+ * (trade_id, version) and inserted with ON CONFLICT DO NOTHING, so retrying a
+ * batch is safe.
+ *
+ * Durability: trades_current is always written synchronously; only the audit
+ * snapshots are deferred. Snapshots still pending when the process dies are
+ * lost (the current state is not).
+ *
+ * Failures: a batch rejected for its data (SQLSTATE class 22/23) is split in
+ * halves until the offending snapshots are isolated; those go to
+ * trades_history_dead_letter and the rest are written. Any other failure keeps
+ * the batch for the next flush, up to {@link #MAX_ATTEMPTS} flushes per
+ * snapshot, after which it is dead-lettered too. If the dead-letter insert
+ * fails as well the snapshots are dropped and counted.
+ *
+ * Backpressure: at most {@code capacity} snapshots are held. Past that, new
+ * snapshots are dropped and counted; producers never write on their own
+ * thread.
+ */
+public final class TradeHistoryWriter {
+    private static final Logger log = LoggerFactory.getLogger(TradeHistoryWriter.class);
+
+    /** Failed flushes after which a snapshot is dead-lettered. */
+    static final int MAX_ATTEMPTS = 10;
+
+    private static final String INSERT_SQL = """
+        INSERT INTO trades_history (%s, version)
+        VALUES (%s, ?)
+        ON CONFLICT (trade_id, version) DO NOTHING
+        """.formatted(PostgresTradeRepository.COLUMNS, PostgresTradeRepository.PLACEHOLDERS);
+
+    private static final String DEAD_LETTER_SQL = """
+        INSERT INTO trades_history_dead_letter (trade_id, version, snapshot, error, sql_state, attempts)
+        VALUES (?, ?, ?::jsonb, ?, ?, ?)
+        """;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private static final BatchBinder<Pending> BIND_SNAPSHOT = (ps, p) -> {
+        int idx = PostgresTradeRepository.bindColumns(ps, 1, p.snapshot());
+        ps.setInt(idx, p.snapshot().version());
+    };
+
+    /** A snapshot waiting to be written and the number of flushes it has failed. */
+    private record Pending(Trade snapshot, int attempts) {
+        Pending failed() {
+            return new Pending(snapshot, attempts + 1);
+        }
+    }
+
+    private final Db db;
+    private final int batchSize;
+    private final int capacity;
+    private final long flushIntervalMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private List<Pending> pending = new ArrayList<>();
+    private volatile boolean running;
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "trade-history-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Metrics
+    private final AtomicLong enqueued = new AtomicLong(0);
+    private final AtomicLong flushedRows = new AtomicLong(0);
+    private final AtomicLong flushBatches = new AtomicLong(0);
+    private final AtomicLong flushFailures = new AtomicLong(0);
+    private final AtomicLong retriedRows = new AtomicLong(0);
+    private final AtomicLong deadLetteredRows = new AtomicLong(0);
+    private final AtomicLong droppedRows = new AtomicLong(0);
+    private final AtomicLong lastFlushLatencyMs = new AtomicLong(0);
+    private final AtomicLong maxFlushLatencyMs = new AtomicLong(0);
+
+    /**
+     * @param batchSize       Pending snapshots that trigger an immediate flush
+     * @param capacity        Max pending snapshots; further snapshots are dropped
+     * @param flushIntervalMs Max time a snapshot waits before being flushed
+     */
+    public TradeHistoryWriter(Db db, int batchSize, int capacity, long flushIntervalMs) {
+        this.db = db;
+        this.batchSize = Math.max(1, batchSize);
+        this.capacity = Math.max(this.batchSize, capacity);
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    public void start() {
+        running = true;
+        flusher.scheduleWithFixedDelay(this::flushInternal, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Trade history writer started (batch={}, capacity={}, interval={}ms)",
+                batchSize, capacity, flushIntervalMs);
+    }
+
+    /**
+     * Flush everything pending and stop the flusher.
+     */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        flushNow();
+        running = false;
+        flusher.shutdown();
+        flushInternal();
+        log.info("Trade history writer stopped: {}", getMetrics());
+    }
+
+    /**
+     * Append a snapshot of one trade version. Writes synchronously if the
+     * writer has not been started; otherwise never waits on the database.
+     */
+    public void append(Trade snapshot) {
+        enqueued.incrementAndGet();
+        if (!running) {
+            if (write(List.of(new Pending(snapshot, 0))) != null) {
+                throw new RuntimeException("Failed to write trade history: " + snapshot.tradeId());
+            }
+            return;
+        }
+
+        int size;
+        lock.lock();
+        try {
+            if (pending.size() >= capacity) {
+                size = -1;
+            } else {
+                pending.add(new Pending(snapshot, 0));
+                size = pending.size();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (size < 0) {
+            dropped(1, snapshot);
+            requestFlush();
+        } else if (size >= batchSize) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Flush pending snapshots; waits for completion (e.g. before reading
+     * trades_history).
+     */
+    public void flushNow() {
+        if (!running) {
+            return;
+        }
+        try {
+            flusher.submit(this::flushInternal).get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Trade history flush did not complete: {}", e.getMessage());
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushInternal);
+        }
+    }
+
+    private void flushInternal() {
+        flushRequested.set(false);
+        flushLock.lock();
+        try {
+            List<Pending> batch;
+            lock.lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+            } finally {
+                lock.unlock();
+            }
+
+            List<Pending> retry = new ArrayList<>();
+            writeOrSplit(batch, retry);
+            if (!retry.isEmpty()) {
+                requeue(retry);
+            }
+        } catch (Exception e) {
+            log.error("Trade history flush error: {}", e.getMessage(), e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Write a batch. A batch rejected for its data is split until the bad
+     * snapshots are isolated and dead-lettered; on any other failure the batch
+     * (and whatever was not tried yet) goes to {@code retry}.
+     *
+     * @return false if the database failed and the flush should stop
+     */
+    private boolean writeOrSplit(List<Pending> batch, List<Pending> retry) {
+        Exception error = write(batch);
+        if (error == null) {
+            return true;
+        }
+
+        if (isDataError(error)) {
+            if (batch.size() == 1) {
+                deadLetter(batch, error);
+                return true;
+            }
+            int mid = batch.size() / 2;
+            if (!writeOrSplit(batch.subList(0, mid), retry)) {
+                retry.addAll(batch.subList(mid, batch.size()));
+                return false;
+            }
+            return writeOrSplit(batch.subList(mid, batch.size()), retry);
+        }
+
+        List<Pending> exhausted = new ArrayList<>();
+        for (Pending p : batch) {
+            Pending next = p.failed();
+            if (next.attempts() >= MAX_ATTEMPTS) {
+                exhausted.add(next);
+            } else {
+                retry.add(next);
+            }
+        }
+        retriedRows.addAndGet(batch.size() - exhausted.size());
+        if (!exhausted.isEmpty()) {
+            deadLetter(exhausted, error);
+        }
+        return false;
+    }
+
+    /**
+     * Put failed snapshots back ahead of anything appended since, within the
+     * capacity; the newest snapshots past it are dropped.
+     */
+    private void requeue(List<Pending> retry) {
+        List<Pending> overflow = List.of();
+        lock.lock();
+        try {
+            retry.addAll(pending);
+            if (retry.size() > capacity) {
+                List<Pending> tail = retry.subList(capacity, retry.size());
+                overflow = new ArrayList<>(tail);
+                tail.clear();
+            }
+            pending = retry;
+        } finally {
+            lock.unlock();
+        }
+        if (!overflow.isEmpty()) {
+            dropped(overflow.size(), overflow.get(0).snapshot());
+        }
+    }
+
+    /**
+     * @return null on success, otherwise the failure
+     */
+    private Exception write(List<Pending> batch) {
+        long started = System.nanoTime();
+        try {
+            db.batch("trades_history.append", INSERT_SQL, batch, BIND_SNAPSHOT);
+        } catch (Exception e) {
+            flushFailures.incrementAndGet();
+            log.warn("Failed to write {} trade history rows: {}", batch.size(), e.getMessage());
+            return e;
+        }
+
+        long latencyMs = (System.nanoTime() - started) / 1_000_000;
+        flushedRows.addAndGet(batch.size());
+        flushBatches.incrementAndGet();
+        lastFlushLatencyMs.set(latencyMs);
+        maxFlushLatencyMs.accumulateAndGet(latencyMs, Math::max);
+        return null;
+    }
+
+    private void deadLetter(List<Pending> rows, Exception error) {
+        String sqlState = sqlState(error);
+        try {
+            db.batch("trades_history_dead_letter.insert", DEAD_LETTER_SQL, rows, (ps, p) -> {
+                ps.setString(1, p.snapshot().tradeId());
+                ps.setInt(2, p.snapshot().version());
+                ps.setString(3, toJson(p.snapshot()));
+                ps.setString(4, error.getMessage());
+                ps.setString(5, sqlState);
+                ps.setInt(6, p.attempts());
+            });
+            deadLetteredRows.addAndGet(rows.size());
+            log.error("Moved {} trade history rows to trades_history_dead_letter (first {} v{}): {}",
+                    rows.size(), rows.get(0).snapshot().tradeId(), rows.get(0).snapshot().version(),
+                    error.getMessage());
+        } catch (Exception e) {
+            log.error("Dead-letter write failed: {}", e.getMessage());
+            dropped(rows.size(), rows.get(0).snapshot());
+        }
+    }
+
+    private void dropped(int count, Trade first) {
+        long total = droppedRows.addAndGet(count);
+        // First drop, then once per 1000: not one line per trade update while full
+        if (total == count || total / 1000 != (total - count) / 1000) {
+            log.warn("Dropped {} trade history rows (first {} v{}); {} dropped in total",
+                    count, first.tradeId(), first.version(), total);
+        }
+    }
+
+    private static String toJson(Trade snapshot) throws SQLException {
+        try {
+            return MAPPER.writeValueAsString(snapshot);
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Cannot serialize trade snapshot " + snapshot.tradeId(), e);
+        }
+    }
+
+    /**
+     * Data exceptions (class 22) and integrity violations (class 23) are
+     * caused by the rows themselves: the same batch can never succeed.
+     */
+    static boolean isDataError(Throwable error) {
+        String state = sqlState(error);
+        return state != null && (state.startsWith("22") || state.startsWith("23"));
+    }
+
+    /**
+     * First SQLSTATE on the cause chain, including the chained exceptions of a
+     * BatchUpdateException (where the driver reports the failing statement).
+     */
+    private static String sqlState(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                for (SQLException s = sql; s != null; s = s.getNextException()) {
+                    if (s.getSQLState() != null) {
+                        return s.getSQLState();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("enqueued", enqueued.get());
+        m.put("pending", (long) pendingCount());
+        m.put("flushedRows", flushedRows.get());
+        m.put("flushBatches", flushBatches.get());
+        m.put("flushFailures", flushFailures.get());
+        m.put("retriedRows", retriedRows.get());
+        m.put("deadLetteredRows", deadLetteredRows.get());
+        m.put("droppedRows", droppedRows.get());
+        m.put("lastFlushLatencyMs", lastFlushLatencyMs.get());
+        m.put("maxFlushLatencyMs", maxFlushLatencyMs.get());
+        return m;
+    }
+}
@@ -0,0 +1,13 @@
+package in.annupaper.infrastructure.persistence.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds the parameters for one item of a batch. Reused for every item (and
+ * shared by single-row and batch writes of the same statement).
+ */
+@FunctionalInterface
+public interface BatchBinder<T> {
+    void bind(PreparedStatement ps, T item) throws SQLException;
+}
@@ -0,0 +1,15 @@
+package in.annupaper.infrastructure.persistence.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds the parameters of one statement execution.
+ */
+@FunctionalInterface
+public interface Binder {
+    Binder NONE = ps -> {
+    };
+
+    void bind(PreparedStatement ps) throws SQLException;
+}
@@ -0,0 +1,74 @@
+package in.annupaper.infrastructure.persistence.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Null-safe parameter setters shared by the repositories' binders.
+ */
+public final class Binds {
+
+    public static void setIntOrNull(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value != null) {
+            ps.setInt(index, value);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+
+    public static void setLongOrNull(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+
+    public static void setBooleanOrNull(PreparedStatement ps, int index, Boolean value) throws SQLException {
+        if (value != null) {
+            ps.setBoolean(index, value);
+        } else {
+            ps.setNull(index, Types.BOOLEAN);
+        }
+    }
+
+    public static void setBigDecimalOrNull(PreparedStatement ps, int index, BigDecimal value) throws SQLException {
+        if (value != null) {
+            ps.setBigDecimal(index, value);
+        } else {
+            ps.setNull(index, Types.NUMERIC);
+        }
+    }
+
+    public static void setTimestampOrNull(PreparedStatement ps, int index, Instant value) throws SQLException {
+        if (value != null) {
+            ps.setTimestamp(index, Timestamp.from(value));
+        } else {
+            ps.setNull(index, Types.TIMESTAMP);
+        }
+    }
+
+    /**
+     * Bind a varchar[] (for {@code = ANY(?)} / {@code unnest(?)}).
+     */
+    public static void setVarcharArray(PreparedStatement ps, int index, Collection<String> values)
+            throws SQLException {
+        ps.setArray(index, ps.getConnection().createArrayOf("varchar", values.toArray()));
+    }
+
+    /**
+     * Bind an int[] (for {@code unnest(?)}).
+     */
+    public static void setIntArray(PreparedStatement ps, int index, Collection<Integer> values)
+            throws SQLException {
+        ps.setArray(index, ps.getConnection().createArrayOf("integer", values.toArray()));
+    }
+
+    private Binds() {
+    }
+}
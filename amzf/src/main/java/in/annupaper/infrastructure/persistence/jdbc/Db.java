@@ -0,0 +1,281 @@
+package in.annupaper.infrastructure.persistence.jdbc;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Data-access core shared by the Postgres repositories.
+ *
+ * - Statements are prepared from constant SQL strings, so the driver's
+ *   statement cache turns them into server-side prepared statements after
+ *   {@code prepareThreshold} executions (see the DataSource properties).
+ * - Rows are mapped through {@link Row}: column names are resolved to indexes
+ *   once per query shape (SQL string), not per row.
+ * - Every execution is timed per query name in {@code db_query_seconds}
+ *   (failures in {@code db_query_errors_total}).
+ *
+ * Errors are thrown as SQLException; repositories keep their own handling
+ * (log and rethrow, or log and return empty).
+ */
+public final class Db {
+    // Dynamic SQL beyond this many shapes is mapped without a cached plan
+    private static final int MAX_SHAPES = 2_048;
+
+    @FunctionalInterface
+    public interface Work<R> {
+        R run(Connection conn) throws Exception;
+    }
+
+    private final DataSource dataSource;
+    private final ConcurrentHashMap<String, Shape> shapes = new ConcurrentHashMap<>();
+    private final Histogram queryDuration;
+    private final Counter queryErrors;
+
+    public Db(DataSource dataSource) {
+        this(dataSource, new CollectorRegistry());
+    }
+
+    public Db(DataSource dataSource, CollectorRegistry registry) {
+        this.dataSource = dataSource;
+
+        this.queryDuration = Histogram.build()
+                .name("db_query_seconds")
+                .help("Repository query execution time in seconds (prepare, execute, map)")
+                .labelNames("query")
+                .buckets(0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5)
+                .register(registry);
+
+        this.queryErrors = Counter.build()
+                .name("db_query_errors_total")
+                .help("Repository query executions that failed")
+                .labelNames("query")
+                .register(registry);
+    }
+
+    public DataSource dataSource() {
+        return dataSource;
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Queries
+    // ═══════════════════════════════════════════════════════════════
+
+    public <T> List<T> query(String name, String sql, Binder binder, RowMapper<T> mapper) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            return query(conn, name, sql, binder, mapper);
+        }
+    }
+
+    public <T> List<T> query(Connection conn, String name, String sql, Binder binder, RowMapper<T> mapper)
+            throws SQLException {
+        return execute(name, () -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                binder.bind(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    List<T> rows = new ArrayList<>();
+                    Row row = new Row(rs, shape(sql, rs));
+                    while (rs.next()) {
+                        row.reset();
+                        rows.add(map(mapper, row));
+                    }
+                    return rows;
+                }
+            }
+        });
+    }
+
+    /**
+     * First row of the result, if any.
+     */
+    public <T> Optional<T> queryOne(String name, String sql, Binder binder, RowMapper<T> mapper)
+            throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            return queryOne(conn, name, sql, binder, mapper);
+        }
+    }
+
+    public <T> Optional<T> queryOne(Connection conn, String name, String sql, Binder binder, RowMapper<T> mapper)
+            throws SQLException {
+        return execute(name, () -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                binder.bind(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        return Optional.empty();
+                    }
+                    Row row = new Row(rs, shape(sql, rs));
+                    return Optional.ofNullable(map(mapper, row));
+                }
+            }
+        });
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Updates
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * @return Rows affected
+     */
+    public int update(String name, String sql, Binder binder) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            return update(conn, name, sql, binder);
+        }
+    }
+
+    public int update(Connection conn, String name, String sql, Binder binder) throws SQLException {
+        return execute(name, () -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                binder.bind(ps);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Execute one statement per item as a single JDBC batch (one round trip
+     * with reWriteBatchedInserts). Runs in the caller's transaction.
+     *
+     * With reWriteBatchedInserts the items of an INSERT are sent as multi-row
+     * VALUES, so an {@code ON CONFLICT DO UPDATE} batch must not contain two
+     * items with the same conflict key: PostgreSQL rejects the statement
+     * (21000, "cannot affect row a second time"). Collapse such batches with
+     * {@link #lastPerKey} first.
+     *
+     * @return Rows affected (sum over items; SUCCESS_NO_INFO counts as 1)
+     */
+    public <T> int batch(Connection conn, String name, String sql, Collection<? extends T> items,
+            BatchBinder<T> binder) throws SQLException {
+        if (items.isEmpty()) {
+            return 0;
+        }
+        return execute(name, () -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (T item : items) {
+                    binder.bind(ps, item);
+                    ps.addBatch();
+                }
+                int total = 0;
+                for (int n : ps.executeBatch()) {
+                    total += n == PreparedStatement.SUCCESS_NO_INFO ? 1 : Math.max(n, 0);
+                }
+                return total;
+            }
+        });
+    }
+
+    /**
+     * Batch in its own transaction.
+     */
+    public <T> int batch(String name, String sql, Collection<? extends T> items, BatchBinder<T> binder)
+            throws SQLException {
+        if (items.isEmpty()) {
+            return 0;
+        }
+        return inTransaction(conn -> batch(conn, name, sql, items, binder));
+    }
+
+    /**
+     * Items with duplicate keys collapsed to the last one (what executing them
+     * one by one would leave), in first-seen key order.
+     */
+    public static <T, K> List<T> lastPerKey(Collection<? extends T> items, Function<? super T, K> key) {
+        Map<K, T> byKey = new LinkedHashMap<>(items.size() * 2);
+        for (T item : items) {
+            byKey.put(key.apply(item), item);
+        }
+        return new ArrayList<>(byKey.values());
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Transactions
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Run work on one connection in a transaction: commit on success, roll
+     * back on any exception.
+     */
+    public <R> R inTransaction(Work<R> work) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                R result = work.run(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } catch (Exception e) {
+                conn.rollback();
+                throw new SQLException(e.getMessage(), e);
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Internals
+    // ═══════════════════════════════════════════════════════════════
+
+    @FunctionalInterface
+    private interface Execution<R> {
+        R run() throws Exception;
+    }
+
+    private <R> R execute(String name, Execution<R> execution) throws SQLException {
+        long started = System.nanoTime();
+        try {
+            return execution.run();
+        } catch (SQLException | RuntimeException e) {
+            queryErrors.labels(name).inc();
+            throw e;
+        } catch (Exception e) {
+            queryErrors.labels(name).inc();
+            throw new SQLException(e.getMessage(), e);
+        } finally {
+            queryDuration.labels(name).observe((System.nanoTime() - started) / 1e9);
+        }
+    }
+
+    Shape shape(String sql, ResultSet rs) throws SQLException {
+        Shape shape = shapes.get(sql);
+        ResultSetMetaData meta = rs.getMetaData();
+        if (shape != null && shape.matches(meta)) {
+            return shape;
+        }
+        // First execution, or the table changed underneath (SELECT *)
+        shape = Shape.of(meta);
+        if (shapes.size() < MAX_SHAPES || shapes.containsKey(sql)) {
+            shapes.put(sql, shape);
+        }
+        return shape;
+    }
+
+    private static <T> T map(RowMapper<T> mapper, Row row) throws SQLException {
+        try {
+            return mapper.map(row);
+        } catch (SQLException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException("Failed to map row: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package in.annupaper.infrastructure.persistence.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Current row of a query, read by column name through the query's
+ * {@link Shape} (name → index resolved once per shape).
+ */
+public final class Row {
+    private final ResultSet rs;
+    private final Shape shape;
+    private int position;
+
+    Row(ResultSet rs, Shape shape) {
+        this.rs = rs;
+        this.shape = shape;
+    }
+
+    /**
+     * Start reading the next row.
+     */
+    void reset() {
+        position = 0;
+    }
+
+    private int index(String column) throws SQLException {
+        return shape.index(position++, column);
+    }
+
+    /**
+     * Whether the result has a column with this name.
+     */
+    public boolean has(String column) {
+        return shape.has(column);
+    }
+
+    public String getString(String column) throws SQLException {
+        return rs.getString(index(column));
+    }
+
+    public String getString(int column) throws SQLException {
+        return rs.getString(column);
+    }
+
+    public int getInt(String column) throws SQLException {
+        return rs.getInt(index(column));
+    }
+
+    public int getInt(int column) throws SQLException {
+        return rs.getInt(column);
+    }
+
+    public long getLong(String column) throws SQLException {
+        return rs.getLong(index(column));
+    }
+
+    public long getLong(int column) throws SQLException {
+        return rs.getLong(column);
+    }
+
+    public double getDouble(String column) throws SQLException {
+        return rs.getDouble(index(column));
+    }
+
+    public boolean getBoolean(String column) throws SQLException {
+        return rs.getBoolean(index(column));
+    }
+
+    public boolean getBoolean(int column) throws SQLException {
+        return rs.getBoolean(column);
+    }
+
+    public BigDecimal getBigDecimal(String column) throws SQLException {
+        return rs.getBigDecimal(index(column));
+    }
+
+    public Timestamp getTimestamp(String column) throws SQLException {
+        return rs.getTimestamp(index(column));
+    }
+
+    public Object getObject(String column) throws SQLException {
+        return rs.getObject(index(column));
+    }
+
+    public Array getArray(String column) throws SQLException {
+        return rs.getArray(index(column));
+    }
+
+    public boolean wasNull() throws SQLException {
+        return rs.wasNull();
+    }
+
+    /**
+     * Timestamp column as an Instant (null if NULL).
+     */
+    public Instant getInstant(String column) throws SQLException {
+        Timestamp ts = rs.getTimestamp(index(column));
+        return ts != null ? ts.toInstant() : null;
+    }
+
+    /**
+     * Integer column, null if NULL.
+     */
+    public Integer getIntOrNull(String column) throws SQLException {
+        int value = rs.getInt(index(column));
+        return rs.wasNull() ? null : value;
+    }
+
+    /**
+     * Boolean column, null if NULL.
+     */
+    public Boolean getBooleanOrNull(String column) throws SQLException {
+        boolean value = rs.getBoolean(index(column));
+        return rs.wasNull() ? null : value;
+    }
+}
@@ -0,0 +1,12 @@
+package in.annupaper.infrastructure.persistence.jdbc;
+
+/**
+ * Maps the current row of a query to an object.
+ *
+ * Columns are read by name through {@link Row}; the names are resolved to
+ * column indexes once per query shape, not per row.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    T map(Row row) throws Exception;
+}
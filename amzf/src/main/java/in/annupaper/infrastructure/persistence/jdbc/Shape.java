@@ -0,0 +1,112 @@
+package in.annupaper.infrastructure.persistence.jdbc;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Column plan of one query shape (SQL string + result columns).
+ *
+ * A mapper reads its columns in the same order on every row, so the plan
+ * records the n-th column name a mapper asks for and the index it resolved
+ * to. Later rows (and later executions) replay the plan: the n-th lookup is
+ * an identity check on the (interned) name plus an array read. A mapper that
+ * asks for columns in a different order falls back to the label map.
+ *
+ * A cached shape is only reused for a result with exactly the same column
+ * labels in the same order ({@link #matches}): {@code SELECT *} after a column
+ * was dropped and another added has the same column count but different
+ * indexes.
+ */
+final class Shape {
+    private record Plan(String[] names, int[] indexes) {
+    }
+
+    private static final Plan EMPTY = new Plan(new String[0], new int[0]);
+
+    private final String[] labels;
+    private final Map<String, Integer> byLabel;
+    private volatile Plan plan = EMPTY;
+
+    private Shape(String[] labels, Map<String, Integer> byLabel) {
+        this.labels = labels;
+        this.byLabel = byLabel;
+    }
+
+    static Shape of(ResultSetMetaData meta) throws SQLException {
+        int count = meta.getColumnCount();
+        String[] labels = new String[count];
+        Map<String, Integer> byLabel = new HashMap<>(count * 2);
+        for (int i = 1; i <= count; i++) {
+            labels[i - 1] = meta.getColumnLabel(i);
+            // First occurrence wins, as ResultSet.findColumn
+            byLabel.putIfAbsent(labels[i - 1].toLowerCase(Locale.ROOT), i);
+        }
+        return new Shape(labels, byLabel);
+    }
+
+    /**
+     * Whether a result has the columns this shape was built from (same
+     * labels, same order). Reads the labels the driver already holds; no
+     * round trip.
+     */
+    boolean matches(ResultSetMetaData meta) throws SQLException {
+        if (meta.getColumnCount() != labels.length) {
+            return false;
+        }
+        for (int i = 0; i < labels.length; i++) {
+            if (!labels[i].equals(meta.getColumnLabel(i + 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean has(String column) {
+        return byLabel.containsKey(column.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Index of the {@code position}-th column a mapper reads.
+     */
+    int index(int position, String column) throws SQLException {
+        Plan p = plan;
+        if (position < p.names.length && p.names[position] == column) {
+            return p.indexes[position];
+        }
+
+        Integer index = byLabel.get(column);
+        if (index == null) {
+            index = byLabel.get(column.toLowerCase(Locale.ROOT));
+        }
+        if (index == null) {
+            throw new SQLException("The column name " + column + " was not found in this ResultSet.", "42703");
+        }
+        if (position == p.names.length) {
+            record(position, column, index);
+        }
+        return index;
+    }
+
+    /**
+     * Lookups recorded in the plan so far.
+     */
+    int planned() {
+        return plan.names.length;
+    }
+
+    private synchronized void record(int position, String column, int index) {
+        Plan p = plan;
+        if (position != p.names.length) {
+            return; // Recorded by another thread
+        }
+        String[] names = Arrays.copyOf(p.names, position + 1);
+        int[] indexes = Arrays.copyOf(p.indexes, position + 1);
+        names[position] = column;
+        indexes[position] = index;
+        plan = new Plan(names, indexes);
+    }
+}
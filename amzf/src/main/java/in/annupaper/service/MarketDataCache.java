@@ -1,42 +1,78 @@
 package in.annupaper.service;
 
+import in.annupaper.domain.model.Paise;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * In-memory cache for latest tick prices.
  * Provides fast access to current market data without DB queries.
+ *
+ * Writes are allocation-free: each symbol owns a mutable slot holding the
+ * price in paise, updated in place. Readers get an immutable TickData snapshot.
  */
 public final class MarketDataCache {
     private static final Logger log = LoggerFactory.getLogger(MarketDataCache.class);
 
-    private final ConcurrentHashMap<String, TickData> latestTicks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Slot> latestTicks = new ConcurrentHashMap<>();
+
+    /**
+     * Update latest tick price for a symbol (hot path).
+     */
+    public void updateTick(String symbol, long lastPricePaise, Instant timestamp) {
+        Slot slot = latestTicks.get(symbol);
+        if (slot == null) {
+            slot = latestTicks.computeIfAbsent(symbol, k -> new Slot());
+        }
+        slot.set(lastPricePaise, timestamp);
+        if (log.isDebugEnabled()) {
+            log.debug("Updated tick cache: {} = {} @ {}", symbol, Paise.toBigDecimal(lastPricePaise), timestamp);
+        }
+    }
 
     /**
      * Update latest tick price for a symbol.
      */
     public void updateTick(String symbol, BigDecimal lastPrice, Instant timestamp) {
-        latestTicks.put(symbol, new TickData(lastPrice, timestamp));
-        log.debug("Updated tick cache: {} = {} @ {}", symbol, lastPrice, timestamp);
+        updateTick(symbol, Paise.of(lastPrice), timestamp);
     }
 
     /**
      * Get latest tick for a symbol.
      */
     public TickData getLatestTick(String symbol) {
-        return latestTicks.get(symbol);
+        Slot slot = latestTicks.get(symbol);
+        return slot != null ? slot.snapshot() : null;
+    }
+
+    /**
+     * Get latest price (paise) for a symbol without allocating.
+     *
+     * @return price in paise, or {@link Paise#NONE} if no tick has been seen
+     */
+    public long getLatestPricePaise(String symbol) {
+        Slot slot = latestTicks.get(symbol);
+        return slot != null ? slot.pricePaise() : Paise.NONE;
     }
 
     /**
      * Get all latest ticks (for debugging/monitoring).
      */
     public Map<String, TickData> getAllTicks() {
-        return Map.copyOf(latestTicks);
+        Map<String, TickData> result = new HashMap<>();
+        latestTicks.forEach((symbol, slot) -> {
+            TickData tick = slot.snapshot();
+            if (tick != null) {
+                result.put(symbol, tick);
+            }
+        });
+        return Map.copyOf(result);
     }
 
     /**
@@ -45,7 +81,7 @@ public final class MarketDataCache {
     public Map<String, TickData> getLatestTicks(Iterable<String> symbols) {
         Map<String, TickData> result = new ConcurrentHashMap<>();
         for (String symbol : symbols) {
-            TickData tick = latestTicks.get(symbol);
+            TickData tick = getLatestTick(symbol);
             if (tick != null) {
                 result.put(symbol, tick);
             }
@@ -68,14 +104,42 @@ public final class MarketDataCache {
         return latestTicks.size();
     }
 
+    /**
+     * Mutable per-symbol slot (price and timestamp updated together).
+     */
+    private static final class Slot {
+        private long pricePaise = Paise.NONE;
+        private Instant timestamp;
+
+        synchronized void set(long pricePaise, Instant timestamp) {
+            this.pricePaise = pricePaise;
+            this.timestamp = timestamp;
+        }
+
+        synchronized long pricePaise() {
+            return pricePaise;
+        }
+
+        synchronized TickData snapshot() {
+            if (pricePaise == Paise.NONE || timestamp == null) {
+                return null;
+            }
+            return new TickData(pricePaise, timestamp);
+        }
+    }
+
     /**
      * Immutable tick data.
      */
-    public record TickData(BigDecimal lastPrice, Instant timestamp) {
+    public record TickData(long lastPricePaise, Instant timestamp) {
         public TickData {
-            if (lastPrice == null || timestamp == null) {
+            if (lastPricePaise == Paise.NONE || timestamp == null) {
                 throw new IllegalArgumentException("lastPrice and timestamp cannot be null");
             }
         }
+
+        public BigDecimal lastPrice() {
+            return Paise.toBigDecimal(lastPricePaise);
+        }
     }
 }
@@ -41,9 +41,7 @@ public final class WatchdogManager {
     private final WatchlistRepository watchlistRepo;
     private final UserBrokerSessionRepository sessionRepo;
     private final CandleStore candleStore;
-    private final TickCandleBuilder tickCandleBuilder;
-    private final ExitSignalService exitSignalService;
-    private final MtfSignalGenerator mtfSignalGenerator;
+    private final BrokerAdapter.TickListener tickFeed;
     private final RecoveryManager recoveryManager;
     private final MtfBackfillService mtfBackfillService;
 
@@ -62,9 +60,7 @@ public final class WatchdogManager {
             WatchlistRepository watchlistRepo,
             UserBrokerSessionRepository sessionRepo,
             CandleStore candleStore,
-            TickCandleBuilder tickCandleBuilder,
-            ExitSignalService exitSignalService,
-            MtfSignalGenerator mtfSignalGenerator,
+            BrokerAdapter.TickListener tickFeed,
             RecoveryManager recoveryManager,
             MtfBackfillService mtfBackfillService) {
         this.dataSource = dataSource;
@@ -74,9 +70,7 @@ public final class WatchdogManager {
         this.watchlistRepo = watchlistRepo;
         this.sessionRepo = sessionRepo;
         this.candleStore = candleStore;
-        this.tickCandleBuilder = tickCandleBuilder;
-        this.exitSignalService = exitSignalService;
-        this.mtfSignalGenerator = mtfSignalGenerator;
+        this.tickFeed = tickFeed;
         this.recoveryManager = recoveryManager;
         this.mtfBackfillService = mtfBackfillService;
     }
@@ -354,9 +348,7 @@ public final class WatchdogManager {
                 if (!symbols.isEmpty()) {
                     log.info("[WATCHDOG] Resubscribing to ticks for {} symbols after WebSocket reconnect",
                             symbols.size());
-                    adapter.subscribeTicks(symbols, tickCandleBuilder);
-                    adapter.subscribeTicks(symbols, exitSignalService);
-                    adapter.subscribeTicks(symbols, mtfSignalGenerator);
+                    adapter.subscribeTicks(symbols, tickFeed);
                 }
 
                 if (fyersAdapter.isWebSocketConnected()) {
@@ -488,9 +480,7 @@ public final class WatchdogManager {
 
             // Resubscribe to ticks
             log.info("[WATCHDOG] Resubscribing to ticks for {} symbols", symbols.size());
-            adapter.subscribeTicks(symbols, tickCandleBuilder);
-            adapter.subscribeTicks(symbols, exitSignalService);
-            adapter.subscribeTicks(symbols, mtfSignalGenerator);
+            adapter.subscribeTicks(symbols, tickFeed);
 
             log.info("[WATCHDOG] ✓ Tick stream resubscribed");
             return true;
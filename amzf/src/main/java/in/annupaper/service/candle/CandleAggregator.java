@@ -4,23 +4,36 @@ import in.annupaper.domain.model.EventType;
 import in.annupaper.domain.model.TimeframeType;
 import in.annupaper.domain.model.HistoricalCandle;
 import in.annupaper.service.core.EventService;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Candle Aggregator - Build 25-min and 125-min candles from 1-min candles.
  *
- * Pattern: On every 1-min candle close, recompute the current 25-min and
- * 125-min buckets
- * from all 1-min candles in that bucket. This ensures correctness and
- * simplicity.
+ * Pattern: Each symbol keeps one open bucket accumulator per target timeframe.
+ * Every closed 1-min candle is folded into the open 25-min and 125-min buckets
+ * in O(1) (open kept, high/low/close/volume updated). The in-memory candle is
+ * refreshed on every fold; PostgreSQL and the CANDLE event are written when a
+ * bucket closes, or at most once per persist interval for the open bucket.
+ *
+ * A bucket's accumulator is seeded from its first minute directly. Fallback to
+ * a full rescan of the bucket's 1-min candles happens only when the
+ * accumulator cannot be trusted: first candle seen mid-bucket (restart), a
+ * late/out-of-order or repeated 1-min candle, and the backfill paths. Rescans
+ * reseed the accumulator so incremental folding resumes afterwards.
  *
  * Alignment: Buckets align from market session start (09:15 IST), not unix
  * epoch.
@@ -28,17 +41,70 @@ import java.util.Map;
 public final class CandleAggregator {
     private static final Logger log = LoggerFactory.getLogger(CandleAggregator.class);
 
+    private static final long DEFAULT_PERSIST_INTERVAL_MS = 5 * 60_000L;
+
     private final CandleStore candleStore;
     private final EventService eventService;
+    private final long persistIntervalMs;
+
+    // symbol -> open buckets (index 0 = 25-min, 1 = 125-min)
+    private final ConcurrentHashMap<String, SymbolBuckets> openBuckets = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final Counter candlesFolded;
+    private final Counter bucketsClosed;
+    private final Counter throttledPersists;
+    private final Counter rescans;
 
     public CandleAggregator(CandleStore candleStore, EventService eventService) {
+        this(candleStore, eventService, DEFAULT_PERSIST_INTERVAL_MS);
+    }
+
+    /**
+     * @param persistIntervalMs Min interval between PostgreSQL writes of an
+     *                          open (not yet closed) bucket
+     */
+    public CandleAggregator(CandleStore candleStore, EventService eventService, long persistIntervalMs) {
+        this(candleStore, eventService, persistIntervalMs, new CollectorRegistry());
+    }
+
+    public CandleAggregator(CandleStore candleStore, EventService eventService, long persistIntervalMs,
+            CollectorRegistry registry) {
         this.candleStore = candleStore;
         this.eventService = eventService;
+        this.persistIntervalMs = persistIntervalMs;
+
+        this.candlesFolded = Counter.build()
+                .name("candle_aggregator_folded_total")
+                .help("Closed 1-minute candles folded into open 25/125-minute buckets")
+                .register(registry);
+        this.bucketsClosed = Counter.build()
+                .name("candle_aggregator_buckets_closed_total")
+                .help("25/125-minute buckets closed")
+                .register(registry);
+        this.throttledPersists = Counter.build()
+                .name("candle_aggregator_throttled_persists_total")
+                .help("Throttled PostgreSQL writes of still-open buckets")
+                .register(registry);
+        this.rescans = Counter.build()
+                .name("candle_aggregator_rescans_total")
+                .help("Buckets rebuilt by rescanning 1-minute candles instead of folding")
+                .register(registry);
+        Gauge.build()
+                .name("candle_aggregator_open_symbols")
+                .help("Symbols with open 25/125-minute buckets")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return openBuckets.size();
+                    }
+                });
     }
 
     /**
      * Called when a 1-minute candle closes.
-     * Recomputes both 25-min and 125-min buckets for the symbol.
+     * Folds the candle into the open 25-min and 125-min buckets for the symbol.
      *
      * @param symbol       Symbol to aggregate
      * @param oneMinCandle The closed 1-minute candle
@@ -49,85 +115,190 @@ public final class CandleAggregator {
             return;
         }
 
-        // Aggregate and persist 25-min candle
-        aggregate(symbol, TimeframeType.MINUTE_25, oneMinCandle.timestamp(), 25);
+        SymbolBuckets buckets = openBuckets.computeIfAbsent(symbol, k -> new SymbolBuckets());
+        synchronized (buckets) {
+            fold(symbol, buckets, 0, TimeframeType.MINUTE_25, 25, oneMinCandle);
+            fold(symbol, buckets, 1, TimeframeType.MINUTE_125, 125, oneMinCandle);
+        }
+    }
+
+    /**
+     * Persist every open bucket (on shutdown or market close).
+     */
+    public void flushAll() {
+        for (Map.Entry<String, SymbolBuckets> entry : openBuckets.entrySet()) {
+            SymbolBuckets buckets = entry.getValue();
+            synchronized (buckets) {
+                for (BucketAccumulator acc : buckets.slots) {
+                    if (acc != null && acc.dirty) {
+                        persist(entry.getKey(), acc);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fold one closed 1-min candle into the open bucket of a target timeframe.
+     * Caller holds the SymbolBuckets lock.
+     */
+    private void fold(String symbol, SymbolBuckets buckets, int slot, TimeframeType targetTimeframe,
+            int intervalMinutes, HistoricalCandle candle) {
+        Instant bucketStart = SessionClock.floorToIntervalFromSessionStart(candle.timestamp(), intervalMinutes);
+        BucketAccumulator acc = buckets.slots[slot];
+
+        if (acc != null && bucketStart.isBefore(acc.bucketStart)) {
+            // Late candle for an already-closed bucket: recompute that bucket only
+            aggregate(symbol, targetTimeframe, candle.timestamp(), intervalMinutes);
+            return;
+        }
+
+        if (acc != null && !bucketStart.equals(acc.bucketStart)) {
+            // Previous bucket closed without seeing its last minute (gap / session end)
+            if (acc.dirty) {
+                persist(symbol, acc);
+            }
+            bucketsClosed.inc();
+            acc = null;
+        }
+
+        if (acc == null && candle.timestamp().equals(bucketStart)) {
+            // First minute of the bucket: nothing earlier to rescan
+            acc = new BucketAccumulator(targetTimeframe, bucketStart, intervalMinutes);
+            acc.add(candle);
+            buckets.slots[slot] = acc;
+            candlesFolded.inc();
+        } else if (acc == null || !candle.timestamp().isAfter(acc.lastMinute)) {
+            // Joined mid-bucket (or a repeated minute): rescan once to seed
+            acc = rescan(symbol, targetTimeframe, bucketStart, intervalMinutes, candle);
+            buckets.slots[slot] = acc;
+        } else {
+            acc.add(candle);
+            candlesFolded.inc();
+        }
+
+        candleStore.upsertMemory(acc.toCandle(symbol));
+
+        if (!candle.timestamp().plus(1, ChronoUnit.MINUTES).isBefore(acc.bucketEnd)) {
+            // Last minute of the bucket: final write
+            persist(symbol, acc);
+            bucketsClosed.inc();
+            buckets.slots[slot] = null;
+        } else if (System.currentTimeMillis() - acc.lastPersistMillis >= persistIntervalMs) {
+            persist(symbol, acc);
+            throttledPersists.inc();
+        }
+    }
+
+    /**
+     * Seed an accumulator from the 1-min candles already stored for the bucket,
+     * merged with the triggering candle (which may not be visible in the store
+     * yet, or may replace a stored minute).
+     */
+    private BucketAccumulator rescan(String symbol, TimeframeType targetTimeframe, Instant bucketStart,
+            int intervalMinutes, HistoricalCandle candle) {
+        rescans.inc();
+        BucketAccumulator acc = new BucketAccumulator(targetTimeframe, bucketStart, intervalMinutes);
+        List<HistoricalCandle> minutes = new ArrayList<>();
+        for (HistoricalCandle c : loadBucket(symbol, bucketStart, acc.bucketEnd)) {
+            if (!c.timestamp().equals(candle.timestamp())) {
+                minutes.add(c);
+            }
+        }
+        minutes.add(candle);
+        minutes.sort(Comparator.comparing(HistoricalCandle::timestamp));
+        for (HistoricalCandle c : minutes) {
+            acc.add(c);
+        }
+        return acc;
+    }
 
-        // Aggregate and persist 125-min candle
-        aggregate(symbol, TimeframeType.MINUTE_125, oneMinCandle.timestamp(), 125);
+    private void persist(String symbol, BucketAccumulator acc) {
+        HistoricalCandle candle = acc.toCandle(symbol);
+        acc.dirty = false;
+        acc.lastPersistMillis = System.currentTimeMillis();
+        write(candle, acc.count);
     }
 
     /**
-     * Aggregate multi-minute candle from 1-min candles.
+     * Upsert an aggregated candle (memory + PostgreSQL) and emit its CANDLE event.
+     */
+    private void write(HistoricalCandle aggregatedCandle, int sourceCandles) {
+        // Upsert to prevent duplicates (recomputation overwrites)
+        candleStore.upsert(aggregatedCandle);
+
+        // Emit CANDLE event
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("symbol", aggregatedCandle.symbol());
+        payload.put("timeframe", aggregatedCandle.timeframe().name());
+        payload.put("timestamp", aggregatedCandle.timestamp().toEpochMilli());
+        payload.put("open", aggregatedCandle.open());
+        payload.put("high", aggregatedCandle.high());
+        payload.put("low", aggregatedCandle.low());
+        payload.put("close", aggregatedCandle.close());
+        payload.put("volume", aggregatedCandle.volume());
+
+        eventService.emitGlobal(EventType.CANDLE, payload, "CANDLE_AGGREGATOR");
+
+        log.debug("Aggregated {} candle for {} @ {} from {} 1-min candles",
+                aggregatedCandle.timeframe(), aggregatedCandle.symbol(), aggregatedCandle.timestamp(), sourceCandles);
+    }
+
+    private List<HistoricalCandle> loadBucket(String symbol, Instant bucketStart, Instant bucketEnd) {
+        return candleStore.getRange(
+                symbol,
+                TimeframeType.LTF,
+                bucketStart,
+                bucketEnd.minus(1, ChronoUnit.MINUTES) // Exclusive end, so subtract 1 minute
+        );
+    }
+
+    /**
+     * Aggregate multi-minute candle from 1-min candles by rescanning the bucket.
+     * Used by the backfill paths and for late candles. If the bucket is the one
+     * currently open for the symbol, the accumulator is reseeded from the result.
      *
      * @param symbol           Symbol to aggregate
      * @param targetTimeframe  Target timeframe (25-min or 125-min)
-     * @param triggerTimestamp The timestamp of the 1-min candle that triggered this
-     *                         aggregation
+     * @param triggerTimestamp Any timestamp inside the bucket
      * @param intervalMinutes  Interval size (25 or 125)
      */
     private void aggregate(String symbol, TimeframeType targetTimeframe, Instant triggerTimestamp,
             int intervalMinutes) {
+        rescans.inc();
+
         // Calculate bucket boundaries using SessionClock
         Instant bucketStart = SessionClock.floorToIntervalFromSessionStart(triggerTimestamp, intervalMinutes);
-        Instant bucketEnd = bucketStart.plus(intervalMinutes, ChronoUnit.MINUTES);
+        BucketAccumulator acc = new BucketAccumulator(targetTimeframe, bucketStart, intervalMinutes);
 
         // Fetch all 1-min candles in this bucket from store
-        List<HistoricalCandle> oneMinCandles = candleStore.getRange(
-                symbol,
-                TimeframeType.LTF,
-                bucketStart,
-                bucketEnd.minus(1, ChronoUnit.MINUTES) // Exclusive end, so subtract 1 minute
-        );
+        List<HistoricalCandle> oneMinCandles = loadBucket(symbol, bucketStart, acc.bucketEnd);
 
         if (oneMinCandles.isEmpty()) {
             log.debug("No 1-min candles found for {} {} bucket {} to {}",
-                    symbol, targetTimeframe, bucketStart, bucketEnd);
+                    symbol, targetTimeframe, bucketStart, acc.bucketEnd);
             return;
         }
 
-        // Aggregate OHLCV
-        BigDecimal open = oneMinCandles.get(0).open(); // First candle's open
-        BigDecimal close = oneMinCandles.get(oneMinCandles.size() - 1).close(); // Last candle's close
-        BigDecimal high = oneMinCandles.stream()
-                .map(HistoricalCandle::high)
-                .max(BigDecimal::compareTo)
-                .orElse(BigDecimal.ZERO);
-        BigDecimal low = oneMinCandles.stream()
-                .map(HistoricalCandle::low)
-                .min(BigDecimal::compareTo)
-                .orElse(BigDecimal.ZERO);
-        long volume = oneMinCandles.stream()
-                .mapToLong(HistoricalCandle::volume)
-                .sum();
-
-        // Create aggregated candle
-        HistoricalCandle aggregatedCandle = new HistoricalCandle(
-                symbol,
-                targetTimeframe,
-                bucketStart,
-                open,
-                high,
-                low,
-                close,
-                volume);
-        // Upsert to prevent duplicates (recomputation overwrites)
-        candleStore.upsert(aggregatedCandle);
-
-        // Emit CANDLE event
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("symbol", symbol);
-        payload.put("timeframe", targetTimeframe.name());
-        payload.put("timestamp", bucketStart.toEpochMilli());
-        payload.put("open", open);
-        payload.put("high", high);
-        payload.put("low", low);
-        payload.put("close", close);
-        payload.put("volume", volume);
-
-        eventService.emitGlobal(EventType.CANDLE, payload, "CANDLE_AGGREGATOR");
+        for (HistoricalCandle c : oneMinCandles) {
+            acc.add(c);
+        }
+        write(acc.toCandle(symbol), acc.count);
 
-        log.debug("Aggregated {} candle for {} @ {} from {} 1-min candles",
-                targetTimeframe, symbol, bucketStart, oneMinCandles.size());
+        // Keep the live accumulator consistent with what was just written
+        SymbolBuckets buckets = openBuckets.get(symbol);
+        if (buckets != null) {
+            int slot = intervalMinutes == 25 ? 0 : 1;
+            synchronized (buckets) {
+                BucketAccumulator open = buckets.slots[slot];
+                if (open != null && open.bucketStart.equals(bucketStart) && !open.lastMinute.isAfter(acc.lastMinute)) {
+                    acc.timeframe = open.timeframe;
+                    acc.dirty = false;
+                    acc.lastPersistMillis = System.currentTimeMillis();
+                    buckets.slots[slot] = acc;
+                }
+            }
+        }
     }
 
     /**
@@ -182,4 +353,71 @@ public final class CandleAggregator {
 
         log.info("Backfilled {} {} candles for {}", count, targetTimeframe, symbol);
     }
+
+    /**
+     * Aggregator metrics (folds vs rescans, closed buckets, throttled writes).
+     * Also exported to Prometheus.
+     */
+    public Map<String, Long> getMetrics() {
+        return Map.of(
+                "candlesFolded", (long) candlesFolded.get(),
+                "bucketsClosed", (long) bucketsClosed.get(),
+                "throttledPersists", (long) throttledPersists.get(),
+                "rescans", (long) rescans.get(),
+                "openSymbols", (long) openBuckets.size());
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Bucket state
+    // ═══════════════════════════════════════════════════════════════
+
+    private static final class SymbolBuckets {
+        final BucketAccumulator[] slots = new BucketAccumulator[2];
+    }
+
+    /**
+     * Running OHLCV of one bucket. Guarded by the owning SymbolBuckets lock.
+     */
+    private static final class BucketAccumulator {
+        TimeframeType timeframe;
+        final Instant bucketStart;
+        final Instant bucketEnd;
+        BigDecimal open;
+        BigDecimal high;
+        BigDecimal low;
+        BigDecimal close;
+        long volume;
+        int count;
+        Instant lastMinute = Instant.MIN;
+        boolean dirty;
+        long lastPersistMillis;
+
+        BucketAccumulator(TimeframeType timeframe, Instant bucketStart, int intervalMinutes) {
+            this.timeframe = timeframe;
+            this.bucketStart = bucketStart;
+            this.bucketEnd = bucketStart.plus(intervalMinutes, ChronoUnit.MINUTES);
+            this.lastPersistMillis = System.currentTimeMillis();
+        }
+
+        void add(HistoricalCandle c) {
+            if (count == 0) {
+                open = c.open();
+                high = c.high();
+                low = c.low();
+            } else {
+                high = high.max(c.high());
+                low = low.min(c.low());
+            }
+            close = c.close();
+            volume += c.volume();
+            count++;
+            lastMinute = c.timestamp();
+            dirty = true;
+        }
+
+        HistoricalCandle toCandle(String symbol) {
+            return new HistoricalCandle(symbol, timeframe, bucketStart, open, high, low, close, volume);
+        }
+    }
 }
+
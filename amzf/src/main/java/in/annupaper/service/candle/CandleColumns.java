@@ -0,0 +1,79 @@
+package in.annupaper.service.candle;
+
+import in.annupaper.domain.model.HistoricalCandle;
+import in.annupaper.domain.model.Paise;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CandleColumns - Reusable OHLC columns (paise) for primitive calculator
+ * kernels.
+ *
+ * {@link #load(List)} copies a candle list in list order; a CandleSeries from
+ * CandleStore is bulk-copied straight out of its ring, any other list is
+ * converted candle by candle. The arrays only grow, so one instance per thread
+ * makes repeated loads allocation-free.
+ *
+ * Not thread-safe.
+ */
+public final class CandleColumns {
+    private long[] open = new long[0];
+    private long[] high = new long[0];
+    private long[] low = new long[0];
+    private long[] close = new long[0];
+    private int size;
+
+    /**
+     * Replace the contents with the candles' OHLC.
+     *
+     * @return this
+     */
+    public CandleColumns load(List<HistoricalCandle> candles) {
+        int n = candles == null ? 0 : candles.size();
+        ensureCapacity(n);
+        if (candles instanceof CandleSeries series) {
+            series.copyOhlcPaise(open, high, low, close);
+        } else {
+            for (int i = 0; i < n; i++) {
+                HistoricalCandle c = candles.get(i);
+                open[i] = Paise.of(c.open());
+                high[i] = Paise.of(c.high());
+                low[i] = Paise.of(c.low());
+                close[i] = Paise.of(c.close());
+            }
+        }
+        size = n;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long[] open() {
+        return open;
+    }
+
+    public long[] high() {
+        return high;
+    }
+
+    public long[] low() {
+        return low;
+    }
+
+    public long[] close() {
+        return close;
+    }
+
+    private void ensureCapacity(int n) {
+        if (open.length < n) {
+            int cap = Math.max(n, open.length * 2);
+            open = Arrays.copyOf(open, cap);
+            high = Arrays.copyOf(high, cap);
+            low = Arrays.copyOf(low, cap);
+            close = Arrays.copyOf(close, cap);
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package in.annupaper.service.candle;
+
+import in.annupaper.domain.model.HistoricalCandle;
+import in.annupaper.domain.model.Paise;
+import in.annupaper.domain.model.TimeframeType;
+
+import java.time.Instant;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * CandleRing - Fixed-depth columnar ring buffer for one (symbol, timeframe).
+ *
+ * Bars are kept in ascending timestamp order in parallel long[] columns
+ * (epoch millis, OHLC in paise, volume). Every bar gets a monotonically
+ * increasing sequence number; its slot is seq % capacity, so:
+ * - appending a newer bar is O(1) and drops the oldest once full
+ * - re-writing the latest bar (same timestamp) replaces it in place
+ * - lookups by timestamp are a binary search over the live sequence range
+ *
+ * Bars older than the oldest retained bar are rejected (PostgreSQL only), so
+ * the ring always holds a gap-free suffix of what was written through
+ * CandleStore. A missing bar inside the window is inserted by shifting the
+ * newer bars (rare: gap backfill), which invalidates outstanding views.
+ *
+ * The max high / min low over the timeframe's lookback (the most recent
+ * {@code TimeframeType.getLookback()} bars, capped at the depth) are kept in
+ * RollingExtremes deques updated on every write, so zone bounds are O(1).
+ *
+ * Writers take the write lock; readers use optimistic reads and fall back to
+ * the read lock. Views ({@link CandleSeries}) are zero-copy and address bars by
+ * sequence number; they throw ConcurrentModificationException if a bar they
+ * cover was evicted or shifted after the view was taken.
+ */
+final class CandleRing {
+    static final int TS = 0;
+    static final int OPEN = 1;
+    static final int HIGH = 2;
+    static final int LOW = 3;
+    static final int CLOSE = 4;
+    static final int VOLUME = 5;
+
+    private final String symbol;
+    private final TimeframeType timeframe;
+    private final int capacity;
+    private final long[][] cols;
+    private final StampedLock lock = new StampedLock();
+    private final RollingExtremes lookbackHigh;
+    private final RollingExtremes lookbackLow;
+
+    private long nextSeq; // seq of the next appended bar
+    private int size;
+    private int mods; // structural changes that move bars between slots
+
+    CandleRing(String symbol, TimeframeType timeframe, int capacity) {
+        this.symbol = symbol;
+        this.timeframe = timeframe;
+        this.capacity = capacity;
+        this.cols = new long[6][capacity];
+        int window = Math.max(1, Math.min(timeframe.getLookback(), capacity));
+        this.lookbackHigh = new RollingExtremes(window, true);
+        this.lookbackLow = new RollingExtremes(window, false);
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Writes
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Append, replace or insert a bar.
+     *
+     * @return false if the bar is older than the retained window (not stored)
+     */
+    boolean put(HistoricalCandle candle) {
+        long t = candle.timestamp().toEpochMilli();
+        long stamp = lock.writeLock();
+        try {
+            if (size == 0 || t > cols[TS][slot(nextSeq - 1)]) {
+                write(nextSeq, t, candle);
+                nextSeq++;
+                if (size < capacity) {
+                    size++;
+                }
+                trackLatest();
+                return true;
+            }
+
+            long oldestSeq = nextSeq - size;
+            if (t < cols[TS][slot(oldestSeq)]) {
+                return false;
+            }
+
+            long pos = search(t, oldestSeq, nextSeq - 1);
+            if (pos >= 0) {
+                write(pos, t, candle); // in-place replacement
+                if (pos == nextSeq - 1) {
+                    trackLatest();
+                } else if (pos > nextSeq - 1 - lookbackHigh.window()) {
+                    rebuildLookback();
+                }
+                return true;
+            }
+
+            // Insert inside the window: drop the oldest if full, shift newer bars up
+            long ins = -(pos + 1);
+            if (size == capacity) {
+                oldestSeq++;
+                size--;
+            }
+            for (long s = nextSeq - 1; s >= ins; s--) {
+                int from = slot(s);
+                int to = slot(s + 1);
+                for (long[] col : cols) {
+                    col[to] = col[from];
+                }
+            }
+            write(ins, t, candle);
+            nextSeq++;
+            size++;
+            mods++;
+            rebuildLookback();
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replace the contents with bars loaded from PostgreSQL (any order).
+     */
+    void load(List<HistoricalCandle> candles) {
+        HistoricalCandle[] sorted = candles.stream()
+                .sorted((a, b) -> a.timestamp().compareTo(b.timestamp()))
+                .toArray(HistoricalCandle[]::new);
+        long stamp = lock.writeLock();
+        try {
+            nextSeq = 0;
+            size = 0;
+            mods++;
+            int from = Math.max(0, sorted.length - capacity);
+            for (int i = from; i < sorted.length; i++) {
+                write(nextSeq++, sorted[i].timestamp().toEpochMilli(), sorted[i]);
+                size++;
+            }
+            rebuildLookback();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Feed the latest bar (just appended or re-written) to the lookback deques.
+     */
+    private void trackLatest() {
+        long seq = nextSeq - 1;
+        int i = slot(seq);
+        boolean ok = lookbackHigh.push(seq, cols[HIGH][i]);
+        ok &= lookbackLow.push(seq, cols[LOW][i]);
+        if (!ok) {
+            rebuildLookback();
+        }
+    }
+
+    private void rebuildLookback() {
+        lookbackHigh.clear();
+        lookbackLow.clear();
+        for (long s = Math.max(nextSeq - size, nextSeq - lookbackHigh.window()); s < nextSeq; s++) {
+            lookbackHigh.push(s, cols[HIGH][slot(s)]);
+            lookbackLow.push(s, cols[LOW][slot(s)]);
+        }
+    }
+
+    private void write(long seq, long t, HistoricalCandle c) {
+        int i = slot(seq);
+        cols[TS][i] = t;
+        cols[OPEN][i] = Paise.of(c.open());
+        cols[HIGH][i] = Paise.of(c.high());
+        cols[LOW][i] = Paise.of(c.low());
+        cols[CLOSE][i] = Paise.of(c.close());
+        cols[VOLUME][i] = c.volume();
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Views
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * All retained bars, most recent first.
+     */
+    CandleSeries descending() {
+        long stamp = lock.readLock();
+        try {
+            return new CandleSeries(this, nextSeq - size, size, true, mods);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Immutable copy of all retained bars, most recent first, taken under one
+     * read lock (never throws ConcurrentModificationException).
+     */
+    List<HistoricalCandle> copyDescending() {
+        long stamp = lock.readLock();
+        try {
+            return materialize(nextSeq - size, size, true);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Immutable copy of the bars with from <= ts <= to, ascending, taken under
+     * one read lock; null if the window does not reach back to {@code from}
+     * (caller must go to PostgreSQL).
+     */
+    List<HistoricalCandle> copyRange(Instant from, Instant to) {
+        long stamp = lock.readLock();
+        try {
+            long lo = rangeStart(from);
+            return lo < 0 ? null : materialize(lo, rangeCount(lo, to), false);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Seq of the first bar with ts >= from; -1 if the window does not reach back
+     * to {@code from}. Caller holds the lock.
+     */
+    private long rangeStart(Instant from) {
+        long f = from.toEpochMilli();
+        long oldestSeq = nextSeq - size;
+        if (size == 0 || cols[TS][slot(oldestSeq)] > f) {
+            return -1;
+        }
+        long lo = search(f, oldestSeq, nextSeq - 1);
+        return lo >= 0 ? lo : -(lo + 1);
+    }
+
+    /**
+     * Bars from {@code lo} up to and including ts == to. Caller holds the lock.
+     */
+    private int rangeCount(long lo, Instant to) {
+        long hi = search(to.toEpochMilli(), nextSeq - size, nextSeq - 1);
+        hi = hi >= 0 ? hi + 1 : -(hi + 1);
+        return (int) Math.max(0, hi - lo);
+    }
+
+    /**
+     * Most recent bar, or null if empty.
+     */
+    HistoricalCandle latest() {
+        long stamp = lock.readLock();
+        try {
+            return size == 0 ? null : materialize(nextSeq - 1);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * High, low and bar count of the lookback window, read under one stamp so
+     * both bounds come from the same write; null if empty.
+     */
+    CandleStore.LookbackRange lookbackRange() {
+        long stamp = lock.tryOptimisticRead();
+        long high = lookbackHigh.value();
+        long low = lookbackLow.value();
+        int bars = Math.min(size, lookbackHigh.window());
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                high = lookbackHigh.value();
+                low = lookbackLow.value();
+                bars = Math.min(size, lookbackHigh.window());
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return bars == 0 ? null : new CandleStore.LookbackRange(high, low, bars);
+    }
+
+    int size() {
+        long stamp = lock.tryOptimisticRead();
+        int s = size;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                s = size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return s;
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Reads used by CandleSeries
+    // ═══════════════════════════════════════════════════════════════
+
+    long read(int col, long seq, int viewMods) {
+        long stamp = lock.tryOptimisticRead();
+        boolean ok = isLive(seq, viewMods);
+        long v = cols[col][slot(seq)];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                ok = isLive(seq, viewMods);
+                v = cols[col][slot(seq)];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (!ok) {
+            throw new ConcurrentModificationException("Candle " + symbol + " " + timeframe + " evicted");
+        }
+        return v;
+    }
+
+    HistoricalCandle read(long seq, int viewMods) {
+        long stamp = lock.readLock();
+        try {
+            if (!isLive(seq, viewMods)) {
+                throw new ConcurrentModificationException("Candle " + symbol + " " + timeframe + " evicted");
+            }
+            return materialize(seq);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Max (max=true) or min of a column over [firstSeq, firstSeq + count).
+     */
+    long extreme(int col, long firstSeq, int count, boolean max, int viewMods) {
+        long stamp = lock.tryOptimisticRead();
+        long v = scan(col, firstSeq, count, max);
+        boolean ok = count == 0 || (isLive(firstSeq, viewMods) && isLive(firstSeq + count - 1, viewMods));
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                v = scan(col, firstSeq, count, max);
+                ok = count == 0 || (isLive(firstSeq, viewMods) && isLive(firstSeq + count - 1, viewMods));
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (!ok) {
+            throw new ConcurrentModificationException("Candle " + symbol + " " + timeframe + " evicted");
+        }
+        return v;
+    }
+
+    /**
+     * Copy OHLC of [firstSeq, firstSeq + count) into the arrays, in view order
+     * (most recent first if descending).
+     */
+    void copyOhlc(long firstSeq, int count, boolean descending, int viewMods,
+            long[] open, long[] high, long[] low, long[] close) {
+        long stamp = lock.tryOptimisticRead();
+        copy(firstSeq, count, descending, open, high, low, close);
+        boolean ok = count == 0 || (isLive(firstSeq, viewMods) && isLive(firstSeq + count - 1, viewMods));
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                copy(firstSeq, count, descending, open, high, low, close);
+                ok = count == 0 || (isLive(firstSeq, viewMods) && isLive(firstSeq + count - 1, viewMods));
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (!ok) {
+            throw new ConcurrentModificationException("Candle " + symbol + " " + timeframe + " evicted");
+        }
+    }
+
+    private void copy(long firstSeq, int count, boolean descending,
+            long[] open, long[] high, long[] low, long[] close) {
+        for (int i = 0; i < count; i++) {
+            int slot = slot(descending ? firstSeq + count - 1 - i : firstSeq + i);
+            open[i] = cols[OPEN][slot];
+            high[i] = cols[HIGH][slot];
+            low[i] = cols[LOW][slot];
+            close[i] = cols[CLOSE][slot];
+        }
+    }
+
+    private long scan(int col, long firstSeq, int count, boolean max) {
+        long[] c = cols[col];
+        long v = max ? Long.MIN_VALUE : Long.MAX_VALUE;
+        for (long s = firstSeq, end = firstSeq + count; s < end; s++) {
+            long x = c[slot(s)];
+            v = max ? Math.max(v, x) : Math.min(v, x);
+        }
+        return v;
+    }
+
+    private boolean isLive(long seq, int viewMods) {
+        return viewMods == mods && seq >= nextSeq - size && seq < nextSeq;
+    }
+
+    private List<HistoricalCandle> materialize(long firstSeq, int count, boolean descending) {
+        HistoricalCandle[] bars = new HistoricalCandle[count];
+        for (int i = 0; i < count; i++) {
+            bars[i] = materialize(descending ? firstSeq + count - 1 - i : firstSeq + i);
+        }
+        return List.of(bars);
+    }
+
+    private HistoricalCandle materialize(long seq) {
+        int i = slot(seq);
+        return new HistoricalCandle(
+                symbol,
+                timeframe,
+                Instant.ofEpochMilli(cols[TS][i]),
+                Paise.toBigDecimal(cols[OPEN][i]),
+                Paise.toBigDecimal(cols[HIGH][i]),
+                Paise.toBigDecimal(cols[LOW][i]),
+                Paise.toBigDecimal(cols[CLOSE][i]),
+                cols[VOLUME][i]);
+    }
+
+    /**
+     * Binary search by timestamp over [lo, hi] (sequence numbers).
+     *
+     * @return seq if found, else -(insertionSeq + 1)
+     */
+    private long search(long t, long lo, long hi) {
+        long[] ts = cols[TS];
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            long v = ts[slot(mid)];
+            if (v < t) {
+                lo = mid + 1;
+            } else if (v > t) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % capacity);
+    }
+}
@@ -0,0 +1,93 @@
+package in.annupaper.service.candle;
+
+import in.annupaper.domain.model.HistoricalCandle;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * CandleSeries - Zero-copy, read-only view over a range of a CandleRing.
+ *
+ * As a List it materializes HistoricalCandle on get(); calculators can use the
+ * primitive accessors (prices in paise) to scan without allocating.
+ * Intended for immediate use: holding a view across many bar closes can make
+ * it throw ConcurrentModificationException once its bars are evicted.
+ */
+public final class CandleSeries extends AbstractList<HistoricalCandle> implements RandomAccess {
+    private final CandleRing ring;
+    private final long firstSeq;
+    private final int count;
+    private final boolean descending;
+    private final int ringMods;
+
+    CandleSeries(CandleRing ring, long firstSeq, int count, boolean descending, int ringMods) {
+        this.ring = ring;
+        this.firstSeq = firstSeq;
+        this.count = count;
+        this.descending = descending;
+        this.ringMods = ringMods;
+    }
+
+    @Override
+    public HistoricalCandle get(int index) {
+        return ring.read(seq(index), ringMods);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    public long timestampMillis(int index) {
+        return ring.read(CandleRing.TS, seq(index), ringMods);
+    }
+
+    public long openPaise(int index) {
+        return ring.read(CandleRing.OPEN, seq(index), ringMods);
+    }
+
+    public long highPaise(int index) {
+        return ring.read(CandleRing.HIGH, seq(index), ringMods);
+    }
+
+    public long lowPaise(int index) {
+        return ring.read(CandleRing.LOW, seq(index), ringMods);
+    }
+
+    public long closePaise(int index) {
+        return ring.read(CandleRing.CLOSE, seq(index), ringMods);
+    }
+
+    public long volume(int index) {
+        return ring.read(CandleRing.VOLUME, seq(index), ringMods);
+    }
+
+    /**
+     * Highest high in the view (paise); Long.MIN_VALUE if empty.
+     */
+    public long maxHighPaise() {
+        return ring.extreme(CandleRing.HIGH, firstSeq, count, true, ringMods);
+    }
+
+    /**
+     * Lowest low in the view (paise); Long.MAX_VALUE if empty.
+     */
+    public long minLowPaise() {
+        return ring.extreme(CandleRing.LOW, firstSeq, count, false, ringMods);
+    }
+
+    /**
+     * Copy OHLC (paise) of the whole view into the arrays, in view order, under
+     * one consistent read. Arrays must hold at least {@link #size()} values.
+     */
+    public void copyOhlcPaise(long[] open, long[] high, long[] low, long[] close) {
+        ring.copyOhlc(firstSeq, count, descending, ringMods, open, high, low, close);
+    }
+
+    private long seq(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        return descending ? firstSeq + count - 1 - index : firstSeq + index;
+    }
+}
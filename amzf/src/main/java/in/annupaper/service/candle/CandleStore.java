@@ -7,31 +7,83 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Candle Store - Dual storage (in-memory + PostgreSQL).
  *
  * Intraday candles: Stored in memory for fast access + PostgreSQL for
  * persistence.
- * Historical candles: PostgreSQL only.
+ * Historical candles: PostgreSQL; batch writes also refresh bars that fall
+ * inside a ring already in memory.
+ *
+ * Memory tier: one CandleRing (columnar ring buffer) per (symbol, timeframe)
+ * with a configurable depth per TimeframeType. Appends and latest-bar updates
+ * are O(1). Public reads return immutable copies taken under one ring lock;
+ * calculators that consume bars immediately can ask for a zero-copy
+ * CandleSeries view instead. Lookback high/low (zone bounds) are maintained
+ * incrementally per ring.
+ *
+ * Single-bar writes (addIntraday/upsert) go through an optional
+ * CandleWriteBehind queue instead of a synchronous JDBC call.
  */
 public final class CandleStore {
     private static final Logger log = LoggerFactory.getLogger(CandleStore.class);
 
     private final CandleRepository candleRepo;
 
-    // In-memory cache: symbol -> timeframe -> candles (sorted by timestamp desc)
-    private final Map<String, Map<TimeframeType, CopyOnWriteArrayList<HistoricalCandle>>> cache = new ConcurrentHashMap<>();
+    // In-memory cache: symbol -> timeframe -> ring
+    private final Map<String, Map<TimeframeType, CandleRing>> cache = new ConcurrentHashMap<>();
+
+    // Default candles to keep in memory per (symbol, timeframe)
+    public static final int DEFAULT_MEMORY_DEPTH = 500;
 
-    // Max candles to keep in memory per (symbol, timeframe)
-    private static final int MAX_MEMORY_CANDLES = 500;
+    private final Map<TimeframeType, Integer> memoryDepth;
+    private final CandleWriteBehind writeBehind; // null = synchronous writes
 
     public CandleStore(CandleRepository candleRepo) {
+        this(candleRepo, Map.of(), null);
+    }
+
+    /**
+     * @param memoryDepth Ring depth per timeframe (missing entries use
+     *                    {@link #DEFAULT_MEMORY_DEPTH})
+     * @param writeBehind Persistence queue for single-bar writes (null =
+     *                    synchronous)
+     */
+    public CandleStore(CandleRepository candleRepo, Map<TimeframeType, Integer> memoryDepth,
+            CandleWriteBehind writeBehind) {
         this.candleRepo = candleRepo;
+        this.writeBehind = writeBehind;
+        this.memoryDepth = new EnumMap<>(TimeframeType.class);
+        for (TimeframeType tf : TimeframeType.values()) {
+            this.memoryDepth.put(tf, Math.max(1, memoryDepth.getOrDefault(tf, DEFAULT_MEMORY_DEPTH)));
+        }
+    }
+
+    /**
+     * Parse a depth spec like "MINUTE_1=750,HTF=300" (unknown entries ignored).
+     */
+    public static Map<TimeframeType, Integer> parseMemoryDepth(String spec) {
+        Map<TimeframeType, Integer> depths = new EnumMap<>(TimeframeType.class);
+        if (spec == null || spec.isBlank()) {
+            return depths;
+        }
+        for (String entry : spec.split(",")) {
+            String[] kv = entry.trim().split("=");
+            if (kv.length != 2) {
+                continue;
+            }
+            try {
+                depths.put(TimeframeType.valueOf(kv[0].trim()), Integer.parseInt(kv[1].trim()));
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignoring candle memory depth entry '{}'", entry);
+            }
+        }
+        return depths;
     }
 
     /**
@@ -40,19 +92,15 @@ public final class CandleStore {
      */
     public void addIntraday(HistoricalCandle candle) {
         // Memory
-        cache.computeIfAbsent(candle.symbol(), k -> new ConcurrentHashMap<>())
-                .computeIfAbsent(candle.timeframe(), k -> new CopyOnWriteArrayList<>())
-                .add(0, candle); // Add at front (most recent)
-
-        // Limit memory size
-        List<HistoricalCandle> list = cache.get(candle.symbol()).get(candle.timeframe());
-        if (list.size() > MAX_MEMORY_CANDLES) {
-            list.remove(list.size() - 1); // Remove oldest
-        }
+        ring(candle.symbol(), candle.timeframe()).put(candle);
 
-        // PostgreSQL (async)
+        // PostgreSQL (write-behind when configured)
         try {
-            candleRepo.insert(candle);
+            if (writeBehind != null) {
+                writeBehind.enqueue(candle);
+            } else {
+                candleRepo.insert(candle);
+            }
         } catch (Exception e) {
             log.error("Failed to persist candle: {}", e.getMessage());
         }
@@ -60,12 +108,15 @@ public final class CandleStore {
 
     /**
      * Add multiple candles (batch insert).
-     * Used for historical backfill - PostgreSQL only, no memory cache.
+     * Used for historical backfill - persisted to PostgreSQL; bars inside an
+     * existing memory ring's window are applied there too, no ring is created.
      */
     public void addBatch(List<HistoricalCandle> candles) {
         if (candles == null || candles.isEmpty())
             return;
 
+        putIfRetained(candles);
+
         try {
             candleRepo.insertBatch(candles);
             log.info("Persisted {} candles", candles.size());
@@ -80,39 +131,63 @@ public final class CandleStore {
      * Useful for backfill operations where duplicates may occur.
      */
     public void upsert(HistoricalCandle candle) {
-        // Memory - check if exists first, update if found
-        Map<TimeframeType, CopyOnWriteArrayList<HistoricalCandle>> tfMap = cache.computeIfAbsent(candle.symbol(),
-                k -> new ConcurrentHashMap<>());
-        CopyOnWriteArrayList<HistoricalCandle> list = tfMap.computeIfAbsent(candle.timeframe(),
-                k -> new CopyOnWriteArrayList<>());
-
-        // Remove existing candle with same timestamp if present
-        list.removeIf(c -> c.timestamp().equals(candle.timestamp()));
-
-        // Add new candle at front (most recent)
-        list.add(0, candle);
+        upsertMemory(candle);
 
-        // Limit memory size
-        if (list.size() > MAX_MEMORY_CANDLES) {
-            list.remove(list.size() - 1); // Remove oldest
-        }
-
-        // PostgreSQL (upsert)
+        // PostgreSQL (upsert, write-behind when configured)
         try {
-            candleRepo.upsert(candle);
+            if (writeBehind != null) {
+                writeBehind.enqueue(candle);
+            } else {
+                candleRepo.upsert(candle);
+            }
         } catch (Exception e) {
             log.error("Failed to upsert candle: {}", e.getMessage());
         }
     }
 
+    /**
+     * Upsert a candle in memory only (no PostgreSQL write).
+     * Used for in-progress aggregated candles between persists.
+     */
+    public void upsertMemory(HistoricalCandle candle) {
+        // Replaces in place if a bar with the same timestamp is retained
+        ring(candle.symbol(), candle.timeframe()).put(candle);
+    }
+
+    private CandleRing ring(String symbol, TimeframeType timeframe) {
+        return cache.computeIfAbsent(symbol, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(timeframe, tf -> new CandleRing(symbol, tf, memoryDepth.get(tf)));
+    }
+
+    private CandleRing existingRing(String symbol, TimeframeType timeframe) {
+        Map<TimeframeType, CandleRing> tfMap = cache.get(symbol);
+        return tfMap != null ? tfMap.get(timeframe) : null;
+    }
+
+    /**
+     * Keep memory consistent with batch writes: bars inside an existing ring's
+     * window are applied, older bars stay PostgreSQL-only.
+     */
+    private void putIfRetained(List<HistoricalCandle> candles) {
+        for (HistoricalCandle candle : candles) {
+            CandleRing ring = existingRing(candle.symbol(), candle.timeframe());
+            if (ring != null) {
+                ring.put(candle);
+            }
+        }
+    }
+
     /**
      * Upsert multiple candles in batch (insert or update on conflict).
-     * Used for historical backfill - PostgreSQL only, no memory cache.
+     * Used for historical backfill - persisted to PostgreSQL; bars inside an
+     * existing memory ring's window are applied there too, no ring is created.
      */
     public void upsertBatch(List<HistoricalCandle> candles) {
         if (candles == null || candles.isEmpty())
             return;
 
+        putIfRetained(candles);
+
         try {
             candleRepo.upsertBatch(candles);
             log.info("Upserted {} candles", candles.size());
@@ -122,15 +197,44 @@ public final class CandleStore {
     }
 
     /**
-     * Get candles from memory (intraday).
+     * Get candles from memory (intraday), most recent first.
+     * Returns an immutable copy, safe to hold across bar closes.
      */
     public List<HistoricalCandle> getFromMemory(String symbol, TimeframeType timeframe) {
-        Map<TimeframeType, CopyOnWriteArrayList<HistoricalCandle>> tfMap = cache.get(symbol);
-        if (tfMap == null)
-            return List.of();
+        CandleRing ring = existingRing(symbol, timeframe);
+        return ring != null ? ring.copyDescending() : List.of();
+    }
 
-        List<HistoricalCandle> candles = tfMap.get(timeframe);
-        return candles != null ? List.copyOf(candles) : List.of();
+    /**
+     * Zero-copy view of the candles in memory, most recent first; null if the
+     * symbol/timeframe has no ring. For calculators that consume the bars
+     * immediately: the view throws ConcurrentModificationException once its
+     * bars are evicted.
+     */
+    public CandleSeries seriesFromMemory(String symbol, TimeframeType timeframe) {
+        CandleRing ring = existingRing(symbol, timeframe);
+        return ring != null ? ring.descending() : null;
+    }
+
+    /**
+     * Highest high and lowest low (paise) over the timeframe's lookback in
+     * memory: the most recent {@code timeframe.getLookback()} bars, capped at
+     * the memory depth. O(1), maintained as bars are written; both bounds are
+     * from the same write.
+     *
+     * @return null if no bars are in memory
+     */
+    public LookbackRange lookbackRange(String symbol, TimeframeType timeframe) {
+        CandleRing ring = existingRing(symbol, timeframe);
+        return ring != null ? ring.lookbackRange() : null;
+    }
+
+    /**
+     * Lookback bounds of one (symbol, timeframe) in memory.
+     *
+     * @param bars bars the bounds cover
+     */
+    public record LookbackRange(long highPaise, long lowPaise, int bars) {
     }
 
     /**
@@ -144,9 +248,18 @@ public final class CandleStore {
     }
 
     /**
-     * Get candles within a time range (PostgreSQL).
+     * Get candles within a time range (inclusive, ascending).
+     * Served from memory when the ring reaches back to {@code from}, else
+     * PostgreSQL.
      */
     public List<HistoricalCandle> getRange(String symbol, TimeframeType timeframe, Instant from, Instant to) {
+        CandleRing ring = existingRing(symbol, timeframe);
+        if (ring != null) {
+            List<HistoricalCandle> inMemory = ring.copyRange(from, to);
+            if (inMemory != null) {
+                return inMemory;
+            }
+        }
         return candleRepo.findBySymbolAndTimeframe(symbol, timeframe, from, to);
     }
 
@@ -155,9 +268,10 @@ public final class CandleStore {
      */
     public HistoricalCandle getLatest(String symbol, TimeframeType timeframe) {
         // Check memory first
-        List<HistoricalCandle> memoryHistoricalCandles = getFromMemory(symbol, timeframe);
-        if (!memoryHistoricalCandles.isEmpty()) {
-            return memoryHistoricalCandles.get(0); // Most recent
+        CandleRing ring = existingRing(symbol, timeframe);
+        HistoricalCandle latest = ring != null ? ring.latest() : null;
+        if (latest != null) {
+            return latest;
         }
 
         // Fallback to PostgreSQL
@@ -175,10 +289,12 @@ public final class CandleStore {
      * Load initial candles from PostgreSQL into memory (on startup).
      */
     public void warmup(String symbol, TimeframeType timeframe) {
-        List<HistoricalCandle> candles = candleRepo.findAll(symbol, timeframe, MAX_MEMORY_CANDLES);
+        if (writeBehind != null) {
+            writeBehind.flushNow(); // queued bars must be visible to the reload
+        }
+        List<HistoricalCandle> candles = candleRepo.findAll(symbol, timeframe, memoryDepth.get(timeframe));
         if (!candles.isEmpty()) {
-            cache.computeIfAbsent(symbol, k -> new ConcurrentHashMap<>())
-                    .put(timeframe, new CopyOnWriteArrayList<>(candles));
+            ring(symbol, timeframe).load(candles);
 
             log.info("Warmed up {} candles for {} {}", candles.size(), symbol, timeframe);
         }
@@ -206,7 +322,7 @@ public final class CandleStore {
         int totalSymbols = cache.size();
         int totalHistoricalCandles = cache.values().stream()
                 .flatMap(m -> m.values().stream())
-                .mapToInt(List::size)
+                .mapToInt(CandleRing::size)
                 .sum();
 
         return String.format("Symbols: %d, Total candles in memory: %d", totalSymbols, totalHistoricalCandles);
@@ -0,0 +1,547 @@
+package in.annupaper.service.candle;
+
+import in.annupaper.application.port.output.CandleRepository;
+import in.annupaper.domain.model.HistoricalCandle;
+import in.annupaper.domain.model.TimeframeType;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Candle Write-Behind - Bounded, coalescing persistence queue for CandleStore.
+ *
+ * Closed candles are enqueued instead of written on the caller's thread
+ * (candle finalizer / tick thread). Pending candles are coalesced by
+ * (symbol, timeframe, ts) so only the latest version of a bar is written, and
+ * flushed with {@link CandleRepository#upsertBatch} when the batch size is
+ * reached or the flush interval elapses.
+ *
+ * Durability: every enqueued candle is first appended to the current journal
+ * segment on disk. A flush seals the segment and deletes it only after the
+ * batch is committed. If PostgreSQL is unavailable the sealed segment stays on
+ * disk (spill) and is retried, oldest first, on the next flush. Segments left
+ * behind by a crash are replayed synchronously by {@link #start()}, which
+ * journals new writes to a fresh segment numbered after them.
+ *
+ * Backpressure: when the number of pending bars reaches the capacity,
+ * producers wait (bounded) for the flusher to take the batch.
+ */
+public final class CandleWriteBehind {
+    private static final Logger log = LoggerFactory.getLogger(CandleWriteBehind.class);
+
+    private static final String SEGMENT_PREFIX = "candles-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final long BACKPRESSURE_WAIT_MS = 2000;
+
+    private final CandleRepository candleRepo;
+    private final Path walDir;
+    private final int batchSize;
+    private final int capacity;
+    private final long flushIntervalMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private LinkedHashMap<String, HistoricalCandle> pending = new LinkedHashMap<>();
+    private BufferedWriter journal;
+    private long segmentSeq;
+    private volatile boolean running;
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "candle-write-behind");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Metrics
+    private final Counter enqueued;
+    private final Counter coalesced;
+    private final Counter flushedRows;
+    private final Counter flushBatches;
+    private final Counter flushFailures;
+    private final Counter replayedRows;
+    private final Counter journalErrors;
+    private final Counter backpressureWaits;
+    private final Counter backpressureTimeouts;
+    private final Histogram flushLatency;
+    private final AtomicLong lastFlushLatencyMs = new AtomicLong(0);
+    private final AtomicLong maxFlushLatencyMs = new AtomicLong(0);
+    private final AtomicLong spilledSegments = new AtomicLong(0);
+
+    /**
+     * @param walDir          Directory for journal/spill segments
+     * @param batchSize       Pending bars that trigger an immediate flush
+     * @param capacity        Pending bars at which producers are held back
+     * @param flushIntervalMs Max time a bar waits before being flushed
+     */
+    public CandleWriteBehind(CandleRepository candleRepo, Path walDir, int batchSize, int capacity,
+            long flushIntervalMs) {
+        this(candleRepo, walDir, batchSize, capacity, flushIntervalMs, new CollectorRegistry());
+    }
+
+    public CandleWriteBehind(CandleRepository candleRepo, Path walDir, int batchSize, int capacity,
+            long flushIntervalMs, CollectorRegistry registry) {
+        this.candleRepo = candleRepo;
+        this.walDir = walDir;
+        this.batchSize = Math.max(1, batchSize);
+        this.capacity = Math.max(this.batchSize, capacity);
+        this.flushIntervalMs = flushIntervalMs;
+
+        this.enqueued = Counter.build()
+                .name("candle_write_behind_enqueued_total")
+                .help("Candles enqueued for write-behind persistence")
+                .register(registry);
+        this.coalesced = Counter.build()
+                .name("candle_write_behind_coalesced_total")
+                .help("Enqueued candles that replaced a pending version of the same bar")
+                .register(registry);
+        this.flushedRows = Counter.build()
+                .name("candle_write_behind_flushed_rows_total")
+                .help("Candles written to PostgreSQL by the write-behind flusher")
+                .register(registry);
+        this.flushBatches = Counter.build()
+                .name("candle_write_behind_flush_batches_total")
+                .help("upsertBatch calls made by the write-behind flusher")
+                .register(registry);
+        this.flushFailures = Counter.build()
+                .name("candle_write_behind_flush_failures_total")
+                .help("Write-behind flushes that failed (bars kept on disk)")
+                .register(registry);
+        this.replayedRows = Counter.build()
+                .name("candle_write_behind_replayed_rows_total")
+                .help("Candles replayed from journal/spill segments")
+                .register(registry);
+        this.journalErrors = Counter.build()
+                .name("candle_write_behind_journal_errors_total")
+                .help("Candle journal I/O errors")
+                .register(registry);
+        this.backpressureWaits = Counter.build()
+                .name("candle_write_behind_backpressure_waits_total")
+                .help("Producers held back because the write-behind queue was full")
+                .register(registry);
+        this.backpressureTimeouts = Counter.build()
+                .name("candle_write_behind_backpressure_timeouts_total")
+                .help("Producers admitted over capacity after the backpressure wait expired")
+                .register(registry);
+        this.flushLatency = Histogram.build()
+                .name("candle_write_behind_flush_seconds")
+                .help("Write-behind flush duration in seconds")
+                .buckets(0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5)
+                .register(registry);
+        Gauge.build()
+                .name("candle_write_behind_queue_depth")
+                .help("Candles pending in the write-behind queue")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return queueDepth();
+                    }
+                });
+        Gauge.build()
+                .name("candle_write_behind_spilled_segments")
+                .help("Sealed journal segments waiting for PostgreSQL")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return spilledSegments.get();
+                    }
+                });
+    }
+
+    /**
+     * Replay segments left by a previous run, then open a fresh journal segment
+     * (numbered after them) and start the flusher. Replay is synchronous so
+     * warmup/recovery read complete data; segments that cannot be written yet
+     * stay on disk and are retried by the flusher.
+     */
+    public void start() {
+        List<Path> leftover = List.of();
+        try {
+            Files.createDirectories(walDir);
+            leftover = segments();
+            // Never reopen a leftover segment: the flusher would take it for the
+            // sealed snapshot and delete it without replaying its bars
+            segmentSeq = leftover.isEmpty() ? 0 : seqOf(leftover.get(leftover.size() - 1)) + 1;
+            openJournal();
+        } catch (IOException e) {
+            log.error("Candle journal unavailable in {}: {} (write-behind continues without it)",
+                    walDir, e.getMessage());
+            journalErrors.inc();
+        }
+
+        if (!leftover.isEmpty()) {
+            replay(leftover);
+        }
+
+        running = true;
+        flusher.scheduleWithFixedDelay(this::flushInternal, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Candle write-behind started (batch={}, capacity={}, interval={}ms, dir={})",
+                batchSize, capacity, flushIntervalMs, walDir);
+    }
+
+    /**
+     * Flush everything pending and stop the flusher.
+     */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        flushNow();
+        running = false;
+        flusher.shutdown();
+        lock.lock();
+        try {
+            closeJournal();
+        } finally {
+            lock.unlock();
+        }
+        log.info("Candle write-behind stopped: {}", getMetrics());
+    }
+
+    /**
+     * Enqueue a closed (or updated) candle. Writes synchronously if the
+     * write-behind has not been started.
+     */
+    public void enqueue(HistoricalCandle candle) {
+        if (!running) {
+            candleRepo.upsert(candle);
+            return;
+        }
+
+        String key = key(candle);
+        int size;
+        lock.lock();
+        try {
+            if (pending.size() >= capacity && !pending.containsKey(key)) {
+                backpressureWaits.inc();
+                requestFlush();
+                long nanos = TimeUnit.MILLISECONDS.toNanos(BACKPRESSURE_WAIT_MS);
+                while (pending.size() >= capacity && nanos > 0) {
+                    nanos = notFull.awaitNanos(nanos);
+                }
+                if (pending.size() >= capacity) {
+                    // Still full: accept anyway, the bar is journaled
+                    backpressureTimeouts.inc();
+                }
+            }
+
+            appendJournal(candle);
+            if (pending.put(key, candle) != null) {
+                coalesced.inc();
+            }
+            size = pending.size();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            appendJournal(candle);
+            pending.put(key, candle);
+            size = pending.size();
+        } finally {
+            lock.unlock();
+        }
+
+        enqueued.inc();
+        if (size >= batchSize) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Flush pending bars and retry spilled segments; waits for completion.
+     */
+    public void flushNow() {
+        if (!running) {
+            return;
+        }
+        try {
+            flusher.submit(this::flushInternal).get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Candle flush did not complete: {}", e.getMessage());
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushInternal);
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Flusher (single thread)
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Write leftover segments oldest first (so newer bar versions win), deleting
+     * each once committed. Stops at the first failure; the rest are left to the
+     * flusher.
+     */
+    private void replay(List<Path> leftover) {
+        log.info("Replaying {} candle journal segment(s) from {}", leftover.size(), walDir);
+        int remaining = leftover.size();
+        for (Path segment : leftover) {
+            try {
+                List<HistoricalCandle> rows = readSegment(segment);
+                if (!write(rows)) {
+                    break;
+                }
+                replayedRows.inc(rows.size());
+                Files.deleteIfExists(segment);
+                remaining--;
+            } catch (IOException e) {
+                journalErrors.inc();
+                log.error("Failed to replay candle journal segment {}: {}", segment.getFileName(), e.getMessage());
+                break;
+            }
+        }
+        spilledSegments.set(remaining);
+        if (remaining > 0) {
+            log.warn("{} candle journal segment(s) not replayed yet, retrying in the background", remaining);
+        }
+    }
+
+    private void flushInternal() {
+        flushRequested.set(false);
+        try {
+            // Seal the current segment together with the pending snapshot
+            List<HistoricalCandle> batch;
+            Path sealed;
+            lock.lock();
+            try {
+                if (pending.isEmpty() && !hasLeftoverSegments()) {
+                    return;
+                }
+                batch = new ArrayList<>(pending.values());
+                pending = new LinkedHashMap<>();
+                // Nothing new: only retry spilled segments, keep the current one open
+                sealed = journal != null && !batch.isEmpty() ? currentSegment() : null;
+                if (sealed != null) {
+                    closeJournal();
+                    segmentSeq++;
+                    openJournal();
+                }
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            // Older segments first so newer bar versions win
+            for (Path segment : segments()) {
+                if (segment.equals(currentSegment())) {
+                    continue;
+                }
+                boolean isSnapshot = segment.equals(sealed);
+                List<HistoricalCandle> rows = isSnapshot ? batch : readSegment(segment);
+                if (!write(rows)) {
+                    spilledSegments.set(segments().size() - 1);
+                    return;
+                }
+                if (!isSnapshot) {
+                    replayedRows.inc(rows.size());
+                }
+                Files.deleteIfExists(segment);
+            }
+            if (sealed == null && !write(batch)) {
+                log.warn("Dropped {} candles: no journal and PostgreSQL unavailable", batch.size());
+            }
+            spilledSegments.set(0);
+        } catch (Exception e) {
+            flushFailures.inc();
+            log.error("Candle flush failed: {}", e.getMessage());
+        }
+    }
+
+    private boolean write(List<HistoricalCandle> rows) {
+        if (rows.isEmpty()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < rows.size(); i += batchSize) {
+                candleRepo.upsertBatch(rows.subList(i, Math.min(rows.size(), i + batchSize)));
+                flushBatches.inc();
+            }
+            flushedRows.inc(rows.size());
+            long nanos = System.nanoTime() - start;
+            flushLatency.observe(nanos / 1e9);
+            long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+            lastFlushLatencyMs.set(ms);
+            maxFlushLatencyMs.accumulateAndGet(ms, Math::max);
+            return true;
+        } catch (Exception e) {
+            flushFailures.inc();
+            log.warn("Candle batch of {} not persisted, kept on disk: {}", rows.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Journal segments
+    // ═══════════════════════════════════════════════════════════════
+
+    private void openJournal() throws IOException {
+        journal = Files.newBufferedWriter(currentSegment(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            journalErrors.inc();
+            log.warn("Failed to close candle journal: {}", e.getMessage());
+        }
+        journal = null;
+    }
+
+    /**
+     * Append one bar to the journal (caller holds the lock). Flushed to the OS
+     * per bar so a process crash cannot lose an acknowledged bar.
+     */
+    private void appendJournal(HistoricalCandle c) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.write(c.symbol() + '\t' + c.timeframe().name() + '\t' + c.timestamp().toEpochMilli() + '\t'
+                    + plain(c.open()) + '\t' + plain(c.high()) + '\t' + plain(c.low()) + '\t'
+                    + plain(c.close()) + '\t' + c.volume());
+            journal.newLine();
+            journal.flush();
+        } catch (IOException e) {
+            journalErrors.inc();
+            log.error("Failed to journal candle {} {}: {}", c.symbol(), c.timestamp(), e.getMessage());
+        }
+    }
+
+    /**
+     * Read a segment, keeping only the last version of each bar.
+     */
+    private List<HistoricalCandle> readSegment(Path segment) throws IOException {
+        LinkedHashMap<String, HistoricalCandle> rows = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+            String[] f = line.split("\t", -1);
+            if (f.length != 8) {
+                continue; // torn last line from a crash
+            }
+            try {
+                HistoricalCandle c = new HistoricalCandle(
+                        f[0],
+                        TimeframeType.valueOf(f[1]),
+                        Instant.ofEpochMilli(Long.parseLong(f[2])),
+                        decimal(f[3]),
+                        decimal(f[4]),
+                        decimal(f[5]),
+                        decimal(f[6]),
+                        Long.parseLong(f[7]));
+                rows.put(key(c), c);
+            } catch (RuntimeException e) {
+                log.warn("Skipping malformed candle journal line in {}: {}", segment.getFileName(), line);
+            }
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    private List<Path> segments() throws IOException {
+        if (!Files.isDirectory(walDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(walDir)) {
+            return files
+                    .filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted((a, b) -> Long.compare(seqOf(a), seqOf(b)))
+                    .toList();
+        }
+    }
+
+    private boolean hasLeftoverSegments() {
+        try {
+            return segments().size() > 1;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Path currentSegment() {
+        return walDir.resolve(SEGMENT_PREFIX + String.format("%012d", segmentSeq) + SEGMENT_SUFFIX);
+    }
+
+    private static long seqOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static String key(HistoricalCandle c) {
+        return c.symbol() + '|' + c.timeframe().name() + '|' + c.timestamp().toEpochMilli();
+    }
+
+    private static String plain(BigDecimal v) {
+        return v == null ? "" : v.toPlainString();
+    }
+
+    private static BigDecimal decimal(String s) {
+        return s.isEmpty() ? null : new BigDecimal(s);
+    }
+
+    private int queueDepth() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queue depth, flush latency and spill metrics (also exported to Prometheus).
+     */
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("queueDepth", (long) queueDepth());
+        m.put("enqueued", (long) enqueued.get());
+        m.put("coalesced", (long) coalesced.get());
+        m.put("flushedRows", (long) flushedRows.get());
+        m.put("flushBatches", (long) flushBatches.get());
+        m.put("flushFailures", (long) flushFailures.get());
+        m.put("lastFlushLatencyMs", lastFlushLatencyMs.get());
+        m.put("maxFlushLatencyMs", maxFlushLatencyMs.get());
+        m.put("spilledSegments", spilledSegments.get());
+        m.put("replayedRows", (long) replayedRows.get());
+        m.put("journalErrors", (long) journalErrors.get());
+        m.put("backpressureWaits", (long) backpressureWaits.get());
+        m.put("backpressureTimeouts", (long) backpressureTimeouts.get());
+        return m;
+    }
+}
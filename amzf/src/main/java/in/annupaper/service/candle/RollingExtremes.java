@@ -0,0 +1,85 @@
+package in.annupaper.service.candle;
+
+/**
+ * RollingExtremes - Monotonic deque giving the max (or min) of one CandleRing
+ * column over the most recent {@code window} bars in O(1).
+ *
+ * Entries are (bar seq, value) with values strictly decreasing (max) or
+ * increasing (min) from front to back; the front is the extreme. The latest
+ * bar is always the back entry, so re-writing it in place is a pop + push as
+ * long as the new value is at least as extreme (an open bar's high only
+ * rises, its low only falls). Anything else, such as a shrinking latest bar
+ * or a change to an older bar, needs {@link #clear()} and a re-push of the
+ * window by the owner.
+ *
+ * Not thread-safe: guarded by the owning ring's write lock.
+ */
+final class RollingExtremes {
+    private final int window;
+    private final boolean max;
+    private final long[] seqs;
+    private final long[] vals;
+    private int head;
+    private int size;
+
+    RollingExtremes(int window, boolean max) {
+        this.window = window;
+        this.max = max;
+        this.seqs = new long[window + 1];
+        this.vals = new long[window + 1];
+    }
+
+    int window() {
+        return window;
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Push a newly appended bar, or re-push the latest bar after an in-place
+     * update.
+     *
+     * @return false if the update cannot be applied incrementally (the latest
+     *         bar became less extreme); the deque is unchanged and the caller
+     *         must rebuild
+     */
+    boolean push(long seq, long value) {
+        if (size > 0 && seqAt(size - 1) == seq) {
+            if (max ? value < valAt(size - 1) : value > valAt(size - 1)) {
+                return false;
+            }
+            size--;
+        }
+        while (size > 0 && (max ? valAt(size - 1) <= value : valAt(size - 1) >= value)) {
+            size--;
+        }
+        int i = (head + size) % seqs.length;
+        seqs[i] = seq;
+        vals[i] = value;
+        size++;
+        while (seqAt(0) <= seq - window) {
+            head = (head + 1) % seqs.length;
+            size--;
+        }
+        return true;
+    }
+
+    /**
+     * Extreme over the window; Long.MIN_VALUE (max) or Long.MAX_VALUE (min) if
+     * empty.
+     */
+    long value() {
+        return size == 0 ? (max ? Long.MIN_VALUE : Long.MAX_VALUE) : vals[head];
+    }
+
+    private long seqAt(int i) {
+        return seqs[(head + i) % seqs.length];
+    }
+
+    private long valAt(int i) {
+        return vals[(head + i) % vals.length];
+    }
+}
@@ -4,6 +4,7 @@ import in.annupaper.domain.model.BrokerAdapter;
 import in.annupaper.domain.model.EventType;
 import in.annupaper.domain.model.TimeframeType;
 import in.annupaper.domain.model.HistoricalCandle;
+import in.annupaper.domain.model.Paise;
 import in.annupaper.domain.model.Tick;
 import in.annupaper.service.core.EventService;
 
@@ -16,11 +17,10 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * TickCandleBuilder - Build 1-minute candles from incoming ticks.
@@ -31,6 +31,8 @@ import java.util.concurrent.locks.ReentrantLock;
  * CandleAggregator
  * - Detects gaps and triggers backfill via HistoryBackfiller
  * - Uses SessionClock for proper market session alignment
+ * - Prices stay in long paise on the hot path; BigDecimal only when a closed
+ * candle is persisted/emitted
  */
 public final class TickCandleBuilder implements BrokerAdapter.TickListener {
     private static final Logger log = LoggerFactory.getLogger(TickCandleBuilder.class);
@@ -48,22 +50,27 @@ public final class TickCandleBuilder implements BrokerAdapter.TickListener {
     private final Map<String, PartialCandle> partialCandles = new ConcurrentHashMap<>();
 
     // ✅ P0-D: Two-window tick deduplication (not removeIf!)
-    // Current window: actively checked for duplicates
-    private Set<String> currentDedupeWindow = ConcurrentHashMap.newKeySet();
+    // Fixed-capacity long[] tables keyed by 64-bit tick fingerprints (no per-tick
+    // String keys). Sized for ~60s of ticks across a large watchlist, split into
+    // partitions by symbol so concurrent tick threads only contend on a symbol's
+    // own partition (a symbol always maps to the same partition).
+    private static final int DEDUPE_PARTITIONS = 16;
+    private static final int DEDUPE_TABLE_CAPACITY = (1 << 17) / DEDUPE_PARTITIONS;
+    private static final double DEDUPE_MAX_LOAD = 0.75;
+    private static final long DEDUPE_WINDOW_MS = 60_000;
 
-    // Previous window: kept for grace period during window swap
-    private Set<String> previousDedupeWindow = ConcurrentHashMap.newKeySet();
+    private final DedupePartition[] dedupePartitions = new DedupePartition[DEDUPE_PARTITIONS];
 
-    // Last window swap time (for periodic rotation)
-    private volatile Instant lastWindowSwap = Instant.now();
-
-    // Window rotation lock (prevent concurrent swaps)
-    private final ReentrantLock windowSwapLock = new ReentrantLock();
+    // Stable small-int ids for symbols (fingerprint input)
+    private final ConcurrentHashMap<String, Integer> symbolIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSymbolId = new AtomicInteger(1);
 
     // Dedupe metrics
     private final AtomicLong totalTicks = new AtomicLong(0);
     private final AtomicLong duplicateTicks = new AtomicLong(0);
     private final AtomicLong missingExchangeTimestamp = new AtomicLong(0);
+    private final AtomicLong falsePositives = new AtomicLong(0);
+    private final AtomicLong forcedRotations = new AtomicLong(0);
 
     // FIX: Use MarketDataCache instead of direct DB writes for better performance
     public TickCandleBuilder(
@@ -77,6 +84,9 @@ public final class TickCandleBuilder implements BrokerAdapter.TickListener {
         this.marketDataCache = marketDataCache;
         this.historyBackfiller = historyBackfiller;
         this.candleAggregator = candleAggregator;
+        for (int i = 0; i < dedupePartitions.length; i++) {
+            dedupePartitions[i] = new DedupePartition(i);
+        }
     }
 
     /**
@@ -95,24 +105,20 @@ public final class TickCandleBuilder implements BrokerAdapter.TickListener {
     public void onTick(Tick tick) {
         totalTicks.incrementAndGet();
 
-        // ✅ P0-D: Dedupe check BEFORE any processing
-        String dedupeKey = generateDedupeKey(tick);
+        if (!Paise.isPresent(tick.lastPricePaise())) {
+            log.trace("Tick without last price: {}", tick.symbol());
+            return;
+        }
 
-        // Check if tick is duplicate (check both windows for grace period)
-        if (currentDedupeWindow.contains(dedupeKey) || previousDedupeWindow.contains(dedupeKey)) {
+        // ✅ P0-D: Dedupe check BEFORE any processing
+        if (isDuplicate(tick)) {
             duplicateTicks.incrementAndGet();
-            log.trace("Duplicate tick detected: {} (key: {})", tick.symbol(), dedupeKey);
+            log.trace("Duplicate tick detected: {}", tick.symbol());
             return; // Skip duplicate
         }
 
-        // Add to current window
-        currentDedupeWindow.add(dedupeKey);
-
-        // Rotate windows if needed (every 60 seconds)
-        rotateWindowsIfNeeded();
-
         String symbol = tick.symbol();
-        BigDecimal price = tick.lastPrice();
+        long price = tick.lastPricePaise();
         long volume = tick.volume();
         Instant timestamp = tick.timestamp();
 
@@ -130,50 +136,74 @@ public final class TickCandleBuilder implements BrokerAdapter.TickListener {
         // Update in-memory cache for Market Watch (fast!)
         marketDataCache.updateTick(symbol, price, timestamp);
 
-        // Publish TICK event to WebSocket for Market Watch real-time updates
-        Map<String, Object> tickPayload = new HashMap<>();
-        tickPayload.put("symbol", symbol);
-        tickPayload.put("lastPrice", price);
-        tickPayload.put("volume", volume);
-        tickPayload.put("timestamp", timestamp.toString());
-        eventService.emitGlobal(EventType.TICK, tickPayload, "TICK_BUILDER");
+        // Publish TICK to the market-data lane (coalesced, never blocks on JDBC)
+        eventService.emitTick(tick);
 
         // Only build 1-minute candles from ticks
         update1MinuteCandle(symbol, price, volume, timestamp);
     }
 
     /**
-     * ✅ P0-D: Generate dedupe key for tick.
+     * ✅ P0-D: Check the tick against both dedupe windows and record it.
      *
      * Primary key: symbol + exchangeTimestamp + lastPrice + volume
      * Fallback key (when exchange timestamp missing/invalid):
      * symbol + lastPrice + volume + systemTimeRoundedToSecond
      *
-     * This ensures:
-     * - Same tick from broker (with exchange timestamp) is deduplicated
-     * - High-frequency ticks without exchange timestamp use fallback
-     * - Bounded memory: keys are strings, not keeping full tick objects
+     * The key is never materialized: its fields are hashed into two independent
+     * 64-bit fingerprints and looked up in fixed-capacity long[] tables, so the
+     * check allocates nothing per tick. A primary-hash match whose secondary hash
+     * differs is counted as a false positive and the tick is let through.
+     *
+     * Only the symbol's dedupe partition is locked.
      */
-    private String generateDedupeKey(Tick tick) {
-        String symbol = tick.symbol();
-        Instant exchangeTimestamp = tick.timestamp();
-        BigDecimal price = tick.lastPrice();
+    private boolean isDuplicate(Tick tick) {
+        int symbolId = symbolId(tick.symbol());
+        long pricePaise = tick.lastPricePaise();
         long volume = tick.volume();
 
-        // Primary dedupe key: use exchange timestamp if available
+        long tsKey;
+        Instant exchangeTimestamp = tick.timestamp();
         if (exchangeTimestamp != null && exchangeTimestamp.toEpochMilli() > 0) {
-            // Format: SYMBOL|exchangeTimestamp|price|volume
-            return String.format("%s|%d|%s|%d", symbol, exchangeTimestamp.toEpochMilli(), price, volume);
+            tsKey = exchangeTimestamp.toEpochMilli();
+        } else {
+            // ✅ Fallback: system time rounded to second (~1 second dedupe window),
+            // negated so it can never collide with a real exchange timestamp
+            missingExchangeTimestamp.incrementAndGet();
+            tsKey = -(System.currentTimeMillis() / 1000);
         }
 
-        // ✅ Fallback dedupe key: exchange timestamp missing
-        missingExchangeTimestamp.incrementAndGet();
+        long h1 = TickDedupeTable.primaryHash(symbolId, tsKey, pricePaise, volume);
+        long h2 = TickDedupeTable.secondaryHash(symbolId, tsKey, pricePaise, volume);
+
+        DedupePartition partition = dedupePartitions[symbolId & (DEDUPE_PARTITIONS - 1)];
+        synchronized (partition) {
+            int current = partition.current.lookup(h1, h2);
+            if (current == TickDedupeTable.HIT) {
+                return true;
+            }
+            int previous = partition.previous.lookup(h1, h2);
+            if (previous == TickDedupeTable.HIT) {
+                return true;
+            }
+            if (current == TickDedupeTable.FALSE_POSITIVE || previous == TickDedupeTable.FALSE_POSITIVE) {
+                falsePositives.incrementAndGet();
+            }
+
+            // Rotate windows if needed (every 60 seconds, or early if current is full)
+            rotateWindowsIfNeeded(partition);
 
-        // Use system time rounded to second (provides ~1 second dedupe window)
-        long systemTimeSeconds = Instant.now().getEpochSecond();
+            partition.current.insert(h1, h2);
+            return false;
+        }
+    }
 
-        // Format: SYMBOL|SYS:systemTimeSeconds|price|volume
-        return String.format("%s|SYS:%d|%s|%d", symbol, systemTimeSeconds, price, volume);
+    private int symbolId(String symbol) {
+        Integer id = symbolIds.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        return symbolIds.computeIfAbsent(symbol, k -> nextSymbolId.getAndIncrement());
     }
 
     /**
@@ -181,52 +211,40 @@ public final class TickCandleBuilder implements BrokerAdapter.TickListener {
      *
      * Pattern: Two-window rotation (not removeIf!)
      * - Swap current -> previous
-     * - Clear new current window
-     * - Bounded memory: previous window cleared on next rotation
+     * - Clear the old previous table and reuse it as the new current window
+     * - Bounded memory: both tables are allocated once
      *
-     * This ensures:
-     * - No O(n) removeIf cleanup during tick processing
-     * - Grace period: ticks in previous window still deduplicated
-     * - Automatic memory reclamation every 60 seconds
+     * A window that fills up before 60 seconds is rotated early (counted in
+     * forcedRotations) so probing never degrades.
+     *
+     * Caller must hold the partition's monitor.
      */
-    private void rotateWindowsIfNeeded() {
-        Instant now = Instant.now();
-        long secondsSinceLastSwap = ChronoUnit.SECONDS.between(lastWindowSwap, now);
+    private void rotateWindowsIfNeeded(DedupePartition partition) {
+        long now = System.currentTimeMillis();
+        boolean full = partition.current.isFull();
 
-        if (secondsSinceLastSwap < 60) {
+        if (!full && now - partition.lastWindowSwapMs < DEDUPE_WINDOW_MS) {
             return; // Not time to rotate yet
         }
 
-        // Try to acquire lock (non-blocking)
-        if (!windowSwapLock.tryLock()) {
-            return; // Another thread is already swapping
-        }
-
-        try {
-            // Double-check after acquiring lock
-            secondsSinceLastSwap = ChronoUnit.SECONDS.between(lastWindowSwap, now);
-            if (secondsSinceLastSwap < 60) {
-                return;
-            }
-
-            // Rotate windows
-            int previousSize = previousDedupeWindow.size();
-            int currentSize = currentDedupeWindow.size();
+        int previousSize = partition.previous.size();
+        int currentSize = partition.current.size();
 
-            // Swap: current -> previous
-            previousDedupeWindow = currentDedupeWindow;
+        // Swap: current -> previous, recycle old previous as new current
+        TickDedupeTable recycled = partition.previous;
+        partition.previous = partition.current;
+        recycled.clear();
+        partition.current = recycled;
 
-            // Create new empty current window
-            currentDedupeWindow = ConcurrentHashMap.newKeySet();
+        partition.lastWindowSwapMs = now;
 
-            // Update last swap time
-            lastWindowSwap = now;
-
-            log.info("✅ Dedupe windows rotated: previous={} keys discarded, current={} keys moved to previous",
-                    previousSize, currentSize);
-
-        } finally {
-            windowSwapLock.unlock();
+        if (full) {
+            forcedRotations.incrementAndGet();
+            log.warn("Dedupe partition {} window full ({} keys) before {}ms, rotated early",
+                    partition.index, currentSize, DEDUPE_WINDOW_MS);
+        } else {
+            log.debug("Dedupe partition {} rotated: previous={} keys discarded, current={} keys moved to previous",
+                    partition.index, previousSize, currentSize);
         }
     }
 
@@ -235,7 +253,7 @@ public final class TickCandleBuilder implements BrokerAdapter.TickListener {
      */
     private void update1MinuteCandle(
             String symbol,
-            BigDecimal price,
+            long price,
             long volume,
             Instant timestamp) {
         PartialCandle partial = partialCandles.get(symbol);
@@ -260,8 +278,8 @@ public final class TickCandleBuilder implements BrokerAdapter.TickListener {
             partialCandles.put(symbol, partial);
         } else {
             // Update existing partial candle
-            partial.high = partial.high.max(price);
-            partial.low = partial.low.min(price);
+            partial.high = Math.max(partial.high, price);
+            partial.low = Math.min(partial.low, price);
             partial.close = price;
             partial.volume += volume;
         }
@@ -294,14 +312,20 @@ public final class TickCandleBuilder implements BrokerAdapter.TickListener {
      * Close and persist a completed 1-minute candle.
      */
     private void close1MinuteCandle(String symbol, PartialCandle partial) {
+        // Persistence boundary: paise -> BigDecimal
+        BigDecimal open = Paise.toBigDecimal(partial.open);
+        BigDecimal high = Paise.toBigDecimal(partial.high);
+        BigDecimal low = Paise.toBigDecimal(partial.low);
+        BigDecimal close = Paise.toBigDecimal(partial.close);
+
         HistoricalCandle candle = new HistoricalCandle(
                 symbol,
                 TimeframeType.MINUTE_1,
                 partial.startTime,
-                partial.open,
-                partial.high,
-                partial.low,
-                partial.close,
+                open,
+                high,
+                low,
+                close,
                 partial.volume);
 
         // Store candle (in-memory + PostgreSQL)
@@ -312,10 +336,10 @@ public final class TickCandleBuilder implements BrokerAdapter.TickListener {
         payload.put("symbol", symbol);
         payload.put("timeframe", TimeframeType.MINUTE_1.name());
         payload.put("timestamp", partial.startTime.toEpochMilli());
-        payload.put("open", partial.open);
-        payload.put("high", partial.high);
-        payload.put("low", partial.low);
-        payload.put("close", partial.close);
+        payload.put("open", open);
+        payload.put("high", high);
+        payload.put("low", low);
+        payload.put("close", close);
         payload.put("volume", partial.volume);
 
         eventService.emitGlobal(EventType.CANDLE, payload, "TICK_BUILDER");
@@ -342,6 +366,9 @@ public final class TickCandleBuilder implements BrokerAdapter.TickListener {
         }
 
         partialCandles.clear();
+
+        // Persist in-progress 25-min / 125-min buckets
+        candleAggregator.flushAll();
     }
 
     /**
@@ -382,16 +409,34 @@ public final class TickCandleBuilder implements BrokerAdapter.TickListener {
         metrics.put("totalTicks", totalTicks.get());
         metrics.put("duplicateTicks", duplicateTicks.get());
         metrics.put("missingExchangeTimestamp", missingExchangeTimestamp.get());
-        metrics.put("currentWindowSize", (long) currentDedupeWindow.size());
-        metrics.put("previousWindowSize", (long) previousDedupeWindow.size());
+        metrics.put("falsePositives", falsePositives.get());
+        metrics.put("forcedRotations", forcedRotations.get());
+
+        long capacity = 0;
+        long currentSize = 0;
+        long previousSize = 0;
+        for (DedupePartition partition : dedupePartitions) {
+            synchronized (partition) {
+                capacity += partition.current.capacity();
+                currentSize += partition.current.size();
+                previousSize += partition.previous.size();
+            }
+        }
+        metrics.put("tableCapacity", capacity);
+        metrics.put("currentWindowSize", currentSize);
+        metrics.put("previousWindowSize", previousSize);
+        metrics.put("currentWindowOccupancyPercent", (currentSize * 100L) / capacity);
 
         // Calculate dedupe rate
         long total = totalTicks.get();
         if (total > 0) {
             long dupes = duplicateTicks.get();
             metrics.put("dedupeRatePercent", (dupes * 100) / total);
+            // Fingerprint collisions per million ticks
+            metrics.put("falsePositiveRatePpm", (falsePositives.get() * 1_000_000) / total);
         } else {
             metrics.put("dedupeRatePercent", 0L);
+            metrics.put("falsePositiveRatePpm", 0L);
         }
 
         return metrics;
@@ -401,11 +446,17 @@ public final class TickCandleBuilder implements BrokerAdapter.TickListener {
      * ✅ P0-D: Clear dedupe windows (called on shutdown).
      */
     public void clearDedupeWindows() {
-        log.info("Clearing dedupe windows: current={} keys, previous={} keys",
-                currentDedupeWindow.size(), previousDedupeWindow.size());
-
-        currentDedupeWindow.clear();
-        previousDedupeWindow.clear();
+        long currentSize = 0;
+        long previousSize = 0;
+        for (DedupePartition partition : dedupePartitions) {
+            synchronized (partition) {
+                currentSize += partition.current.size();
+                previousSize += partition.previous.size();
+                partition.current.clear();
+                partition.previous.clear();
+            }
+        }
+        log.info("Cleared dedupe windows: current={} keys, previous={} keys", currentSize, previousSize);
     }
 
     @Override
@@ -414,18 +465,35 @@ public final class TickCandleBuilder implements BrokerAdapter.TickListener {
     }
 
     /**
-     * Partial candle being built from ticks.
+     * One dedupe partition: its two windows and their rotation clock.
+     * Guarded by its own monitor.
+     */
+    private static final class DedupePartition {
+        final int index;
+        // Current window: actively checked for duplicates
+        TickDedupeTable current = new TickDedupeTable(DEDUPE_TABLE_CAPACITY, DEDUPE_MAX_LOAD);
+        // Previous window: kept for grace period during window swap
+        TickDedupeTable previous = new TickDedupeTable(DEDUPE_TABLE_CAPACITY, DEDUPE_MAX_LOAD);
+        // Last window swap time (for periodic rotation)
+        long lastWindowSwapMs = System.currentTimeMillis();
+
+        DedupePartition(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * Partial candle being built from ticks (prices in paise).
      */
     private static class PartialCandle {
         final Instant startTime;
-        final BigDecimal open;
-        BigDecimal high;
-        BigDecimal low;
-        BigDecimal close;
+        final long open;
+        long high;
+        long low;
+        long close;
         long volume;
 
-        PartialCandle(Instant startTime, BigDecimal open, BigDecimal high, BigDecimal low, BigDecimal close,
-                long volume) {
+        PartialCandle(Instant startTime, long open, long high, long low, long close, long volume) {
             this.startTime = startTime;
             this.open = open;
             this.high = high;
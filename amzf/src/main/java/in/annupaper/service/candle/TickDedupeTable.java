@@ -0,0 +1,126 @@
+package in.annupaper.service.candle;
+
+import java.util.Arrays;
+
+/**
+ * TickDedupeTable - Fixed-capacity, open-addressing set of tick fingerprints.
+ *
+ * Backed by two parallel long[] arrays, so lookups and inserts never allocate:
+ * - primary[]: 64-bit hash of (symbolId, exchangeMillis, pricePaise, volume),
+ * used for slot selection (linear probing). 0 marks an empty slot.
+ * - secondary[]: independent 64-bit hash of the same fields, used to confirm a
+ * primary match. A primary match with a different secondary is counted as a
+ * false positive and treated as a distinct tick (never silently dropped).
+ *
+ * NOT thread-safe: TickCandleBuilder guards each table with its dedupe partition
+ * lock.
+ */
+final class TickDedupeTable {
+    private final long[] primary;
+    private final long[] secondary;
+    private final int mask;
+    private final int maxEntries;
+    private int size;
+
+    /**
+     * @param capacity Slot count (rounded up to a power of two)
+     * @param maxLoad  Max fill ratio before {@link #isFull()} reports true
+     */
+    TickDedupeTable(int capacity, double maxLoad) {
+        int slots = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+        this.primary = new long[slots];
+        this.secondary = new long[slots];
+        this.mask = slots - 1;
+        this.maxEntries = (int) (slots * maxLoad);
+    }
+
+    /**
+     * Check whether the fingerprint is present.
+     *
+     * @return {@link #HIT} (duplicate), {@link #MISS}, or {@link #FALSE_POSITIVE}
+     *         (primary matched, secondary did not)
+     */
+    int lookup(long h1, long h2) {
+        int result = MISS;
+        for (int i = (int) h1 & mask;; i = (i + 1) & mask) {
+            long p = primary[i];
+            if (p == 0) {
+                return result;
+            }
+            if (p == h1) {
+                if (secondary[i] == h2) {
+                    return HIT;
+                }
+                result = FALSE_POSITIVE;
+            }
+        }
+    }
+
+    /**
+     * Insert a fingerprint (caller has already checked it is absent).
+     * No-op once the table is full; the caller rotates windows on {@link #isFull()}.
+     */
+    void insert(long h1, long h2) {
+        if (size >= maxEntries) {
+            return;
+        }
+        int i = (int) h1 & mask;
+        while (primary[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        primary[i] = h1;
+        secondary[i] = h2;
+        size++;
+    }
+
+    void clear() {
+        if (size == 0) {
+            return;
+        }
+        Arrays.fill(primary, 0L);
+        Arrays.fill(secondary, 0L);
+        size = 0;
+    }
+
+    boolean isFull() {
+        return size >= maxEntries;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return primary.length;
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Fingerprinting
+    // ═══════════════════════════════════════════════════════════════
+
+    static final int MISS = 0;
+    static final int HIT = 1;
+    static final int FALSE_POSITIVE = 2;
+
+    static long primaryHash(int symbolId, long exchangeMillis, long pricePaise, long volume) {
+        long h = mix(symbolId * 0x9E3779B97F4A7C15L + exchangeMillis);
+        h = mix(h + pricePaise * 0xC2B2AE3D27D4EB4FL);
+        h = mix(h + volume * 0x165667B19E3779F9L);
+        return h == 0 ? 1 : h; // 0 is the empty-slot marker
+    }
+
+    static long secondaryHash(int symbolId, long exchangeMillis, long pricePaise, long volume) {
+        long h = mix(exchangeMillis * 0xD6E8FEB86659FD93L + symbolId);
+        h = mix(h ^ (volume * 0x9E3779B97F4A7C15L));
+        return mix(h ^ (pricePaise * 0xFF51AFD7ED558CCDL));
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
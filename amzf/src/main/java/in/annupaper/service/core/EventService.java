@@ -3,29 +3,166 @@ package in.annupaper.service.core;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import in.annupaper.domain.model.*;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import in.annupaper.application.port.output.TickJournalRepository;
 import in.annupaper.application.port.output.TradeEventRepository;
 import in.annupaper.transport.ws.WsHub;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Event Service.
  * Reliability rule: persist event first (repository/DB), then push to WS.
+ *
+ * Exception: market data (TICK) uses a separate lane. Ticks are coalesced per
+ * symbol and flushed on a timer; the feed thread never touches JDBC. The
+ * coalesced batch is published to WsHub first and then handed to a bounded
+ * journal queue (bulk COPY into tick_journal), or skipped entirely when no
+ * journal is configured (ephemeral mode). Ticks are not part of the
+ * trade_events sequence and are published with seq=0.
  */
 public final class EventService {
     private static final Logger log = LoggerFactory.getLogger(EventService.class);
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    // Max coalesced batches waiting for the journal writer before we drop
+    private static final int JOURNAL_QUEUE_CAPACITY = 64;
+
     private final TradeEventRepository repo;
     private final WsHub wsHub;
     private final AtomicLong seqFallback = new AtomicLong(0); // Fallback if no DB
 
+    // Market-data lane: latest tick per symbol since last flush
+    private final TickJournalRepository tickJournal; // null = ephemeral (no persistence)
+    private final ConcurrentHashMap<String, Tick> pendingTicks = new ConcurrentHashMap<>();
+    private final BlockingQueue<List<Tick>> journalQueue = new ArrayBlockingQueue<>(JOURNAL_QUEUE_CAPACITY);
+    private final ScheduledExecutorService tickFlusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "market-data-lane");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ScheduledExecutorService journalWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "tick-journal-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Market-data lane metrics
+    private final Counter ticksReceived;
+    private final Counter ticksCoalesced;
+    private final Counter ticksPublished;
+    private final Counter ticksSkipped;
+    private final Counter ticksJournaled;
+    private final Counter journalBatchesDropped;
+    private final Counter journalFailures;
+
     public EventService(TradeEventRepository repo, WsHub wsHub) {
+        this(repo, wsHub, null);
+    }
+
+    public EventService(TradeEventRepository repo, WsHub wsHub, TickJournalRepository tickJournal) {
+        this(repo, wsHub, tickJournal, new CollectorRegistry());
+    }
+
+    public EventService(TradeEventRepository repo, WsHub wsHub, TickJournalRepository tickJournal,
+            CollectorRegistry registry) {
         this.repo = repo;
         this.wsHub = wsHub;
+        this.tickJournal = tickJournal;
+
+        this.ticksReceived = Counter.build()
+                .name("market_data_ticks_received_total")
+                .help("Ticks handed to the market-data lane")
+                .register(registry);
+        this.ticksCoalesced = Counter.build()
+                .name("market_data_ticks_coalesced_total")
+                .help("Ticks that replaced a pending tick for the same symbol before a flush")
+                .register(registry);
+        this.ticksPublished = Counter.build()
+                .name("market_data_ticks_published_total")
+                .help("Coalesced ticks published to WebSocket clients")
+                .register(registry);
+        this.ticksSkipped = Counter.build()
+                .name("market_data_ticks_skipped_total")
+                .help("Ticks without a timestamp skipped by the flusher")
+                .register(registry);
+        this.ticksJournaled = Counter.build()
+                .name("market_data_ticks_journaled_total")
+                .help("Ticks written to tick_journal")
+                .register(registry);
+        this.journalBatchesDropped = Counter.build()
+                .name("market_data_journal_batches_dropped_total")
+                .help("Coalesced batches dropped because the journal queue was full")
+                .register(registry);
+        this.journalFailures = Counter.build()
+                .name("market_data_journal_failures_total")
+                .help("Failed tick_journal bulk writes")
+                .register(registry);
+        Gauge.build()
+                .name("market_data_pending_symbols")
+                .help("Symbols with a tick waiting for the next flush")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return pendingTicks.size();
+                    }
+                });
+        Gauge.build()
+                .name("market_data_journal_queue_depth")
+                .help("Coalesced batches waiting for the journal writer")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return journalQueue.size();
+                    }
+                });
+    }
+
+    /**
+     * Start the market-data lane (tick flusher + journal writer).
+     */
+    public void start(int tickFlushMs) {
+        long flushMs = Math.max(10, tickFlushMs);
+        tickFlusher.scheduleAtFixedRate(this::flushTicks, flushMs, flushMs, TimeUnit.MILLISECONDS);
+        if (tickJournal != null) {
+            journalWriter.scheduleWithFixedDelay(this::drainJournalQueue, flushMs, flushMs, TimeUnit.MILLISECONDS);
+        }
+        log.info("Market-data lane started: flush={}ms, persistence={}",
+                flushMs, tickJournal != null ? "JOURNAL" : "EPHEMERAL");
+    }
+
+    /**
+     * Stop the market-data lane, flushing whatever is still pending.
+     */
+    public void stop() {
+        tickFlusher.shutdown();
+        journalWriter.shutdown();
+        try {
+            tickFlusher.awaitTermination(5, TimeUnit.SECONDS);
+            journalWriter.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushTicks();
+        drainJournalQueue();
     }
 
     // ═══════════════════════════════════════════════════════════════
@@ -54,6 +191,22 @@ public final class EventService {
         return persistAndBroadcast(e);
     }
 
+    // ═══════════════════════════════════════════════════════════════
+    // MARKET DATA (coalesced, non-blocking)
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Emit a TICK on the market-data lane.
+     * Never blocks: only replaces the pending tick for the symbol. Published to WS
+     * (and optionally journaled) on the next flush.
+     */
+    public void emitTick(Tick tick) {
+        ticksReceived.inc();
+        if (pendingTicks.put(tick.symbol(), tick) != null) {
+            ticksCoalesced.inc();
+        }
+    }
+
     // ═══════════════════════════════════════════════════════════════
     // USER-SCOPED EVENTS
     // ═══════════════════════════════════════════════════════════════
@@ -115,6 +268,86 @@ public final class EventService {
         return persisted;
     }
 
+    void flushTicks() {
+        try {
+            if (pendingTicks.isEmpty())
+                return;
+
+            List<Tick> batch = new ArrayList<>(pendingTicks.size());
+            for (String symbol : pendingTicks.keySet()) {
+                Tick tick = pendingTicks.remove(symbol);
+                if (tick != null) {
+                    batch.add(tick);
+                }
+            }
+
+            Instant now = Instant.now();
+            List<Tick> published = new ArrayList<>(batch.size());
+            for (Tick tick : batch) {
+                if (tick.timestamp() == null) {
+                    // One malformed tick must not cost the rest of the batch
+                    ticksSkipped.inc();
+                    log.debug("Skipping tick without timestamp: {}", tick.symbol());
+                    continue;
+                }
+                ObjectNode payload = MAPPER.createObjectNode();
+                payload.put("symbol", tick.symbol());
+                payload.put("lastPrice", tick.lastPrice());
+                payload.put("volume", tick.volume());
+                payload.put("timestamp", tick.timestamp().toString());
+                wsHub.publish(new TradeEvent(
+                        0, EventType.TICK, EventScope.GLOBAL, null, null, null,
+                        payload, null, null, null, null, now, "TICK_BUILDER"));
+                published.add(tick);
+            }
+            ticksPublished.inc(published.size());
+
+            if (tickJournal != null && !published.isEmpty() && !journalQueue.offer(published)) {
+                journalBatchesDropped.inc();
+                log.warn("Tick journal queue full, dropped batch of {} ticks", published.size());
+            }
+        } catch (Exception e) {
+            log.warn("Market-data lane flush error: {}", e.toString());
+        }
+    }
+
+    void drainJournalQueue() {
+        List<List<Tick>> batches = new ArrayList<>();
+        journalQueue.drainTo(batches);
+        if (batches.isEmpty())
+            return;
+
+        List<Tick> rows = new ArrayList<>();
+        for (List<Tick> batch : batches) {
+            rows.addAll(batch);
+        }
+
+        try {
+            tickJournal.appendBatch(rows);
+            ticksJournaled.inc(rows.size());
+        } catch (Exception e) {
+            journalFailures.inc();
+            log.warn("Tick journal write failed ({} ticks dropped): {}", rows.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Get market-data lane metrics (for health checks; also exported to Prometheus).
+     */
+    public Map<String, Long> getMarketDataLaneMetrics() {
+        Map<String, Long> metrics = new HashMap<>();
+        metrics.put("ticksReceived", (long) ticksReceived.get());
+        metrics.put("ticksCoalesced", (long) ticksCoalesced.get());
+        metrics.put("ticksPublished", (long) ticksPublished.get());
+        metrics.put("ticksSkipped", (long) ticksSkipped.get());
+        metrics.put("ticksJournaled", (long) ticksJournaled.get());
+        metrics.put("journalBatchesDropped", (long) journalBatchesDropped.get());
+        metrics.put("journalFailures", (long) journalFailures.get());
+        metrics.put("pendingSymbols", (long) pendingTicks.size());
+        metrics.put("journalQueueDepth", (long) journalQueue.size());
+        return metrics;
+    }
+
     /**
      * Get current latest sequence number.
      */
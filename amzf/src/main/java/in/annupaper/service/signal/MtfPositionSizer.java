@@ -3,6 +3,7 @@ package in.annupaper.service.signal;
 import in.annupaper.domain.model.HistoricalCandle;
 import in.annupaper.domain.model.MtfGlobalConfig;
 import in.annupaper.domain.model.Trade;
+import in.annupaper.service.candle.CandleColumns;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -22,9 +23,30 @@ import java.util.Map;
  * 6. Symbol log-loss budget (constitutional)
  *
  * Returns the MINIMUM of all constraints to ensure safety.
+ *
+ * The formulas run on SizingKernels (doubles, candle columns in paise);
+ * BigDecimal is only used for inputs and the result.
  */
 public final class MtfPositionSizer {
 
+    // Candle columns reused per sizing thread (velocity kernels)
+    private static final ThreadLocal<CandleColumns> COLUMNS = ThreadLocal.withInitial(CandleColumns::new);
+
+    private record CachedParams(MtfGlobalConfig config, SizingKernels.Params params) {
+    }
+
+    // Kernel params of the last config seen (configs are immutable snapshots)
+    private static volatile CachedParams cachedParams;
+
+    private static SizingKernels.Params params(MtfGlobalConfig config) {
+        CachedParams c = cachedParams;
+        if (c == null || c.config() != config) {
+            c = new CachedParams(config, SizingKernels.Params.of(config));
+            cachedParams = c;
+        }
+        return c.params();
+    }
+
     /**
      * Calculate position size for a buy zone entry.
      *
@@ -69,18 +91,23 @@ public final class MtfPositionSizer {
             BigDecimal currentPortfolioValue,
             BigDecimal peakPortfolioValue,
             MtfGlobalConfig config) {
+        // Primitive inputs (BigDecimal only at the edges)
+        SizingKernels.Params params = params(config);
+        double price = zonePrice.doubleValue();
+        double floor = effectiveFloor.doubleValue();
+        double capital = capSym.doubleValue();
+        double avg = existingAvg.doubleValue();
+
         // CONSTITUTIONAL GATE 1: Utility Asymmetry (3× Advantage) - PRE-CHECK
         // Must pass BEFORE sizing calculations
-        if (config.utilityGateEnabled()) {
-            boolean passesUtilityGate = UtilityAsymmetryCalculator.passesAdvantageGate(
-                    pWin,
+        if (params.utilityGateEnabled()) {
+            boolean passesUtilityGate = pWin != null && SizingKernels.passesAdvantageGate(
+                    pWin.doubleValue(),
                     // π = ln(ceiling/entry) - upside log return
-                    BigDecimal.valueOf(Math.log(
-                            effectiveCeiling.divide(zonePrice, 6, RoundingMode.HALF_UP).doubleValue())),
+                    SizingKernels.logReturnDown(effectiveCeiling.doubleValue(), price),
                     // ℓ = ln(floor/entry) - downside log return
-                    BigDecimal.valueOf(Math.log(
-                            effectiveFloor.divide(zonePrice, 6, RoundingMode.HALF_UP).doubleValue())),
-                    config);
+                    SizingKernels.logReturnDown(floor, price),
+                    params);
 
             if (!passesUtilityGate) {
                 // REJECT: Insufficient utility advantage (< 3×)
@@ -91,37 +118,38 @@ public final class MtfPositionSizer {
         Map<String, Integer> constraints = new HashMap<>();
 
         // Constraint 1: Log-utility (position level)
-        int maxLogSafe = LogUtilityCalculator.calculateMaxLogSafeQty(
-                zonePrice,
-                effectiveFloor,
-                config.maxPositionLogLoss(),
+        int maxLogSafe = SizingKernels.maxLogSafeQty(
+                price,
+                floor,
+                params.maxPositionLogLoss(),
                 existingQty,
-                existingAvg,
-                capSym);
+                avg,
+                capital);
         constraints.put("LOG_SAFE_POSITION", maxLogSafe);
 
         // CONSTITUTIONAL VELOCITY THROTTLE
         // Formula: V = V_base(Range_ATR) × g(stress)
         // Then: K_eff = K × V
-        BigDecimal velocityThrottle = BigDecimal.ONE; // Default: no throttle
-        BigDecimal stressThrottle = BigDecimal.ONE; // Default: no stress
+        double velocityThrottle = 1; // Default: no throttle
 
-        if (config.stressThrottleEnabled()) {
+        if (params.stressThrottleEnabled()) {
             // Calculate stress throttle from portfolio drawdown
-            stressThrottle = PortfolioRiskCalculator.calculateStressThrottle(
-                    PortfolioRiskCalculator.calculatePortfolioDrawdown(
-                            openTrades,
-                            currentPortfolioValue,
-                            peakPortfolioValue),
-                    config.maxStressDrawdown());
+            double stressThrottle = SizingKernels.stressThrottle(
+                    SizingKernels.drawdown(
+                            currentPortfolioValue.doubleValue(),
+                            peakPortfolioValue.doubleValue()),
+                    params.maxStressDrawdown());
 
             // Calculate velocity throttle: V = V_base × g(stress)
-            if (candles != null && !candles.isEmpty() && atr != null && atr.compareTo(BigDecimal.ZERO) > 0) {
-                velocityThrottle = VelocityCalculator.calculateFinalVelocity(
-                        VelocityCalculator.calculateRangeATR(candles, config.rangeLookbackBars(), atr),
-                        VelocityCalculator.calculateBodyRatio(candles, atr, 15),
+            if (candles != null && !candles.isEmpty() && atr != null && atr.signum() > 0) {
+                CandleColumns cols = COLUMNS.get().load(candles);
+                double atrPaise = atr.doubleValue() * 100;
+                velocityThrottle = SizingKernels.finalVelocity(
+                        SizingKernels.rangeAtr(cols.high(), cols.low(), cols.size(),
+                                params.rangeLookbackBars(), atrPaise),
+                        SizingKernels.bodyRatio(cols.open(), cols.close(), cols.size(), atrPaise, 15),
                         stressThrottle,
-                        config);
+                        params);
             } else {
                 // No candle data → use stress throttle only
                 velocityThrottle = stressThrottle;
@@ -129,72 +157,68 @@ public final class MtfPositionSizer {
         }
 
         // Apply velocity throttle: K_eff = K × V (local only, doesn't mutate kelly)
-        BigDecimal kellyEffective = kelly.multiply(velocityThrottle);
+        double kellyEffective = kelly.doubleValue() * velocityThrottle;
 
         // Constraint 2: Kelly sizing with confluence multiplier and velocity throttle
         // kelly_qty = (capital * K_eff * kelly_fraction * confluence_multiplier) /
         // price
-        BigDecimal kellyCapital = capSym
-                .multiply(kellyEffective)
-                .multiply(config.kellyFraction())
-                .multiply(confluenceMultiplier)
-                .multiply(config.maxKellyMultiplier());
-
-        int kellyQty = kellyCapital
-                .divide(zonePrice, 0, RoundingMode.DOWN)
-                .intValue();
+        double kellyCapital = capital
+                * kellyEffective
+                * params.kellyFraction()
+                * confluenceMultiplier.doubleValue()
+                * params.maxKellyMultiplier();
+
+        int kellyQty = SizingKernels.qty(kellyCapital / price);
         constraints.put("KELLY_SIZED", kellyQty);
 
         // Constraint 3: Fill probability weighted
         // Reduce kelly qty by fill probability
-        int fillWeightedQty = new BigDecimal(kellyQty)
-                .multiply(pFill)
-                .setScale(0, RoundingMode.DOWN)
-                .intValue();
+        int fillWeightedQty = SizingKernels.qty(kellyQty * pFill.doubleValue());
         constraints.put("FILL_WEIGHTED", fillWeightedQty);
 
         // Constraint 4: Capital availability
         // How much capital remains after existing position?
-        BigDecimal existingCapitalUsed = existingAvg
-                .multiply(new BigDecimal(existingQty));
-        BigDecimal remainingCapital = capSym.subtract(existingCapitalUsed).max(BigDecimal.ZERO);
-
-        int maxCapitalQty = remainingCapital
-                .divide(zonePrice, 0, RoundingMode.DOWN)
-                .intValue();
+        int maxCapitalQty = SizingKernels.capitalQty(capital, avg, existingQty, price);
         constraints.put("CAPITAL_AVAILABLE", maxCapitalQty);
 
         // Constraint 5: Portfolio log-loss budget (constitutional)
         // Calculate per-leg log loss: ℓ = ln(S / P)
-        BigDecimal perLegLogLoss = LogUtilityCalculator.calculatePerLegLogLoss(zonePrice, effectiveFloor);
+        double perLegLogLoss = SizingKernels.perLegLogLoss(price, floor);
+
+        // Current log loss: R_port (all open trades) and R_sym (this symbol)
+        double currentPortfolioLogLoss = 0;
+        double currentSymbolLogLoss = 0;
+        if (openTrades != null) {
+            for (Trade trade : openTrades) {
+                if (trade.currentLogReturn() != null) {
+                    double r = trade.currentLogReturn().doubleValue();
+                    currentPortfolioLogLoss += r;
+                    if (symbol != null && symbol.equals(trade.symbol())) {
+                        currentSymbolLogLoss += r;
+                    }
+                }
+            }
+        }
 
         // Calculate portfolio headroom: e_max = (L_port - R_port) / ℓ
-        BigDecimal currentPortfolioLogLoss = PortfolioRiskCalculator.calculateCurrentPortfolioLogLoss(openTrades);
-        BigDecimal portfolioHeadroom = PortfolioRiskCalculator.calculatePortfolioHeadroom(
+        double portfolioHeadroom = SizingKernels.headroom(
                 currentPortfolioLogLoss,
-                config.maxPortfolioLogLoss(),
+                params.maxPortfolioLogLoss(),
                 perLegLogLoss);
 
         // Convert exposure weight to quantity
-        int portfolioQty = PortfolioRiskCalculator.convertExposureToQty(
-                portfolioHeadroom,
-                capSym,
-                zonePrice);
+        int portfolioQty = SizingKernels.exposureToQty(portfolioHeadroom, capital, price);
         constraints.put("PORTFOLIO_BUDGET", portfolioQty);
 
         // Constraint 6: Symbol log-loss budget (constitutional)
         // Calculate symbol headroom: e_max = (L_sym - R_sym) / ℓ
-        BigDecimal currentSymbolLogLoss = PortfolioRiskCalculator.calculateSymbolLogLoss(openTrades, symbol);
-        BigDecimal symbolHeadroom = PortfolioRiskCalculator.calculateSymbolHeadroom(
+        double symbolHeadroom = SizingKernels.headroom(
                 currentSymbolLogLoss,
-                config.maxSymbolLogLoss(),
+                params.maxSymbolLogLoss(),
                 perLegLogLoss);
 
         // Convert exposure weight to quantity
-        int symbolQty = PortfolioRiskCalculator.convertExposureToQty(
-                symbolHeadroom,
-                capSym,
-                zonePrice);
+        int symbolQty = SizingKernels.exposureToQty(symbolHeadroom, capital, price);
         constraints.put("SYMBOL_BUDGET", symbolQty);
 
         // Apply minimum of all constraints
@@ -294,13 +318,15 @@ public final class MtfPositionSizer {
         }
 
         // Recalculate P(win) and Kelly with new price
-        BigDecimal maxDrop = new BigDecimal("0.02"); // Default 2% - should be passed in
+        double maxDrop = 0.02; // Default 2% - should be passed in
 
-        BigDecimal pWin = KellyCalculator.calculatePWin(
-                zonePrice, effectiveFloor, effectiveCeiling, maxDrop);
+        double pWinValue = SizingKernels.pWin(
+                zonePrice.doubleValue(), effectiveFloor.doubleValue(), effectiveCeiling.doubleValue(), maxDrop);
+        BigDecimal pWin = BigDecimal.valueOf(pWinValue).setScale(4, RoundingMode.HALF_UP);
 
-        BigDecimal kelly = KellyCalculator.calculateKelly(
-                zonePrice, effectiveFloor, effectiveCeiling, pWin);
+        BigDecimal kelly = BigDecimal.valueOf(SizingKernels.kelly(
+                zonePrice.doubleValue(), effectiveFloor.doubleValue(), effectiveCeiling.doubleValue(),
+                pWin.doubleValue())).setScale(6, RoundingMode.HALF_UP);
 
         // Use reduced confluence multiplier for adding (0.75x of original)
         BigDecimal confluenceMultiplier = new BigDecimal("0.75");
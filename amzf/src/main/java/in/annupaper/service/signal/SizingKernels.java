@@ -0,0 +1,465 @@
+package in.annupaper.service.signal;
+
+import in.annupaper.domain.model.MtfGlobalConfig;
+
+/**
+ * Sizing Kernels - double/long versions of the signal calculator formulas.
+ *
+ * Same formulas as ATRCalculator, VelocityCalculator, KellyCalculator,
+ * LogUtilityCalculator, PortfolioRiskCalculator and UtilityAsymmetryCalculator,
+ * without BigDecimal: candle kernels scan OHLC columns in paise (see
+ * CandleColumns), everything else takes doubles. They allocate nothing and are
+ * what MtfPositionSizer runs per sizing; the BigDecimal calculators remain the
+ * reference (and the API for diagnostics).
+ *
+ * Numerics: the BigDecimal versions round most intermediates to 6 decimals;
+ * the kernels don't, so continuous results agree to about 1e-6 and a Kelly
+ * quantity sitting exactly on an integer boundary may differ by one share.
+ * The risk caps (log-safe, capital, portfolio and symbol budget quantities)
+ * and the 3× advantage gate are conservative instead: money is compared in
+ * exact paise, grid roundings go the safe way and quantities round down, so
+ * a cap is never above, and the gate never passes where, the BigDecimal
+ * version's.
+ *
+ * Conventions (as the BigDecimal versions):
+ * - Candle columns are scanned in the order given
+ * - Log losses are negative, headrooms and throttles positive
+ */
+public final class SizingKernels {
+
+    // Floor of a quantity: absorb representation error of exact integer results
+    private static final double QTY_EPSILON = 1e-9;
+
+    // The calculators' 6-decimal grid for ratios, log returns, utilities and
+    // exposures
+    private static final double GRID = 1e6;
+
+    private static final double MIN_VELOCITY = 0.0625;
+
+    private SizingKernels() {
+    }
+
+    /**
+     * Config values used by the kernels, converted once per config.
+     */
+    public record Params(
+            double maxPositionLogLoss,
+            double maxPortfolioLogLoss,
+            double maxSymbolLogLoss,
+            double kellyFraction,
+            double maxKellyMultiplier,
+            double rangeAtrThresholdWide,
+            double rangeAtrThresholdHealthy,
+            double rangeAtrThresholdTight,
+            double velocityMultiplierWide,
+            double velocityMultiplierHealthy,
+            double velocityMultiplierTight,
+            double velocityMultiplierCompressed,
+            double bodyRatioThresholdLow,
+            double bodyRatioThresholdCritical,
+            double bodyRatioPenaltyLow,
+            double bodyRatioPenaltyCritical,
+            int rangeLookbackBars,
+            boolean stressThrottleEnabled,
+            double maxStressDrawdown,
+            double utilityAlpha,
+            double utilityBeta,
+            double utilityLambda,
+            double minAdvantageRatio,
+            boolean utilityGateEnabled) {
+
+        public static Params of(MtfGlobalConfig config) {
+            return new Params(
+                    config.maxPositionLogLoss().doubleValue(),
+                    config.maxPortfolioLogLoss().doubleValue(),
+                    config.maxSymbolLogLoss().doubleValue(),
+                    config.kellyFraction().doubleValue(),
+                    config.maxKellyMultiplier().doubleValue(),
+                    config.rangeAtrThresholdWide().doubleValue(),
+                    config.rangeAtrThresholdHealthy().doubleValue(),
+                    config.rangeAtrThresholdTight().doubleValue(),
+                    config.velocityMultiplierWide().doubleValue(),
+                    config.velocityMultiplierHealthy().doubleValue(),
+                    config.velocityMultiplierTight().doubleValue(),
+                    config.velocityMultiplierCompressed().doubleValue(),
+                    config.bodyRatioThresholdLow().doubleValue(),
+                    config.bodyRatioThresholdCritical().doubleValue(),
+                    config.bodyRatioPenaltyLow().doubleValue(),
+                    config.bodyRatioPenaltyCritical().doubleValue(),
+                    config.rangeLookbackBars(),
+                    config.stressThrottleEnabled(),
+                    config.maxStressDrawdown().doubleValue(),
+                    config.utilityAlpha().doubleValue(),
+                    config.utilityBeta().doubleValue(),
+                    config.utilityLambda().doubleValue(),
+                    config.minAdvantageRatio().doubleValue(),
+                    config.utilityGateEnabled());
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // ATR (paise)
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * TR = max(H - L, |H - PC|, |L - PC|).
+     */
+    public static long trueRange(long high, long low, long prevClose) {
+        return Math.max(high - low, Math.max(Math.abs(high - prevClose), Math.abs(low - prevClose)));
+    }
+
+    /**
+     * Wilder ATR over bars [0, n): simple average of the first {@code period}
+     * TRs, then ATR_t = (ATR_{t-1} × (n-1) + TR_t) / n.
+     *
+     * @return ATR in paise, or NaN if fewer than period + 1 bars
+     */
+    public static double wilderAtr(long[] high, long[] low, long[] close, int n, int period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("ATR period must be positive: " + period);
+        }
+        if (n < period + 1) {
+            return Double.NaN;
+        }
+        double atr = simpleTrAverage(high, low, close, 1, period);
+        for (int i = period + 1; i < n; i++) {
+            atr = (atr * (period - 1) + trueRange(high[i], low[i], close[i - 1])) / period;
+        }
+        return atr;
+    }
+
+    /**
+     * Average TR of bars [start, start + period), each against the previous
+     * bar's close.
+     */
+    public static double simpleTrAverage(long[] high, long[] low, long[] close, int start, int period) {
+        long sum = 0;
+        for (int i = start; i < start + period; i++) {
+            sum += trueRange(high[i], low[i], close[i - 1]);
+        }
+        return (double) sum / period;
+    }
+
+    /**
+     * Wilder ATR, else the simple TR average over up to {@code fallbackPeriod}
+     * bars (as ATRCalculator.calculateDailyATRWithFallback).
+     *
+     * @return ATR in paise, or NaN if even the fallback lacks data
+     */
+    public static double atrWithFallback(long[] high, long[] low, long[] close, int n, int period,
+            int fallbackPeriod) {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double atr = wilderAtr(high, low, close, n, period);
+        if (!Double.isNaN(atr)) {
+            return atr;
+        }
+        if (n >= fallbackPeriod + 1) {
+            return simpleTrAverage(high, low, close, 1, Math.min(fallbackPeriod, n - 1));
+        }
+        return Double.NaN;
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Velocity
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * (max high - min low) / ATR over the last {@code lookbackBars} of [0, n).
+     */
+    public static double rangeAtr(long[] high, long[] low, int n, int lookbackBars, double atrPaise) {
+        if (n == 0 || !(atrPaise > 0)) {
+            return 0;
+        }
+        long hh = Long.MIN_VALUE;
+        long ll = Long.MAX_VALUE;
+        for (int i = Math.max(0, n - lookbackBars); i < n; i++) {
+            hh = Math.max(hh, high[i]);
+            ll = Math.min(ll, low[i]);
+        }
+        return (hh - ll) / atrPaise;
+    }
+
+    /**
+     * EMA(|close - open|) / ATR over bars [0, n), seeded with the first body.
+     */
+    public static double bodyRatio(long[] open, long[] close, int n, double atrPaise, int emaSpan) {
+        if (n == 0 || !(atrPaise > 0)) {
+            return 0;
+        }
+        double alpha = 2.0 / (emaSpan + 1);
+        double ema = Math.abs(close[0] - open[0]);
+        for (int i = 1; i < n; i++) {
+            ema = alpha * Math.abs(close[i] - open[i]) + (1 - alpha) * ema;
+        }
+        return ema / atrPaise;
+    }
+
+    public static double velocityBase(double rangeAtr, Params p) {
+        if (rangeAtr >= p.rangeAtrThresholdWide()) {
+            return p.velocityMultiplierWide();
+        }
+        if (rangeAtr >= p.rangeAtrThresholdHealthy()) {
+            return p.velocityMultiplierHealthy();
+        }
+        if (rangeAtr >= p.rangeAtrThresholdTight()) {
+            return p.velocityMultiplierTight();
+        }
+        return p.velocityMultiplierCompressed();
+    }
+
+    /**
+     * V = V_base(Range_ATR) [× body penalty] × g(stress), at least 0.0625.
+     */
+    public static double finalVelocity(double rangeAtr, double bodyRatio, double stressThrottle, Params p) {
+        double v = velocityBase(rangeAtr, p);
+        if (bodyRatio > 0) {
+            if (bodyRatio < p.bodyRatioThresholdCritical()) {
+                v *= p.bodyRatioPenaltyCritical();
+            } else if (bodyRatio < p.bodyRatioThresholdLow()) {
+                v *= p.bodyRatioPenaltyLow();
+            }
+        }
+        return Math.max(v * stressThrottle, MIN_VELOCITY);
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Kelly
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * P(win) = zonesToCeiling / (zonesToFloor + zonesToCeiling), clamped to
+     * [0.10, 0.90].
+     */
+    public static double pWin(double price, double floor, double ceiling, double maxDrop) {
+        if (price == 0 || maxDrop == 0) {
+            return 0.50;
+        }
+        double zonesToFloor = (price - floor) / (floor * maxDrop);
+        double zonesToCeiling = (ceiling - price) / (price * maxDrop);
+        double total = zonesToFloor + zonesToCeiling;
+        if (total == 0) {
+            return 0.50;
+        }
+        return Math.min(0.90, Math.max(0.10, zonesToCeiling / total));
+    }
+
+    /**
+     * Kelly = (p × b - q) / b with b = (ceiling - price) / (price - floor),
+     * clamped to [0, 1].
+     */
+    public static double kelly(double price, double floor, double ceiling, double pWin) {
+        if (price == 0 || price <= floor || ceiling <= price) {
+            return 0;
+        }
+        double winRatio = (ceiling - price) / (price - floor);
+        double kelly = (pWin * winRatio - (1 - pWin)) / winRatio;
+        return Math.min(1, Math.max(0, kelly));
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Log utility
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * ln(to / from); 0 if either price is not positive.
+     */
+    public static double logReturn(double to, double from) {
+        if (to <= 0 || from <= 0) {
+            return 0;
+        }
+        return Math.log(to / from);
+    }
+
+    /**
+     * max_avg_cost = floor × e^|max_log_loss|, to the paisa.
+     */
+    public static double maxAvgCost(double floor, double maxLogLoss) {
+        if (floor <= 0) {
+            return 0;
+        }
+        return Math.round(floor * Math.exp(Math.abs(maxLogLoss)) * 100) / 100.0;
+    }
+
+    /**
+     * ln(to / from) with the ratio rounded down to 6 decimals first, as the
+     * calculators take it (they round it half-up): never above theirs.
+     */
+    public static double logReturnDown(double to, double from) {
+        if (to <= 0 || from <= 0) {
+            return 0;
+        }
+        return Math.log(Math.floor(to / from * GRID) / GRID);
+    }
+
+    /**
+     * Per-leg log loss ℓ = ln(S / P) on the calculators' 6-decimal grid,
+     * rounded away from zero: a budget sized from it is never larger than
+     * one sized from LogUtilityCalculator.calculatePerLegLogLoss.
+     */
+    public static double perLegLogLoss(double entryPrice, double stopPrice) {
+        return Math.floor(logReturnDown(stopPrice, entryPrice) * GRID) / GRID;
+    }
+
+    /**
+     * Largest quantity whose new average cost stays within max_avg_cost,
+     * capped by capital. Closed form of LogUtilityCalculator's binary search:
+     * (Q × A + q × P) / (Q + q) ≤ M ⇔ q × (P - M) ≤ Q × (M - A), solved
+     * exactly in paise. The binary search compares a half-up rounded average,
+     * so it can only allow more.
+     */
+    public static int maxLogSafeQty(double entryPrice, double floor, double maxLogLoss,
+            int existingQty, double existingAvg, double capSym) {
+        if (entryPrice <= 0 || floor <= 0) {
+            return 0;
+        }
+        long price = paise(entryPrice);
+        long maxAvg = Math.round(paise(floor) * Math.exp(Math.abs(maxLogLoss)));
+        long avg = paise(existingAvg);
+        if (existingQty > 0 && avg > maxAvg) {
+            return 0;
+        }
+        int maxPossible = shares(capitalPaise(capSym) / price);
+        if (price <= maxAvg) {
+            return maxPossible;
+        }
+        if (existingQty <= 0) {
+            return 0;
+        }
+        return Math.min(maxPossible, shares(existingQty * (maxAvg - avg) / (price - maxAvg)));
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Portfolio risk
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * e_max = (budget - current) / ℓ_new, truncated to 6 decimals as
+     * PortfolioRiskCalculator; 0 without headroom or if ℓ ≥ 0.
+     */
+    public static double headroom(double currentLogLoss, double maxLogLoss, double perLegLogLoss) {
+        if (perLegLogLoss >= 0) {
+            return 0;
+        }
+        double headroom = maxLogLoss - currentLogLoss;
+        if (headroom <= 0) {
+            return 0;
+        }
+        return Math.max(0, Math.floor(headroom / perLegLogLoss * GRID) / GRID);
+    }
+
+    /**
+     * Qty = floor(C × e / P), rounded down past representation error.
+     */
+    public static int exposureToQty(double exposureWeight, double capital, double price) {
+        if (exposureWeight <= 0 || capital <= 0 || price <= 0) {
+            return 0;
+        }
+        return qtyDown(capital * exposureWeight / price);
+    }
+
+    /**
+     * Qty = floor(max(0, C - Q × A) / P), exact in paise.
+     */
+    public static int capitalQty(double capital, double existingAvg, int existingQty, double price) {
+        if (price <= 0) {
+            return 0;
+        }
+        long remaining = Math.max(0, capitalPaise(capital) - paise(existingAvg) * existingQty);
+        return shares(remaining / paise(price));
+    }
+
+    /**
+     * (current - peak) / peak, at most 0.
+     */
+    public static double drawdown(double currentValue, double peakValue) {
+        if (peakValue <= 0) {
+            return 0;
+        }
+        return Math.min(0, (currentValue - peakValue) / peakValue);
+    }
+
+    /**
+     * g(stress): 1 - 0.5 × drawdown/max up to the max stress drawdown, 0.25
+     * beyond it.
+     */
+    public static double stressThrottle(double drawdown, double maxStressDrawdown) {
+        if (drawdown >= 0 || maxStressDrawdown >= 0) {
+            return 1;
+        }
+        double ratio = drawdown / maxStressDrawdown;
+        return ratio <= 1 ? 1 - 0.5 * ratio : 0.25;
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Utility asymmetry
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * U(r) = r^α for r ≥ 0, -λ × (-r)^β for r < 0.
+     */
+    public static double utility(double logReturn, double alpha, double beta, double lambda) {
+        return logReturn >= 0
+                ? Math.pow(logReturn, alpha)
+                : -lambda * Math.pow(-logReturn, beta);
+    }
+
+    /**
+     * p × U(π) ≥ ratio × (1 - p) × |U(ℓ)|; false unless π > 0 and ℓ < 0.
+     * Utilities are on UtilityAsymmetryCalculator's 6-decimal grid, U(π)
+     * rounded down and |U(ℓ)| up, so this never passes where it fails.
+     */
+    public static boolean passesAdvantageGate(double pWin, double upsideLogReturn, double downsideLogReturn,
+            Params p) {
+        if (!(upsideLogReturn > 0) || !(downsideLogReturn < 0)) {
+            return false;
+        }
+        double up = Math.floor(
+                utility(upsideLogReturn, p.utilityAlpha(), p.utilityBeta(), p.utilityLambda()) * GRID) / GRID;
+        double down = Math.ceil(
+                -utility(downsideLogReturn, p.utilityAlpha(), p.utilityBeta(), p.utilityLambda()) * GRID) / GRID;
+        return pWin * up >= p.minAdvantageRatio() * (1 - pWin) * down;
+    }
+
+    /**
+     * floor(x) as a share count, saturating at Integer.MAX_VALUE. A value a
+     * hair below an integer counts as that integer (an exact result with
+     * representation error); not for risk caps, see {@link #qtyDown}.
+     */
+    static int qty(double x) {
+        if (!(x > 0)) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.floor(x + QTY_EPSILON * Math.max(1, x)));
+    }
+
+    /**
+     * floor(x) as a share count that is never above the floor of the exact
+     * value: a value a hair above an integer is rounded down past it.
+     */
+    static int qtyDown(double x) {
+        if (!(x > 0)) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, Math.floor(x - QTY_EPSILON * Math.max(1, x))));
+    }
+
+    private static int shares(long n) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, n));
+    }
+
+    /**
+     * A price in paise (prices have at most 2 decimals).
+     */
+    private static long paise(double rupees) {
+        return Math.round(rupees * 100);
+    }
+
+    /**
+     * Capital in paise, rounded down if it has more than 2 decimals.
+     */
+    private static long capitalPaise(double rupees) {
+        return (long) Math.floor(rupees * 100 + QTY_EPSILON);
+    }
+}
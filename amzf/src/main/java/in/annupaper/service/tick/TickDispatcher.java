@@ -0,0 +1,410 @@
+package in.annupaper.service.tick;
+
+import in.annupaper.domain.model.BrokerAdapter;
+import in.annupaper.domain.model.Tick;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * TickDispatcher - Decouples tick consumers from the broker callback thread.
+ *
+ * PROBLEM:
+ * TickCandleBuilder, ExitSignalService, MtfSignalGenerator and the relay
+ * listener used to run inline on the broker's WebSocket thread, so one slow
+ * consumer (e.g. a DB call in signal analysis) stalled the whole feed.
+ *
+ * DESIGN:
+ * - The dispatcher is the only listener subscribed to the adapter; onTick
+ * just enqueues into every stage and returns
+ * - Each stage (one consumer) has N partitions; a symbol always maps to the
+ * same partition, so ticks of a symbol are delivered in order, by one thread
+ * - Partitions are bounded lock-free rings (TickRing) drained by a dedicated
+ * daemon thread; stages are independent, so a slow stage only lags itself
+ *
+ * POLICY (per stage, when a partition is full):
+ * - BLOCK: the producer waits for space (no tick is lost)
+ * - DROP_OLDEST: the oldest queued tick is discarded
+ * - CONFLATE_LATEST: only the latest tick per symbol is kept; the consumer
+ * sees every symbol's most recent price and never falls behind
+ *
+ * METRICS (per stage, exported to Prometheus with a "stage" label): enqueued,
+ * delivered, dropped, conflated, errors, queue depth, enqueue-to-delivery lag,
+ * time the producer spent blocked.
+ */
+public final class TickDispatcher implements BrokerAdapter.TickListener {
+    private static final Logger log = LoggerFactory.getLogger(TickDispatcher.class);
+
+    public enum Policy {
+        BLOCK,
+        DROP_OLDEST,
+        CONFLATE_LATEST
+    }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Map<String, Policy> policyOverrides;
+    private final int partitions;
+    private final int capacity;
+
+    private volatile Stage[] stages = new Stage[0];
+    private volatile boolean running = true;
+
+    private final Counter enqueuedTotal;
+    private final Counter deliveredTotal;
+    private final Counter droppedTotal;
+    private final Counter conflatedTotal;
+    private final Counter errorsTotal;
+    private final Counter blockedSeconds;
+    private final Histogram lagSeconds;
+    private final Gauge queueDepth;
+
+    /**
+     * @param policyOverrides per-stage policies replacing the defaults given to addStage
+     * @param partitions      partitions (worker threads) per stage
+     * @param capacity        ticks per partition
+     */
+    public TickDispatcher(Map<String, Policy> policyOverrides, int partitions, int capacity) {
+        this(policyOverrides, partitions, capacity, new CollectorRegistry());
+    }
+
+    public TickDispatcher(Map<String, Policy> policyOverrides, int partitions, int capacity,
+            CollectorRegistry registry) {
+        this.policyOverrides = Map.copyOf(policyOverrides);
+        this.partitions = Math.max(1, partitions);
+        this.capacity = Math.max(2, capacity);
+
+        this.enqueuedTotal = Counter.build()
+                .name("tick_dispatch_enqueued_total")
+                .help("Ticks enqueued into a dispatcher stage")
+                .labelNames("stage")
+                .register(registry);
+        this.deliveredTotal = Counter.build()
+                .name("tick_dispatch_delivered_total")
+                .help("Ticks delivered to a stage's consumer")
+                .labelNames("stage")
+                .register(registry);
+        this.droppedTotal = Counter.build()
+                .name("tick_dispatch_dropped_total")
+                .help("Ticks dropped by a stage (DROP_OLDEST overflow or shutdown)")
+                .labelNames("stage")
+                .register(registry);
+        this.conflatedTotal = Counter.build()
+                .name("tick_dispatch_conflated_total")
+                .help("Ticks replaced by a newer tick of the same symbol (CONFLATE_LATEST)")
+                .labelNames("stage")
+                .register(registry);
+        this.errorsTotal = Counter.build()
+                .name("tick_dispatch_errors_total")
+                .help("Exceptions thrown by a stage's consumer")
+                .labelNames("stage")
+                .register(registry);
+        this.blockedSeconds = Counter.build()
+                .name("tick_dispatch_blocked_seconds_total")
+                .help("Time the broker thread spent waiting for space in a BLOCK stage")
+                .labelNames("stage")
+                .register(registry);
+        this.lagSeconds = Histogram.build()
+                .name("tick_dispatch_lag_seconds")
+                .help("Enqueue-to-delivery lag of a stage in seconds")
+                .labelNames("stage")
+                .buckets(0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1)
+                .register(registry);
+        this.queueDepth = Gauge.build()
+                .name("tick_dispatch_queue_depth")
+                .help("Ticks queued in a stage across its partitions")
+                .labelNames("stage")
+                .register(registry);
+    }
+
+    /**
+     * Add a consumer stage and start its partition threads.
+     * Stages should be added before the dispatcher is subscribed.
+     */
+    public synchronized TickDispatcher addStage(String name, BrokerAdapter.TickListener consumer,
+            Policy defaultPolicy) {
+        Policy policy = policyOverrides.getOrDefault(name, defaultPolicy);
+        Stage stage = new Stage(name, consumer, policy, partitions, capacity);
+        queueDepth.setChild(new Gauge.Child() {
+            @Override
+            public double get() {
+                return stage.depth();
+            }
+        }, name);
+        stage.start();
+        Stage[] next = Arrays.copyOf(stages, stages.length + 1);
+        next[stages.length] = stage;
+        stages = next;
+        log.info("Tick stage '{}' started: policy={}, partitions={}, capacity={}",
+                name, policy, partitions, capacity);
+        return this;
+    }
+
+    /**
+     * Broker callback: enqueue only.
+     */
+    @Override
+    public void onTick(Tick tick) {
+        long now = System.nanoTime();
+        for (Stage stage : stages) {
+            stage.enqueue(tick, now);
+        }
+    }
+
+    /**
+     * Errors are rare and not ordered with ticks; forwarded inline.
+     */
+    @Override
+    public void onError(Throwable error) {
+        for (Stage stage : stages) {
+            try {
+                stage.consumer.onError(error);
+            } catch (Exception e) {
+                log.warn("Tick stage '{}' failed to handle error: {}", stage.name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stop accepting ticks, let workers drain their partitions and exit.
+     */
+    public void stop(long timeoutMs) {
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Stage stage : stages) {
+            for (Partition p : stage.partitions) {
+                LockSupport.unpark(p.worker);
+                try {
+                    p.worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Per-stage metrics, keyed "stage.metric".
+     */
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        for (Stage stage : stages) {
+            String n = stage.name + ".";
+            metrics.put(n + "enqueued", (long) stage.enqueued.get());
+            metrics.put(n + "delivered", (long) stage.delivered.get());
+            metrics.put(n + "dropped", (long) stage.dropped.get());
+            metrics.put(n + "conflated", (long) stage.conflated.get());
+            metrics.put(n + "errors", (long) stage.errors.get());
+            metrics.put(n + "queueDepth", (long) stage.depth());
+            metrics.put(n + "lagLastMicros", TimeUnit.NANOSECONDS.toMicros(stage.lastLagNanos));
+            metrics.put(n + "lagMaxMicros", TimeUnit.NANOSECONDS.toMicros(stage.maxLagNanos.getAndSet(0)));
+            metrics.put(n + "blockedMs", (long) (stage.blocked.get() * 1000));
+        }
+        return metrics;
+    }
+
+    /**
+     * Parse a policy spec like "exits=BLOCK,signals=CONFLATE_LATEST" (unknown
+     * entries ignored).
+     */
+    public static Map<String, Policy> parsePolicies(String spec) {
+        Map<String, Policy> policies = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return policies;
+        }
+        for (String entry : spec.split(",")) {
+            String[] kv = entry.trim().split("=");
+            if (kv.length != 2) {
+                continue;
+            }
+            try {
+                policies.put(kv[0].trim(), Policy.valueOf(kv[1].trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignoring tick dispatch policy entry '{}'", entry);
+            }
+        }
+        return policies;
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Stage / partition
+    // ═══════════════════════════════════════════════════════════════
+
+    private final class Stage {
+        final String name;
+        final BrokerAdapter.TickListener consumer;
+        final Policy policy;
+        final Partition[] partitions;
+
+        final Counter.Child enqueued;
+        final Counter.Child delivered;
+        final Counter.Child dropped;
+        final Counter.Child conflated;
+        final Counter.Child errors;
+        final Counter.Child blocked;
+        final Histogram.Child lagHistogram;
+        final AtomicLong maxLagNanos = new AtomicLong();
+        volatile long lastLagNanos;
+
+        Stage(String name, BrokerAdapter.TickListener consumer, Policy policy, int partitions, int capacity) {
+            this.name = name;
+            this.consumer = consumer;
+            this.policy = policy;
+            this.enqueued = enqueuedTotal.labels(name);
+            this.delivered = deliveredTotal.labels(name);
+            this.dropped = droppedTotal.labels(name);
+            this.conflated = conflatedTotal.labels(name);
+            this.errors = errorsTotal.labels(name);
+            this.blocked = blockedSeconds.labels(name);
+            this.lagHistogram = lagSeconds.labels(name);
+            this.partitions = new Partition[partitions];
+            for (int i = 0; i < partitions; i++) {
+                this.partitions[i] = new Partition(policy, capacity);
+            }
+        }
+
+        void start() {
+            for (int i = 0; i < partitions.length; i++) {
+                Partition p = partitions[i];
+                p.worker = new Thread(() -> drain(this, p), "tick-" + name + "-" + i);
+                p.worker.setDaemon(true);
+                p.worker.start();
+            }
+        }
+
+        void enqueue(Tick tick, long now) {
+            if (!running) {
+                return;
+            }
+            Partition p = partitions[(tick.symbol().hashCode() & 0x7fffffff) % partitions.length];
+            enqueued.inc();
+            switch (policy) {
+                case BLOCK -> {
+                    if (!p.ring.offer(tick, now)) {
+                        long start = System.nanoTime();
+                        do {
+                            p.wake();
+                            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                            if (!running) {
+                                dropped.inc();
+                                return;
+                            }
+                        } while (!p.ring.offer(tick, now));
+                        blocked.inc((System.nanoTime() - start) / 1e9);
+                    }
+                }
+                case DROP_OLDEST -> {
+                    while (!p.ring.offer(tick, now)) {
+                        if (p.ring.poll(null) != null) {
+                            dropped.inc();
+                        }
+                    }
+                }
+                case CONFLATE_LATEST -> {
+                    if (p.latest.put(tick.symbol(), new Pending(tick, now)) == null) {
+                        p.dirty.offer(tick.symbol());
+                    } else {
+                        conflated.inc();
+                    }
+                }
+            }
+            p.wake();
+        }
+
+        void delivered(long enqueuedNanos) {
+            long lag = System.nanoTime() - enqueuedNanos;
+            lastLagNanos = lag;
+            maxLagNanos.accumulateAndGet(lag, Math::max);
+            lagHistogram.observe(lag / 1e9);
+            delivered.inc();
+        }
+
+        int depth() {
+            int depth = 0;
+            for (Partition p : partitions) {
+                depth += policy == Policy.CONFLATE_LATEST ? p.latest.size() : p.ring.size();
+            }
+            return depth;
+        }
+    }
+
+    private record Pending(Tick tick, long enqueuedNanos) {
+    }
+
+    private static final class Partition {
+        final TickRing ring;
+        final Map<String, Pending> latest;
+        final Queue<String> dirty;
+        Thread worker;
+        volatile boolean parked;
+
+        Partition(Policy policy, int capacity) {
+            boolean conflate = policy == Policy.CONFLATE_LATEST;
+            this.ring = conflate ? null : new TickRing(capacity);
+            this.latest = conflate ? new ConcurrentHashMap<>() : null;
+            this.dirty = conflate ? new ConcurrentLinkedQueue<>() : null;
+        }
+
+        Tick next(long[] enqueuedOut) {
+            if (ring != null) {
+                return ring.poll(enqueuedOut);
+            }
+            String symbol;
+            while ((symbol = dirty.poll()) != null) {
+                Pending pending = latest.remove(symbol);
+                if (pending != null) {
+                    enqueuedOut[0] = pending.enqueuedNanos();
+                    return pending.tick();
+                }
+            }
+            return null;
+        }
+
+        boolean isEmpty() {
+            return ring != null ? ring.size() == 0 : dirty.isEmpty();
+        }
+
+        void wake() {
+            if (parked) {
+                LockSupport.unpark(worker);
+            }
+        }
+    }
+
+    private void drain(Stage stage, Partition p) {
+        long[] enqueuedAt = new long[1];
+        while (true) {
+            Tick tick = p.next(enqueuedAt);
+            if (tick == null) {
+                if (!running) {
+                    return;
+                }
+                p.parked = true;
+                if (p.isEmpty()) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                p.parked = false;
+                continue;
+            }
+            try {
+                stage.consumer.onTick(tick, enqueuedAt[0]);
+            } catch (Exception e) {
+                stage.errors.inc();
+                log.warn("Tick stage '{}' failed for {}: {}", stage.name, tick.symbol(), e.getMessage());
+            }
+            stage.delivered(enqueuedAt[0]);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package in.annupaper.service.tick;
+
+import in.annupaper.domain.model.Tick;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * TickRing - Bounded lock-free ring of ticks (one dispatcher partition).
+ *
+ * Sequence-per-slot ring (Vyukov style): a slot's sequence tells producers
+ * and consumers whether it is free or published, so offer/poll are a CAS on
+ * tail/head plus plain array writes, with no locks and no per-tick nodes.
+ *
+ * The normal case is one producer (broker callback thread) and one consumer
+ * (partition worker), but both sides are CAS-safe: DROP_OLDEST producers poll
+ * the oldest tick themselves, and several adapters may feed one dispatcher.
+ */
+final class TickRing {
+    private final int mask;
+    private final Tick[] items;
+    private final long[] enqueuedAt;
+    private final AtomicLongArray sequence;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    TickRing(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.items = new Tick[size];
+        this.enqueuedAt = new long[size];
+        this.sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequence.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the ring is full
+     */
+    boolean offer(Tick tick, long enqueuedNanos) {
+        long pos = tail.get();
+        while (true) {
+            int i = (int) (pos & mask);
+            long dif = sequence.get(i) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items[i] = tick;
+                    enqueuedAt[i] = enqueuedNanos;
+                    sequence.set(i, pos + 1); // publish
+                    return true;
+                }
+                pos = tail.get();
+            } else if (dif < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Oldest tick, or null if empty. Its enqueue time goes to
+     * {@code enqueuedOut[0]} when given.
+     */
+    Tick poll(long[] enqueuedOut) {
+        long pos = head.get();
+        while (true) {
+            int i = (int) (pos & mask);
+            long dif = sequence.get(i) - (pos + 1);
+            if (dif == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    Tick tick = items[i];
+                    long at = enqueuedAt[i];
+                    items[i] = null;
+                    sequence.set(i, pos + mask + 1); // free for the next lap
+                    if (enqueuedOut != null) {
+                        enqueuedOut[0] = at;
+                    }
+                    return tick;
+                }
+                pos = head.get();
+            } else if (dif < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -13,7 +13,6 @@ import in.annupaper.service.admin.AdminService;
 import in.annupaper.service.oauth.BrokerOAuthService;
 import in.annupaper.application.service.MtfBackfillService;
 import in.annupaper.application.service.RecoveryManager;
-import in.annupaper.application.service.ExitSignalService;
 
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.Headers;
@@ -71,8 +70,7 @@ public final class ApiHandlers {
     private final in.annupaper.application.port.output.UserBrokerRepository userBrokerRepo;
     private final in.annupaper.application.port.output.BrokerRepository brokerRepo;
     private final in.annupaper.application.port.output.WatchlistRepository watchlistRepo;
-    private final in.annupaper.service.candle.TickCandleBuilder tickCandleBuilder;
-    private final ExitSignalService exitSignalService;
+    private final BrokerAdapter.TickListener tickFeed;
     private final RecoveryManager recoveryManager;
     private final MtfBackfillService mtfBackfillService;
     private final in.annupaper.application.port.output.SignalRepository signalRepo;
@@ -93,8 +91,7 @@ public final class ApiHandlers {
             in.annupaper.application.port.output.UserBrokerRepository userBrokerRepo,
             in.annupaper.application.port.output.BrokerRepository brokerRepo,
             in.annupaper.application.port.output.WatchlistRepository watchlistRepo,
-            in.annupaper.service.candle.TickCandleBuilder tickCandleBuilder,
-            ExitSignalService exitSignalService,
+            BrokerAdapter.TickListener tickFeed,
             RecoveryManager recoveryManager,
             MtfBackfillService mtfBackfillService,
             in.annupaper.application.port.output.SignalRepository signalRepo,
@@ -111,8 +108,7 @@ public final class ApiHandlers {
         this.userBrokerRepo = userBrokerRepo;
         this.brokerRepo = brokerRepo;
         this.watchlistRepo = watchlistRepo;
-        this.tickCandleBuilder = tickCandleBuilder;
-        this.exitSignalService = exitSignalService;
+        this.tickFeed = tickFeed;
         this.recoveryManager = recoveryManager;
         this.mtfBackfillService = mtfBackfillService;
         this.signalRepo = signalRepo;
@@ -237,15 +233,10 @@ public final class ApiHandlers {
             recoveryManager.recoverAll(symbols);
             log.info("[OAUTH] Recovery completed");
 
-            // Subscribe tickCandleBuilder to tick stream
-            log.info("[OAUTH] Subscribing TickCandleBuilder to tick stream...");
-            adapter.subscribeTicks(symbols, tickCandleBuilder);
-            log.info("[OAUTH] TickCandleBuilder subscribed");
-
-            // Subscribe exitSignalService to tick stream
-            log.info("[OAUTH] Subscribing ExitSignalService to tick stream...");
-            adapter.subscribeTicks(symbols, exitSignalService);
-            log.info("[OAUTH] ExitSignalService subscribed");
+            // Subscribe the tick dispatcher (candles, exits, signals, relay) to tick stream
+            log.info("[OAUTH] Subscribing tick dispatcher to tick stream...");
+            adapter.subscribeTicks(symbols, tickFeed);
+            log.info("[OAUTH] Tick dispatcher subscribed");
 
             log.info("[OAUTH] Tick stream setup complete for {} symbols", symbols.size());
 
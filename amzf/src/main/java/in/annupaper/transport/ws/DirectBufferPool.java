@@ -0,0 +1,79 @@
+package in.annupaper.transport.ws;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-classed pool of direct buffers for outbound WebSocket frames.
+ *
+ * Classes are powers of two from 4 KB to 4 MB, each holding at most
+ * {@code perClass} idle buffers. Larger requests get an unpooled heap buffer.
+ * acquire() is called by the flusher, release() by Undertow I/O threads once
+ * a send completes.
+ */
+final class DirectBufferPool {
+    private static final int MIN_SHIFT = 12; // 4 KB
+    private static final int MAX_SHIFT = 22; // 4 MB
+
+    private final ArrayBlockingQueue<ByteBuffer>[] free;
+    private final AtomicLong allocated = new AtomicLong(0);
+
+    @SuppressWarnings("unchecked")
+    DirectBufferPool(int perClass) {
+        this.free = new ArrayBlockingQueue[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = 0; i < free.length; i++) {
+            free[i] = new ArrayBlockingQueue<>(perClass);
+        }
+    }
+
+    /**
+     * @return a cleared buffer with at least {@code size} bytes remaining
+     */
+    ByteBuffer acquire(int size) {
+        int cls = sizeClass(size);
+        if (cls < 0) {
+            return ByteBuffer.allocate(size);
+        }
+        ByteBuffer buf = free[cls].poll();
+        if (buf == null) {
+            allocated.incrementAndGet();
+            buf = ByteBuffer.allocateDirect(1 << (cls + MIN_SHIFT));
+        }
+        return buf.clear();
+    }
+
+    void release(ByteBuffer buf) {
+        if (!buf.isDirect()) {
+            return;
+        }
+        int cls = Integer.numberOfTrailingZeros(buf.capacity()) - MIN_SHIFT;
+        if (cls >= 0 && cls < free.length) {
+            free[cls].offer(buf); // dropped (left to GC) if the class is full
+        }
+    }
+
+    /**
+     * Direct buffers allocated so far (a steadily rising value means the pool
+     * is too small for the fan-out).
+     */
+    long allocatedCount() {
+        return allocated.get();
+    }
+
+    /**
+     * Buffers back in the pool, ready for reuse.
+     */
+    int idleCount() {
+        int idle = 0;
+        for (ArrayBlockingQueue<ByteBuffer> q : free) {
+            idle += q.size();
+        }
+        return idle;
+    }
+
+    private static int sizeClass(int size) {
+        int shift = Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(1, size - 1)));
+        return shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+    }
+}
@@ -0,0 +1,262 @@
+package in.annupaper.transport.ws;
+
+import in.annupaper.domain.model.EventScope;
+import in.annupaper.domain.model.TradeEvent;
+import in.annupaper.domain.model.WsSession;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bounded in-memory replay of recent persisted TradeEvents, for WS resume.
+ *
+ * Events are kept in seq order in one ring for GLOBAL events and one ring per
+ * user (USER and USER_BROKER events; the user-broker filter is applied from
+ * the session's subscription on read). Each ring remembers the highest seq it
+ * has evicted, so a resume from {@code afterSeq} is a hit only if no matching
+ * event after it has been evicted. Unpersisted events (seq 0, e.g. TICK) are
+ * not kept.
+ *
+ * At most {@code maxUsers} user rings are kept; adding an event for a new user
+ * beyond that drops the ring of the user written to least recently. Users
+ * without a ring are treated as evicted up to the highest seq any dropped ring
+ * held, so their resumes fall back to the DB instead of missing events.
+ */
+final class ReplayRing {
+
+    private final int userCapacity;
+    private final int maxUsers;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final SeqRing global;
+    // Insertion order = least recently written first (add() re-inserts)
+    private final LinkedHashMap<String, SeqRing> byUser = new LinkedHashMap<>();
+
+    // Events with seq <= floor predate this ring (-1 until known)
+    private volatile long floor = -1;
+    // Highest seq held by a dropped user ring (users without a ring miss below it)
+    private long droppedUserSeq = -1;
+
+    // Metrics
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter eventsServed;
+    private final Counter usersDropped;
+
+    ReplayRing(int globalCapacity, int userCapacity, int maxUsers, CollectorRegistry registry) {
+        this.userCapacity = userCapacity;
+        this.maxUsers = maxUsers;
+        this.global = new SeqRing(globalCapacity);
+
+        this.hits = Counter.build()
+                .name("ws_replay_hits_total")
+                .help("WS resumes served from the in-memory replay ring")
+                .register(registry);
+        this.misses = Counter.build()
+                .name("ws_replay_misses_total")
+                .help("WS resumes whose gap had left the replay ring")
+                .register(registry);
+        this.eventsServed = Counter.build()
+                .name("ws_replay_events_served_total")
+                .help("Events replayed from the in-memory replay ring")
+                .register(registry);
+        this.usersDropped = Counter.build()
+                .name("ws_replay_users_dropped_total")
+                .help("Per-user replay rings dropped to stay within the user limit")
+                .register(registry);
+        Gauge.build()
+                .name("ws_replay_users")
+                .help("Users with a replay ring")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        lock.readLock().lock();
+                        try {
+                            return byUser.size();
+                        } finally {
+                            lock.readLock().unlock();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Events up to this seq were never seen by the ring (call once at startup
+     * with the latest persisted seq). If never called, the floor is taken from
+     * the first event added.
+     */
+    void setFloor(long seq) {
+        lock.writeLock().lock();
+        try {
+            floor = seq;
+            global.evictedSeq = Math.max(global.evictedSeq, seq);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void add(TradeEvent e) {
+        if (e.seq() <= 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (floor < 0) {
+                floor = e.seq() - 1;
+                global.evictedSeq = Math.max(global.evictedSeq, floor);
+            }
+            if (e.scope() == EventScope.GLOBAL) {
+                global.add(e);
+            } else if (e.userId() != null) {
+                SeqRing ring = byUser.remove(e.userId());
+                if (ring == null) {
+                    ring = new SeqRing(userCapacity);
+                    ring.evictedSeq = Math.max(floor, droppedUserSeq);
+                    if (byUser.size() >= maxUsers) {
+                        dropLeastRecentUser();
+                    }
+                }
+                byUser.put(e.userId(), ring);
+                ring.add(e);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Events with seq > afterSeq visible to the subscription, in seq order, or
+     * null if some of them have already been evicted (caller falls back to the
+     * DB).
+     */
+    List<TradeEvent> replay(long afterSeq, WsSession.Subscription sub) {
+        List<TradeEvent> out = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            SeqRing user = sub.userId() == null ? null : byUser.get(sub.userId());
+            long userEvicted = user == null ? Math.max(floor, droppedUserSeq) : user.evictedSeq;
+            if (floor < 0 || afterSeq < global.evictedSeq || afterSeq < userEvicted) {
+                misses.inc();
+                return null;
+            }
+
+            int g = global.firstAfter(afterSeq);
+            int u = user == null ? 0 : user.firstAfter(afterSeq);
+            int uSize = user == null ? 0 : user.size;
+            while (g < global.size || u < uSize) {
+                TradeEvent e;
+                if (u >= uSize || (g < global.size && global.get(g).seq() < user.get(u).seq())) {
+                    e = global.get(g++);
+                } else {
+                    e = user.get(u++);
+                }
+                if (sub.accepts(e)) {
+                    out.add(e);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.inc();
+        eventsServed.inc(out.size());
+        return out;
+    }
+
+    /**
+     * Drop the ring of the user written to least recently (write lock held).
+     */
+    private void dropLeastRecentUser() {
+        Iterator<SeqRing> it = byUser.values().iterator();
+        SeqRing eldest = it.next();
+        it.remove();
+        long newest = eldest.size == 0 ? eldest.evictedSeq : eldest.get(eldest.size - 1).seq();
+        droppedUserSeq = Math.max(droppedUserSeq, newest);
+        usersDropped.inc();
+    }
+
+    Map<String, Long> getMetrics() {
+        long h = (long) hits.get();
+        long m = (long) misses.get();
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("replayHits", h);
+        metrics.put("replayMisses", m);
+        metrics.put("replayHitRatioPct", h + m == 0 ? 0 : h * 100 / (h + m));
+        metrics.put("replayEventsServed", (long) eventsServed.get());
+        metrics.put("replayUsersDropped", (long) usersDropped.get());
+        lock.readLock().lock();
+        try {
+            metrics.put("replayGlobalSize", (long) global.size);
+            metrics.put("replayUsers", (long) byUser.size());
+            metrics.put("replayOldestGlobalSeq", global.size == 0 ? 0 : global.get(0).seq());
+        } finally {
+            lock.readLock().unlock();
+        }
+        return metrics;
+    }
+
+    /**
+     * Fixed-capacity ring kept sorted by seq (late arrivals are shifted into
+     * place; publish order is almost always seq order).
+     */
+    private static final class SeqRing {
+        private final TradeEvent[] items;
+        private int head;
+        private int size;
+        private long evictedSeq;
+
+        SeqRing(int capacity) {
+            this.items = new TradeEvent[capacity];
+        }
+
+        TradeEvent get(int i) {
+            return items[(head + i) % items.length];
+        }
+
+        void add(TradeEvent e) {
+            if (e.seq() <= evictedSeq || contains(e.seq())) {
+                return; // older than anything we still claim to cover, or a duplicate
+            }
+            if (size == items.length) {
+                evictedSeq = Math.max(evictedSeq, items[head].seq());
+                items[head] = null;
+                head = (head + 1) % items.length;
+                size--;
+                if (e.seq() <= evictedSeq) {
+                    return;
+                }
+            }
+            int i = size++;
+            while (i > 0 && get(i - 1).seq() > e.seq()) {
+                items[(head + i) % items.length] = get(i - 1);
+                i--;
+            }
+            items[(head + i) % items.length] = e;
+        }
+
+        private boolean contains(long seq) {
+            int i = firstAfter(seq - 1);
+            return i < size && get(i).seq() == seq;
+        }
+
+        /**
+         * Index of the first event with seq > afterSeq (size if none).
+         */
+        int firstAfter(long afterSeq) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (get(mid).seq() <= afterSeq) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
@@ -5,7 +5,11 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import in.annupaper.application.port.output.TradeEventRepository;
 import in.annupaper.domain.model.*;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
 import io.undertow.websockets.WebSocketConnectionCallback;
 import io.undertow.websockets.WebSocketProtocolHandshakeHandler;
 import io.undertow.websockets.core.*;
@@ -13,6 +17,9 @@ import io.undertow.websockets.spi.WebSocketHttpExchange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
@@ -26,6 +33,8 @@ import java.util.function.Function;
  * users)
  * - Topic subscriptions
  * - Batching (flush interval configurable)
+ * - Resume ({"action":"resume","afterSeq":N}) served from an in-memory replay
+ * ring, falling back to trade_events only when N has left the ring
  */
 public final class WsHub {
     private static final Logger log = LoggerFactory.getLogger(WsHub.class);
@@ -45,20 +54,212 @@ public final class WsHub {
         return t;
     });
 
+    // BATCH frame pieces; field order matches ServerMessage (type, payload, ts, seq)
+    private static final byte[] BATCH_PREFIX = ("{\"type\":\"" + EventType.BATCH.name()
+            + "\",\"payload\":{\"events\":[").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BATCH_TS = "]},\"ts\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BATCH_SEQ = "\",\"seq\":".getBytes(StandardCharsets.US_ASCII);
+
+    // Flusher-thread state: reused body builder and direct buffers for sends
+    private final FrameBuilder frameBody = new FrameBuilder();
+    private final DirectBufferPool bufferPool = new DirectBufferPool(512);
+
+    // Channel -> outbound state (in-flight frame, backlog, metrics)
+    private final ConcurrentMap<WebSocketChannel, WsOutbound> outbound = new ConcurrentHashMap<>();
+
+    // RFC 6455 close code 1013: "Try Again Later"
+    private static final int CLOSE_TRY_AGAIN_LATER = 1013;
+    private static final long CLOSE_GRACE_MS = 5_000;
+
+    // Resume: recent persisted events in memory, DB only for older gaps
+    private static final int REPLAY_GLOBAL_CAPACITY = 50_000;
+    private static final int REPLAY_USER_CAPACITY = 5_000;
+    private static final int REPLAY_MAX_USERS = 1_000;
+    private static final int REPLAY_DB_LIMIT = 2000;
+    private static final int REPLAY_CHUNK = 500;
+    private final ReplayRing replayRing;
+    private volatile TradeEventRepository replayFallback;
+    private final ExecutorService replayDbExecutor = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "ws-replay-db");
+        t.setDaemon(true);
+        return t;
+    });
+
     private final AtomicLong wsSeq = new AtomicLong(0);
     private volatile int flushMs = 100;
+    private volatile long sessionBudgetBytes = 4L * 1024 * 1024;
+    private volatile long stallTimeoutMs = 30_000;
 
     // Token validator: token -> userId (null if invalid)
     private final Function<String, String> tokenValidator;
 
+    // Frame I/O (Undertow in production)
+    private final FrameSender sender;
+
+    // Prometheus metrics
+    private final Counter eventsEncoded;
+    private final Counter hubDropped;
+    private final Counter slowDisconnects;
+    private final Counter controlFrames;
+    private final Counter replayDbQueries;
+    private final WsOutbound.Metrics outboundMetrics;
+
     public WsHub(Function<String, String> tokenValidator) {
+        this(tokenValidator, new CollectorRegistry());
+    }
+
+    public WsHub(Function<String, String> tokenValidator, CollectorRegistry registry) {
+        this(tokenValidator, registry, UNDERTOW);
+    }
+
+    WsHub(Function<String, String> tokenValidator, CollectorRegistry registry, FrameSender sender) {
         this.tokenValidator = tokenValidator;
+        this.sender = sender;
+
+        this.eventsEncoded = Counter.build()
+                .name("ws_events_encoded_total")
+                .help("Events encoded to JSON for BATCH frames (at most once per flush)")
+                .register(registry);
+        this.hubDropped = Counter.build()
+                .name("ws_batch_queue_dropped_total")
+                .help("Events dropped (oldest first) because the WS batch queue was full")
+                .register(registry);
+        this.slowDisconnects = Counter.build()
+                .name("ws_slow_disconnects_total")
+                .help("Sessions closed for exceeding their outbound budget or stalling a send")
+                .register(registry);
+        this.controlFrames = Counter.build()
+                .name("ws_control_frames_total")
+                .help("Control replies (ACK, PONG, ERROR) queued behind the session budget")
+                .register(registry);
+        this.replayDbQueries = Counter.build()
+                .name("ws_replay_db_queries_total")
+                .help("WS resumes served from trade_events because the gap had left the replay ring")
+                .register(registry);
+        this.outboundMetrics = new WsOutbound.Metrics(registry);
+        this.replayRing = new ReplayRing(REPLAY_GLOBAL_CAPACITY, REPLAY_USER_CAPACITY, REPLAY_MAX_USERS, registry);
+        Gauge.build()
+                .name("ws_batch_queue_depth")
+                .help("Events waiting for the next WS flush")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return batchQueue.size();
+                    }
+                });
+        Gauge.build()
+                .name("ws_connections")
+                .help("Authenticated WebSocket sessions")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return outbound.size();
+                    }
+                });
+        Gauge.build()
+                .name("ws_buffer_pool_allocated")
+                .help("Direct frame buffers allocated so far (steady growth: pool too small for the fan-out)")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return bufferPool.allocatedCount();
+                    }
+                });
+        Gauge.build()
+                .name("ws_buffer_pool_idle")
+                .help("Direct frame buffers released back to the pool")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        return bufferPool.idleCount();
+                    }
+                });
+        Gauge.build()
+                .name("ws_outbound_bytes")
+                .help("Bytes held against session budgets (in flight + control + backlog), all sessions")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        long used = 0;
+                        for (WsOutbound out : outbound.values()) {
+                            used += out.used();
+                        }
+                        return used;
+                    }
+                });
+        Gauge.build()
+                .name("ws_outbound_oldest_send_seconds")
+                .help("Age of the oldest frame still in flight, all sessions")
+                .register(registry)
+                .setChild(new Gauge.Child() {
+                    @Override
+                    public double get() {
+                        long now = System.nanoTime();
+                        long oldest = 0;
+                        for (WsOutbound out : outbound.values()) {
+                            oldest = Math.max(oldest, out.inFlightNanos(now));
+                        }
+                        return oldest / 1e9;
+                    }
+                });
+        Gauge sessionsByStage = Gauge.build()
+                .name("ws_outbound_sessions")
+                .help("Sessions by outbound budget stage")
+                .labelNames("stage")
+                .register(registry);
+        for (WsOutbound.Stage stage : WsOutbound.Stage.values()) {
+            sessionsByStage.setChild(new Gauge.Child() {
+                @Override
+                public double get() {
+                    int n = 0;
+                    for (WsOutbound out : outbound.values()) {
+                        if (out.stage() == stage) {
+                            n++;
+                        }
+                    }
+                    return n;
+                }
+            }, stage.name().toLowerCase());
+        }
     }
 
     public void setFlushMs(int flushMs) {
         this.flushMs = Math.max(10, flushMs);
     }
 
+    /**
+     * Per-session outbound byte budget (in-flight frame + backlog).
+     */
+    public void setSessionBudgetBytes(long sessionBudgetBytes) {
+        this.sessionBudgetBytes = Math.max(64 * 1024, sessionBudgetBytes);
+    }
+
+    /**
+     * Disconnect a session whose frame has been in flight longer than this.
+     */
+    public void setStallTimeoutMs(long stallTimeoutMs) {
+        this.stallTimeoutMs = Math.max(1000, stallTimeoutMs);
+    }
+
+    /**
+     * Repository used for resumes that fall outside the replay ring. The ring
+     * starts at the latest persisted seq, so older resumes go to the DB.
+     */
+    public void setReplayFallback(TradeEventRepository repo) {
+        this.replayFallback = repo;
+        try {
+            replayRing.setFloor(repo.latestSeq());
+        } catch (Exception e) {
+            log.warn("WS replay: could not read latest seq, ring starts at the first published event: {}",
+                    e.toString());
+        }
+    }
+
     public void start() {
         scheduler.scheduleAtFixedRate(this::flushBatch, flushMs, flushMs, TimeUnit.MILLISECONDS);
         log.info("WsHub started with {}ms batch flush interval", flushMs);
@@ -90,10 +291,7 @@ public final class WsHub {
                 // Create authenticated session
                 String sessionId = UUID.randomUUID().toString();
                 WsSession session = new WsSession(sessionId, userId);
-                sessions.put(channel, session);
-
-                // Track user channels
-                userChannels.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(channel);
+                register(channel, session);
 
                 log.info("WS connected: {} (user={}, session={})", channel.getSourceAddress(), userId, sessionId);
 
@@ -122,6 +320,15 @@ public final class WsHub {
         });
     }
 
+    /**
+     * Track an authenticated session for fan-out.
+     */
+    void register(WebSocketChannel channel, WsSession session) {
+        sessions.put(channel, session);
+        outbound.put(channel, new WsOutbound(channel, session, outboundMetrics));
+        userChannels.computeIfAbsent(session.getUserId(), k -> ConcurrentHashMap.newKeySet()).add(channel);
+    }
+
     private String extractToken(String query) {
         if (query == null)
             return null;
@@ -133,7 +340,7 @@ public final class WsHub {
         return null;
     }
 
-    private void handleClientMessage(WebSocketChannel channel, String raw) {
+    void handleClientMessage(WebSocketChannel channel, String raw) {
         WsSession session = sessions.get(channel);
         if (session == null) {
             sendError(channel, "Not authenticated");
@@ -172,8 +379,14 @@ public final class WsHub {
                     ObjectNode payload = MAPPER.createObjectNode();
                     payload.put("nonce", msg.nonce == null ? "" : msg.nonce);
                     payload.put("pong", true);
-                    sendDirect(channel,
-                            new ServerMessage(EventType.PONG.name(), payload, Instant.now().toString(), nextWsSeq()));
+                    sendControl(channel, EventType.PONG, payload);
+                }
+                case "resume" -> {
+                    if (msg.afterSeq == null || msg.afterSeq < 0) {
+                        sendError(channel, "Missing 'afterSeq'");
+                        return;
+                    }
+                    resume(channel, session, msg.afterSeq);
                 }
                 default -> sendError(channel, "Unknown action: " + msg.action);
             }
@@ -189,13 +402,48 @@ public final class WsHub {
         payload.put("sessionId", session.getSessionId());
         payload.set("topics", MAPPER.valueToTree(session.getTopics()));
         payload.set("brokers", MAPPER.valueToTree(session.getUserBrokerIds()));
-        sendDirect(channel, new ServerMessage(EventType.ACK.name(), payload, Instant.now().toString(), nextWsSeq()));
+        sendControl(channel, EventType.ACK, payload);
     }
 
     private void sendError(WebSocketChannel channel, String error) {
         ObjectNode payload = MAPPER.createObjectNode();
         payload.put("error", error);
-        sendDirect(channel, new ServerMessage(EventType.ERROR.name(), payload, Instant.now().toString(), nextWsSeq()));
+        if (outbound.containsKey(channel)) {
+            sendControl(channel, EventType.ERROR, payload);
+        } else {
+            // Rejected before a session exists: nothing to budget against
+            sendDirect(channel, new ServerMessage(EventType.ERROR.name(), payload, Instant.now().toString(), nextWsSeq()));
+        }
+    }
+
+    /**
+     * Queue a control reply behind the session's budget. The flusher sends it
+     * ahead of the backlog once no frame is in flight.
+     */
+    private void sendControl(WebSocketChannel channel, EventType type, JsonNode payload) {
+        WsOutbound out = outbound.get(channel);
+        if (out == null) {
+            return; // session already closed
+        }
+        try {
+            out.enqueueControl(encodeHead(type, payload));
+            controlFrames.inc();
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize WS {} message: {}", type, e.toString());
+        }
+    }
+
+    /**
+     * A server message encoded up to its seq; sendFrame() stamps the seq when
+     * the frame goes out (field order matches ServerMessage: type, payload, ts,
+     * seq).
+     */
+    private static byte[] encodeHead(EventType type, JsonNode payload) throws JsonProcessingException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream(256);
+        head.writeBytes(("{\"type\":\"" + type.name() + "\",\"payload\":").getBytes(StandardCharsets.US_ASCII));
+        head.writeBytes(MAPPER.writeValueAsBytes(payload));
+        head.writeBytes((",\"ts\":\"" + Instant.now() + "\",\"seq\":").getBytes(StandardCharsets.US_ASCII));
+        return head.toByteArray();
     }
 
     private long nextWsSeq() {
@@ -204,14 +452,14 @@ public final class WsHub {
 
     private void sendDirect(WebSocketChannel channel, ServerMessage msg) {
         try {
-            String json = MAPPER.writeValueAsString(msg);
-            WebSockets.sendText(json, channel, null);
+            sender.sendText(ByteBuffer.wrap(MAPPER.writeValueAsBytes(msg)), channel, null);
         } catch (JsonProcessingException e) {
             log.warn("Failed to serialize WS message: {}", e.toString());
         }
     }
 
-    private void cleanup(WebSocketChannel channel) {
+    void cleanup(WebSocketChannel channel) {
+        outbound.remove(channel);
         WsSession session = sessions.remove(channel);
         if (session != null) {
             String userId = session.getUserId();
@@ -231,60 +479,414 @@ public final class WsHub {
         }
     }
 
+    /**
+     * Send the events after {@code afterSeq} visible to this session as REPLAY
+     * messages. Served from the replay ring when it still covers the gap;
+     * otherwise one bounded DB query off the I/O thread. Large replies are
+     * chunked; "final" marks the last chunk, and "complete": false on it means
+     * page the rest via /api/events.
+     *
+     * Chunks go through the session's WsOutbound like any other frame (one in
+     * flight, stall timeout applies); live BATCH frames are held in the backlog
+     * from the request until the last chunk is out.
+     */
+    private void resume(WebSocketChannel channel, WsSession session, long afterSeq) {
+        WsOutbound out = outbound.get(channel);
+        if (out == null) {
+            return;
+        }
+        WsSession.Subscription sub = session.subscription();
+        List<TradeEvent> events = replayRing.replay(afterSeq, sub);
+        if (events != null) {
+            out.replayLoading();
+            out.replayReady(replayChunks(afterSeq, events, "memory", true));
+            return;
+        }
+
+        TradeEventRepository repo = replayFallback;
+        if (repo == null) {
+            sendError(channel, "Resume gap no longer in memory; use /api/events?afterSeq=" + afterSeq);
+            return;
+        }
+        out.replayLoading();
+        replayDbExecutor.execute(() -> {
+            try {
+                replayDbQueries.inc();
+                List<TradeEvent> rows = sub.userBrokerIds().size() == 1
+                        ? repo.listAfterSeqForUserBroker(afterSeq, REPLAY_DB_LIMIT, sub.userId(),
+                                sub.userBrokerIds().iterator().next())
+                        : repo.listAfterSeqForUser(afterSeq, REPLAY_DB_LIMIT, sub.userId());
+                List<TradeEvent> visible = new ArrayList<>(rows.size());
+                for (TradeEvent e : rows) {
+                    if (sub.accepts(e)) {
+                        visible.add(e);
+                    }
+                }
+                out.replayReady(replayChunks(afterSeq, visible, "db", rows.size() < REPLAY_DB_LIMIT));
+            } catch (Exception e) {
+                log.warn("WS replay DB fallback failed: {}", e.toString());
+                out.replayFailed();
+                sendError(channel, "Resume failed; use /api/events?afterSeq=" + afterSeq);
+            }
+        });
+    }
+
+    /**
+     * REPLAY messages for one resume, encoded lazily by the flusher one chunk
+     * at a time (always at least one chunk, so an empty gap is still answered).
+     */
+    private Iterator<byte[]> replayChunks(long afterSeq, List<TradeEvent> events, String source,
+            boolean complete) {
+        return new Iterator<>() {
+            private int from;
+            private boolean started;
+
+            @Override
+            public boolean hasNext() {
+                return !started || from < events.size();
+            }
+
+            @Override
+            public byte[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                started = true;
+                int to = Math.min(events.size(), from + REPLAY_CHUNK);
+                ObjectNode payload = MAPPER.createObjectNode();
+                payload.put("afterSeq", afterSeq);
+                payload.put("source", source);
+                payload.put("final", to == events.size()); // last chunk of this reply
+                payload.put("complete", complete && to == events.size());
+                ArrayNode arr = payload.putArray("events");
+                for (int i = from; i < to; i++) {
+                    arr.add(eventToJson(events.get(i)));
+                }
+                from = to;
+                try {
+                    return encodeHead(EventType.REPLAY, payload);
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("Failed to serialize WS REPLAY message", e);
+                }
+            }
+        };
+    }
+
     /**
      * Publish event by enqueuing it for batching.
      * Events are filtered by scope during flush.
      */
     public void publish(TradeEvent e) {
+        replayRing.add(e);
         if (!batchQueue.offer(e)) {
             batchQueue.poll();
             batchQueue.offer(e);
+            hubDropped.inc();
+            if ((long) hubDropped.get() % 10_000 == 1) {
+                log.warn("WS batch queue full: dropped {} events so far", (long) hubDropped.get());
+            }
         }
     }
 
-    private void flushBatch() {
+    /**
+     * Fan out one drained batch.
+     *
+     * Each event is encoded to JSON bytes at most once per flush. Sessions are
+     * grouped by subscription (userId, topics, brokers), so filtering runs once
+     * per distinct subscription rather than per session. Candidates are GLOBAL
+     * events (shared by every group) merged in order with the group user's own
+     * events. Each group's BATCH body is assembled once from the encoded slices;
+     * every idle channel then gets a pooled direct buffer holding that body plus
+     * its own seq.
+     *
+     * A session whose previous frame is still in flight gets the events in its
+     * own backlog instead (see WsOutbound), so a slow client never holds up the
+     * flusher or anyone else's frame.
+     */
+    void flushBatch() {
         try {
             List<TradeEvent> drained = new ArrayList<>(1024);
             batchQueue.drainTo(drained, 2000);
-            if (drained.isEmpty())
-                return;
 
-            // Group events by target (optimization for scoped delivery)
-            // For simplicity, we'll iterate and filter per channel
+            if (!drained.isEmpty()) {
+                fanOut(drained);
+            }
+            drainBacklogs();
+        } catch (Exception e) {
+            log.warn("WS flushBatch error: {}", e.toString());
+        }
+    }
+
+    private void fanOut(List<TradeEvent> drained) throws JsonProcessingException {
+        // Group sessions by subscription signature
+        Map<WsSession.Subscription, List<WsOutbound>> groups = new HashMap<>();
+        for (WsOutbound out : outbound.values()) {
+            groups.computeIfAbsent(out.session.subscription(), k -> new ArrayList<>()).add(out);
+        }
+        if (groups.isEmpty())
+            return;
 
-            for (Map.Entry<WebSocketChannel, WsSession> entry : sessions.entrySet()) {
-                WebSocketChannel channel = entry.getKey();
-                WsSession session = entry.getValue();
+        // Index events by scope: GLOBAL shared, USER / USER_BROKER by userId
+        IndexList globalEvents = new IndexList();
+        Map<String, IndexList> userEvents = new HashMap<>();
+        for (int i = 0; i < drained.size(); i++) {
+            TradeEvent e = drained.get(i);
+            if (e.scope() == EventScope.GLOBAL) {
+                globalEvents.add(i);
+            } else if (e.userId() != null) {
+                userEvents.computeIfAbsent(e.userId(), k -> new IndexList()).add(i);
+            }
+        }
 
-                // Filter events for this session
-                List<ObjectNode> relevantEvents = new ArrayList<>();
-                for (TradeEvent e : drained) {
-                    if (session.shouldReceive(e)) {
-                        relevantEvents.add(eventToJson(e));
-                    }
+        byte[][] encoded = new byte[drained.size()][];
+        IndexList selected = new IndexList();
+
+        for (Map.Entry<WsSession.Subscription, List<WsOutbound>> group : groups.entrySet()) {
+            WsSession.Subscription sub = group.getKey();
+            IndexList own = sub.userId() == null ? null : userEvents.get(sub.userId());
+
+            selected.size = 0;
+            long maxSeq = 0;
+            int g = 0;
+            int u = 0;
+            int ownSize = own == null ? 0 : own.size;
+            while (g < globalEvents.size || u < ownSize) {
+                int idx;
+                if (u >= ownSize || (g < globalEvents.size && globalEvents.items[g] < own.items[u])) {
+                    idx = globalEvents.items[g++];
+                } else {
+                    idx = own.items[u++];
                 }
-
-                if (relevantEvents.isEmpty())
+                TradeEvent e = drained.get(idx);
+                if (!sub.accepts(e))
                     continue;
-
-                // Build BATCH message
-                ObjectNode payload = MAPPER.createObjectNode();
-                ArrayNode events = MAPPER.createArrayNode();
-                for (ObjectNode ev : relevantEvents) {
-                    events.add(ev);
+                if (encoded[idx] == null) {
+                    encoded[idx] = MAPPER.writeValueAsBytes(eventToJson(e));
+                    eventsEncoded.inc();
+                }
+                selected.add(idx);
+                maxSeq = Math.max(maxSeq, e.seq());
+            }
+            if (selected.size == 0)
+                continue;
+
+            boolean bodyBuilt = false;
+            for (WsOutbound out : group.getValue()) {
+                if (out.isIdle()) {
+                    if (!bodyBuilt) {
+                        beginBody();
+                        for (int k = 0; k < selected.size; k++) {
+                            appendEvent(k, encoded[selected.items[k]]);
+                        }
+                        endBody();
+                        bodyBuilt = true;
+                    }
+                    sendFrame(out, selected.size, maxSeq);
+                } else {
+                    for (int k = 0; k < selected.size; k++) {
+                        int idx = selected.items[k];
+                        out.enqueue(drained.get(idx), encoded[idx]);
+                    }
                 }
-                payload.set("events", events);
+            }
+        }
+    }
+
+    /**
+     * Apply per-session budgets, then send each session whose previous frame
+     * has completed its next control reply, else its next REPLAY chunk, else
+     * (once no resume is in progress) its backlog.
+     */
+    private void drainBacklogs() {
+        long now = System.nanoTime();
+        long stallNanos = TimeUnit.MILLISECONDS.toNanos(stallTimeoutMs);
+        long[] maxSeq = new long[1];
+        for (WsOutbound out : outbound.values()) {
+            if (out.isIdle())
+                continue;
+            if (out.applyBudget(sessionBudgetBytes, stallNanos, now) == WsOutbound.Stage.DISCONNECT) {
+                disconnectSlow(out);
+                continue;
+            }
+            if (out.isInFlight())
+                continue;
 
-                ServerMessage batchMsg = new ServerMessage(
-                        EventType.BATCH.name(),
-                        payload,
-                        Instant.now().toString(),
-                        nextWsSeq());
+            byte[] head = out.pollControl();
+            if (head == null) {
+                head = out.nextReplayChunk();
+            }
+            if (head != null) {
+                frameBody.reset();
+                frameBody.write(head);
+                sendFrame(out, 0, 0);
+                continue;
+            }
+            if (!out.hasBacklog() || out.isReplaying())
+                continue;
 
-                sendDirect(channel, batchMsg);
+            List<byte[]> events = out.drainBacklog(maxSeq);
+            beginBody();
+            for (int k = 0; k < events.size(); k++) {
+                appendEvent(k, events.get(k));
             }
+            endBody();
+            sendFrame(out, events.size(), maxSeq[0]);
+        }
+    }
+
+    /**
+     * Close a session that exceeded its budget. The close reason carries the
+     * last delivered event seq; the client resumes with GET /api/events?afterSeq=.
+     */
+    private void disconnectSlow(WsOutbound out) {
+        slowDisconnects.inc();
+        long resumeSeq = out.resumeSeq();
+        log.warn("WS slow consumer disconnected: {} (user={}, session={}, resumeSeq={}, metrics={})",
+                out.channel.getSourceAddress(), out.session.getUserId(), out.session.getSessionId(),
+                resumeSeq, out.getMetrics());
+        outbound.remove(out.channel);
+        try {
+            sender.sendClose(CLOSE_TRY_AGAIN_LATER, "slow consumer; resume afterSeq=" + resumeSeq, out.channel);
+        } catch (Exception ignored) {
+        }
+        // Give the close frame a chance to reach a client that is merely slow
+        scheduler.schedule(() -> cleanup(out.channel), CLOSE_GRACE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void beginBody() {
+        frameBody.reset();
+        frameBody.write(BATCH_PREFIX);
+    }
+
+    private void appendEvent(int index, byte[] json) {
+        if (index > 0)
+            frameBody.write(',');
+        frameBody.write(json);
+    }
+
+    private void endBody() {
+        frameBody.write(BATCH_TS);
+        frameBody.write(Instant.now().toString().getBytes(StandardCharsets.US_ASCII));
+        frameBody.write(BATCH_SEQ);
+    }
+
+    /**
+     * Send frameBody + seq + closing brace from a pooled direct buffer, returned
+     * to the pool when Undertow completes (or fails) the send.
+     */
+    private void sendFrame(WsOutbound out, int events, long maxEventSeq) {
+        byte[] seqBytes = Long.toString(nextWsSeq()).getBytes(StandardCharsets.US_ASCII);
+        int size = frameBody.size() + seqBytes.length + 1;
+        if (!out.beginSend(size))
+            return;
+        ByteBuffer buf = bufferPool.acquire(size);
+        buf.put(frameBody.array(), 0, frameBody.size()).put(seqBytes).put((byte) '}').flip();
+        try {
+            sender.sendText(buf, out.channel, new FrameSent(bufferPool, buf, out, events, size, maxEventSeq));
         } catch (Exception e) {
-            log.warn("WS flushBatch error: {}", e.toString());
+            bufferPool.release(buf);
+            out.sendFailed();
+            log.warn("WS send failed for {}: {}", out.channel.getSourceAddress(), e.toString());
+        }
+    }
+
+    /**
+     * Outbound frame I/O. Undertow in production; tests record frames and
+     * complete sends themselves.
+     */
+    interface FrameSender {
+        void sendText(ByteBuffer frame, WebSocketChannel channel, WebSocketCallback<Void> callback);
+
+        void sendClose(int code, String reason, WebSocketChannel channel);
+    }
+
+    private static final FrameSender UNDERTOW = new FrameSender() {
+        @Override
+        public void sendText(ByteBuffer frame, WebSocketChannel channel, WebSocketCallback<Void> callback) {
+            WebSockets.sendText(frame, channel, callback);
+        }
+
+        @Override
+        public void sendClose(int code, String reason, WebSocketChannel channel) {
+            WebSockets.sendClose(code, reason, channel, null);
+        }
+    };
+
+    private static final class FrameSent implements WebSocketCallback<Void> {
+        private final DirectBufferPool pool;
+        private final ByteBuffer buf;
+        private final WsOutbound out;
+        private final int events;
+        private final long bytes;
+        private final long maxEventSeq;
+
+        FrameSent(DirectBufferPool pool, ByteBuffer buf, WsOutbound out, int events, long bytes, long maxEventSeq) {
+            this.pool = pool;
+            this.buf = buf;
+            this.out = out;
+            this.events = events;
+            this.bytes = bytes;
+            this.maxEventSeq = maxEventSeq;
+        }
+
+        @Override
+        public void complete(WebSocketChannel channel, Void context) {
+            pool.release(buf);
+            out.sendComplete(events, bytes, maxEventSeq);
+        }
+
+        @Override
+        public void onError(WebSocketChannel channel, Void context, Throwable throwable) {
+            pool.release(buf);
+            out.sendFailed();
+        }
+    }
+
+    /** Growable byte array reused by the flusher thread for BATCH bodies. */
+    private static final class FrameBuilder {
+        private byte[] buf = new byte[64 * 1024];
+        private int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        void write(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+        }
+
+        void write(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+            }
+        }
+    }
+
+    /** Append-only list of event indices (ascending, drain order). */
+    private static final class IndexList {
+        private int[] items = new int[16];
+        private int size;
+
+        void add(int i) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = i;
         }
     }
 
@@ -320,12 +922,38 @@ public final class WsHub {
         return sessions.size();
     }
 
+    /**
+     * Hub-wide metrics (the same values are exported to Prometheus). Per-session
+     * state is logged when a slow consumer is disconnected, never exported.
+     */
+    public Map<String, Long> getMetrics() {
+        long used = 0;
+        for (WsOutbound out : outbound.values()) {
+            used += out.used();
+        }
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("queueDepth", (long) batchQueue.size());
+        metrics.put("queueDropped", (long) hubDropped.get());
+        metrics.put("slowDisconnects", (long) slowDisconnects.get());
+        metrics.put("connections", (long) outbound.size());
+        metrics.put("outboundBytes", used);
+        metrics.put("framesSent", (long) outboundMetrics.framesSent.get());
+        metrics.put("eventsSent", (long) outboundMetrics.eventsSent.get());
+        metrics.put("conflated", (long) outboundMetrics.conflated.get());
+        metrics.put("shed", (long) outboundMetrics.shed.get());
+        metrics.put("sendErrors", (long) outboundMetrics.sendErrors.get());
+        metrics.putAll(replayRing.getMetrics());
+        metrics.put("replayDbQueries", (long) replayDbQueries.get());
+        return metrics;
+    }
+
     // Message models
     public static final class ClientMessage {
         public String action;
         public List<String> topics; // Event types to subscribe
         public List<String> brokers; // UserBroker IDs to filter
         public String nonce;
+        public Long afterSeq; // resume
     }
 
     public static final class ServerMessage {
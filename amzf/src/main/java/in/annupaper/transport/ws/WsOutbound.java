@@ -0,0 +1,376 @@
+package in.annupaper.transport.ws;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import in.annupaper.domain.model.EventType;
+import in.annupaper.domain.model.TradeEvent;
+import in.annupaper.domain.model.WsSession;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+import io.undertow.websockets.core.WebSocketChannel;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbound state for one WebSocket session.
+ *
+ * At most one frame is in flight per session, so Undertow never buffers more
+ * than one frame for a client. Events that arrive while a frame is in flight
+ * go to a per-session backlog of already-encoded events; control replies
+ * (ACK, PONG, ERROR) wait in a small queue that is sent ahead of the backlog.
+ * Both are bounded by one byte budget (in-flight + control + backlog bytes),
+ * which degrades in stages as it fills:
+ * - CONFLATE (over 1/4 of budget): keep only the latest TICK per symbol
+ * - SHED (over 1/2 of budget): drop low-priority market/system topics
+ * - DISCONNECT (over budget, or a frame in flight past the stall timeout):
+ *   close with the last delivered event seq so the client can resume via
+ *   GET /api/events?afterSeq=
+ *
+ * A resume is answered with REPLAY chunks through the same single in-flight
+ * slot, after pending control replies and before the backlog; BATCH frames
+ * wait until the replay is done, so the two never interleave. Only the chunk
+ * in flight is encoded at any time.
+ *
+ * Backlog methods are called only by the flusher thread; control replies are
+ * queued from Undertow I/O threads, which also signal send completion.
+ * Counters are hub-wide (see {@link Metrics}); per-session state is kept only
+ * for budgeting and the slow-consumer log.
+ */
+final class WsOutbound {
+
+    enum Stage {
+        NORMAL, CONFLATE, SHED, DISCONNECT
+    }
+
+    private static final Set<EventType> LOW_PRIORITY = EnumSet.of(
+            EventType.TICK, EventType.CANDLE, EventType.MARKET_STATUS,
+            EventType.SYSTEM_STATUS, EventType.HEALTH_CHECK, EventType.LOG_EXPOSURE_UPDATE);
+
+    private record Pending(TradeEvent event, byte[] json) {
+    }
+
+    /**
+     * Outbound counters shared by every session. Aggregates only: a label per
+     * session would add series with every connect and never remove them.
+     */
+    static final class Metrics {
+        final Counter framesSent;
+        final Counter eventsSent;
+        final Counter bytesSent;
+        final Counter conflated;
+        final Counter shed;
+        final Counter sendErrors;
+        final Histogram sendSeconds;
+
+        Metrics(CollectorRegistry registry) {
+            this.framesSent = Counter.build()
+                    .name("ws_frames_sent_total")
+                    .help("WebSocket frames delivered (BATCH, REPLAY and control replies)")
+                    .register(registry);
+            this.eventsSent = Counter.build()
+                    .name("ws_events_sent_total")
+                    .help("Events delivered in BATCH frames")
+                    .register(registry);
+            this.bytesSent = Counter.build()
+                    .name("ws_bytes_sent_total")
+                    .help("WebSocket frame bytes delivered")
+                    .register(registry);
+            this.conflated = Counter.build()
+                    .name("ws_events_conflated_total")
+                    .help("TICK events dropped from session backlogs by per-symbol conflation")
+                    .register(registry);
+            this.shed = Counter.build()
+                    .name("ws_events_shed_total")
+                    .help("Low-priority events dropped from session backlogs")
+                    .register(registry);
+            this.sendErrors = Counter.build()
+                    .name("ws_send_errors_total")
+                    .help("WebSocket frame sends that failed")
+                    .register(registry);
+            this.sendSeconds = Histogram.build()
+                    .name("ws_send_seconds")
+                    .help("Time from handing a frame to Undertow until the send completes")
+                    .buckets(0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10, 30)
+                    .register(registry);
+        }
+    }
+
+    final WebSocketChannel channel;
+    final WsSession session;
+    private final Metrics metrics;
+
+    // In-flight frame (flusher sets, I/O thread clears)
+    private final AtomicBoolean inFlight = new AtomicBoolean(false);
+    private volatile long inFlightBytes;
+    private volatile long inFlightSinceNanos;
+
+    // Control replies, encoded up to the seq (I/O threads add, flusher sends)
+    private final ConcurrentLinkedQueue<byte[]> control = new ConcurrentLinkedQueue<>();
+    private final AtomicLong controlBytes = new AtomicLong(0);
+
+    // Resume replies: REPLAY chunks encoded one at a time by the flusher. While
+    // a resume is loading or replaying, live events wait in the backlog.
+    private final ConcurrentLinkedQueue<Iterator<byte[]>> replays = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger loadingReplays = new AtomicInteger(0);
+
+    // Backlog (flusher thread only; sizes volatile for metrics)
+    private final ArrayDeque<Pending> backlog = new ArrayDeque<>();
+    private volatile long backlogBytes;
+    private volatile Stage stage = Stage.NORMAL;
+
+    // Per-session state for the slow-consumer log (flusher thread only)
+    private long conflatedCount;
+    private long shedCount;
+    private volatile long lastDeliveredSeq;
+    private volatile long maxLagNanos;
+
+    WsOutbound(WebSocketChannel channel, WsSession session, Metrics metrics) {
+        this.channel = channel;
+        this.session = session;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Nothing in flight and nothing queued: the shared group frame can be sent
+     * as is.
+     */
+    boolean isIdle() {
+        return !inFlight.get() && backlog.isEmpty() && control.isEmpty() && !isReplaying();
+    }
+
+    /**
+     * A resume is loading or still has REPLAY chunks to send; BATCH frames are
+     * held back until it is done so the two never interleave.
+     */
+    boolean isReplaying() {
+        return loadingReplays.get() > 0 || !replays.isEmpty();
+    }
+
+    boolean isInFlight() {
+        return inFlight.get();
+    }
+
+    boolean hasBacklog() {
+        return !backlog.isEmpty();
+    }
+
+    void enqueue(TradeEvent event, byte[] json) {
+        backlog.addLast(new Pending(event, json));
+        backlogBytes += json.length + 1;
+    }
+
+    /**
+     * Queue a control reply (any thread). {@code head} is the message encoded
+     * up to its seq; the flusher appends the seq when it sends the frame.
+     */
+    void enqueueControl(byte[] head) {
+        control.add(head);
+        controlBytes.addAndGet(head.length);
+    }
+
+    /**
+     * Next queued control reply, or null (flusher thread).
+     */
+    byte[] pollControl() {
+        byte[] head = control.poll();
+        if (head != null) {
+            controlBytes.addAndGet(-head.length);
+        }
+        return head;
+    }
+
+    /**
+     * A resume was requested; its events are still being loaded.
+     */
+    void replayLoading() {
+        loadingReplays.incrementAndGet();
+    }
+
+    /**
+     * Events for a loading resume are ready (any thread). {@code chunks} yields
+     * REPLAY messages encoded up to their seq; it is consumed by the flusher.
+     */
+    void replayReady(Iterator<byte[]> chunks) {
+        replays.add(chunks);
+        loadingReplays.decrementAndGet();
+    }
+
+    /**
+     * A loading resume failed; live delivery resumes.
+     */
+    void replayFailed() {
+        loadingReplays.decrementAndGet();
+    }
+
+    /**
+     * Next REPLAY chunk to send, or null (flusher thread).
+     */
+    byte[] nextReplayChunk() {
+        Iterator<byte[]> chunks = replays.peek();
+        if (chunks == null) {
+            return null;
+        }
+        byte[] head = chunks.hasNext() ? chunks.next() : null;
+        if (!chunks.hasNext()) {
+            replays.poll();
+        }
+        return head;
+    }
+
+    /**
+     * Apply the degradation stages to the backlog and return the resulting
+     * stage (DISCONNECT means the caller must close the session).
+     */
+    Stage applyBudget(long budgetBytes, long stallTimeoutNanos, long nowNanos) {
+        if (inFlight.get() && nowNanos - inFlightSinceNanos > stallTimeoutNanos) {
+            return stage = Stage.DISCONNECT;
+        }
+        if (backlog.isEmpty() && control.isEmpty()) {
+            // Only a frame in flight: nothing more is held for this client
+            return stage = Stage.NORMAL;
+        }
+        if (used() > budgetBytes / 4) {
+            conflateTicks();
+        }
+        if (used() > budgetBytes / 2) {
+            shedLowPriority();
+            if (used() > budgetBytes) {
+                return stage = Stage.DISCONNECT;
+            }
+            return stage = Stage.SHED;
+        }
+        return stage = backlog.isEmpty() || used() <= budgetBytes / 4 ? Stage.NORMAL : Stage.CONFLATE;
+    }
+
+    /**
+     * Remove and return the backlog in order (flusher assembles it into one
+     * frame).
+     */
+    List<byte[]> drainBacklog(long[] maxSeqOut) {
+        List<byte[]> out = new ArrayList<>(backlog.size());
+        long maxSeq = 0;
+        for (Pending p : backlog) {
+            out.add(p.json());
+            maxSeq = Math.max(maxSeq, p.event().seq());
+        }
+        backlog.clear();
+        backlogBytes = 0;
+        stage = Stage.NORMAL;
+        maxSeqOut[0] = maxSeq;
+        return out;
+    }
+
+    /**
+     * Mark a frame as handed to Undertow.
+     *
+     * @return false if a frame is already in flight
+     */
+    boolean beginSend(long frameBytes) {
+        if (!inFlight.compareAndSet(false, true)) {
+            return false;
+        }
+        inFlightBytes = frameBytes;
+        inFlightSinceNanos = System.nanoTime();
+        return true;
+    }
+
+    void sendComplete(int events, long frameBytes, long maxEventSeq) {
+        long lag = System.nanoTime() - inFlightSinceNanos;
+        if (lag > maxLagNanos) {
+            maxLagNanos = lag;
+        }
+        metrics.framesSent.inc();
+        metrics.eventsSent.inc(events);
+        metrics.bytesSent.inc(frameBytes);
+        metrics.sendSeconds.observe(lag / 1e9);
+        if (maxEventSeq > lastDeliveredSeq) {
+            lastDeliveredSeq = maxEventSeq;
+        }
+        inFlightBytes = 0;
+        inFlight.set(false);
+    }
+
+    void sendFailed() {
+        metrics.sendErrors.inc();
+        inFlightBytes = 0;
+        inFlight.set(false);
+    }
+
+    /**
+     * Highest persisted event seq this client is known to have received.
+     */
+    long resumeSeq() {
+        return lastDeliveredSeq;
+    }
+
+    Stage stage() {
+        return stage;
+    }
+
+    /**
+     * How long the current frame has been in flight (0 if none).
+     */
+    long inFlightNanos(long nowNanos) {
+        return inFlight.get() ? nowNanos - inFlightSinceNanos : 0;
+    }
+
+    /**
+     * Bytes counted against the budget: in-flight frame, control replies and
+     * backlog.
+     */
+    long used() {
+        return inFlightBytes + controlBytes.get() + backlogBytes;
+    }
+
+    /**
+     * This session's outbound state, for the slow-consumer log.
+     */
+    Map<String, Long> getMetrics() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("backlogBytes", backlogBytes);
+        m.put("controlBytes", controlBytes.get());
+        m.put("inFlightBytes", inFlightBytes);
+        m.put("lagMs", inFlightNanos(System.nanoTime()) / 1_000_000);
+        m.put("lagMaxMs", maxLagNanos / 1_000_000);
+        m.put("conflated", conflatedCount);
+        m.put("shed", shedCount);
+        m.put("lastDeliveredSeq", lastDeliveredSeq);
+        m.put("stage", (long) stage.ordinal());
+        return m;
+    }
+
+    private void conflateTicks() {
+        Set<String> seen = new HashSet<>();
+        Iterator<Pending> it = backlog.descendingIterator();
+        while (it.hasNext()) {
+            Pending p = it.next();
+            if (p.event().type() != EventType.TICK) {
+                continue;
+            }
+            JsonNode symbol = p.event().payload() == null ? null : p.event().payload().get("symbol");
+            if (symbol != null && !seen.add(symbol.asText())) {
+                it.remove();
+                backlogBytes -= p.json().length + 1;
+                conflatedCount++;
+                metrics.conflated.inc();
+            }
+        }
+    }
+
+    private void shedLowPriority() {
+        Iterator<Pending> it = backlog.iterator();
+        while (it.hasNext()) {
+            Pending p = it.next();
+            if (LOW_PRIORITY.contains(p.event().type())) {
+                it.remove();
+                backlogBytes -= p.json().length + 1;
+                shedCount++;
+                metrics.shed.inc();
+            }
+        }
+    }
+}
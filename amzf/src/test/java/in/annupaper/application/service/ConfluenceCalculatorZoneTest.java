@@ -0,0 +1,173 @@
+package in.annupaper.application.service;
+
+import in.annupaper.application.port.output.CandleRepository;
+import in.annupaper.application.port.output.MtfConfigRepository;
+import in.annupaper.domain.model.HistoricalCandle;
+import in.annupaper.domain.model.MtfGlobalConfig;
+import in.annupaper.domain.model.TimeframeType;
+import in.annupaper.service.candle.CandleStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Equivalence of ConfluenceCalculator's incrementally maintained zones with
+ * ZoneDetector over the same lookback candles.
+ */
+@DisplayName("Confluence Calculator Zone Tests")
+public class ConfluenceCalculatorZoneTest {
+
+    private static final String SYMBOL = "NSE:SBIN-EQ";
+    private static final TimeframeType[] TIMEFRAMES = { TimeframeType.HTF, TimeframeType.ITF, TimeframeType.LTF };
+
+    private CandleRepository candleRepo;
+    private MtfGlobalConfig config;
+    private CandleStore candleStore;
+    private ConfluenceCalculator calculator;
+
+    @BeforeEach
+    public void setUp() {
+        candleRepo = mock(CandleRepository.class);
+        config = mock(MtfGlobalConfig.class);
+        when(config.htfBuyZonePct()).thenReturn(new BigDecimal("0.50"));
+        when(config.itfBuyZonePct()).thenReturn(new BigDecimal("0.35"));
+        when(config.ltfBuyZonePct()).thenReturn(new BigDecimal("0.20"));
+        MtfConfigRepository mtfConfigRepo = mock(MtfConfigRepository.class);
+        when(mtfConfigRepo.getGlobalConfig()).thenReturn(Optional.of(config));
+
+        // HTF depth below its lookback (175): the window is capped at the ring
+        candleStore = new CandleStore(candleRepo,
+                Map.of(TimeframeType.HTF, 150, TimeframeType.ITF, 90, TimeframeType.LTF, 400), null);
+        calculator = new ConfluenceCalculator(candleStore, mtfConfigRepo);
+    }
+
+    @Test
+    @DisplayName("Zones match ZoneDetector through appends, updates, rewrites and gap inserts")
+    public void testEquivalenceWithZoneDetector() {
+        Random rnd = new Random(7);
+        long[] nextMinute = new long[TIMEFRAMES.length];
+
+        for (int step = 0; step < 5_000; step++) {
+            int t = rnd.nextInt(TIMEFRAMES.length);
+            TimeframeType tf = TIMEFRAMES[t];
+            int op = rnd.nextInt(10);
+
+            if (op < 6 || nextMinute[t] < 3) {
+                // Append, leaving occasional gaps for later inserts
+                nextMinute[t] += rnd.nextInt(8) == 0 ? 2 : 1;
+                candleStore.upsertMemory(candle(tf, nextMinute[t], rnd));
+            } else if (op < 8) {
+                // Re-write the latest bar (high/low may move either way)
+                candleStore.upsertMemory(candle(tf, nextMinute[t], rnd));
+            } else {
+                // Re-write or fill an older bar
+                long back = 1 + rnd.nextInt((int) Math.min(nextMinute[t] - 1, 500));
+                candleStore.upsertMemory(candle(tf, nextMinute[t] - back, rnd));
+            }
+
+            if (nextMinute[0] > 0 && nextMinute[1] > 0 && nextMinute[2] > 0) {
+                ZoneDetector.MultiTimeframeZones zones = calculator.calculateZones(SYMBOL);
+                assertNotNull(zones);
+                assertZoneEquals(expected(TimeframeType.HTF, config.htfBuyZonePct()), zones.htf(), step);
+                assertZoneEquals(expected(TimeframeType.ITF, config.itfBuyZonePct()), zones.itf(), step);
+                assertZoneEquals(expected(TimeframeType.LTF, config.ltfBuyZonePct()), zones.ltf(), step);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Zones are reused until a candle changes a lookback bound")
+    public void testZonesReusedBetweenCandles() {
+        Random rnd = new Random(11);
+        for (TimeframeType tf : TIMEFRAMES) {
+            for (int i = 1; i <= 10; i++) {
+                candleStore.upsertMemory(candle(tf, i, rnd));
+            }
+        }
+
+        ZoneDetector.MultiTimeframeZones first = calculator.calculateZones(SYMBOL);
+        assertSame(first, calculator.calculateZones(SYMBOL));
+
+        candleStore.upsertMemory(new HistoricalCandle(SYMBOL, TimeframeType.LTF, minute(11),
+                new BigDecimal("100.00"), new BigDecimal("99999.00"), new BigDecimal("100.00"),
+                new BigDecimal("100.00"), 1));
+        ZoneDetector.MultiTimeframeZones next = calculator.calculateZones(SYMBOL);
+        assertNotSame(first, next);
+        assertSame(first.htf(), next.htf());
+        assertEquals(0, new BigDecimal("99999.00").compareTo(next.ltf().high()));
+    }
+
+    @Test
+    @DisplayName("Timeframes not in memory fall back to the lookback in PostgreSQL")
+    public void testPostgresFallback() {
+        Random rnd = new Random(3);
+        for (TimeframeType tf : List.of(TimeframeType.HTF, TimeframeType.ITF)) {
+            for (int i = 1; i <= 10; i++) {
+                candleStore.upsertMemory(candle(tf, i, rnd));
+            }
+        }
+        List<HistoricalCandle> stored = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            stored.add(candle(TimeframeType.LTF, i, rnd));
+        }
+        when(candleRepo.findAll(eq(SYMBOL), eq(TimeframeType.LTF), anyInt())).thenReturn(stored);
+
+        ZoneDetector.MultiTimeframeZones zones = calculator.calculateZones(SYMBOL);
+
+        assertNotNull(zones);
+        assertZoneEquals(ZoneDetector.calculateZone(stored, config.ltfBuyZonePct()), zones.ltf(), 0);
+        verify(candleRepo).findAll(SYMBOL, TimeframeType.LTF, TimeframeType.LTF.getLookback());
+        verify(candleRepo, never()).findAll(eq(SYMBOL), eq(TimeframeType.HTF), anyInt());
+    }
+
+    @Test
+    @DisplayName("Missing timeframe with no stored candles yields no zones")
+    public void testInsufficientData() {
+        when(candleRepo.findAll(any(), any(), anyInt())).thenReturn(List.of());
+        assertNull(calculator.calculateZones(SYMBOL));
+    }
+
+    /**
+     * What ZoneDetector computes over the most recent lookback candles.
+     */
+    private ZoneDetector.Zone expected(TimeframeType tf, BigDecimal pct) {
+        List<HistoricalCandle> recent = candleStore.getFromMemory(SYMBOL, tf);
+        List<HistoricalCandle> lookback = new ArrayList<>(recent.subList(0, Math.min(tf.getLookback(), recent.size())));
+        return ZoneDetector.calculateZone(lookback, pct);
+    }
+
+    private static void assertZoneEquals(ZoneDetector.Zone expected, ZoneDetector.Zone actual, int step) {
+        assertNotNull(actual, "step " + step);
+        assertEquals(0, expected.high().compareTo(actual.high()), "high at step " + step);
+        assertEquals(0, expected.low().compareTo(actual.low()), "low at step " + step);
+        assertEquals(0, expected.buyZoneTop().compareTo(actual.buyZoneTop()), "buyZoneTop at step " + step);
+        assertEquals(0, expected.sellZoneBottom().compareTo(actual.sellZoneBottom()),
+                "sellZoneBottom at step " + step);
+    }
+
+    private static HistoricalCandle candle(TimeframeType tf, long minute, Random rnd) {
+        long low = 90_000 + rnd.nextInt(20_000);
+        long high = low + rnd.nextInt(2_000);
+        return new HistoricalCandle(SYMBOL, tf, minute(minute),
+                BigDecimal.valueOf(low + 10, 2), BigDecimal.valueOf(high, 2), BigDecimal.valueOf(low, 2),
+                BigDecimal.valueOf(high - 5, 2), 1_000);
+    }
+
+    private static Instant minute(long minute) {
+        return Instant.ofEpochSecond(1_700_000_000L + minute * 60);
+    }
+}
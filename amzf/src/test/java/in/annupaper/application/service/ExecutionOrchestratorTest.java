@@ -0,0 +1,279 @@
+package in.annupaper.application.service;
+
+import in.annupaper.application.port.input.TradeManagementService;
+import in.annupaper.application.port.output.SignalDeliveryRepository;
+import in.annupaper.application.port.output.SignalRepository;
+import in.annupaper.application.port.output.TradeIntentRepository;
+import in.annupaper.domain.model.Signal;
+import in.annupaper.domain.model.SignalDelivery;
+import in.annupaper.domain.model.TradeIntent;
+import in.annupaper.domain.model.UserBroker;
+import in.annupaper.domain.model.ValidationResult;
+import in.annupaper.service.core.EventService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for ExecutionOrchestrator fan-out: only the published signal's
+ * claimed deliveries are processed, the validation context loads once per
+ * fan-out, intents and consumption go to the repositories in bulk, and the
+ * recovery sweep picks up what no fan-out completed.
+ */
+@DisplayName("Execution Orchestrator Tests")
+public class ExecutionOrchestratorTest {
+
+    private TradeIntentRepository tradeIntentRepo;
+    private ValidationContextLoader contextLoader;
+    private ValidationService validationService;
+    private SignalDeliveryRepository signalDeliveryRepo;
+    private SignalRepository signalRepo;
+    private TradeManagementService tradeManagementService;
+    private Map<String, ValidationService.UserContext> contexts;
+    private ExecutionOrchestrator orchestrator;
+
+    private Signal signal;
+
+    @BeforeEach
+    public void setUp() {
+        tradeIntentRepo = mock(TradeIntentRepository.class);
+        contextLoader = mock(ValidationContextLoader.class);
+        validationService = mock(ValidationService.class);
+        signalDeliveryRepo = mock(SignalDeliveryRepository.class);
+        signalRepo = mock(SignalRepository.class);
+        tradeManagementService = mock(TradeManagementService.class);
+        contexts = new HashMap<>();
+
+        when(contextLoader.load(any(), any(), any())).thenAnswer(inv -> {
+            Map<String, UserBroker> brokers = new HashMap<>();
+            for (UserBroker ub : inv.<Collection<UserBroker>>getArgument(1)) {
+                brokers.put(ub.userBrokerId(), ub);
+            }
+            return new FanOutContext(inv.getArgument(0), brokers, contexts, Map.of(), Map.of(), null, 4);
+        });
+
+        when(tradeIntentRepo.insertAndConsume(anyMap())).thenAnswer(inv -> {
+            Set<String> consumed = new HashSet<>();
+            for (SignalDelivery delivery : inv.<Map<SignalDelivery, TradeIntent>>getArgument(0).keySet()) {
+                consumed.add(delivery.deliveryId());
+            }
+            return consumed;
+        });
+
+        orchestrator = new ExecutionOrchestrator(
+                tradeIntentRepo, validationService, mock(EventService.class), contextLoader,
+                signalDeliveryRepo, signalRepo, tradeManagementService);
+
+        signal = mock(Signal.class);
+        when(signal.signalId()).thenReturn("sig-1");
+    }
+
+    @Test
+    @DisplayName("Claimed deliveries become intents in one insert-and-consume transaction")
+    public void testBulkFanOut() {
+        List<UserBroker> brokers = new ArrayList<>();
+        List<SignalDelivery> deliveries = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            String userId = "user-" + (i % 3);
+            brokers.add(userBroker("ub-" + i, userId));
+            deliveries.add(delivery("d-" + i, "ub-" + i, userId));
+            contexts.put(userId, userContext());
+        }
+        when(signalDeliveryRepo.claimForSignal("sig-1")).thenReturn(deliveries);
+        when(validationService.validate(any(), any(), any(), any())).thenReturn(
+                ValidationResult.pass(10, new BigDecimal("1000"), "LIMIT", new BigDecimal("100"), "CNC",
+                        new BigDecimal("-0.01"), new BigDecimal("0.10")));
+
+        List<TradeIntent> intents = orchestrator.processSignalDeliveries(signal, brokers);
+
+        assertEquals(6, intents.size());
+        verify(tradeIntentRepo, never()).insert(any());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<SignalDelivery, TradeIntent>> consumed = ArgumentCaptor.forClass(Map.class);
+        verify(tradeIntentRepo, times(1)).insertAndConsume(consumed.capture());
+        assertEquals(deliveries, List.copyOf(consumed.getValue().keySet()));
+        assertEquals(intents, List.copyOf(consumed.getValue().values()));
+
+        verify(tradeManagementService, times(6)).onIntentApproved(any());
+        verify(signalDeliveryRepo, never()).findPendingDeliveries();
+        verify(contextLoader, times(1)).load(signal, brokers, deliveries);
+        // claim + context (4) + insert + consume
+        assertEquals(7L, orchestrator.getMetrics().get("lastFanOutQueries"));
+        assertEquals(6L, orchestrator.getMetrics().get("fanOutDeliveries"));
+    }
+
+    @Test
+    @DisplayName("Nothing claimed means nothing processed")
+    public void testNothingClaimed() {
+        when(signalDeliveryRepo.claimForSignal("sig-1")).thenReturn(List.of());
+
+        assertTrue(orchestrator.processSignalDeliveries(signal, List.of()).isEmpty());
+
+        verify(tradeIntentRepo, never()).insertAndConsume(anyMap());
+        verify(validationService, never()).validate(any(), any(), any(), any());
+        verify(contextLoader, never()).load(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Missing user-broker is rejected; missing context yields a rejected intent")
+    public void testRejections() {
+        contexts.put("user-1", userContext());
+        SignalDelivery gone = delivery("d-3", "ub-gone", "user-3");
+        when(signalDeliveryRepo.claimForSignal("sig-1")).thenReturn(List.of(
+                delivery("d-1", "ub-1", "user-1"),
+                delivery("d-2", "ub-2", "user-2"),
+                gone));
+        when(validationService.validate(any(), any(), any(), any())).thenReturn(ValidationResult.fail(List.of()));
+
+        List<TradeIntent> intents = orchestrator.processSignalDeliveries(signal,
+                List.of(userBroker("ub-1", "user-1"), userBroker("ub-2", "user-2")));
+
+        assertEquals(2, intents.size());
+        assertTrue(intents.stream().noneMatch(TradeIntent::validationPassed));
+        verify(signalDeliveryRepo).updateStatusAll(List.of(gone), "REJECTED");
+        verify(tradeManagementService, never()).onIntentApproved(any());
+    }
+
+    @Test
+    @DisplayName("Failed insert-and-consume leaves the validated deliveries claimed for retry")
+    public void testInsertFailure() {
+        contexts.put("user-1", userContext());
+        SignalDelivery gone = delivery("d-2", "ub-gone", "user-2");
+        when(signalDeliveryRepo.claimForSignal("sig-1")).thenReturn(List.of(delivery("d-1", "ub-1", "user-1"), gone));
+        when(validationService.validate(any(), any(), any(), any())).thenReturn(ValidationResult.fail(List.of()));
+        doThrow(new RuntimeException("db down")).when(tradeIntentRepo).insertAndConsume(anyMap());
+
+        assertTrue(orchestrator.processSignalDeliveries(signal, List.of(userBroker("ub-1", "user-1"))).isEmpty());
+
+        // Only the delivery that failed on its own is rejected
+        verify(signalDeliveryRepo).updateStatusAll(List.of(gone), "REJECTED");
+        verify(tradeManagementService, never()).onIntentApproved(any());
+        assertEquals(1L, orchestrator.getMetrics().get("deliveriesLeftForRetry"));
+    }
+
+    @Test
+    @DisplayName("A failed reject does not escape the fan-out")
+    public void testRejectFailure() {
+        when(signalDeliveryRepo.claimForSignal("sig-1")).thenReturn(List.of(delivery("d-1", "ub-gone", "user-1")));
+        when(signalDeliveryRepo.updateStatusAll(anyCollection(), eq("REJECTED")))
+                .thenThrow(new RuntimeException("db down"));
+
+        assertTrue(orchestrator.processSignalDeliveries(signal, List.of()).isEmpty());
+
+        assertEquals(1L, orchestrator.getMetrics().get("deliveriesLeftForRetry"));
+    }
+
+    @Test
+    @DisplayName("Deliveries not consumed (claim expired and taken over) yield no intents")
+    public void testExpiredClaimNotConsumed() {
+        contexts.put("user-1", userContext());
+        contexts.put("user-2", userContext());
+        when(signalDeliveryRepo.claimForSignal("sig-1")).thenReturn(List.of(
+                delivery("d-1", "ub-1", "user-1"),
+                delivery("d-2", "ub-2", "user-2")));
+        when(validationService.validate(any(), any(), any(), any())).thenReturn(
+                ValidationResult.pass(10, new BigDecimal("1000"), "LIMIT", new BigDecimal("100"), "CNC",
+                        new BigDecimal("-0.01"), new BigDecimal("0.10")));
+        when(tradeIntentRepo.insertAndConsume(anyMap())).thenReturn(Set.of("d-2"));
+
+        List<TradeIntent> intents = orchestrator.processSignalDeliveries(signal,
+                List.of(userBroker("ub-1", "user-1"), userBroker("ub-2", "user-2")));
+
+        assertEquals(1, intents.size());
+        assertEquals("ub-2", intents.get(0).userBrokerId());
+        verify(tradeManagementService, times(1)).onIntentApproved(any());
+    }
+
+    @Test
+    @DisplayName("Failed context load leaves the claimed deliveries for retry")
+    public void testContextLoadFailure() {
+        when(signalDeliveryRepo.claimForSignal("sig-1")).thenReturn(List.of(delivery("d-1", "ub-1", "user-1")));
+        doThrow(new RuntimeException("db down")).when(contextLoader).load(any(), any(), any());
+
+        assertTrue(orchestrator.processSignalDeliveries(signal, List.of(userBroker("ub-1", "user-1"))).isEmpty());
+
+        verify(signalDeliveryRepo, never()).updateStatusAll(anyCollection(), any());
+        assertEquals(1L, orchestrator.getMetrics().get("deliveriesLeftForRetry"));
+        verify(validationService, never()).validate(any(), any(), any(), any());
+        verify(tradeIntentRepo, never()).insertAndConsume(anyMap());
+    }
+
+    @Test
+    @DisplayName("Recovery sweep releases expired claims, then goes through the per-signal claim")
+    public void testPendingRecovery() {
+        Instant old = Instant.now().minusSeconds(300);
+        when(signalDeliveryRepo.releaseExpiredClaims(any())).thenReturn(1);
+        when(signalDeliveryRepo.findPendingDeliveries()).thenReturn(List.of(
+                delivery("d-1", "sig-1", "ub-1", "user-1", old),
+                delivery("d-2", "sig-1", "ub-2", "user-2", old)));
+        when(signalRepo.findByIds(anyCollection())).thenReturn(List.of(signal));
+        when(signalDeliveryRepo.claimForSignal("sig-1")).thenReturn(List.of());
+
+        orchestrator.processPendingDeliveries();
+
+        verify(signalDeliveryRepo, times(1)).releaseExpiredClaims(any());
+        verify(signalDeliveryRepo, times(1)).claimForSignal("sig-1");
+        verify(signalRepo, never()).findById(any());
+        verify(signalDeliveryRepo, never()).updateStatusAll(anyCollection(), eq("REJECTED"));
+        assertEquals(1L, orchestrator.getMetrics().get("claimsReleased"));
+    }
+
+    @Test
+    @DisplayName("Recovery sweep leaves deliveries younger than the claim lease to their fan-out")
+    public void testRecoverySkipsYoungDeliveries() {
+        Instant old = Instant.now().minusSeconds(300);
+        when(signalDeliveryRepo.findPendingDeliveries()).thenReturn(List.of(
+                delivery("d-1", "sig-1", "ub-1", "user-1", old),
+                delivery("d-2", "sig-2", "ub-2", "user-2", Instant.now())));
+        when(signalRepo.findByIds(anyCollection())).thenReturn(List.of(signal));
+        when(signalDeliveryRepo.claimForSignal("sig-1")).thenReturn(List.of());
+
+        orchestrator.processPendingDeliveries();
+
+        verify(signalRepo).findByIds(Set.of("sig-1"));
+        verify(signalDeliveryRepo, times(1)).claimForSignal("sig-1");
+        verify(signalDeliveryRepo, never()).claimForSignal("sig-2");
+    }
+
+    private static SignalDelivery delivery(String deliveryId, String userBrokerId, String userId) {
+        return delivery(deliveryId, "sig-1", userBrokerId, userId, Instant.now());
+    }
+
+    private static SignalDelivery delivery(String deliveryId, String signalId, String userBrokerId, String userId,
+            Instant createdAt) {
+        return new SignalDelivery(deliveryId, signalId, userBrokerId, userId, "CREATED",
+                null, null, null, createdAt, null, null, null, createdAt, null, 1);
+    }
+
+    private static UserBroker userBroker(String userBrokerId, String userId) {
+        UserBroker ub = mock(UserBroker.class);
+        when(ub.userBrokerId()).thenReturn(userBrokerId);
+        when(ub.userId()).thenReturn(userId);
+        when(ub.brokerId()).thenReturn("zerodha");
+        return ub;
+    }
+
+    private static ValidationService.UserContext userContext() {
+        return new ValidationService.UserContext("pf-1", new BigDecimal("1000000"), new BigDecimal("500000"),
+                BigDecimal.ZERO, BigDecimal.ZERO, 0, 10, BigDecimal.ZERO, BigDecimal.ZERO, false, false);
+    }
+}
@@ -0,0 +1,146 @@
+package in.annupaper.application.service;
+
+import in.annupaper.application.port.output.ExitIntentRepository;
+import in.annupaper.domain.model.ExitIntent;
+import in.annupaper.domain.model.ExitIntentStatus;
+import in.annupaper.domain.model.ExitReason;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for ExitOrderProcessor: the push path hands intents to their trade's
+ * partition with the tick receive time, the sweep leaves intents younger
+ * than the grace period to the push path, and a push and a sweep of the same
+ * intent run one after the other so only one order is placed.
+ */
+@DisplayName("Exit Order Processor Tests")
+public class ExitOrderProcessorTest {
+
+    private ExitIntentRepository exitIntentRepo;
+    private ExitOrderExecutionService executionService;
+    private ExitOrderProcessor processor;
+
+    @BeforeEach
+    public void setUp() {
+        exitIntentRepo = mock(ExitIntentRepository.class);
+        executionService = mock(ExitOrderExecutionService.class);
+        processor = new ExitOrderProcessor(exitIntentRepo, executionService);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        processor.stop();
+    }
+
+    @Test
+    @DisplayName("submit() executes the intent on its trade's partition with the tick receive time")
+    public void testSubmit() throws InterruptedException {
+        ExitIntent intent = intent("x-1", "t-1", ExitIntentStatus.APPROVED, Instant.now());
+        Instant tickReceivedAt = Instant.now().minusMillis(5);
+        CountDownLatch executed = new CountDownLatch(1);
+        when(executionService.executeExitIntent(any(), any(), any())).thenAnswer(inv -> {
+            executed.countDown();
+            return CompletableFuture.completedFuture(intent);
+        });
+
+        processor.submit(intent, tickReceivedAt);
+
+        assertTrue(executed.await(5, TimeUnit.SECONDS));
+        verify(executionService).executeExitIntent(eq(intent), eq(tickReceivedAt), any());
+    }
+
+    @Test
+    @DisplayName("The sweep places only APPROVED intents older than the grace period, without a tick time")
+    public void testSweepGracePeriod() throws InterruptedException {
+        Instant now = Instant.now();
+        ExitIntent young = intent("x-young", "t-1", ExitIntentStatus.APPROVED, now.minusSeconds(2));
+        ExitIntent old = intent("x-old", "t-2", ExitIntentStatus.APPROVED, now.minusSeconds(60));
+        ExitIntent rejected = intent("x-rejected", "t-3", ExitIntentStatus.REJECTED, now.minusSeconds(60));
+        when(exitIntentRepo.findPendingIntents()).thenReturn(List.of(young, old, rejected));
+        CountDownLatch executed = new CountDownLatch(1);
+        when(executionService.executeExitIntent(any(), any(), any())).thenAnswer(inv -> {
+            executed.countDown();
+            return CompletableFuture.completedFuture(inv.getArgument(0));
+        });
+
+        processor.sweepApprovedExitIntents();
+
+        assertTrue(executed.await(5, TimeUnit.SECONDS));
+        processor.stop(); // drains the partitions
+        verify(executionService).executeExitIntent(eq(old), isNull(), any());
+        verify(executionService, never()).executeExitIntent(eq(young), any(), any());
+        verify(executionService, never()).executeExitIntent(eq(rejected), any(), any());
+    }
+
+    @Test
+    @DisplayName("A push and a sweep of the same intent run one at a time; only the first places an order")
+    public void testPushSweepRace() throws Exception {
+        ExitIntent intent = intent("x-1", "t-1", ExitIntentStatus.APPROVED, Instant.now().minusSeconds(60));
+        when(exitIntentRepo.findPendingIntents()).thenReturn(List.of(intent));
+
+        // Stands in for the atomic APPROVED -> PLACED transition
+        AtomicBoolean placed = new AtomicBoolean(false);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger orders = new AtomicInteger();
+        CountDownLatch executed = new CountDownLatch(2);
+        when(executionService.executeExitIntent(any(), any(), any())).thenAnswer(inv -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+                if (placed.compareAndSet(false, true)) {
+                    orders.incrementAndGet();
+                }
+                return CompletableFuture.completedFuture(intent);
+            } finally {
+                inFlight.decrementAndGet();
+                executed.countDown();
+            }
+        });
+
+        CountDownLatch go = new CountDownLatch(1);
+        Thread sweep = new Thread(() -> {
+            try {
+                go.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            processor.sweepApprovedExitIntents();
+        });
+        sweep.start();
+        go.countDown();
+        processor.submit(intent, Instant.now());
+        sweep.join(5_000);
+
+        assertTrue(executed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, maxInFlight.get(), "same trade, same partition: never concurrent");
+        assertEquals(1, orders.get());
+        verify(executionService, times(2)).executeExitIntent(eq(intent), any(), any());
+    }
+
+    private static ExitIntent intent(String exitIntentId, String tradeId, ExitIntentStatus status,
+            Instant createdAt) {
+        return new ExitIntent(exitIntentId, null, tradeId, "ub-1", ExitReason.STOP_LOSS, 1,
+                status, status == ExitIntentStatus.APPROVED, List.of(),
+                10, "MARKET", null, "MIS",
+                null, null, null, null,
+                null, null, 0,
+                createdAt, createdAt, null, 1);
+    }
+}
@@ -0,0 +1,215 @@
+package in.annupaper.application.service;
+
+import in.annupaper.application.port.output.UserBrokerRepository;
+import in.annupaper.application.port.output.WatchlistRepository;
+import in.annupaper.domain.model.Tick;
+import in.annupaper.domain.model.UserBroker;
+import in.annupaper.domain.model.Watchlist;
+import in.annupaper.service.MarketDataCache;
+import io.prometheus.client.CollectorRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for MtfSignalGenerator: coalescing tick-driven analysis, and the
+ * scheduled sweep (watchlist snapshot, parallel shards, deadline carry-over,
+ * sweep metrics).
+ */
+@DisplayName("MTF Signal Generator Tests")
+public class MtfSignalGeneratorTest {
+
+    // Thursday 10:00 IST
+    private static final Instant IN_SESSION = Instant.parse("2026-10-15T04:30:00Z");
+
+    private SignalService signalService;
+    private WatchlistRepository watchlistRepo;
+    private MarketDataCache marketDataCache;
+    private CollectorRegistry registry;
+    private MtfSignalGenerator generator;
+    private List<String> symbols;
+
+    @BeforeEach
+    public void setUp() {
+        signalService = mock(SignalService.class);
+        watchlistRepo = mock(WatchlistRepository.class);
+        marketDataCache = new MarketDataCache();
+        registry = new CollectorRegistry();
+
+        UserBrokerRepository userBrokerRepo = mock(UserBrokerRepository.class);
+        UserBroker dataBroker = mock(UserBroker.class);
+        when(dataBroker.userBrokerId()).thenReturn("ub-data");
+        when(userBrokerRepo.findDataBroker()).thenReturn(Optional.of(dataBroker));
+
+        symbols = new ArrayList<>();
+        List<Watchlist> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String symbol = "NSE:S" + i + "-EQ";
+            symbols.add(symbol);
+            rows.add(watchlist(symbol, true));
+            marketDataCache.updateTick(symbol, new BigDecimal("100.00"), Instant.now());
+        }
+        rows.add(watchlist("NSE:OFF-EQ", false));
+        rows.add(watchlist("NSE:S0-EQ", true)); // duplicate row
+        when(watchlistRepo.findByUserBrokerId("ub-data")).thenReturn(rows);
+
+        generator = new MtfSignalGenerator(signalService, watchlistRepo, marketDataCache, userBrokerRepo, registry);
+    }
+
+    @Test
+    @DisplayName("Ticks while an analysis is pending coalesce to the latest price")
+    public void testTickCoalescing() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(signalService.analyzeAndGenerateSignal(eq("NSE:S1-EQ"), any())).thenAnswer(inv -> {
+            firstStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+
+        generator.onTick(tick("NSE:S1-EQ", "100.00"));
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+
+        // First analysis is running: these only replace the pending price
+        generator.onTick(tick("NSE:S1-EQ", "101.00"));
+        generator.onTick(tick("NSE:S1-EQ", "102.00"));
+        generator.onTick(tick("NSE:S1-EQ", "103.00"));
+        release.countDown();
+
+        awaitTickAnalyses(2);
+        verify(signalService).analyzeAndGenerateSignal("NSE:S1-EQ", new BigDecimal("100.00"));
+        verify(signalService).analyzeAndGenerateSignal("NSE:S1-EQ", new BigDecimal("103.00"));
+        verify(signalService, times(2)).analyzeAndGenerateSignal(eq("NSE:S1-EQ"), any());
+
+        assertEquals(2L, generator.getMetrics().get("tickCoalesced"));
+        assertEquals(2.0, registry.getSampleValue("mtf_signal_tick_coalesced_total"));
+        Map<String, Long> symbolMetrics = generator.getSymbolMetrics().get("NSE:S1-EQ");
+        assertEquals(2L, symbolMetrics.get("analyses"));
+        assertEquals(2L, symbolMetrics.get("coalesced"));
+        String[] symbolLabel = { "symbol" };
+        String[] s1 = { "NSE:S1-EQ" };
+        assertEquals(2.0, registry.getSampleValue("mtf_signal_tick_symbol_analyses_total", symbolLabel, s1));
+        assertEquals(2.0, registry.getSampleValue("mtf_signal_tick_symbol_coalesced_total", symbolLabel, s1));
+        assertTrue(registry.getSampleValue("mtf_signal_tick_symbol_analysis_max_seconds", symbolLabel, s1) > 0);
+    }
+
+    @Test
+    @DisplayName("Ticks within the minimum move are not analyzed")
+    public void testTickMinimumMove() throws Exception {
+        generator.onTick(tick("NSE:S2-EQ", "100.00"));
+        awaitTickAnalyses(1);
+
+        generator.onTick(tick("NSE:S2-EQ", "100.29")); // 0.29%
+        generator.onTick(tick("NSE:S2-EQ", "99.75")); // 0.25%
+        generator.onTick(tick("NSE:S2-EQ", "100.30")); // 0.30%
+        awaitTickAnalyses(2);
+
+        verify(signalService).analyzeAndGenerateSignal("NSE:S2-EQ", new BigDecimal("100.00"));
+        verify(signalService).analyzeAndGenerateSignal("NSE:S2-EQ", new BigDecimal("100.30"));
+        verify(signalService, times(2)).analyzeAndGenerateSignal(eq("NSE:S2-EQ"), any());
+    }
+
+    @Test
+    @DisplayName("Every enabled symbol is analyzed once per sweep")
+    public void testSweepAnalyzesAllSymbols() throws Exception {
+        generator.sweep(System.currentTimeMillis() + 30_000);
+
+        for (String symbol : symbols) {
+            verify(signalService, times(1)).analyzeAndGenerateSignal(eq(symbol), any());
+        }
+        verify(signalService, never()).analyzeAndGenerateSignal(eq("NSE:OFF-EQ"), any());
+        assertTrue(generator.carriedOver().isEmpty());
+        assertEquals(200L, generator.getMetrics().get("lastSweepSymbols"));
+        assertEquals(200.0, registry.getSampleValue("mtf_signal_last_sweep_symbols"));
+    }
+
+    @Test
+    @DisplayName("Watchlist is served from the snapshot until invalidated")
+    public void testWatchlistSnapshot() throws Exception {
+        generator.sweep(System.currentTimeMillis() + 30_000);
+        generator.sweep(System.currentTimeMillis() + 30_000);
+        verify(watchlistRepo, times(1)).findByUserBrokerId("ub-data");
+
+        generator.invalidateWatchlist();
+        generator.sweep(System.currentTimeMillis() + 30_000);
+        verify(watchlistRepo, times(2)).findByUserBrokerId("ub-data");
+    }
+
+    @Test
+    @DisplayName("Symbols not reached before the deadline are carried over, not skipped")
+    public void testDeadlineCarryOver() throws Exception {
+        generator.sweep(System.currentTimeMillis() - 1);
+
+        verify(signalService, never()).analyzeAndGenerateSignal(any(), any());
+        assertEquals(symbols, generator.carriedOver());
+        assertEquals(200.0, registry.getSampleValue("mtf_signal_sweep_carried_over_total"));
+
+        generator.sweep(System.currentTimeMillis() + 30_000);
+
+        for (String symbol : symbols) {
+            verify(signalService, times(1)).analyzeAndGenerateSignal(eq(symbol), any());
+        }
+        assertTrue(generator.carriedOver().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Carried-over symbols that left the watchlist are dropped")
+    public void testCarryOverFollowsWatchlist() throws Exception {
+        generator.sweep(System.currentTimeMillis() - 1);
+
+        when(watchlistRepo.findByUserBrokerId("ub-data")).thenReturn(List.of(watchlist("NSE:S5-EQ", true)));
+        generator.invalidateWatchlist();
+        generator.sweep(System.currentTimeMillis() + 30_000);
+
+        verify(signalService, times(1)).analyzeAndGenerateSignal(eq("NSE:S5-EQ"), any());
+        verify(signalService, never()).analyzeAndGenerateSignal(eq("NSE:S6-EQ"), any());
+        assertTrue(generator.carriedOver().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Sweep duration is reported to Prometheus")
+    public void testSweepDurationMetric() throws Exception {
+        generator.sweep(System.currentTimeMillis() + 30_000);
+        generator.sweep(System.currentTimeMillis() + 30_000);
+
+        assertEquals(2.0, registry.getSampleValue("mtf_signal_sweep_duration_seconds_count"));
+        assertNotNull(registry.getSampleValue("mtf_signal_sweep_duration_seconds",
+                new String[] { "quantile" }, new String[] { "0.99" }));
+        assertTrue(registry.getSampleValue("mtf_signal_sweep_shard_seconds_count") >= 8.0);
+        assertEquals(2L, generator.getMetrics().get("sweeps"));
+    }
+
+    private void awaitTickAnalyses(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (generator.getMetrics().get("tickAnalyses") < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, generator.getMetrics().get("tickAnalyses"));
+    }
+
+    private static Tick tick(String symbol, String price) {
+        BigDecimal p = new BigDecimal(price);
+        return new Tick(symbol, p, p, p, p, p, 0, p, p, 0, 0, IN_SESSION, "TEST");
+    }
+
+    private static Watchlist watchlist(String symbol, boolean enabled) {
+        Watchlist w = mock(Watchlist.class);
+        when(w.symbol()).thenReturn(symbol);
+        when(w.enabled()).thenReturn(enabled);
+        return w;
+    }
+}
@@ -0,0 +1,208 @@
+package in.annupaper.application.service;
+
+import in.annupaper.application.port.output.BrokerProvider;
+import in.annupaper.application.port.output.SignalRepository;
+import in.annupaper.application.port.output.TradeRepository;
+import in.annupaper.application.port.output.UserBrokerRepository;
+import in.annupaper.domain.model.Trade;
+import in.annupaper.service.core.EventService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for OpenPositionBook: OPEN trades are indexed by symbol with their
+ * levels in the trigger index, trades leave the book (and the index) when
+ * they close, trailing ratchets update a position in place, and a resync
+ * does not undo changes made while it ran. Also checks that a SHORT ratchet
+ * taken by the book is persisted by TMS, so book and DB agree.
+ */
+@DisplayName("Open Position Book Tests")
+public class OpenPositionBookTest {
+
+    private OpenPositionBook book;
+
+    @BeforeEach
+    public void setUp() {
+        book = new OpenPositionBook();
+    }
+
+    @Test
+    @DisplayName("OPEN LONG and SHORT trades are indexed by symbol and fire on their own sides")
+    public void testUpsert() {
+        book.upsert(trade("long", "SBIN", true, "100.00", "95.00", null, "110.00", "OPEN"));
+        book.upsert(trade("short", "SBIN", false, "100.00", "90.00", "105.00", "92.00", "OPEN"));
+        book.upsert(trade("other", "INFY", true, "50.00", "45.00", null, null, "OPEN"));
+
+        assertEquals(3, book.size());
+        assertEquals(2, book.symbolCount());
+        assertEquals(2, book.forSymbol("SBIN").length);
+        assertEquals(0, book.forSymbol("TCS").length);
+
+        OpenPositionBook.OpenPosition shortPosition = position("SBIN", "short");
+        assertFalse(shortPosition.isLong());
+        assertEquals(10_500, shortPosition.ceilingPaise());
+
+        assertEquals(List.of("long"), exits("SBIN", 9_500));
+        assertEquals(List.of("long", "short"), exits("SBIN", 9_200));
+        assertEquals(List.of("short", "long"), exits("SBIN", 11_000));
+        assertNull(book.triggers().evaluate("SBIN", 10_000, System.currentTimeMillis()));
+    }
+
+    @Test
+    @DisplayName("A trade leaves the book and the trigger index when it closes")
+    public void testRemovalOnClose() {
+        List<String> removed = new ArrayList<>();
+        book.addRemovalListener(removed::add);
+        book.upsert(trade("t-1", "SBIN", true, "100.00", "95.00", null, null, "OPEN"));
+        book.upsert(trade("t-2", "SBIN", true, "100.00", "96.00", null, null, "OPEN"));
+
+        book.upsert(trade("t-1", "SBIN", true, "100.00", "95.00", null, null, "CLOSED"));
+
+        assertEquals(List.of("t-1"), removed);
+        assertEquals(1, book.size());
+        assertEquals(List.of("t-2"), exits("SBIN", 9_000));
+
+        book.remove("t-2");
+
+        assertEquals(List.of("t-1", "t-2"), removed);
+        assertEquals(0, book.symbolCount());
+        assertNull(book.triggers().evaluate("SBIN", 9_000, System.currentTimeMillis()));
+    }
+
+    @Test
+    @DisplayName("A trailing ratchet replaces the position and moves its stop in the index")
+    public void testRatchet() {
+        book.upsert(trade("long", "SBIN", true, "100.00", "95.00", null, null, "OPEN"));
+        book.upsert(trade("short", "INFY", false, "100.00", "90.00", "105.00", null, "OPEN"));
+
+        book.updateTrailing("long", 10_500, 10_290);
+        book.updateTrailing("short", 9_500, 9_690);
+        book.updateTrailing("missing", 1, 1);
+
+        OpenPositionBook.OpenPosition longPosition = position("SBIN", "long");
+        assertTrue(longPosition.trailingActive());
+        assertEquals(10_500, longPosition.trailingHighestPaise());
+        assertEquals(10_290, longPosition.trailingStopPaise());
+        assertEquals(9_500, position("INFY", "short").trailingHighestPaise());
+
+        assertEquals(List.of("long"), exits("SBIN", 10_290));
+        assertTrue(exits("SBIN", 10_291).isEmpty());
+        assertEquals(List.of("short"), exits("INFY", 9_690));
+        assertTrue(exits("INFY", 9_689).isEmpty());
+    }
+
+    @Test
+    @DisplayName("A resync keeps changes made after it started and drops trades no longer open")
+    public void testRebuild() {
+        book.upsert(trade("stale", "SBIN", true, "100.00", "95.00", null, null, "OPEN"));
+        book.upsert(trade("kept", "INFY", true, "50.00", "45.00", null, null, "OPEN"));
+
+        long startedAt = book.beginRebuild();
+        book.remove("kept"); // closed while the resync query ran
+        book.rebuild(List.of(
+                trade("kept", "INFY", true, "50.00", "45.00", null, null, "OPEN"),
+                trade("new", "TCS", true, "30.00", "28.00", null, null, "OPEN")), startedAt);
+
+        assertEquals(1, book.size());
+        assertEquals(1, book.forSymbol("TCS").length);
+        assertEquals(0, book.forSymbol("SBIN").length);
+        assertEquals(0, book.forSymbol("INFY").length);
+    }
+
+    @Test
+    @DisplayName("TMS persists a SHORT trailing ratchet (a new low), so book and DB agree")
+    public void testShortRatchetPersisted() {
+        TradeRepository tradeRepo = mock(TradeRepository.class);
+        Trade active = withTrailing(trade("short", "SBIN", false, "100.00", "90.00", "105.00", null, "OPEN"),
+                "95.00", "96.90");
+        when(tradeRepo.findById("short")).thenReturn(Optional.of(active));
+        when(tradeRepo.updateTrailingStop(anyString(), anyBoolean(), any(), any())).thenReturn(true);
+        TradeManagementServiceImpl tms = new TradeManagementServiceImpl(tradeRepo, mock(SignalRepository.class),
+                mock(UserBrokerRepository.class), mock(BrokerProvider.class), mock(EventService.class),
+                mock(BrickMovementTracker.class), book);
+        book.upsert(active);
+
+        book.updateTrailing("short", 9_400, 9_588);
+        tms.updateTrailingStop("short", new BigDecimal("94.00"), new BigDecimal("95.88"), false);
+        // Not a new low: ignored
+        tms.updateTrailingStop("short", new BigDecimal("96.00"), new BigDecimal("97.92"), false);
+        tms.shutdown(); // drains the trade's partition
+
+        verify(tradeRepo, times(1)).updateTrailingStop(anyString(), anyBoolean(), any(), any());
+        verify(tradeRepo).updateTrailingStop("short", true, new BigDecimal("94.00"), new BigDecimal("95.88"));
+        assertEquals(9_400, position("SBIN", "short").trailingHighestPaise());
+        assertEquals(9_588, position("SBIN", "short").trailingStopPaise());
+    }
+
+    private List<String> exits(String symbol, long pricePaise) {
+        List<PriceTriggerIndex.Fired> fired = book.triggers().evaluate(symbol, pricePaise, System.currentTimeMillis());
+        if (fired == null) {
+            return List.of();
+        }
+        return fired.stream()
+                .filter(f -> f.kind() == PriceTriggerIndex.Kind.EXIT)
+                .map(f -> f.position().tradeId())
+                .toList();
+    }
+
+    private OpenPositionBook.OpenPosition position(String symbol, String tradeId) {
+        for (OpenPositionBook.OpenPosition p : book.forSymbol(symbol)) {
+            if (p.tradeId().equals(tradeId)) {
+                return p;
+            }
+        }
+        throw new AssertionError("not in book: " + tradeId);
+    }
+
+    private static Trade trade(String tradeId, String symbol, boolean isLong, String entry, String floor,
+            String ceiling, String target, String status) {
+        BigDecimal entryPrice = new BigDecimal(entry);
+        Instant entryTime = Instant.now();
+        return new Trade(
+                tradeId, "pf-1", "user-1", "zerodha", "ub-1", null, null,
+                symbol, isLong ? "BUY" : "SELL", 1,
+                entryPrice, 1, entryPrice, entryTime, "MIS",
+                null, null, null, null, null,
+                null, null, null, null, null, null,
+                new BigDecimal(floor), ceiling != null ? new BigDecimal(ceiling) : null,
+                null, null,
+                null, target != null ? new BigDecimal(target) : null, null, null,
+                status, entryPrice, null, null,
+                false, null, null,
+                null, null, null, null,
+                null, null, null,
+                null, null, null,
+                entryTime, entryTime, entryTime, null, 1);
+    }
+
+    private static Trade withTrailing(Trade t, String extreme, String stop) {
+        return new Trade(
+                t.tradeId(), t.portfolioId(), t.userId(), t.brokerId(), t.userBrokerId(), t.signalId(), t.intentId(),
+                t.symbol(), t.direction(), t.tradeNumber(),
+                t.entryPrice(), t.entryQty(), t.entryValue(), t.entryTimestamp(), t.productType(),
+                null, null, null, null, null,
+                null, null, null, null, null, null,
+                t.entryEffectiveFloor(), t.entryEffectiveCeiling(),
+                null, null,
+                null, t.exitTargetPrice(), null, null,
+                t.status(), t.currentPrice(), null, null,
+                true, new BigDecimal(extreme), new BigDecimal(stop),
+                null, null, null, null,
+                null, null, null,
+                null, null, null,
+                t.lastBrokerUpdateAt(), t.createdAt(), t.updatedAt(), null, 1);
+    }
+}
@@ -0,0 +1,207 @@
+package in.annupaper.application.service;
+
+import in.annupaper.domain.model.Paise;
+import in.annupaper.domain.model.Trade;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for PriceTriggerIndex: LONG and SHORT levels fire on the side and in
+ * the order a tick crosses them, trailing activation follows the established
+ * rounded-percentage rule at its boundary, and replacing a position moves
+ * only its levels.
+ */
+@DisplayName("Price Trigger Index Tests")
+public class PriceTriggerIndexTest {
+
+    private static final long NONE = Paise.NONE;
+
+    @Test
+    @DisplayName("LONG: stop fires at or below the floor, target at or above; nothing in between")
+    public void testLongLevels() {
+        PriceTriggerIndex index = new PriceTriggerIndex();
+        OpenPositionBook.OpenPosition p = position("t-1", true, 10_000, 11_000, 9_500, NONE);
+        index.set("SBIN", new OpenPositionBook.OpenPosition[] { p });
+
+        assertNull(index.evaluate("SBIN", 10_000, 0));
+        assertNull(index.evaluate("SBIN", 9_501, 0));
+        assertNull(index.evaluate("SBIN", 10_999, 0));
+        assertExit(index.evaluate("SBIN", 9_500, 0), "t-1");
+        assertExit(index.evaluate("SBIN", 9_000, 0), "t-1");
+        assertExit(index.evaluate("SBIN", 11_000, 0), "t-1");
+        assertNull(index.evaluate("INFY", 9_000, 0), "other symbol");
+    }
+
+    @Test
+    @DisplayName("SHORT: stop fires at or above the ceiling, target at or below; nothing in between")
+    public void testShortLevels() {
+        PriceTriggerIndex index = new PriceTriggerIndex();
+        OpenPositionBook.OpenPosition p = position("t-1", false, 10_000, 9_000, 9_800, 10_500);
+        index.set("SBIN", new OpenPositionBook.OpenPosition[] { p });
+
+        assertNull(index.evaluate("SBIN", 10_000, 0));
+        assertNull(index.evaluate("SBIN", 10_499, 0));
+        assertNull(index.evaluate("SBIN", 9_001, 0), "the floor is not a SHORT stop when a ceiling is set");
+        assertExit(index.evaluate("SBIN", 10_500, 0), "t-1");
+        assertExit(index.evaluate("SBIN", 9_000, 0), "t-1");
+    }
+
+    @Test
+    @DisplayName("A tick fires exactly the levels it crossed, across positions on both sides")
+    public void testLevelOrdering() {
+        PriceTriggerIndex index = new PriceTriggerIndex();
+        index.set("SBIN", new OpenPositionBook.OpenPosition[] {
+                position("long-high-stop", true, 10_000, 12_000, 9_900, NONE),
+                position("long-low-stop", true, 10_000, 12_000, 9_000, NONE),
+                position("short-stop", false, 10_000, 8_000, 9_000, 10_100),
+                position("short-target", false, 10_000, 9_950, 9_000, 11_000),
+                position("long-mid-stop", true, 10_000, 12_000, 9_500, NONE) });
+
+        // DOWN side walks from the highest level: 9,950 > 9,900 > 9,500 > 9,000
+        assertEquals(List.of("short-target", "long-high-stop"), exits(index.evaluate("SBIN", 9_900, 0)));
+        assertEquals(List.of("short-target", "long-high-stop", "long-mid-stop"),
+                exits(index.evaluate("SBIN", 9_500, 0)));
+        assertEquals(List.of("short-target", "long-high-stop", "long-mid-stop", "long-low-stop"),
+                exits(index.evaluate("SBIN", 8_999, 0)));
+        // UP side walks from the lowest level: 10,100 < 11,000
+        assertEquals(List.of("short-stop"), exits(index.evaluate("SBIN", 10_100, 0)));
+        assertEquals(List.of("short-stop", "short-target"), exits(index.evaluate("SBIN", 11_000, 0)));
+    }
+
+    @Test
+    @DisplayName("LONG: an active trailing stop raises the stop; a new high fires TRAIL before EXIT")
+    public void testLongTrailing() {
+        PriceTriggerIndex index = new PriceTriggerIndex();
+        index.configureTrailing(true, new BigDecimal("1.00"));
+        index.set("SBIN", new OpenPositionBook.OpenPosition[] {
+                position("long", true, 10_000, NONE, 9_000, NONE).withTrailing(10_500, 10_200) });
+
+        assertNull(index.evaluate("SBIN", 10_300, 0));
+        assertNull(index.evaluate("SBIN", 10_500, 0), "equal to the high is not a new high");
+        assertExit(index.evaluate("SBIN", 10_200, 0), "long");
+
+        List<PriceTriggerIndex.Fired> fired = index.evaluate("SBIN", 10_501, 0);
+        assertEquals(1, fired.size());
+        assertEquals(PriceTriggerIndex.Kind.TRAIL, fired.get(0).kind());
+    }
+
+    @Test
+    @DisplayName("SHORT: an active trailing stop lowers the stop; a new low fires TRAIL before EXIT")
+    public void testShortTrailing() {
+        PriceTriggerIndex index = new PriceTriggerIndex();
+        index.configureTrailing(true, new BigDecimal("1.00"));
+        index.set("SBIN", new OpenPositionBook.OpenPosition[] {
+                position("short", false, 10_000, 9_400, 9_000, 11_000).withTrailing(9_500, 9_800) });
+
+        assertNull(index.evaluate("SBIN", 9_700, 0));
+        assertNull(index.evaluate("SBIN", 9_500, 0), "equal to the low is not a new low");
+        assertExit(index.evaluate("SBIN", 9_800, 0), "short");
+
+        List<PriceTriggerIndex.Fired> fired = index.evaluate("SBIN", 9_400, 0);
+        assertEquals(2, fired.size());
+        assertEquals(PriceTriggerIndex.Kind.TRAIL, fired.get(0).kind());
+        assertEquals(PriceTriggerIndex.Kind.EXIT, fired.get(1).kind(), "target");
+    }
+
+    @Test
+    @DisplayName("Replacing a position moves only its levels")
+    public void testReplace() {
+        PriceTriggerIndex index = new PriceTriggerIndex();
+        OpenPositionBook.OpenPosition a = position("a", true, 10_000, NONE, 9_500, NONE);
+        OpenPositionBook.OpenPosition b = position("b", true, 10_000, NONE, 9_000, NONE);
+        index.set("SBIN", new OpenPositionBook.OpenPosition[] { a, b });
+
+        index.replace(a.withTrailing(10_500, 10_200));
+
+        assertEquals(List.of("a"), exits(index.evaluate("SBIN", 10_200, 0)));
+        assertEquals(List.of("a", "b"), exits(index.evaluate("SBIN", 9_000, 0)));
+
+        index.set("SBIN", new OpenPositionBook.OpenPosition[0]);
+        assertNull(index.evaluate("SBIN", 9_000, 0));
+        assertEquals(0, index.symbolCount());
+    }
+
+    @Test
+    @DisplayName("Trailing activation rounds the move HALF_UP to 4 decimals, like the BigDecimal rule")
+    public void testActivationBoundary() {
+        long bp = PriceTriggerIndex.activationBasisPoints(new BigDecimal("1.00"));
+
+        // 299 / 30000 = 0.009966.. -> 0.0100 (1.00%): activates although the exact move is below 1%
+        assertTrue(PriceTriggerIndex.activates(true, 30_000, 30_299, bp));
+        assertFalse(PriceTriggerIndex.activates(true, 30_000, 30_298, bp));
+        assertTrue(PriceTriggerIndex.activates(false, 30_000, 29_701, bp));
+        assertFalse(PriceTriggerIndex.activates(false, 30_000, 29_702, bp));
+
+        // The in-memory level is the first price the rule activates at
+        assertEquals(30_299, PriceTriggerIndex.trailLevel(position("l", true, 30_000, NONE, NONE, NONE), true, bp));
+        assertEquals(29_701, PriceTriggerIndex.trailLevel(position("s", false, 30_000, NONE, NONE, NONE), true, bp));
+    }
+
+    @Test
+    @DisplayName("Activation agrees with the BigDecimal rule around the boundary for varied entries and thresholds")
+    public void testActivationMatchesBigDecimal() {
+        long[] entries = { 1, 7, 333, 10_000, 12_345, 30_000, 99_999, 250_075, 1_234_567 };
+        String[] pcts = { "0.01", "0.50", "1.00", "1.005", "2.37", "5" };
+        for (String pct : pcts) {
+            BigDecimal activation = new BigDecimal(pct);
+            long bp = PriceTriggerIndex.activationBasisPoints(activation);
+            for (long entry : entries) {
+                for (boolean isLong : new boolean[] { true, false }) {
+                    long level = PriceTriggerIndex.trailLevel(
+                            position("t", isLong, entry, NONE, NONE, NONE), true, bp);
+                    for (long d = -3; d <= 3; d++) {
+                        long price = level + d;
+                        assertEquals(reference(isLong, entry, price, activation),
+                                PriceTriggerIndex.activates(isLong, entry, price, bp),
+                                "entry=" + entry + " price=" + price + " pct=" + pct + " long=" + isLong);
+                    }
+                    long step = isLong ? 1 : -1;
+                    assertTrue(reference(isLong, entry, level, activation));
+                    assertFalse(reference(isLong, entry, level - step, activation));
+                }
+            }
+        }
+    }
+
+    /**
+     * The rule the index must reproduce: favorable move / entry, 4 decimals
+     * HALF_UP, times 100, compared with the configured percentage.
+     */
+    private static boolean reference(boolean isLong, long entry, long price, BigDecimal activationPct) {
+        BigDecimal entryPrice = Paise.toBigDecimal(entry);
+        BigDecimal move = isLong
+                ? Paise.toBigDecimal(price).subtract(entryPrice)
+                : entryPrice.subtract(Paise.toBigDecimal(price));
+        BigDecimal pct = move.divide(entryPrice, 4, RoundingMode.HALF_UP).multiply(BigDecimal.valueOf(100));
+        return pct.compareTo(activationPct) >= 0;
+    }
+
+    private static void assertExit(List<PriceTriggerIndex.Fired> fired, String tradeId) {
+        assertNotNull(fired);
+        assertEquals(List.of(tradeId), exits(fired));
+    }
+
+    private static List<String> exits(List<PriceTriggerIndex.Fired> fired) {
+        assertNotNull(fired);
+        return fired.stream()
+                .filter(f -> f.kind() == PriceTriggerIndex.Kind.EXIT)
+                .map(f -> f.position().tradeId())
+                .toList();
+    }
+
+    static OpenPositionBook.OpenPosition position(String tradeId, boolean isLong, long entry, long target,
+            long floor, long ceiling) {
+        Trade trade = mock(Trade.class);
+        when(trade.tradeId()).thenReturn(tradeId);
+        when(trade.symbol()).thenReturn("SBIN");
+        return new OpenPositionBook.OpenPosition(trade, isLong, entry, target, floor, ceiling,
+                false, NONE, NONE, Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,171 @@
+package in.annupaper.bench;
+
+import in.annupaper.application.service.OpenPositionBook;
+import in.annupaper.application.service.PriceTriggerIndex;
+import in.annupaper.domain.model.Paise;
+import in.annupaper.domain.model.Trade;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exit evaluation per tick with 10k open trades across 500 symbols.
+ *
+ * Compares the previous linear scan (every open position of the symbol
+ * checked for trailing activation/ratchet, stop, target and max hold) with
+ * the PriceTriggerIndex lookup, which only touches crossed levels. Ticks are
+ * a random walk around entry; about 1% of them jump far enough to cross a
+ * stop, target or trailing activation. Scores are per tick.
+ *
+ * Run: mvn test-compile, then
+ * java -cp target/test-classes:target/classes:$(deps) in.annupaper.bench.ExitTriggerBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExitTriggerBenchmark {
+
+    private static final int SYMBOLS = 500;
+    private static final int TRADES = 10_000;
+    private static final int TICKS = 1 << 14;
+    private static final double ACTIVATION_PCT = 1.5;
+
+    private final OpenPositionBook book = new OpenPositionBook();
+    private final String[] tickSymbol = new String[TICKS];
+    private final long[] tickPrice = new long[TICKS];
+    private final long now = System.currentTimeMillis();
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom rnd = new SplittableRandom(42);
+        String[] symbols = new String[SYMBOLS];
+        long[] basePaise = new long[SYMBOLS];
+        for (int s = 0; s < SYMBOLS; s++) {
+            symbols[s] = "NSE:SYM" + s + "-EQ";
+            basePaise[s] = 10_000 + rnd.nextLong(500_000);
+        }
+
+        book.configureTrailing(true, BigDecimal.valueOf(ACTIVATION_PCT));
+        Instant entryTime = Instant.now();
+        for (int i = 0; i < TRADES; i++) {
+            int s = i % SYMBOLS;
+            boolean isLong = rnd.nextInt(4) != 0;
+            long entry = basePaise[s] + rnd.nextLong(basePaise[s] / 50) - basePaise[s] / 100;
+            long floor = entry - entry * (200 + rnd.nextInt(300)) / 10_000;
+            long ceiling = entry + entry * (200 + rnd.nextInt(300)) / 10_000;
+            long target = isLong
+                    ? entry + entry * (300 + rnd.nextInt(500)) / 10_000
+                    : entry - entry * (300 + rnd.nextInt(500)) / 10_000;
+            book.upsert(trade("T" + i, symbols[s], isLong, entry, floor, ceiling, target, entryTime));
+        }
+
+        for (int t = 0; t < TICKS; t++) {
+            int s = rnd.nextInt(SYMBOLS);
+            long base = basePaise[s];
+            long move = rnd.nextInt(100) == 0
+                    ? rnd.nextLong(base / 10) - base / 20 // ±5%
+                    : rnd.nextLong(base / 100) - base / 200; // ±0.5%
+            tickSymbol[t] = symbols[s];
+            tickPrice[t] = base + move;
+        }
+    }
+
+    @Benchmark
+    public void linearScan(Blackhole bh) {
+        int t = next();
+        long price = tickPrice[t];
+        for (OpenPositionBook.OpenPosition p : book.forSymbol(tickSymbol[t])) {
+            bh.consume(trailingFires(p, price));
+            bh.consume(exitConditionFires(p, price, now));
+        }
+    }
+
+    @Benchmark
+    public void triggerIndex(Blackhole bh) {
+        int t = next();
+        List<PriceTriggerIndex.Fired> fired = book.triggers().evaluate(tickSymbol[t], tickPrice[t], now);
+        bh.consume(fired);
+    }
+
+    private int next() {
+        int t = cursor;
+        cursor = (t + 1) & (TICKS - 1);
+        return t;
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Previous per-position checks (ExitSignalService before the index)
+    // ═══════════════════════════════════════════════════════════════
+
+    private static boolean trailingFires(OpenPositionBook.OpenPosition p, long price) {
+        long entry = p.entryPaise();
+        if (!Paise.isPresent(entry) || entry == 0) {
+            return false;
+        }
+        if (!p.trailingActive()) {
+            double favorableMovementPct = (p.isLong() ? price - entry : entry - price) * 100.0 / entry;
+            return favorableMovementPct >= ACTIVATION_PCT;
+        }
+        long highest = p.trailingHighestPaise();
+        return !Paise.isPresent(highest) || (p.isLong() ? price > highest : price < highest);
+    }
+
+    private static boolean exitConditionFires(OpenPositionBook.OpenPosition p, long price, long nowMillis) {
+        if (p.trailingActive() && Paise.isPresent(p.trailingStopPaise())
+                && (p.isLong() ? price <= p.trailingStopPaise() : price >= p.trailingStopPaise())) {
+            return true;
+        }
+        if (Paise.isPresent(p.targetPaise())
+                && (p.isLong() ? price >= p.targetPaise() : price <= p.targetPaise())) {
+            return true;
+        }
+        if (Paise.isPresent(p.floorPaise())) {
+            boolean useCeiling = !p.isLong() && Paise.isPresent(p.ceilingPaise());
+            if (useCeiling ? price >= p.ceilingPaise() : price <= p.floorPaise()) {
+                return true;
+            }
+        }
+        return nowMillis > p.maxHoldUntilMillis();
+    }
+
+    private static Trade trade(String tradeId, String symbol, boolean isLong, long entry, long floor,
+            long ceiling, long target, Instant entryTime) {
+        BigDecimal entryPrice = Paise.toBigDecimal(entry);
+        return new Trade(
+                tradeId, "bench-portfolio", "bench-user", "bench-broker", "bench-ub", null, null,
+                symbol, isLong ? "BUY" : "SELL", 1,
+                entryPrice, 1, entryPrice, entryTime, "MIS",
+                null, null, null, null, null,
+                null, null, null, null, null, null,
+                Paise.toBigDecimal(floor), Paise.toBigDecimal(ceiling),
+                null, null,
+                null, Paise.toBigDecimal(target), null, null,
+                "OPEN", entryPrice, null, null,
+                false, null, null,
+                null, null, null, null,
+                null, null, null,
+                null, null, null,
+                entryTime, entryTime, entryTime, null, 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ExitTriggerBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(opt).run();
+    }
+}
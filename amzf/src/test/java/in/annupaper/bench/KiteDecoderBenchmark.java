@@ -0,0 +1,159 @@
+package in.annupaper.bench;
+
+import in.annupaper.infrastructure.broker.adapters.KiteTickDecoder;
+import in.annupaper.infrastructure.broker.adapters.KiteTokenIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kite Ticker frame decode: previous ZerodhaDataAdapter path vs KiteTickDecoder.
+ *
+ * Frames mimic a recorded FULL-mode session (mostly 184-byte FULL packets,
+ * some 44-byte QUOTE and 32-byte index packets). The previous path copies the
+ * frame into a shared buffer, reads it relatively, skips the depth and
+ * resolves tokens through a Map&lt;Long, String&gt;. The decoder reads the
+ * frame in place, including depth, and resolves through KiteTokenIndex.
+ * Scores are per packet.
+ *
+ * Run: mvn test-compile, then
+ * java -cp target/test-classes:target/classes:$(deps) in.annupaper.bench.KiteDecoderBenchmark
+ * ("gc.alloc.rate.norm" in the output is bytes allocated per packet).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KiteDecoderBenchmark {
+
+    private static final int PACKETS = 100;
+    private static final int FRAMES = 16;
+
+    private final ByteBuffer[] frames = new ByteBuffer[FRAMES];
+    private final ByteBuffer copyBuffer = ByteBuffer.allocate(65536);
+    private final Map<Long, String> tokenToSymbol = new ConcurrentHashMap<>();
+    private KiteTokenIndex tokenIndex;
+    private final KiteTickDecoder decoder = new KiteTickDecoder();
+    private final KiteTickDecoder.Sink sink = this::consume;
+    private Blackhole bh;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Map<Long, String> symbols = new HashMap<>();
+        for (int i = 0; i < PACKETS; i++) {
+            symbols.put(token(i), "NSE:SYM" + i + "-EQ");
+        }
+        tokenToSymbol.putAll(symbols);
+        tokenIndex = new KiteTokenIndex(symbols);
+
+        for (int f = 0; f < FRAMES; f++) {
+            ByteBuffer b = ByteBuffer.allocate(2 + PACKETS * (2 + 184)).order(ByteOrder.BIG_ENDIAN);
+            b.putShort((short) PACKETS);
+            for (int i = 0; i < PACKETS; i++) {
+                int ltp = 250_000 + i * 137 + f * 5;
+                if (i % 10 == 0) {
+                    b.putShort((short) 32);
+                    b.putInt((int) token(i)).putInt(ltp).putInt(ltp + 300).putInt(ltp - 400)
+                            .putInt(ltp - 100).putInt(ltp - 50).putInt(50).putInt(1_700_000_000 + f);
+                } else if (i % 10 == 1) {
+                    b.putShort((short) 44);
+                    quote(b, token(i), ltp, f);
+                } else {
+                    b.putShort((short) 184);
+                    quote(b, token(i), ltp, f);
+                    b.putInt(1_700_000_000 + f).putInt(0).putInt(0).putInt(0).putInt(1_700_000_000 + f);
+                    for (int d = 0; d < 10; d++) {
+                        int price = d < 5 ? ltp - 5 - d * 5 : ltp + 5 + (d - 5) * 5;
+                        b.putInt(100 + d).putInt(price).putShort((short) (1 + d)).putShort((short) 0);
+                    }
+                }
+            }
+            b.flip();
+            frames[f] = b;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PACKETS)
+    public void copyAndMapLookup(Blackhole bh) {
+        ByteBuffer data = nextFrame();
+        copyBuffer.put(data);
+        copyBuffer.flip();
+        ByteBuffer buf = copyBuffer.order(ByteOrder.BIG_ENDIAN);
+        int n = buf.getShort() & 0xFFFF;
+        for (int i = 0; i < n; i++) {
+            int length = buf.getShort() & 0xFFFF;
+            int start = buf.position();
+            long token = buf.getInt() & 0xFFFFFFFFL;
+            long ltp = buf.getInt() & 0xFFFFFFFFL;
+            long volume = 0;
+            if (length == 44 || length == 184) {
+                buf.getInt();
+                buf.getInt();
+                volume = buf.getInt() & 0xFFFFFFFFL;
+            }
+            buf.position(start + length);
+
+            String symbol = tokenToSymbol.get(token);
+            bh.consume(symbol);
+            bh.consume(ltp);
+            bh.consume(volume);
+        }
+        copyBuffer.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PACKETS)
+    public void zeroCopyDecoder(Blackhole bh) {
+        this.bh = bh;
+        decoder.decode(nextFrame(), sink);
+    }
+
+    private void consume(KiteTickDecoder.Packet p) {
+        bh.consume(tokenIndex.symbolId(p.token()));
+        bh.consume(p.lastPricePaise());
+        bh.consume(p.volume());
+        bh.consume(p.exchangeTimeSec());
+        if (p.depthLevels() > 0) {
+            bh.consume(p.bidPricePaise(0));
+            bh.consume(p.askPricePaise(0));
+        }
+    }
+
+    private ByteBuffer nextFrame() {
+        ByteBuffer frame = frames[next];
+        next = (next + 1) & (FRAMES - 1);
+        return frame.duplicate();
+    }
+
+    private static long token(int i) {
+        return 100_000L + i * 7919L;
+    }
+
+    private static void quote(ByteBuffer b, long token, int ltp, int f) {
+        b.putInt((int) token).putInt(ltp).putInt(10).putInt(ltp).putInt(1_000_000 + f)
+                .putInt(500).putInt(700)
+                .putInt(ltp - 100).putInt(ltp + 300).putInt(ltp - 400).putInt(ltp - 50);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opts = new OptionsBuilder()
+                .include(KiteDecoderBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(opts).run();
+    }
+}
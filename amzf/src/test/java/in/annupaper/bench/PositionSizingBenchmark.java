@@ -0,0 +1,254 @@
+package in.annupaper.bench;
+
+import in.annupaper.domain.model.HistoricalCandle;
+import in.annupaper.domain.model.MtfGlobalConfig;
+import in.annupaper.domain.model.Paise;
+import in.annupaper.domain.model.TimeframeType;
+import in.annupaper.domain.model.Trade;
+import in.annupaper.service.candle.CandleColumns;
+import in.annupaper.service.signal.ATRCalculator;
+import in.annupaper.service.signal.LogUtilityCalculator;
+import in.annupaper.service.signal.MtfPositionSizer;
+import in.annupaper.service.signal.PortfolioRiskCalculator;
+import in.annupaper.service.signal.SizingKernels;
+import in.annupaper.service.signal.UtilityAsymmetryCalculator;
+import in.annupaper.service.signal.VelocityCalculator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one position sizing and one daily ATR.
+ *
+ * Compares the BigDecimal calculator chain MtfPositionSizer used before
+ * (utility gate, log-safe binary search, velocity, Kelly, portfolio and
+ * symbol budgets) with the SizingKernels path, on 256 random setups with
+ * 60 daily candles and 8 open trades each. Scores are per sizing / per ATR;
+ * run with the gc profiler to compare allocation per op.
+ *
+ * Run: mvn test-compile, then
+ * java -cp target/test-classes:target/classes:$(deps) in.annupaper.bench.PositionSizingBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PositionSizingBenchmark {
+
+    private static final int SETUPS = 256;
+    private static final int CANDLES = 60;
+    private static final int TRADES = 8;
+    private static final String SYMBOL = "NSE:SBIN-EQ";
+
+    private final MtfGlobalConfig config = config();
+    private final Sizing[] setups = new Sizing[SETUPS];
+    private final CandleColumns columns = new CandleColumns();
+    private int cursor;
+
+    private record Sizing(
+            BigDecimal price, BigDecimal floor, BigDecimal ceiling, BigDecimal pWin, BigDecimal pFill,
+            BigDecimal kelly, BigDecimal confluence, BigDecimal capSym, int existingQty, BigDecimal existingAvg,
+            List<Trade> trades, List<HistoricalCandle> candles, BigDecimal atr, BigDecimal value,
+            BigDecimal peak) {
+    }
+
+    @Setup
+    public void setUp() {
+        SplittableRandom rnd = new SplittableRandom(42);
+        for (int i = 0; i < SETUPS; i++) {
+            long pricePaise = 10_000 + rnd.nextLong(500_000);
+            BigDecimal price = Paise.toBigDecimal(pricePaise);
+            List<HistoricalCandle> candles = candles(rnd, pricePaise);
+            List<Trade> trades = new ArrayList<>(TRADES);
+            for (int t = 0; t < TRADES; t++) {
+                trades.add(trade(t % 3 == 0 ? SYMBOL : "NSE:SYM" + t + "-EQ",
+                        BigDecimal.valueOf(-rnd.nextInt(1_500), 5)));
+            }
+            int existingQty = rnd.nextInt(3) == 0 ? rnd.nextInt(200) : 0;
+            setups[i] = new Sizing(
+                    price,
+                    Paise.toBigDecimal(pricePaise * (90 + rnd.nextInt(9)) / 100),
+                    Paise.toBigDecimal(pricePaise * (110 + rnd.nextInt(40)) / 100),
+                    BigDecimal.valueOf(55 + rnd.nextInt(35), 2),
+                    BigDecimal.valueOf(60 + rnd.nextInt(41), 2),
+                    BigDecimal.valueOf(rnd.nextInt(300_000), 6),
+                    BigDecimal.valueOf(50 + rnd.nextInt(71), 2),
+                    BigDecimal.valueOf(100_000 + rnd.nextInt(2_000_000)),
+                    existingQty,
+                    existingQty == 0 ? BigDecimal.ZERO : Paise.toBigDecimal(pricePaise * (100 + rnd.nextInt(6)) / 100),
+                    trades,
+                    candles,
+                    ATRCalculator.calculateDailyATR(candles, 14),
+                    BigDecimal.valueOf(900_000 + rnd.nextInt(100_000)),
+                    BigDecimal.valueOf(1_000_000));
+        }
+    }
+
+    @Benchmark
+    public void sizingBigDecimal(Blackhole bh) {
+        Sizing s = next();
+        bh.consume(bigDecimalConstraints(s, config));
+    }
+
+    @Benchmark
+    public void sizingKernels(Blackhole bh) {
+        Sizing s = next();
+        bh.consume(MtfPositionSizer.calculatePositionSize(
+                s.price(), s.floor(), s.ceiling(), s.pWin(), s.pFill(), s.kelly(), s.confluence(), s.capSym(),
+                s.existingQty(), s.existingAvg(), s.trades(), SYMBOL, s.candles(), s.atr(), s.value(), s.peak(),
+                config));
+    }
+
+    @Benchmark
+    public void atrBigDecimal(Blackhole bh) {
+        bh.consume(ATRCalculator.calculateDailyATRWithFallback(next().candles(), 14, 5));
+    }
+
+    @Benchmark
+    public void atrKernels(Blackhole bh) {
+        CandleColumns cols = columns.load(next().candles());
+        bh.consume(SizingKernels.atrWithFallback(cols.high(), cols.low(), cols.close(), cols.size(), 14, 5));
+    }
+
+    private Sizing next() {
+        int i = cursor;
+        cursor = (i + 1) & (SETUPS - 1);
+        return setups[i];
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Previous constraint chain (MtfPositionSizer before the kernels)
+    // ═══════════════════════════════════════════════════════════════
+
+    private static Map<String, Integer> bigDecimalConstraints(Sizing s, MtfGlobalConfig config) {
+        Map<String, Integer> constraints = new HashMap<>();
+        BigDecimal up = BigDecimal.valueOf(Math.log(
+                s.ceiling().divide(s.price(), 6, RoundingMode.HALF_UP).doubleValue()));
+        BigDecimal down = BigDecimal.valueOf(Math.log(
+                s.floor().divide(s.price(), 6, RoundingMode.HALF_UP).doubleValue()));
+        if (!UtilityAsymmetryCalculator.passesAdvantageGate(s.pWin(), up, down, config)) {
+            constraints.put("UTILITY_GATE_FAILED", 0);
+            return constraints;
+        }
+
+        constraints.put("LOG_SAFE_POSITION", LogUtilityCalculator.calculateMaxLogSafeQty(
+                s.price(), s.floor(), config.maxPositionLogLoss(), s.existingQty(), s.existingAvg(), s.capSym()));
+
+        BigDecimal stress = PortfolioRiskCalculator.calculateStressThrottle(
+                PortfolioRiskCalculator.calculatePortfolioDrawdown(s.trades(), s.value(), s.peak()),
+                config.maxStressDrawdown());
+        BigDecimal velocity = VelocityCalculator.calculateFinalVelocity(
+                VelocityCalculator.calculateRangeATR(s.candles(), config.rangeLookbackBars(), s.atr()),
+                VelocityCalculator.calculateBodyRatio(s.candles(), s.atr(), 15),
+                stress, config);
+
+        int kellyQty = s.capSym().multiply(s.kelly().multiply(velocity)).multiply(config.kellyFraction())
+                .multiply(s.confluence()).multiply(config.maxKellyMultiplier())
+                .divide(s.price(), 0, RoundingMode.DOWN).intValue();
+        constraints.put("KELLY_SIZED", kellyQty);
+        constraints.put("FILL_WEIGHTED", new BigDecimal(kellyQty).multiply(s.pFill())
+                .setScale(0, RoundingMode.DOWN).intValue());
+        constraints.put("CAPITAL_AVAILABLE", s.capSym()
+                .subtract(s.existingAvg().multiply(new BigDecimal(s.existingQty()))).max(BigDecimal.ZERO)
+                .divide(s.price(), 0, RoundingMode.DOWN).intValue());
+
+        BigDecimal perLeg = LogUtilityCalculator.calculatePerLegLogLoss(s.price(), s.floor());
+        constraints.put("PORTFOLIO_BUDGET", PortfolioRiskCalculator.convertExposureToQty(
+                PortfolioRiskCalculator.calculatePortfolioHeadroom(
+                        PortfolioRiskCalculator.calculateCurrentPortfolioLogLoss(s.trades()),
+                        config.maxPortfolioLogLoss(), perLeg),
+                s.capSym(), s.price()));
+        constraints.put("SYMBOL_BUDGET", PortfolioRiskCalculator.convertExposureToQty(
+                PortfolioRiskCalculator.calculateSymbolHeadroom(
+                        PortfolioRiskCalculator.calculateSymbolLogLoss(s.trades(), SYMBOL),
+                        config.maxSymbolLogLoss(), perLeg),
+                s.capSym(), s.price()));
+        return constraints;
+    }
+
+    private static List<HistoricalCandle> candles(SplittableRandom rnd, long basePaise) {
+        List<HistoricalCandle> candles = new ArrayList<>(CANDLES);
+        long close = basePaise;
+        Instant start = Instant.parse("2026-07-01T00:00:00Z");
+        for (int i = 0; i < CANDLES; i++) {
+            long open = Math.max(100, close + rnd.nextLong(basePaise / 50) - basePaise / 100);
+            close = Math.max(100, open + rnd.nextLong(basePaise / 25) - basePaise / 50);
+            long high = Math.max(open, close) + rnd.nextLong(basePaise / 100 + 1);
+            long low = Math.max(1, Math.min(open, close) - rnd.nextLong(basePaise / 100 + 1));
+            candles.add(new HistoricalCandle(SYMBOL, TimeframeType.DAILY, start.plusSeconds(i * 86_400L),
+                    Paise.toBigDecimal(open), Paise.toBigDecimal(high), Paise.toBigDecimal(low),
+                    Paise.toBigDecimal(close), 1_000));
+        }
+        return candles;
+    }
+
+    private static Trade trade(String symbol, BigDecimal currentLogReturn) {
+        BigDecimal entryPrice = new BigDecimal("100.00");
+        Instant entryTime = Instant.parse("2026-09-01T04:00:00Z");
+        return new Trade(
+                "T-" + symbol, "bench-portfolio", "bench-user", "bench-broker", "bench-ub", null, null,
+                symbol, "BUY", 1,
+                entryPrice, 1, entryPrice, entryTime, "CNC",
+                null, null, null, null, null,
+                null, null, null, null, null, null,
+                null, null,
+                null, null,
+                null, null, null, null,
+                "OPEN", entryPrice, currentLogReturn, null,
+                false, null, null,
+                null, null, null, null,
+                null, null, null,
+                null, null, null,
+                entryTime, entryTime, entryTime, null, 1);
+    }
+
+    private static MtfGlobalConfig config() {
+        Instant now = Instant.parse("2026-01-01T00:00:00Z");
+        return new MtfGlobalConfig(
+                "bench",
+                175, 125, bd("0.50"),
+                75, 25, bd("0.30"),
+                375, 1, bd("0.20"),
+                bd("0.35"), bd("0.35"), bd("0.35"), bd("0.35"),
+                "TRIPLE", bd("0.80"), bd("0.65"), bd("0.50"), bd("1.20"), bd("1.00"), bd("0.75"), bd("0.50"),
+                bd("-0.08"), bd("-0.05"), bd("-0.10"),
+                bd("0.25"), bd("1.00"),
+                true, bd("0.00"),
+                bd("0.50"), bd("2.00"), bd("3.00"), true, bd("1.00"), bd("0.50"),
+                bd("2.00"),
+                bd("8.0"), bd("5.0"), bd("3.0"),
+                bd("1.00"), bd("0.75"), bd("0.50"), bd("0.25"),
+                bd("0.25"), bd("0.15"), bd("0.70"), bd("0.50"),
+                50,
+                true, bd("-0.05"),
+                bd("0.60"), bd("1.40"), bd("1.00"), bd("3.0"), true,
+                now, now);
+    }
+
+    private static BigDecimal bd(String value) {
+        return new BigDecimal(value);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(PositionSizingBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(opt).run();
+    }
+}
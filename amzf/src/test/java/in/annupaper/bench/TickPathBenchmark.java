@@ -0,0 +1,187 @@
+package in.annupaper.bench;
+
+import in.annupaper.domain.model.Paise;
+import in.annupaper.domain.model.Tick;
+import in.annupaper.service.MarketDataCache;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tick hot path: binary decode → Tick → partial candle → MarketDataCache.
+ *
+ * Compares the previous BigDecimal path (divide by 100 per field, BigDecimal
+ * max/min on the partial candle) with the long-paise path. Scores are per tick.
+ *
+ * Run: mvn test-compile, then
+ * java -cp target/test-classes:target/classes:$(deps) in.annupaper.bench.TickPathBenchmark
+ * ("gc.alloc.rate.norm" in the output is bytes allocated per tick).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TickPathBenchmark {
+
+    private static final int PACKETS = 50;
+    private static final int QUOTE_PACKET_LENGTH = 44;
+    private static final String[] SYMBOLS = new String[PACKETS];
+
+    private ByteBuffer frame;
+    private MarketDataCache cache;
+    private final ConcurrentHashMap<String, LegacyTickData> legacyCache = new ConcurrentHashMap<>();
+    private final LegacyPartial[] legacyPartials = new LegacyPartial[PACKETS];
+    private final PaisePartial[] paisePartials = new PaisePartial[PACKETS];
+    private final Instant ts = Instant.now();
+
+    @Setup
+    public void setUp() {
+        frame = ByteBuffer.allocate(2 + PACKETS * (2 + QUOTE_PACKET_LENGTH)).order(ByteOrder.BIG_ENDIAN);
+        frame.putShort((short) PACKETS);
+        for (int i = 0; i < PACKETS; i++) {
+            SYMBOLS[i] = "NSE:SYM" + i + "-EQ";
+            int ltp = 250_000 + i * 137;
+            frame.putShort((short) QUOTE_PACKET_LENGTH);
+            frame.putInt(100_000 + i); // token
+            frame.putInt(ltp);
+            frame.putInt(10); // last qty
+            frame.putInt(ltp); // avg price
+            frame.putInt(1_000_000 + i); // volume
+            frame.putInt(500); // buy qty
+            frame.putInt(700); // sell qty
+            frame.putInt(ltp - 100); // open
+            frame.putInt(ltp + 300); // high
+            frame.putInt(ltp - 400); // low
+            frame.putInt(ltp - 50); // close
+        }
+        frame.flip();
+
+        cache = new MarketDataCache();
+        BigDecimal seed = new BigDecimal("2500.00");
+        for (int i = 0; i < PACKETS; i++) {
+            legacyPartials[i] = new LegacyPartial(seed);
+            paisePartials[i] = new PaisePartial(Paise.of(seed));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PACKETS)
+    public void bigDecimalPath(Blackhole bh) {
+        ByteBuffer buf = frame.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int n = buf.getShort() & 0xFFFF;
+        for (int i = 0; i < n; i++) {
+            buf.getShort();
+            buf.getInt();
+            BigDecimal ltp = BigDecimal.valueOf(buf.getInt() & 0xFFFFFFFFL)
+                    .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+            buf.getInt();
+            buf.getInt();
+            long volume = buf.getInt() & 0xFFFFFFFFL;
+            buf.getInt();
+            buf.getInt();
+            BigDecimal open = BigDecimal.valueOf(buf.getInt() & 0xFFFFFFFFL)
+                    .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+            BigDecimal high = BigDecimal.valueOf(buf.getInt() & 0xFFFFFFFFL)
+                    .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+            BigDecimal low = BigDecimal.valueOf(buf.getInt() & 0xFFFFFFFFL)
+                    .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+            BigDecimal close = BigDecimal.valueOf(buf.getInt() & 0xFFFFFFFFL)
+                    .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+
+            LegacyPartial p = legacyPartials[i];
+            p.high = p.high.max(ltp);
+            p.low = p.low.min(ltp);
+            p.close = ltp;
+            p.volume += volume;
+
+            legacyCache.put(SYMBOLS[i], new LegacyTickData(ltp, ts));
+            bh.consume(open);
+            bh.consume(high);
+            bh.consume(low);
+            bh.consume(close);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PACKETS)
+    public void paisePath(Blackhole bh) {
+        ByteBuffer buf = frame.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int n = buf.getShort() & 0xFFFF;
+        for (int i = 0; i < n; i++) {
+            buf.getShort();
+            buf.getInt();
+            long ltp = buf.getInt() & 0xFFFFFFFFL;
+            buf.getInt();
+            buf.getInt();
+            long volume = buf.getInt() & 0xFFFFFFFFL;
+            buf.getInt();
+            buf.getInt();
+            long open = buf.getInt() & 0xFFFFFFFFL;
+            long high = buf.getInt() & 0xFFFFFFFFL;
+            long low = buf.getInt() & 0xFFFFFFFFL;
+            long close = buf.getInt() & 0xFFFFFFFFL;
+
+            Tick tick = new Tick(SYMBOLS[i], ltp, open, high, low, close, volume, ltp, ltp, 0, 0, ts, "ZERODHA");
+
+            PaisePartial p = paisePartials[i];
+            p.high = Math.max(p.high, tick.lastPricePaise());
+            p.low = Math.min(p.low, tick.lastPricePaise());
+            p.close = tick.lastPricePaise();
+            p.volume += tick.volume();
+
+            cache.updateTick(tick.symbol(), tick.lastPricePaise(), tick.timestamp());
+            bh.consume(tick);
+        }
+    }
+
+    /** Previous MarketDataCache entry: one record per tick. */
+    private record LegacyTickData(BigDecimal lastPrice, Instant timestamp) {
+    }
+
+    private static final class LegacyPartial {
+        BigDecimal high;
+        BigDecimal low;
+        BigDecimal close;
+        long volume;
+
+        LegacyPartial(BigDecimal seed) {
+            this.high = seed;
+            this.low = seed;
+            this.close = seed;
+        }
+    }
+
+    private static final class PaisePartial {
+        long high;
+        long low;
+        long close;
+        long volume;
+
+        PaisePartial(long seed) {
+            this.high = seed;
+            this.low = seed;
+            this.close = seed;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opts = new OptionsBuilder()
+                .include(TickPathBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(opts).run();
+    }
+}
@@ -0,0 +1,130 @@
+package in.annupaper.feedrelay;
+
+import in.annupaper.domain.model.Paise;
+import in.annupaper.domain.model.Tick;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for RelayBinaryProtocol: delta round trip, snapshot join, malformed
+ * frames and the symbol id bound.
+ */
+@DisplayName("Relay Binary Protocol Tests")
+public class RelayBinaryProtocolTest {
+
+    @Test
+    @DisplayName("Delta frames round-trip every tick exactly")
+    public void testDeltaRoundTrip() {
+        RelayBinaryProtocol.Encoder encoder = new RelayBinaryProtocol.Encoder();
+        RelayBinaryProtocol.Decoder decoder = new RelayBinaryProtocol.Decoder("RELAY");
+        Random rnd = new Random(42);
+        List<Tick> sent = new ArrayList<>();
+        List<Tick> received = new ArrayList<>();
+
+        for (int f = 0; f < 20; f++) {
+            List<Tick> batch = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                batch.add(tick("NSE:S" + rnd.nextInt(15) + "-EQ", 250_000 + rnd.nextInt(500), f * 100 + i));
+            }
+            sent.addAll(batch);
+            assertEquals(batch.size(), decoder.decode(encoder.encodeDelta(batch), received::add));
+        }
+
+        assertEquals(sent, received);
+    }
+
+    @Test
+    @DisplayName("Joining client decodes deltas after a snapshot")
+    public void testSnapshotJoin() {
+        RelayBinaryProtocol.Encoder encoder = new RelayBinaryProtocol.Encoder();
+        encoder.encodeDelta(List.of(tick("A", 100, 1), tick("B", 200, 2)));
+
+        RelayBinaryProtocol.Decoder joiner = new RelayBinaryProtocol.Decoder("RELAY");
+        List<Tick> received = new ArrayList<>();
+        assertEquals(2, joiner.decode(encoder.encodeSnapshot(), received::add));
+        assertEquals(List.of(tick("A", 100, 1), tick("B", 200, 2)), received);
+
+        received.clear();
+        joiner.decode(encoder.encodeDelta(List.of(tick("B", 205, 3), tick("C", 300, 4))), received::add);
+        assertEquals(List.of(tick("B", 205, 3), tick("C", 300, 4)), received);
+    }
+
+    @Test
+    @DisplayName("Unchanged fields are not re-sent")
+    public void testDeltaIsCompact() {
+        RelayBinaryProtocol.Encoder encoder = new RelayBinaryProtocol.Encoder();
+        Tick t = tick("NSE:RELIANCE-EQ", 250_050, 1);
+        int first = encoder.encodeDelta(List.of(t)).remaining();
+        int repeat = encoder.encodeDelta(List.of(t)).remaining();
+
+        // version, kind, dict count, tick count, id, empty mask
+        assertEquals(6, repeat);
+        assertTrue(first > repeat);
+    }
+
+    @Test
+    @DisplayName("Malformed frames are rejected, not mis-decoded")
+    public void testMalformed() {
+        RelayBinaryProtocol.Decoder decoder = new RelayBinaryProtocol.Decoder("RELAY");
+        assertThrows(IllegalArgumentException.class,
+                () -> decoder.decode(ByteBuffer.wrap(new byte[] { 9, 1, 0, 0 }), t -> fail()));
+        assertThrows(IllegalArgumentException.class,
+                () -> decoder.decode(ByteBuffer.wrap(new byte[] { 1, 1, 0, 1, 7, 0 }), t -> fail()));
+
+        RelayBinaryProtocol.Encoder encoder = new RelayBinaryProtocol.Encoder();
+        ByteBuffer frame = encoder.encodeDelta(List.of(tick("A", 100, 1)));
+        frame.limit(frame.limit() - 1);
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(frame, t -> {
+        }));
+    }
+
+    @Test
+    @DisplayName("Dictionary ids past the bound are rejected before any table grows")
+    public void testSymbolIdBound() {
+        RelayBinaryProtocol.Decoder decoder = new RelayBinaryProtocol.Decoder("RELAY");
+        List<Tick> received = new ArrayList<>();
+
+        // version, DELTA, 1 dict entry: id, len 1, "A"; 1 tick: id, empty mask
+        assertEquals(1, decoder.decode(frame(5_000, 5_000), received::add));
+        assertEquals("A", received.get(0).symbol());
+
+        int tooLarge = RelayBinaryProtocol.MAX_SYMBOL_ID;
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(frame(tooLarge, 0), t -> fail()));
+        assertThrows(IllegalArgumentException.class,
+                () -> decoder.decode(frame(Integer.MAX_VALUE - 1, 0), t -> fail()));
+    }
+
+    private static ByteBuffer frame(int dictId, int tickId) {
+        ByteBuffer b = ByteBuffer.allocate(32);
+        b.put(RelayBinaryProtocol.VERSION).put(RelayBinaryProtocol.KIND_DELTA);
+        putVarint(b, 1);
+        putVarint(b, dictId);
+        putVarint(b, 1);
+        b.put((byte) 'A');
+        putVarint(b, 1);
+        putVarint(b, tickId);
+        putVarint(b, 0);
+        return b.flip();
+    }
+
+    private static void putVarint(ByteBuffer b, long v) {
+        while ((v & ~0x7FL) != 0) {
+            b.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        b.put((byte) v);
+    }
+
+    private static Tick tick(String symbol, long ltp, long tsOffset) {
+        return new Tick(symbol, ltp, ltp - 10, ltp + 50, Paise.NONE, ltp - 5, 1_000 + tsOffset, ltp - 5, ltp + 5,
+                10, 20, Instant.ofEpochMilli(1_700_000_000_000L + tsOffset), "RELAY");
+    }
+}
@@ -0,0 +1,68 @@
+package in.annupaper.feedrelay;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for RelayClient subscription state (what the relay flusher groups
+ * clients by).
+ */
+@DisplayName("Relay Client Tests")
+public class RelayClientTest {
+
+    @Test
+    @DisplayName("New client receives all symbols, every tick")
+    public void testDefaultsToAll() {
+        RelayClient client = new RelayClient(null, true);
+        assertTrue(client.isDirty());
+
+        RelayClient.FeedKey key = client.takeKey();
+        assertEquals(new RelayClient.FeedKey(true, null, 0), key);
+        assertFalse(client.isDirty());
+        assertEquals(-1, client.symbolCount());
+    }
+
+    @Test
+    @DisplayName("Subscribe and unsubscribe narrow the symbol set")
+    public void testSubscribeUnsubscribe() {
+        RelayClient client = new RelayClient(null, false);
+        assertFalse(client.unsubscribe(List.of("A")));
+
+        client.subscribe(List.of("A", "B", "C"));
+        assertTrue(client.unsubscribe(List.of("B")));
+        assertEquals(Set.of("A", "C"), client.takeKey().symbols());
+
+        client.subscribeAll();
+        assertTrue(client.isDirty());
+        assertNull(client.takeKey().symbols());
+    }
+
+    @Test
+    @DisplayName("Clients with the same request share a feed key")
+    public void testEqualKeys() {
+        RelayClient a = new RelayClient(null, false);
+        RelayClient b = new RelayClient(null, false);
+        a.subscribe(List.of("X", "Y"));
+        b.subscribe(List.of("Y"));
+        b.subscribe(List.of("X"));
+        a.setConflateMs(250);
+        b.setConflateMs(250);
+
+        assertEquals(a.takeKey(), b.takeKey());
+    }
+
+    @Test
+    @DisplayName("Conflation interval is clamped")
+    public void testConflateClamp() {
+        RelayClient client = new RelayClient(null, false);
+        client.setConflateMs(-5);
+        assertEquals(0, client.conflateMs());
+        client.setConflateMs(10 * RelayClient.MAX_CONFLATE_MS);
+        assertEquals(RelayClient.MAX_CONFLATE_MS, client.conflateMs());
+    }
+}
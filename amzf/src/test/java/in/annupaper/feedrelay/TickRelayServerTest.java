@@ -0,0 +1,295 @@
+package in.annupaper.feedrelay;
+
+import in.annupaper.domain.model.Paise;
+import in.annupaper.domain.model.Tick;
+import io.prometheus.client.CollectorRegistry;
+import io.undertow.websockets.core.WebSocketCallback;
+import io.undertow.websockets.core.WebSocketChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for TickRelayServer routing, conflation, queue limits and SNAPSHOT
+ * resync, driven through flush() with a recording sender in place of
+ * Undertow.
+ */
+@DisplayName("Tick Relay Server Tests")
+public class TickRelayServerTest {
+
+    private static final long NO_STALL_MS = 60_000;
+
+    private CollectorRegistry registry;
+    private RecordingSender sender;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new CollectorRegistry();
+        sender = new RecordingSender();
+    }
+
+    @Test
+    @DisplayName("Ticks are routed to the clients subscribed to their symbol; equal requests share one encode")
+    public void testRouting() {
+        TickRelayServer relay = relay(1 << 20, NO_STALL_MS);
+        WebSocketChannel all1 = channel();
+        WebSocketChannel all2 = channel();
+        WebSocketChannel sbin = channel();
+        WebSocketChannel json = channel();
+        relay.connect(all1, true);
+        relay.connect(all2, true);
+        RelayClient sbinClient = relay.connect(sbin, true);
+        RelayClient jsonClient = relay.connect(json, false);
+        relay.handleClientMessage(sbinClient, "{\"action\":\"subscribe\",\"symbols\":[\"SBIN\"]}");
+        relay.handleClientMessage(jsonClient, "{\"action\":\"subscribe\",\"symbols\":[\"INFY\"]}");
+        relay.flush();
+        assertEquals(3.0, metric("relay_feeds"));
+
+        Tick sbin1 = tick("SBIN", 100, 1);
+        Tick infy1 = tick("INFY", 200, 2);
+        Tick tcs1 = tick("TCS", 300, 3);
+        relay.broadcast(sbin1);
+        relay.broadcast(infy1);
+        relay.broadcast(tcs1);
+        relay.flush();
+
+        assertEquals(List.of(sbin1, infy1, tcs1), sender.decode(all1));
+        assertEquals(List.of(sbin1, infy1, tcs1), sender.decode(all2));
+        assertEquals(List.of(sbin1), sender.decode(sbin));
+        assertEquals(2, sender.texts(json).size(), "ack, then INFY only");
+        assertEquals(TickJsonMapper.toJson(infy1), sender.texts(json).get(1));
+        assertEquals(2.0, metric("relay_binary_frames_encoded_total"), "one delta per feed, not per client");
+        assertEquals(3.0, metric("relay_clients", "protocol", "binary"));
+        assertEquals(1.0, metric("relay_clients", "protocol", "json"));
+        assertEquals(3.0, metric("relay_symbols"));
+    }
+
+    @Test
+    @DisplayName("A conflating client gets the latest tick per symbol at most once per interval")
+    public void testConflation() throws InterruptedException {
+        TickRelayServer relay = relay(1 << 20, NO_STALL_MS);
+        WebSocketChannel ch = channel();
+        RelayClient client = relay.connect(ch, true);
+        client.setConflateMs(200);
+
+        Tick a1 = tick("A", 100, 1);
+        Tick a2 = tick("A", 101, 2);
+        Tick b1 = tick("B", 200, 3);
+        relay.broadcast(a1);
+        relay.broadcast(a2);
+        relay.broadcast(b1);
+        relay.flush();
+        assertEquals(List.of(a2, b1), sender.decode(ch), "joining SNAPSHOT carries the latest per symbol");
+
+        Tick a3 = tick("A", 102, 4);
+        Tick a4 = tick("A", 103, 5);
+        relay.broadcast(a3);
+        relay.broadcast(a4);
+        relay.flush();
+        assertEquals(List.of(a2, b1), sender.decode(ch), "not due yet");
+
+        Thread.sleep(250);
+        relay.flush();
+        assertEquals(List.of(a2, b1, a4), sender.decode(ch));
+    }
+
+    @Test
+    @DisplayName("A JSON client over its queue limit loses ticks until its sends complete")
+    public void testJsonQueueLimit() {
+        TickRelayServer relay = relay(1, NO_STALL_MS);
+        WebSocketChannel ch = channel();
+        relay.connect(ch, false);
+
+        relay.broadcast(tick("A", 100, 1));
+        relay.broadcast(tick("B", 200, 2));
+        relay.flush();
+        assertEquals(2, sender.texts(ch).size());
+        assertTrue(metric("relay_queued_bytes") > 0);
+
+        relay.broadcast(tick("A", 101, 3));
+        relay.flush();
+        assertEquals(2, sender.texts(ch).size(), "over the limit: nothing queued");
+        assertEquals(1.0, metric("relay_client_ticks_dropped_total"));
+
+        sender.completeAll();
+        assertEquals(0.0, metric("relay_queued_bytes"));
+        assertEquals(2.0, metric("relay_frames_sent_total"));
+        Tick a = tick("A", 102, 4);
+        relay.broadcast(a);
+        relay.flush();
+        assertEquals(TickJsonMapper.toJson(a), sender.texts(ch).get(2));
+        assertEquals(0.0, metric("relay_slow_disconnects_total"));
+    }
+
+    @Test
+    @DisplayName("A client stuck over its queue limit past the stall timeout is closed")
+    public void testSlowClientClosed() {
+        TickRelayServer relay = relay(1, 0);
+        WebSocketChannel ch = channel();
+        relay.connect(ch, false);
+
+        relay.broadcast(tick("A", 100, 1));
+        relay.flush();
+        relay.broadcast(tick("A", 101, 2));
+        relay.flush(); // over the limit from now
+        assertTrue(sender.closes.isEmpty());
+
+        busyWait();
+        relay.broadcast(tick("A", 102, 3));
+        relay.flush();
+        assertEquals(List.of("1013 slow consumer"), sender.closes);
+        assertEquals(1.0, metric("relay_slow_disconnects_total"));
+        assertEquals(0.0, metric("relay_clients", "protocol", "json"));
+    }
+
+    @Test
+    @DisplayName("A binary client that skipped frames is resynced with one SNAPSHOT of the current state")
+    public void testSnapshotResync() {
+        TickRelayServer relay = relay(1, NO_STALL_MS);
+        WebSocketChannel ch = channel();
+        relay.connect(ch, true);
+
+        relay.broadcast(tick("A", 100, 1));
+        relay.broadcast(tick("B", 200, 2));
+        relay.flush();
+        assertEquals(1, sender.binaryCount(ch), "joining SNAPSHOT");
+
+        // Over the limit: frames skipped, one resync however many are missed
+        relay.broadcast(tick("A", 101, 3));
+        relay.flush();
+        relay.broadcast(tick("C", 300, 4));
+        relay.flush();
+        assertEquals(1, sender.binaryCount(ch));
+        assertEquals(1.0, metric("relay_binary_resyncs_total"));
+
+        sender.completeAll();
+        Tick b = tick("B", 201, 5);
+        relay.broadcast(b);
+        relay.flush();
+        assertEquals(2, sender.binaryCount(ch));
+
+        Map<String, Tick> state = new HashMap<>();
+        for (Tick t : sender.decode(ch)) {
+            state.put(t.symbol(), t);
+        }
+        assertEquals(Map.of("A", tick("A", 101, 3), "B", b, "C", tick("C", 300, 4)), state);
+        assertEquals(1.0, metric("relay_binary_resyncs_total"));
+
+        // Back under the limit: plain deltas again
+        sender.completeAll();
+        relay.broadcast(tick("A", 102, 6));
+        relay.flush();
+        assertEquals(List.of(tick("A", 102, 6)), lastFrame(ch));
+    }
+
+    private TickRelayServer relay(long maxQueuedBytes, long stallMs) {
+        return new TickRelayServer(registry, sender, maxQueuedBytes, stallMs);
+    }
+
+    private List<Tick> lastFrame(WebSocketChannel ch) {
+        List<Tick> all = sender.decode(ch);
+        List<ByteBuffer> frames = sender.binaries(ch);
+        RelayBinaryProtocol.Decoder decoder = new RelayBinaryProtocol.Decoder("RELAY");
+        int before = 0;
+        for (int i = 0; i < frames.size() - 1; i++) {
+            before += decoder.decode(frames.get(i).duplicate(), t -> {
+            });
+        }
+        return all.subList(before, all.size());
+    }
+
+    private double metric(String name) {
+        Double v = registry.getSampleValue(name);
+        assertNotNull(v, name);
+        return v;
+    }
+
+    private double metric(String name, String label, String value) {
+        Double v = registry.getSampleValue(name, new String[] { label }, new String[] { value });
+        assertNotNull(v, name);
+        return v;
+    }
+
+    private static void busyWait() {
+        long start = System.nanoTime();
+        while (System.nanoTime() == start) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static WebSocketChannel channel() {
+        WebSocketChannel ch = mock(WebSocketChannel.class);
+        when(ch.isOpen()).thenReturn(true);
+        return ch;
+    }
+
+    private static Tick tick(String symbol, long ltp, long tsOffset) {
+        return new Tick(symbol, ltp, ltp - 10, ltp + 50, Paise.NONE, ltp - 5, 1_000 + tsOffset, ltp - 5, ltp + 5,
+                10, 20, Instant.ofEpochMilli(1_700_000_000_000L + tsOffset), "RELAY");
+    }
+
+    record Frame(WebSocketChannel channel, ByteBuffer binary, String text, WebSocketCallback<Void> callback) {
+    }
+
+    static final class RecordingSender implements RelayClient.Sender {
+        final List<Frame> frames = new ArrayList<>();
+        final List<String> closes = new ArrayList<>();
+        private int completed;
+
+        @Override
+        public void sendBinary(ByteBuffer frame, WebSocketChannel channel, WebSocketCallback<Void> callback) {
+            frames.add(new Frame(channel, frame, null, callback));
+        }
+
+        @Override
+        public void sendText(String text, WebSocketChannel channel, WebSocketCallback<Void> callback) {
+            frames.add(new Frame(channel, null, text, callback));
+        }
+
+        @Override
+        public void sendClose(int code, String reason, WebSocketChannel channel) {
+            closes.add(code + " " + reason);
+        }
+
+        List<ByteBuffer> binaries(WebSocketChannel channel) {
+            return frames.stream().filter(f -> f.channel() == channel && f.binary() != null)
+                    .map(Frame::binary).toList();
+        }
+
+        int binaryCount(WebSocketChannel channel) {
+            return binaries(channel).size();
+        }
+
+        List<String> texts(WebSocketChannel channel) {
+            return frames.stream().filter(f -> f.channel() == channel && f.text() != null)
+                    .map(Frame::text).toList();
+        }
+
+        /** Every tick the channel has received, decoded in order by one client-side decoder. */
+        List<Tick> decode(WebSocketChannel channel) {
+            RelayBinaryProtocol.Decoder decoder = new RelayBinaryProtocol.Decoder("RELAY");
+            List<Tick> ticks = new ArrayList<>();
+            for (ByteBuffer frame : binaries(channel)) {
+                decoder.decode(frame.duplicate(), ticks::add);
+            }
+            return ticks;
+        }
+
+        void completeAll() {
+            for (; completed < frames.size(); completed++) {
+                Frame f = frames.get(completed);
+                f.callback().complete(f.channel(), null);
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package in.annupaper.infrastructure.broker.adapters;
+
+import io.prometheus.client.CollectorRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for KiteTickDecoder: field layout of each packet type, robustness
+ * against malformed frames, and the shared registry counters.
+ */
+@DisplayName("Kite Tick Decoder Tests")
+public class KiteTickDecoderFuzzTest {
+
+    @Test
+    @DisplayName("FULL packet decodes quote, timestamps and depth")
+    public void testFullPacket() {
+        ByteBuffer frame = frame(full(738561, 250_050, 1_700_000_000));
+        KiteTickDecoder decoder = new KiteTickDecoder();
+        int[] seen = { 0 };
+
+        int n = decoder.decode(frame, p -> {
+            seen[0]++;
+            assertEquals(KiteTickDecoder.MODE_FULL, p.mode());
+            assertFalse(p.isIndex());
+            assertEquals(738561, p.token());
+            assertEquals(250_050, p.lastPricePaise());
+            assertEquals(1_000_000, p.volume());
+            assertEquals(249_000, p.openPaise());
+            assertEquals(251_000, p.highPaise());
+            assertEquals(248_000, p.lowPaise());
+            assertEquals(249_500, p.closePaise());
+            assertEquals(1_700_000_000L, p.exchangeTimeSec());
+            assertEquals(5, p.depthLevels());
+            assertEquals(250_000, p.bidPricePaise(0));
+            assertEquals(250_100, p.askPricePaise(0));
+            assertEquals(100, p.bidQty(0));
+            assertEquals(3, p.askOrders(4));
+        });
+
+        assertEquals(1, n);
+        assertEquals(1, seen[0]);
+        assertEquals(0, frame.position(), "decoder must not move the buffer position");
+    }
+
+    @Test
+    @DisplayName("LTP, QUOTE and index packets in one frame")
+    public void testMixedFrame() {
+        ByteBuffer frame = frame(ltp(1, 100), quote(2, 200), index(256265, 1_950_000, true));
+        KiteTickDecoder decoder = new KiteTickDecoder();
+        long[] tokens = new long[3];
+        int[] i = { 0 };
+
+        decoder.decode(frame, p -> {
+            tokens[i[0]++] = p.token();
+            if (p.token() == 1) {
+                assertEquals(KiteTickDecoder.MODE_LTP, p.mode());
+                assertEquals(0, p.volume());
+                assertEquals(-1, p.exchangeTimeSec());
+            } else if (p.token() == 2) {
+                assertEquals(KiteTickDecoder.MODE_QUOTE, p.mode());
+                assertEquals(0, p.depthLevels());
+                assertEquals(-1, p.exchangeTimeSec());
+            } else {
+                assertTrue(p.isIndex());
+                assertEquals(1_950_000, p.lastPricePaise());
+                assertEquals(1_700_000_000L, p.exchangeTimeSec());
+            }
+        });
+
+        assertArrayEquals(new long[] { 1, 2, 256265 }, tokens);
+    }
+
+    @Test
+    @DisplayName("Heartbeat and unknown packets are counted, not delivered")
+    public void testHeartbeatAndUnknown() {
+        KiteTickDecoder decoder = new KiteTickDecoder();
+        assertEquals(0, decoder.decode(ByteBuffer.wrap(new byte[] { 0 }), p -> fail("heartbeat")));
+
+        ByteBuffer frame = frame(new byte[13], ltp(7, 700));
+        int[] seen = { 0 };
+        assertEquals(1, decoder.decode(frame, p -> seen[0]++));
+        assertEquals(1, seen[0]);
+
+        Map<String, Long> metrics = decoder.getMetrics();
+        assertEquals(1L, metrics.get("heartbeats"));
+        assertEquals(1L, metrics.get("unknownPackets"));
+    }
+
+    @Test
+    @DisplayName("Decoders sharing Metrics add their counts to the registry")
+    public void testRegistryCounters() {
+        CollectorRegistry registry = new CollectorRegistry();
+        KiteTickDecoder.Metrics metrics = new KiteTickDecoder.Metrics(registry);
+        KiteTickDecoder first = new KiteTickDecoder(metrics);
+        KiteTickDecoder second = new KiteTickDecoder(metrics);
+
+        first.decode(frame(new byte[13], ltp(7, 700)), p -> { });
+        byte[] truncated = frame(quote(2, 200)).array();
+        second.decode(ByteBuffer.wrap(truncated, 0, truncated.length - 1), p -> fail("truncated"));
+        second.decode(frame(ltp(1, 100), ltp(2, 200)), p -> { });
+
+        assertEquals(3.0, registry.getSampleValue("kite_decoder_frames_total"));
+        assertEquals(3.0, registry.getSampleValue("kite_decoder_packets_total"));
+        assertEquals(1.0, registry.getSampleValue("kite_decoder_unknown_packets_total"));
+        assertEquals(1.0, registry.getSampleValue("kite_decoder_truncated_frames_total"));
+        assertEquals(1L, second.getMetrics().get("truncatedFrames"), "per-connection counts stay separate");
+        assertEquals(0L, first.getMetrics().get("truncatedFrames"));
+    }
+
+    @Test
+    @DisplayName("Truncated and random frames never throw")
+    public void testFuzz() {
+        SplittableRandom rnd = new SplittableRandom(20240612);
+        KiteTickDecoder decoder = new KiteTickDecoder();
+        byte[] valid = frame(full(1, 100, 1), quote(2, 200), ltp(3, 300), index(4, 400, false)).array();
+
+        for (int iter = 0; iter < 20_000; iter++) {
+            byte[] data;
+            switch (iter % 3) {
+                case 0 -> {
+                    // Truncated valid frame
+                    data = java.util.Arrays.copyOf(valid, rnd.nextInt(valid.length + 1));
+                }
+                case 1 -> {
+                    // Valid frame with random byte flips (lengths and counts included)
+                    data = valid.clone();
+                    for (int k = rnd.nextInt(1, 8); k > 0; k--) {
+                        data[rnd.nextInt(data.length)] = (byte) rnd.nextInt(256);
+                    }
+                }
+                default -> {
+                    data = new byte[rnd.nextInt(0, 512)];
+                    for (int k = 0; k < data.length; k++) {
+                        data[k] = (byte) rnd.nextInt(256);
+                    }
+                }
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            int declared = data.length >= 2 ? ((data[0] & 0xFF) << 8 | (data[1] & 0xFF)) : 0;
+            int[] seen = { 0 };
+            int n = assertDoesNotThrow(() -> decoder.decode(buffer, p -> {
+                seen[0]++;
+                assertTrue(p.token() >= 0 && p.lastPricePaise() >= 0);
+            }));
+
+            assertEquals(seen[0], n);
+            assertTrue(n <= declared);
+            assertEquals(0, buffer.position());
+            assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.order(), "caller's byte order is restored");
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Frame builders
+    // ═══════════════════════════════════════════════════════════════
+
+    private static ByteBuffer frame(byte[]... packets) {
+        int size = 2;
+        for (byte[] p : packets) {
+            size += 2 + p.length;
+        }
+        ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+        b.putShort((short) packets.length);
+        for (byte[] p : packets) {
+            b.putShort((short) p.length);
+            b.put(p);
+        }
+        b.flip();
+        return b;
+    }
+
+    private static byte[] ltp(int token, int price) {
+        return ByteBuffer.allocate(8).putInt(token).putInt(price).array();
+    }
+
+    private static byte[] quote(int token, int price) {
+        return quoteFields(ByteBuffer.allocate(44), token, price).array();
+    }
+
+    private static byte[] full(int token, int price, int exchangeTs) {
+        ByteBuffer b = quoteFields(ByteBuffer.allocate(184), token, price);
+        b.putInt(exchangeTs - 1); // last trade time
+        b.putInt(0).putInt(0).putInt(0); // OI, OI high, OI low
+        b.putInt(exchangeTs);
+        for (int i = 0; i < 5; i++) {
+            b.putInt(100 + i).putInt(price - 50 - i * 5).putShort((short) 2).putShort((short) 0);
+        }
+        for (int i = 0; i < 5; i++) {
+            b.putInt(200 + i).putInt(price + 50 + i * 5).putShort((short) 3).putShort((short) 0);
+        }
+        return b.array();
+    }
+
+    private static byte[] index(int token, int price, boolean full) {
+        ByteBuffer b = ByteBuffer.allocate(full ? 32 : 28);
+        b.putInt(token).putInt(price).putInt(price + 10).putInt(price - 10).putInt(price - 5).putInt(price - 2)
+                .putInt(2);
+        if (full) {
+            b.putInt(1_700_000_000);
+        }
+        return b.array();
+    }
+
+    private static ByteBuffer quoteFields(ByteBuffer b, int token, int price) {
+        return b.putInt(token).putInt(price).putInt(10).putInt(price).putInt(1_000_000)
+                .putInt(500).putInt(700)
+                .putInt(249_000).putInt(251_000).putInt(248_000).putInt(249_500);
+    }
+}
@@ -0,0 +1,71 @@
+package in.annupaper.infrastructure.broker.adapters;
+
+import in.annupaper.domain.model.BrokerAdapter;
+import in.annupaper.domain.model.Tick;
+import in.annupaper.feedrelay.TickJsonMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for RelayWebSocketAdapter's JSON text frames: ticks reach the
+ * symbol's listeners with their exchange time, and relay replies (ack,
+ * error, unknown types) are never parsed as ticks.
+ */
+@DisplayName("Relay WebSocket Adapter Tests")
+public class RelayWebSocketAdapterTest {
+
+    private RelayWebSocketAdapter adapter;
+    private final List<Tick> received = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        adapter = new RelayWebSocketAdapter("ub-relay", "ws://localhost:1/ticks");
+        adapter.subscribeTicks(List.of("NSE:SBIN-EQ"), new BrokerAdapter.TickListener() {
+            @Override
+            public void onTick(Tick tick) {
+                received.add(tick);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("A relay JSON tick is dispatched with its exchange timestamp")
+    public void testTick() {
+        Instant at = Instant.parse("2024-01-02T04:00:00Z");
+        BigDecimal price = new BigDecimal("612.35");
+        adapter.handleTickMessage(TickJsonMapper.toJson(new Tick("NSE:SBIN-EQ", price, price, price, price, price,
+                1_000, null, null, 0, 0, at, "ZERODHA")));
+        adapter.handleTickMessage("{\"symbol\":\"NSE:SBIN-EQ\",\"lastPrice\":\"612.40\",\"timestamp\":1704168060000}");
+        adapter.handleTickMessage("{\"symbol\":\"NSE:INFY-EQ\",\"lastPrice\":\"1500.00\"}");
+
+        assertEquals(2, received.size());
+        assertEquals(price, received.get(0).lastPrice());
+        assertEquals(at, received.get(0).timestamp());
+        assertEquals("RELAY", received.get(0).brokerCode());
+        assertEquals(Instant.ofEpochMilli(1_704_168_060_000L), received.get(1).timestamp());
+    }
+
+    @Test
+    @DisplayName("Ack, error and unknown message types are not parsed as ticks")
+    public void testRepliesAreNotTicks() {
+        adapter.handleTickMessage("{\"type\":\"ack\",\"action\":\"subscribe\",\"symbols\":1,\"conflateMs\":0}");
+        adapter.handleTickMessage("{\"type\":\"error\",\"message\":\"unknown action: x\"}");
+        adapter.handleTickMessage("{\"type\":\"heartbeat\",\"symbol\":\"NSE:SBIN-EQ\"}");
+        adapter.handleTickMessage("{\"type\":\"tick\",\"symbol\":\"NSE:SBIN-EQ\",\"lastPrice\":\"1.00\"}");
+
+        assertEquals(1, received.size());
+        assertEquals(new BigDecimal("1.00"), received.get(0).lastPrice());
+    }
+}
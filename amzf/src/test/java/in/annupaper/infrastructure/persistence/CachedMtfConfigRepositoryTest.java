@@ -0,0 +1,149 @@
+package in.annupaper.infrastructure.persistence;
+
+import in.annupaper.application.port.output.MtfConfigRepository;
+import in.annupaper.domain.model.MtfGlobalConfig;
+import in.annupaper.domain.model.MtfSymbolConfig;
+import io.prometheus.client.CollectorRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for CachedMtfConfigRepository: reads from the snapshot, swap on write,
+ * precomputed effective configs, background retry of failed reloads.
+ */
+@DisplayName("Cached MTF Config Repository Tests")
+public class CachedMtfConfigRepositoryTest {
+
+    private MtfConfigRepository delegate;
+    private MtfGlobalConfig global;
+    private CollectorRegistry registry;
+    private CachedMtfConfigRepository repo;
+
+    @BeforeEach
+    public void setUp() {
+        delegate = mock(MtfConfigRepository.class);
+        global = mock(MtfGlobalConfig.class);
+        when(delegate.getGlobalConfig()).thenReturn(Optional.of(global));
+        when(delegate.getAllSymbolConfigs()).thenReturn(List.of());
+        registry = new CollectorRegistry();
+        repo = new CachedMtfConfigRepository(delegate, null, registry, 20);
+    }
+
+    @Test
+    @DisplayName("Config is loaded once and then served from memory")
+    public void testLoadedOnce() {
+        for (int i = 0; i < 100; i++) {
+            assertSame(global, repo.getGlobalConfig().orElseThrow());
+        }
+
+        verify(delegate, times(1)).getGlobalConfig();
+        assertEquals(1, repo.version());
+        assertEquals(1L, repo.getMetrics().get("misses"));
+        assertEquals(99L, repo.getMetrics().get("hits"));
+        assertEquals(99.0, registry.getSampleValue("mtf_config_cache_hits_total"));
+        assertEquals(1.0, registry.getSampleValue("mtf_config_version"));
+    }
+
+    @Test
+    @DisplayName("Effective config is precomputed per symbol and user broker")
+    public void testEffectiveConfig() {
+        MtfSymbolConfig override = symbolConfig("NSE:SBIN-EQ", "ub-1");
+        MtfGlobalConfig merged = mock(MtfGlobalConfig.class);
+        when(override.resolveEffective(global)).thenReturn(merged);
+        when(delegate.getAllSymbolConfigs()).thenReturn(List.of(override));
+
+        assertSame(merged, repo.getEffectiveConfig("NSE:SBIN-EQ", "ub-1"));
+        assertSame(merged, repo.getEffectiveConfig("NSE:SBIN-EQ", "ub-1"));
+        assertSame(global, repo.getEffectiveConfig("NSE:SBIN-EQ", "ub-2"));
+        assertSame(override, repo.getSymbolConfig("NSE:SBIN-EQ", "ub-1").orElseThrow());
+
+        verify(override, times(1)).resolveEffective(global);
+        verify(delegate, never()).getEffectiveConfig(any(), any());
+        verify(delegate, never()).getSymbolConfig(any(), any());
+    }
+
+    @Test
+    @DisplayName("Writes swap in a reloaded snapshot")
+    public void testWriteSwapsSnapshot() {
+        repo.getGlobalConfig();
+        long before = repo.version();
+
+        MtfGlobalConfig updated = mock(MtfGlobalConfig.class);
+        when(delegate.getGlobalConfig()).thenReturn(Optional.of(updated));
+        repo.updateGlobalConfig(updated);
+
+        verify(delegate).updateGlobalConfig(updated);
+        assertSame(updated, repo.getGlobalConfig().orElseThrow());
+        assertTrue(repo.version() > before);
+
+        MtfSymbolConfig added = symbolConfig("NSE:INFY-EQ", "ub-1");
+        when(delegate.getAllSymbolConfigs()).thenReturn(List.of(added));
+        repo.upsertSymbolConfig(added);
+        assertEquals(List.of(added), repo.getAllSymbolConfigs());
+
+        when(delegate.getAllSymbolConfigs()).thenReturn(List.of());
+        repo.deleteSymbolConfig("NSE:INFY-EQ", "ub-1");
+        assertTrue(repo.getSymbolConfig("NSE:INFY-EQ", "ub-1").isEmpty());
+    }
+
+    @Test
+    @DisplayName("A failed reload keeps serving the previous snapshot")
+    public void testReloadFailureKeepsSnapshot() {
+        repo.getGlobalConfig();
+        when(delegate.getGlobalConfig()).thenThrow(new RuntimeException("db down"));
+
+        assertThrows(RuntimeException.class, () -> repo.reload());
+        assertSame(global, repo.getGlobalConfig().orElseThrow());
+        assertEquals(1L, repo.getMetrics().get("reloadFailures"));
+    }
+
+    @Test
+    @DisplayName("A failed reload after a write keeps the snapshot and is retried in the background")
+    public void testReloadAfterWriteRetried() throws InterruptedException {
+        repo.getGlobalConfig();
+        MtfGlobalConfig updated = mock(MtfGlobalConfig.class);
+        doThrow(new RuntimeException("db down")).when(delegate).getAllSymbolConfigs();
+
+        repo.updateGlobalConfig(updated);
+
+        verify(delegate).updateGlobalConfig(updated);
+        assertSame(global, repo.getGlobalConfig().orElseThrow(), "previous snapshot still served");
+        assertEquals(1.0, registry.getSampleValue("mtf_config_stale"));
+
+        // Database back: the retry picks the write up without any read missing
+        doReturn(Optional.of(updated)).when(delegate).getGlobalConfig();
+        doReturn(List.of()).when(delegate).getAllSymbolConfigs();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (repo.version() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertSame(updated, repo.getGlobalConfig().orElseThrow());
+        assertEquals(0.0, registry.getSampleValue("mtf_config_stale"));
+        assertEquals(1.0, registry.getSampleValue("mtf_config_cache_misses_total"), "only the first load missed");
+        assertTrue(registry.getSampleValue("mtf_config_reload_failures_total") >= 1);
+    }
+
+    @Test
+    @DisplayName("Missing global config surfaces as before")
+    public void testMissingGlobal() {
+        when(delegate.getGlobalConfig()).thenReturn(Optional.empty());
+
+        assertTrue(repo.getGlobalConfig().isEmpty());
+        assertThrows(RuntimeException.class, () -> repo.getEffectiveConfig("NSE:SBIN-EQ", "ub-1"));
+    }
+
+    private static MtfSymbolConfig symbolConfig(String symbol, String userBrokerId) {
+        MtfSymbolConfig config = mock(MtfSymbolConfig.class);
+        when(config.symbol()).thenReturn(symbol);
+        when(config.userBrokerId()).thenReturn(userBrokerId);
+        return config;
+    }
+}
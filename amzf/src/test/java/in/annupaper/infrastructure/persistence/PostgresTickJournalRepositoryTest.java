@@ -0,0 +1,140 @@
+package in.annupaper.infrastructure.persistence;
+
+import in.annupaper.domain.model.Tick;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import javax.sql.DataSource;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for PostgresTickJournalRepository: a batch is one COPY of quoted CSV
+ * rows, each day's partition (and the next day's) is ensured once per
+ * process, partitions are created ahead at startup, and a failed COPY
+ * surfaces to the caller.
+ */
+@DisplayName("Postgres Tick Journal Repository Tests")
+public class PostgresTickJournalRepositoryTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 2);
+
+    private Connection conn;
+    private CopyManager copyManager;
+    private final List<String> copied = new ArrayList<>();
+    private final List<LocalDate> ensured = new ArrayList<>();
+    private PostgresTickJournalRepository repo;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        conn = mock(Connection.class);
+        PGConnection pgConn = mock(PGConnection.class);
+        copyManager = mock(CopyManager.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(dataSource.getConnection()).thenReturn(conn);
+        when(conn.unwrap(PGConnection.class)).thenReturn(pgConn);
+        when(pgConn.getCopyAPI()).thenReturn(copyManager);
+        when(copyManager.copyIn(anyString(), any(Reader.class))).thenAnswer(inv -> {
+            StringWriter csv = new StringWriter();
+            inv.<Reader>getArgument(1).transferTo(csv);
+            copied.add(csv.toString());
+            return (long) csv.toString().lines().count();
+        });
+        when(conn.prepareStatement("SELECT ensure_tick_journal_partition(?)")).thenReturn(ps);
+        doAnswer(inv -> {
+            ensured.add(inv.getArgument(1));
+            return null;
+        }).when(ps).setObject(anyInt(), any());
+        when(ps.executeQuery()).thenReturn(rs);
+        repo = new PostgresTickJournalRepository(new Db(dataSource));
+    }
+
+    @Test
+    @DisplayName("A batch is one COPY of CSV rows with quoted text and blank missing prices")
+    public void testCopyFormat() throws Exception {
+        repo.appendBatch(List.of(
+                tick("NSE:SBIN-EQ", "612.35", "612.30", "612.40", at(DAY, 4, 0)),
+                tick("NSE:\"Q\"-EQ", "10.00", null, null, at(DAY, 4, 1))));
+
+        verify(copyManager, times(1)).copyIn(anyString(), any(Reader.class));
+        assertEquals(List.of(
+                "\"NSE:SBIN-EQ\",2024-01-02T04:00:00Z,612.35,100,612.30,612.40,\"TEST\"\n"
+                        + "\"NSE:\"\"Q\"\"-EQ\",2024-01-02T04:01:00Z,10.00,100,,,\"TEST\"\n"),
+                copied);
+    }
+
+    @Test
+    @DisplayName("Each day's partition and the next day's are ensured once per process")
+    public void testPartitionsEnsuredOnce() {
+        repo.appendBatch(List.of(
+                tick("A", "1.00", null, null, at(DAY, 4, 0)),
+                tick("B", "1.00", null, null, at(DAY, 5, 0))));
+        repo.appendBatch(List.of(tick("A", "1.00", null, null, at(DAY, 6, 0))));
+
+        assertEquals(List.of(DAY, DAY.plusDays(1)), ensured);
+
+        // The next day was ready before its first tick; only the day after is new
+        repo.appendBatch(List.of(tick("A", "1.00", null, null, at(DAY.plusDays(1), 4, 0))));
+        assertEquals(List.of(DAY, DAY.plusDays(1), DAY.plusDays(2)), ensured);
+    }
+
+    @Test
+    @DisplayName("Startup creates today's and tomorrow's partitions; a failure is not fatal")
+    public void testCreatePartitionsAhead() throws Exception {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        repo.createPartitionsAhead();
+        assertEquals(List.of(today, today.plusDays(1)), ensured);
+
+        // Today's first batch finds both ready
+        repo.appendBatch(List.of(tick("A", "1.00", null, null, at(today, 4, 0))));
+        assertEquals(List.of(today, today.plusDays(1)), ensured);
+
+        DataSource down = mock(DataSource.class);
+        when(down.getConnection()).thenThrow(new SQLException("down"));
+        new PostgresTickJournalRepository(new Db(down)).createPartitionsAhead();
+    }
+
+    @Test
+    @DisplayName("A failed COPY surfaces to the caller; an empty batch does nothing")
+    public void testCopyFailure() throws Exception {
+        repo.appendBatch(List.of());
+        verify(copyManager, never()).copyIn(anyString(), any(Reader.class));
+
+        doThrow(new SQLException("copy failed")).when(copyManager).copyIn(anyString(), any(Reader.class));
+        assertThrows(RuntimeException.class,
+                () -> repo.appendBatch(List.of(tick("A", "1.00", null, null, at(DAY, 4, 0)))));
+    }
+
+    private static Instant at(LocalDate day, int hour, int minute) {
+        return day.atTime(hour, minute).toInstant(ZoneOffset.UTC);
+    }
+
+    private static Tick tick(String symbol, String last, String bid, String ask, Instant timestamp) {
+        BigDecimal price = new BigDecimal(last);
+        return new Tick(symbol, price, price, price, price, price, 100,
+                bid != null ? new BigDecimal(bid) : null, ask != null ? new BigDecimal(ask) : null,
+                0, 0, timestamp, "TEST");
+    }
+}
@@ -0,0 +1,213 @@
+package in.annupaper.infrastructure.persistence;
+
+import in.annupaper.domain.model.Trade;
+import in.annupaper.infrastructure.persistence.jdbc.Db;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for TradeHistoryWriter: snapshots are batched, failed batches are
+ * retried a bounded number of times, rows the database rejects are split out
+ * to the dead-letter table, snapshots past the capacity are dropped, and an
+ * unstarted writer writes synchronously.
+ */
+@DisplayName("Trade History Writer Tests")
+public class TradeHistoryWriterTest {
+
+    private DataSource dataSource;
+    private Connection conn;
+    private PreparedStatement ps;
+    private PreparedStatement deadLetterPs;
+    private TradeHistoryWriter writer;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        dataSource = mock(DataSource.class);
+        conn = mock(Connection.class);
+        ps = mock(PreparedStatement.class);
+        deadLetterPs = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(conn);
+        when(conn.prepareStatement(anyString())).thenAnswer(inv ->
+                inv.<String>getArgument(0).contains("trades_history_dead_letter") ? deadLetterPs : ps);
+        when(ps.executeBatch()).thenReturn(new int[0]);
+        when(deadLetterPs.executeBatch()).thenReturn(new int[0]);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Snapshots below the batch size are written together on flush")
+    public void testBatched() throws SQLException {
+        writer = new TradeHistoryWriter(new Db(dataSource), 100, 1000, 60_000);
+        writer.start();
+
+        for (int v = 1; v <= 5; v++) {
+            writer.append(snapshot("t-1", v));
+        }
+        verify(ps, never()).executeBatch();
+        assertEquals(5, writer.pendingCount());
+
+        writer.flushNow();
+
+        verify(ps, times(5)).addBatch();
+        verify(ps, times(1)).executeBatch();
+        verify(conn, times(1)).commit();
+        assertEquals(0, writer.pendingCount());
+        assertEquals(5L, writer.getMetrics().get("flushedRows"));
+    }
+
+    @Test
+    @DisplayName("A failed batch is kept and retried on the next flush")
+    public void testRetry() throws SQLException {
+        writer = new TradeHistoryWriter(new Db(dataSource), 100, 1000, 60_000);
+        writer.start();
+        when(ps.executeBatch()).thenThrow(new SQLException("db down")).thenReturn(new int[0]);
+
+        writer.append(snapshot("t-1", 2));
+        writer.flushNow();
+        assertEquals(1, writer.pendingCount());
+        assertEquals(1L, writer.getMetrics().get("flushFailures"));
+
+        writer.append(snapshot("t-1", 3));
+        writer.flushNow();
+        assertEquals(0, writer.pendingCount());
+        assertEquals(2L, writer.getMetrics().get("flushedRows"));
+    }
+
+    @Test
+    @DisplayName("A batch failing on its data is split; the bad row is dead-lettered, the rest written")
+    public void testPoisonRowDeadLettered() throws SQLException {
+        // The batch fails while it contains the poison snapshot, as a data error
+        List<String> bound = new ArrayList<>();
+        doAnswer(inv -> {
+            if (inv.<Integer>getArgument(0) == 1) {
+                bound.add(inv.getArgument(1));
+            }
+            return null;
+        }).when(ps).setString(anyInt(), anyString());
+        when(ps.executeBatch()).thenAnswer(inv -> {
+            boolean poisoned = bound.contains("t-poison");
+            bound.clear();
+            if (poisoned) {
+                throw new SQLException("numeric field overflow", "22003");
+            }
+            return new int[0];
+        });
+        writer = new TradeHistoryWriter(new Db(dataSource), 100, 1000, 60_000);
+        writer.start();
+
+        writer.append(snapshot("t-1", 1));
+        writer.append(snapshot("t-poison", 1));
+        writer.append(snapshot("t-2", 1));
+        writer.append(snapshot("t-3", 1));
+        writer.flushNow();
+
+        assertEquals(0, writer.pendingCount());
+        assertEquals(3L, writer.getMetrics().get("flushedRows"));
+        assertEquals(1L, writer.getMetrics().get("deadLetteredRows"));
+        assertEquals(0L, writer.getMetrics().get("retriedRows"));
+        verify(deadLetterPs, times(1)).addBatch();
+        verify(deadLetterPs).setString(1, "t-poison");
+        verify(deadLetterPs).setString(5, "22003");
+    }
+
+    @Test
+    @DisplayName("A batch that keeps failing is dead-lettered after the retry cap")
+    public void testRetriesCapped() throws SQLException {
+        when(ps.executeBatch()).thenThrow(new SQLException("db down", "08006"));
+        writer = new TradeHistoryWriter(new Db(dataSource), 100, 1000, 60_000);
+        writer.start();
+
+        writer.append(snapshot("t-1", 1));
+        for (int i = 1; i < TradeHistoryWriter.MAX_ATTEMPTS; i++) {
+            writer.flushNow();
+            assertEquals(1, writer.pendingCount(), "retried after " + i + " failures");
+        }
+        verify(deadLetterPs, never()).executeBatch();
+
+        writer.flushNow();
+        assertEquals(0, writer.pendingCount());
+        assertEquals(1L, writer.getMetrics().get("deadLetteredRows"));
+        assertEquals((long) TradeHistoryWriter.MAX_ATTEMPTS, writer.getMetrics().get("flushFailures"));
+        verify(deadLetterPs).setInt(6, TradeHistoryWriter.MAX_ATTEMPTS);
+
+        // Nothing left to retry
+        writer.flushNow();
+        assertEquals((long) TradeHistoryWriter.MAX_ATTEMPTS, writer.getMetrics().get("flushFailures"));
+    }
+
+    @Test
+    @DisplayName("Past the capacity snapshots are dropped and counted, never written on the caller's thread")
+    public void testCapacityDrops() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(ps.executeBatch()).thenAnswer(inv -> {
+            flushing.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return new int[0];
+        });
+        writer = new TradeHistoryWriter(new Db(dataSource), 2, 2, 60_000);
+        writer.start();
+
+        // The full batch is taken by the flusher, which stalls in the database
+        writer.append(snapshot("t-1", 1));
+        writer.append(snapshot("t-1", 2));
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+
+        writer.append(snapshot("t-1", 3));
+        writer.append(snapshot("t-1", 4));
+        writer.append(snapshot("t-1", 5)); // over capacity: returns at once
+        assertEquals(2, writer.pendingCount());
+        assertEquals(1L, writer.getMetrics().get("droppedRows"));
+
+        release.countDown();
+        writer.flushNow();
+        assertEquals(0, writer.pendingCount());
+        assertEquals(4L, writer.getMetrics().get("flushedRows"));
+        assertEquals(5L, writer.getMetrics().get("enqueued"));
+    }
+
+    @Test
+    @DisplayName("Unstarted writer writes each snapshot synchronously")
+    public void testSynchronousWhenNotStarted() throws SQLException {
+        TradeHistoryWriter sync = new TradeHistoryWriter(new Db(dataSource), 100, 1000, 60_000);
+
+        sync.append(snapshot("t-1", 1));
+
+        verify(ps, times(1)).executeBatch();
+        assertEquals(0, sync.pendingCount());
+    }
+
+    private static Trade snapshot(String tradeId, int version) {
+        Instant now = Instant.now();
+        Trade trade = mock(Trade.class);
+        when(trade.tradeId()).thenReturn(tradeId);
+        when(trade.version()).thenReturn(version);
+        when(trade.entryTimestamp()).thenReturn(now);
+        when(trade.createdAt()).thenReturn(now);
+        when(trade.updatedAt()).thenReturn(now);
+        return trade;
+    }
+}
@@ -0,0 +1,101 @@
+package in.annupaper.infrastructure.persistence.jdbc;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for Db's per-SQL shape cache (reused while the result columns are
+ * unchanged, rebuilt when SELECT * sees a different table) and for
+ * collapsing upsert batches to one item per key.
+ */
+@DisplayName("Db Tests")
+public class DbTest {
+
+    private static final String SQL = "SELECT * FROM trades_current WHERE trade_id = ?";
+
+    private Db db;
+    private PreparedStatement ps;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        Connection conn = mock(Connection.class);
+        ps = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(conn);
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        db = new Db(dataSource);
+    }
+
+    @Test
+    @DisplayName("The shape of a query is built once and reused while its columns are unchanged")
+    public void testShapeReused() throws SQLException {
+        Shape first = db.shape(SQL, result(ShapeTest.meta("trade_id", "symbol")));
+        Shape second = db.shape(SQL, result(ShapeTest.meta("trade_id", "symbol")));
+        Shape other = db.shape("SELECT trade_id, symbol FROM trades_current", result(ShapeTest.meta("trade_id", "symbol")));
+
+        assertSame(first, second);
+        assertNotSame(first, other, "one shape per SQL string");
+    }
+
+    @Test
+    @DisplayName("A schema change with the same column count rebuilds the shape")
+    public void testSameColumnCountSchemaChange() throws SQLException {
+        ResultSet before = result(ShapeTest.meta("trade_id", "old_col", "symbol"));
+        when(before.getString(1)).thenReturn("t-1");
+        when(before.getString(3)).thenReturn("SBIN");
+        assertEquals(List.of("t-1/SBIN"), query(before));
+
+        // old_col dropped, new_col added: still three columns, symbol moved
+        ResultSet after = result(ShapeTest.meta("trade_id", "symbol", "new_col"));
+        when(after.getString(1)).thenReturn("t-1");
+        when(after.getString(2)).thenReturn("SBIN");
+        when(after.getString(3)).thenReturn("new value");
+        assertEquals(List.of("t-1/SBIN"), query(after));
+    }
+
+    @Test
+    @DisplayName("A schema change with a different column count rebuilds the shape")
+    public void testColumnCountChange() throws SQLException {
+        Shape before = db.shape(SQL, result(ShapeTest.meta("trade_id", "symbol")));
+        Shape after = db.shape(SQL, result(ShapeTest.meta("trade_id", "symbol", "new_col")));
+
+        assertNotSame(before, after);
+        assertSame(after, db.shape(SQL, result(ShapeTest.meta("trade_id", "symbol", "new_col"))));
+    }
+
+    @Test
+    @DisplayName("lastPerKey keeps the last item per key in first-seen key order")
+    public void testLastPerKey() {
+        List<String> rows = List.of("A:1", "B:1", "A:2", "C:1", "B:2");
+
+        assertEquals(List.of("A:2", "B:2", "C:1"), Db.lastPerKey(rows, r -> r.substring(0, 1)));
+        assertEquals(rows, Db.lastPerKey(rows, r -> r));
+    }
+
+    private List<String> query(ResultSet rs) throws SQLException {
+        when(ps.executeQuery()).thenReturn(rs);
+        return db.query("trades.findById", SQL, p -> p.setString(1, "t-1"),
+                row -> row.getString("trade_id") + "/" + row.getString("symbol"));
+    }
+
+    /** A one-row result with the given columns. */
+    private static ResultSet result(ResultSetMetaData meta) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getMetaData()).thenReturn(meta);
+        when(rs.next()).thenReturn(true, false);
+        return rs;
+    }
+}
@@ -0,0 +1,86 @@
+package in.annupaper.infrastructure.persistence.jdbc;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for Shape: the recorded column plan is replayed on later rows, a
+ * mapper that reads columns conditionally falls back to the label map, and a
+ * shape only matches a result with the same labels in the same order.
+ */
+@DisplayName("Shape Tests")
+public class ShapeTest {
+
+    @Test
+    @DisplayName("The first row records the plan; later rows replay it")
+    public void testReplay() throws SQLException {
+        Shape shape = Shape.of(meta("trade_id", "symbol", "entry_price"));
+
+        for (int row = 0; row < 3; row++) {
+            assertEquals(1, shape.index(0, "trade_id"));
+            assertEquals(2, shape.index(1, "symbol"));
+            assertEquals(3, shape.index(2, "entry_price"));
+            assertEquals(3, shape.planned(), "recorded once, not per row");
+        }
+    }
+
+    @Test
+    @DisplayName("A mapper that skips or adds reads on some rows still gets the right indexes")
+    public void testConditionalReadFallback() throws SQLException {
+        Shape shape = Shape.of(meta("status", "exit_price", "symbol"));
+
+        // Open trade: exit_price not read
+        assertEquals(1, shape.index(0, "status"));
+        assertEquals(3, shape.index(1, "symbol"));
+        assertEquals(2, shape.planned());
+
+        // Closed trade: exit_price read where the plan has symbol
+        assertEquals(1, shape.index(0, "status"));
+        assertEquals(2, shape.index(1, "exit_price"));
+        assertEquals(3, shape.index(2, "symbol"));
+
+        // Open again: the plan still serves the common path
+        assertEquals(1, shape.index(0, "status"));
+        assertEquals(3, shape.index(1, "symbol"));
+    }
+
+    @Test
+    @DisplayName("Lookups are case-insensitive, the first duplicate label wins, unknown columns fail")
+    public void testLabels() throws SQLException {
+        Shape shape = Shape.of(meta("id", "Name", "id"));
+
+        assertEquals(1, shape.index(0, "id"));
+        assertEquals(2, shape.index(1, "NAME"));
+        assertTrue(shape.has("name"));
+        assertFalse(shape.has("missing"));
+
+        SQLException e = assertThrows(SQLException.class, () -> shape.index(2, "missing"));
+        assertEquals("42703", e.getSQLState());
+    }
+
+    @Test
+    @DisplayName("A shape matches only the same labels in the same order")
+    public void testMatches() throws SQLException {
+        Shape shape = Shape.of(meta("id", "old_col", "name"));
+
+        assertTrue(shape.matches(meta("id", "old_col", "name")));
+        assertFalse(shape.matches(meta("id", "name", "new_col")), "same count, different columns");
+        assertFalse(shape.matches(meta("id", "name", "old_col")), "same columns, reordered");
+        assertFalse(shape.matches(meta("id", "old_col")));
+    }
+
+    static ResultSetMetaData meta(String... labels) throws SQLException {
+        ResultSetMetaData meta = mock(ResultSetMetaData.class);
+        when(meta.getColumnCount()).thenReturn(labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            when(meta.getColumnLabel(i + 1)).thenReturn(labels[i]);
+        }
+        return meta;
+    }
+}
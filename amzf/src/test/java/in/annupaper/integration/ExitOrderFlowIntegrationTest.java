@@ -61,8 +61,8 @@ public class ExitOrderFlowIntegrationTest {
         log.info("Setting up test environment...");
 
         // TODO: Initialize repositories (connect to test DB)
-        // exitIntentRepo = new PostgresExitIntentRepository(testDataSource);
-        // tradeRepo = new PostgresTradeRepository(testDataSource);
+        // exitIntentRepo = new PostgresExitIntentRepository(new Db(testDataSource));
+        // tradeRepo = new PostgresTradeRepository(new Db(testDataSource));
 
         // Initialize mock broker
         mockBroker = new MockBrokerAdapter();
@@ -0,0 +1,170 @@
+package in.annupaper.service.candle;
+
+import in.annupaper.domain.model.EventType;
+import in.annupaper.domain.model.HistoricalCandle;
+import in.annupaper.domain.model.TimeframeType;
+import in.annupaper.service.core.EventService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for CandleAggregator: 1-min candles fold into the open 25/125-min
+ * buckets without touching the store, a late candle recomputes only its
+ * closed bucket, a gap closes the previous bucket, and the last minute of a
+ * bucket writes it through.
+ */
+@DisplayName("Candle Aggregator Tests")
+public class CandleAggregatorTest {
+
+    private static final String SYMBOL = "NSE:SBIN-EQ";
+    // 09:15 IST: a 25-min and a 125-min bucket both start here
+    private static final Instant T0 = Instant.parse("2024-01-02T03:45:00Z");
+    // Long interval: open buckets are never persisted by the throttle here
+    private static final long PERSIST_MS = 3_600_000;
+
+    private CandleStore candleStore;
+    private EventService eventService;
+    private CandleAggregator aggregator;
+
+    @BeforeEach
+    public void setUp() {
+        candleStore = mock(CandleStore.class);
+        eventService = mock(EventService.class);
+        when(candleStore.getRange(any(), any(), any(), any())).thenReturn(List.of());
+        aggregator = new CandleAggregator(candleStore, eventService, PERSIST_MS);
+    }
+
+    @Test
+    @DisplayName("Minutes from the bucket start fold in O(1) without a rescan")
+    public void testFolding() {
+        aggregator.on1MinuteCandleClose(SYMBOL, minute(0, "100", "101", "99", "100.50"));
+        aggregator.on1MinuteCandleClose(SYMBOL, minute(1, "100.50", "103", "100", "102"));
+        aggregator.on1MinuteCandleClose(SYMBOL, minute(2, "102", "102.50", "98", "99"));
+        aggregator.on1MinuteCandleClose(SYMBOL, minute(3, "99", "100", "98.50", "99.75"));
+
+        HistoricalCandle open25 = lastInMemory(TimeframeType.MINUTE_25);
+        assertEquals(candle(TimeframeType.MINUTE_25, T0, "100", "103", "98", "99.75", 400), open25);
+        assertEquals(candle(TimeframeType.MINUTE_125, T0, "100", "103", "98", "99.75", 400),
+                lastInMemory(TimeframeType.MINUTE_125));
+
+        verify(candleStore, never()).getRange(any(), any(), any(), any());
+        verify(candleStore, never()).upsert(any());
+        assertEquals(8L, aggregator.getMetrics().get("candlesFolded"));
+        assertEquals(0L, aggregator.getMetrics().get("rescans"));
+    }
+
+    @Test
+    @DisplayName("The last minute of a bucket writes it through and the next bucket starts fresh")
+    public void testLastMinutePersist() {
+        for (int m = 0; m < 25; m++) {
+            aggregator.on1MinuteCandleClose(SYMBOL, flat(m, "100"));
+        }
+
+        verify(candleStore, times(1)).upsert(any());
+        verify(candleStore).upsert(candle(TimeframeType.MINUTE_25, T0, "100", "100", "100", "100", 2_500));
+        verify(eventService, times(1)).emitGlobal(eq(EventType.CANDLE), any(), eq("CANDLE_AGGREGATOR"));
+        assertEquals(1L, aggregator.getMetrics().get("bucketsClosed"));
+
+        aggregator.on1MinuteCandleClose(SYMBOL, flat(25, "105"));
+
+        assertEquals(candle(TimeframeType.MINUTE_25, T0.plus(25, ChronoUnit.MINUTES), "105", "105", "105", "105", 100),
+                lastInMemory(TimeframeType.MINUTE_25));
+        assertEquals(candle(TimeframeType.MINUTE_125, T0, "100", "105", "100", "105", 2_600),
+                lastInMemory(TimeframeType.MINUTE_125));
+        verify(candleStore, never()).getRange(any(), any(), any(), any());
+        assertEquals(0L, aggregator.getMetrics().get("rescans"));
+    }
+
+    @Test
+    @DisplayName("A gap closes the previous bucket; the next bucket, joined mid-way, is seeded by a rescan")
+    public void testGapClose() {
+        aggregator.on1MinuteCandleClose(SYMBOL, flat(0, "100"));
+        aggregator.on1MinuteCandleClose(SYMBOL, flat(1, "101"));
+        aggregator.on1MinuteCandleClose(SYMBOL, flat(30, "110"));
+
+        verify(candleStore, times(1)).upsert(any());
+        verify(candleStore).upsert(candle(TimeframeType.MINUTE_25, T0, "100", "101", "100", "101", 200));
+        assertEquals(1L, aggregator.getMetrics().get("bucketsClosed"));
+
+        Instant next = T0.plus(25, ChronoUnit.MINUTES);
+        verify(candleStore).getRange(SYMBOL, TimeframeType.LTF, next, next.plus(24, ChronoUnit.MINUTES));
+        assertEquals(1L, aggregator.getMetrics().get("rescans"));
+        assertEquals(candle(TimeframeType.MINUTE_25, next, "110", "110", "110", "110", 100),
+                lastInMemory(TimeframeType.MINUTE_25));
+        assertEquals(candle(TimeframeType.MINUTE_125, T0, "100", "110", "100", "110", 300),
+                lastInMemory(TimeframeType.MINUTE_125));
+    }
+
+    @Test
+    @DisplayName("A late candle recomputes its closed bucket from the store and leaves the open bucket consistent")
+    public void testLateCandleRecompute() {
+        for (int m = 0; m < 26; m++) {
+            aggregator.on1MinuteCandleClose(SYMBOL, flat(m, "100"));
+        }
+
+        // Minute 10 corrected after its bucket closed; the store has the correction
+        HistoricalCandle corrected = minute(10, "100", "120", "100", "100");
+        List<HistoricalCandle> stored = new ArrayList<>();
+        for (int m = 0; m < 26; m++) {
+            stored.add(m == 10 ? corrected : flat(m, "100"));
+        }
+        when(candleStore.getRange(SYMBOL, TimeframeType.LTF, T0, T0.plus(24, ChronoUnit.MINUTES)))
+                .thenReturn(stored.subList(0, 25));
+        when(candleStore.getRange(SYMBOL, TimeframeType.LTF, T0, T0.plus(124, ChronoUnit.MINUTES)))
+                .thenReturn(stored);
+
+        aggregator.on1MinuteCandleClose(SYMBOL, corrected);
+
+        verify(candleStore).upsert(candle(TimeframeType.MINUTE_25, T0, "100", "120", "100", "100", 2_500));
+        // The open 125-min bucket is reseeded, not double-counted
+        assertEquals(candle(TimeframeType.MINUTE_125, T0, "100", "120", "100", "100", 2_600),
+                lastInMemory(TimeframeType.MINUTE_125));
+        assertEquals(2L, aggregator.getMetrics().get("rescans"));
+
+        // Folding resumes on the reseeded 125-min bucket
+        aggregator.on1MinuteCandleClose(SYMBOL, flat(26, "101"));
+        assertEquals(candle(TimeframeType.MINUTE_125, T0, "100", "120", "100", "101", 2_700),
+                lastInMemory(TimeframeType.MINUTE_125));
+        assertEquals(2L, aggregator.getMetrics().get("rescans"));
+    }
+
+    private HistoricalCandle lastInMemory(TimeframeType timeframe) {
+        ArgumentCaptor<HistoricalCandle> captor = ArgumentCaptor.forClass(HistoricalCandle.class);
+        verify(candleStore, atLeastOnce()).upsertMemory(captor.capture());
+        HistoricalCandle last = null;
+        for (HistoricalCandle c : captor.getAllValues()) {
+            if (c.timeframe() == timeframe) {
+                last = c;
+            }
+        }
+        assertNotNull(last, "no " + timeframe + " candle in memory");
+        return last;
+    }
+
+    private static HistoricalCandle flat(int minute, String price) {
+        return minute(minute, price, price, price, price);
+    }
+
+    private static HistoricalCandle minute(int minute, String open, String high, String low, String close) {
+        return candle(TimeframeType.MINUTE_1, T0.plus(minute, ChronoUnit.MINUTES), open, high, low, close, 100);
+    }
+
+    private static HistoricalCandle candle(TimeframeType timeframe, Instant timestamp, String open, String high,
+            String low, String close, long volume) {
+        return new HistoricalCandle(SYMBOL, timeframe, timestamp, new BigDecimal(open), new BigDecimal(high),
+                new BigDecimal(low), new BigDecimal(close), volume);
+    }
+}
@@ -0,0 +1,131 @@
+package in.annupaper.service.candle;
+
+import in.annupaper.application.port.output.CandleRepository;
+import in.annupaper.domain.model.HistoricalCandle;
+import in.annupaper.domain.model.TimeframeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Memory-tier reads of CandleStore: copies for holders, views for calculators.
+ */
+@DisplayName("Candle Store Tests")
+public class CandleStoreTest {
+
+    private static final String SYMBOL = "NSE:SBIN-EQ";
+    private static final TimeframeType TF = TimeframeType.LTF;
+    private static final Instant T0 = Instant.parse("2024-01-02T03:45:00Z");
+    private static final int DEPTH = 5;
+
+    private CandleRepository candleRepo;
+    private CandleStore candleStore;
+
+    @BeforeEach
+    public void setUp() {
+        candleRepo = mock(CandleRepository.class);
+        candleStore = new CandleStore(candleRepo, Map.of(TF, DEPTH), null);
+        for (int i = 0; i < DEPTH; i++) {
+            candleStore.upsertMemory(candle(i));
+        }
+    }
+
+    @Test
+    @DisplayName("getFromMemory returns a copy that survives evictions")
+    public void testGetFromMemoryIsStableCopy() {
+        List<HistoricalCandle> held = candleStore.getFromMemory(SYMBOL, TF);
+
+        // Evict every bar the copy was taken from
+        for (int i = DEPTH; i < 2 * DEPTH; i++) {
+            candleStore.upsertMemory(candle(i));
+        }
+
+        assertEquals(DEPTH, held.size());
+        assertEquals(T0.plusSeconds(60L * (DEPTH - 1)), held.get(0).timestamp(), "most recent first");
+        assertEquals(T0, held.get(DEPTH - 1).timestamp());
+        assertThrows(UnsupportedOperationException.class, () -> held.add(candle(99)));
+    }
+
+    @Test
+    @DisplayName("getRange is served from memory as an ascending copy")
+    public void testGetRangeFromMemory() {
+        List<HistoricalCandle> range = candleStore.getRange(SYMBOL, TF, T0.plusSeconds(60), T0.plusSeconds(180));
+
+        candleStore.upsertMemory(candle(DEPTH));
+        candleStore.upsertMemory(candle(DEPTH + 1));
+
+        assertEquals(3, range.size());
+        assertEquals(T0.plusSeconds(60), range.get(0).timestamp());
+        assertEquals(T0.plusSeconds(180), range.get(2).timestamp());
+        verifyNoInteractions(candleRepo);
+    }
+
+    @Test
+    @DisplayName("getRange falls back to PostgreSQL when memory does not reach back")
+    public void testGetRangeFallsBackToPostgres() {
+        Instant from = T0.minusSeconds(600);
+        when(candleRepo.findBySymbolAndTimeframe(SYMBOL, TF, from, T0)).thenReturn(List.of());
+
+        assertTrue(candleStore.getRange(SYMBOL, TF, from, T0).isEmpty());
+        verify(candleRepo).findBySymbolAndTimeframe(SYMBOL, TF, from, T0);
+    }
+
+    @Test
+    @DisplayName("seriesFromMemory is a zero-copy view that fails fast once evicted")
+    public void testSeriesFromMemoryIsView() {
+        CandleSeries series = candleStore.seriesFromMemory(SYMBOL, TF);
+        assertEquals(DEPTH, series.size());
+        assertEquals(candle(DEPTH - 1).close().longValue() * 100, series.closePaise(0));
+
+        candleStore.upsertMemory(candle(DEPTH));
+
+        assertThrows(ConcurrentModificationException.class, () -> series.get(DEPTH - 1));
+        assertNull(candleStore.seriesFromMemory("NSE:UNKNOWN-EQ", TF));
+    }
+
+    @Test
+    @DisplayName("lookbackRange covers the bars in memory; null when there are none")
+    public void testLookbackRange() {
+        CandleStore.LookbackRange range = candleStore.lookbackRange(SYMBOL, TF);
+        assertEquals(new CandleStore.LookbackRange(10_500, 9_900, DEPTH), range);
+        assertNull(candleStore.lookbackRange("NSE:UNKNOWN-EQ", TF));
+    }
+
+    @Test
+    @DisplayName("lookbackRange never mixes the high of one write with the low of another")
+    public void testLookbackRangeIsConsistent() throws InterruptedException {
+        CandleStore store = new CandleStore(candleRepo, Map.of(TF, 1), null);
+        store.upsertMemory(candle(0));
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                // Re-write the only bar, moving both bounds far apart each time
+                store.upsertMemory(candle(0, (i % 2 == 0) ? 100 : 9_000));
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            CandleStore.LookbackRange range = store.lookbackRange(SYMBOL, TF);
+            assertEquals(200, range.highPaise() - range.lowPaise(), "high and low from different writes");
+        }
+        writer.join();
+    }
+
+    private static HistoricalCandle candle(int minute) {
+        return candle(minute, 100 + minute);
+    }
+
+    private static HistoricalCandle candle(int minute, long closeRupees) {
+        BigDecimal close = BigDecimal.valueOf(closeRupees);
+        return new HistoricalCandle(SYMBOL, TF, T0.plusSeconds(60L * minute),
+                close, close.add(BigDecimal.ONE), close.subtract(BigDecimal.ONE), close, 1_000L);
+    }
+}
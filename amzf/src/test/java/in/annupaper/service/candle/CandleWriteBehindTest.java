@@ -0,0 +1,153 @@
+package in.annupaper.service.candle;
+
+import in.annupaper.application.port.output.CandleRepository;
+import in.annupaper.domain.model.HistoricalCandle;
+import in.annupaper.domain.model.TimeframeType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for CandleWriteBehind's journal: bars journaled before a crash are
+ * replayed on restart, and new writes never reuse a leftover segment.
+ */
+@DisplayName("Candle Write-Behind Tests")
+public class CandleWriteBehindTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-02T03:45:00Z");
+    // Long interval: flushes in these tests happen only via flushNow()/start()
+    private static final long FLUSH_MS = 60_000;
+
+    private Path walDir;
+    private final List<CandleWriteBehind> started = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        walDir = Files.createTempDirectory("candle-wal");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (CandleWriteBehind wb : started) {
+            wb.stop();
+        }
+        try (Stream<Path> files = Files.walk(walDir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Bars journaled but not flushed before a crash are replayed on restart")
+    public void testRestartReplaysUnflushedJournal() throws IOException {
+        CandleRepository crashedRepo = mock(CandleRepository.class);
+        CandleWriteBehind crashed = new CandleWriteBehind(crashedRepo, walDir, 100, 1000, FLUSH_MS);
+        crashed.start();
+        crashed.enqueue(candle(0, "100"));
+        crashed.enqueue(candle(1, "101"));
+        crashed.enqueue(candle(1, "102")); // newer version of the same bar
+        // Crash: never stopped or flushed
+        verify(crashedRepo, never()).upsertBatch(any());
+
+        CandleRepository repo = mock(CandleRepository.class);
+        CandleWriteBehind restarted = start(repo);
+
+        List<HistoricalCandle> replayed = writtenRows(repo);
+        assertEquals(List.of(candle(0, "100"), candle(1, "102")), replayed);
+        assertEquals(2L, restarted.getMetrics().get("replayedRows"));
+        assertEquals(1, segmentCount(), "only the fresh journal segment is left");
+
+        // New writes go to the fresh segment and are flushed on their own
+        restarted.enqueue(candle(2, "103"));
+        restarted.flushNow();
+        assertEquals(List.of(candle(0, "100"), candle(1, "102"), candle(2, "103")), writtenRows(repo));
+        assertEquals(1, segmentCount());
+    }
+
+    @Test
+    @DisplayName("The restarted journal never reuses a leftover segment")
+    public void testRestartOpensSegmentAfterLeftovers() throws IOException {
+        CandleRepository failing = mock(CandleRepository.class);
+        doThrow(new RuntimeException("db down")).when(failing).upsertBatch(any());
+        CandleWriteBehind crashed = new CandleWriteBehind(failing, walDir, 100, 1000, FLUSH_MS);
+        crashed.start();
+        crashed.enqueue(candle(0, "100"));
+        crashed.flushNow(); // sealed and spilled: PostgreSQL unavailable
+        crashed.enqueue(candle(1, "101"));
+        assertEquals(2, segmentCount());
+
+        CandleRepository repo = mock(CandleRepository.class);
+        doThrow(new RuntimeException("db still down")).when(repo).upsertBatch(any());
+        CandleWriteBehind restarted = start(repo);
+        assertEquals(3, segmentCount(), "leftovers kept, new segment opened after them");
+
+        restarted.enqueue(candle(2, "102"));
+
+        // PostgreSQL back: leftovers first (oldest first), then the new bar
+        reset(repo);
+        restarted.flushNow();
+        assertEquals(List.of(candle(0, "100"), candle(1, "101"), candle(2, "102")), writtenRows(repo));
+        assertEquals(1, segmentCount());
+        assertEquals(0L, restarted.getMetrics().get("spilledSegments"));
+    }
+
+    @Test
+    @DisplayName("A clean stop leaves nothing to replay")
+    public void testCleanStopLeavesNothingToReplay() throws IOException {
+        CandleRepository repo = mock(CandleRepository.class);
+        CandleWriteBehind wb = new CandleWriteBehind(repo, walDir, 100, 1000, FLUSH_MS);
+        wb.start();
+        wb.enqueue(candle(0, "100"));
+        wb.stop();
+        assertEquals(List.of(candle(0, "100")), writtenRows(repo));
+
+        CandleRepository next = mock(CandleRepository.class);
+        start(next);
+        verify(next, never()).upsertBatch(any());
+    }
+
+    private CandleWriteBehind start(CandleRepository repo) {
+        CandleWriteBehind wb = new CandleWriteBehind(repo, walDir, 100, 1000, FLUSH_MS);
+        started.add(wb);
+        wb.start();
+        return wb;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<HistoricalCandle> writtenRows(CandleRepository repo) {
+        ArgumentCaptor<List<HistoricalCandle>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repo, atLeastOnce()).upsertBatch(captor.capture());
+        List<HistoricalCandle> rows = new ArrayList<>();
+        captor.getAllValues().forEach(rows::addAll);
+        return rows;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(walDir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".wal")).count();
+        }
+    }
+
+    private static HistoricalCandle candle(int minute, String close) {
+        BigDecimal c = new BigDecimal(close);
+        return new HistoricalCandle("NSE:SBIN-EQ", TimeframeType.MINUTE_1, T0.plusSeconds(60L * minute),
+                c, c, c, c, 1_000L);
+    }
+}
@@ -0,0 +1,102 @@
+package in.annupaper.service.candle;
+
+import in.annupaper.domain.model.Tick;
+import in.annupaper.service.MarketDataCache;
+import in.annupaper.service.core.EventService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for TickCandleBuilder's tick dedupe: repeated ticks are dropped, a
+ * fingerprint survives one window rotation and is evicted by the next, and
+ * rotations stay within a symbol's partition.
+ *
+ * Ticks here are stamped outside the session, so they go through dedupe and
+ * stop before candle building.
+ */
+@DisplayName("Tick Candle Builder Dedupe Tests")
+public class TickCandleBuilderTest {
+
+    // Entries a partition window holds before it rotates early
+    private static final int WINDOW_ENTRIES = 6_144;
+    private static final int PARTITIONS = 16;
+
+    private TickCandleBuilder builder;
+
+    @BeforeEach
+    public void setUp() {
+        builder = new TickCandleBuilder(mock(CandleStore.class), mock(EventService.class),
+                mock(MarketDataCache.class), mock(HistoryBackfiller.class), mock(CandleAggregator.class));
+    }
+
+    @Test
+    @DisplayName("A repeated tick is dropped; a change in price, volume or time is not")
+    public void testDuplicateDetection() {
+        builder.onTick(tick("SBIN", 1_000, 10_000, 500));
+        builder.onTick(tick("SBIN", 1_000, 10_000, 500));
+        builder.onTick(tick("SBIN", 1_000, 10_005, 500));
+        builder.onTick(tick("SBIN", 1_000, 10_000, 501));
+        builder.onTick(tick("SBIN", 1_001, 10_000, 500));
+        builder.onTick(tick("INFY", 1_000, 10_000, 500));
+
+        assertEquals(6L, builder.getDedupeMetrics().get("totalTicks"));
+        assertEquals(1L, builder.getDedupeMetrics().get("duplicateTicks"));
+        assertEquals(5L, builder.getDedupeMetrics().get("currentWindowSize"));
+    }
+
+    @Test
+    @DisplayName("A full window rotates early: its ticks still dedupe for one window, then expire")
+    public void testWindowEviction() {
+        builder.onTick(tick("SBIN", 1, 10_000, 1));
+        fill("SBIN", 2, WINDOW_ENTRIES - 1); // current window now full
+
+        builder.onTick(tick("SBIN", 100_000, 10_000, 1)); // rotates
+        assertEquals(1L, builder.getDedupeMetrics().get("forcedRotations"));
+        builder.onTick(tick("SBIN", 1, 10_000, 1));
+        assertEquals(1L, builder.getDedupeMetrics().get("duplicateTicks"), "found in the previous window");
+
+        fill("SBIN", 100_001, WINDOW_ENTRIES - 1);
+        builder.onTick(tick("SBIN", 200_000, 10_000, 1)); // rotates again, dropping the first window
+        assertEquals(2L, builder.getDedupeMetrics().get("forcedRotations"));
+        builder.onTick(tick("SBIN", 1, 10_000, 1));
+        assertEquals(1L, builder.getDedupeMetrics().get("duplicateTicks"), "evicted with its window");
+    }
+
+    @Test
+    @DisplayName("Rotations stay in the symbol's partition: other partitions keep their windows")
+    public void testPartitioning() {
+        // Symbol ids are handed out in first-seen order: S1..S17 get ids 1..17,
+        // so S1 and S17 share a partition and S2 has its own
+        for (int i = 1; i <= PARTITIONS + 1; i++) {
+            builder.onTick(tick("S" + i, 1, 10_000, 1));
+        }
+
+        // Two full windows of S1 evict everything older in S1's partition
+        fill("S1", 2, WINDOW_ENTRIES);
+        fill("S1", 100_000, WINDOW_ENTRIES);
+        assertEquals(2L, builder.getDedupeMetrics().get("forcedRotations"));
+
+        builder.onTick(tick("S2", 1, 10_000, 1));
+        assertEquals(1L, builder.getDedupeMetrics().get("duplicateTicks"), "S2's partition untouched");
+        builder.onTick(tick("S17", 1, 10_000, 1));
+        assertEquals(1L, builder.getDedupeMetrics().get("duplicateTicks"), "S17 shares S1's partition");
+    }
+
+    /** Distinct ticks for a symbol at consecutive exchange millis. */
+    private void fill(String symbol, long fromMillis, int count) {
+        for (int i = 0; i < count; i++) {
+            builder.onTick(tick(symbol, fromMillis + i, 10_000, 1));
+        }
+    }
+
+    private static Tick tick(String symbol, long exchangeMillis, long pricePaise, long volume) {
+        return new Tick(symbol, pricePaise, pricePaise, pricePaise, pricePaise, pricePaise, volume,
+                pricePaise, pricePaise, 0, 0, Instant.ofEpochMilli(exchangeMillis), "TEST");
+    }
+}
@@ -0,0 +1,127 @@
+package in.annupaper.service.candle;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for TickDedupeTable: hits and misses, linear probing past colliding
+ * slots (including around the end of the table), false positives on a
+ * primary-only match, the load limit, and clearing for reuse.
+ */
+@DisplayName("Tick Dedupe Table Tests")
+public class TickDedupeTableTest {
+
+    @Test
+    @DisplayName("Capacity rounds up to a power of two, at least 16 slots")
+    public void testCapacity() {
+        assertEquals(16, new TickDedupeTable(1, 0.75).capacity());
+        assertEquals(16, new TickDedupeTable(16, 0.75).capacity());
+        assertEquals(32, new TickDedupeTable(17, 0.75).capacity());
+        assertEquals(8192, new TickDedupeTable(8192, 0.75).capacity());
+    }
+
+    @Test
+    @DisplayName("An inserted fingerprint is a HIT; anything else is a MISS")
+    public void testDuplicateDetection() {
+        TickDedupeTable table = new TickDedupeTable(64, 0.75);
+        long h1 = TickDedupeTable.primaryHash(1, 1_700_000_000_000L, 10_050, 1_000);
+        long h2 = TickDedupeTable.secondaryHash(1, 1_700_000_000_000L, 10_050, 1_000);
+
+        assertEquals(TickDedupeTable.MISS, table.lookup(h1, h2));
+        table.insert(h1, h2);
+        assertEquals(TickDedupeTable.HIT, table.lookup(h1, h2));
+        assertEquals(1, table.size());
+
+        // Any field changed is a different tick
+        assertEquals(TickDedupeTable.MISS, lookup(table, 2, 1_700_000_000_000L, 10_050, 1_000));
+        assertEquals(TickDedupeTable.MISS, lookup(table, 1, 1_700_000_000_001L, 10_050, 1_000));
+        assertEquals(TickDedupeTable.MISS, lookup(table, 1, 1_700_000_000_000L, 10_055, 1_000));
+        assertEquals(TickDedupeTable.MISS, lookup(table, 1, 1_700_000_000_000L, 10_050, 1_001));
+    }
+
+    @Test
+    @DisplayName("Fingerprints landing on the same slot probe forward, wrapping past the end")
+    public void testCollisionProbing() {
+        TickDedupeTable table = new TickDedupeTable(16, 1.0);
+        int slots = table.capacity();
+        long last = slots - 1;
+
+        // Same home slot (the last one): the second and third wrap to slots 0 and 1
+        table.insert(last, 1);
+        table.insert(last + slots, 2);
+        table.insert(last + 2L * slots, 3);
+        // Home slot 0 is taken by a wrapped entry: probes on to slot 2
+        table.insert(slots, 4);
+
+        assertEquals(TickDedupeTable.HIT, table.lookup(last, 1));
+        assertEquals(TickDedupeTable.HIT, table.lookup(last + slots, 2));
+        assertEquals(TickDedupeTable.HIT, table.lookup(last + 2L * slots, 3));
+        assertEquals(TickDedupeTable.HIT, table.lookup(slots, 4));
+        assertEquals(TickDedupeTable.MISS, table.lookup(last + 3L * slots, 5), "probe stops at the empty slot");
+        assertEquals(4, table.size());
+    }
+
+    @Test
+    @DisplayName("A primary match with a different secondary is a FALSE_POSITIVE, not a HIT")
+    public void testFalsePositive() {
+        TickDedupeTable table = new TickDedupeTable(16, 0.75);
+        table.insert(42, 1);
+
+        assertEquals(TickDedupeTable.FALSE_POSITIVE, table.lookup(42, 2));
+
+        // The colliding tick is stored too; both are then found by probing
+        table.insert(42, 2);
+        assertEquals(TickDedupeTable.HIT, table.lookup(42, 1));
+        assertEquals(TickDedupeTable.HIT, table.lookup(42, 2));
+        assertEquals(TickDedupeTable.FALSE_POSITIVE, table.lookup(42, 3));
+    }
+
+    @Test
+    @DisplayName("The table stops accepting at its load limit and is reusable after clear()")
+    public void testLoadLimitAndClear() {
+        TickDedupeTable table = new TickDedupeTable(16, 0.5);
+        for (long h = 1; h <= 8; h++) {
+            assertFalse(table.isFull());
+            table.insert(h, h);
+        }
+        assertTrue(table.isFull());
+
+        table.insert(9, 9);
+        assertEquals(8, table.size());
+        assertEquals(TickDedupeTable.MISS, table.lookup(9, 9));
+
+        table.clear();
+        assertEquals(0, table.size());
+        assertFalse(table.isFull());
+        assertEquals(TickDedupeTable.MISS, table.lookup(1, 1));
+        table.insert(9, 9);
+        assertEquals(TickDedupeTable.HIT, table.lookup(9, 9));
+    }
+
+    @Test
+    @DisplayName("Primary hash is never the empty-slot marker and separates nearby ticks")
+    public void testHashes() {
+        Set<Long> primaries = new HashSet<>();
+        for (int symbolId = 1; symbolId <= 100; symbolId++) {
+            for (long price = 10_000; price < 10_100; price++) {
+                long h1 = TickDedupeTable.primaryHash(symbolId, 1_700_000_000_000L, price, 500);
+                long h2 = TickDedupeTable.secondaryHash(symbolId, 1_700_000_000_000L, price, 500);
+                assertNotEquals(0L, h1);
+                assertNotEquals(h1, h2);
+                primaries.add(h1);
+            }
+        }
+        assertEquals(10_000, primaries.size());
+    }
+
+    private static int lookup(TickDedupeTable table, int symbolId, long exchangeMillis, long pricePaise,
+            long volume) {
+        return table.lookup(TickDedupeTable.primaryHash(symbolId, exchangeMillis, pricePaise, volume),
+                TickDedupeTable.secondaryHash(symbolId, exchangeMillis, pricePaise, volume));
+    }
+}
@@ -0,0 +1,177 @@
+package in.annupaper.service.core;
+
+import in.annupaper.application.port.output.TickJournalRepository;
+import in.annupaper.application.port.output.TradeEventRepository;
+import in.annupaper.domain.model.EventType;
+import in.annupaper.domain.model.Tick;
+import in.annupaper.domain.model.TradeEvent;
+import in.annupaper.transport.ws.WsHub;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for EventService's market-data lane: ticks coalesce to the latest
+ * per symbol between flushes, a flush publishes and queues one batch for the
+ * journal, batches past the queue capacity are dropped and counted, journal
+ * failures do not stop the lane, and stop() flushes what is pending.
+ */
+@DisplayName("Event Service Market-Data Lane Tests")
+public class EventServiceTest {
+
+    // Coalesced batches the journal queue holds
+    private static final int QUEUE_CAPACITY = 64;
+
+    private WsHub wsHub;
+    private TickJournalRepository journal;
+    private EventService eventService;
+
+    @BeforeEach
+    public void setUp() {
+        wsHub = mock(WsHub.class);
+        journal = mock(TickJournalRepository.class);
+        eventService = new EventService(mock(TradeEventRepository.class), wsHub, journal);
+    }
+
+    @Test
+    @DisplayName("Ticks between flushes coalesce to the latest per symbol")
+    public void testCoalescing() {
+        eventService.emitTick(tick("SBIN", "600.00"));
+        eventService.emitTick(tick("SBIN", "600.50"));
+        eventService.emitTick(tick("INFY", "1500.00"));
+        eventService.emitTick(tick("SBIN", "601.00"));
+
+        eventService.flushTicks();
+
+        assertEquals(List.of("INFY@1500.00", "SBIN@601.00"), published());
+        eventService.drainJournalQueue();
+        assertEquals(List.of("INFY@1500.00", "SBIN@601.00"), journaled(0));
+
+        Map<String, Long> m = eventService.getMarketDataLaneMetrics();
+        assertEquals(4L, m.get("ticksReceived"));
+        assertEquals(2L, m.get("ticksCoalesced"));
+        assertEquals(2L, m.get("ticksPublished"));
+        assertEquals(2L, m.get("ticksJournaled"));
+
+        // Nothing pending: the next flush publishes nothing
+        eventService.flushTicks();
+        verify(wsHub, times(2)).publish(any());
+    }
+
+    @Test
+    @DisplayName("A tick without a timestamp is skipped without costing the rest of the batch")
+    public void testSkipsTickWithoutTimestamp() {
+        eventService.emitTick(tick("SBIN", "600.00"));
+        eventService.emitTick(new Tick("BAD", new BigDecimal("1.00"), null, null, null, null, 0, null, null, 0, 0,
+                null, "TEST"));
+
+        eventService.flushTicks();
+
+        assertEquals(List.of("SBIN@600.00"), published());
+        assertEquals(1L, eventService.getMarketDataLaneMetrics().get("ticksSkipped"));
+    }
+
+    @Test
+    @DisplayName("Batches past the journal queue capacity are dropped and counted; the rest are written in one call")
+    public void testLaneOverflow() {
+        for (int i = 0; i <= QUEUE_CAPACITY; i++) {
+            eventService.emitTick(tick("SBIN", i + ".00"));
+            eventService.flushTicks();
+        }
+
+        assertEquals(QUEUE_CAPACITY + 1L, eventService.getMarketDataLaneMetrics().get("ticksPublished"));
+        assertEquals(1L, eventService.getMarketDataLaneMetrics().get("journalBatchesDropped"));
+
+        eventService.drainJournalQueue();
+
+        verify(journal, times(1)).appendBatch(anyList());
+        List<String> rows = journaled(0);
+        assertEquals(QUEUE_CAPACITY, rows.size());
+        assertEquals("SBIN@0.00", rows.get(0));
+        assertEquals("SBIN@63.00", rows.get(QUEUE_CAPACITY - 1));
+        assertEquals((long) QUEUE_CAPACITY, eventService.getMarketDataLaneMetrics().get("ticksJournaled"));
+    }
+
+    @Test
+    @DisplayName("A failed journal write is counted and the lane keeps going")
+    public void testJournalFailure() {
+        doThrow(new RuntimeException("db down")).doNothing().when(journal).appendBatch(anyList());
+
+        eventService.emitTick(tick("SBIN", "600.00"));
+        eventService.flushTicks();
+        eventService.drainJournalQueue();
+
+        eventService.emitTick(tick("SBIN", "601.00"));
+        eventService.flushTicks();
+        eventService.drainJournalQueue();
+
+        Map<String, Long> m = eventService.getMarketDataLaneMetrics();
+        assertEquals(1L, m.get("journalFailures"));
+        assertEquals(1L, m.get("ticksJournaled"));
+        assertEquals(List.of("SBIN@601.00"), journaled(1));
+    }
+
+    @Test
+    @DisplayName("stop() publishes and journals what is still pending; without a journal ticks are only published")
+    public void testStopFlushesAndEphemeral() {
+        eventService.emitTick(tick("SBIN", "600.00"));
+        eventService.stop();
+
+        assertEquals(List.of("SBIN@600.00"), published());
+        assertEquals(List.of("SBIN@600.00"), journaled(0));
+
+        WsHub ephemeralHub = mock(WsHub.class);
+        EventService ephemeral = new EventService(mock(TradeEventRepository.class), ephemeralHub, null);
+        ephemeral.emitTick(tick("SBIN", "600.00"));
+        ephemeral.stop();
+
+        verify(ephemeralHub, times(1)).publish(any());
+        assertEquals(0L, ephemeral.getMarketDataLaneMetrics().get("ticksJournaled"));
+    }
+
+    /** symbol@lastPrice of each published TICK event, sorted. */
+    private List<String> published() {
+        ArgumentCaptor<TradeEvent> captor = ArgumentCaptor.forClass(TradeEvent.class);
+        verify(wsHub, atLeastOnce()).publish(captor.capture());
+        List<String> ticks = new ArrayList<>();
+        for (TradeEvent e : captor.getAllValues()) {
+            assertEquals(EventType.TICK, e.type());
+            ticks.add(e.payload().get("symbol").asText() + "@" + e.payload().get("lastPrice").decimalValue());
+        }
+        ticks.sort(Comparator.naturalOrder());
+        return ticks;
+    }
+
+    /** symbol@lastPrice of the rows in the n-th journal write, sorted. */
+    @SuppressWarnings("unchecked")
+    private List<String> journaled(int call) {
+        ArgumentCaptor<List<Tick>> captor = ArgumentCaptor.forClass(List.class);
+        verify(journal, atLeastOnce()).appendBatch(captor.capture());
+        List<String> rows = new ArrayList<>();
+        for (Tick t : captor.getAllValues().get(call)) {
+            rows.add(t.symbol() + "@" + t.lastPrice());
+        }
+        rows.sort(Comparator.comparing((String r) -> r.substring(0, r.indexOf('@')))
+                .thenComparing(r -> new BigDecimal(r.substring(r.indexOf('@') + 1))));
+        return rows;
+    }
+
+    private static Tick tick(String symbol, String lastPrice) {
+        BigDecimal price = new BigDecimal(lastPrice);
+        return new Tick(symbol, price, price, price, price, price, 0, price, price, 0, 0,
+                Instant.parse("2024-01-02T04:00:00Z"), "TEST");
+    }
+}
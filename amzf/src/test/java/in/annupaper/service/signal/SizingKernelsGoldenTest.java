@@ -0,0 +1,462 @@
+package in.annupaper.service.signal;
+
+import in.annupaper.domain.model.HistoricalCandle;
+import in.annupaper.domain.model.MtfGlobalConfig;
+import in.annupaper.domain.model.TimeframeType;
+import in.annupaper.domain.model.Trade;
+import in.annupaper.service.candle.CandleColumns;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Golden values: SizingKernels against the BigDecimal calculators they
+ * replace, on seeded random inputs.
+ *
+ * Continuous results must agree to within the calculators' 4-6 decimal
+ * intermediate rounding; quantities to within one share (a floor sitting on
+ * an integer boundary), and exactly in nearly all cases. Risk caps must never
+ * be above the calculators' and the 3× gate must never pass where theirs
+ * fails, including on the gate's edge.
+ */
+@DisplayName("Sizing Kernels Golden Value Tests")
+public class SizingKernelsGoldenTest {
+
+    private static final int CASES = 2_000;
+    private static final Set<String> CAPS = Set.of(
+            "LOG_SAFE_POSITION", "CAPITAL_AVAILABLE", "PORTFOLIO_BUDGET", "SYMBOL_BUDGET");
+
+    private MtfGlobalConfig config;
+    private SizingKernels.Params params;
+
+    @BeforeEach
+    public void setUp() {
+        config = config();
+        params = SizingKernels.Params.of(config);
+    }
+
+    @Test
+    @DisplayName("ATR (Wilder and fallback) matches ATRCalculator")
+    public void testAtr() {
+        Random rnd = new Random(1);
+        CandleColumns cols = new CandleColumns();
+        for (int c = 0; c < CASES; c++) {
+            List<HistoricalCandle> candles = candles(rnd, 1 + rnd.nextInt(60));
+            cols.load(candles);
+
+            BigDecimal expected = ATRCalculator.calculateDailyATR(candles, 14);
+            double actual = SizingKernels.wilderAtr(cols.high(), cols.low(), cols.close(), cols.size(), 14);
+            assertClose(expected, Double.isNaN(actual) ? null : actual / 100, 1e-4, "ATR case " + c);
+
+            BigDecimal expectedFallback = ATRCalculator.calculateDailyATRWithFallback(candles, 14, 5);
+            double actualFallback = SizingKernels.atrWithFallback(
+                    cols.high(), cols.low(), cols.close(), cols.size(), 14, 5);
+            assertClose(expectedFallback, Double.isNaN(actualFallback) ? null : actualFallback / 100, 1e-4,
+                    "fallback ATR case " + c);
+        }
+    }
+
+    @Test
+    @DisplayName("Range/ATR, body ratio and final velocity match VelocityCalculator")
+    public void testVelocity() {
+        Random rnd = new Random(2);
+        CandleColumns cols = new CandleColumns();
+        for (int c = 0; c < CASES; c++) {
+            List<HistoricalCandle> candles = candles(rnd, 1 + rnd.nextInt(120));
+            cols.load(candles);
+            BigDecimal atr = BigDecimal.valueOf(50 + rnd.nextInt(5_000), 2);
+            double atrPaise = atr.doubleValue() * 100;
+
+            BigDecimal rangeAtr = VelocityCalculator.calculateRangeATR(candles, 50, atr);
+            double kRangeAtr = SizingKernels.rangeAtr(cols.high(), cols.low(), cols.size(), 50, atrPaise);
+            assertClose(rangeAtr, kRangeAtr, 1e-5, "Range/ATR case " + c);
+
+            BigDecimal bodyRatio = VelocityCalculator.calculateBodyRatio(candles, atr, 15);
+            double kBodyRatio = SizingKernels.bodyRatio(cols.open(), cols.close(), cols.size(), atrPaise, 15);
+            assertClose(bodyRatio, kBodyRatio, 1e-4, "body ratio case " + c);
+
+            BigDecimal stress = BigDecimal.valueOf(25 + rnd.nextInt(76), 2);
+            if (nearBucketEdge(rangeAtr.doubleValue(), bodyRatio.doubleValue())) {
+                continue;
+            }
+            BigDecimal velocity = VelocityCalculator.calculateFinalVelocity(rangeAtr, bodyRatio, stress, config);
+            assertClose(velocity, SizingKernels.finalVelocity(kRangeAtr, kBodyRatio, stress.doubleValue(), params),
+                    1e-9, "velocity case " + c);
+        }
+    }
+
+    @Test
+    @DisplayName("P(win) and Kelly match KellyCalculator")
+    public void testKelly() {
+        Random rnd = new Random(3);
+        for (int c = 0; c < CASES; c++) {
+            BigDecimal price = price(rnd);
+            BigDecimal floor = price.multiply(BigDecimal.valueOf(80 + rnd.nextInt(20), 2))
+                    .setScale(2, RoundingMode.HALF_UP);
+            BigDecimal ceiling = price.multiply(BigDecimal.valueOf(101 + rnd.nextInt(40), 2))
+                    .setScale(2, RoundingMode.HALF_UP);
+            BigDecimal maxDrop = BigDecimal.valueOf(5 + rnd.nextInt(50), 3);
+
+            BigDecimal pWin = KellyCalculator.calculatePWin(price, floor, ceiling, maxDrop);
+            double kPWin = SizingKernels.pWin(price.doubleValue(), floor.doubleValue(), ceiling.doubleValue(),
+                    maxDrop.doubleValue());
+            assertClose(pWin, kPWin, 2e-4, "P(win) case " + c);
+
+            BigDecimal kelly = KellyCalculator.calculateKelly(price, floor, ceiling, pWin);
+            assertClose(kelly, SizingKernels.kelly(price.doubleValue(), floor.doubleValue(), ceiling.doubleValue(),
+                    pWin.doubleValue()), 1e-5, "Kelly case " + c);
+        }
+    }
+
+    @Test
+    @DisplayName("Log-safe quantity and log losses match LogUtilityCalculator")
+    public void testLogUtility() {
+        Random rnd = new Random(4);
+        int exact = 0;
+        for (int c = 0; c < CASES; c++) {
+            BigDecimal entry = price(rnd);
+            BigDecimal floor = entry.multiply(BigDecimal.valueOf(85 + rnd.nextInt(14), 2))
+                    .setScale(2, RoundingMode.HALF_UP);
+            BigDecimal maxLogLoss = BigDecimal.valueOf(-(2 + rnd.nextInt(15)), 2);
+            int existingQty = rnd.nextInt(3) == 0 ? 0 : rnd.nextInt(500);
+            BigDecimal existingAvg = existingQty == 0 ? BigDecimal.ZERO
+                    : floor.multiply(BigDecimal.valueOf(100 + rnd.nextInt(12), 2)).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal capSym = BigDecimal.valueOf(10_000 + rnd.nextInt(1_000_000));
+
+            assertClose(LogUtilityCalculator.calculateMaxAvgCost(floor, maxLogLoss),
+                    SizingKernels.maxAvgCost(floor.doubleValue(), maxLogLoss.doubleValue()), 0.0051,
+                    "max avg cost case " + c);
+
+            int expected = LogUtilityCalculator.calculateMaxLogSafeQty(
+                    entry, floor, maxLogLoss, existingQty, existingAvg, capSym);
+            int actual = SizingKernels.maxLogSafeQty(entry.doubleValue(), floor.doubleValue(),
+                    maxLogLoss.doubleValue(), existingQty, existingAvg.doubleValue(), capSym.doubleValue());
+            assertCap(expected, actual, "log-safe qty case " + c);
+            exact += expected == actual ? 1 : 0;
+
+            BigDecimal perLeg = LogUtilityCalculator.calculatePerLegLogLoss(entry, floor);
+            double kPerLeg = SizingKernels.perLegLogLoss(entry.doubleValue(), floor.doubleValue());
+            assertClose(perLeg, kPerLeg, 3e-6, "per-leg log loss case " + c);
+            assertTrue(kPerLeg <= perLeg.doubleValue(), "per-leg log loss case " + c + " above " + perLeg);
+        }
+        assertTrue(exact >= CASES * 99 / 100, "exact log-safe quantities: " + exact);
+    }
+
+    @Test
+    @DisplayName("Headroom, exposure, drawdown and stress throttle match PortfolioRiskCalculator")
+    public void testPortfolioRisk() {
+        Random rnd = new Random(5);
+        for (int c = 0; c < CASES; c++) {
+            BigDecimal current = BigDecimal.valueOf(-rnd.nextInt(8_000), 5);
+            BigDecimal max = BigDecimal.valueOf(-(1 + rnd.nextInt(10)), 2);
+            BigDecimal perLeg = BigDecimal.valueOf(-(100 + rnd.nextInt(15_000)), 6);
+
+            BigDecimal headroom = PortfolioRiskCalculator.calculatePortfolioHeadroom(current, max, perLeg);
+            double kHeadroom = SizingKernels.headroom(current.doubleValue(), max.doubleValue(),
+                    perLeg.doubleValue());
+            assertClose(headroom, kHeadroom, 1.01e-6, "headroom case " + c);
+            assertTrue(kHeadroom <= headroom.doubleValue(), "headroom case " + c + " above " + headroom);
+
+            BigDecimal capital = BigDecimal.valueOf(10_000 + rnd.nextInt(1_000_000));
+            BigDecimal price = price(rnd);
+            int qty = PortfolioRiskCalculator.convertExposureToQty(headroom, capital, price);
+            int kQty = SizingKernels.exposureToQty(kHeadroom, capital.doubleValue(), price.doubleValue());
+            assertCap(qty, kQty, "exposure qty case " + c);
+
+            BigDecimal peak = BigDecimal.valueOf(100_000 + rnd.nextInt(900_000));
+            BigDecimal value = peak.multiply(BigDecimal.valueOf(85 + rnd.nextInt(20), 2));
+            BigDecimal maxStress = BigDecimal.valueOf(-(1 + rnd.nextInt(10)), 2);
+            BigDecimal drawdown = PortfolioRiskCalculator.calculatePortfolioDrawdown(List.of(), value, peak);
+            double kDrawdown = SizingKernels.drawdown(value.doubleValue(), peak.doubleValue());
+            assertClose(drawdown, kDrawdown, 1e-6, "drawdown case " + c);
+            if (Math.abs(kDrawdown / maxStress.doubleValue() - 1) > 1e-5) {
+                assertClose(PortfolioRiskCalculator.calculateStressThrottle(drawdown, maxStress),
+                        SizingKernels.stressThrottle(kDrawdown, maxStress.doubleValue()), 1e-5,
+                        "stress throttle case " + c);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Utility and advantage gate match UtilityAsymmetryCalculator")
+    public void testUtilityAsymmetry() {
+        Random rnd = new Random(6);
+        for (int c = 0; c < CASES; c++) {
+            BigDecimal up = BigDecimal.valueOf(1 + rnd.nextInt(30_000), 6);
+            BigDecimal down = BigDecimal.valueOf(-(1 + rnd.nextInt(30_000)), 6);
+            BigDecimal pWin = BigDecimal.valueOf(10 + rnd.nextInt(81), 2);
+
+            assertClose(UtilityAsymmetryCalculator.calculateUtility(up, config.utilityAlpha(),
+                    config.utilityBeta(), config.utilityLambda()),
+                    SizingKernels.utility(up.doubleValue(), 0.60, 1.40, 1.00), 1e-6, "U(π) case " + c);
+            assertClose(UtilityAsymmetryCalculator.calculateUtility(down, config.utilityAlpha(),
+                    config.utilityBeta(), config.utilityLambda()),
+                    SizingKernels.utility(down.doubleValue(), 0.60, 1.40, 1.00), 1e-6, "U(ℓ) case " + c);
+
+            assertGate(pWin, up, down, "advantage gate case " + c);
+        }
+    }
+
+    @Test
+    @DisplayName("Advantage gate within a hair of 3× never passes where UtilityAsymmetryCalculator fails")
+    public void testAdvantageGateEdge() {
+        Random rnd = new Random(8);
+        int passed = 0;
+        int failed = 0;
+        for (int c = 0; c < CASES; c++) {
+            BigDecimal pWin = BigDecimal.valueOf(10 + rnd.nextInt(81), 2);
+            BigDecimal down = BigDecimal.valueOf(-(1 + rnd.nextInt(30_000)), 6);
+            // U(π) at 3× the expected downside, give or take 1e-4
+            double p = pWin.doubleValue();
+            double target = 3 * (1 - p) * -SizingKernels.utility(down.doubleValue(), 0.60, 1.40, 1.00) / p
+                    * (1 + (rnd.nextDouble() - 0.5) * 2e-4);
+            BigDecimal up = BigDecimal.valueOf(Math.pow(target, 1 / 0.60)).setScale(6, RoundingMode.HALF_UP);
+            if (up.signum() <= 0) {
+                continue;
+            }
+
+            boolean passes = assertGate(pWin, up, down, "edge case " + c);
+            passed += passes ? 1 : 0;
+            failed += passes ? 0 : 1;
+        }
+        assertTrue(passed > CASES / 10 && failed > CASES / 10, "passed " + passed + ", failed " + failed);
+    }
+
+    @Test
+    @DisplayName("MtfPositionSizer constraints match the BigDecimal calculator chain")
+    public void testPositionSizer() {
+        Random rnd = new Random(7);
+        int compared = 0;
+        int exact = 0;
+        int gateEdge = 0;
+        for (int c = 0; c < CASES; c++) {
+            BigDecimal price = price(rnd);
+            BigDecimal floor = price.multiply(BigDecimal.valueOf(90 + rnd.nextInt(9), 2))
+                    .setScale(2, RoundingMode.HALF_UP);
+            BigDecimal ceiling = price.multiply(BigDecimal.valueOf(105 + rnd.nextInt(40), 2))
+                    .setScale(2, RoundingMode.HALF_UP);
+            BigDecimal pWin = BigDecimal.valueOf(40 + rnd.nextInt(51), 2);
+            BigDecimal pFill = BigDecimal.valueOf(50 + rnd.nextInt(51), 2);
+            BigDecimal kelly = BigDecimal.valueOf(rnd.nextInt(400_000), 6);
+            BigDecimal confluence = BigDecimal.valueOf(50 + rnd.nextInt(71), 2);
+            BigDecimal capSym = BigDecimal.valueOf(50_000 + rnd.nextInt(2_000_000));
+            int existingQty = rnd.nextInt(3) == 0 ? rnd.nextInt(200) : 0;
+            BigDecimal existingAvg = existingQty == 0 ? BigDecimal.ZERO
+                    : price.multiply(BigDecimal.valueOf(100 + rnd.nextInt(6), 2)).setScale(2, RoundingMode.HALF_UP);
+            List<Trade> trades = trades(rnd, "NSE:SBIN-EQ");
+            List<HistoricalCandle> candles = candles(rnd, 20 + rnd.nextInt(80));
+            BigDecimal atr = BigDecimal.valueOf(50 + rnd.nextInt(3_000), 2);
+            BigDecimal peak = BigDecimal.valueOf(1_000_000);
+            BigDecimal value = peak.multiply(BigDecimal.valueOf(90 + rnd.nextInt(11), 2));
+
+            MtfPositionSizer.PositionSizeResult result = MtfPositionSizer.calculatePositionSize(
+                    price, floor, ceiling, pWin, pFill, kelly, confluence, capSym, existingQty, existingAvg,
+                    trades, "NSE:SBIN-EQ", candles, atr, value, peak, config);
+            Map<String, Integer> expected = referenceConstraints(
+                    price, floor, ceiling, pWin, pFill, kelly, confluence, capSym, existingQty, existingAvg,
+                    trades, "NSE:SBIN-EQ", candles, atr, value, peak);
+            if (!expected.containsKey("UTILITY_GATE_FAILED")
+                    && result.allConstraints().containsKey("UTILITY_GATE_FAILED")) {
+                // Only a gate within rounding of 3× may be rejected here and passed there
+                BigDecimal ratio = UtilityAsymmetryCalculator.calculateAdvantageRatio(pWin,
+                        logReturn(ceiling, price), logReturn(floor, price), config);
+                assertTrue(Math.abs(ratio.doubleValue() / 3.0 - 1) < 1e-3, "gate case " + c + ": " + ratio);
+                gateEdge++;
+                continue;
+            }
+
+            compared++;
+            assertEquals(expected.keySet(), result.allConstraints().keySet(), "constraints case " + c);
+            boolean same = true;
+            for (Map.Entry<String, Integer> e : expected.entrySet()) {
+                int actual = result.allConstraints().get(e.getKey());
+                String message = e.getKey() + " case " + c;
+                if (CAPS.contains(e.getKey())) {
+                    assertCap(e.getValue(), actual, message);
+                } else {
+                    assertTrue(Math.abs(e.getValue() - actual) <= 1,
+                            message + ": expected " + e.getValue() + ", got " + actual);
+                }
+                same &= e.getValue() == actual;
+            }
+            exact += same ? 1 : 0;
+        }
+        assertTrue(compared >= CASES * 9 / 10, "compared " + compared + ", gate edge " + gateEdge);
+        assertTrue(exact >= compared * 98 / 100, "exact sizings: " + exact + " of " + compared);
+    }
+
+    /**
+     * The BigDecimal chain MtfPositionSizer ran before the kernels.
+     */
+    private Map<String, Integer> referenceConstraints(
+            BigDecimal zonePrice, BigDecimal floor, BigDecimal ceiling, BigDecimal pWin, BigDecimal pFill,
+            BigDecimal kelly, BigDecimal confluence, BigDecimal capSym, int existingQty, BigDecimal existingAvg,
+            List<Trade> trades, String symbol, List<HistoricalCandle> candles, BigDecimal atr,
+            BigDecimal value, BigDecimal peak) {
+        Map<String, Integer> constraints = new HashMap<>();
+
+        BigDecimal up = logReturn(ceiling, zonePrice);
+        BigDecimal down = logReturn(floor, zonePrice);
+        if (!UtilityAsymmetryCalculator.passesAdvantageGate(pWin, up, down, config)) {
+            constraints.put("UTILITY_GATE_FAILED", 0);
+            return constraints;
+        }
+
+        constraints.put("LOG_SAFE_POSITION", LogUtilityCalculator.calculateMaxLogSafeQty(
+                zonePrice, floor, config.maxPositionLogLoss(), existingQty, existingAvg, capSym));
+
+        BigDecimal stress = PortfolioRiskCalculator.calculateStressThrottle(
+                PortfolioRiskCalculator.calculatePortfolioDrawdown(trades, value, peak), config.maxStressDrawdown());
+        BigDecimal velocity = VelocityCalculator.calculateFinalVelocity(
+                VelocityCalculator.calculateRangeATR(candles, config.rangeLookbackBars(), atr),
+                VelocityCalculator.calculateBodyRatio(candles, atr, 15), stress, config);
+
+        int kellyQty = capSym.multiply(kelly.multiply(velocity)).multiply(config.kellyFraction())
+                .multiply(confluence).multiply(config.maxKellyMultiplier())
+                .divide(zonePrice, 0, RoundingMode.DOWN).intValue();
+        constraints.put("KELLY_SIZED", kellyQty);
+        constraints.put("FILL_WEIGHTED", new BigDecimal(kellyQty).multiply(pFill)
+                .setScale(0, RoundingMode.DOWN).intValue());
+        constraints.put("CAPITAL_AVAILABLE", capSym.subtract(existingAvg.multiply(new BigDecimal(existingQty)))
+                .max(BigDecimal.ZERO).divide(zonePrice, 0, RoundingMode.DOWN).intValue());
+
+        BigDecimal perLeg = LogUtilityCalculator.calculatePerLegLogLoss(zonePrice, floor);
+        constraints.put("PORTFOLIO_BUDGET", PortfolioRiskCalculator.convertExposureToQty(
+                PortfolioRiskCalculator.calculatePortfolioHeadroom(
+                        PortfolioRiskCalculator.calculateCurrentPortfolioLogLoss(trades),
+                        config.maxPortfolioLogLoss(), perLeg),
+                capSym, zonePrice));
+        constraints.put("SYMBOL_BUDGET", PortfolioRiskCalculator.convertExposureToQty(
+                PortfolioRiskCalculator.calculateSymbolHeadroom(
+                        PortfolioRiskCalculator.calculateSymbolLogLoss(trades, symbol),
+                        config.maxSymbolLogLoss(), perLeg),
+                capSym, zonePrice));
+        return constraints;
+    }
+
+    private static BigDecimal logReturn(BigDecimal to, BigDecimal from) {
+        return BigDecimal.valueOf(Math.log(to.divide(from, 6, RoundingMode.HALF_UP).doubleValue()));
+    }
+
+    /**
+     * Asserts the kernel gate never passes where the calculator's fails, and
+     * agrees with it unless the 6-decimal utility rounding decides; returns
+     * the calculator's result.
+     */
+    private boolean assertGate(BigDecimal pWin, BigDecimal up, BigDecimal down, String message) {
+        boolean expected = UtilityAsymmetryCalculator.passesAdvantageGate(pWin, up, down, config);
+        boolean actual = SizingKernels.passesAdvantageGate(pWin.doubleValue(), up.doubleValue(),
+                down.doubleValue(), params);
+        assertFalse(actual && !expected, message + ": passed where the calculator fails");
+
+        double p = pWin.doubleValue();
+        double margin = p * SizingKernels.utility(up.doubleValue(), 0.60, 1.40, 1.00)
+                + 3 * (1 - p) * SizingKernels.utility(down.doubleValue(), 0.60, 1.40, 1.00);
+        if (Math.abs(margin) > p * 1e-6 + 3 * (1 - p) * 1e-6) {
+            assertEquals(expected, actual, message);
+        }
+        return expected;
+    }
+
+    /** Risk caps: at most one share below the calculator's, never above. */
+    private static void assertCap(int expected, int actual, String message) {
+        assertTrue(actual <= expected && expected - actual <= 1,
+                message + ": expected " + expected + ", got " + actual);
+    }
+
+    private static boolean nearBucketEdge(double rangeAtr, double bodyRatio) {
+        for (double edge : new double[] { 3, 5, 8 }) {
+            if (Math.abs(rangeAtr - edge) < 1e-4) {
+                return true;
+            }
+        }
+        for (double edge : new double[] { 0.15, 0.25 }) {
+            if (Math.abs(bodyRatio - edge) < 1e-4) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void assertClose(BigDecimal expected, Double actual, double tolerance, String message) {
+        if (expected == null || actual == null) {
+            assertEquals(expected == null, actual == null, message + ": " + expected + " vs " + actual);
+            return;
+        }
+        assertEquals(expected.doubleValue(), actual, tolerance, message);
+    }
+
+    private static BigDecimal price(Random rnd) {
+        return BigDecimal.valueOf(5_000 + rnd.nextInt(500_000), 2);
+    }
+
+    private static List<HistoricalCandle> candles(Random rnd, int n) {
+        List<HistoricalCandle> candles = new ArrayList<>(n);
+        long close = 10_000 + rnd.nextInt(200_000);
+        for (int i = 0; i < n; i++) {
+            long open = Math.max(100, close + rnd.nextInt(801) - 400);
+            close = Math.max(100, open + rnd.nextInt(2_001) - 1_000);
+            long high = Math.max(open, close) + rnd.nextInt(500);
+            long low = Math.max(1, Math.min(open, close) - rnd.nextInt(500));
+            candles.add(new HistoricalCandle("NSE:SBIN-EQ", TimeframeType.DAILY,
+                    Instant.ofEpochSecond(1_700_000_000L + i * 86_400L),
+                    BigDecimal.valueOf(open, 2), BigDecimal.valueOf(high, 2), BigDecimal.valueOf(low, 2),
+                    BigDecimal.valueOf(close, 2), 1_000));
+        }
+        return candles;
+    }
+
+    private static List<Trade> trades(Random rnd, String symbol) {
+        List<Trade> trades = new ArrayList<>();
+        int n = rnd.nextInt(6);
+        for (int i = 0; i < n; i++) {
+            Trade trade = mock(Trade.class);
+            when(trade.symbol()).thenReturn(rnd.nextBoolean() ? symbol : "NSE:INFY-EQ");
+            when(trade.currentLogReturn()).thenReturn(BigDecimal.valueOf(-rnd.nextInt(1_500), 5));
+            trades.add(trade);
+        }
+        return trades;
+    }
+
+    private static MtfGlobalConfig config() {
+        MtfGlobalConfig config = mock(MtfGlobalConfig.class);
+        when(config.maxPositionLogLoss()).thenReturn(new BigDecimal("-0.08"));
+        when(config.maxPortfolioLogLoss()).thenReturn(new BigDecimal("-0.05"));
+        when(config.maxSymbolLogLoss()).thenReturn(new BigDecimal("-0.10"));
+        when(config.kellyFraction()).thenReturn(new BigDecimal("0.25"));
+        when(config.maxKellyMultiplier()).thenReturn(new BigDecimal("1.00"));
+        when(config.rangeAtrThresholdWide()).thenReturn(new BigDecimal("8.0"));
+        when(config.rangeAtrThresholdHealthy()).thenReturn(new BigDecimal("5.0"));
+        when(config.rangeAtrThresholdTight()).thenReturn(new BigDecimal("3.0"));
+        when(config.velocityMultiplierWide()).thenReturn(new BigDecimal("1.00"));
+        when(config.velocityMultiplierHealthy()).thenReturn(new BigDecimal("0.75"));
+        when(config.velocityMultiplierTight()).thenReturn(new BigDecimal("0.50"));
+        when(config.velocityMultiplierCompressed()).thenReturn(new BigDecimal("0.25"));
+        when(config.bodyRatioThresholdLow()).thenReturn(new BigDecimal("0.25"));
+        when(config.bodyRatioThresholdCritical()).thenReturn(new BigDecimal("0.15"));
+        when(config.bodyRatioPenaltyLow()).thenReturn(new BigDecimal("0.70"));
+        when(config.bodyRatioPenaltyCritical()).thenReturn(new BigDecimal("0.50"));
+        when(config.rangeLookbackBars()).thenReturn(50);
+        when(config.stressThrottleEnabled()).thenReturn(true);
+        when(config.maxStressDrawdown()).thenReturn(new BigDecimal("-0.05"));
+        when(config.utilityAlpha()).thenReturn(new BigDecimal("0.60"));
+        when(config.utilityBeta()).thenReturn(new BigDecimal("1.40"));
+        when(config.utilityLambda()).thenReturn(new BigDecimal("1.00"));
+        when(config.minAdvantageRatio()).thenReturn(new BigDecimal("3.0"));
+        when(config.utilityGateEnabled()).thenReturn(true);
+        return config;
+    }
+}
@@ -0,0 +1,278 @@
+package in.annupaper.service.tick;
+
+import in.annupaper.domain.model.BrokerAdapter;
+import in.annupaper.domain.model.Tick;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static in.annupaper.service.tick.TickRingTest.tick;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for TickDispatcher: per-symbol order and thread affinity across
+ * partitions, overflow accounting for each policy (DROP_OLDEST drops the
+ * oldest, CONFLATE_LATEST keeps the latest per symbol, BLOCK loses nothing),
+ * enqueue times passed to consumers, and draining on stop.
+ */
+@DisplayName("Tick Dispatcher Tests")
+public class TickDispatcherTest {
+
+    private TickDispatcher dispatcher;
+
+    @AfterEach
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.stop(1_000);
+        }
+    }
+
+    @Test
+    @DisplayName("Each symbol's ticks arrive in order, on one thread, across partitions")
+    public void testPerSymbolOrdering() throws InterruptedException {
+        dispatcher = new TickDispatcher(Map.of(), 4, 64);
+        int symbols = 20;
+        int perSymbol = 2_000;
+        Map<String, Long> lastPrice = new ConcurrentHashMap<>();
+        Map<String, Thread> threadOf = new ConcurrentHashMap<>();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        AtomicInteger threadSwitches = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(symbols * perSymbol);
+        dispatcher.addStage("exits", listener(t -> {
+            Long last = lastPrice.put(t.symbol(), t.lastPricePaise());
+            if (last != null && last >= t.lastPricePaise()) {
+                outOfOrder.incrementAndGet();
+            }
+            if (threadOf.putIfAbsent(t.symbol(), Thread.currentThread()) != null
+                    && threadOf.get(t.symbol()) != Thread.currentThread()) {
+                threadSwitches.incrementAndGet();
+            }
+            done.countDown();
+        }), TickDispatcher.Policy.BLOCK);
+
+        for (int i = 0; i < perSymbol; i++) {
+            for (int s = 0; s < symbols; s++) {
+                dispatcher.onTick(tick("SYM" + s, i));
+            }
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(0, outOfOrder.get());
+        assertEquals(0, threadSwitches.get());
+        assertEquals(symbols, lastPrice.size());
+        assertTrue(threadOf.values().stream().distinct().count() > 1, "symbols spread over partitions");
+    }
+
+    @Test
+    @DisplayName("DROP_OLDEST: a full partition drops its oldest ticks and counts them")
+    public void testDropOldest() throws InterruptedException {
+        dispatcher = new TickDispatcher(Map.of(), 1, 4);
+        BlockingListener consumer = new BlockingListener();
+        dispatcher.addStage("relay", consumer, TickDispatcher.Policy.DROP_OLDEST);
+
+        dispatcher.onTick(tick("SBIN", 0));
+        assertTrue(consumer.entered.await(5, TimeUnit.SECONDS)); // worker holds tick 0
+        for (int i = 1; i < 10; i++) {
+            dispatcher.onTick(tick("SBIN", i));
+        }
+        consumer.release.countDown();
+        dispatcher.stop(5_000);
+
+        assertEquals(List.of(0L, 6L, 7L, 8L, 9L), consumer.prices);
+        Map<String, Long> m = dispatcher.getMetrics();
+        assertEquals(10L, m.get("relay.enqueued"));
+        assertEquals(5L, m.get("relay.dropped"));
+        assertEquals(5L, m.get("relay.delivered"));
+    }
+
+    @Test
+    @DisplayName("CONFLATE_LATEST: a busy consumer sees only each symbol's latest tick")
+    public void testConflateLatest() throws InterruptedException {
+        dispatcher = new TickDispatcher(Map.of(), 1, 4);
+        BlockingListener consumer = new BlockingListener();
+        dispatcher.addStage("signals", consumer, TickDispatcher.Policy.CONFLATE_LATEST);
+
+        dispatcher.onTick(tick("SBIN", 0));
+        assertTrue(consumer.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 100; i++) {
+            dispatcher.onTick(tick("SBIN", i));
+            dispatcher.onTick(tick("INFY", 1_000 + i));
+        }
+        consumer.release.countDown();
+        dispatcher.stop(5_000);
+
+        assertEquals(List.of(0L, 100L, 1_100L), consumer.prices);
+        Map<String, Long> m = dispatcher.getMetrics();
+        assertEquals(201L, m.get("signals.enqueued"));
+        assertEquals(198L, m.get("signals.conflated"));
+        assertEquals(3L, m.get("signals.delivered"));
+        assertEquals(0L, m.get("signals.dropped"));
+    }
+
+    @Test
+    @DisplayName("BLOCK: the producer waits for space and no tick is lost")
+    public void testBlock() throws InterruptedException {
+        dispatcher = new TickDispatcher(Map.of(), 1, 4);
+        BlockingListener consumer = new BlockingListener();
+        dispatcher.addStage("exits", consumer, TickDispatcher.Policy.BLOCK);
+
+        dispatcher.onTick(tick("SBIN", 0));
+        assertTrue(consumer.entered.await(5, TimeUnit.SECONDS));
+        Thread producer = new Thread(() -> {
+            for (int i = 1; i < 20; i++) {
+                dispatcher.onTick(tick("SBIN", i));
+            }
+        });
+        producer.start();
+        Thread.sleep(50);
+        assertTrue(producer.isAlive(), "blocked on the full partition");
+
+        consumer.release.countDown();
+        producer.join(5_000);
+        dispatcher.stop(5_000);
+
+        List<Long> expected = new ArrayList<>();
+        for (long i = 0; i < 20; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, consumer.prices);
+        assertEquals(0L, dispatcher.getMetrics().get("exits.dropped"));
+        assertTrue(dispatcher.getMetrics().get("exits.blockedMs") > 0);
+    }
+
+    @Test
+    @DisplayName("Stages are independent: a stalled stage does not hold back another")
+    public void testStagesIndependent() throws InterruptedException {
+        dispatcher = new TickDispatcher(Map.of(), 1, 4);
+        BlockingListener stalled = new BlockingListener();
+        CountDownLatch fast = new CountDownLatch(50);
+        dispatcher.addStage("slow", stalled, TickDispatcher.Policy.DROP_OLDEST);
+        dispatcher.addStage("fast", listener(t -> fast.countDown()), TickDispatcher.Policy.BLOCK);
+
+        for (int i = 0; i < 50; i++) {
+            dispatcher.onTick(tick("SBIN", i));
+        }
+
+        assertTrue(fast.await(5, TimeUnit.SECONDS));
+        stalled.release.countDown();
+    }
+
+    @Test
+    @DisplayName("Consumers get the tick's enqueue time; consumer errors are counted, not fatal")
+    public void testEnqueueTimeAndErrors() throws InterruptedException {
+        dispatcher = new TickDispatcher(Map.of(), 1, 16);
+        List<Long> receivedNanos = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2);
+        dispatcher.addStage("exits", new BrokerAdapter.TickListener() {
+            @Override
+            public void onTick(Tick tick) {
+                throw new AssertionError("the dispatcher passes the enqueue time");
+            }
+
+            @Override
+            public void onTick(Tick tick, long enqueuedNanos) {
+                receivedNanos.add(enqueuedNanos);
+                done.countDown();
+                if (tick.lastPricePaise() == 1) {
+                    throw new IllegalStateException("consumer failure");
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+            }
+        }, TickDispatcher.Policy.BLOCK);
+
+        long before = System.nanoTime();
+        dispatcher.onTick(tick("SBIN", 1));
+        dispatcher.onTick(tick("SBIN", 2));
+        long after = System.nanoTime();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (long at : receivedNanos) {
+            assertTrue(at - before >= 0 && after - at >= 0);
+        }
+        dispatcher.stop(5_000);
+        assertEquals(1L, dispatcher.getMetrics().get("exits.errors"));
+        assertEquals(2L, dispatcher.getMetrics().get("exits.delivered"));
+    }
+
+    @Test
+    @DisplayName("stop() drains queued ticks, then ticks are no longer accepted")
+    public void testShutdownDrains() {
+        dispatcher = new TickDispatcher(Map.of(), 2, 1_024);
+        List<Long> prices = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.addStage("candles", listener(t -> {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            prices.add(t.lastPricePaise());
+        }), TickDispatcher.Policy.BLOCK);
+
+        for (int i = 0; i < 200; i++) {
+            dispatcher.onTick(tick(i % 2 == 0 ? "SBIN" : "INFY", i));
+        }
+        dispatcher.stop(10_000);
+
+        assertEquals(200, prices.size());
+        assertEquals(0L, dispatcher.getMetrics().get("candles.queueDepth"));
+
+        dispatcher.onTick(tick("SBIN", 999));
+        assertEquals(200L, dispatcher.getMetrics().get("candles.enqueued"));
+        assertEquals(200, prices.size());
+    }
+
+    @Test
+    @DisplayName("Policy specs parse per stage; malformed entries are ignored")
+    public void testParsePolicies() {
+        assertEquals(Map.of("exits", TickDispatcher.Policy.BLOCK, "signals", TickDispatcher.Policy.CONFLATE_LATEST),
+                TickDispatcher.parsePolicies("exits=block, signals=CONFLATE_LATEST, relay=FAST, junk"));
+        assertTrue(TickDispatcher.parsePolicies(null).isEmpty());
+    }
+
+    private static BrokerAdapter.TickListener listener(java.util.function.Consumer<Tick> onTick) {
+        return new BrokerAdapter.TickListener() {
+            @Override
+            public void onTick(Tick tick) {
+                onTick.accept(tick);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+            }
+        };
+    }
+
+    /** Holds the first tick until released; records every price. */
+    private static final class BlockingListener implements BrokerAdapter.TickListener {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Long> prices = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void onTick(Tick tick) {
+            prices.add(tick.lastPricePaise());
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+        }
+    }
+}
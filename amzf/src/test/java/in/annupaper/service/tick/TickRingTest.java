@@ -0,0 +1,175 @@
+package in.annupaper.service.tick;
+
+import in.annupaper.domain.model.Tick;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for TickRing: capacity rounding, FIFO order across many laps of the
+ * ring, full/empty edges, and hand-off between threads (single producer and
+ * consumer in order, several of each without loss or duplication).
+ */
+@DisplayName("Tick Ring Tests")
+public class TickRingTest {
+
+    @Test
+    @DisplayName("Capacity rounds up to a power of two")
+    public void testCapacity() {
+        assertEquals(2, new TickRing(1).capacity());
+        assertEquals(2, new TickRing(2).capacity());
+        assertEquals(4, new TickRing(3).capacity());
+        assertEquals(4, new TickRing(4).capacity());
+        assertEquals(8, new TickRing(5).capacity());
+        assertEquals(1024, new TickRing(1000).capacity());
+    }
+
+    @Test
+    @DisplayName("Ticks come out in order with their enqueue times across many wraparounds")
+    public void testWraparound() {
+        TickRing ring = new TickRing(4);
+        long[] at = new long[1];
+        long next = 0;
+        long expected = 0;
+        for (int lap = 0; lap < 100; lap++) {
+            // 3 in, 3 out: the head and tail keep moving around the 4 slots
+            for (int i = 0; i < 3; i++) {
+                assertTrue(ring.offer(tick("SBIN", next), next * 10));
+                next++;
+            }
+            for (int i = 0; i < 3; i++) {
+                Tick t = ring.poll(at);
+                assertEquals(expected, t.lastPricePaise());
+                assertEquals(expected * 10, at[0]);
+                expected++;
+            }
+            assertEquals(0, ring.size());
+        }
+        assertNull(ring.poll(at));
+    }
+
+    @Test
+    @DisplayName("A full ring rejects offers until a tick is polled")
+    public void testFull() {
+        TickRing ring = new TickRing(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(tick("SBIN", i), i));
+        }
+        assertEquals(4, ring.size());
+        assertFalse(ring.offer(tick("SBIN", 4), 4));
+
+        assertEquals(0, ring.poll(null).lastPricePaise());
+        assertTrue(ring.offer(tick("SBIN", 4), 4));
+        assertFalse(ring.offer(tick("SBIN", 5), 5));
+
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, ring.poll(null).lastPricePaise());
+        }
+        assertNull(ring.poll(null));
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    @DisplayName("One producer and one consumer hand off every tick in order")
+    public void testSpscHandoff() throws InterruptedException {
+        TickRing ring = new TickRing(64);
+        int count = 100_000;
+        long[] received = new long[count];
+        Thread consumer = new Thread(() -> {
+            int n = 0;
+            while (n < count) {
+                Tick t = ring.poll(null);
+                if (t == null) {
+                    Thread.yield();
+                } else {
+                    received[n++] = t.lastPricePaise();
+                }
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < count; i++) {
+            while (!ring.offer(tick("SBIN", i), i)) {
+                Thread.yield();
+            }
+        }
+        consumer.join(30_000);
+
+        assertFalse(consumer.isAlive());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, received[i]);
+        }
+    }
+
+    @Test
+    @DisplayName("Several producers and consumers: every tick is delivered exactly once")
+    public void testMpmcHandoff() throws InterruptedException {
+        TickRing ring = new TickRing(16);
+        int producers = 4;
+        int perProducer = 20_000;
+        int total = producers * perProducer;
+        ConcurrentHashMap<Long, Boolean> seen = new ConcurrentHashMap<>();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicInteger consumed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long base = (long) p * perProducer;
+            threads.add(new Thread(() -> {
+                await(start);
+                for (long i = base; i < base + perProducer; i++) {
+                    while (!ring.offer(tick("SBIN", i), i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < 2; c++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                while (consumed.get() < total) {
+                    Tick t = ring.poll(null);
+                    if (t == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    if (seen.put(t.lastPricePaise(), Boolean.TRUE) != null) {
+                        duplicates.incrementAndGet();
+                    }
+                    consumed.incrementAndGet();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread t : threads) {
+            t.join(30_000);
+            assertFalse(t.isAlive());
+        }
+
+        assertEquals(0, duplicates.get());
+        assertEquals(total, seen.size());
+        assertEquals(0, ring.size());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static Tick tick(String symbol, long price) {
+        return new Tick(symbol, price, price, price, price, price, 0, price, price, 0, 0,
+                Instant.EPOCH, "TEST");
+    }
+}
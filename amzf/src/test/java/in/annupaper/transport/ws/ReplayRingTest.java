@@ -0,0 +1,154 @@
+package in.annupaper.transport.ws;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import in.annupaper.domain.model.EventType;
+import in.annupaper.domain.model.TradeEvent;
+import in.annupaper.domain.model.WsSession;
+import io.prometheus.client.CollectorRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the WS resume replay ring: hits only when nothing after afterSeq
+ * has been evicted, merged seq order, subscription filtering and the bound on
+ * per-user rings.
+ */
+@DisplayName("Replay Ring Tests")
+public class ReplayRingTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private CollectorRegistry registry;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new CollectorRegistry();
+    }
+
+    @Test
+    @DisplayName("GLOBAL and the user's own events are merged in seq order after afterSeq")
+    public void testReplayMergesInSeqOrder() {
+        ReplayRing ring = ring(100, 100, 10);
+        ring.setFloor(10);
+        ring.add(user(11, "u1"));
+        ring.add(user(12, "u1"));
+        ring.add(global(13));
+        ring.add(user(14, "u2"));
+        ring.add(user(15, "u1"));
+
+        assertEquals(List.of(11L, 12L, 13L, 15L), seqs(ring.replay(10, sub("u1"))));
+        assertEquals(List.of(13L, 15L), seqs(ring.replay(12, sub("u1"))));
+        assertEquals(List.of(13L, 14L), seqs(ring.replay(10, sub("u2"))));
+        assertEquals(3.0, registry.getSampleValue("ws_replay_hits_total"));
+    }
+
+    @Test
+    @DisplayName("A resume from before the floor or an evicted event is a miss")
+    public void testMissWhenEvicted() {
+        ReplayRing ring = ring(3, 2, 10);
+        assertNull(ring.replay(0, sub("u1")), "floor unknown");
+
+        ring.setFloor(10);
+        for (long seq = 11; seq <= 14; seq++) {
+            ring.add(global(seq));
+        }
+        assertNull(ring.replay(9, sub("u1")), "predates the ring");
+        assertNull(ring.replay(10, sub("u1")), "11 evicted from the global ring");
+        assertEquals(List.of(12L, 13L, 14L), seqs(ring.replay(11, sub("u1"))));
+
+        ring.add(user(15, "u1"));
+        ring.add(user(16, "u1"));
+        ring.add(user(17, "u1"));
+        assertNull(ring.replay(14, sub("u1")), "15 evicted from the user ring");
+        assertEquals(List.of(16L, 17L), seqs(ring.replay(15, sub("u1"))));
+        assertEquals(4.0, registry.getSampleValue("ws_replay_misses_total"));
+    }
+
+    @Test
+    @DisplayName("Late and duplicate events are kept sorted and unique; unpersisted events are ignored")
+    public void testOrderingAndDuplicates() {
+        ReplayRing ring = ring(10, 10, 10);
+        ring.setFloor(10);
+        ring.add(global(13));
+        ring.add(global(11));
+        ring.add(global(12));
+        ring.add(global(12));
+        ring.add(global(0));
+
+        assertEquals(List.of(11L, 12L, 13L), seqs(ring.replay(10, sub("u1"))));
+    }
+
+    @Test
+    @DisplayName("Topic and broker subscriptions filter the replay")
+    public void testSubscriptionFilter() {
+        ReplayRing ring = ring(10, 10, 10);
+        ring.setFloor(10);
+        ring.add(TradeEvent.userBroker(11, EventType.ORDER_FILLED, "u1", "ZERODHA", "ub1", payload(), "system"));
+        ring.add(TradeEvent.userBroker(12, EventType.ORDER_FILLED, "u1", "FYERS", "ub2", payload(), "system"));
+        ring.add(global(13));
+
+        WsSession.Subscription ub1 = new WsSession.Subscription("u1", Set.of(), Set.of("ub1"));
+        assertEquals(List.of(11L, 13L), seqs(ring.replay(10, ub1)));
+
+        WsSession.Subscription ordersOnly = new WsSession.Subscription("u1", Set.of("ORDER_FILLED"), Set.of());
+        assertEquals(List.of(11L, 12L), seqs(ring.replay(10, ordersOnly)));
+    }
+
+    @Test
+    @DisplayName("Per-user rings are bounded; the least recently written user is dropped and misses")
+    public void testUserRingsBounded() {
+        ReplayRing ring = ring(10, 10, 2);
+        ring.setFloor(10);
+        ring.add(user(11, "u1"));
+        ring.add(user(12, "u2"));
+        ring.add(user(13, "u1")); // u1 written more recently than u2
+        ring.add(user(14, "u3")); // drops u2
+
+        assertEquals(2L, ring.getMetrics().get("replayUsers"));
+        assertEquals(1.0, registry.getSampleValue("ws_replay_users_dropped_total"));
+        assertEquals(List.of(11L, 13L), seqs(ring.replay(10, sub("u1"))));
+        assertEquals(List.of(14L), seqs(ring.replay(13, sub("u3"))));
+
+        // u2's events are gone: resumes before them must go to the DB
+        assertNull(ring.replay(11, sub("u2")));
+        assertEquals(List.of(), seqs(ring.replay(12, sub("u2"))));
+        assertNull(ring.replay(10, sub("u4")), "users without a ring cannot prove nothing was dropped");
+
+        // A dropped user coming back starts above what was dropped
+        ring.add(user(15, "u2"));
+        assertNull(ring.replay(11, sub("u2")));
+        assertEquals(List.of(15L), seqs(ring.replay(12, sub("u2"))));
+    }
+
+    private ReplayRing ring(int globalCapacity, int userCapacity, int maxUsers) {
+        return new ReplayRing(globalCapacity, userCapacity, maxUsers, registry);
+    }
+
+    private static WsSession.Subscription sub(String userId) {
+        return new WsSession.Subscription(userId, Set.of(), Set.of());
+    }
+
+    private static TradeEvent global(long seq) {
+        return TradeEvent.global(seq, EventType.SIGNAL_GENERATED, payload(), "system");
+    }
+
+    private static TradeEvent user(long seq, String userId) {
+        return TradeEvent.user(seq, EventType.CAPITAL_UPDATE, userId, payload(), "system");
+    }
+
+    private static JsonNode payload() {
+        return MAPPER.createObjectNode();
+    }
+
+    private static List<Long> seqs(List<TradeEvent> events) {
+        assertNotNull(events, "expected a replay hit");
+        return events.stream().map(TradeEvent::seq).toList();
+    }
+}
@@ -0,0 +1,354 @@
+package in.annupaper.transport.ws;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import in.annupaper.application.port.output.TradeEventRepository;
+import in.annupaper.domain.model.EventType;
+import in.annupaper.domain.model.TradeEvent;
+import in.annupaper.domain.model.WsSession;
+import io.prometheus.client.CollectorRegistry;
+import io.undertow.websockets.core.WebSocketCallback;
+import io.undertow.websockets.core.WebSocketChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for WsHub fan-out, session budgets, resume replies and close handling,
+ * driven through flushBatch() with a recording frame sender in place of
+ * Undertow.
+ */
+@DisplayName("WebSocket Hub Tests")
+public class WsHubTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private CollectorRegistry registry;
+    private RecordingSender sender;
+    private WsHub hub;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new CollectorRegistry();
+        sender = new RecordingSender();
+        hub = new WsHub(token -> null, registry, sender);
+    }
+
+    @Test
+    @DisplayName("Each event is encoded once and each idle channel gets its own pooled copy of the group frame")
+    public void testFanOutSharesEncodingAndReleasesBuffers() throws Exception {
+        WebSocketChannel a1 = connect("s1", "u1");
+        WebSocketChannel a2 = connect("s2", "u1");
+        WebSocketChannel b1 = connect("s3", "u2");
+
+        hub.publish(TradeEvent.global(1, EventType.SIGNAL_GENERATED, payload("g"), "system"));
+        hub.publish(TradeEvent.user(2, EventType.CAPITAL_UPDATE, "u1", payload("u"), "system"));
+        hub.flushBatch();
+
+        assertEquals(3, sender.frames.size());
+        assertEquals(2.0, metric("ws_events_encoded_total"), "three recipients, two encodings");
+        Frame fa1 = sender.last(a1);
+        Frame fa2 = sender.last(a2);
+        Frame fb1 = sender.last(b1);
+        assertEquals(2, events(fa1).size());
+        assertEquals(1, events(fb1).size());
+        assertEquals(withoutSeq(fa1), withoutSeq(fa2), "same group, same body");
+        assertNotEquals(seq(fa1), seq(fa2), "each channel gets its own seq");
+        assertNotSame(fa1.buffer(), fa2.buffer());
+
+        // Buffers go back to the pool when the sends complete, and are reused
+        assertEquals(3.0, metric("ws_buffer_pool_allocated"));
+        assertEquals(0.0, metric("ws_buffer_pool_idle"));
+        sender.completeAll();
+        assertEquals(3.0, metric("ws_buffer_pool_idle"));
+
+        hub.publish(TradeEvent.global(3, EventType.SIGNAL_GENERATED, payload("g2"), "system"));
+        hub.flushBatch();
+        assertEquals(6, sender.frames.size());
+        assertEquals(3.0, metric("ws_buffer_pool_allocated"));
+        sender.completeAll();
+        assertEquals(3.0, metric("ws_buffer_pool_idle"));
+    }
+
+    @Test
+    @DisplayName("A failed send releases its buffer and lets the session send again")
+    public void testFailedSendReleasesBuffer() throws Exception {
+        WebSocketChannel ch = connect("s1", "u1");
+
+        hub.publish(TradeEvent.global(1, EventType.SIGNAL_GENERATED, payload("a"), "system"));
+        hub.flushBatch();
+        sender.failAll();
+        assertEquals(1.0, metric("ws_buffer_pool_idle"));
+
+        hub.publish(TradeEvent.global(2, EventType.SIGNAL_GENERATED, payload("b"), "system"));
+        hub.flushBatch();
+        assertEquals(2, sender.frames.size());
+        assertEquals(2L, events(sender.last(ch)).get(0).get("seq").asLong());
+    }
+
+    @Test
+    @DisplayName("A slow consumer over budget is closed with its resume seq; other sessions keep flowing")
+    public void testSlowConsumerDisconnected() throws Exception {
+        hub.setSessionBudgetBytes(64 * 1024);
+        WebSocketChannel slow = connect("s1", "u1");
+        WebSocketChannel fast = connect("s2", "u2");
+
+        hub.publish(TradeEvent.global(1, EventType.SIGNAL_GENERATED, payload("1"), "system"));
+        hub.flushBatch();
+        sender.completeAll();
+
+        // The slow client never completes this frame
+        hub.publish(TradeEvent.global(2, EventType.SIGNAL_GENERATED, payload("2"), "system"));
+        hub.flushBatch();
+        sender.last(fast).callback().complete(fast, null);
+
+        for (long seq = 3; seq < 1000; seq++) {
+            hub.publish(TradeEvent.global(seq, EventType.SIGNAL_GENERATED, payload("x".repeat(100)), "system"));
+        }
+        hub.flushBatch();
+
+        assertEquals(List.of("1013 slow consumer; resume afterSeq=1"), sender.closes);
+        assertEquals(1.0, metric("ws_slow_disconnects_total"));
+        assertEquals(1.0, metric("ws_connections"));
+        assertEquals(997, events(sender.last(fast)).size());
+
+        int sent = sender.frames.size();
+        sender.completeAll();
+        hub.publish(TradeEvent.global(1000, EventType.SIGNAL_GENERATED, payload("y"), "system"));
+        hub.flushBatch();
+        assertEquals(sent + 1, sender.frames.size());
+        assertEquals(fast, sender.last(fast).channel());
+    }
+
+    @Test
+    @DisplayName("Control replies wait for the in-flight frame and go out ahead of the backlog")
+    public void testControlRepliesAreBudgeted() throws Exception {
+        WebSocketChannel ch = connect("s1", "u1");
+        hub.publish(TradeEvent.global(1, EventType.SIGNAL_GENERATED, payload("1"), "system"));
+        hub.flushBatch();
+
+        hub.handleClientMessage(ch, "{\"action\":\"ping\",\"nonce\":\"n1\"}");
+        hub.handleClientMessage(ch, "{}");
+        hub.publish(TradeEvent.global(2, EventType.SIGNAL_GENERATED, payload("2"), "system"));
+        hub.flushBatch();
+        assertEquals(1, sender.frames.size(), "nothing jumps the in-flight frame");
+        assertEquals(2.0, metric("ws_control_frames_total"));
+
+        sender.completeAll();
+        hub.flushBatch();
+        JsonNode pong = MAPPER.readTree(sender.last(ch).text());
+        assertEquals("PONG", pong.get("type").asText());
+        assertEquals("n1", pong.get("payload").get("nonce").asText());
+        assertTrue(pong.get("seq").asLong() > 0);
+
+        sender.completeAll();
+        hub.flushBatch();
+        JsonNode error = MAPPER.readTree(sender.last(ch).text());
+        assertEquals("ERROR", error.get("type").asText());
+        assertEquals("Missing 'action'", error.get("payload").get("error").asText());
+
+        sender.completeAll();
+        hub.flushBatch();
+        assertEquals(2L, events(sender.last(ch)).get(0).get("seq").asLong());
+        assertEquals(4, sender.frames.size());
+    }
+
+    @Test
+    @DisplayName("A closed session gets nothing more and its in-flight buffer is still returned")
+    public void testCloseRemovesSession() throws Exception {
+        WebSocketChannel ch = connect("s1", "u1");
+        hub.publish(TradeEvent.global(1, EventType.SIGNAL_GENERATED, payload("1"), "system"));
+        hub.flushBatch();
+
+        hub.cleanup(ch);
+        verify(ch).close();
+        assertEquals(0.0, metric("ws_connections"));
+
+        sender.completeAll();
+        assertEquals(1.0, metric("ws_buffer_pool_idle"));
+        hub.publish(TradeEvent.global(2, EventType.SIGNAL_GENERATED, payload("2"), "system"));
+        hub.flushBatch();
+        assertEquals(1, sender.frames.size());
+        assertEquals(0.0, metric("ws_outbound_bytes"));
+    }
+
+    @Test
+    @DisplayName("REPLAY waits for the in-flight frame and live BATCH frames wait for the REPLAY")
+    public void testReplayGoesThroughOutbound() throws Exception {
+        WebSocketChannel ch = connect("s1", "u1");
+        hub.publish(TradeEvent.global(1, EventType.SIGNAL_GENERATED, payload("1"), "system"));
+        hub.publish(TradeEvent.global(2, EventType.SIGNAL_GENERATED, payload("2"), "system"));
+        hub.flushBatch();
+
+        hub.handleClientMessage(ch, "{\"action\":\"resume\",\"afterSeq\":0}");
+        hub.publish(TradeEvent.global(3, EventType.SIGNAL_GENERATED, payload("3"), "system"));
+        hub.flushBatch();
+        assertEquals(1, sender.frames.size(), "nothing jumps the in-flight frame");
+
+        sender.completeAll();
+        hub.publish(TradeEvent.global(4, EventType.SIGNAL_GENERATED, payload("4"), "system"));
+        hub.flushBatch();
+        JsonNode replay = MAPPER.readTree(sender.last(ch).text());
+        assertEquals("REPLAY", replay.get("type").asText());
+        assertEquals("memory", replay.get("payload").get("source").asText());
+        assertTrue(replay.get("payload").get("final").asBoolean());
+        assertEquals(2, replay.get("payload").get("events").size());
+
+        sender.completeAll();
+        hub.flushBatch();
+        JsonNode live = events(sender.last(ch));
+        assertEquals(2, live.size());
+        assertEquals(3L, live.get(0).get("seq").asLong());
+        assertEquals(4L, live.get(1).get("seq").asLong());
+    }
+
+    @Test
+    @DisplayName("Large replays go out one chunk per completed frame")
+    public void testReplayChunked() throws Exception {
+        WebSocketChannel ch = connect("s1", "u1");
+        for (long seq = 1; seq <= 1200; seq++) {
+            hub.publish(TradeEvent.global(seq, EventType.SIGNAL_GENERATED, payload("e"), "system"));
+        }
+        hub.flushBatch();
+        sender.completeAll();
+
+        hub.handleClientMessage(ch, "{\"action\":\"resume\",\"afterSeq\":0}");
+        int[] sizes = new int[3];
+        for (int i = 0; i < 3; i++) {
+            hub.flushBatch();
+            hub.flushBatch();
+            JsonNode replay = MAPPER.readTree(sender.last(ch).text()).get("payload");
+            sizes[i] = replay.get("events").size();
+            assertEquals(i == 2, replay.get("final").asBoolean());
+            assertEquals(2 + i, sender.frames.size(), "one chunk in flight at a time");
+            sender.completeAll();
+        }
+        assertArrayEquals(new int[] { 500, 500, 200 }, sizes);
+        hub.flushBatch();
+        assertEquals(4, sender.frames.size());
+    }
+
+    @Test
+    @DisplayName("Live frames are held while a resume is loaded from the DB")
+    public void testReplayFromDbHoldsLiveFrames() throws Exception {
+        TradeEventRepository repo = mock(TradeEventRepository.class);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repo.latestSeq()).thenReturn(100L);
+        when(repo.listAfterSeqForUser(50L, 2000, "u1")).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(TradeEvent.user(60, EventType.CAPITAL_UPDATE, "u1", payload("60"), "system"));
+        });
+        hub.setReplayFallback(repo);
+        WebSocketChannel ch = connect("s1", "u1");
+
+        hub.handleClientMessage(ch, "{\"action\":\"resume\",\"afterSeq\":50}");
+        hub.publish(TradeEvent.global(101, EventType.SIGNAL_GENERATED, payload("101"), "system"));
+        hub.flushBatch();
+        assertEquals(0, sender.frames.size(), "live events wait for the replay");
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sender.frames.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+            hub.flushBatch();
+        }
+        JsonNode replay = MAPPER.readTree(sender.last(ch).text());
+        assertEquals("REPLAY", replay.get("type").asText());
+        assertEquals("db", replay.get("payload").get("source").asText());
+        assertTrue(replay.get("payload").get("complete").asBoolean());
+        assertEquals(60L, replay.get("payload").get("events").get(0).get("seq").asLong());
+        assertEquals(1.0, metric("ws_replay_db_queries_total"));
+
+        sender.completeAll();
+        hub.flushBatch();
+        assertEquals(101L, events(sender.last(ch)).get(0).get("seq").asLong());
+    }
+
+    private WebSocketChannel connect(String sessionId, String userId) {
+        WebSocketChannel channel = mock(WebSocketChannel.class);
+        hub.register(channel, new WsSession(sessionId, userId));
+        return channel;
+    }
+
+    private double metric(String name) {
+        Double value = registry.getSampleValue(name);
+        return value == null ? Double.NaN : value;
+    }
+
+    private static JsonNode payload(String id) {
+        return MAPPER.createObjectNode().put("id", id);
+    }
+
+    private static JsonNode events(Frame frame) throws Exception {
+        JsonNode msg = MAPPER.readTree(frame.text());
+        assertEquals("BATCH", msg.get("type").asText());
+        return msg.get("payload").get("events");
+    }
+
+    private static long seq(Frame frame) throws Exception {
+        return MAPPER.readTree(frame.text()).get("seq").asLong();
+    }
+
+    private static String withoutSeq(Frame frame) {
+        return frame.text().substring(0, frame.text().lastIndexOf("\"seq\":"));
+    }
+
+    record Frame(WebSocketChannel channel, String text, ByteBuffer buffer, WebSocketCallback<Void> callback) {
+    }
+
+    static final class RecordingSender implements WsHub.FrameSender {
+        final List<Frame> frames = new ArrayList<>();
+        final List<String> closes = new ArrayList<>();
+        private int completed;
+
+        @Override
+        public void sendText(ByteBuffer frame, WebSocketChannel channel, WebSocketCallback<Void> callback) {
+            byte[] bytes = new byte[frame.remaining()];
+            frame.duplicate().get(bytes);
+            frames.add(new Frame(channel, new String(bytes, StandardCharsets.UTF_8), frame, callback));
+        }
+
+        @Override
+        public void sendClose(int code, String reason, WebSocketChannel channel) {
+            closes.add(code + " " + reason);
+        }
+
+        Frame last(WebSocketChannel channel) {
+            for (int i = frames.size() - 1; i >= 0; i--) {
+                if (frames.get(i).channel() == channel) {
+                    return frames.get(i);
+                }
+            }
+            throw new AssertionError("no frame sent to " + channel);
+        }
+
+        void completeAll() {
+            for (; completed < frames.size(); completed++) {
+                Frame f = frames.get(completed);
+                if (f.callback() != null) {
+                    f.callback().complete(f.channel(), null);
+                }
+            }
+        }
+
+        void failAll() {
+            for (; completed < frames.size(); completed++) {
+                Frame f = frames.get(completed);
+                if (f.callback() != null) {
+                    f.callback().onError(f.channel(), null, new IOException("reset"));
+                }
+            }
+        }
+    }
+}
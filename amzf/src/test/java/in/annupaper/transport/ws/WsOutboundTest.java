@@ -0,0 +1,177 @@
+package in.annupaper.transport.ws;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import in.annupaper.domain.model.EventType;
+import in.annupaper.domain.model.TradeEvent;
+import in.annupaper.domain.model.WsSession;
+import io.prometheus.client.CollectorRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the per-session outbound budget stages.
+ */
+@DisplayName("WebSocket Outbound Budget Tests")
+public class WsOutboundTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long BUDGET = 4000;
+    private static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(30);
+    // Every test event is 100 bytes encoded (+1 separator in the backlog)
+    private static final int EVENT_BYTES = 100;
+
+    private CollectorRegistry registry;
+    private WsOutbound out;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new CollectorRegistry();
+        out = new WsOutbound(null, new WsSession("s1", "u1"), new WsOutbound.Metrics(registry));
+    }
+
+    @Test
+    @DisplayName("Below a quarter of the budget the backlog is left alone")
+    public void testNormal() {
+        for (int i = 0; i < 5; i++) {
+            out.enqueue(tick("A"), new byte[EVENT_BYTES]);
+        }
+        assertEquals(WsOutbound.Stage.NORMAL, applyBudget());
+        assertEquals(5, drain().size());
+    }
+
+    @Test
+    @DisplayName("Over a quarter of the budget TICKs are conflated to the latest per symbol")
+    public void testConflate() {
+        for (int i = 0; i < 10; i++) {
+            out.enqueue(signal(), json(i));
+        }
+        for (int i = 10; i < 14; i++) {
+            out.enqueue(tick(i % 2 == 0 ? "A" : "B"), json(i));
+        }
+        assertEquals(WsOutbound.Stage.CONFLATE, applyBudget());
+
+        List<byte[]> left = drain();
+        assertEquals(12, left.size());
+        assertEquals(9, left.get(9)[0]);
+        assertEquals(12, left.get(10)[0], "latest A");
+        assertEquals(13, left.get(11)[0], "latest B");
+        assertEquals(2.0, registry.getSampleValue("ws_events_conflated_total"));
+        assertEquals(WsOutbound.Stage.NORMAL, out.stage());
+    }
+
+    @Test
+    @DisplayName("Over half of the budget low-priority events are shed, the rest kept in order")
+    public void testShed() {
+        for (int i = 0; i < 25; i++) {
+            out.enqueue(i % 5 == 0 ? signal() : tick("S" + i), json(i));
+        }
+        assertEquals(WsOutbound.Stage.SHED, applyBudget());
+
+        List<byte[]> left = drain();
+        assertEquals(5, left.size());
+        for (int k = 0; k < 5; k++) {
+            assertEquals(5 * k, left.get(k)[0]);
+        }
+        assertEquals(20.0, registry.getSampleValue("ws_events_shed_total"));
+    }
+
+    @Test
+    @DisplayName("Over budget after shedding the session must be disconnected")
+    public void testDisconnectOverBudget() {
+        for (int i = 0; i < 39; i++) {
+            out.enqueue(signal(), new byte[EVENT_BYTES]);
+        }
+        assertEquals(WsOutbound.Stage.SHED, applyBudget());
+
+        out.enqueue(signal(), new byte[EVENT_BYTES]);
+        assertEquals(WsOutbound.Stage.DISCONNECT, applyBudget());
+    }
+
+    @Test
+    @DisplayName("A frame in flight past the stall timeout disconnects the session")
+    public void testStall() {
+        assertTrue(out.beginSend(EVENT_BYTES));
+        assertFalse(out.beginSend(EVENT_BYTES), "one frame in flight at a time");
+        long now = System.nanoTime();
+
+        assertEquals(WsOutbound.Stage.NORMAL, out.applyBudget(BUDGET, STALL_NANOS, now));
+        assertEquals(WsOutbound.Stage.DISCONNECT, out.applyBudget(BUDGET, STALL_NANOS, now + STALL_NANOS * 2));
+    }
+
+    @Test
+    @DisplayName("Control replies count against the budget and are never shed")
+    public void testControlRepliesAreBudgeted() {
+        out.enqueueControl(new byte[] { 1 });
+        assertFalse(out.isIdle());
+        for (int i = 0; i < 39; i++) {
+            out.enqueueControl(new byte[EVENT_BYTES]);
+        }
+        assertEquals(WsOutbound.Stage.SHED, applyBudget());
+        assertEquals(40, drainControl());
+        assertEquals(0L, out.used());
+        assertTrue(out.isIdle());
+
+        for (int i = 0; i < 41; i++) {
+            out.enqueueControl(new byte[EVENT_BYTES]);
+        }
+        assertEquals(WsOutbound.Stage.DISCONNECT, applyBudget());
+        assertEquals(0.0, registry.getSampleValue("ws_events_shed_total"));
+    }
+
+    @Test
+    @DisplayName("Completed sends advance the resume seq and free the in-flight bytes")
+    public void testSendComplete() {
+        assertTrue(out.beginSend(500));
+        assertEquals(500L, out.used());
+        out.sendComplete(3, 500, 42);
+
+        assertEquals(42L, out.resumeSeq());
+        assertEquals(0L, out.used());
+        assertTrue(out.isIdle());
+        assertEquals(1.0, registry.getSampleValue("ws_frames_sent_total"));
+        assertEquals(3.0, registry.getSampleValue("ws_events_sent_total"));
+
+        assertTrue(out.beginSend(500));
+        out.sendFailed();
+        assertEquals(42L, out.resumeSeq());
+        assertEquals(1.0, registry.getSampleValue("ws_send_errors_total"));
+        assertFalse(out.isInFlight());
+    }
+
+    private WsOutbound.Stage applyBudget() {
+        return out.applyBudget(BUDGET, STALL_NANOS, System.nanoTime());
+    }
+
+    private List<byte[]> drain() {
+        return out.drainBacklog(new long[1]);
+    }
+
+    private int drainControl() {
+        int n = 0;
+        while (out.pollControl() != null) {
+            n++;
+        }
+        return n;
+    }
+
+    /** 100-byte stand-in for an encoded event, tagged with its index. */
+    private static byte[] json(int index) {
+        byte[] json = new byte[EVENT_BYTES];
+        json[0] = (byte) index;
+        return json;
+    }
+
+    private static TradeEvent tick(String symbol) {
+        return TradeEvent.global(0, EventType.TICK, MAPPER.createObjectNode().put("symbol", symbol), "system");
+    }
+
+    private static TradeEvent signal() {
+        return TradeEvent.global(1, EventType.SIGNAL_GENERATED, MAPPER.createObjectNode(), "system");
+    }
+}